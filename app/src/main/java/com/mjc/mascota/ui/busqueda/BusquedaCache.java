@@ -0,0 +1,240 @@
+package com.mjc.mascota.ui.busqueda;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caché de dos niveles para la pantalla de búsqueda (populares, páginas de resultados y
+ * tarjetas de paseador).
+ *
+ * - Memoria: LRU acotado por cantidad de entradas.
+ * - Disco: un archivo por clave en cacheDir, con presupuesto total en bytes; al pasarse
+ *   se borran los menos usados (la lectura actualiza la fecha del archivo).
+ *
+ * Cada entrada guarda su TTL. Una entrada vencida se sigue devolviendo (stale) hasta
+ * {@link #MAX_OBSOLETO_MS} para mostrar algo mientras se revalida contra Firestore;
+ * el llamador decide con {@link Entrada#isFresca(long)} si además consulta la red.
+ *
+ * Hace E/S de disco: llamar fuera del hilo principal.
+ */
+public final class BusquedaCache {
+    private static final String TAG = "BusquedaCache";
+    private static final String DIRECTORIO = "busqueda_cache";
+    private static final String EXTENSION = ".cache";
+
+    static final long MAX_OBSOLETO_MS = 7L * 24 * 60 * 60 * 1000; // 7 días
+    private static final long PRESUPUESTO_DISCO_BYTES = 512 * 1024;
+    private static final int MAX_EN_MEMORIA = 64;
+
+    private static BusquedaCache instance;
+
+    public static final class Entrada {
+        public final String datos;
+        public final long guardadoMs;
+        public final long ttlMs;
+
+        Entrada(String datos, long guardadoMs, long ttlMs) {
+            this.datos = datos;
+            this.guardadoMs = guardadoMs;
+            this.ttlMs = ttlMs;
+        }
+
+        public boolean isFresca(long ahoraMs) {
+            return ahoraMs - guardadoMs <= ttlMs;
+        }
+    }
+
+    private final File directorio;
+    private final long presupuestoBytes;
+    private final Map<String, Entrada> memoria = new LinkedHashMap<String, Entrada>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entrada> eldest) {
+            return size() > MAX_EN_MEMORIA;
+        }
+    };
+
+    public static synchronized BusquedaCache getInstance(@NonNull Context context) {
+        if (instance == null) {
+            File dir = new File(context.getApplicationContext().getCacheDir(), DIRECTORIO);
+            instance = new BusquedaCache(dir, PRESUPUESTO_DISCO_BYTES);
+        }
+        return instance;
+    }
+
+    BusquedaCache(File directorio, long presupuestoBytes) {
+        this.directorio = directorio;
+        this.presupuestoBytes = presupuestoBytes;
+    }
+
+    /**
+     * @return la entrada (fresca u obsoleta) o null si no existe o pasó {@link #MAX_OBSOLETO_MS}
+     */
+    @Nullable
+    public synchronized Entrada obtener(@NonNull String clave, long ahoraMs) {
+        Entrada entrada = memoria.get(clave);
+        if (entrada == null) {
+            entrada = leerDisco(clave);
+            if (entrada != null) {
+                memoria.put(clave, entrada);
+            }
+        }
+        if (entrada != null && ahoraMs - entrada.guardadoMs > MAX_OBSOLETO_MS) {
+            eliminar(clave);
+            return null;
+        }
+        return entrada;
+    }
+
+    /**
+     * Solo el nivel de memoria: seguro desde el hilo principal.
+     */
+    @Nullable
+    public synchronized Entrada obtenerDeMemoria(@NonNull String clave) {
+        return memoria.get(clave);
+    }
+
+    public synchronized void guardar(@NonNull String clave, @NonNull String datos, long ttlMs, long ahoraMs) {
+        memoria.put(clave, new Entrada(datos, ahoraMs, ttlMs));
+        if (!directorio.isDirectory() && !directorio.mkdirs()) {
+            Log.w(TAG, "No se pudo crear " + directorio);
+            return;
+        }
+        File archivo = archivo(clave);
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(archivo), StandardCharsets.UTF_8)) {
+            w.write(clave.replace('\n', ' '));
+            w.write('\n');
+            w.write(Long.toString(ahoraMs));
+            w.write('\n');
+            w.write(Long.toString(ttlMs));
+            w.write('\n');
+            w.write(datos);
+        } catch (IOException e) {
+            Log.w(TAG, "No se pudo escribir " + clave, e);
+            archivo.delete();
+            return;
+        }
+        podar(archivo);
+    }
+
+    public synchronized void eliminar(@NonNull String clave) {
+        memoria.remove(clave);
+        archivo(clave).delete();
+    }
+
+    /**
+     * Elimina de ambos niveles las claves que empiezan con {@code prefijo}.
+     */
+    public synchronized void eliminarPrefijo(@NonNull String prefijo) {
+        Iterator<String> it = memoria.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().startsWith(prefijo)) it.remove();
+        }
+        File[] archivos = directorio.listFiles();
+        if (archivos == null) return;
+        for (File f : archivos) {
+            String clave = leerClave(f);
+            if (clave == null || clave.startsWith(prefijo)) {
+                f.delete();
+            }
+        }
+    }
+
+    public synchronized void limpiar() {
+        memoria.clear();
+        File[] archivos = directorio.listFiles();
+        if (archivos == null) return;
+        for (File f : archivos) {
+            f.delete();
+        }
+    }
+
+    synchronized long bytesEnDisco() {
+        long total = 0;
+        File[] archivos = directorio.listFiles();
+        if (archivos != null) {
+            for (File f : archivos) total += f.length();
+        }
+        return total;
+    }
+
+    synchronized void vaciarMemoria() {
+        memoria.clear();
+    }
+
+    private File archivo(String clave) {
+        return new File(directorio, Integer.toHexString(clave.hashCode()) + EXTENSION);
+    }
+
+    @Nullable
+    private Entrada leerDisco(String clave) {
+        File archivo = archivo(clave);
+        if (!archivo.isFile()) return null;
+        try (BufferedReader r = new BufferedReader(
+                new InputStreamReader(new FileInputStream(archivo), StandardCharsets.UTF_8))) {
+            // Otra clave con el mismo hash ocupa el archivo: es un miss
+            if (!clave.replace('\n', ' ').equals(r.readLine())) return null;
+            long guardado = Long.parseLong(r.readLine());
+            long ttl = Long.parseLong(r.readLine());
+            StringBuilder datos = new StringBuilder();
+            char[] buffer = new char[4096];
+            int n;
+            while ((n = r.read(buffer)) > 0) {
+                datos.append(buffer, 0, n);
+            }
+            archivo.setLastModified(System.currentTimeMillis());
+            return new Entrada(datos.toString(), guardado, ttl);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "⚠️ Entrada de caché ilegible, se descarta: " + clave, e);
+            archivo.delete();
+            return null;
+        }
+    }
+
+    @Nullable
+    private static String leerClave(File archivo) {
+        try (BufferedReader r = new BufferedReader(
+                new InputStreamReader(new FileInputStream(archivo), StandardCharsets.UTF_8))) {
+            return r.readLine();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Borra los archivos usados hace más tiempo hasta entrar en el presupuesto.
+     */
+    private void podar(File recienEscrito) {
+        File[] archivos = directorio.listFiles();
+        if (archivos == null) return;
+        long total = 0;
+        for (File f : archivos) total += f.length();
+        if (total <= presupuestoBytes) return;
+
+        Arrays.sort(archivos, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        int borrados = 0;
+        for (File f : archivos) {
+            if (total <= presupuestoBytes) break;
+            if (f.equals(recienEscrito)) continue;
+            total -= f.length();
+            if (f.delete()) borrados++;
+        }
+        Log.d(TAG, "🧹 Caché de búsqueda podado: " + borrados + " archivos, " + total + " bytes en disco");
+    }
+}
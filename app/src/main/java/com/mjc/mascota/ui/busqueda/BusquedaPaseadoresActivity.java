@@ -18,6 +18,7 @@ import android.os.Looper;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.util.Log;
+import android.util.LruCache;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
@@ -50,9 +51,6 @@ import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.request.RequestOptions;
 import com.bumptech.glide.request.target.CustomTarget;
 import com.bumptech.glide.request.transition.Transition;
-import com.firebase.geofire.GeoFireUtils;
-import com.firebase.geofire.GeoLocation;
-import com.firebase.geofire.GeoQueryBounds;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationCallback;
 import com.google.android.gms.location.LocationRequest;
@@ -93,19 +91,22 @@ import com.mjc.mascotalink.PerfilDuenoActivity;
 import com.mjc.mascotalink.PerfilPaseadorActivity;
 import com.mjc.mascotalink.R;
 import com.mjc.mascotalink.util.BottomNavManager;
+import com.mjc.mascotalink.network.PresenceStore;
 import com.mjc.mascotalink.network.SocketManager;
 import com.mjc.mascotalink.network.NetworkMonitorHelper;
 import com.mjc.mascota.utils.FirestoreConstants;
-import org.json.JSONObject;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
@@ -143,11 +144,34 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
     // Cache para los marcadores de paseadores en el mapa
     private final ConcurrentHashMap<String, PaseadorMarker> cachedPaseadorMarkers = new ConcurrentHashMap<>();
 
+    // Índice geohash de lo ya descargado: paneos/zoom dentro de celdas frescas no consultan Firestore
+    private static final long CELDA_MAPA_TTL_MS = 2 * 60 * 1000; // 2 minutos
+    private static final int LIMITE_PASEADORES_POR_CELDA = 50;
+    private final PaseadorGeoIndex<PaseadorMarker> indicePaseadores = new PaseadorGeoIndex<>(CELDA_MAPA_TTL_MS);
+
+    // Items del ClusterManager: solo se agregan/quitan/actualizan los que cambiaron
+    private final PaseadorClusterSync<PaseadorMarker, PaseadorClusterItem> clusterSync =
+            new PaseadorClusterSync<>(new PaseadorClusterSync.Adaptador<PaseadorMarker, PaseadorClusterItem>() {
+                @Override
+                public PaseadorClusterItem crearItem(PaseadorMarker valor) {
+                    return new PaseadorClusterItem(valor);
+                }
+
+                @Override
+                public int huella(PaseadorMarker pm) {
+                    // La distancia no entra: cambia con cada paneo y no se dibuja en el ícono
+                    return Objects.hash(pm.getUbicacion().latitude, pm.getUbicacion().longitude, pm.getNombre(),
+                            pm.getFotoUrl(), pm.getCalificacion(), pm.isDisponible(), pm.isEnPaseo());
+                }
+            });
+
     // TextWatcher para el campo de búsqueda
     private TextWatcher searchTextWatcher;
 
-    // Current search results for presence monitoring
-    private java.util.List<PaseadorResultado> currentSearchResults = new ArrayList<>();
+    // Presencia de los resultados visibles: la lista enviada al adapter y la posición de cada id
+    private PresenceStore.Suscripcion presenciaResultados;
+    private java.util.List<PaseadorResultado> resultadosVisibles = new ArrayList<>();
+    private final Map<String, Integer> posicionResultados = new HashMap<>();
 
     // Handler para el retraso en la búsqueda
     private final Handler searchHandler = new Handler(Looper.getMainLooper());
@@ -308,7 +332,7 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
             Toast.makeText(this, "Actualizando mapa...", Toast.LENGTH_SHORT).show();
             if (mMap != null) {
                 LatLng center = mMap.getCameraPosition().target;
-                cargarPaseadoresCercanos(center, currentSearchRadiusKm);
+                cargarPaseadoresCercanos(center, currentSearchRadiusKm, true);
             } else {
                 startLocationUpdates();
             }
@@ -433,6 +457,8 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
         periodicRefreshHandler.removeCallbacksAndMessages(null);
         locationTimeoutHandler.removeCallbacks(locationTimeoutRunnable);
         cachedPaseadorMarkers.clear();
+        indicePaseadores.limpiar();
+        clusterSync.limpiar();
         if (mClusterManager != null) {
             mClusterManager.clearItems();
         }
@@ -747,7 +773,7 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
             // Recargar mapa si está visible
             if (mMap != null && contentScrollView.getVisibility() == View.VISIBLE) {
                 LatLng center = mMap.getCameraPosition().target;
-                cargarPaseadoresCercanos(center, currentSearchRadiusKm);
+                cargarPaseadoresCercanos(center, currentSearchRadiusKm, true);
             }
 
             // Detener el indicador de refresh
@@ -925,15 +951,11 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
                 LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
                 if (layoutManager == null) return;
 
-                int total = resultadosAdapter.getItemCount();
-                if (total == 0) return;
+                if (resultadosAdapter.getItemCount() == 0) return;
 
-                int lastVisible = layoutManager.findLastVisibleItemPosition();
-                // Prefetch al 75% del scroll para que la siguiente pÇÉgina ya venga cargada
-                int prefetchThreshold = Math.max(0, (int) (total * 0.75f));
-                if (lastVisible >= prefetchThreshold) {
-                    viewModel.loadMore();
-                }
+                // El paginador adelanta la próxima página según la velocidad del scroll
+                viewModel.onScrollResultados(layoutManager.findFirstVisibleItemPosition(),
+                        layoutManager.findLastVisibleItemPosition());
             }
         });
     }
@@ -988,7 +1010,6 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
         emptyStateView.setVisibility(View.GONE);
         errorStateView.setVisibility(View.GONE);
         progressBar.setVisibility(View.GONE); // Ocultar progress bar
-        resultadosAdapter.submitList(data);
         setupPresenceForResults(data);
 
         // TalkBack: Anunciar resultados de búsqueda
@@ -1006,6 +1027,7 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
     private void showLoading() {
         // No cambiar el adapter, solo mostrar estado de carga
         hideSkeleton();
+        cleanupPresenceListeners();
         resultadosAdapter.submitList(null); // Vaciar lista mientras carga
         recyclerViewResultados.setVisibility(View.VISIBLE);
         contentScrollView.setVisibility(View.VISIBLE);
@@ -1021,7 +1043,8 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
         emptyStateView.setVisibility(View.GONE);
         errorStateView.setVisibility(View.GONE);
         popularesAdapter.submitList(data);
-        setupPresenceForResults(data);
+        // Las tarjetas de populares no muestran presencia: no hace falta seguirla
+        cleanupPresenceListeners();
     }
 
     private void showError(String message) {
@@ -1043,96 +1066,71 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
           errorStateView.setVisibility(View.GONE);
       }
 
+      /**
+       * Envía los resultados al adapter con la presencia ya conocida y sigue la de esos
+       * paseadores: cada cambio redibuja solo el badge de su fila.
+       *
+       * La suscripción nueva se toma antes de soltar la anterior: los ids que siguen en la
+       * lista no llegan a cero referencias y PresenceStore no los desuscribe ni olvida su
+       * estado en cada republicación de resultados.
+       */
       private void setupPresenceForResults(java.util.List<PaseadorResultado> data) {
-          if (data == null || data.isEmpty() || socketManager == null || !socketManager.isConnected()) {
+          PresenceStore.Suscripcion anterior = presenciaResultados;
+          presenciaResultados = null;
+          resultadosVisibles = data != null ? new ArrayList<>(data) : new ArrayList<>();
+          posicionResultados.clear();
+          if (resultadosVisibles.isEmpty() || socketManager == null) {
+              if (anterior != null) anterior.cancelar();
+              resultadosAdapter.submitList(resultadosVisibles);
               return;
           }
 
-          // Save current results for re-subscription after reconnection
-          currentSearchResults = new ArrayList<>(data);
-
-          // Cleanup previous listeners
-          cleanupPresenceListeners();
-
-          // Extract all paseador IDs
-          String[] paseadorIds = new String[data.size()];
-          for (int i = 0; i < data.size(); i++) {
-              paseadorIds[i] = data.get(i).getId();
+          PresenceStore presencia = socketManager.getPresencia();
+          java.util.List<String> paseadorIds = new ArrayList<>(resultadosVisibles.size());
+          Map<String, PresenceStore.Estado> conocidos = new HashMap<>();
+          for (int i = 0; i < resultadosVisibles.size(); i++) {
+              String id = resultadosVisibles.get(i).getId();
+              paseadorIds.add(id);
+              posicionResultados.put(id, i);
+              PresenceStore.Estado estado = presencia.getEstado(id);
+              if (estado != null) conocidos.put(id, estado);
           }
-
-          // Listen for user connections
-          socketManager.on("user_connected", args -> {
-              try {
-                  JSONObject jsonData = (JSONObject) args[0];
-                  String userId = jsonData.getString("userId");
-                  updatePaseadorOnlineStatus(userId, true);
-              } catch (Exception e) {
-                  Log.e(TAG, "Error procesando user_connected", e);
-              }
-          });
-
-          // Listen for user disconnections
-          socketManager.on("user_disconnected", args -> {
-              try {
-                  JSONObject jsonData = (JSONObject) args[0];
-                  String userId = jsonData.getString("userId");
-                  updatePaseadorOnlineStatus(userId, false);
-              } catch (Exception e) {
-                  Log.e(TAG, "Error procesando user_disconnected", e);
-              }
-          });
-
-          // Subscribe to presence updates
-          socketManager.subscribePresence(paseadorIds);
-          Log.d(TAG, " Suscrito a presencia de " + paseadorIds.length + " paseadores");
+          presenciaResultados = presencia.suscribir(paseadorIds, this::aplicarPresencia);
+          if (anterior != null) anterior.cancelar();
+          if (!aplicarPresencia(conocidos)) {
+              resultadosAdapter.submitList(resultadosVisibles);
+          }
+          Log.d(TAG, " Siguiendo presencia de " + paseadorIds.size() + " paseadores");
       }
 
-      private void updatePaseadorOnlineStatus(String paseadorId, boolean isOnline) {
-          runOnUiThread(() -> {
-              // Get current list from adapter
-              java.util.List<PaseadorResultado> currentList = null;
-              if (recyclerViewResultados.getVisibility() == View.VISIBLE) {
-                  currentList = resultadosAdapter.getCurrentList();
-              } else if (contentScrollView.getVisibility() == View.VISIBLE) {
-                  currentList = popularesAdapter.getCurrentList();
-              }
-
-              if (currentList == null || currentList.isEmpty()) return;
-
-              // Find and update the paseador
-              boolean found = false;
-              java.util.List<PaseadorResultado> updatedList = new ArrayList<>();
-              for (int i = 0; i < currentList.size(); i++) {
-                  PaseadorResultado original = currentList.get(i);
-                  if (original.getId().equals(paseadorId)) {
-                      // Create a COPY of the item to modify, ensuring DiffUtil sees the change
-                      PaseadorResultado copy = new PaseadorResultado(original);
-                      copy.setEnLinea(isOnline);
-                      updatedList.add(copy);
-                      found = true;
-                  } else {
-                      updatedList.add(original);
-                  }
-              }
-
-              // Notify adapter if found
-              if (found) {
-                  if (recyclerViewResultados.getVisibility() == View.VISIBLE) {
-                      resultadosAdapter.submitList(updatedList);
-                  } else if (contentScrollView.getVisibility() == View.VISIBLE) {
-                      popularesAdapter.submitList(updatedList);
-                  }
-                  Log.d(TAG, " Actualizado estado online de paseador " + paseadorId + ": " + isOnline);
-              }
-          });
+      /** @return true si cambió alguna fila (y se envió la lista nueva al adapter) */
+      private boolean aplicarPresencia(Map<String, PresenceStore.Estado> cambios) {
+          java.util.List<PaseadorResultado> nueva = null;
+          for (Map.Entry<String, PresenceStore.Estado> cambio : cambios.entrySet()) {
+              Integer posicion = posicionResultados.get(cambio.getKey());
+              if (posicion == null) continue;
+              PaseadorResultado original = resultadosVisibles.get(posicion);
+              if (original.isEnLinea() == cambio.getValue().enLinea) continue;
+
+              // Copia para que DiffUtil vea el cambio (y lo entregue como payload)
+              PaseadorResultado copia = new PaseadorResultado(original);
+              copia.setEnLinea(cambio.getValue().enLinea);
+              if (nueva == null) nueva = new ArrayList<>(resultadosVisibles);
+              nueva.set(posicion, copia);
+          }
+          if (nueva == null) return false;
+          resultadosVisibles = nueva;
+          resultadosAdapter.submitList(nueva);
+          return true;
       }
 
       private void cleanupPresenceListeners() {
-          if (socketManager != null) {
-              socketManager.off("user_connected");
-              socketManager.off("user_disconnected");
-              Log.d(TAG, " Limpieza de listeners de presencia");
+          if (presenciaResultados != null) {
+              presenciaResultados.cancelar();
+              presenciaResultados = null;
           }
+          resultadosVisibles = new ArrayList<>();
+          posicionResultados.clear();
       }
 
       private void setupNetworkMonitoring() {
@@ -1172,7 +1170,7 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
 
               @Override
               public void onReconnected() {
-                  Log.d(TAG, "🌐 WebSocket reconectado - re-suscribiendo a presencia");
+                  Log.d(TAG, "🌐 WebSocket reconectado");
                   runOnUiThread(() -> {
                       // Dismiss Snackbar de reconexión
                       if (reconnectSnackbar != null && reconnectSnackbar.isShown()) {
@@ -1186,10 +1184,6 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
                           com.google.android.material.snackbar.Snackbar.LENGTH_SHORT
                       ).show();
 
-                      // Re-subscribe to presence when WebSocket reconnects
-                      if (!currentSearchResults.isEmpty()) {
-                          setupPresenceForResults(currentSearchResults);
-                      }
                   });
               }
 
@@ -1454,6 +1448,7 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
 
     private void setupClusterManager() {
         mClusterManager = new ClusterManager<>(BusquedaPaseadoresActivity.this, mMap);
+        clusterSync.limpiar();
         PaseadorClusterRenderer renderer = new PaseadorClusterRenderer(BusquedaPaseadoresActivity.this, mMap, mClusterManager);
         mClusterManager.setRenderer(renderer);
         mMap.setOnCameraIdleListener(mClusterManager);
@@ -1485,6 +1480,7 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
     }
 
     private void selectAndCenterPaseador(String paseadorId, PaseadorClusterItem item, PaseadorClusterRenderer renderer) {
+        String anterior = selectedPaseadorId;
         selectedPaseadorId = paseadorId;
         mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(item.getPosition(), 15f));
 
@@ -1494,38 +1490,31 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
             renderer.updateMarkerIcon(marker, item);
         }
 
-        deselectOtherPaseadores(paseadorId, renderer);
+        // Solo el anterior cambia de ícono; el resto ya está deseleccionado
+        if (anterior != null && !anterior.equals(paseadorId)) {
+            actualizarIconoPaseador(anterior, renderer);
+        }
     }
 
-    private void deselectOtherPaseadores(String selectedId, PaseadorClusterRenderer renderer) {
-        for (PaseadorClusterItem otherItem : mClusterManager.getAlgorithm().getItems()) {
-            if (!otherItem.getPaseadorMarker().getPaseadorId().equals(selectedId)) {
-                Marker otherMarker = renderer.getMarker(otherItem);
-                if (otherMarker != null) {
-                    renderer.updateMarkerIcon(otherMarker, otherItem);
-                }
-            }
+    private void actualizarIconoPaseador(String paseadorId, PaseadorClusterRenderer renderer) {
+        PaseadorClusterItem item = clusterSync.getItem(paseadorId);
+        if (item == null) return;
+        Marker marker = renderer.getMarker(item);
+        if (marker != null) {
+            renderer.updateMarkerIcon(marker, item);
         }
     }
 
     private void setupMapClickListener(PaseadorClusterRenderer renderer) {
         mMap.setOnMapClickListener(latLng -> {
             if (selectedPaseadorId != null) {
+                String anterior = selectedPaseadorId;
                 selectedPaseadorId = null;
-                resetAllMarkerIcons(renderer);
+                actualizarIconoPaseador(anterior, renderer);
             }
         });
     }
 
-    private void resetAllMarkerIcons(PaseadorClusterRenderer renderer) {
-        for (PaseadorClusterItem item : mClusterManager.getAlgorithm().getItems()) {
-            Marker marker = renderer.getMarker(item);
-            if (marker != null) {
-                renderer.updateMarkerIcon(marker, item);
-            }
-        }
-    }
-
     private void setupInfoWindowAdapter() {
         PaseadorInfoWindowAdapter infoWindowAdapter = new PaseadorInfoWindowAdapter(BusquedaPaseadoresActivity.this, paseadorId -> {
             Intent intent = new Intent(BusquedaPaseadoresActivity.this, PerfilPaseadorActivity.class);
@@ -1648,6 +1637,16 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
     }
 
     private void cargarPaseadoresCercanos(LatLng ubicacionUsuario, double radioKm) {
+        cargarPaseadoresCercanos(ubicacionUsuario, radioKm, false);
+    }
+
+    /**
+     * Muestra los paseadores dentro del radio. Solo consulta paseadores_search por las
+     * celdas geohash que el índice local no tiene o tiene vencidas.
+     *
+     * @param forzarRed true en refrescos manuales: ignora lo ya cubierto
+     */
+    private void cargarPaseadoresCercanos(LatLng ubicacionUsuario, double radioKm, boolean forzarRed) {
         if (ubicacionUsuario == null) {
             Log.w(TAG, "cargarPaseadoresCercanos: ubicacionUsuario es null, se omite b??squeda geoespacial.");
             return;
@@ -1663,101 +1662,130 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
             return;
         }
 
+        if (forzarRed) {
+            indicePaseadores.invalidar();
+        }
+        double radiusMeters = radioKm * 1000d;
+        List<String> celdas = indicePaseadores.celdasPendientes(
+                ubicacionUsuario.latitude, ubicacionUsuario.longitude, radiusMeters, System.currentTimeMillis());
+        if (celdas.isEmpty()) {
+            Log.d(TAG, "🗺️ Zona ya cubierta por el índice local (" + indicePaseadores.size() + " paseadores), sin consultas");
+            mostrarPaseadoresIndexados(ubicacionUsuario, radiusMeters, Collections.emptyList());
+            return;
+        }
+
         if (progressBar != null && cachedPaseadorMarkers.isEmpty()) {
             progressBar.setVisibility(View.VISIBLE);
         }
 
         FirebaseFirestore firestore = FirebaseFirestore.getInstance();
-        GeoLocation center = new GeoLocation(ubicacionUsuario.latitude, ubicacionUsuario.longitude);
-        double radiusMeters = radioKm * 1000d;
-        List<GeoQueryBounds> bounds = GeoFireUtils.getGeoHashQueryBounds(center, radiusMeters);
         List<Task<QuerySnapshot>> geoTasks = new ArrayList<>();
 
         // OPTIMIZACIÓN: Usar paseadores_search en vez de usuarios para reducir consultas
-        for (GeoQueryBounds b : bounds) {
+        for (String celda : celdas) {
             Query q = firestore.collection("paseadores_search")
                     .whereEqualTo(FirestoreConstants.FIELD_ACTIVO, true)
                     .whereEqualTo(FirestoreConstants.FIELD_VERIFICACION_ESTADO, FirestoreConstants.STATUS_APROBADO)
                     .orderBy(FirestoreConstants.FIELD_UBICACION_GEOHASH)
-                    .startAt(b.startHash)
-                    .endAt(b.endHash)
-                    .limit(50);
+                    .startAt(celda)
+                    .endAt(celda + PaseadorGeoIndex.FIN_RANGO)
+                    .limit(LIMITE_PASEADORES_POR_CELDA);
             geoTasks.add(q.get());
         }
+        Log.d(TAG, "🗺️ Consultando " + celdas.size() + " celdas sin cubrir: " + celdas);
 
         Tasks.whenAllComplete(geoTasks).addOnCompleteListener(all -> {
-            Set<String> seenPaseadores = new HashSet<>();
-            List<Task<PaseadorMarker>> paseadorMarkerTasks = new ArrayList<>();
+            long ahora = System.currentTimeMillis();
+            Set<String> quitados = new HashSet<>();
 
-            for (Task<QuerySnapshot> task : geoTasks) {
+            for (int i = 0; i < geoTasks.size(); i++) {
+                Task<QuerySnapshot> task = geoTasks.get(i);
+                String celda = celdas.get(i);
                 if (!task.isSuccessful() || task.getResult() == null) {
                     Log.w(TAG, "Geoquery parcial fallida o vac??a", task.getException());
+                    indicePaseadores.cancelarCelda(celda);
                     continue;
                 }
 
+                List<PaseadorGeoIndex.Entrada<PaseadorMarker>> entradas = new ArrayList<>();
                 for (DocumentSnapshot doc : task.getResult()) {
-                    if (!seenPaseadores.add(doc.getId())) continue; // evitar duplicados
-
                     // OPTIMIZACIÓN: Ya no verificamos isUsuarioEnLinea porque el filtro está en la consulta
                     String estado = doc.getString(FirestoreConstants.FIELD_ESTADO);
                     if (!FirestoreConstants.STATUS_ONLINE.equalsIgnoreCase(estado)) continue;
 
-                    LatLng ubicacionActual = extraerLatLng(doc.get(FirestoreConstants.FIELD_UBICACION_ACTUAL));
                     String geohash = doc.getString(FirestoreConstants.FIELD_UBICACION_GEOHASH);
-
-                    if (ubicacionActual == null || geohash == null) {
+                    // OPTIMIZACIÓN: Construir marcador directamente desde paseadores_search
+                    PaseadorMarker marker = crearPaseadorMarkerDesdeBusqueda(doc, ubicacionUsuario);
+                    if (marker == null || geohash == null) {
                         Log.w(TAG, "Documento sin ubicacion_actual/geohash: " + doc.getId());
                         continue;
                     }
-
-                    double distanceMeters = GeoFireUtils.getDistanceBetween(
-                            new GeoLocation(ubicacionActual.latitude, ubicacionActual.longitude), center);
-
-                    if (distanceMeters <= radiusMeters) {
-                        // OPTIMIZACIÓN: Construir marcador directamente desde paseadores_search
-                        paseadorMarkerTasks.add(buildPaseadorMarkerFromSearchDoc(doc, ubicacionUsuario));
-                    }
+                    LatLng ubicacion = marker.getUbicacion();
+                    entradas.add(new PaseadorGeoIndex.Entrada<>(
+                            doc.getId(), geohash, ubicacion.latitude, ubicacion.longitude, marker));
                 }
+                boolean completa = task.getResult().size() < LIMITE_PASEADORES_POR_CELDA;
+                quitados.addAll(indicePaseadores.reemplazarCelda(celda, entradas, completa, ahora));
             }
 
-            if (paseadorMarkerTasks.isEmpty()) {
+            if (!mostrarPaseadoresIndexados(ubicacionUsuario, radiusMeters, quitados)) {
                 cargarPaseadoresCercanosFallback(ubicacionUsuario);
                 return;
             }
-
-            Tasks.whenAllSuccess(paseadorMarkerTasks)
-                    .addOnSuccessListener(list -> {
-                        int added = 0;
-                        for (Object obj : list) {
-                            if (obj instanceof PaseadorMarker) {
-                                PaseadorMarker paseadorMarker = (PaseadorMarker) obj;
-                                if (paseadorMarker != null) {
-                                    cachedPaseadorMarkers.put(paseadorMarker.getPaseadorId(), paseadorMarker);
-                                    mClusterManager.addItem(new PaseadorClusterItem(paseadorMarker));
-                                    added++;
-                                }
-                            }
-                        }
-                        if (added > 0) {
-                            mClusterManager.clearItems();
-                            List<PaseadorClusterItem> items = new ArrayList<>(cachedPaseadorMarkers.size());
-                            for (PaseadorMarker pm : cachedPaseadorMarkers.values()) {
-                                items.add(new PaseadorClusterItem(pm));
-                            }
-                            mClusterManager.addItems(items);
-                            mClusterManager.cluster();
-                        } else {
-                            Log.w(TAG, "Geoquery sin marcadores v??lidos; se conservan los existentes.");
-                        }
-                        if (progressBar != null) progressBar.setVisibility(View.GONE);
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Error al construir PaseadorMarkers", e);
-                        if (progressBar != null) progressBar.setVisibility(View.GONE);
-                    });
+            if (progressBar != null) progressBar.setVisibility(View.GONE);
         });
     }
 
+    /**
+     * Lleva al mapa lo que el índice tiene dentro del radio y quita los paseadores que
+     * desaparecieron de sus celdas.
+     *
+     * @return false si no hay ningún paseador en el radio
+     */
+    private boolean mostrarPaseadoresIndexados(LatLng centro, double radioMetros, Collection<String> quitados) {
+        if (mClusterManager == null) return false;
+
+        for (String id : quitados) {
+            if (!indicePaseadores.contiene(id)) {
+                cachedPaseadorMarkers.remove(id);
+            }
+        }
+
+        List<PaseadorMarker> enRadio = indicePaseadores.buscar(centro.latitude, centro.longitude, radioMetros);
+        float[] results = new float[1];
+        for (PaseadorMarker pm : enRadio) {
+            Location.distanceBetween(centro.latitude, centro.longitude,
+                    pm.getUbicacion().latitude, pm.getUbicacion().longitude, results);
+            pm.setDistanciaKm(results[0] / 1000);
+            cachedPaseadorMarkers.put(pm.getPaseadorId(), pm);
+        }
+
+        sincronizarClusters();
+        return !enRadio.isEmpty();
+    }
+
+    /**
+     * Lleva cachedPaseadorMarkers al ClusterManager aplicando solo la diferencia.
+     */
+    private void sincronizarClusters() {
+        if (mClusterManager == null) return;
+        PaseadorClusterSync.Cambios<PaseadorClusterItem> cambios = clusterSync.sincronizar(cachedPaseadorMarkers);
+        if (cambios.isEmpty()) return;
+
+        if (!cambios.quitar.isEmpty()) {
+            mClusterManager.removeItems(cambios.quitar);
+        }
+        if (!cambios.agregar.isEmpty()) {
+            mClusterManager.addItems(cambios.agregar);
+        }
+        for (PaseadorClusterItem item : cambios.actualizar) {
+            mClusterManager.updateItem(item);
+        }
+        Log.d(TAG, "🗺️ Clusters: +" + cambios.agregar.size() + " -" + cambios.quitar.size()
+                + " ~" + cambios.actualizar.size() + " (" + clusterSync.size() + " en mapa)");
+        mClusterManager.cluster();
+    }
+
     private void cargarPaseadoresCercanosFallback(LatLng ubicacionUsuario) {
         FirebaseFirestore firestore = FirebaseFirestore.getInstance();
         // OPTIMIZACIÓN: Usar paseadores_search en vez de usuarios
@@ -1793,19 +1821,12 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
                                         PaseadorMarker paseadorMarker = (PaseadorMarker) obj;
                                         if (paseadorMarker != null) {
                                             cachedPaseadorMarkers.put(paseadorMarker.getPaseadorId(), paseadorMarker);
-                                            mClusterManager.addItem(new PaseadorClusterItem(paseadorMarker));
                                             added++;
                                         }
                                     }
                                 }
                                 if (added > 0) {
-                                    mClusterManager.clearItems();
-                                    List<PaseadorClusterItem> items = new ArrayList<>(cachedPaseadorMarkers.size());
-                                    for (PaseadorMarker pm : cachedPaseadorMarkers.values()) {
-                                        items.add(new PaseadorClusterItem(pm));
-                                    }
-                                    mClusterManager.addItems(items);
-                                    mClusterManager.cluster();
+                                    sincronizarClusters();
                                 } else {
                                     Log.w(TAG, "Fallback sin nuevos marcadores; se conserva estado previo.");
                                 }
@@ -1914,11 +1935,16 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
      * sin consultas adicionales (todo está desnormalizado)
      */
     private Task<PaseadorMarker> buildPaseadorMarkerFromSearchDoc(DocumentSnapshot searchDoc, LatLng ubicacionUsuario) {
+        return Tasks.forResult(crearPaseadorMarkerDesdeBusqueda(searchDoc, ubicacionUsuario));
+    }
+
+    @Nullable
+    private PaseadorMarker crearPaseadorMarkerDesdeBusqueda(DocumentSnapshot searchDoc, LatLng ubicacionUsuario) {
         String userId = searchDoc.getId();
         LatLng ubicacionPaseador = extraerLatLng(searchDoc.get(FirestoreConstants.FIELD_UBICACION_ACTUAL));
 
         if (ubicacionPaseador == null) {
-            return Tasks.forResult(null);
+            return null;
         }
 
         // Calcular distancia
@@ -1958,7 +1984,7 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
                 enPaseoActual
         );
 
-        return Tasks.forResult(marker);
+        return marker;
     }
 
     private Task<PaseadorMarker> crearMarcador(String userId, DocumentSnapshot userDoc, LatLng ubicacionPaseador, LatLng ubicacionUsuario, boolean esRealtime) {
@@ -2210,13 +2236,11 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
         if (mMap != null) {
             mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(ubicacion, 15f));
 
-            for (PaseadorClusterItem item : mClusterManager.getAlgorithm().getItems()) {
-                if (item.getPaseadorMarker().getPaseadorId().equals(paseadorId)) {
-                    Marker marker = ((PaseadorClusterRenderer)mClusterManager.getRenderer()).getMarker(item);
-                    if (marker != null) {
-                        marker.showInfoWindow();
-                        break;
-                    }
+            PaseadorClusterItem item = clusterSync.getItem(paseadorId);
+            if (item != null && mClusterManager != null) {
+                Marker marker = ((PaseadorClusterRenderer) mClusterManager.getRenderer()).getMarker(item);
+                if (marker != null) {
+                    marker.showInfoWindow();
                 }
             }
         }
@@ -2278,6 +2302,15 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
         private final int mDensity;
         private final int mMarkerPadding;
 
+        // Íconos ya compuestos por (foto, seleccionado, estado): evita Glide + Canvas al re-renderizar
+        private final LruCache<String, Bitmap> iconosCache =
+                new LruCache<String, Bitmap>((int) (Runtime.getRuntime().maxMemory() / 1024 / 16)) {
+                    @Override
+                    protected int sizeOf(String key, Bitmap value) {
+                        return value.getByteCount() / 1024;
+                    }
+                };
+
         public PaseadorClusterRenderer(Context context, GoogleMap map, ClusterManager<PaseadorClusterItem> clusterManager) {
             super(context, map, clusterManager);
             mIconGenerator = new IconGenerator(context);
@@ -2296,9 +2329,31 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
 
         private static final int MAP_MARKER_IMAGE_SIZE_DP = 50;
 
+        private String claveIcono(PaseadorMarker paseador, boolean isSelected) {
+            String estado = paseador.isEnPaseo() ? "p" : (paseador.isDisponible() ? "d" : "n");
+            return paseador.getFotoUrl() + "|" + (isSelected ? "1" : "0") + "|" + estado;
+        }
+
+        @Nullable
+        private BitmapDescriptor iconoCacheado(PaseadorMarker paseador, boolean isSelected) {
+            Bitmap icono = iconosCache.get(claveIcono(paseador, isSelected));
+            return icono != null ? BitmapDescriptorFactory.fromBitmap(icono) : null;
+        }
+
+        private Bitmap crearIconoConFoto(Bitmap foto, PaseadorMarker paseador, boolean isSelected) {
+            Bitmap icono = createCompositeBitmap(foto, paseador.getCalificacion(), paseador.isDisponible(), paseador.isEnPaseo(), isSelected);
+            iconosCache.put(claveIcono(paseador, isSelected), icono);
+            return icono;
+        }
+
         public void updateMarkerIcon(Marker marker, PaseadorClusterItem item) {
             PaseadorMarker paseador = item.getPaseadorMarker();
             boolean isSelected = paseador.getPaseadorId().equals(selectedPaseadorId);
+            BitmapDescriptor cacheado = iconoCacheado(paseador, isSelected);
+            if (cacheado != null) {
+                marker.setIcon(cacheado);
+                return;
+            }
             Context glideCtx = glideContext != null ? glideContext : getApplicationContext();
             
             Glide.with(glideCtx)
@@ -2311,7 +2366,7 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
                     @Override
                     public void onResourceReady(@NonNull Bitmap resource, @Nullable Transition<? super Bitmap> transition) {
                         if (marker != null && marker.getTag() != null) { // Check validity
-                             Bitmap finalBitmap = createCompositeBitmap(resource, paseador.getCalificacion(), paseador.isDisponible(), paseador.isEnPaseo(), isSelected);
+                             Bitmap finalBitmap = crearIconoConFoto(resource, paseador, isSelected);
                              try {
                                 marker.setIcon(BitmapDescriptorFactory.fromBitmap(finalBitmap));
                              } catch (IllegalArgumentException e) {
@@ -2328,6 +2383,15 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
         protected void onBeforeClusterItemRendered(@NonNull PaseadorClusterItem item, @NonNull MarkerOptions markerOptions) {
             final PaseadorMarker paseador = item.getPaseadorMarker();
             boolean isSelected = paseador.getPaseadorId().equals(selectedPaseadorId);
+            markerOptions.title(item.getTitle());
+            markerOptions.snippet(item.getSnippet());
+            cachedPaseadorMarkers.put(paseador.getPaseadorId(), paseador);
+
+            BitmapDescriptor cacheado = iconoCacheado(paseador, isSelected);
+            if (cacheado != null) {
+                markerOptions.icon(cacheado);
+                return;
+            }
             Context glideCtx = glideContext != null ? glideContext : getApplicationContext();
 
             Glide.with(glideCtx)
@@ -2339,7 +2403,7 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
                     .into(new CustomTarget<Bitmap>() {
                         @Override
                         public void onResourceReady(@NonNull Bitmap resource, @Nullable Transition<? super Bitmap> transition) {
-                            Bitmap finalBitmap = createCompositeBitmap(resource, paseador.getCalificacion(), paseador.isDisponible(), paseador.isEnPaseo(), isSelected);
+                            Bitmap finalBitmap = crearIconoConFoto(resource, paseador, isSelected);
                             markerOptions.icon(BitmapDescriptorFactory.fromBitmap(finalBitmap));
                             Marker existingMarker = getMarker(item);
                             if (existingMarker != null) {
@@ -2368,10 +2432,6 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
                             }
                         }
                     });
-
-            markerOptions.title(item.getTitle());
-            markerOptions.snippet(item.getSnippet());
-            cachedPaseadorMarkers.put(paseador.getPaseadorId(), paseador);
         }
 
         @Override
@@ -2380,6 +2440,13 @@ public class BusquedaPaseadoresActivity extends AppCompatActivity implements OnM
             marker.setTag(clusterItem.getPaseadorMarker().getPaseadorId()); // CR??TICO: Establecer el tag del marcador
         }
 
+        @Override
+        protected void onClusterItemUpdated(@NonNull PaseadorClusterItem item, @NonNull Marker marker) {
+            // updateItem() desde PaseadorClusterSync: posición/textos los actualiza el padre, el ícono aquí
+            super.onClusterItemUpdated(item, marker);
+            updateMarkerIcon(marker, item);
+        }
+
         private Bitmap createCompositeBitmap(Bitmap profileBitmap, double calificacion, boolean disponible, boolean enPaseo, boolean isSelected) {
             // Prevent NullPointerException if bitmap loading failed completely
             if (profileBitmap == null) {
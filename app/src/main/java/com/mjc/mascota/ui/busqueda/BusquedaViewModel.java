@@ -12,6 +12,7 @@ import androidx.lifecycle.ViewModel;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.mjc.mascota.modelo.Filtros;
 import com.mjc.mascota.modelo.PaseadorResultado;
+import com.mjc.mascotalink.util.PaginadorKeyset;
 
 import java.text.Normalizer;
 import java.util.ArrayList;
@@ -37,12 +38,15 @@ public class BusquedaViewModel extends ViewModel {
     private final MediatorLiveData<UiState<List<PaseadorResultado>>> _searchResults = new MediatorLiveData<>();
     public final LiveData<UiState<List<PaseadorResultado>>> searchResults = _searchResults;
 
-    private final MutableLiveData<SearchParameters> searchTrigger = new MutableLiveData<>();
-    private LiveData<UiState<PaseadorSearchResult>> currentSearchSource = null;
+    private static final int TAMANO_PAGINA = 15;
+    private static final int MAX_PAGINAS_EN_MEMORIA = 8;
 
-    private boolean isLoadingMore = false;
-    private boolean isLastPage = false;
-    private DocumentSnapshot lastVisibleDocument = null;
+    private final MutableLiveData<SearchParameters> searchTrigger = new MutableLiveData<>();
+    private final List<LiveData<UiState<PaseadorSearchResult>>> fuentesDePagina = new ArrayList<>();
+    private SearchParameters busquedaActual;
+    private final PaginadorKeyset<PaseadorResultado, DocumentSnapshot> paginador = new PaginadorKeyset<>(
+            this::cargarPagina, PaseadorResultado::getId, TAMANO_PAGINA, MAX_PAGINAS_EN_MEMORIA,
+            android.os.SystemClock::uptimeMillis);
 
     // Clase interna para agrupar los parámetros de búsqueda
     private static class SearchParameters {
@@ -75,13 +79,27 @@ public class BusquedaViewModel extends ViewModel {
     public BusquedaViewModel(PaseadorRepository repository) {
         this.repository = repository;
         loadPaseadoresPopulares();
+        repository.sincronizarIndiceTexto();
+
+        paginador.setListener(new PaginadorKeyset.Listener<PaseadorResultado>() {
+            @Override
+            public void onItems(List<PaseadorResultado> items) {
+                if (!items.isEmpty()) {
+                    _searchResults.setValue(UiState.success(items));
+                } else if (!paginador.hayMas()) {
+                    _searchResults.setValue(UiState.empty());
+                }
+            }
 
-        _searchResults.addSource(searchTrigger, params -> {
-            isLastPage = false;
-            lastVisibleDocument = null;
-            isLoadingMore = false;
-            executeSearch(params, false);
+            @Override
+            public void onError(Exception e) {
+                if (paginador.getItems().isEmpty()) {
+                    _searchResults.setValue(UiState.error(e.getMessage()));
+                }
+            }
         });
+
+        _searchResults.addSource(searchTrigger, this::executeSearch);
     }
 
     public LiveData<UiState<List<PaseadorResultado>>> getPaseadoresPopularesState() {
@@ -159,79 +177,53 @@ public class BusquedaViewModel extends ViewModel {
         return new Filtros();
     }
 
+    /** Scroll de la lista de resultados: el paginador decide si adelantar la próxima página. */
+    public void onScrollResultados(int primeraVisible, int ultimaVisible) {
+        paginador.onScroll(primeraVisible, ultimaVisible);
+    }
+
     public void loadMore() {
-        if (isLoadingMore || isLastPage) return;
-        SearchParameters currentParams = searchTrigger.getValue();
-        if (currentParams != null) {
-            executeSearch(currentParams, true);
-        }
+        paginador.cargarSiguiente();
     }
-    
-    private void executeSearch(SearchParameters params, final boolean isPaginating) {
-        if (!isPaginating) {
-            _searchResults.setValue(UiState.loading());
-        }
 
-        if (currentSearchSource != null) {
-            _searchResults.removeSource(currentSearchSource);
+    private void executeSearch(SearchParameters params) {
+        // Cambio de texto o filtros: las páginas en curso se ignoran
+        for (LiveData<UiState<PaseadorSearchResult>> fuente : fuentesDePagina) {
+            _searchResults.removeSource(fuente);
         }
-
-        isLoadingMore = true;
-        currentSearchSource = repository.buscarPaseadores(params.query, lastVisibleDocument, params.filtros);
-
-        _searchResults.addSource(currentSearchSource, uiState -> {
+        fuentesDePagina.clear();
+        busquedaActual = params;
+        _searchResults.setValue(UiState.loading());
+        paginador.reiniciar();
+    }
+
+    /**
+     * Fuente del paginador sobre el repositorio. La primera página puede venir de caché o del
+     * índice local (sin cursor); si hay que seguir sin cursor se va directo a Firestore y el
+     * paginador descarta los repetidos.
+     */
+    private void cargarPagina(DocumentSnapshot cursor, int numeroPagina, int tamanoPagina,
+                              PaginadorKeyset.Respuesta<PaseadorResultado, DocumentSnapshot> respuesta) {
+        SearchParameters params = busquedaActual;
+        LiveData<UiState<PaseadorSearchResult>> fuente = (cursor == null && numeroPagina > 0)
+                ? repository.buscarPaseadoresEnRed(params.query, params.filtros)
+                : repository.buscarPaseadores(params.query, cursor, params.filtros);
+        fuentesDePagina.add(fuente);
+        _searchResults.addSource(fuente, uiState -> {
             if (uiState instanceof UiState.Success) {
-                handleSuccess(uiState, isPaginating);
-            } else {
-                handleLoadingOrError(uiState);
+                PaseadorSearchResult resultado = ((UiState.Success<PaseadorSearchResult>) uiState).getData();
+                List<PaseadorResultado> items = resultado != null && resultado.resultados != null
+                        ? resultado.resultados : new ArrayList<>();
+                respuesta.entregar(items, resultado != null ? resultado.lastVisible : null,
+                        items.size() >= tamanoPagina);
+            } else if (uiState instanceof UiState.Empty) {
+                respuesta.entregar(new ArrayList<>(), null, false);
+            } else if (uiState instanceof UiState.Error) {
+                respuesta.fallar(new Exception(((UiState.Error<PaseadorSearchResult>) uiState).getMessage()));
             }
         });
     }
 
-    private void handleSuccess(UiState<PaseadorSearchResult> uiState, boolean isPaginating) {
-        PaseadorSearchResult searchResult = ((UiState.Success<PaseadorSearchResult>) uiState).getData();
-        if (searchResult == null) {
-            _searchResults.setValue(UiState.empty());
-            isLastPage = true;
-            isLoadingMore = false;
-            return;
-        }
-
-        lastVisibleDocument = searchResult.lastVisible;
-        List<PaseadorResultado> newResults = searchResult.resultados;
-
-        if (newResults == null || newResults.isEmpty()) {
-            if (!isPaginating) {
-                _searchResults.setValue(UiState.empty());
-            }
-            isLastPage = true;
-        } else {
-            if (newResults.size() < 15) { // Límite de página
-                isLastPage = true;
-            }
-
-            if (isPaginating) {
-                UiState<List<PaseadorResultado>> currentState = _searchResults.getValue();
-                if (currentState instanceof UiState.Success) {
-                    List<PaseadorResultado> currentList = new ArrayList<>(((UiState.Success<List<PaseadorResultado>>) currentState).getData());
-                    currentList.addAll(newResults);
-                    _searchResults.setValue(UiState.success(currentList));
-                }
-            } else {
-                _searchResults.setValue(UiState.success(newResults));
-            }
-        }
-        isLoadingMore = false;
-    }
-
-    private void handleLoadingOrError(UiState<PaseadorSearchResult> uiState) {
-        _searchResults.setValue((UiState) uiState);
-        if (uiState instanceof UiState.Empty) {
-            isLastPage = true;
-        }
-        isLoadingMore = false;
-    }
-
     public void toggleFavorito(String paseadorId, boolean isFavorito) {
         repository.toggleFavorito(paseadorId, isFavorito);
     }
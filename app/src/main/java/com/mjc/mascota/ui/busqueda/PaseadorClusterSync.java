@@ -0,0 +1,92 @@
+package com.mjc.mascota.ui.busqueda;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mantiene los items del ClusterManager al día con los paseadores a mostrar aplicando
+ * solo la diferencia: agrega los nuevos, quita los que ya no están y actualiza los que
+ * cambiaron de contenido (según su huella). Los que siguen iguales no se tocan, así el
+ * renderer no vuelve a generar sus íconos.
+ *
+ * @param <V> dato del paseador (PaseadorMarker)
+ * @param <T> item del cluster
+ */
+public class PaseadorClusterSync<V, T> {
+
+    public interface Adaptador<V, T> {
+        T crearItem(V valor);
+
+        /** Huella de lo que se ve en el mapa; si no cambia, el item no se actualiza. */
+        int huella(V valor);
+    }
+
+    public static final class Cambios<T> {
+        public final List<T> agregar = new ArrayList<>();
+        public final List<T> quitar = new ArrayList<>();
+        public final List<T> actualizar = new ArrayList<>();
+
+        public boolean isEmpty() {
+            return agregar.isEmpty() && quitar.isEmpty() && actualizar.isEmpty();
+        }
+    }
+
+    private final Adaptador<V, T> adaptador;
+    private final Map<String, T> items = new HashMap<>();
+    private final Map<String, Integer> huellas = new HashMap<>();
+
+    public PaseadorClusterSync(Adaptador<V, T> adaptador) {
+        this.adaptador = adaptador;
+    }
+
+    /**
+     * Calcula los cambios para pasar del estado actual a {@code deseados} y los da por
+     * aplicados: el llamador debe llevarlos al ClusterManager.
+     */
+    public Cambios<T> sincronizar(Map<String, V> deseados) {
+        Cambios<T> cambios = new Cambios<>();
+
+        Iterator<Map.Entry<String, T>> it = items.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, T> actual = it.next();
+            if (!deseados.containsKey(actual.getKey())) {
+                cambios.quitar.add(actual.getValue());
+                huellas.remove(actual.getKey());
+                it.remove();
+            }
+        }
+
+        for (Map.Entry<String, V> e : deseados.entrySet()) {
+            String id = e.getKey();
+            int huella = adaptador.huella(e.getValue());
+            Integer previa = huellas.get(id);
+            if (previa != null && previa == huella) continue;
+
+            T item = adaptador.crearItem(e.getValue());
+            if (previa == null) {
+                cambios.agregar.add(item);
+            } else {
+                cambios.actualizar.add(item);
+            }
+            items.put(id, item);
+            huellas.put(id, huella);
+        }
+        return cambios;
+    }
+
+    public T getItem(String id) {
+        return id != null ? items.get(id) : null;
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    public void limpiar() {
+        items.clear();
+        huellas.clear();
+    }
+}
@@ -0,0 +1,144 @@
+package com.mjc.mascota.ui.busqueda;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Carga documentos de detalle por id agrupando los pedidos en consultas de hasta
+ * {@link #MAX_IDS_POR_CONSULTA} ids (whereIn sobre documentId) en vez de un get() por
+ * resultado.
+ *
+ * - Lo ya cargado se guarda por id y sirve para las páginas siguientes.
+ * - Un id que ya está en consulta no se vuelve a pedir: el pedido nuevo espera esa respuesta.
+ * - Cada lote se entrega apenas llega, así la pantalla se completa de a poco.
+ *
+ * No es thread-safe: se usa desde el hilo principal, donde llegan los callbacks de Firestore.
+ *
+ * @param <D> documento de detalle (DocumentSnapshot en la app)
+ */
+public class PaseadorDetalleLoader<D> {
+
+    /** Límite de valores de un filtro "in" en Firestore. */
+    static final int MAX_IDS_POR_CONSULTA = 30;
+    private static final int MAX_EN_CACHE = 200;
+
+    public interface Fuente<D> {
+        /** Consulta los ids (a lo sumo {@link #MAX_IDS_POR_CONSULTA}) y responde por id. */
+        void consultar(List<String> ids, Respuesta<D> respuesta);
+    }
+
+    public interface Respuesta<D> {
+        void onExito(Map<String, D> documentos);
+
+        void onError(Exception e);
+    }
+
+    public interface Listener<D> {
+        /** Documentos disponibles de este lote; los ids sin documento no se incluyen. */
+        void onDetalles(Map<String, D> documentos);
+    }
+
+    private final Fuente<D> fuente;
+    private final Map<String, D> cache = new LinkedHashMap<String, D>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, D> eldest) {
+            return size() > MAX_EN_CACHE;
+        }
+    };
+    private final Set<String> sinDocumento = new HashSet<>();
+    private final Map<String, List<Listener<D>>> enVuelo = new HashMap<>();
+    private int consultas;
+
+    public PaseadorDetalleLoader(Fuente<D> fuente) {
+        this.fuente = fuente;
+    }
+
+    /**
+     * Pide los detalles de {@code ids}. Lo cacheado se entrega enseguida en una sola llamada;
+     * el resto llega en una llamada por lote.
+     */
+    public void cargar(Collection<String> ids, Listener<D> listener) {
+        Map<String, D> cacheados = new HashMap<>();
+        List<String> faltantes = new ArrayList<>();
+        for (String id : new LinkedHashSet<>(ids)) {
+            D doc = cache.get(id);
+            if (doc != null) {
+                cacheados.put(id, doc);
+            } else if (sinDocumento.contains(id)) {
+                continue;
+            } else if (enVuelo.containsKey(id)) {
+                enVuelo.get(id).add(listener);
+            } else {
+                faltantes.add(id);
+            }
+        }
+        if (!cacheados.isEmpty()) {
+            listener.onDetalles(cacheados);
+        }
+
+        for (int desde = 0; desde < faltantes.size(); desde += MAX_IDS_POR_CONSULTA) {
+            List<String> lote = new ArrayList<>(
+                    faltantes.subList(desde, Math.min(desde + MAX_IDS_POR_CONSULTA, faltantes.size())));
+            for (String id : lote) {
+                List<Listener<D>> esperando = new ArrayList<>();
+                esperando.add(listener);
+                enVuelo.put(id, esperando);
+            }
+            consultas++;
+            fuente.consultar(lote, new Respuesta<D>() {
+                @Override
+                public void onExito(Map<String, D> documentos) {
+                    completarLote(lote, documentos, true);
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    // Sin cachear el fallo: se podrá volver a pedir
+                    completarLote(lote, new HashMap<>(), false);
+                }
+            });
+        }
+    }
+
+    private void completarLote(List<String> lote, Map<String, D> documentos, boolean exito) {
+        Map<Listener<D>, Map<String, D>> porListener = new LinkedHashMap<>();
+        for (String id : lote) {
+            List<Listener<D>> esperando = enVuelo.remove(id);
+            D doc = documentos.get(id);
+            if (doc == null) {
+                if (exito) sinDocumento.add(id);
+                continue;
+            }
+            cache.put(id, doc);
+            if (esperando == null) continue;
+            for (Listener<D> l : esperando) {
+                Map<String, D> docs = porListener.get(l);
+                if (docs == null) {
+                    docs = new HashMap<>();
+                    porListener.put(l, docs);
+                }
+                docs.put(id, doc);
+            }
+        }
+        for (Map.Entry<Listener<D>, Map<String, D>> e : porListener.entrySet()) {
+            e.getKey().onDetalles(e.getValue());
+        }
+    }
+
+    /** Descarta lo cargado (refresco manual); las consultas en curso siguen. */
+    public void invalidar() {
+        cache.clear();
+        sinDocumento.clear();
+    }
+
+    int getConsultas() {
+        return consultas;
+    }
+}
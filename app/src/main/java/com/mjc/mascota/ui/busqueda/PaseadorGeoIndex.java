@@ -0,0 +1,264 @@
+package com.mjc.mascota.ui.busqueda;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Índice espacial en memoria de los paseadores ya descargados de paseadores_search.
+ *
+ * Las entradas se ordenan por geohash, igual que la consulta de Firestore
+ * (orderBy ubicacion_geohash + startAt/endAt), así que una celda es un rango del mapa.
+ * Cada celda consultada guarda cuándo se descargó: una celda (o cualquier prefijo suyo)
+ * fresca se responde localmente y solo las celdas sin cubrir o vencidas van a la red.
+ *
+ * No es thread-safe: se usa desde el hilo principal, donde llegan los callbacks de Firestore.
+ *
+ * @param <T> dato que se muestra en el mapa (PaseadorMarker en la app)
+ */
+public class PaseadorGeoIndex<T> {
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+    private static final double METROS_POR_GRADO = 111_320.0;
+    private static final double RADIO_TIERRA_M = 6_371_000.0;
+    static final int MAX_CELDAS_POR_BUSQUEDA = 9;
+    private static final int PRECISION_MAXIMA = 6;
+
+    /** Fin de rango de un prefijo de geohash (mismo sufijo que usa GeoFire). */
+    static final String FIN_RANGO = "~";
+
+    public static final class Entrada<T> {
+        final String id;
+        final String geohash;
+        final double lat;
+        final double lng;
+        final T valor;
+
+        public Entrada(String id, String geohash, double lat, double lng, T valor) {
+            this.id = id;
+            this.geohash = geohash;
+            this.lat = lat;
+            this.lng = lng;
+            this.valor = valor;
+        }
+    }
+
+    private final long ttlMs;
+    private final TreeMap<String, Entrada<T>> porGeohash = new TreeMap<>();
+    private final Map<String, String> clavePorId = new HashMap<>();
+    private final Map<String, Long> celdasCargadas = new HashMap<>();
+    private final Set<String> celdasEnVuelo = new HashSet<>();
+
+    public PaseadorGeoIndex(long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Celdas de geohash que faltan para responder la búsqueda: sin cargar, vencidas y que
+     * no estén ya en consulta. Las devueltas quedan marcadas en vuelo hasta
+     * {@link #reemplazarCelda} o {@link #cancelarCelda}.
+     */
+    public List<String> celdasPendientes(double lat, double lng, double radioMetros, long ahoraMs) {
+        List<String> pendientes = new ArrayList<>();
+        for (String celda : celdasQueCubren(lat, lng, radioMetros)) {
+            if (celdasEnVuelo.contains(celda) || estaCubierta(celda, ahoraMs)) continue;
+            celdasEnVuelo.add(celda);
+            pendientes.add(celda);
+        }
+        return pendientes;
+    }
+
+    /**
+     * Reemplaza el contenido de una celda con el resultado de su consulta.
+     *
+     * Se borra todo el rango de la celda, incluidas las entradas de celdas más finas
+     * cargadas antes; por eso esas celdas pierden su marca de frescas y se vuelven a pedir
+     * (si la consulta llegó al límite, lo que tenían ya no está en el índice).
+     *
+     * @param completa false si la consulta llegó al límite: lo guardado sirve para mostrar,
+     *                 pero la celda no cuenta como cubierta y se vuelve a pedir
+     * @return ids que dejaron de estar en el índice (se desconectaron o salieron de la celda)
+     */
+    public List<String> reemplazarCelda(String celda, List<Entrada<T>> resultados, boolean completa, long ahoraMs) {
+        celdasEnVuelo.remove(celda);
+
+        Set<String> anteriores = new HashSet<>();
+        SortedMap<String, Entrada<T>> rango = porGeohash.subMap(celda, celda + FIN_RANGO);
+        for (Entrada<T> e : rango.values()) {
+            anteriores.add(e.id);
+            clavePorId.remove(e.id);
+        }
+        rango.clear();
+
+        for (Entrada<T> e : resultados) {
+            String clavePrevia = clavePorId.remove(e.id);
+            if (clavePrevia != null) {
+                porGeohash.remove(clavePrevia); // Se movió desde otra celda
+            }
+            String clave = e.geohash + "/" + e.id;
+            porGeohash.put(clave, e);
+            clavePorId.put(e.id, clave);
+            anteriores.remove(e.id);
+        }
+
+        celdasCargadas.keySet().removeIf(c -> c.length() > celda.length() && c.startsWith(celda));
+        if (completa) {
+            celdasCargadas.put(celda, ahoraMs);
+        } else {
+            celdasCargadas.remove(celda);
+        }
+        return new ArrayList<>(anteriores);
+    }
+
+    /** La consulta de la celda falló: se podrá volver a pedir. */
+    public void cancelarCelda(String celda) {
+        celdasEnVuelo.remove(celda);
+    }
+
+    /**
+     * Paseadores indexados dentro del radio, ordenados por distancia.
+     */
+    public List<T> buscar(double lat, double lng, double radioMetros) {
+        List<Entrada<T>> encontradas = new ArrayList<>();
+        List<Double> distancias = new ArrayList<>();
+        for (String celda : celdasQueCubren(lat, lng, radioMetros)) {
+            for (Entrada<T> e : porGeohash.subMap(celda, celda + FIN_RANGO).values()) {
+                double d = distanciaMetros(lat, lng, e.lat, e.lng);
+                if (d <= radioMetros) {
+                    encontradas.add(e);
+                    distancias.add(d);
+                }
+            }
+        }
+        Integer[] orden = new Integer[encontradas.size()];
+        for (int i = 0; i < orden.length; i++) orden[i] = i;
+        Arrays.sort(orden, (a, b) -> Double.compare(distancias.get(a), distancias.get(b)));
+
+        List<T> resultado = new ArrayList<>(orden.length);
+        for (Integer i : orden) {
+            resultado.add(encontradas.get(i).valor);
+        }
+        return resultado;
+    }
+
+    public boolean contiene(String id) {
+        return clavePorId.containsKey(id);
+    }
+
+    public int size() {
+        return porGeohash.size();
+    }
+
+    /**
+     * Fuerza a que la próxima búsqueda vuelva a la red (refresco manual).
+     * Las entradas se conservan para seguir mostrándolas mientras tanto.
+     */
+    public void invalidar() {
+        celdasCargadas.clear();
+    }
+
+    public void limpiar() {
+        porGeohash.clear();
+        clavePorId.clear();
+        celdasCargadas.clear();
+        celdasEnVuelo.clear();
+    }
+
+    private boolean estaCubierta(String celda, long ahoraMs) {
+        for (int len = 1; len <= celda.length(); len++) {
+            Long cargada = celdasCargadas.get(celda.substring(0, len));
+            if (cargada != null && ahoraMs - cargada < ttlMs) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Celdas que cubren el rectángulo del círculo, con la mayor precisión que no pase de
+     * {@link #MAX_CELDAS_POR_BUSQUEDA} celdas (como GeoFire, pero alineadas a celdas fijas
+     * para poder reutilizarlas entre búsquedas).
+     */
+    static List<String> celdasQueCubren(double lat, double lng, double radioMetros) {
+        double dLat = radioMetros / METROS_POR_GRADO;
+        double dLng = radioMetros / (METROS_POR_GRADO * Math.max(0.01, Math.cos(Math.toRadians(lat))));
+        double minLat = Math.max(-90, lat - dLat);
+        double maxLat = Math.min(90, lat + dLat);
+        double minLng = Math.max(-180, lng - dLng);
+        double maxLng = Math.min(180, lng + dLng);
+
+        for (int precision = PRECISION_MAXIMA; precision >= 1; precision--) {
+            int bits = precision * 5;
+            double altoCelda = 180.0 / (1L << (bits / 2));
+            double anchoCelda = 360.0 / (1L << (bits - bits / 2));
+            long filaMin = (long) Math.floor((minLat + 90) / altoCelda);
+            long filaMax = (long) Math.floor(Math.min(maxLat + 90, 180 - 1e-9) / altoCelda);
+            long colMin = (long) Math.floor((minLng + 180) / anchoCelda);
+            long colMax = (long) Math.floor(Math.min(maxLng + 180, 360 - 1e-9) / anchoCelda);
+            long total = (filaMax - filaMin + 1) * (colMax - colMin + 1);
+            if (total > MAX_CELDAS_POR_BUSQUEDA && precision > 1) continue;
+
+            List<String> celdas = new ArrayList<>((int) total);
+            for (long fila = filaMin; fila <= filaMax; fila++) {
+                for (long col = colMin; col <= colMax; col++) {
+                    celdas.add(geohash(-90 + (fila + 0.5) * altoCelda, -180 + (col + 0.5) * anchoCelda, precision));
+                }
+            }
+            return celdas;
+        }
+        return Collections.emptyList();
+    }
+
+    static String geohash(double lat, double lng, int precision) {
+        double latMin = -90;
+        double latMax = 90;
+        double lngMin = -180;
+        double lngMax = 180;
+        StringBuilder sb = new StringBuilder(precision);
+        boolean esLng = true;
+        int bit = 0;
+        int valor = 0;
+        while (sb.length() < precision) {
+            if (esLng) {
+                double medio = (lngMin + lngMax) / 2;
+                valor <<= 1;
+                if (lng >= medio) {
+                    valor |= 1;
+                    lngMin = medio;
+                } else {
+                    lngMax = medio;
+                }
+            } else {
+                double medio = (latMin + latMax) / 2;
+                valor <<= 1;
+                if (lat >= medio) {
+                    valor |= 1;
+                    latMin = medio;
+                } else {
+                    latMax = medio;
+                }
+            }
+            esLng = !esLng;
+            if (++bit == 5) {
+                sb.append(BASE32.charAt(valor));
+                bit = 0;
+                valor = 0;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static double distanciaMetros(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * RADIO_TIERRA_M * Math.asin(Math.sqrt(a));
+    }
+}
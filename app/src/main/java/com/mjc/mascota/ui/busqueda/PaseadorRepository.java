@@ -9,10 +9,12 @@ import com.google.android.gms.tasks.Task;
 import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
 import com.mjc.mascota.modelo.PaseadorResultado;
 
 import java.util.ArrayList;
@@ -25,27 +27,52 @@ import com.mjc.mascota.utils.FirestoreConstants;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import android.content.SharedPreferences;
-import android.text.TextUtils;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class PaseadorRepository {
     private static final String TAG = "PaseadorRepository";
-    private static final String POPULARES_CACHE_PREF = "paseadores_populares_cache";
-    private static final String POPULARES_CACHE_KEY = "populares_json";
     private static final String SEARCH_CACHE_PREF = "paseadores_search_cache";
     private static final String SEARCH_HISTORY_KEY = "search_history";
     private static final int MAX_SEARCH_HISTORY = 10;
     private static final long SEARCH_CACHE_EXPIRY_MS = 5 * 60 * 1000; // 5 minutos
+    private static final long POPULARES_CACHE_EXPIRY_MS = 15 * 60 * 1000; // 15 minutos
+    private static final long TARJETA_CACHE_EXPIRY_MS = 30 * 60 * 1000; // 30 minutos
+    private static final long INDICE_TEXTO_SYNC_MS = 2 * 60 * 1000; // 2 minutos
+    private static final int INDICE_TEXTO_LOTE = 300;
+    private static final int INDICE_TEXTO_MAX_RESULTADOS = 50;
+    private static final String INDICE_TEXTO_MARCA_KEY = "indice_texto_updated_at_ms";
+    private static final String FIELD_UPDATED_AT = "updated_at";
+
+    // Claves de BusquedaCache (por usuario: las tarjetas llevan el flag de favorito)
+    private static final String CACHE_POPULARES = "populares|";
+    private static final String CACHE_BUSQUEDA = "busqueda|";
+    private static final String CACHE_TARJETA = "tarjeta|";
+
+    // E/S de disco de la caché fuera del hilo principal
+    private static final ExecutorService CACHE_EXECUTOR = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     private final FirebaseFirestore db = FirebaseFirestore.getInstance();
     private final List<ListenerRegistration> listeners = new ArrayList<>();
-    private final java.util.Map<String, CachedSearchResult> searchCache = new java.util.LinkedHashMap<String, CachedSearchResult>(16, 0.75f, true) {
-        @Override
-        protected boolean removeEldestEntry(java.util.Map.Entry<String, CachedSearchResult> eldest) {
-            return size() > 20;
-        }
-    };
     private final MutableLiveData<Filtros> _filtros = new MutableLiveData<>(new Filtros());
 
+    // Índice de texto local compartido entre pantallas; Firestore solo lo refresca por updated_at
+    private static final PaseadorTextoIndex<PaseadorResultado> indiceTexto = new PaseadorTextoIndex<>();
+    private static long indiceTextoMarcaMs = -1;
+    private static long indiceTextoSyncMs;
+    private static boolean indiceTextoSincronizando;
+    private static java.util.Set<String> favoritosIndice = new java.util.HashSet<>();
+
+    // Detalles que faltan en paseadores_search, en lotes de whereIn y cacheados entre páginas
+    private final PaseadorDetalleLoader<DocumentSnapshot> perfilesLoader =
+            crearDetalleLoader(FirestoreConstants.COLLECTION_PASEADORES);
+    private final PaseadorDetalleLoader<DocumentSnapshot> usuariosLoader =
+            crearDetalleLoader(FirestoreConstants.COLLECTION_USUARIOS);
+
     // --- Filtros ---
     public LiveData<Filtros> getFiltros() {
         return _filtros;
@@ -95,11 +122,22 @@ public class PaseadorRepository {
         MutableLiveData<UiState<List<PaseadorResultado>>> liveData = new MutableLiveData<>();
         liveData.setValue(new UiState.Loading<>());
 
-        List<PaseadorResultado> cached = readCachedPopulares();
-        if (cached != null && !cached.isEmpty()) {
-            liveData.setValue(new UiState.Success<>(cached));
-        }
+        // Stale-while-revalidate: lo cacheado se muestra ya; si está vencido además se consulta
+        String clave = CACHE_POPULARES + uidActual();
+        leerResultadosCacheados(clave, cacheados -> {
+            if (cacheados != null && !cacheados.resultados.isEmpty()) {
+                liveData.setValue(new UiState.Success<>(cacheados.resultados));
+                if (cacheados.fresco) {
+                    Log.d(TAG, "Populares desde caché (frescos)");
+                    return;
+                }
+            }
+            consultarPaseadoresPopulares(liveData, clave);
+        });
+        return liveData;
+    }
 
+    private void consultarPaseadoresPopulares(MutableLiveData<UiState<List<PaseadorResultado>>> liveData, String clave) {
         // OPTIMIZACIÓN: Usar paseadores_search directamente (1 sola consulta)
         // En vez de usuarios + paseadores + zonasServicio (22 consultas)
         Query query = db.collection("paseadores_search")
@@ -112,7 +150,9 @@ public class PaseadorRepository {
         query.get().addOnCompleteListener(task -> {
             if (!task.isSuccessful()) {
                 Log.e(TAG, "Error al obtener paseadores populares", task.getException());
-                liveData.setValue(new UiState.Error<>("Error al cargar los paseadores populares."));
+                if (!(liveData.getValue() instanceof UiState.Success)) {
+                    liveData.setValue(new UiState.Error<>("Error al cargar los paseadores populares."));
+                }
                 return;
             }
 
@@ -135,7 +175,7 @@ public class PaseadorRepository {
                     }
 
                     liveData.setValue(new UiState.Success<>(resultados));
-                    cachePopulares(resultados);
+                    guardarResultadosCacheados(clave, resultados, POPULARES_CACHE_EXPIRY_MS);
                 }).addOnFailureListener(e -> {
                     Log.e(TAG, "Error al obtener favoritos", e);
                     // Continuar sin favoritos
@@ -148,28 +188,6 @@ public class PaseadorRepository {
                 });
             }
         });
-
-        return liveData;
-    }
-
-    private LiveData<UiState<List<PaseadorResultado>>> combineUserDataWithPaseadorData(QuerySnapshot userSnapshots) {
-        MutableLiveData<UiState<List<PaseadorResultado>>> liveData = new MutableLiveData<>();
-
-        com.google.firebase.auth.FirebaseUser currentUser = com.google.firebase.auth.FirebaseAuth.getInstance().getCurrentUser();
-        Task<QuerySnapshot> favoritosTask = getFavoritosTask(currentUser);
-
-        favoritosTask.addOnSuccessListener(favoritosSnapshot -> {
-            java.util.Set<String> favoritosIds = extractFavoritosIds(favoritosSnapshot);
-            List<Task<DocumentSnapshot>> paseadorTasks = createPaseadorTasks(userSnapshots);
-
-            Tasks.whenAllSuccess(paseadorTasks).addOnSuccessListener(paseadorDocs ->
-                processPaseadoresData(userSnapshots, paseadorDocs, favoritosIds, liveData))
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error al combinar datos de paseadores populares", e);
-                    liveData.setValue(new UiState.Error<>("No se pudieron cargar los perfiles completos."));
-                });
-        });
-        return liveData;
     }
 
     private Task<QuerySnapshot> getFavoritosTask(com.google.firebase.auth.FirebaseUser currentUser) {
@@ -191,64 +209,6 @@ public class PaseadorRepository {
         return favoritosIds;
     }
 
-    private List<Task<DocumentSnapshot>> createPaseadorTasks(QuerySnapshot userSnapshots) {
-        List<Task<DocumentSnapshot>> paseadorTasks = new ArrayList<>();
-        for (DocumentSnapshot userDoc : userSnapshots) {
-            paseadorTasks.add(db.collection(FirestoreConstants.COLLECTION_PASEADORES)
-                .document(userDoc.getId()).get());
-        }
-        return paseadorTasks;
-    }
-
-    private void processPaseadoresData(QuerySnapshot userSnapshots, List<Object> paseadorDocs,
-                                       java.util.Set<String> favoritosIds,
-                                       MutableLiveData<UiState<List<PaseadorResultado>>> liveData) {
-        ArrayList<PaseadorResultado> resultados = new ArrayList<>();
-        List<Task<QuerySnapshot>> zonaTasks = new ArrayList<>();
-
-        for (int i = 0; i < userSnapshots.size(); i++) {
-            DocumentSnapshot userDoc = userSnapshots.getDocuments().get(i);
-            DocumentSnapshot paseadorDoc = (DocumentSnapshot) paseadorDocs.get(i);
-
-            if (!isValidPaseador(paseadorDoc)) continue;
-
-            PaseadorResultado resultado = buildPaseadorResultado(userDoc, paseadorDoc, favoritosIds);
-            resultados.add(resultado);
-
-            zonaTasks.add(db.collection(FirestoreConstants.COLLECTION_PASEADORES)
-                .document(paseadorDoc.getId())
-                .collection(FirestoreConstants.COLLECTION_ZONAS_SERVICIO)
-                .limit(1).get());
-        }
-
-        loadZonasAndComplete(zonaTasks, resultados, liveData);
-    }
-
-    private boolean isValidPaseador(DocumentSnapshot paseadorDoc) {
-        if (!paseadorDoc.exists()) return false;
-        String estado = paseadorDoc.getString(FirestoreConstants.FIELD_VERIFICACION_ESTADO);
-        return FirestoreConstants.STATUS_APROBADO.equals(estado);
-    }
-
-    private PaseadorResultado buildPaseadorResultado(DocumentSnapshot userDoc, DocumentSnapshot paseadorDoc,
-                                                     java.util.Set<String> favoritosIds) {
-        PaseadorResultado resultado = new PaseadorResultado();
-        resultado.setId(userDoc.getId());
-        resultado.setNombre(getStringSafely(userDoc, FirestoreConstants.FIELD_NOMBRE_DISPLAY, FirestoreConstants.DEFAULT_NAME));
-        resultado.setFotoUrl(getStringSafely(userDoc, FirestoreConstants.FIELD_FOTO_PERFIL, null));
-        resultado.setCalificacion(getDoubleSafely(paseadorDoc, FirestoreConstants.FIELD_CALIFICACION_PROMEDIO, 0.0));
-        resultado.setTotalResenas(getLongSafely(paseadorDoc, FirestoreConstants.FIELD_NUM_SERVICIOS_COMPLETADOS, 0L).intValue());
-        resultado.setTarifaPorHora(getDoubleSafely(paseadorDoc, FirestoreConstants.FIELD_PRECIO_HORA, 0.0));
-        resultado.setFavorito(favoritosIds.contains(userDoc.getId()));
-
-        String estadoPresencia = getStringSafely(userDoc, FirestoreConstants.FIELD_ESTADO, FirestoreConstants.STATUS_OFFLINE);
-        resultado.setEnLinea(FirestoreConstants.STATUS_ONLINE.equalsIgnoreCase(estadoPresencia));
-
-        setExperienciaFromString(resultado, paseadorDoc);
-
-        return resultado;
-    }
-
     private void setExperienciaFromString(PaseadorResultado resultado, DocumentSnapshot paseadorDoc) {
         String experienciaStr = getStringSafely(paseadorDoc, FirestoreConstants.FIELD_EXPERIENCIA_GENERAL, "0");
         try {
@@ -259,67 +219,19 @@ public class PaseadorRepository {
         }
     }
 
-    private void loadZonasAndComplete(List<Task<QuerySnapshot>> zonaTasks,
-                                     ArrayList<PaseadorResultado> resultados,
-                                     MutableLiveData<UiState<List<PaseadorResultado>>> liveData) {
-        Tasks.whenAllSuccess(zonaTasks).addOnSuccessListener(zonaSnapshots -> {
-            for (int i = 0; i < zonaSnapshots.size(); i++) {
-                QuerySnapshot zonaSnapshot = (QuerySnapshot) zonaSnapshots.get(i);
-                String zona = extractZonaPrincipal(zonaSnapshot);
-                resultados.get(i).setZonaPrincipal(zona);
-            }
-            liveData.setValue(new UiState.Success<>(resultados));
-        }).addOnFailureListener(e -> liveData.setValue(new UiState.Success<>(resultados)));
-    }
-
-    private String extractZonaPrincipal(QuerySnapshot zonaSnapshot) {
-        if (!zonaSnapshot.isEmpty()) {
-            String direccion = zonaSnapshot.getDocuments().get(0).getString(FirestoreConstants.FIELD_DIRECCION);
-            return direccion != null ? direccion : FirestoreConstants.DEFAULT_ZONE;
-        }
-        return FirestoreConstants.DEFAULT_ZONE;
-    }
-
-    private void cachePopulares(List<PaseadorResultado> data) {
-        try {
-            JSONArray array = new JSONArray();
-            for (PaseadorResultado p : data) {
-                JSONObject obj = new JSONObject();
-                obj.put(FirestoreConstants.FIELD_ID, p.getId());
-                obj.put(FirestoreConstants.FIELD_NOMBRE, p.getNombre());
-                obj.put("foto", p.getFotoUrl());
-                obj.put("calificacion", p.getCalificacion());
-                obj.put("totalResenas", p.getTotalResenas());
-                obj.put("tarifa", p.getTarifaPorHora());
-                obj.put("zona", p.getZonaPrincipal());
-                obj.put("favorito", p.isFavorito());
-                obj.put("enLinea", p.isEnLinea());
-                obj.put("anosExp", p.getAnosExperiencia());
-                array.put(obj);
-            }
-            SharedPreferences prefs = MyApplication.getAppContext().getSharedPreferences(POPULARES_CACHE_PREF, android.content.Context.MODE_PRIVATE);
-            prefs.edit().putString(POPULARES_CACHE_KEY, array.toString()).apply();
-        } catch (Exception e) {
-            Log.w(TAG, "No se pudo cachear populares", e);
-        }
-    }
-
-    private List<PaseadorResultado> readCachedPopulares() {
-        try {
-            SharedPreferences prefs = MyApplication.getAppContext().getSharedPreferences(POPULARES_CACHE_PREF, android.content.Context.MODE_PRIVATE);
-            String raw = prefs.getString(POPULARES_CACHE_KEY, null);
-            if (TextUtils.isEmpty(raw)) return null;
-
-            JSONArray array = new JSONArray(raw);
-            List<PaseadorResultado> list = new ArrayList<>();
-            for (int i = 0; i < array.length(); i++) {
-                list.add(parsePaseadorFromJson(array.getJSONObject(i)));
-            }
-            return list;
-        } catch (Exception e) {
-            Log.w(TAG, "No se pudo leer cache de populares", e);
-            return null;
-        }
+    private JSONObject paseadorToJson(PaseadorResultado p) throws org.json.JSONException {
+        JSONObject obj = new JSONObject();
+        obj.put(FirestoreConstants.FIELD_ID, p.getId());
+        obj.put(FirestoreConstants.FIELD_NOMBRE, p.getNombre());
+        obj.put("foto", p.getFotoUrl());
+        obj.put("calificacion", p.getCalificacion());
+        obj.put("totalResenas", p.getTotalResenas());
+        obj.put("tarifa", p.getTarifaPorHora());
+        obj.put("zona", p.getZonaPrincipal());
+        obj.put("favorito", p.isFavorito());
+        obj.put("enLinea", p.isEnLinea());
+        obj.put("anosExp", p.getAnosExperiencia());
+        return obj;
     }
 
     private PaseadorResultado parsePaseadorFromJson(JSONObject obj) {
@@ -340,17 +252,51 @@ public class PaseadorRepository {
     public LiveData<UiState<PaseadorSearchResult>> buscarPaseadores(String query, DocumentSnapshot lastVisible, Filtros filtros) {
         MutableLiveData<UiState<PaseadorSearchResult>> liveData = new MutableLiveData<>();
 
-        if (lastVisible == null) {
-            List<PaseadorResultado> cached = getCachedResults(query, filtros);
-            if (cached != null && !cached.isEmpty()) {
-                Log.d(TAG, "Retornando resultados cacheados para: " + query);
-                liveData.setValue(new UiState.Success<>(new PaseadorSearchResult(new ArrayList<>(cached), null)));
-                return liveData;
+        if (lastVisible != null) {
+            liveData.setValue(new UiState.Loading<>());
+            consultarPaseadores(query, lastVisible, null, filtros, liveData);
+            return liveData;
+        }
+
+        // Escritura de texto: se responde con el índice local sin ir a la red
+        List<PaseadorResultado> locales = buscarEnIndiceTexto(query, filtros);
+        if (locales != null && !locales.isEmpty()) {
+            liveData.setValue(new UiState.Success<>(new PaseadorSearchResult(locales, null)));
+            sincronizarIndiceTexto();
+            return liveData;
+        }
+
+        // Primera página: caché en memoria/disco; si está vencida se muestra y se revalida
+        String clave = CACHE_BUSQUEDA + uidActual() + "|" + buildCacheKey(query, filtros);
+        leerResultadosCacheados(clave, cacheados -> {
+            if (cacheados != null && !cacheados.resultados.isEmpty()) {
+                Log.d(TAG, "Retornando resultados cacheados para: " + query + (cacheados.fresco ? "" : " (revalidando)"));
+                liveData.setValue(new UiState.Success<>(new PaseadorSearchResult(new ArrayList<>(cacheados.resultados), null)));
+                if (cacheados.fresco) return;
+            } else {
+                liveData.setValue(new UiState.Loading<>());
             }
-        }
+            consultarPaseadores(query, null, clave, filtros, liveData);
+        });
+        return liveData;
+    }
 
+    /**
+     * Primera página directo de Firestore, sin caché ni índice local: para seguir paginando
+     * cuando lo mostrado no trajo cursor.
+     */
+    public LiveData<UiState<PaseadorSearchResult>> buscarPaseadoresEnRed(String query, Filtros filtros) {
+        MutableLiveData<UiState<PaseadorSearchResult>> liveData = new MutableLiveData<>();
         liveData.setValue(new UiState.Loading<>());
+        consultarPaseadores(query, null, null, filtros, liveData);
+        return liveData;
+    }
 
+    /**
+     * @param claveCache clave donde guardar la primera página, o null al paginar
+     */
+    private void consultarPaseadores(String query, DocumentSnapshot lastVisible, String claveCache, Filtros filtros,
+                                     MutableLiveData<UiState<PaseadorSearchResult>> liveData) {
         com.google.firebase.auth.FirebaseUser currentUser = com.google.firebase.auth.FirebaseAuth.getInstance().getCurrentUser();
         Task<QuerySnapshot> favoritosTask = getFavoritosTask(currentUser);
 
@@ -358,29 +304,21 @@ public class PaseadorRepository {
         Task<QuerySnapshot> busquedaTask = firestoreQuery.get();
 
         final String queryFinal = query;
-        final Filtros filtrosFinal = filtros;
 
         Tasks.whenAllSuccess(favoritosTask, busquedaTask).addOnSuccessListener(results -> {
-            processSearchResults(results, liveData);
+            processSearchResults(results, claveCache, liveData);
 
             if (lastVisible == null && queryFinal != null && !queryFinal.isEmpty()) {
                 saveSearchToHistory(queryFinal);
             }
-
-            UiState<PaseadorSearchResult> state = liveData.getValue();
-            if (state instanceof UiState.Success && lastVisible == null) {
-                PaseadorSearchResult searchResult = ((UiState.Success<PaseadorSearchResult>) state).getData();
-                if (searchResult != null && searchResult.resultados != null) {
-                    cacheSearchResults(queryFinal, filtrosFinal, searchResult.resultados);
-                }
-            }
         })
             .addOnFailureListener(e -> {
                 Log.e(TAG, "Error en la búsqueda de paseadores para query: " + query, e);
-                liveData.setValue(new UiState.Error<>("Error al realizar la búsqueda."));
+                // Si ya se mostró lo cacheado (revalidación), no se reemplaza por un error
+                if (lastVisible != null || !(liveData.getValue() instanceof UiState.Success)) {
+                    liveData.setValue(new UiState.Error<>("Error al realizar la búsqueda."));
+                }
             });
-
-        return liveData;
     }
 
     private Query buildSearchQuery(String query, Filtros filtros, DocumentSnapshot lastVisible) {
@@ -466,7 +404,13 @@ public class PaseadorRepository {
         }
     }
 
-    private void processSearchResults(List<Object> results, MutableLiveData<UiState<PaseadorSearchResult>> liveData) {
+    /**
+     * Publica la página apenas llegan los documentos de paseadores_search. Si a alguno le
+     * faltan campos denormalizados, se piden en lote a paseadores/usuarios y la página se
+     * vuelve a publicar a medida que llegan.
+     */
+    private void processSearchResults(List<Object> results, String claveCache,
+                                      MutableLiveData<UiState<PaseadorSearchResult>> liveData) {
         QuerySnapshot favoritosSnapshot = (QuerySnapshot) results.get(0);
         QuerySnapshot busquedaSnapshot = (QuerySnapshot) results.get(1);
 
@@ -479,19 +423,88 @@ public class PaseadorRepository {
 
         DocumentSnapshot newLastVisible = busquedaSnapshot.getDocuments().get(busquedaSnapshot.size() - 1);
         ArrayList<PaseadorResultado> resultados = new ArrayList<>();
-        java.util.Map<String, Integer> indexMap = new java.util.HashMap<>();
-        java.util.List<Task<?>> detailTasks = new ArrayList<>();
+        List<String> sinPerfil = new ArrayList<>();
+        List<String> sinPresencia = new ArrayList<>();
 
         for (DocumentSnapshot doc : busquedaSnapshot) {
-            PaseadorResultado resultado = buildSearchResultado(doc, favoritosIds);
-            int idx = resultados.size();
-            indexMap.put(doc.getId(), idx);
-            resultados.add(resultado);
+            resultados.add(buildSearchResultado(doc, favoritosIds));
+            if (!doc.contains(FirestoreConstants.FIELD_CALIFICACION_PROMEDIO)
+                    || (!doc.contains(FirestoreConstants.FIELD_TARIFA_POR_HORA) && !doc.contains(FirestoreConstants.FIELD_PRECIO_HORA))) {
+                sinPerfil.add(doc.getId());
+            }
+            if (!doc.contains(FirestoreConstants.FIELD_ESTADO)) {
+                sinPresencia.add(doc.getId());
+            }
+        }
+
+        PaginaBusqueda pagina = new PaginaBusqueda(resultados, newLastVisible, claveCache, liveData);
+        pagina.publicar();
+        if (!sinPerfil.isEmpty()) {
+            perfilesLoader.cargar(sinPerfil, docs -> pagina.completar(docs, this::updatePaseadorDetails));
+        }
+        if (!sinPresencia.isEmpty()) {
+            usuariosLoader.cargar(sinPresencia, docs -> pagina.completar(docs, this::updateOnlineStatus));
+        }
+    }
+
+    /**
+     * Página ya publicada que se sigue completando con detalles. Cada actualización copia
+     * los resultados tocados para que el adapter vea el cambio.
+     */
+    private final class PaginaBusqueda {
+        private List<PaseadorResultado> resultados;
+        private final DocumentSnapshot lastVisible;
+        private final String claveCache;
+        private final MutableLiveData<UiState<PaseadorSearchResult>> liveData;
+
+        PaginaBusqueda(List<PaseadorResultado> resultados, DocumentSnapshot lastVisible, String claveCache,
+                       MutableLiveData<UiState<PaseadorSearchResult>> liveData) {
+            this.resultados = resultados;
+            this.lastVisible = lastVisible;
+            this.claveCache = claveCache;
+            this.liveData = liveData;
+        }
+
+        void publicar() {
+            liveData.setValue(new UiState.Success<>(new PaseadorSearchResult(resultados, lastVisible)));
+            if (claveCache != null) {
+                guardarResultadosCacheados(claveCache, resultados, SEARCH_CACHE_EXPIRY_MS);
+            }
+        }
 
-            addDetailTasks(doc.getId(), indexMap, resultados, detailTasks);
+        void completar(java.util.Map<String, DocumentSnapshot> detalles,
+                       java.util.function.BiConsumer<DocumentSnapshot, PaseadorResultado> aplicar) {
+            ArrayList<PaseadorResultado> nuevos = new ArrayList<>(resultados.size());
+            for (PaseadorResultado r : resultados) {
+                DocumentSnapshot detalle = detalles.get(r.getId());
+                if (detalle == null) {
+                    nuevos.add(r);
+                } else {
+                    PaseadorResultado copia = new PaseadorResultado(r);
+                    aplicar.accept(detalle, copia);
+                    nuevos.add(copia);
+                }
+            }
+            resultados = nuevos;
+            publicar();
         }
+    }
 
-        completeSearchResults(detailTasks, resultados, newLastVisible, liveData);
+    private PaseadorDetalleLoader<DocumentSnapshot> crearDetalleLoader(String coleccion) {
+        return new PaseadorDetalleLoader<>((ids, respuesta) -> db.collection(coleccion)
+                .whereIn(FieldPath.documentId(), ids)
+                .get()
+                .addOnSuccessListener(snapshot -> {
+                    java.util.Map<String, DocumentSnapshot> docs = new java.util.HashMap<>();
+                    for (DocumentSnapshot doc : snapshot) {
+                        docs.put(doc.getId(), doc);
+                    }
+                    respuesta.onExito(docs);
+                })
+                .addOnFailureListener(e -> {
+                    Log.w(TAG, "Error cargando detalles de " + coleccion, e);
+                    respuesta.onError(e);
+                }));
     }
 
     private PaseadorResultado buildSearchResultado(DocumentSnapshot doc, java.util.Set<String> favoritosIds) {
@@ -530,20 +543,7 @@ public class PaseadorRepository {
         return resultado;
     }
 
-    private void addDetailTasks(String docId, java.util.Map<String, Integer> indexMap,
-                               ArrayList<PaseadorResultado> resultados, java.util.List<Task<?>> detailTasks) {
-        // OPTIMIZACIÓN COMPLETA: Ya no se necesitan consultas adicionales
-        // Todos los datos (incluyendo estado en línea) ya están en paseadores_search
-        // Este método se mantiene por compatibilidad pero no agrega tareas
-    }
-
-    private void updatePaseadorDetails(DocumentSnapshot pDoc, String docId,
-                                      java.util.Map<String, Integer> indexMap,
-                                      ArrayList<PaseadorResultado> resultados) {
-        Integer position = indexMap.get(docId);
-        if (position == null || position >= resultados.size()) return;
-
-        PaseadorResultado res = resultados.get(position);
+    private void updatePaseadorDetails(DocumentSnapshot pDoc, PaseadorResultado res) {
         if (res.getTarifaPorHora() == 0.0) {
             Double precioHora = pDoc.getDouble(FirestoreConstants.FIELD_PRECIO_HORA);
             if (precioHora != null) res.setTarifaPorHora(precioHora);
@@ -552,45 +552,16 @@ public class PaseadorRepository {
         if (calif != null) res.setCalificacion(calif);
         Long total = pDoc.getLong(FirestoreConstants.FIELD_NUM_SERVICIOS_COMPLETADOS);
         if (total != null) res.setTotalResenas(total.intValue());
+        if (res.getAnosExperiencia() == 0) {
+            setExperienciaFromString(res, pDoc);
+        }
     }
 
-    private void updateOnlineStatus(DocumentSnapshot uDoc, String docId,
-                                   java.util.Map<String, Integer> indexMap,
-                                   ArrayList<PaseadorResultado> resultados) {
-        Integer position = indexMap.get(docId);
-        if (position == null || position >= resultados.size()) return;
-
-        PaseadorResultado res = resultados.get(position);
+    private void updateOnlineStatus(DocumentSnapshot uDoc, PaseadorResultado res) {
         String estadoPresencia = uDoc.getString(FirestoreConstants.FIELD_ESTADO);
         res.setEnLinea(FirestoreConstants.STATUS_ONLINE.equalsIgnoreCase(estadoPresencia));
     }
 
-    private void updateZona(QuerySnapshot zonas, String docId,
-                          java.util.Map<String, Integer> indexMap,
-                          ArrayList<PaseadorResultado> resultados) {
-        Integer position = indexMap.get(docId);
-        if (position == null || position >= resultados.size()) return;
-
-        if (zonas != null && !zonas.isEmpty()) {
-            String direccion = zonas.getDocuments().get(0).getString(FirestoreConstants.FIELD_DIRECCION);
-            if (direccion != null && !direccion.isEmpty()) {
-                resultados.get(position).setZonaPrincipal(direccion);
-            }
-        }
-    }
-
-    private void completeSearchResults(java.util.List<Task<?>> detailTasks,
-                                      ArrayList<PaseadorResultado> resultados,
-                                      DocumentSnapshot newLastVisible,
-                                      MutableLiveData<UiState<PaseadorSearchResult>> liveData) {
-        if (detailTasks.isEmpty()) {
-            liveData.setValue(new UiState.Success<>(new PaseadorSearchResult(resultados, newLastVisible)));
-        } else {
-            Tasks.whenAllComplete(detailTasks).addOnCompleteListener(done ->
-                    liveData.setValue(new UiState.Success<>(new PaseadorSearchResult(resultados, newLastVisible))));
-        }
-    }
-
     // --- Métodos Helper de Seguridad --- //
 
     private String getStringSafely(DocumentSnapshot doc, String field, String defaultValue) {
@@ -646,6 +617,10 @@ public class PaseadorRepository {
         } else {
             favRef.delete();
         }
+        java.util.Set<String> favoritos = new java.util.HashSet<>(favoritosIndice);
+        if (add) favoritos.add(paseadorId); else favoritos.remove(paseadorId);
+        favoritosIndice = favoritos;
+        invalidarCacheFavorito(userId, paseadorId);
     }
 
     private void addToFavoritos(String paseadorId, DocumentReference favRef) {
@@ -679,22 +654,246 @@ public class PaseadorRepository {
         return favoritoData;
     }
 
+    // --- Índice de Texto Local --- //
+
+    /**
+     * Búsqueda por texto en el índice local. Null si no aplica (sin texto, índice vacío o
+     * filtro por tamaño, que el índice no guarda): entonces se consulta Firestore.
+     */
+    private List<PaseadorResultado> buscarEnIndiceTexto(String query, Filtros filtros) {
+        if (query == null || query.trim().isEmpty() || indiceTexto.size() == 0) return null;
+        if (filtros != null && filtros.getTamanosMascota() != null && !filtros.getTamanosMascota().isEmpty()) {
+            return null;
+        }
+
+        List<PaseadorResultado> resultados = new ArrayList<>();
+        for (PaseadorResultado base : indiceTexto.buscar(query, INDICE_TEXTO_MAX_RESULTADOS)) {
+            if (filtros != null) {
+                if (base.getCalificacion() < filtros.getMinCalificacion()) continue;
+                if (base.getTarifaPorHora() < filtros.getMinPrecio()) continue;
+                if (filtros.getMaxPrecio() < 100 && base.getTarifaPorHora() > filtros.getMaxPrecio()) continue;
+                if (filtros.isSoloEnLinea() && !base.isEnLinea()) continue;
+            }
+            PaseadorResultado r = new PaseadorResultado(base);
+            r.setFavorito(favoritosIndice.contains(r.getId()));
+            resultados.add(r);
+        }
+        ordenarResultados(resultados, filtros != null ? filtros.getOrden() : null);
+        return resultados;
+    }
+
+    /** Mismos órdenes que applyOrdenamiento; el resto conserva la relevancia del índice. */
+    private static void ordenarResultados(List<PaseadorResultado> resultados, String orden) {
+        if (orden == null) return;
+        switch (orden) {
+            case "Precio (menor a mayor)":
+                resultados.sort((a, b) -> Double.compare(a.getTarifaPorHora(), b.getTarifaPorHora()));
+                break;
+            case "Precio (mayor a menor)":
+                resultados.sort((a, b) -> Double.compare(b.getTarifaPorHora(), a.getTarifaPorHora()));
+                break;
+            case "Calificación (mejor a peor)":
+                resultados.sort((a, b) -> Double.compare(b.getCalificacion(), a.getCalificacion()));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Refresca el índice de texto. La primera vez lo arma desde la caché local de Firestore
+     * (sirve sin conexión); después pide al servidor solo lo modificado desde la última marca
+     * de updated_at, en lotes.
+     */
+    public void sincronizarIndiceTexto() {
+        long ahora = System.currentTimeMillis();
+        if (indiceTextoSincronizando || ahora - indiceTextoSyncMs < INDICE_TEXTO_SYNC_MS) return;
+        indiceTextoSincronizando = true;
+
+        getFavoritosTask(com.google.firebase.auth.FirebaseAuth.getInstance().getCurrentUser())
+                .addOnSuccessListener(snapshot -> favoritosIndice = extractFavoritosIds(snapshot));
+
+        if (indiceTextoMarcaMs >= 0) {
+            sincronizarIndiceTextoDesdeServidor();
+            return;
+        }
+        db.collection(FirestoreConstants.COLLECTION_PASEADORES_SEARCH).get(Source.CACHE)
+                .addOnCompleteListener(task -> {
+                    QuerySnapshot locales = task.isSuccessful() ? task.getResult() : null;
+                    if (locales != null && !locales.isEmpty()) {
+                        aplicarAlIndiceTexto(locales);
+                        indiceTextoMarcaMs = leerMarcaIndiceTexto();
+                    } else {
+                        indiceTextoMarcaMs = 0; // Sin caché local: descarga completa
+                    }
+                    Log.d(TAG, "Índice de texto desde caché local: " + indiceTexto.size() + " paseadores");
+                    sincronizarIndiceTextoDesdeServidor();
+                });
+    }
+
+    private void sincronizarIndiceTextoDesdeServidor() {
+        Query query = db.collection(FirestoreConstants.COLLECTION_PASEADORES_SEARCH);
+        if (indiceTextoMarcaMs > 0) {
+            query = query.whereGreaterThan(FIELD_UPDATED_AT, new com.google.firebase.Timestamp(new java.util.Date(indiceTextoMarcaMs)));
+        }
+        query.orderBy(FIELD_UPDATED_AT).limit(INDICE_TEXTO_LOTE).get(Source.SERVER)
+                .addOnSuccessListener(snapshot -> {
+                    aplicarAlIndiceTexto(snapshot);
+                    guardarMarcaIndiceTexto(indiceTextoMarcaMs);
+                    if (snapshot.size() >= INDICE_TEXTO_LOTE) {
+                        sincronizarIndiceTextoDesdeServidor();
+                        return;
+                    }
+                    Log.d(TAG, "✅ Índice de texto sincronizado: " + indiceTexto.size() + " paseadores");
+                    indiceTextoSyncMs = System.currentTimeMillis();
+                    indiceTextoSincronizando = false;
+                })
+                .addOnFailureListener(e -> {
+                    Log.w(TAG, "⚠️ No se pudo sincronizar el índice de texto", e);
+                    indiceTextoSincronizando = false;
+                });
+    }
+
+    /** Agrega, actualiza o quita (inactivos/no aprobados) y avanza la marca de updated_at. */
+    private void aplicarAlIndiceTexto(QuerySnapshot snapshot) {
+        for (DocumentSnapshot doc : snapshot) {
+            com.google.firebase.Timestamp updatedAt = doc.getTimestamp(FIELD_UPDATED_AT);
+            if (updatedAt != null) {
+                indiceTextoMarcaMs = Math.max(indiceTextoMarcaMs, updatedAt.toDate().getTime());
+            }
+            boolean visible = Boolean.TRUE.equals(doc.getBoolean(FirestoreConstants.FIELD_ACTIVO))
+                    && FirestoreConstants.STATUS_APROBADO.equals(doc.getString(FirestoreConstants.FIELD_VERIFICACION_ESTADO));
+            if (!visible) {
+                indiceTexto.eliminar(doc.getId());
+                continue;
+            }
+            PaseadorResultado resultado = buildSearchResultado(doc, java.util.Collections.emptySet());
+            indiceTexto.actualizar(doc.getId(), resultado, resultado.getCalificacion(),
+                    resultado.getNombre(), listaDeTextos(doc.get(FirestoreConstants.FIELD_ZONAS_PRINCIPALES)),
+                    listaDeTextos(doc.get(FirestoreConstants.FIELD_TIPOS_PERRO_ACEPTADOS)));
+        }
+    }
+
+    private static List<String> listaDeTextos(Object valor) {
+        List<String> textos = new ArrayList<>();
+        if (valor instanceof List) {
+            for (Object o : (List<?>) valor) {
+                if (o instanceof String) textos.add((String) o);
+            }
+        }
+        return textos;
+    }
+
+    private long leerMarcaIndiceTexto() {
+        try {
+            SharedPreferences prefs = MyApplication.getAppContext().getSharedPreferences(SEARCH_CACHE_PREF, android.content.Context.MODE_PRIVATE);
+            return prefs.getLong(INDICE_TEXTO_MARCA_KEY, 0);
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private void guardarMarcaIndiceTexto(long marcaMs) {
+        try {
+            SharedPreferences prefs = MyApplication.getAppContext().getSharedPreferences(SEARCH_CACHE_PREF, android.content.Context.MODE_PRIVATE);
+            prefs.edit().putLong(INDICE_TEXTO_MARCA_KEY, marcaMs).apply();
+        } catch (Exception e) {
+            Log.w(TAG, "No se pudo guardar la marca del índice de texto", e);
+        }
+    }
+
     // --- Cache de Búsquedas Recientes --- //
 
-    private static class CachedSearchResult {
+    /** Resultado leído de BusquedaCache; {@code fresco} = dentro de su TTL. */
+    private static final class ResultadosCacheados {
         final List<PaseadorResultado> resultados;
-        final long timestamp;
+        final boolean fresco;
 
-        CachedSearchResult(List<PaseadorResultado> resultados) {
+        ResultadosCacheados(List<PaseadorResultado> resultados, boolean fresco) {
             this.resultados = resultados;
-            this.timestamp = System.currentTimeMillis();
+            this.fresco = fresco;
         }
+    }
+
+    private interface CallbackCache {
+        void onResultado(ResultadosCacheados cacheados);
+    }
+
+    private static BusquedaCache cache() {
+        return BusquedaCache.getInstance(MyApplication.getAppContext());
+    }
 
-        boolean isExpired() {
-            return System.currentTimeMillis() - timestamp > SEARCH_CACHE_EXPIRY_MS;
+    private static String uidActual() {
+        com.google.firebase.auth.FirebaseUser user = com.google.firebase.auth.FirebaseAuth.getInstance().getCurrentUser();
+        return user != null ? user.getUid() : "anonimo";
+    }
+
+    /**
+     * Lee una lista cacheada (memoria y, si falta, disco en segundo plano) y entrega el
+     * resultado en el hilo principal. Null si no hay lista o falta alguna de sus tarjetas.
+     */
+    private void leerResultadosCacheados(String clave, CallbackCache callback) {
+        CACHE_EXECUTOR.execute(() -> {
+            ResultadosCacheados cacheados = leerResultados(clave);
+            mainHandler.post(() -> callback.onResultado(cacheados));
+        });
+    }
+
+    private ResultadosCacheados leerResultados(String clave) {
+        long ahora = System.currentTimeMillis();
+        BusquedaCache.Entrada lista = cache().obtener(clave, ahora);
+        if (lista == null) return null;
+        try {
+            String prefijoTarjeta = CACHE_TARJETA + uidActual() + "|";
+            JSONArray ids = new JSONArray(lista.datos);
+            List<PaseadorResultado> resultados = new ArrayList<>(ids.length());
+            boolean fresco = lista.isFresca(ahora);
+            for (int i = 0; i < ids.length(); i++) {
+                BusquedaCache.Entrada tarjeta = cache().obtener(prefijoTarjeta + ids.getString(i), ahora);
+                if (tarjeta == null) return null;
+                resultados.add(parsePaseadorFromJson(new JSONObject(tarjeta.datos)));
+                fresco &= tarjeta.isFresca(ahora);
+            }
+            return new ResultadosCacheados(resultados, fresco);
+        } catch (Exception e) {
+            Log.w(TAG, "Entrada de caché inválida: " + clave, e);
+            cache().eliminar(clave);
+            return null;
         }
     }
 
+    /**
+     * Guarda la lista como ids y cada paseador como tarjeta propia, compartida entre
+     * populares y todas las búsquedas.
+     */
+    private void guardarResultadosCacheados(String clave, List<PaseadorResultado> resultados, long ttlMs) {
+        if (resultados == null || resultados.isEmpty()) return;
+        List<PaseadorResultado> copia = new ArrayList<>(resultados);
+        String prefijoTarjeta = CACHE_TARJETA + uidActual() + "|";
+        CACHE_EXECUTOR.execute(() -> {
+            long ahora = System.currentTimeMillis();
+            try {
+                JSONArray ids = new JSONArray();
+                for (PaseadorResultado p : copia) {
+                    ids.put(p.getId());
+                    cache().guardar(prefijoTarjeta + p.getId(), paseadorToJson(p).toString(), TARJETA_CACHE_EXPIRY_MS, ahora);
+                }
+                cache().guardar(clave, ids.toString(), ttlMs, ahora);
+                Log.d(TAG, "Cacheando resultados para: " + clave);
+            } catch (Exception e) {
+                Log.w(TAG, "No se pudo cachear " + clave, e);
+            }
+        });
+    }
+
+    /**
+     * El flag de favorito va dentro de la tarjeta: sin ella, toda lista que la incluya
+     * cuenta como miss y se vuelve a consultar.
+     */
+    private void invalidarCacheFavorito(String userId, String paseadorId) {
+        CACHE_EXECUTOR.execute(() -> cache().eliminar(CACHE_TARJETA + userId + "|" + paseadorId));
+    }
+
     private String buildCacheKey(String query, Filtros filtros) {
         StringBuilder key = new StringBuilder(query != null ? query.toLowerCase() : "");
         if (filtros != null) {
@@ -709,25 +908,33 @@ public class PaseadorRepository {
         return key.toString();
     }
 
+    /**
+     * Solo el nivel de memoria y solo si está fresco: seguro desde el hilo principal.
+     */
     public List<PaseadorResultado> getCachedResults(String query, Filtros filtros) {
-        String cacheKey = buildCacheKey(query, filtros);
-        CachedSearchResult cached = searchCache.get(cacheKey);
-        if (cached != null && !cached.isExpired()) {
-            Log.d(TAG, "Cache hit para: " + cacheKey);
-            return cached.resultados;
+        String clave = CACHE_BUSQUEDA + uidActual() + "|" + buildCacheKey(query, filtros);
+        BusquedaCache.Entrada lista = cache().obtenerDeMemoria(clave);
+        if (lista == null || !lista.isFresca(System.currentTimeMillis())) return null;
+        try {
+            String prefijoTarjeta = CACHE_TARJETA + uidActual() + "|";
+            JSONArray ids = new JSONArray(lista.datos);
+            List<PaseadorResultado> resultados = new ArrayList<>(ids.length());
+            for (int i = 0; i < ids.length(); i++) {
+                BusquedaCache.Entrada tarjeta = cache().obtenerDeMemoria(prefijoTarjeta + ids.getString(i));
+                if (tarjeta == null) return null;
+                resultados.add(parsePaseadorFromJson(new JSONObject(tarjeta.datos)));
+            }
+            Log.d(TAG, "Cache hit para: " + clave);
+            return resultados;
+        } catch (Exception e) {
+            return null;
         }
-        return null;
-    }
-
-    private void cacheSearchResults(String query, Filtros filtros, List<PaseadorResultado> resultados) {
-        if (resultados == null || resultados.isEmpty()) return;
-        String cacheKey = buildCacheKey(query, filtros);
-        searchCache.put(cacheKey, new CachedSearchResult(new ArrayList<>(resultados)));
-        Log.d(TAG, "Cacheando resultados para: " + cacheKey);
     }
 
     public void clearSearchCache() {
-        searchCache.clear();
+        perfilesLoader.invalidar();
+        usuariosLoader.invalidar();
+        CACHE_EXECUTOR.execute(() -> cache().eliminarPrefijo(CACHE_BUSQUEDA));
         Log.d(TAG, "Cache de búsquedas limpiado");
     }
 
@@ -8,6 +8,7 @@ import android.widget.ImageView; // Changed from ImageButton to ImageView as per
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.ListAdapter;
@@ -17,7 +18,9 @@ import com.bumptech.glide.Glide;
 import com.mjc.mascotalink.R;
 import com.mjc.mascota.modelo.PaseadorResultado;
 import com.mjc.mascotalink.MyApplication;
+import com.mjc.mascotalink.util.ListaDiferida;
 
+import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 
@@ -38,6 +41,18 @@ public class PaseadorResultadoAdapter extends ListAdapter<PaseadorResultado, Pas
 
         @Override
         public boolean areContentsTheSame(@NonNull PaseadorResultado oldItem, @NonNull PaseadorResultado newItem) {
+            return mismosDatos(oldItem, newItem) && oldItem.isEnLinea() == newItem.isEnLinea();
+        }
+
+        @Nullable
+        @Override
+        public Object getChangePayload(@NonNull PaseadorResultado oldItem, @NonNull PaseadorResultado newItem) {
+            // Solo cambió la presencia: redibujar el badge sin recargar la foto
+            return mismosDatos(oldItem, newItem) ? ListaDiferida.CAMBIO_PRESENCIA : null;
+        }
+
+        /** Todo lo que se muestra, salvo la presencia. */
+        private boolean mismosDatos(PaseadorResultado oldItem, PaseadorResultado newItem) {
             // OPTIMIZACIÓN: Comparar TODOS los campos para detectar cambios correctamente
             return oldItem.getNombre().equals(newItem.getNombre())
                     && Objects.equals(oldItem.getFotoUrl(), newItem.getFotoUrl())
@@ -46,8 +61,7 @@ public class PaseadorResultadoAdapter extends ListAdapter<PaseadorResultado, Pas
                     && Objects.equals(oldItem.getZonaPrincipal(), newItem.getZonaPrincipal())
                     && oldItem.getTotalResenas() == newItem.getTotalResenas()
                     && oldItem.getAnosExperiencia() == newItem.getAnosExperiencia()
-                    && oldItem.isFavorito() == newItem.isFavorito()
-                    && oldItem.isEnLinea() == newItem.isEnLinea();
+                    && oldItem.isFavorito() == newItem.isFavorito();
         }
     };
 
@@ -65,6 +79,17 @@ public class PaseadorResultadoAdapter extends ListAdapter<PaseadorResultado, Pas
         holder.bind(currentPaseador, itemClickListener, favoritoToggleListener);
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull PaseadorViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        if (payloads.contains(ListaDiferida.CAMBIO_PRESENCIA)) {
+            holder.bindPresencia(getItem(position));
+        }
+    }
+
     public interface OnItemClickListener {
         void onItemClick(PaseadorResultado paseador);
     }
@@ -126,8 +151,7 @@ public class PaseadorResultadoAdapter extends ListAdapter<PaseadorResultado, Pas
                     .circleCrop()
                     .into(avatarImageView);
 
-            // Show/hide online badge
-            badgeEnLinea.setVisibility(paseador.isEnLinea() ? View.VISIBLE : View.GONE);
+            bindPresencia(paseador);
 
             if (paseador.isFavorito()) {
                 favoritoButton.setImageResource(R.drawable.ic_corazon_lleno); // Assumes red heart drawable
@@ -150,5 +174,10 @@ public class PaseadorResultadoAdapter extends ListAdapter<PaseadorResultado, Pas
                 }
             });
         }
+
+        /** Badge de en línea; también es el bind parcial de {@link ListaDiferida#CAMBIO_PRESENCIA}. */
+        void bindPresencia(PaseadorResultado paseador) {
+            badgeEnLinea.setVisibility(paseador.isEnLinea() ? View.VISIBLE : View.GONE);
+        }
     }
 }
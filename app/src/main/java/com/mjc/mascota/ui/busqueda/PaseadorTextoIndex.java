@@ -0,0 +1,306 @@
+package com.mjc.mascota.ui.busqueda;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Índice de texto en memoria sobre los paseadores de paseadores_search, para responder la
+ * búsqueda mientras se escribe sin ir a la red.
+ *
+ * - Normaliza igual para indexar y para buscar: minúsculas, sin tildes ni diéresis
+ *   ("ñ" queda como "n") y sin palabras vacías del español (de, la, los...).
+ * - Cada término se indexa por todos sus prefijos, así "mar" encuentra "María".
+ * - Tolera errores de tipeo: si el término no aparece, se buscan candidatos por trigramas y
+ *   se aceptan los que están a 1 edición (2 si la palabra es larga) de alguno de sus prefijos.
+ * - Ranking: cada palabra de la consulta suma según dónde coincide (nombre > zona >
+ *   especialidad) y cómo (exacta > prefijo > con error). Todas las palabras deben coincidir.
+ *
+ * No es thread-safe: se usa desde el hilo principal, donde llegan los callbacks de Firestore.
+ *
+ * @param <T> dato a devolver por cada paseador (PaseadorResultado en la app)
+ */
+public class PaseadorTextoIndex<T> {
+
+    static final int PESO_NOMBRE = 3;
+    static final int PESO_ZONA = 2;
+    static final int PESO_ESPECIALIDAD = 1;
+
+    private static final double FACTOR_EXACTO = 1.0;
+    private static final double FACTOR_PREFIJO = 0.8;
+    private static final double FACTOR_CON_ERROR = 0.5;
+
+    private static final int MAX_LARGO_PREFIJO = 12;
+    private static final int MIN_LARGO_CON_ERROR = 3;
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^a-z0-9]+");
+    private static final Set<String> PALABRAS_VACIAS = new HashSet<>(Arrays.asList(
+            "de", "del", "la", "las", "el", "los", "y", "en", "con", "para", "por", "un", "una"));
+
+    private static final class Documento<T> {
+        final T valor;
+        final double prioridad;
+        final Map<String, Integer> terminos;
+
+        Documento(T valor, double prioridad, Map<String, Integer> terminos) {
+            this.valor = valor;
+            this.prioridad = prioridad;
+            this.terminos = terminos;
+        }
+    }
+
+    private final Map<String, Documento<T>> documentos = new HashMap<>();
+    /** término -> (id -> mayor peso del campo donde aparece) */
+    private final Map<String, Map<String, Integer>> postings = new HashMap<>();
+    private final Map<String, Set<String>> terminosPorPrefijo = new HashMap<>();
+    private final Map<String, Set<String>> terminosPorTrigrama = new HashMap<>();
+
+    /**
+     * Agrega o reemplaza un paseador.
+     *
+     * @param prioridad desempate entre resultados con el mismo puntaje (la calificación)
+     */
+    public void actualizar(String id, T valor, double prioridad, String nombre,
+                           Collection<String> zonas, Collection<String> especialidades) {
+        eliminar(id);
+
+        Map<String, Integer> terminos = new HashMap<>();
+        agregarTerminos(terminos, nombre, PESO_NOMBRE);
+        if (zonas != null) {
+            for (String zona : zonas) agregarTerminos(terminos, zona, PESO_ZONA);
+        }
+        if (especialidades != null) {
+            for (String especialidad : especialidades) agregarTerminos(terminos, especialidad, PESO_ESPECIALIDAD);
+        }
+
+        documentos.put(id, new Documento<>(valor, prioridad, terminos));
+        for (Map.Entry<String, Integer> e : terminos.entrySet()) {
+            String termino = e.getKey();
+            Map<String, Integer> docs = postings.get(termino);
+            if (docs == null) {
+                docs = new HashMap<>();
+                postings.put(termino, docs);
+                indexarTermino(termino);
+            }
+            docs.put(id, e.getValue());
+        }
+    }
+
+    public void eliminar(String id) {
+        Documento<T> previo = documentos.remove(id);
+        if (previo == null) return;
+        for (String termino : previo.terminos.keySet()) {
+            Map<String, Integer> docs = postings.get(termino);
+            if (docs == null) continue;
+            docs.remove(id);
+            if (docs.isEmpty()) {
+                postings.remove(termino);
+                desindexarTermino(termino);
+            }
+        }
+    }
+
+    /**
+     * @return hasta {@code limite} paseadores ordenados por relevancia; vacía si la consulta
+     *         no tiene palabras buscables o alguna no coincide con nada
+     */
+    public List<T> buscar(String consulta, int limite) {
+        List<String> tokens = tokenizar(consulta);
+        if (tokens.isEmpty()) return Collections.emptyList();
+
+        Map<String, Double> puntajes = null;
+        for (String token : tokens) {
+            Map<String, Double> coincidencias = coincidencias(token);
+            if (puntajes == null) {
+                puntajes = coincidencias;
+            } else {
+                Map<String, Double> interseccion = new HashMap<>();
+                for (Map.Entry<String, Double> e : puntajes.entrySet()) {
+                    Double otro = coincidencias.get(e.getKey());
+                    if (otro != null) interseccion.put(e.getKey(), e.getValue() + otro);
+                }
+                puntajes = interseccion;
+            }
+            if (puntajes.isEmpty()) return Collections.emptyList();
+        }
+
+        List<Map.Entry<String, Double>> orden = new ArrayList<>(puntajes.entrySet());
+        orden.sort((a, b) -> {
+            int c = Double.compare(b.getValue(), a.getValue());
+            if (c != 0) return c;
+            c = Double.compare(documentos.get(b.getKey()).prioridad, documentos.get(a.getKey()).prioridad);
+            return c != 0 ? c : a.getKey().compareTo(b.getKey());
+        });
+        List<T> resultado = new ArrayList<>(Math.min(limite, orden.size()));
+        for (int i = 0; i < orden.size() && i < limite; i++) {
+            resultado.add(documentos.get(orden.get(i).getKey()).valor);
+        }
+        return resultado;
+    }
+
+    public boolean contiene(String id) {
+        return documentos.containsKey(id);
+    }
+
+    public int size() {
+        return documentos.size();
+    }
+
+    public void limpiar() {
+        documentos.clear();
+        postings.clear();
+        terminosPorPrefijo.clear();
+        terminosPorTrigrama.clear();
+    }
+
+    // ===== Normalización =====
+
+    static String normalizar(String texto) {
+        if (texto == null) return "";
+        String sinMarcas = MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return sinMarcas.toLowerCase(Locale.ROOT);
+    }
+
+    static List<String> tokenizar(String texto) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARADORES.split(normalizar(texto))) {
+            if (!token.isEmpty() && !PALABRAS_VACIAS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    // ===== Búsqueda por palabra =====
+
+    /** Mejor puntaje por id para una palabra de la consulta. */
+    private Map<String, Double> coincidencias(String token) {
+        Map<String, Double> puntajes = new HashMap<>();
+
+        String prefijo = token.length() > MAX_LARGO_PREFIJO ? token.substring(0, MAX_LARGO_PREFIJO) : token;
+        Set<String> terminos = terminosPorPrefijo.get(prefijo);
+        if (terminos != null) {
+            for (String termino : terminos) {
+                if (!termino.startsWith(token)) continue;
+                sumar(puntajes, termino, termino.equals(token) ? FACTOR_EXACTO : FACTOR_PREFIJO);
+            }
+        }
+        if (!puntajes.isEmpty() || token.length() < MIN_LARGO_CON_ERROR) {
+            return puntajes;
+        }
+
+        int maxErrores = token.length() <= 5 ? 1 : 2;
+        Set<String> candidatos = new HashSet<>();
+        for (String trigrama : trigramas(token)) {
+            Set<String> conTrigrama = terminosPorTrigrama.get(trigrama);
+            if (conTrigrama != null) candidatos.addAll(conTrigrama);
+        }
+        for (String candidato : candidatos) {
+            if (distanciaAPrefijo(token, candidato) <= maxErrores) {
+                sumar(puntajes, candidato, FACTOR_CON_ERROR);
+            }
+        }
+        return puntajes;
+    }
+
+    private void sumar(Map<String, Double> puntajes, String termino, double factor) {
+        for (Map.Entry<String, Integer> e : postings.get(termino).entrySet()) {
+            double puntaje = e.getValue() * factor;
+            Double previo = puntajes.get(e.getKey());
+            if (previo == null || previo < puntaje) {
+                puntajes.put(e.getKey(), puntaje);
+            }
+        }
+    }
+
+    /**
+     * Menor distancia de edición (con transposiciones) entre {@code token} y algún prefijo
+     * de {@code termino}: "marai" está a 1 de "maria" aunque el nombre siga.
+     */
+    static int distanciaAPrefijo(String token, String termino) {
+        int n = token.length();
+        int m = termino.length();
+        int[][] d = new int[n + 1][m + 1];
+        for (int i = 0; i <= n; i++) d[i][0] = i;
+        for (int j = 0; j <= m; j++) d[0][j] = j;
+        for (int i = 1; i <= n; i++) {
+            for (int j = 1; j <= m; j++) {
+                int costo = token.charAt(i - 1) == termino.charAt(j - 1) ? 0 : 1;
+                int v = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + costo);
+                if (i > 1 && j > 1 && token.charAt(i - 1) == termino.charAt(j - 2)
+                        && token.charAt(i - 2) == termino.charAt(j - 1)) {
+                    v = Math.min(v, d[i - 2][j - 2] + 1);
+                }
+                d[i][j] = v;
+            }
+        }
+        int mejor = Integer.MAX_VALUE;
+        for (int j = 0; j <= m; j++) mejor = Math.min(mejor, d[n][j]);
+        return mejor;
+    }
+
+    // ===== Estructuras por término =====
+
+    private static void agregarTerminos(Map<String, Integer> terminos, String texto, int peso) {
+        for (String token : tokenizar(texto)) {
+            Integer previo = terminos.get(token);
+            if (previo == null || previo < peso) terminos.put(token, peso);
+        }
+    }
+
+    private void indexarTermino(String termino) {
+        for (int len = 1; len <= Math.min(termino.length(), MAX_LARGO_PREFIJO); len++) {
+            String prefijo = termino.substring(0, len);
+            Set<String> set = terminosPorPrefijo.get(prefijo);
+            if (set == null) {
+                set = new HashSet<>();
+                terminosPorPrefijo.put(prefijo, set);
+            }
+            set.add(termino);
+        }
+        for (String trigrama : trigramas(termino)) {
+            Set<String> set = terminosPorTrigrama.get(trigrama);
+            if (set == null) {
+                set = new HashSet<>();
+                terminosPorTrigrama.put(trigrama, set);
+            }
+            set.add(termino);
+        }
+    }
+
+    private void desindexarTermino(String termino) {
+        for (int len = 1; len <= Math.min(termino.length(), MAX_LARGO_PREFIJO); len++) {
+            quitar(terminosPorPrefijo, termino.substring(0, len), termino);
+        }
+        for (String trigrama : trigramas(termino)) {
+            quitar(terminosPorTrigrama, trigrama, termino);
+        }
+    }
+
+    private static void quitar(Map<String, Set<String>> mapa, String clave, String termino) {
+        Set<String> set = mapa.get(clave);
+        if (set == null) return;
+        set.remove(termino);
+        if (set.isEmpty()) mapa.remove(clave);
+    }
+
+    /** Trigramas con marca de inicio: "^ma", "mar", "ari"... */
+    private static Set<String> trigramas(String termino) {
+        String conInicio = "^" + termino;
+        Set<String> trigramas = new HashSet<>();
+        for (int i = 0; i + 3 <= conInicio.length(); i++) {
+            trigramas.add(conInicio.substring(i, i + 3));
+        }
+        return trigramas;
+    }
+}
@@ -27,6 +27,7 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
@@ -45,6 +46,7 @@ import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.DocumentChange;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.ListenerRegistration;
@@ -52,18 +54,20 @@ import com.google.firebase.firestore.Query;
 import com.mjc.mascota.utils.FirestoreConstants;
 import com.mjc.mascotalink.modelo.Mensaje;
 import com.mjc.mascotalink.util.BottomNavManager;
+import com.mjc.mascotalink.util.HistorialChat;
+import com.mjc.mascotalink.util.HistorialChatLocal;
 import com.mjc.mascotalink.util.ImageCompressor;
 import com.google.android.material.bottomsheet.BottomSheetDialog;
 import com.google.firebase.storage.FirebaseStorage;
 import com.google.firebase.storage.StorageReference;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
+import com.mjc.mascotalink.network.PresenceStore;
+import com.mjc.mascotalink.network.SocketEventBus;
+import com.mjc.mascotalink.network.SocketEvents;
 import com.mjc.mascotalink.network.SocketManager;
 import com.mjc.mascotalink.network.NetworkMonitorHelper;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
@@ -92,6 +96,8 @@ public class ChatActivity extends AppCompatActivity {
 
     private FirebaseFirestore db;
     private SocketManager socketManager;
+    private PresenceStore.Suscripcion presenciaOtroUsuario;
+    private final List<SocketEventBus.Suscripcion> suscripcionesSocket = new ArrayList<>();
     private NetworkMonitorHelper networkMonitor;
     private String currentUserId;
     private String chatId;
@@ -116,8 +122,11 @@ public class ChatActivity extends AppCompatActivity {
     private LinearLayoutManager layoutManager;
     private ListenerRegistration newMessagesListener;
     private ListenerRegistration statusUpdatesListener;
-    private DocumentSnapshot oldestSnapshot;
+    private HistorialChatLocal historialLocal; // null hasta que se lee del disco
+    private boolean abriendoHistorial = false;
+    private Mensaje oldestLoaded;
     private Date latestTimestampLoaded;
+    private Long desdeEnVivoMs; // Desde dónde la recepción en vivo es continua
     private boolean isLoadingMore = false;
     private boolean hasMoreMessages = true;
     private boolean isSending = false;
@@ -283,6 +292,7 @@ public class ChatActivity extends AppCompatActivity {
         @Override
         public void onNetworkLost() {
             runOnUiThread(() -> {
+                desdeEnVivoMs = null; // Lo que llegue por el socket ya no es continuo
                 updateConnectionStatus(" Sin conexión", R.color.red_error);
                 showReconnectSnackbar();
                 disableSendButton();
@@ -973,8 +983,121 @@ public class ChatActivity extends AppCompatActivity {
     private void loadInitialMessages() {
         isLoadingMore = true;
         showLoadingOlder(true);
-        messageIds.clear();
 
+        if (historialLocal == null) {
+            // Primero lo guardado en disco; la sincronización sigue cuando abre
+            if (abriendoHistorial) return;
+            abriendoHistorial = true;
+            HistorialChatLocal.abrir(this, chatId, local -> {
+                abriendoHistorial = false;
+                if (isFinishing() || isDestroyed()) return;
+                historialLocal = local;
+                mostrarHistorialLocal();
+                sincronizarDesdeUltimo();
+            });
+            return;
+        }
+        sincronizarDesdeUltimo();
+    }
+
+    /** Muestra los últimos mensajes guardados mientras se sincroniza con el servidor. */
+    private void mostrarHistorialLocal() {
+        List<Mensaje> ventana = historialLocal.getHistorial().ultimos(PAGE_SIZE);
+        if (ventana.isEmpty()) return;
+
+        mostrarVentana(ventana);
+        hideSkeleton();
+        rvMensajes.scrollToPosition(adapter.getItemCount() - 1);
+        refrescarEstadosPendientes(ventana);
+    }
+
+    /**
+     * Los mensajes propios guardados como no leídos pueden haberse leído mientras el chat
+     * estaba cerrado: se releen solo esos (whereIn por id) para actualizar las marcas.
+     */
+    private void refrescarEstadosPendientes(List<Mensaje> ventana) {
+        List<String> ids = new ArrayList<>();
+        for (Mensaje m : ventana) {
+            if (currentUserId.equals(m.getIdRemitente()) && !m.isLeido()) ids.add(m.getId());
+        }
+        // Límite de un filtro "in"; los más nuevos son los que importan
+        if (ids.size() > 30) ids = ids.subList(ids.size() - 30, ids.size());
+        if (ids.isEmpty()) return;
+
+        db.collection(FirestoreConstants.COLLECTION_CHATS).document(chatId)
+                .collection(FirestoreConstants.COLLECTION_MENSAJES)
+                .whereIn(FieldPath.documentId(), ids)
+                .get()
+                .addOnSuccessListener(snapshot -> {
+                    for (DocumentSnapshot doc : snapshot.getDocuments()) {
+                        Mensaje m = doc.toObject(Mensaje.class);
+                        if (m == null) continue;
+                        m.setId(doc.getId());
+                        historialLocal.actualizar(m);
+                        actualizarMensajeEnAdapter(m);
+                    }
+                })
+                .addOnFailureListener(e -> Log.w(TAG, "No se pudieron refrescar los estados de lectura", e));
+    }
+
+    /**
+     * Pide solo lo que llegó después del último mensaje guardado. Si el hueco es más largo
+     * que una página (mucho tiempo sin abrir el chat), se guarda esa página y se salta a la
+     * más nueva: lo del medio queda como hueco y se completa al hacer scroll hacia atrás.
+     */
+    private void sincronizarDesdeUltimo() {
+        long ultimoMs = historialLocal.getHistorial().ultimoMs();
+        if (ultimoMs < 0) {
+            cargarPaginaMasNueva();
+            return;
+        }
+
+        db.collection(FirestoreConstants.COLLECTION_CHATS).document(chatId)
+                .collection(FirestoreConstants.COLLECTION_MENSAJES)
+                .orderBy(FirestoreConstants.FIELD_TIMESTAMP, Query.Direction.ASCENDING)
+                .startAfter(new Date(ultimoMs))
+                .limit(PAGE_SIZE)
+                .get()
+                .addOnSuccessListener(snapshot -> handleGapMessagesLoaded(snapshot, ultimoMs))
+                .addOnFailureListener(e -> handleMessagesLoadError(e));
+    }
+
+    private void handleGapMessagesLoaded(com.google.firebase.firestore.QuerySnapshot snapshot, long desdeMs) {
+        List<Mensaje> nuevos = parseMessages(snapshot);
+        long hastaMs = nuevos.isEmpty() || nuevos.get(nuevos.size() - 1).getTimestamp() == null
+                ? desdeMs : nuevos.get(nuevos.size() - 1).getTimestamp().getTime();
+        historialLocal.registrarRango(nuevos, desdeMs, hastaMs);
+
+        if (nuevos.size() >= PAGE_SIZE) {
+            Log.d(TAG, "Hueco de más de " + PAGE_SIZE + " mensajes, se carga la página más nueva");
+            cargarPaginaMasNueva();
+            return;
+        }
+
+        isLoadingMore = false;
+        showLoadingOlder(false);
+        hideSkeleton();
+
+        if (adapter.getItemCount() == 0) {
+            mostrarVentana(historialLocal.getHistorial().ultimos(PAGE_SIZE));
+            rvMensajes.scrollToPosition(adapter.getItemCount() - 1);
+        } else {
+            for (Mensaje m : nuevos) {
+                if (messageIds.add(m.getId())) {
+                    adapter.agregarMensaje(m);
+                    latestTimestampLoaded = m.getTimestamp();
+                }
+            }
+            if (!nuevos.isEmpty()) maybeScrollToBottom();
+        }
+
+        if (latestTimestampLoaded == null && hastaMs >= 0) {
+            latestTimestampLoaded = new Date(hastaMs);
+        }
+        attachNewMessagesListener();
+    }
+
+    private void cargarPaginaMasNueva() {
         db.collection(FirestoreConstants.COLLECTION_CHATS).document(chatId)
                 .collection(FirestoreConstants.COLLECTION_MENSAJES)
                 .orderBy(FirestoreConstants.FIELD_TIMESTAMP, Query.Direction.DESCENDING)
@@ -998,13 +1121,13 @@ public class ChatActivity extends AppCompatActivity {
 
         List<Mensaje> page = parseMessages(snapshot);
         Collections.reverse(page);
-        adapter.setMensajes(page);
-
-        if (!page.isEmpty()) {
-            latestTimestampLoaded = page.get(page.size() - 1).getTimestamp();
+        if (historialLocal != null && !page.isEmpty()) {
+            boolean llegaAlInicio = snapshot.size() < PAGE_SIZE;
+            historialLocal.registrarRango(page,
+                    llegaAlInicio ? HistorialChat.INICIO : msDe(page.get(0)),
+                    msDe(page.get(page.size() - 1)));
         }
-
-        oldestSnapshot = snapshot.getDocuments().get(snapshot.size() - 1);
+        mostrarVentana(page);
 
         if (snapshot.size() < PAGE_SIZE) {
             hasMoreMessages = false;
@@ -1014,6 +1137,24 @@ public class ChatActivity extends AppCompatActivity {
         attachNewMessagesListener();
     }
 
+    /** Reemplaza lo que muestra el adapter por {@code ventana} (del más viejo al más nuevo). */
+    private void mostrarVentana(List<Mensaje> ventana) {
+        messageIds.clear();
+        for (Mensaje m : ventana) {
+            messageIds.add(m.getId());
+        }
+        adapter.setMensajes(ventana);
+        hasMoreMessages = true;
+        oldestLoaded = ventana.isEmpty() ? null : ventana.get(0);
+        if (!ventana.isEmpty()) {
+            latestTimestampLoaded = ventana.get(ventana.size() - 1).getTimestamp();
+        }
+    }
+
+    private static long msDe(Mensaje m) {
+        return m.getTimestamp() != null ? m.getTimestamp().getTime() : System.currentTimeMillis();
+    }
+
     private List<Mensaje> parseMessages(com.google.firebase.firestore.QuerySnapshot snapshot) {
         List<Mensaje> messages = new ArrayList<>();
 
@@ -1022,7 +1163,6 @@ public class ChatActivity extends AppCompatActivity {
             if (m == null) continue;
 
             m.setId(doc.getId());
-            messageIds.add(doc.getId());
             messages.add(m);
 
             if (shouldMarkAsRead(m)) {
@@ -1048,6 +1188,12 @@ public class ChatActivity extends AppCompatActivity {
 
         Log.e(TAG, "Error cargando mensajes iniciales", e);
 
+        if (adapter.getItemCount() > 0) {
+            // Se ve lo guardado; el listener completa cuando vuelva la conexión
+            attachNewMessagesListener();
+            return;
+        }
+
         String errorMsg = "Error al cargar mensajes";
         if (e.getMessage() != null && e.getMessage().contains("PERMISSION_DENIED")) {
             errorMsg = "No tienes permiso para ver estos mensajes";
@@ -1065,6 +1211,8 @@ public class ChatActivity extends AppCompatActivity {
         if (latestTimestampLoaded == null) return;
         if (newMessagesListener != null) newMessagesListener.remove();
 
+        // Todo lo que entrega el listener es continuo desde aquí (tramo completo del historial)
+        desdeEnVivoMs = latestTimestampLoaded.getTime();
         newMessagesListener = db.collection(FirestoreConstants.COLLECTION_CHATS).document(chatId)
                 .collection(FirestoreConstants.COLLECTION_MENSAJES)
                 .orderBy(FirestoreConstants.FIELD_TIMESTAMP, Query.Direction.ASCENDING)
@@ -1092,6 +1240,7 @@ public class ChatActivity extends AppCompatActivity {
         if (m == null) return;
 
         m.setId(change.getDocument().getId());
+        guardarEnVivo(m);
         if (messageIds.contains(m.getId())) return;
 
         messageIds.add(m.getId());
@@ -1112,10 +1261,24 @@ public class ChatActivity extends AppCompatActivity {
         Mensaje updatedMessage = change.getDocument().toObject(Mensaje.class);
         if (updatedMessage != null) {
             updatedMessage.setId(messageId);
+            // También recibe el timestamp definitivo de los mensajes propios recién enviados
+            guardarEnVivo(updatedMessage);
             actualizarMensajeEnAdapter(updatedMessage);
         }
     }
 
+    /**
+     * Guarda un mensaje entregado por el listener de Firestore. Si la recepción es continua
+     * desde la última sincronización, extiende el tramo completo; si no, queda aislado y lo
+     * que falte antes se detecta como hueco.
+     */
+    private void guardarEnVivo(Mensaje m) {
+        if (historialLocal == null || m.getTimestamp() == null) return;
+        long ms = m.getTimestamp().getTime();
+        long desde = desdeEnVivoMs != null ? Math.min(desdeEnVivoMs, ms) : ms;
+        historialLocal.registrarRango(Collections.singletonList(m), desde, ms);
+    }
+
     private void maybeScrollToBottom() {
         int lastVisible = layoutManager.findLastCompletelyVisibleItemPosition();
         if (lastVisible >= adapter.getItemCount() - 3) {
@@ -1124,21 +1287,32 @@ public class ChatActivity extends AppCompatActivity {
     }
 
     private void loadMoreMessages() {
-        if (isLoadingMore || !hasMoreMessages) return;
+        if (isLoadingMore || !hasMoreMessages || oldestLoaded == null) return;
+
+        // Lo anterior sin huecos sale del disco; el servidor solo se consulta para completar
+        if (historialLocal != null) {
+            HistorialChat<Mensaje> historial = historialLocal.getHistorial();
+            List<Mensaje> locales = historial.anteriores(oldestLoaded, PAGE_SIZE);
+            boolean llegaAlInicio = historial.llegaAlInicio(oldestLoaded);
+            if (locales.size() == PAGE_SIZE || llegaAlInicio) {
+                mostrarAnteriores(locales);
+                if (locales.size() < PAGE_SIZE) hasMoreMessages = false;
+                return;
+            }
+        }
+
+        if (oldestLoaded.getTimestamp() == null) return;
         isLoadingMore = true;
         showLoadingOlder(true);
+        final Mensaje referencia = oldestLoaded;
 
-        Query query = db.collection(FirestoreConstants.COLLECTION_CHATS).document(chatId)
-                .collection(FirestoreConstants.COLLECTION_MENSAJES)
-                .orderBy(FirestoreConstants.FIELD_TIMESTAMP, Query.Direction.DESCENDING)
-                .limit(PAGE_SIZE);
-
-        if (oldestSnapshot != null) {
-            query = query.startAfter(oldestSnapshot);
-        }
-
-        query.get()
-            .addOnSuccessListener(snapshot -> handleMoreMessagesLoaded(snapshot))
+        db.collection(FirestoreConstants.COLLECTION_CHATS).document(chatId)
+            .collection(FirestoreConstants.COLLECTION_MENSAJES)
+            .orderBy(FirestoreConstants.FIELD_TIMESTAMP, Query.Direction.DESCENDING)
+            .startAfter(referencia.getTimestamp())
+            .limit(PAGE_SIZE)
+            .get()
+            .addOnSuccessListener(snapshot -> handleMoreMessagesLoaded(snapshot, referencia))
             .addOnFailureListener(e -> {
                 isLoadingMore = false;
                 showLoadingOlder(false);
@@ -1147,12 +1321,15 @@ public class ChatActivity extends AppCompatActivity {
             });
     }
 
-    private void handleMoreMessagesLoaded(com.google.firebase.firestore.QuerySnapshot snapshot) {
+    private void handleMoreMessagesLoaded(com.google.firebase.firestore.QuerySnapshot snapshot, Mensaje referencia) {
         isLoadingMore = false;
         showLoadingOlder(false);
 
         if (snapshot == null || snapshot.isEmpty()) {
             hasMoreMessages = false;
+            if (historialLocal != null) {
+                historialLocal.registrarRango(Collections.emptyList(), HistorialChat.INICIO, msDe(referencia));
+            }
             return;
         }
 
@@ -1161,17 +1338,30 @@ public class ChatActivity extends AppCompatActivity {
             Mensaje m = doc.toObject(Mensaje.class);
             if (m == null) continue;
             m.setId(doc.getId());
-            if (messageIds.contains(m.getId())) continue;
-            messageIds.add(m.getId());
             older.add(m);
         }
+        Collections.reverse(older);
+
+        boolean llegaAlInicio = snapshot.size() < PAGE_SIZE;
+        if (historialLocal != null && !older.isEmpty()) {
+            // Completa el hueco entre esta página y lo que ya se mostraba
+            historialLocal.registrarRango(older,
+                    llegaAlInicio ? HistorialChat.INICIO : msDe(older.get(0)), msDe(referencia));
+        }
 
-        if (older.isEmpty()) {
+        mostrarAnteriores(older);
+        if (llegaAlInicio) {
             hasMoreMessages = false;
-            return;
         }
+    }
 
-        Collections.reverse(older);
+    /** Agrega arriba mensajes anteriores (del más viejo al más nuevo) sin mover la vista. */
+    private void mostrarAnteriores(List<Mensaje> anteriores) {
+        List<Mensaje> older = new ArrayList<>();
+        for (Mensaje m : anteriores) {
+            if (messageIds.add(m.getId())) older.add(m);
+        }
+        if (older.isEmpty()) return;
 
         int firstVisible = layoutManager.findFirstVisibleItemPosition();
         View firstView = layoutManager.findViewByPosition(firstVisible);
@@ -1179,11 +1369,7 @@ public class ChatActivity extends AppCompatActivity {
 
         adapter.agregarMensajesAlInicio(older);
         layoutManager.scrollToPositionWithOffset(firstVisible + older.size(), offset);
-
-        oldestSnapshot = snapshot.getDocuments().get(snapshot.size() - 1);
-        if (snapshot.size() < PAGE_SIZE) {
-            hasMoreMessages = false;
-        }
+        oldestLoaded = older.get(0);
     }
 
     private void showLoadingOlder(boolean show) {
@@ -1373,222 +1559,74 @@ public class ChatActivity extends AppCompatActivity {
 
         setupMessageListeners();
         setupPresenceListeners();
-        queryInitialPresence();
 
         socketManager.resetUnreadCount(chatId);
         Log.d(TAG, "WebSocket listeners configurados para chat: " + chatId);
     }
 
     private void setupMessageListeners() {
-        socketManager.on("new_message", this::handleWebSocketNewMessage);
-        socketManager.on("message_read", this::handleWebSocketMessageRead);
-        socketManager.on("user_typing", args -> handleWebSocketTyping(args, true));
-        socketManager.on("user_stop_typing", args -> handleWebSocketTyping(args, false));
+        if (!suscripcionesSocket.isEmpty()) return;
+        suscripcionesSocket.add(socketManager.observar(this, SocketEvents.NUEVO_MENSAJE, this::handleWebSocketNewMessage));
+        suscripcionesSocket.add(socketManager.observar(this, SocketEvents.MENSAJE_LEIDO, this::handleWebSocketMessageRead));
+        suscripcionesSocket.add(socketManager.observar(this, SocketEvents.ESCRIBIENDO, this::handleWebSocketTyping));
+        suscripcionesSocket.add(socketManager.observar(this, SocketEvents.DEJO_DE_ESCRIBIR, this::handleWebSocketTyping));
     }
 
     private void setupPresenceListeners() {
-        socketManager.on("user_connected", this::handleWebSocketUserConnected);
-        socketManager.on("user_disconnected", this::handleWebSocketUserDisconnected);
-        socketManager.on("online_users_response", this::handleWebSocketOnlineUsersResponse);
-    }
-
-    private void queryInitialPresence() {
-        if (otroUsuarioId != null) {
-            socketManager.getOnlineUsers(new String[]{otroUsuarioId});
-            socketManager.subscribePresence(new String[]{otroUsuarioId});
-        }
+        if (otroUsuarioId == null || presenciaOtroUsuario != null) return;
+        PresenceStore presencia = socketManager.getPresencia();
+        presenciaOtroUsuario = presencia.suscribir(Collections.singletonList(otroUsuarioId),
+                cambios -> mostrarPresencia(cambios.get(otroUsuarioId)));
+        mostrarPresencia(presencia.getEstado(otroUsuarioId));
     }
 
-    private void handleWebSocketNewMessage(Object[] args) {
-        if (args.length == 0) return;
-
-        try {
-            JSONObject data = (JSONObject) args[0];
-            Mensaje mensaje = parseWebSocketMessage(data);
-
-            runOnUiThread(() -> {
-                if (!messageIds.contains(mensaje.getId())) {
-                    messageIds.add(mensaje.getId());
-                    adapter.agregarMensaje(mensaje);
-                    rvMensajes.smoothScrollToPosition(adapter.getItemCount() - 1);
-
-                    if (!mensaje.getIdRemitente().equals(currentUserId)) {
-                        socketManager.markMessageRead(chatId, mensaje.getId());
-                        vibrarSutil();
-                    }
-                }
-            });
-
-            Log.d(TAG, "Mensaje recibido vía WebSocket");
-        } catch (Exception e) {
-            Log.e(TAG, "Error parseando mensaje WebSocket", e);
-        }
-    }
-
-    private Mensaje parseWebSocketMessage(JSONObject data) throws Exception {
-        Mensaje mensaje = new Mensaje();
-        mensaje.setId(data.optString(FirestoreConstants.FIELD_ID, ""));
-        mensaje.setIdRemitente(data.optString(FirestoreConstants.FIELD_ID_REMITENTE, ""));
-        mensaje.setIdDestinatario(data.optString(FirestoreConstants.FIELD_ID_DESTINATARIO, ""));
-        mensaje.setTexto(data.optString(FirestoreConstants.FIELD_TEXTO, ""));
-        mensaje.setTipo(data.optString(FirestoreConstants.FIELD_TIPO, FirestoreConstants.MESSAGE_TYPE_TEXTO));
-        mensaje.setLeido(data.optBoolean(FirestoreConstants.FIELD_LEIDO, false));
-        mensaje.setEntregado(data.optBoolean(FirestoreConstants.FIELD_ENTREGADO, true));
-
-        String timestampStr = data.optString(FirestoreConstants.FIELD_TIMESTAMP, "");
-        if (!timestampStr.isEmpty()) {
-            try {
-                // Parse standard ISO 8601 date from JavaScript's toISOString() (always UTC)
-                // Format: yyyy-MM-dd'T'HH:mm:ss.SSSZ
-                java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", java.util.Locale.US);
-                sdf.setTimeZone(java.util.TimeZone.getTimeZone("UTC"));
-                Date date = sdf.parse(timestampStr);
-                mensaje.setTimestamp(date != null ? date : new Date());
-            } catch (Exception e) {
-                // Fallback for formats without milliseconds or different precision
-                try {
-                     java.text.SimpleDateFormat sdfFallback = new java.text.SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", java.util.Locale.US);
-                     sdfFallback.setTimeZone(java.util.TimeZone.getTimeZone("UTC"));
-                     Date date = sdfFallback.parse(timestampStr);
-                     mensaje.setTimestamp(date != null ? date : new Date());
-                } catch (Exception ex) {
-                    Log.e(TAG, "Error parsing timestamp: " + timestampStr, ex);
-                    mensaje.setTimestamp(new Date());
-                }
-            }
+    private void mostrarPresencia(@Nullable PresenceStore.Estado estado) {
+        if (estado == null || tvEstadoChat == null) return;
+        if (estado.enLinea) {
+            tvEstadoChat.setText(FirestoreConstants.ONLINE_STATUS_TEXT);
+            tvEstadoChat.setTextColor(getColor(R.color.green_success));
         } else {
-            mensaje.setTimestamp(new Date());
-        }
-
-        if (data.has(FirestoreConstants.FIELD_IMAGEN_URL)) {
-            mensaje.setImagenUrl(data.optString(FirestoreConstants.FIELD_IMAGEN_URL));
-        }
-        if (data.has(FirestoreConstants.FIELD_LATITUD) && data.has(FirestoreConstants.FIELD_LONGITUD)) {
-            mensaje.setLatitud(data.optDouble(FirestoreConstants.FIELD_LATITUD));
-            mensaje.setLongitud(data.optDouble(FirestoreConstants.FIELD_LONGITUD));
-        }
-
-        return mensaje;
-    }
-
-    private void handleWebSocketMessageRead(Object[] args) {
-        if (args.length == 0) return;
-
-        try {
-            JSONObject data = (JSONObject) args[0];
-            String messageId = data.getString("messageId");
-
-            runOnUiThread(() -> adapter.notifyDataSetChanged());
-            Log.d(TAG, "Read receipt recibido para mensaje: " + messageId);
-        } catch (JSONException e) {
-            Log.e(TAG, "Error parseando read receipt", e);
+            tvEstadoChat.setText(FirestoreConstants.DEFAULT_STATUS_TEXT);
+            tvEstadoChat.setTextColor(getColor(R.color.gray_text));
         }
+        tvEstadoChat.setVisibility(View.VISIBLE);
+        Log.d(TAG, " Estado de presencia: " + (estado.enLinea ? "online" : "offline"));
     }
 
-    private void handleWebSocketTyping(Object[] args, boolean isTyping) {
-        if (args.length == 0) return;
+    private void handleWebSocketNewMessage(SocketEvents.MensajeNuevo evento) {
+        Mensaje mensaje = evento.aMensaje();
+        // Sin tramo: el socket puede adelantarse a mensajes que Firestore aún no entregó
+        // (y su hora es la del servidor del socket); el listener completa el tramo después
+        if (historialLocal != null) historialLocal.guardarSuelto(mensaje);
+        if (!messageIds.contains(mensaje.getId())) {
+            messageIds.add(mensaje.getId());
+            adapter.agregarMensaje(mensaje);
+            rvMensajes.smoothScrollToPosition(adapter.getItemCount() - 1);
 
-        try {
-            JSONObject data = (JSONObject) args[0];
-            String userId = data.getString("userId");
-
-            if (!userId.equals(currentUserId)) {
-                runOnUiThread(() -> {
-                    if (tvEstadoChat != null) {
-                        if (isTyping) {
-                            tvEstadoChat.setText(FirestoreConstants.TYPING_STATUS_TEXT);
-                            tvEstadoChat.setVisibility(View.VISIBLE);
-                        } else {
-                            tvEstadoChat.setText("");
-                            tvEstadoChat.setVisibility(View.GONE);
-                        }
-                    }
-                });
+            if (!mensaje.getIdRemitente().equals(currentUserId)) {
+                socketManager.markMessageRead(chatId, mensaje.getId());
+                vibrarSutil();
             }
-
-            Log.d(TAG, "Usuario " + (isTyping ? "escribiendo" : "dejó de escribir") + ": " + userId);
-        } catch (JSONException e) {
-            Log.e(TAG, "Error parseando typing event", e);
         }
+        Log.d(TAG, "Mensaje recibido vía WebSocket");
     }
 
-    private void handleWebSocketUserConnected(Object[] args) {
-        if (args.length == 0) return;
-
-        try {
-            JSONObject data = (JSONObject) args[0];
-            String userId = data.getString("userId");
-
-            if (userId.equals(otroUsuarioId)) {
-                runOnUiThread(() -> {
-                    if (tvEstadoChat != null) {
-                        tvEstadoChat.setText(FirestoreConstants.ONLINE_STATUS_TEXT);
-                        tvEstadoChat.setTextColor(getColor(R.color.green_success));
-                        tvEstadoChat.setVisibility(View.VISIBLE);
-                    }
-                });
-                Log.d(TAG, " Otro usuario conectado: " + userId);
-            }
-        } catch (JSONException e) {
-            Log.e(TAG, "Error parseando user_connected", e);
-        }
-    }
-
-    private void handleWebSocketUserDisconnected(Object[] args) {
-        if (args.length == 0) return;
-
-        try {
-            JSONObject data = (JSONObject) args[0];
-            String userId = data.getString("userId");
-
-            if (userId.equals(otroUsuarioId)) {
-                runOnUiThread(() -> {
-                    if (tvEstadoChat != null) {
-                        tvEstadoChat.setText(FirestoreConstants.DEFAULT_STATUS_TEXT);
-                        tvEstadoChat.setTextColor(getColor(R.color.gray_text));
-                        tvEstadoChat.setVisibility(View.VISIBLE);
-                    }
-                });
-                Log.d(TAG, " Otro usuario desconectado: " + userId);
-            }
-        } catch (JSONException e) {
-            Log.e(TAG, "Error parseando user_disconnected", e);
-        }
+    private void handleWebSocketMessageRead(SocketEvents.MensajeLeido evento) {
+        adapter.notifyDataSetChanged();
+        Log.d(TAG, "Read receipt recibido para mensaje: " + evento.messageId);
     }
 
-    private void handleWebSocketOnlineUsersResponse(Object[] args) {
-        if (args.length == 0) return;
-
-        try {
-            JSONObject data = (JSONObject) args[0];
-            org.json.JSONArray onlineUsers = data.getJSONArray("online");
-
-            boolean isOnline = false;
-            for (int i = 0; i < onlineUsers.length(); i++) {
-                if (onlineUsers.getString(i).equals(otroUsuarioId)) {
-                    isOnline = true;
-                    break;
-                }
+    private void handleWebSocketTyping(SocketEvents.Escribiendo evento) {
+        if (!evento.userId.equals(currentUserId) && tvEstadoChat != null) {
+            if (evento.escribiendo) {
+                tvEstadoChat.setText(FirestoreConstants.TYPING_STATUS_TEXT);
+                tvEstadoChat.setVisibility(View.VISIBLE);
+            } else {
+                tvEstadoChat.setText("");
+                tvEstadoChat.setVisibility(View.GONE);
             }
-
-            final boolean finalIsOnline = isOnline;
-            runOnUiThread(() -> {
-                if (tvEstadoChat != null) {
-                    if (finalIsOnline) {
-                        tvEstadoChat.setText(FirestoreConstants.ONLINE_STATUS_TEXT);
-                        tvEstadoChat.setTextColor(getColor(R.color.green_success));
-                    } else {
-                        tvEstadoChat.setText(FirestoreConstants.DEFAULT_STATUS_TEXT);
-                        tvEstadoChat.setTextColor(getColor(R.color.gray_text));
-                    }
-                    tvEstadoChat.setVisibility(View.VISIBLE);
-                }
-            });
-
-            Log.d(TAG, " Estado de presencia: " + (finalIsOnline ? "online" : "offline"));
-        } catch (JSONException e) {
-            Log.e(TAG, "Error parseando online_users_response", e);
         }
+        Log.d(TAG, "Usuario " + (evento.escribiendo ? "escribiendo" : "dejó de escribir") + ": " + evento.userId);
     }
 
     // ==================== LIFECYCLE ====================
@@ -1684,8 +1722,9 @@ public class ChatActivity extends AppCompatActivity {
             networkMonitor.unregister();
         }
 
-        if (USE_WEBSOCKET && otroUsuarioId != null) {
-            socketManager.unsubscribePresence(new String[]{otroUsuarioId});
+        if (presenciaOtroUsuario != null) {
+            presenciaOtroUsuario.cancelar();
+            presenciaOtroUsuario = null;
         }
 
         if (USE_WEBSOCKET) {
@@ -1696,13 +1735,10 @@ public class ChatActivity extends AppCompatActivity {
     }
 
     private void cleanupWebSocketListeners() {
-        socketManager.off("new_message");
-        socketManager.off("user_typing");
-        socketManager.off("user_stop_typing");
-        socketManager.off("message_read");
-        socketManager.off("user_connected");
-        socketManager.off("user_disconnected");
-        socketManager.off("online_users_response");
+        for (SocketEventBus.Suscripcion suscripcion : suscripcionesSocket) {
+            suscripcion.cancelar();
+        }
+        suscripcionesSocket.clear();
     }
 
     // ==================== SKELETON LOADING ====================
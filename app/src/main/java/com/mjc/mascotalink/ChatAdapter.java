@@ -12,6 +12,8 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
 import androidx.recyclerview.widget.AsyncListDiffer;
 import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
@@ -19,6 +21,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.mjc.mascotalink.modelo.ChatItem;
 import com.mjc.mascotalink.modelo.DateSeparator;
 import com.mjc.mascotalink.modelo.Mensaje;
+import com.mjc.mascotalink.util.ListaDiferida;
 import com.mjc.mascotalink.util.TimeUtils;
 import com.mjc.mascotalink.MyApplication;
 import com.bumptech.glide.Glide;
@@ -92,12 +95,28 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
             return false;
         }
+
+        @Nullable
+        @Override
+        public Object getChangePayload(@NonNull ChatItem oldItem, @NonNull ChatItem newItem) {
+            // Solo cambió entregado/leído: se actualiza la marca sin recargar imagen ni mapa
+            if (oldItem instanceof Mensaje && newItem instanceof Mensaje) {
+                Mensaje oldMsg = (Mensaje) oldItem;
+                Mensaje newMsg = (Mensaje) newItem;
+                if (Objects.equals(oldMsg.getTexto(), newMsg.getTexto()) &&
+                    Objects.equals(oldMsg.getTipo(), newMsg.getTipo()) &&
+                    Objects.equals(oldMsg.getImagenUrl(), newMsg.getImagenUrl())) {
+                    return ListaDiferida.CAMBIO_LECTURA;
+                }
+            }
+            return null;
+        }
     };
 
     public ChatAdapter(Context context, String currentUserId) {
         this.context = context;
         this.currentUserId = currentUserId;
-        this.differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+        this.differ = new AsyncListDiffer<>(new AdapterListUpdateCallback(this), ListaDiferida.config(DIFF_CALLBACK));
     }
 
     /**
@@ -377,6 +396,25 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
         }
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.contains(ListaDiferida.CAMBIO_LECTURA)) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        ChatItem item = differ.getCurrentList().get(position);
+        if (!(item instanceof Mensaje)) return;
+        Mensaje mensaje = (Mensaje) item;
+
+        if (holder instanceof SentMessageHolder) {
+            ((SentMessageHolder) holder).bindEstado(mensaje);
+        } else if (holder instanceof ImageMessageHolder) {
+            ((ImageMessageHolder) holder).bindEstado(mensaje);
+        } else if (holder instanceof LocationMessageHolder) {
+            ((LocationMessageHolder) holder).bindEstado(mensaje);
+        }
+    }
+
     @Override
     public int getItemCount() {
         return differ.getCurrentList().size();
@@ -430,7 +468,11 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
         void bind(Mensaje mensaje, String time) {
             tvMensaje.setText(mensaje.getTexto());
             tvHora.setText(time);
+            bindEstado(mensaje);
+        }
 
+        /** Icono de estado; también es el bind parcial de {@link ListaDiferida#CAMBIO_LECTURA}. */
+        void bindEstado(Mensaje mensaje) {
             // Actualizar icono de estado con animación suave
             if (mensaje.isLeido()) {
                 ivEstado.setImageResource(R.drawable.ic_check_double);
@@ -516,7 +558,11 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
                 progressUpload.setVisibility(View.VISIBLE);
             }
             
-            // Actualizar estado si es mensaje enviado
+            bindEstado(mensaje);
+        }
+
+        /** Estado si es mensaje enviado; también es el bind parcial de {@link ListaDiferida#CAMBIO_LECTURA}. */
+        void bindEstado(Mensaje mensaje) {
             if (isSent && ivEstado != null) {
                 if (mensaje.isLeido()) {
                     ivEstado.setImageResource(R.drawable.ic_check_double);
@@ -590,6 +636,12 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
             }
         }
         
+        void bindEstado(Mensaje mensaje) {
+            if (isSent) {
+                updateMessageStatus(mensaje, ivEstadoSent);
+            }
+        }
+
         private void setupMapClick(Mensaje mensaje, ImageView ivMapa, View itemView) {
             if (mensaje.getLatitud() != null && mensaje.getLongitud() != null) {
                 double lat = mensaje.getLatitud();
@@ -21,6 +21,8 @@ import com.google.android.material.button.MaterialButton;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.mjc.mascotalink.util.ResumenRuta;
+import com.mjc.mascotalink.util.ResumenRutaCache;
 import com.mjc.mascotalink.utils.PdfGenerator;
 import com.mjc.mascotalink.MyApplication;
 
@@ -141,6 +143,24 @@ public class DetalleHistorialActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Distancia del resumen de ruta precalculado (o de los campos agregados de la reserva);
+     * nunca recorre los puntos crudos.
+     */
+    private String textoDistancia() {
+        Double km = null;
+        ResumenRuta resumen = ResumenRutaCache.obtener(this, paseo.getReservaId());
+        if (resumen != null) {
+            km = resumen.getDistanciaKm();
+        } else if (paseo.getDistancia_km() != null) {
+            km = paseo.getDistancia_km();
+        } else if (paseo.getDistancia_acumulada_metros() != null) {
+            km = paseo.getDistancia_acumulada_metros() / 1000.0;
+        }
+        if (km == null || km <= 0) return "";
+        return String.format(Locale.US, " · %.2f km", km);
+    }
+
     private void cargarPaseo(String idReserva) {
         FirebaseFirestore.getInstance().collection("reservas").document(idReserva).get()
             .addOnSuccessListener(doc -> {
@@ -148,6 +168,7 @@ public class DetalleHistorialActivity extends AppCompatActivity {
                     paseo = doc.toObject(Paseo.class);
                     if (paseo != null) {
                         paseo.setReservaId(doc.getId());
+                        ResumenRutaCache.guardar(this, doc.getId(), ResumenRuta.fromMap(doc.get(ResumenRuta.CAMPO)));
                         if (doc.contains("id_mascota")) paseo.setIdMascota(doc.getString("id_mascota"));
                         if (doc.contains("mascotas_nombres")) paseo.setMascotasNombres((List<String>) doc.get("mascotas_nombres"));
                         if (doc.contains("mascotas_fotos")) paseo.setMascotasFotos((List<String>) doc.get("mascotas_fotos"));
@@ -277,7 +298,8 @@ public class DetalleHistorialActivity extends AppCompatActivity {
         } else {
             tvFechaHora.setText(paseo.getFechaFormateada() + " - " + paseo.getHoraFormateada());
         }
-        tvDuracionReal.setText("Duración: " + paseo.getDuracion_minutos() + " min" + (esGrupo ? "/día" : ""));
+        tvDuracionReal.setText("Duración: " + paseo.getDuracion_minutos() + " min" + (esGrupo ? "/día" : "")
+                + textoDistancia());
         tvCostoTotal.setText(String.format(Locale.US, "$%.2f", esGrupo ? costoTotalGrupo : paseo.getCosto_total()));
         tvMetodoPago.setText(paseo.getMetodo_pago() != null ? paseo.getMetodo_pago() : "No especificado");
         
@@ -9,12 +9,14 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
 import androidx.recyclerview.widget.AsyncListDiffer;
 import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
 import com.google.android.material.chip.Chip;
+import com.mjc.mascotalink.util.ListaDiferida;
 import com.mjc.mascotalink.utils.ReservaEstadoValidator;
 import com.mjc.mascotalink.views.OverlappingAvatarsView;
 import com.mjc.mascotalink.MyApplication;
@@ -57,7 +59,7 @@ public class HistorialPaseosAdapter extends RecyclerView.Adapter<HistorialPaseos
 
     public HistorialPaseosAdapter(Context context, List<Paseo> paseos, String userRole, OnPaseoClickListener listener) {
         this.context = context;
-        this.differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+        this.differ = new AsyncListDiffer<>(new AdapterListUpdateCallback(this), ListaDiferida.config(DIFF_CALLBACK));
         this.userRole = userRole;
         this.listener = listener;
         // Inicializar con la lista proporcionada
@@ -9,6 +9,7 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 import java.util.List;
+import java.util.Objects;
 
 public class HorarioSelectorAdapter extends RecyclerView.Adapter<HorarioSelectorAdapter.HorarioViewHolder> {
 
@@ -17,6 +18,11 @@ public class HorarioSelectorAdapter extends RecyclerView.Adapter<HorarioSelector
     private int selectedPosition = -1;
     private OnHorarioSelectedListener listener;
 
+    // Lo último que se mostró de cada horario, para notificar solo los que cambian
+    private static final String PAYLOAD_ESTADO = "estado";
+    private String[] horasMostradas = new String[0];
+    private boolean[] disponiblesMostrados = new boolean[0];
+
     public interface OnHorarioSelectedListener {
         void onHorarioSelected(Horario horario, int position);
     }
@@ -38,7 +44,20 @@ public class HorarioSelectorAdapter extends RecyclerView.Adapter<HorarioSelector
     public void onBindViewHolder(@NonNull HorarioViewHolder holder, int position) {
         Horario horario = horarioList.get(position);
         holder.tvHorario.setText(horario.getHoraFormateada());
+        bindEstado(holder, horario, position);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull HorarioViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+        } else {
+            bindEstado(holder, horarioList.get(position), position);
+        }
+    }
 
+    /** Disponibilidad, selección y clicks; es todo lo que cambia al validar horarios. */
+    private void bindEstado(HorarioViewHolder holder, Horario horario, int position) {
         boolean isSelected = (selectedPosition == position);
         boolean isAvailable = horario.isDisponible();
 
@@ -51,8 +70,8 @@ public class HorarioSelectorAdapter extends RecyclerView.Adapter<HorarioSelector
             if (isAvailable) {
                 int previousPosition = selectedPosition;
                 selectedPosition = holder.getAdapterPosition();
-                notifyItemChanged(previousPosition);
-                notifyItemChanged(selectedPosition);
+                notifyItemChanged(previousPosition, PAYLOAD_ESTADO);
+                notifyItemChanged(selectedPosition, PAYLOAD_ESTADO);
                 if (listener != null) {
                     listener.onHorarioSelected(horario, selectedPosition);
                 }
@@ -72,15 +91,53 @@ public class HorarioSelectorAdapter extends RecyclerView.Adapter<HorarioSelector
         return horarioList.size();
     }
 
+    /**
+     * Notifica los horarios cuya disponibilidad cambió desde la última llamada (la lista se
+     * modifica en el lugar al validar). Si cambió la lista entera, redibuja todo.
+     */
+    public void notificarCambiosDisponibilidad() {
+        int total = horarioList.size();
+        boolean mismaLista = horasMostradas.length == total;
+        for (int i = 0; mismaLista && i < total; i++) {
+            Horario horario = horarioList.get(i);
+            mismaLista = horario != null && Objects.equals(horasMostradas[i], horario.getHoraFormateada());
+        }
+
+        if (!mismaLista) {
+            guardarMostrados();
+            notifyDataSetChanged();
+            return;
+        }
+        for (int i = 0; i < total; i++) {
+            boolean disponible = horarioList.get(i).isDisponible();
+            if (disponible != disponiblesMostrados[i]) {
+                disponiblesMostrados[i] = disponible;
+                notifyItemChanged(i, PAYLOAD_ESTADO);
+            }
+        }
+    }
+
+    private void guardarMostrados() {
+        int total = horarioList.size();
+        horasMostradas = new String[total];
+        disponiblesMostrados = new boolean[total];
+        for (int i = 0; i < total; i++) {
+            Horario horario = horarioList.get(i);
+            if (horario == null) continue;
+            horasMostradas[i] = horario.getHoraFormateada();
+            disponiblesMostrados[i] = horario.isDisponible();
+        }
+    }
+
     public void setSelectedPosition(int position) {
         int previousPosition = this.selectedPosition;
         this.selectedPosition = position;
 
         if (previousPosition != -1 && previousPosition < horarioList.size()) {
-            notifyItemChanged(previousPosition);
+            notifyItemChanged(previousPosition, PAYLOAD_ESTADO);
         }
         if (position != -1 && position < horarioList.size()) {
-            notifyItemChanged(position);
+            notifyItemChanged(position, PAYLOAD_ESTADO);
         }
     }
 
@@ -89,7 +146,7 @@ public class HorarioSelectorAdapter extends RecyclerView.Adapter<HorarioSelector
         this.selectedPosition = -1;
 
         if (previousPosition != -1 && previousPosition < horarioList.size()) {
-            notifyItemChanged(previousPosition);
+            notifyItemChanged(previousPosition, PAYLOAD_ESTADO);
         }
     }
 
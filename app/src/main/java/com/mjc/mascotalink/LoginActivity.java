@@ -398,7 +398,7 @@ public class LoginActivity extends AppCompatActivity {
         SessionManager sessionManager = new SessionManager(this);
         sessionManager.createSession(uid);
         com.mjc.mascotalink.notifications.FcmTokenSyncWorker.enqueueNow(this);
-        com.mjc.mascotalink.util.UnreadBadgeManager.start(uid);
+        com.mjc.mascotalink.util.UnreadBadgeManager.start(this, uid);
 
         if (cbRemember.isChecked()) {
             guardarPreferenciasLogin(uid, rol, verificacionEstado);
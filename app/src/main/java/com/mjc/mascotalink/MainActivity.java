@@ -56,7 +56,7 @@ public class MainActivity extends AppCompatActivity {
 
         String role = BottomNavManager.getUserRole(this);
         BottomNavManager.setupBottomNav(this, bottomNav, role, R.id.menu_home);
-        UnreadBadgeManager.start(currentUserId);
+        UnreadBadgeManager.start(this, currentUserId);
         UnreadBadgeManager.registerNav(bottomNav, this);
 
         // Handle notification deep link for Chat with validation
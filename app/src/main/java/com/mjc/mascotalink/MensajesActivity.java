@@ -11,20 +11,27 @@ import android.widget.LinearLayout;
 import android.widget.ProgressBar;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
-import com.google.android.gms.tasks.Tasks;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.FirebaseFirestoreException;
 import com.mjc.mascotalink.modelo.Chat;
 import com.mjc.mascotalink.util.BottomNavManager;
+import com.mjc.mascotalink.util.ConsultasCompartidas;
+import com.mjc.mascotalink.util.FirestorePaginas;
+import com.mjc.mascotalink.util.ListaConversaciones;
+import com.mjc.mascotalink.util.MultiplexorConsultas;
+import com.mjc.mascotalink.util.PaginadorKeyset;
+import com.mjc.mascotalink.util.PerfilCache;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -48,8 +55,7 @@ public class MensajesActivity extends AppCompatActivity {
     private Handler updateHandler;
     private Runnable updateRunnable;
 
-    private Map<String, CachedUser> userCache = new HashMap<>();
-    private static final long CACHE_TTL_MS = 5 * 60 * 1000;
+    private PerfilCache perfilCache;
 
     // Skeleton Loading
     private View skeletonLayout;
@@ -58,22 +64,34 @@ public class MensajesActivity extends AppCompatActivity {
     private boolean isInitialLoadComplete = false;
     private long skeletonShowTime = 0;
     private static final long MIN_SKELETON_DISPLAY_TIME_MS = 800;
+    private static final int LIMITE_CONVERSACIONES = 30;
+    /** Filas antes del final a las que se pide la página siguiente. */
+    private static final int UMBRAL_PAGINA = 5;
+
+    // Bandeja: escucha en vivo de los más recientes + páginas de los anteriores
+    private final ListaConversaciones<DocumentSnapshot, Chat> conversaciones =
+            new ListaConversaciones<>(new ListaConversaciones.Conversor<DocumentSnapshot, Chat>() {
+                @Override
+                public String id(DocumentSnapshot documento) {
+                    return documento.getId();
+                }
 
-    private static class CachedUser {
-        String nombre;
-        String foto;
-        long timestamp;
-
-        CachedUser(String nombre, String foto) {
-            this.nombre = nombre;
-            this.foto = foto;
-            this.timestamp = System.currentTimeMillis();
-        }
+                @Override
+                public Chat convertir(DocumentSnapshot documento) {
+                    return aChat(documento);
+                }
 
-        boolean isExpired() {
-            return System.currentTimeMillis() - timestamp > CACHE_TTL_MS;
-        }
-    }
+                @Override
+                public long orden(Chat chat) {
+                    // Sin timestamp = escritura local pendiente: es el más reciente
+                    return chat.getUltimo_timestamp() != null ? chat.getUltimo_timestamp().getTime() : Long.MAX_VALUE;
+                }
+            });
+    private PaginadorKeyset.Fuente<DocumentSnapshot, DocumentSnapshot> paginasAntiguas;
+    private int generacion;
+    private boolean primerResultado;
+    private boolean cargandoAntiguas;
+    private boolean hayAntiguas;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -81,6 +99,7 @@ public class MensajesActivity extends AppCompatActivity {
         setContentView(R.layout.activity_mensajes);
 
         db = FirebaseFirestore.getInstance();
+        perfilCache = PerfilCache.getInstance(this);
         FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
         if (user != null) {
             currentUserId = user.getUid();
@@ -153,28 +172,23 @@ public class MensajesActivity extends AppCompatActivity {
         adaptador = new MensajesAdapter(this, chat -> {
             Intent intent = new Intent(MensajesActivity.this, ChatActivity.class);
             intent.putExtra("chat_id", chat.getChatId());
-            // We need to pass the OTHER user ID for ChatActivity to load header info
-            // We'll find it from participants list logic in ChatActivity or pass it here if known
-            // Ideally Chat object should have it separated.
-            // For now, let ChatActivity figure it out or pass 'otroUsuarioId'
-            // We computed it in the adapter/loading logic? 
-            // Actually, let's re-find it here for safety or pass via intent if stored in Chat object
-            // (We added fields to Chat model but they are transient for UI)
-            
-            // Simple logic: find ID that is not mine
-            String otherId = null;
-            if (chat.getParticipantes() != null) {
-                for (String id : chat.getParticipantes()) {
-                    if (!id.equals(currentUserId)) {
-                        otherId = id;
-                        break;
-                    }
-                }
-            }
+            String otherId = otroUsuario(chat.getParticipantes());
             intent.putExtra("id_otro_usuario", otherId);
             startActivity(intent);
         });
         rvConversaciones.setAdapter(adaptador);
+
+        // Al acercarse al final se piden los chats más antiguos que la escucha en vivo
+        rvConversaciones.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy <= 0 || cargandoAntiguas || !hayAntiguas) return;
+                LinearLayoutManager lm = (LinearLayoutManager) recyclerView.getLayoutManager();
+                if (lm != null && lm.findLastVisibleItemPosition() >= adaptador.getItemCount() - UMBRAL_PAGINA) {
+                    cargarAntiguas();
+                }
+            }
+        });
     }
 
     private void cargarConversaciones() {
@@ -182,147 +196,189 @@ public class MensajesActivity extends AppCompatActivity {
             messagesListener.remove();
         }
 
+        // Un refresco empieza de cero: las páginas en curso de antes se descartan
+        generacion++;
+        conversaciones.limpiar();
+        primerResultado = true;
+        cargandoAntiguas = false;
+        hayAntiguas = false;
+
         if (progressBar != null) progressBar.setVisibility(View.VISIBLE);
         
         Log.d("Mensajes", "Cargando conversaciones para userId: " + currentUserId + ", role: " + userRole);
 
-        // Paginación: Limitar a 30 conversaciones más recientes
-        messagesListener = db.collection("chats")
-                .whereArrayContains("participantes", currentUserId)
-                .orderBy("ultimo_timestamp", Query.Direction.DESCENDING)
-                .limit(30)
-                .addSnapshotListener((snapshot, error) -> {
-                    if (progressBar != null) progressBar.setVisibility(View.GONE);
-                    if (swipeRefresh != null) swipeRefresh.setRefreshing(false);
-
-                    // Ocultar skeleton cuando los datos lleguen
-                    hideSkeleton();
-
-                    if (error != null) {
-                        // Si el usuario ya cerró sesión, ignorar el error de permisos
-                        if (FirebaseAuth.getInstance().getCurrentUser() == null) return;
-
-                        Log.e("Mensajes", "Error al cargar chats: " + error.getMessage());
-                        Log.e("Mensajes", "Error code: " + error.getCode());
-                        
-                        // Mostrar mensaje de error amigable
-                        String errorMsg = "No se pudieron cargar las conversaciones";
-                        if (error.getMessage() != null) {
-                            if (error.getMessage().contains("PERMISSION_DENIED")) {
-                                errorMsg = "No tienes permiso para ver las conversaciones";
-                            } else if (error.getMessage().contains("UNAVAILABLE")) {
-                                errorMsg = "Sin conexión. Verifica tu internet";
-                            }
-                        }
-                        
-                        Toast.makeText(MensajesActivity.this, errorMsg, Toast.LENGTH_LONG).show();
-                        
-                        // Mostrar vista vacía con opción de reintentar
-                        emptyView.setVisibility(View.VISIBLE);
-                        rvConversaciones.setVisibility(View.GONE);
-                        
-                        // Agregar botón de reintentar (si existe en el layout)
-                        // O permitir pull-to-refresh
-                        return;
+        // Escucha en vivo de las 30 conversaciones más recientes; las anteriores se piden por
+        // páginas al hacer scroll. La escucha se comparte con el badge de no leídos (límite
+        // 50), así que normalmente sale de ella sin leer nada.
+        messagesListener = ConsultasCompartidas.get().escuchar(ConsultasCompartidas.chatsDeUsuario(currentUserId),
+                LIMITE_CONVERSACIONES, new MultiplexorConsultas.Receptor<DocumentSnapshot>() {
+                    @Override
+                    public void onResultado(List<DocumentSnapshot> documentos) {
+                        mostrarConversaciones(documentos);
+                    }
+
+                    @Override
+                    public void onError(Exception error) {
+                        mostrarErrorConversaciones(error);
+                    }
+                });
+    }
+
+    private void finCarga() {
+        if (progressBar != null) progressBar.setVisibility(View.GONE);
+        if (swipeRefresh != null) swipeRefresh.setRefreshing(false);
+
+        // Ocultar skeleton cuando los datos lleguen
+        hideSkeleton();
+    }
+
+    private void mostrarErrorConversaciones(Exception error) {
+        finCarga();
+        // Si el usuario ya cerró sesión, ignorar el error de permisos
+        if (FirebaseAuth.getInstance().getCurrentUser() == null) return;
+
+        Log.e("Mensajes", "Error al cargar chats: " + error.getMessage());
+        if (error instanceof FirebaseFirestoreException) {
+            Log.e("Mensajes", "Error code: " + ((FirebaseFirestoreException) error).getCode());
+        }
+        
+        // Mostrar mensaje de error amigable
+        String errorMsg = "No se pudieron cargar las conversaciones";
+        if (error.getMessage() != null) {
+            if (error.getMessage().contains("PERMISSION_DENIED")) {
+                errorMsg = "No tienes permiso para ver las conversaciones";
+            } else if (error.getMessage().contains("UNAVAILABLE")) {
+                errorMsg = "Sin conexión. Verifica tu internet";
+            }
+        }
+        
+        Toast.makeText(MensajesActivity.this, errorMsg, Toast.LENGTH_LONG).show();
+        
+        // Mostrar vista vacía con opción de reintentar
+        emptyView.setVisibility(View.VISIBLE);
+        rvConversaciones.setVisibility(View.GONE);
+        
+        // Agregar botón de reintentar (si existe en el layout)
+        // O permitir pull-to-refresh
+    }
+
+    private void mostrarConversaciones(List<DocumentSnapshot> documentos) {
+        finCarga();
+        Log.d("Mensajes", "Query exitosa. Documentos encontrados: " + documentos.size());
+
+        if (primerResultado) {
+            primerResultado = false;
+            hayAntiguas = documentos.size() >= LIMITE_CONVERSACIONES;
+        }
+        // Solo se convierten (y se mueven de lugar) los chats que cambiaron
+        resolverPerfiles(conversaciones.aplicarEnVivo(documentos, LIMITE_CONVERSACIONES));
+        publicarConversaciones();
+    }
+
+    /** Página siguiente con cursor sobre el chat más antiguo de la lista. */
+    private void cargarAntiguas() {
+        DocumentSnapshot cursor = conversaciones.getUltimoOrigen();
+        if (cursor == null) return;
+        if (paginasAntiguas == null) {
+            paginasAntiguas = FirestorePaginas.fuente(
+                    ConsultasCompartidas.chatsDeUsuario(currentUserId).query(db), doc -> doc);
+        }
+
+        cargandoAntiguas = true;
+        final int esta = generacion;
+        paginasAntiguas.cargar(cursor, conversaciones.size() / LIMITE_CONVERSACIONES, LIMITE_CONVERSACIONES,
+                new PaginadorKeyset.Respuesta<DocumentSnapshot, DocumentSnapshot>() {
+                    @Override
+                    public void entregar(List<DocumentSnapshot> items, DocumentSnapshot cursorSiguiente, boolean hayMas) {
+                        if (esta != generacion || isFinishing()) return;
+                        cargandoAntiguas = false;
+                        hayAntiguas = hayMas;
+                        Log.d("Mensajes", "📄 Página de chats antiguos: " + items.size());
+                        resolverPerfiles(conversaciones.agregarPagina(items));
+                        publicarConversaciones();
                     }
 
-                    Log.d("Mensajes", "Query exitosa. Documentos encontrados: " + (snapshot != null ? snapshot.size() : 0));
-
-                    if (snapshot != null && !snapshot.isEmpty()) {
-                        List<Chat> conversaciones = new ArrayList<>();
-                        Map<String, Integer> userIndexMap = new HashMap<>();
-                        List<String> usersToFetch = new ArrayList<>();
-
-                        for (DocumentSnapshot doc : snapshot.getDocuments()) {
-                            Chat chat = doc.toObject(Chat.class);
-                            chat.setChatId(doc.getId());
-
-                            Object noLeidosObj = doc.get("mensajes_no_leidos");
-                            if (noLeidosObj instanceof java.util.Map) {
-                                java.util.Map<String, Long> noLeidosMap = (java.util.Map<String, Long>) noLeidosObj;
-                                if (noLeidosMap != null && noLeidosMap.containsKey(currentUserId)) {
-                                    Object val = noLeidosMap.get(currentUserId);
-                                    if (val instanceof Long) {
-                                        chat.setMensajesNoLeidos(((Long) val).intValue());
-                                    } else if (val instanceof Integer) {
-                                        chat.setMensajesNoLeidos((Integer) val);
-                                    }
-                                }
-                            }
-
-                            conversaciones.add(chat);
-
-                            String otherId = null;
-                            if (chat.getParticipantes() != null) {
-                                for (String id : chat.getParticipantes()) {
-                                    if (!id.equals(currentUserId)) {
-                                        otherId = id;
-                                        break;
-                                    }
-                                }
-                            }
-
-                            if (otherId != null) {
-                                CachedUser cached = userCache.get(otherId);
-                                if (cached != null && !cached.isExpired()) {
-                                    chat.setNombreOtroUsuario(cached.nombre);
-                                    chat.setFotoOtroUsuario(cached.foto);
-                                    if (chat.getEstado_usuarios() != null) {
-                                        chat.setEstadoOtroUsuario(chat.getEstado_usuarios().get(otherId));
-                                    }
-                                } else {
-                                    if (!usersToFetch.contains(otherId)) {
-                                        usersToFetch.add(otherId);
-                                    }
-                                    userIndexMap.put(otherId, conversaciones.size() - 1);
-                                }
-                            }
-                        }
-
-                        if (usersToFetch.isEmpty()) {
-                            adaptador.actualizarConversaciones(conversaciones);
-                            emptyView.setVisibility(View.GONE);
-                            rvConversaciones.setVisibility(View.VISIBLE);
-                        } else {
-                            List<com.google.android.gms.tasks.Task<DocumentSnapshot>> tasks = new ArrayList<>();
-                            for (String userId : usersToFetch) {
-                                tasks.add(db.collection("usuarios").document(userId).get());
-                            }
-
-                            Tasks.whenAllSuccess(tasks).addOnSuccessListener(results -> {
-                                for (int i = 0; i < results.size(); i++) {
-                                    DocumentSnapshot userDoc = (DocumentSnapshot) results.get(i);
-                                    if (userDoc != null && userDoc.exists()) {
-                                        String userId = userDoc.getId();
-                                        String nombre = userDoc.getString("nombre_display");
-                                        String foto = userDoc.getString("foto_perfil");
-
-                                        userCache.put(userId, new CachedUser(nombre, foto));
-
-                                        Integer chatIndex = userIndexMap.get(userId);
-                                        if (chatIndex != null && chatIndex < conversaciones.size()) {
-                                            conversaciones.get(chatIndex).setNombreOtroUsuario(nombre);
-                                            conversaciones.get(chatIndex).setFotoOtroUsuario(foto);
-                                            if (conversaciones.get(chatIndex).getEstado_usuarios() != null) {
-                                                conversaciones.get(chatIndex).setEstadoOtroUsuario(
-                                                    conversaciones.get(chatIndex).getEstado_usuarios().get(userId)
-                                                );
-                                            }
-                                        }
-                                    }
-                                }
-                                adaptador.actualizarConversaciones(conversaciones);
-                                emptyView.setVisibility(View.GONE);
-                                rvConversaciones.setVisibility(View.VISIBLE);
-                            });
-                        }
-
-                    } else {
-                        emptyView.setVisibility(View.VISIBLE);
-                        rvConversaciones.setVisibility(View.GONE);
+                    @Override
+                    public void fallar(Exception e) {
+                        if (esta != generacion) return;
+                        cargandoAntiguas = false;
                     }
                 });
     }
+
+    private Chat aChat(DocumentSnapshot doc) {
+        Chat chat = doc.toObject(Chat.class);
+        if (chat == null) chat = new Chat();
+        chat.setChatId(doc.getId());
+
+        Object noLeidosObj = doc.get("mensajes_no_leidos");
+        if (noLeidosObj instanceof Map) {
+            Object val = ((Map<?, ?>) noLeidosObj).get(currentUserId);
+            if (val instanceof Number) {
+                chat.setMensajesNoLeidos(((Number) val).intValue());
+            }
+        }
+
+        String otherId = otroUsuario(chat.getParticipantes());
+        if (otherId != null) {
+            // Aunque esté vencido sirve para pintar; resolverPerfiles lo renueva
+            PerfilCache.Perfil cached = perfilCache.getCacheado(otherId);
+            if (cached != null) {
+                chat.setNombreOtroUsuario(cached.nombre);
+                chat.setFotoOtroUsuario(cached.fotoUrl);
+            }
+            if (chat.getEstado_usuarios() != null) {
+                chat.setEstadoOtroUsuario(chat.getEstado_usuarios().get(otherId));
+            }
+        }
+        return chat;
+    }
+
+    /**
+     * Pide en lote los perfiles que faltan o están vencidos y vuelve a armar solo las filas
+     * de esos usuarios.
+     */
+    private void resolverPerfiles(List<Chat> chats) {
+        Map<String, List<String>> chatsPorUsuario = new HashMap<>();
+        for (Chat chat : chats) {
+            String otherId = otroUsuario(chat.getParticipantes());
+            if (otherId == null || perfilCache.getVigente(otherId) != null) continue;
+            List<String> ids = chatsPorUsuario.get(otherId);
+            if (ids == null) {
+                ids = new ArrayList<>();
+                chatsPorUsuario.put(otherId, ids);
+            }
+            ids.add(chat.getChatId());
+        }
+        if (chatsPorUsuario.isEmpty()) return;
+
+        final int esta = generacion;
+        perfilCache.obtenerVarios(chatsPorUsuario.keySet(), perfiles -> {
+            if (esta != generacion || isFinishing()) return;
+            for (String userId : perfiles.keySet()) {
+                for (String chatId : chatsPorUsuario.get(userId)) {
+                    conversaciones.reconvertir(chatId);
+                }
+            }
+            publicarConversaciones();
+        });
+    }
+
+    private void publicarConversaciones() {
+        List<Chat> items = conversaciones.getItems();
+        emptyView.setVisibility(items.isEmpty() ? View.VISIBLE : View.GONE);
+        rvConversaciones.setVisibility(items.isEmpty() ? View.GONE : View.VISIBLE);
+        adaptador.actualizarConversaciones(items);
+    }
+
+    @Nullable
+    private String otroUsuario(@Nullable List<String> participantes) {
+        if (participantes == null) return null;
+        for (String id : participantes) {
+            if (!id.equals(currentUserId)) return id;
+        }
+        return null;
+    }
     
     /**
      * Configura la actualización periódica de timestamps.
@@ -332,9 +388,9 @@ public class MensajesActivity extends AppCompatActivity {
         updateRunnable = new Runnable() {
             @Override
             public void run() {
-                // Actualizar el adaptador para refrescar los timestamps
+                // Refrescar solo los timestamps (bind parcial, sin recargar avatares)
                 if (adaptador != null) {
-                    adaptador.notifyDataSetChanged();
+                    adaptador.refrescarHoras();
                 }
                 // Programar la próxima actualización en 60 segundos
                 updateHandler.postDelayed(this, 60000);
@@ -7,12 +7,15 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
 import androidx.recyclerview.widget.AsyncListDiffer;
 import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
 import com.mjc.mascotalink.modelo.Chat;
+import com.mjc.mascotalink.util.ListaDiferida;
 import com.mjc.mascotalink.util.TimeUtils;
 import com.mjc.mascotalink.MyApplication;
 
@@ -50,13 +53,28 @@ public class MensajesAdapter extends RecyclerView.Adapter<MensajesAdapter.ViewHo
             return Objects.equals(oldItem.getUltimo_mensaje(), newItem.getUltimo_mensaje()) &&
                    Objects.equals(oldItem.getUltimo_timestamp(), newItem.getUltimo_timestamp()) &&
                    oldItem.getMensajesNoLeidosCount() == newItem.getMensajesNoLeidosCount() &&
-                   Objects.equals(oldItem.getEstadoOtroUsuario(), newItem.getEstadoOtroUsuario());
+                   Objects.equals(oldItem.getEstadoOtroUsuario(), newItem.getEstadoOtroUsuario()) &&
+                   Objects.equals(oldItem.getNombreOtroUsuario(), newItem.getNombreOtroUsuario()) &&
+                   Objects.equals(oldItem.getFotoOtroUsuario(), newItem.getFotoOtroUsuario());
+        }
+
+        @Nullable
+        @Override
+        public Object getChangePayload(@NonNull Chat oldItem, @NonNull Chat newItem) {
+            // Mismo último mensaje y mismo perfil: solo cambiaron los no leídos o el estado
+            if (Objects.equals(oldItem.getUltimo_mensaje(), newItem.getUltimo_mensaje()) &&
+                Objects.equals(oldItem.getUltimo_timestamp(), newItem.getUltimo_timestamp()) &&
+                Objects.equals(oldItem.getNombreOtroUsuario(), newItem.getNombreOtroUsuario()) &&
+                Objects.equals(oldItem.getFotoOtroUsuario(), newItem.getFotoOtroUsuario())) {
+                return ListaDiferida.CAMBIO_NO_LEIDOS;
+            }
+            return null;
         }
     };
 
     public MensajesAdapter(Context context, OnChatClickListener listener) {
         this.context = context;
-        this.differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+        this.differ = new AsyncListDiffer<>(new AdapterListUpdateCallback(this), ListaDiferida.config(DIFF_CALLBACK));
         this.listener = listener;
     }
 
@@ -67,6 +85,13 @@ public class MensajesAdapter extends RecyclerView.Adapter<MensajesAdapter.ViewHo
         differ.submitList(nuevosChats);
     }
 
+    /** Redibuja solo las horas relativas ("hace 5 min"), sin recargar avatares. */
+    public void refrescarHoras() {
+        if (getItemCount() > 0) {
+            notifyItemRangeChanged(0, getItemCount(), ListaDiferida.CAMBIO_TIEMPO);
+        }
+    }
+
     @NonNull
     @Override
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -79,11 +104,7 @@ public class MensajesAdapter extends RecyclerView.Adapter<MensajesAdapter.ViewHo
         Chat chat = differ.getCurrentList().get(position);
 
         holder.tvNombre.setText(chat.getNombreOtroUsuario());
-        if (chat.getUltimo_timestamp() != null) {
-            holder.tvHora.setText(TimeUtils.getRelativeTimeString(chat.getUltimo_timestamp()));
-        } else {
-            holder.tvHora.setText("");
-        }
+        bindHora(holder, chat);
 
         if (chat.getFotoOtroUsuario() != null && !chat.getFotoOtroUsuario().isEmpty()) {
             Glide.with(context)
@@ -94,47 +115,83 @@ public class MensajesAdapter extends RecyclerView.Adapter<MensajesAdapter.ViewHo
             holder.ivAvatar.setImageResource(R.drawable.ic_user_placeholder);
         }
 
-                // Lógica para estado "Escribiendo...", "Online" y "No leídos"
-                String estado = chat.getEstadoOtroUsuario();
-                int unreadCount = chat.getMensajesNoLeidosCount();
-        
-                if ("escribiendo".equals(estado)) {
-                    holder.tvUltimoMensaje.setText("Escribiendo...");
-                    holder.tvUltimoMensaje.setTextColor(androidx.core.content.ContextCompat.getColor(context, R.color.green_success));
-                    holder.tvUltimoMensaje.setTypeface(null, android.graphics.Typeface.BOLD_ITALIC);
-                    holder.viewEstadoOnline.setVisibility(View.VISIBLE);
-                } else {
-                    holder.tvUltimoMensaje.setText(chat.getUltimo_mensaje());
-                    
-                    if (unreadCount > 0) {
-                        // Estilo NO LEÍDO: Negrita y color oscuro
-                        holder.tvUltimoMensaje.setTextColor(androidx.core.content.ContextCompat.getColor(context, R.color.black));
-                        holder.tvUltimoMensaje.setTypeface(null, android.graphics.Typeface.BOLD);
-                    } else {
-                        // Estilo LEÍDO: Normal y color gris
-                        holder.tvUltimoMensaje.setTextColor(androidx.core.content.ContextCompat.getColor(context, R.color.text_secondary));
-                        holder.tvUltimoMensaje.setTypeface(null, android.graphics.Typeface.NORMAL);
-                    }
-        
-                    if ("online".equals(estado)) {
-                        holder.viewEstadoOnline.setVisibility(View.VISIBLE);
-                    } else {
-                        holder.viewEstadoOnline.setVisibility(View.GONE);
-                    }
-                }
-        
-                // Badge de no leídos (siempre visible si hay > 0, independiente del estado escribiendo)
-                if (unreadCount > 0) {
-                    holder.badgeNoLeidos.setVisibility(View.VISIBLE);
-                    holder.badgeNoLeidos.setText(String.valueOf(unreadCount));
-                } else {
-                    holder.badgeNoLeidos.setVisibility(View.GONE);
-                }
+        bindEstado(holder, chat);
+
+        // El chat se busca al hacer click: los binds parciales no rehacen el listener
         holder.itemView.setOnClickListener(v -> {
-            if (listener != null) listener.onChatClick(chat);
+            int pos = holder.getAdapterPosition();
+            if (listener != null && pos != RecyclerView.NO_POSITION) {
+                listener.onChatClick(differ.getCurrentList().get(pos));
+            }
         });
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        Chat chat = differ.getCurrentList().get(position);
+        if (payloads.contains(ListaDiferida.CAMBIO_NO_LEIDOS)) {
+            bindEstado(holder, chat);
+        }
+        if (payloads.contains(ListaDiferida.CAMBIO_TIEMPO)) {
+            bindHora(holder, chat);
+        }
+    }
+
+    private void bindHora(ViewHolder holder, Chat chat) {
+        if (chat.getUltimo_timestamp() != null) {
+            holder.tvHora.setText(TimeUtils.getRelativeTimeString(chat.getUltimo_timestamp()));
+        } else {
+            holder.tvHora.setText("");
+        }
+    }
+
+    /**
+     * Último mensaje, "Escribiendo...", online y badge; también es el bind parcial de
+     * {@link ListaDiferida#CAMBIO_NO_LEIDOS}.
+     */
+    private void bindEstado(ViewHolder holder, Chat chat) {
+        // Lógica para estado "Escribiendo...", "Online" y "No leídos"
+        String estado = chat.getEstadoOtroUsuario();
+        int unreadCount = chat.getMensajesNoLeidosCount();
+
+        if ("escribiendo".equals(estado)) {
+            holder.tvUltimoMensaje.setText("Escribiendo...");
+            holder.tvUltimoMensaje.setTextColor(androidx.core.content.ContextCompat.getColor(context, R.color.green_success));
+            holder.tvUltimoMensaje.setTypeface(null, android.graphics.Typeface.BOLD_ITALIC);
+            holder.viewEstadoOnline.setVisibility(View.VISIBLE);
+        } else {
+            holder.tvUltimoMensaje.setText(chat.getUltimo_mensaje());
+
+            if (unreadCount > 0) {
+                // Estilo NO LEÍDO: Negrita y color oscuro
+                holder.tvUltimoMensaje.setTextColor(androidx.core.content.ContextCompat.getColor(context, R.color.black));
+                holder.tvUltimoMensaje.setTypeface(null, android.graphics.Typeface.BOLD);
+            } else {
+                // Estilo LEÍDO: Normal y color gris
+                holder.tvUltimoMensaje.setTextColor(androidx.core.content.ContextCompat.getColor(context, R.color.text_secondary));
+                holder.tvUltimoMensaje.setTypeface(null, android.graphics.Typeface.NORMAL);
+            }
+
+            if ("online".equals(estado)) {
+                holder.viewEstadoOnline.setVisibility(View.VISIBLE);
+            } else {
+                holder.viewEstadoOnline.setVisibility(View.GONE);
+            }
+        }
+
+        // Badge de no leídos (siempre visible si hay > 0, independiente del estado escribiendo)
+        if (unreadCount > 0) {
+            holder.badgeNoLeidos.setVisibility(View.VISIBLE);
+            holder.badgeNoLeidos.setText(String.valueOf(unreadCount));
+        } else {
+            holder.badgeNoLeidos.setVisibility(View.GONE);
+        }
+    }
+
     @Override
     public int getItemCount() {
         return differ.getCurrentList().size();
@@ -130,7 +130,7 @@ public class MyApplication extends Application {
         FirebaseAuth authInstance = FirebaseAuth.getInstance();
         if (authInstance.getCurrentUser() != null) {
             FcmTokenSyncWorker.enqueueNow(this);
-            UnreadBadgeManager.start(authInstance.getCurrentUser().getUid());
+            UnreadBadgeManager.start(this, authInstance.getCurrentUser().getUid());
         }
     }
 
@@ -167,7 +167,7 @@ public class MyApplication extends Application {
 
                 // Sincronizar FCM y badges
                 FcmTokenSyncWorker.enqueueNow(this);
-                UnreadBadgeManager.start(userId);
+                UnreadBadgeManager.start(this, userId);
             } else {
                 // Usuario cerró sesión → Desconectar WebSocket
                 Log.d(TAG, "🚪 Usuario cerró sesión - Desconectando WebSocket");
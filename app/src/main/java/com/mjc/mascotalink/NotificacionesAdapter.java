@@ -7,11 +7,13 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
 import androidx.recyclerview.widget.AsyncListDiffer;
 import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.mjc.mascotalink.modelo.Notificacion;
+import com.mjc.mascotalink.util.ListaDiferida;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -48,7 +50,7 @@ public class NotificacionesAdapter extends RecyclerView.Adapter<NotificacionesAd
     };
 
     public NotificacionesAdapter(OnNotificacionClickListener listener) {
-        this.differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+        this.differ = new AsyncListDiffer<>(new AdapterListUpdateCallback(this), ListaDiferida.config(DIFF_CALLBACK));
         this.listener = listener;
     }
 
@@ -1,6 +1,8 @@
 package com.mjc.mascotalink;
 
 import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.Exclude;
+import com.google.firebase.firestore.IgnoreExtraProperties;
 import com.google.firebase.firestore.PropertyName;
 import com.google.firebase.firestore.GeoPoint; // Added import
 
@@ -12,6 +14,7 @@ import java.util.Locale;
 
 import java.util.List;
 
+@IgnoreExtraProperties // ubicaciones / ubicaciones_chunks / resumen_ruta no se mapean
 public class Paseo implements Serializable {
     private String reservaId;
     private String paseadorNombre, paseadorFoto, duenoNombre, duenoFoto, mascotaNombre, mascotaFoto;
@@ -54,8 +57,9 @@ public class Paseo implements Serializable {
 
     // Nuevos campos para evitar warnings de Firestore y soportar historial completo
     private long tiempo_total_minutos;
-    // Acepta GeoPoint o Map para evitar errores de deserialización mezclada en Firestore
-    private List<Object> ubicaciones;
+    // Puntos crudos de la ruta: excluidos del mapeo (y de Serializable) para que historial y
+    // resumen no los deserialicen ni los pasen por Intent; esas pantallas usan ResumenRuta
+    private transient List<Object> ubicaciones;
     private GeoPoint ubicacion_actual; // Changed type
     private Date ultima_actualizacion;
     private String motivo_rechazo;
@@ -114,8 +118,8 @@ public class Paseo implements Serializable {
     // Getters y Setters para nuevos campos
     public long getTiempo_total_minutos() { return tiempo_total_minutos; }
     public void setTiempo_total_minutos(long tiempo_total_minutos) { this.tiempo_total_minutos = tiempo_total_minutos; }
-    public List<Object> getUbicaciones() { return ubicaciones; }
-    public void setUbicaciones(List<Object> ubicaciones) { this.ubicaciones = ubicaciones; }
+    @Exclude public List<Object> getUbicaciones() { return ubicaciones; }
+    @Exclude public void setUbicaciones(List<Object> ubicaciones) { this.ubicaciones = ubicaciones; }
     public GeoPoint getUbicacion_actual() { return ubicacion_actual; } // Updated getter
     public void setUbicacion_actual(GeoPoint ubicacion_actual) { this.ubicacion_actual = ubicacion_actual; } // Updated setter
     public Date getUltima_actualizacion() { return ultima_actualizacion; }
@@ -58,6 +58,10 @@ import com.google.firebase.storage.StorageReference;
 import com.mjc.mascotalink.adapters.FotosPaseoAdapter;
 import com.mjc.mascotalink.util.BottomNavManager;
 import com.mjc.mascotalink.util.FirebaseQueryOptimizer;
+import com.mjc.mascotalink.util.PerfilCache;
+import com.mjc.mascotalink.util.ResumenRuta;
+import com.mjc.mascotalink.util.RutaPaseoParser;
+import com.mjc.mascotalink.util.TrackBuffer;
 import com.mjc.mascotalink.MyApplication;
 import com.mjc.mascotalink.network.SocketManager;
 import com.mjc.mascotalink.network.NetworkMonitorHelper;
@@ -162,6 +166,7 @@ public class PaseoEnCursoActivity extends AppCompatActivity implements OnMapRead
     private Polyline polylineRuta;
     private List<LatLng> rutaPaseo = new ArrayList<>();
     private double distanciaTotalMetros = 0.0;
+    private TrackBuffer rutaGuardada; // Última ruta leída; de aquí sale el resumen al finalizar
 
     private final Handler timerHandler = new Handler(Looper.getMainLooper());
     private Runnable timerRunnable;
@@ -187,7 +192,6 @@ public class PaseoEnCursoActivity extends AppCompatActivity implements OnMapRead
     private String currentPaseadorNombre = ""; // New member variable
 
     private String mascotaIdActual;
-    private String paseadorIdActual;
     private String duenoIdActual;
 
     // Flag para evitar que LocationService se inicie múltiples veces
@@ -727,7 +731,6 @@ public class PaseoEnCursoActivity extends AppCompatActivity implements OnMapRead
                     if (roleActual == null) roleActual = "PASEADOR";
                     BottomNavManager.setupBottomNav(this, bottomNav, roleActual, R.id.menu_walks);
                     if (doc != null) {
-                        paseadorIdActual = doc.getId();
                         String nombre = doc.getString("nombre_display");
                         if (nombre != null && !nombre.isEmpty()) {
                             tvPaseador.setText(getString(R.string.paseo_en_curso_label_paseador, nombre));
@@ -982,21 +985,6 @@ public class PaseoEnCursoActivity extends AppCompatActivity implements OnMapRead
             cargarDatosMascota(mascotaId);
         }
 
-        DocumentReference paseadorRef = snapshot.getDocumentReference("id_paseador");
-        if (paseadorRef == null) {
-            String paseadorPath = snapshot.getString("id_paseador");
-            if (paseadorPath != null && !paseadorPath.isEmpty()) {
-                paseadorRef = db.document(paseadorPath);
-            }
-        }
-        if (paseadorRef != null) {
-            String nuevoPaseadorId = paseadorRef.getId();
-            if (!nuevoPaseadorId.equals(paseadorIdActual)) {
-                paseadorIdActual = nuevoPaseadorId;
-                cargarDatosPaseador(paseadorRef);
-            }
-        }
-
         // ===== CARGAR DISTANCIA GUARDADA =====
         cargarDistanciaGuardada(snapshot);
 
@@ -1072,35 +1060,21 @@ public class PaseoEnCursoActivity extends AppCompatActivity implements OnMapRead
     }
 
     private void cargarDatosDueno(DocumentReference duenoRef) {
-        duenoRef.get()
-                .addOnSuccessListener(doc -> {
-                    if (doc == null || !doc.exists()) return;
-                    String telefono = doc.getString("telefono");
-                    if (telefono != null && !telefono.isEmpty()) {
-                        contactoDueno = telefono;
-                    }
-                    // Guardar nombre para nombre de archivo
-                    String nombre = doc.getString("nombre_display");
-                    if (nombre != null && !nombre.isEmpty()) {
-                        nombreDueno = nombre.replace(" ", "_"); // Sanitizar para nombre de archivo
-                        // Mostrar nombre del dueño en la UI (reutilizando tvPaseador)
-                        tvPaseador.setText("Dueño: " + nombre);
-                    }
-                })
-                .addOnFailureListener(e -> Log.e(TAG, "Error cargando datos del dueño", e));
-    }
-
-    private void cargarDatosPaseador(DocumentReference paseadorRef) {
-        paseadorRef.get()
-                .addOnSuccessListener(doc -> {
-                    if (doc == null || !doc.exists()) return;
-                    String nombre = doc.getString("nombre_display");
-                    if (nombre == null || nombre.isEmpty()) {
-                        nombre = doc.getString("nombre");
-                    }
-                    // Ya no mostramos el nombre del paseador aquí, preferimos el dueño
-                })
-                .addOnFailureListener(e -> Log.e(TAG, "Error cargando paseo", e));
+        // Perfil compartido: la carga inicial y el listener piden el mismo dueño
+        PerfilCache.getInstance(this).obtener(duenoRef.getId(), perfil -> {
+            if (perfil == null || isDestroyed()) return;
+            String telefono = perfil.telefono;
+            if (telefono != null && !telefono.isEmpty()) {
+                contactoDueno = telefono;
+            }
+            // Guardar nombre para nombre de archivo
+            String nombre = perfil.nombre;
+            if (nombre != null && !nombre.isEmpty()) {
+                nombreDueno = nombre.replace(" ", "_"); // Sanitizar para nombre de archivo
+                // Mostrar nombre del dueño en la UI (reutilizando tvPaseador)
+                tvPaseador.setText("Dueño: " + nombre);
+            }
+        });
     }
 
     /**
@@ -1126,26 +1100,15 @@ public class PaseoEnCursoActivity extends AppCompatActivity implements OnMapRead
      * Esto permite mostrar el recorrido completo al reabrir la app
      */
     private void cargarRecorridoGuardado(@NonNull DocumentSnapshot snapshot) {
-        Object ubicacionesObj = snapshot.get("ubicaciones");
-        if (ubicacionesObj instanceof List) {
-            List<?> ubicacionesList = (List<?>) ubicacionesObj;
-
+        TrackBuffer ruta = RutaPaseoParser.parsear(snapshot);
+        rutaGuardada = ruta;
+        if (!ruta.isEmpty()) {
             // Limpiar recorrido actual
             rutaPaseo.clear();
 
-            // Reconstruir polyline desde ubicaciones guardadas
-            for (Object ubicObj : ubicacionesList) {
-                if (ubicObj instanceof Map) {
-                    Map<?, ?> ubicMap = (Map<?, ?>) ubicObj;
-                    Object latObj = ubicMap.get("lat");
-                    Object lngObj = ubicMap.get("lng");
-
-                    if (latObj instanceof Number && lngObj instanceof Number) {
-                        double lat = ((Number) latObj).doubleValue();
-                        double lng = ((Number) lngObj).doubleValue();
-                        rutaPaseo.add(new LatLng(lat, lng));
-                    }
-                }
+            // Reconstruir polyline desde ubicaciones guardadas (legacy + chunks)
+            for (int i = 0; i < ruta.size(); i++) {
+                rutaPaseo.add(new LatLng(ruta.getLat(i), ruta.getLng(i)));
             }
 
             Log.d(TAG, "📍 Recorrido cargado: " + rutaPaseo.size() + " puntos");
@@ -1575,6 +1538,12 @@ public class PaseoEnCursoActivity extends AppCompatActivity implements OnMapRead
         data.put("fecha_fin_paseo", new Date());
         data.put("tiempo_total_minutos", TimeUnit.MILLISECONDS.toMinutes(calcularTiempoTranscurrido()));
 
+        // Resumen provisional: a rutaGuardada le faltan los puntos que siguen en el journal.
+        // LocationService lo reemplaza por el definitivo cuando termina de drenarlo.
+        ResumenRuta resumenRuta = ResumenRuta.calcular(
+                rutaGuardada != null ? rutaGuardada : new TrackBuffer(1), distanciaTotalMetros).comoProvisional();
+        data.put(ResumenRuta.CAMPO, resumenRuta.toMap());
+
         // Usar retry helper para operación MUY crítica (finalización de paseo)
         com.mjc.mascotalink.util.FirestoreRetryHelper.executeCritical(
             () -> reservaRef.update(data),
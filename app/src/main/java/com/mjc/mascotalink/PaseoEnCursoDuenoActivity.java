@@ -37,13 +37,16 @@ import com.mjc.mascotalink.adapters.FotosPaseoAdapter;
 import com.mjc.mascotalink.modelo.PaseoActividad;
 import com.mjc.mascotalink.util.BottomNavManager;
 import com.mjc.mascotalink.util.FirebaseQueryOptimizer;
+import com.mjc.mascotalink.util.MarkerMotionPredictor;
+import com.mjc.mascotalink.util.RutaPaseoParser;
+import com.mjc.mascotalink.util.RutaPolylineSegmentada;
+import com.mjc.mascotalink.util.TrackBuffer;
+import com.mjc.mascotalink.network.SocketEvents;
 import com.mjc.mascotalink.network.SocketManager;
 import com.mjc.mascotalink.network.NetworkMonitorHelper;
 
 import com.mjc.mascotalink.util.WhatsAppUtil;
 
-import org.json.JSONObject;
-
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
@@ -52,9 +55,6 @@ import com.google.android.gms.maps.model.BitmapDescriptorFactory;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.MarkerOptions;
-import com.google.android.gms.maps.model.PolylineOptions;
-import com.google.android.gms.maps.model.JointType;
-import com.google.android.gms.maps.model.RoundCap;
 import com.google.android.gms.maps.model.BitmapDescriptor;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
@@ -64,7 +64,6 @@ import com.google.firebase.firestore.GeoPoint;
 import android.animation.ValueAnimator;
 import android.view.animation.LinearInterpolator;
 import com.google.android.gms.maps.model.Marker;
-import com.google.android.gms.maps.model.Polyline;
 import com.mjc.mascotalink.MyApplication;
 
 import java.text.SimpleDateFormat;
@@ -126,16 +125,35 @@ public class PaseoEnCursoDuenoActivity extends AppCompatActivity implements OnMa
     private Runnable timerRunnable;
     
     // Map Data
-    private List<LatLng> rutaPaseo = new ArrayList<>();
+    // Ruta incremental: el cursor recuerda qué parte del documento ya se dibujó
+    private RutaPolylineSegmentada rutaMapa;
+    private final RutaPaseoParser.Cursor cursorRuta = new RutaPaseoParser.Cursor();
+    private DocumentSnapshot ultimoSnapshotRuta; // Llegó antes de que el mapa estuviera listo
     private LatLng ultimaUbicacionConocida;
     private TextView tvUbicacionEstado;
     private Marker marcadorActual;
     private Marker marcadorInicio;
-    private Polyline polylineRuta;
     private long lastWalkerMovementTime = System.currentTimeMillis(); // Rastrear inactividad del paseador
 
+    // ===== PREDICCIÓN DEL MARCADOR ENTRE FIXES EN VIVO =====
+    private static final long PASO_MARCADOR_MS = 50;
+    private final MarkerMotionPredictor predictorMarcador = new MarkerMotionPredictor();
+    private final Runnable tickerMarcador = new Runnable() {
+        @Override
+        public void run() {
+            if (marcadorActual == null || !predictorMarcador.tienePosicion()) return;
+            long ahora = System.currentTimeMillis();
+            double[] p = predictorMarcador.posicion(ahora);
+            marcadorActual.setPosition(new LatLng(p[0], p[1]));
+            if (!predictorMarcador.isQuieto(ahora)) {
+                timerHandler.postDelayed(this, PASO_MARCADOR_MS);
+            }
+        }
+    };
+
     // ===== FALLBACK WEBSOCKET → FIRESTORE =====
     private long lastWebSocketUpdate = System.currentTimeMillis();
+    private long ultimoTsEnVivo = 0; // Último fix mostrado (descarta fixes repetidos o atrasados)
     private static final long WEBSOCKET_TIMEOUT_MS = 45000; // 45 segundos sin updates (aumentado para tolerancia)
     private Handler fallbackHandler = new Handler(Looper.getMainLooper());
     private Runnable fallbackRunnable;
@@ -413,9 +431,10 @@ public class PaseoEnCursoDuenoActivity extends AppCompatActivity implements OnMa
             });
         }
         
-        // Initial empty state or loading
-        if (!rutaPaseo.isEmpty()) {
-            actualizarMapa(rutaPaseo, null);
+        rutaMapa = new RutaPolylineSegmentada(mMap, getResources().getColor(R.color.blue_primary), 16f);
+        // Si la reserva llegó antes que el mapa, dibujar lo que ya había
+        if (ultimoSnapshotRuta != null) {
+            aplicarRutaIncremental(ultimoSnapshotRuta);
         }
     }
 
@@ -458,6 +477,7 @@ public class PaseoEnCursoDuenoActivity extends AppCompatActivity implements OnMa
         if (fechaInicioPaseo != null) {
             startTimer();
         }
+        iniciarPrediccionMarcador();
 
         // ===== WEBSOCKET CONDICIONAL: Indicar que dueño está viendo mapa =====
         // Esto permite al paseador ahorrar batería (no enviar WebSocket si nadie está viendo)
@@ -500,6 +520,7 @@ public class PaseoEnCursoDuenoActivity extends AppCompatActivity implements OnMa
     protected void onPause() {
         super.onPause();
         stopTimer();
+        timerHandler.removeCallbacks(tickerMarcador);
 
         // ===== WEBSOCKET CONDICIONAL: Indicar que dueño ya NO está viendo =====
         // El paseador puede dejar de enviar WebSocket para ahorrar batería
@@ -523,6 +544,7 @@ public class PaseoEnCursoDuenoActivity extends AppCompatActivity implements OnMa
         // No es necesario remover listeners manualmente
 
         stopTimer();
+        timerHandler.removeCallbacks(tickerMarcador);
 
         // ===== DETENER FALLBACK HANDLER =====
         if (fallbackHandler != null && fallbackRunnable != null) {
@@ -535,10 +557,6 @@ public class PaseoEnCursoDuenoActivity extends AppCompatActivity implements OnMa
             socketConnectionListener = null;
         }
 
-        // Limpiar listeners de WebSocket
-        socketManager.off("update_location");
-        socketManager.off("joined_paseo");
-
         // Limpiar monitor de red
         if (networkMonitor != null) {
             networkMonitor.unregister();
@@ -624,151 +642,63 @@ public class PaseoEnCursoDuenoActivity extends AppCompatActivity implements OnMa
      * Incluye feedback visual mejorado y manejo robusto de la conexión inicial
      */
     private void setupWebSocketListeners() {
-        // Listener para confirmación de unión al paseo
-        socketManager.on("joined_paseo", args -> {
-            if (args.length > 0) {
-                try {
-                    JSONObject data = (JSONObject) args[0];
-                    String paseoId = data.getString("paseoId");
-                    Log.d(TAG, " Unido al paseo vía WebSocket: " + paseoId);
-
-                    // Feedback visual inmediato al unirse al paseo
-                    runOnUiThread(() -> {
-                        if (tvUbicacionEstado != null) {
-                            tvUbicacionEstado.setText(" Conectado - Esperando ubicación del paseador...");
-                            tvUbicacionEstado.setTextColor(
-                                ContextCompat.getColor(PaseoEnCursoDuenoActivity.this, R.color.blue_primary));
-                        }
-                        Log.d(TAG, "🎯 UI actualizada: Esperando ubicación");
-                    });
-                } catch (Exception e) {
-                    Log.e(TAG, "Error parseando joined_paseo", e);
-                    runOnUiThread(() -> {
-                        if (tvUbicacionEstado != null) {
-                            tvUbicacionEstado.setText(" Error al conectar con el paseo");
-                            tvUbicacionEstado.setTextColor(
-                                ContextCompat.getColor(PaseoEnCursoDuenoActivity.this, R.color.red_error));
-                        }
-                    });
-                }
+        // Los observadores se cancelan solos en onDestroy
+        // Confirmación de unión al paseo
+        socketManager.observar(this, SocketEvents.PASEO_UNIDO, evento -> {
+            Log.d(TAG, " Unido al paseo vía WebSocket: " + evento.paseoId);
+
+            // Feedback visual inmediato al unirse al paseo
+            if (tvUbicacionEstado != null) {
+                tvUbicacionEstado.setText(" Conectado - Esperando ubicación del paseador...");
+                tvUbicacionEstado.setTextColor(
+                    ContextCompat.getColor(PaseoEnCursoDuenoActivity.this, R.color.blue_primary));
             }
+            Log.d(TAG, "🎯 UI actualizada: Esperando ubicación");
         });
 
-        // Listener para cambios de estado del paseo (ej: cuando el paseador inicia)
-        socketManager.on("paseo_estado_change", args -> {
-        if (args.length > 0) {
-        try {
-        JSONObject data = (JSONObject) args[0];
-        String paseoId = data.getString("paseoId");
-        String nuevoEstado = data.getString("nuevoEstado");
-        
-        Log.d(TAG, "🔔 Cambio de estado recibido vía WebSocket: " + nuevoEstado + " para paseo: " + paseoId);
-        
-        if ("EN_CURSO".equals(nuevoEstado) && paseoId.equals(idReserva)) {
-        runOnUiThread(() -> {
-        Log.d(TAG, "🚀 Paseo iniciado - Forzando actualización inmediata");
-        
-        if (tvUbicacionEstado != null) {
-        tvUbicacionEstado.setText("🚀 Paseo iniciado - Conectando GPS...");
-        tvUbicacionEstado.setTextColor(
-        ContextCompat.getColor(PaseoEnCursoDuenoActivity.this, R.color.blue_primary));
-        }
-        
-        if (!socketManager.isConnected()) {
-        Log.d(TAG, "⚡ Reconectando socket tras inicio de paseo");
-        socketManager.connect();
-        }
-        
-        new Handler(Looper.getMainLooper()).postDelayed(() -> {
-        socketManager.joinPaseo(idReserva);
-        
-        if (reservaRef != null) {
-        reservaRef.get().addOnSuccessListener(snapshot -> {
-        if (snapshot.exists()) {
-        Log.d(TAG, "📥 Actualizando UI con datos de Firestore tras inicio");
-        manejarSnapshotReserva(snapshot);
-        }
-        });
-        }
-        }, 500);
-        });
-        }
-        } catch (Exception e) {
-        Log.e(TAG, "Error procesando paseo_estado_change", e);
-        }
-        }
-        });
-        
-        // Listener para actualizaciones de ubicación en tiempo real
-        // ⚡ CORREGIDO: Cambiar de "walker_location" a "update_location" para coincidir con el paseador
-        socketManager.on("update_location", args -> {
-            Log.d(TAG, "🎧 Listener 'update_location' ACTIVADO - args.length=" + args.length);
-            if (args.length > 0) {
-                try {
-                    JSONObject data = (JSONObject) args[0];
-                    Log.d(TAG, "📦 Datos recibidos: " + data.toString());
-
-                    // SOPORTE DE COMPRESIÓN: Leer formato comprimido o normal (retrocompatibilidad)
-                    double latitud = data.has("lat") ? data.getDouble("lat") : data.getDouble("latitud");
-                    double longitud = data.has("lng") ? data.getDouble("lng") : data.getDouble("longitud");
-                    double accuracy = data.has("acc") ? data.optDouble("acc", 0) : data.optDouble("accuracy", 0);
-                    long timestamp = data.has("ts") ? data.optLong("ts", System.currentTimeMillis()) :
-                                    data.optLong("timestamp", System.currentTimeMillis());
-
-                    Log.d(TAG, "📍 Ubicación parseada - Lat: " + latitud + ", Lng: " + longitud + ", Acc: " + accuracy);
-
-                    // ===== MARCAR RECEPCIÓN DE UPDATE VÍA WEBSOCKET =====
-                    lastWebSocketUpdate = System.currentTimeMillis();
-
-                    // Actualizar mapa en el hilo principal
-                    runOnUiThread(() -> {
-                        LatLng nuevaUbicacion = new LatLng(latitud, longitud);
+        // Cambios de estado del paseo (ej: cuando el paseador inicia)
+        socketManager.observar(this, SocketEvents.ESTADO_PASEO, evento -> {
+            Log.d(TAG, "🔔 Cambio de estado recibido vía WebSocket: " + evento.nuevoEstado + " para paseo: " + evento.paseoId);
+            if (!"EN_CURSO".equals(evento.nuevoEstado) || !evento.paseoId.equals(idReserva)) return;
 
-                        // Agregar a la ruta
-                        if (!rutaPaseo.isEmpty()) {
-                            // Solo agregar si hay movimiento significativo
-                            LatLng ultima = rutaPaseo.get(rutaPaseo.size() - 1);
-                            float[] results = new float[1];
-                            android.location.Location.distanceBetween(
-                                ultima.latitude, ultima.longitude,
-                                latitud, longitud, results);
-
-                            if (results[0] > 5f) { // Más de 5 metros
-                                rutaPaseo.add(nuevaUbicacion);
-                            }
-                        } else {
-                            rutaPaseo.add(nuevaUbicacion);
-                        }
+            Log.d(TAG, "🚀 Paseo iniciado - Forzando actualización inmediata");
+            if (tvUbicacionEstado != null) {
+                tvUbicacionEstado.setText("🚀 Paseo iniciado - Conectando GPS...");
+                tvUbicacionEstado.setTextColor(
+                    ContextCompat.getColor(PaseoEnCursoDuenoActivity.this, R.color.blue_primary));
+            }
 
-                        ultimaUbicacionConocida = nuevaUbicacion;
+            if (!socketManager.isConnected()) {
+                Log.d(TAG, "⚡ Reconectando socket tras inicio de paseo");
+                socketManager.connect();
+            }
 
-                        // Actualizar mapa inmediatamente
-                        if (mMap != null) {
-                            actualizarMapaEnTiempoReal(nuevaUbicacion, (float) accuracy);
-                        }
+            new Handler(Looper.getMainLooper()).postDelayed(() -> {
+                socketManager.joinPaseo(idReserva);
 
-                        // Actualizar estado de ubicación
-                        long diffSec = (System.currentTimeMillis() - timestamp) / 1000;
-                        String estado = String.format(Locale.US,
-                            "📍 Ubicación: hace %d s (±%.0f m, en tiempo real)",
-                            diffSec, accuracy);
-                        if (tvUbicacionEstado != null) {
-                            tvUbicacionEstado.setText(estado);
-                            tvUbicacionEstado.setTextColor(
-                                ContextCompat.getColor(PaseoEnCursoDuenoActivity.this, R.color.blue_primary));
-                        }
-                    });
-                } catch (Exception e) {
-                    Log.e(TAG, "Error procesando update_location", e);
-                    runOnUiThread(() -> {
-                        if (tvUbicacionEstado != null) {
-                            tvUbicacionEstado.setText(" Error procesando ubicación");
-                            tvUbicacionEstado.setTextColor(
-                                ContextCompat.getColor(PaseoEnCursoDuenoActivity.this, R.color.red_error));
+                if (reservaRef != null) {
+                    reservaRef.get().addOnSuccessListener(snapshot -> {
+                        if (snapshot.exists()) {
+                            Log.d(TAG, "📥 Actualizando UI con datos de Firestore tras inicio");
+                            manejarSnapshotReserva(snapshot);
                         }
                     });
                 }
-            }
+            }, 500);
+        });
+
+        // Ubicación en tiempo real
+        // Frames binarios: todos los fixes desde el último envío (seq + base + deltas)
+        socketManager.observar(this, SocketEvents.FRAME_UBICACION, frame -> {
+            Log.d(TAG, "📦 location_frame seq=" + frame.seq + " con " + frame.fixes.size() + " fixes");
+            mostrarUbicacionesEnVivo(frame.fixes);
+        });
+
+        // Formato JSON de un solo punto (paseadores con versiones anteriores); si llegan
+        // varios antes de dibujar, solo se entrega el último
+        socketManager.observar(this, SocketEvents.UBICACION, ubicacion -> {
+            Log.d(TAG, "📍 Ubicación recibida - Lat: " + ubicacion.latitud + ", Lng: " + ubicacion.longitud + ", Acc: " + ubicacion.accuracy);
+            mostrarUbicacionesEnVivo(ubicacion.aTrackBuffer());
         });
 
         // Unirse al paseo si está conectado, con reintentos
@@ -847,19 +777,81 @@ public class PaseoEnCursoDuenoActivity extends AppCompatActivity implements OnMa
     }
 
     /**
-     * Actualizar mapa en tiempo real con animación suave
+     * Dibuja fixes recibidos por WebSocket (frame binario o JSON legacy) en el tramo en vivo.
+     * Se ignoran los fixes que no son más nuevos que el último mostrado (reenvíos tras una
+     * reconexión o frames que llegan atrasados).
      */
+    private void mostrarUbicacionesEnVivo(TrackBuffer fixes) {
+        // ===== MARCAR RECEPCIÓN DE UPDATE VÍA WEBSOCKET =====
+        lastWebSocketUpdate = System.currentTimeMillis();
+
+        // Actualizar mapa en el hilo principal
+        runOnUiThread(() -> {
+            int ultimo = -1;
+            for (int i = 0; i < fixes.size(); i++) {
+                long ts = fixes.getTime(i);
+                if (ts > 0 && ts <= ultimoTsEnVivo) continue;
+                if (ts > 0) {
+                    ultimoTsEnVivo = ts;
+                    predictorMarcador.observar(fixes.getLat(i), fixes.getLng(i), fixes.getAccuracy(i),
+                            ts, System.currentTimeMillis());
+                }
+                ultimo = i;
+
+                LatLng nuevaUbicacion = new LatLng(fixes.getLat(i), fixes.getLng(i));
+
+                // Agregar al tramo en vivo (provisional hasta que llegue el chunk guardado)
+                if (rutaMapa != null) {
+                    LatLng ultima = rutaMapa.getUltimo();
+                    if (ultima == null) {
+                        rutaMapa.agregarEnVivo(nuevaUbicacion);
+                    } else {
+                        // Solo agregar si hay movimiento significativo
+                        float[] results = new float[1];
+                        android.location.Location.distanceBetween(
+                            ultima.latitude, ultima.longitude,
+                            nuevaUbicacion.latitude, nuevaUbicacion.longitude, results);
+
+                        if (results[0] > 5f) { // Más de 5 metros
+                            rutaMapa.agregarEnVivo(nuevaUbicacion);
+                        }
+                    }
+                }
+            }
+            if (ultimo < 0) return; // Todo repetido
+
+            LatLng nuevaUbicacion = new LatLng(fixes.getLat(ultimo), fixes.getLng(ultimo));
+            float accuracy = fixes.getAccuracy(ultimo);
+            long timestamp = fixes.getTime(ultimo) > 0 ? fixes.getTime(ultimo) : System.currentTimeMillis();
+            ultimaUbicacionConocida = nuevaUbicacion;
+
+            // Actualizar mapa inmediatamente
+            if (mMap != null) {
+                actualizarMapaEnTiempoReal(nuevaUbicacion, accuracy);
+                iniciarPrediccionMarcador();
+            }
+
+            // Actualizar estado de ubicación
+            long diffSec = Math.max(0, (System.currentTimeMillis() - timestamp) / 1000);
+            String estado = String.format(Locale.US,
+                "📍 Ubicación: hace %d s (±%.0f m, en tiempo real)",
+                diffSec, accuracy);
+            if (tvUbicacionEstado != null) {
+                tvUbicacionEstado.setText(estado);
+                tvUbicacionEstado.setTextColor(
+                    ContextCompat.getColor(PaseoEnCursoDuenoActivity.this, R.color.blue_primary));
+            }
+        });
+    }
+
     private void actualizarMapaEnTiempoReal(LatLng nuevaPos, float accuracy) {
         if (mMap == null) return;
 
-        // Actualizar polyline si existe
-        if (polylineRuta != null && !rutaPaseo.isEmpty()) {
-            polylineRuta.setPoints(rutaPaseo);
-        }
-
-        // Animar marcador a nueva posición
+        // Animar marcador a nueva posición (con fixes en vivo lo mueve el predictor)
         if (marcadorActual != null) {
-            animarMarcador(marcadorActual, nuevaPos);
+            if (!isPrediccionActiva()) {
+                animarMarcador(marcadorActual, nuevaPos);
+            }
         } else {
             // Crear marcador si no existe
             BitmapDescriptor walkerIcon = getResizedBitmapDescriptor(R.drawable.ic_paseador_perro_marcador, 120);
@@ -885,6 +877,29 @@ public class PaseoEnCursoDuenoActivity extends AppCompatActivity implements OnMa
         }
     }
 
+    /**
+     * true si el marcador lo está moviendo el predictor con fixes recientes del WebSocket.
+     */
+    private boolean isPrediccionActiva() {
+        return predictorMarcador.tienePosicion()
+                && System.currentTimeMillis() - lastWebSocketUpdate < WEBSOCKET_TIMEOUT_MS;
+    }
+
+    private void iniciarPrediccionMarcador() {
+        timerHandler.removeCallbacks(tickerMarcador);
+        if (isPrediccionActiva()) {
+            timerHandler.post(tickerMarcador);
+        }
+    }
+
+    /**
+     * Sin WebSocket el marcador vuelve a moverse con las ubicaciones de Firestore.
+     */
+    private void detenerPrediccionMarcador() {
+        timerHandler.removeCallbacks(tickerMarcador);
+        predictorMarcador.reset();
+    }
+
     /**
      * Inicia el verificador de fallback que comprueba si WebSocket deja de enviar datos
      * y automáticamente cambia a cargar desde Firestore
@@ -907,6 +922,7 @@ public class PaseoEnCursoDuenoActivity extends AppCompatActivity implements OnMa
                     });
                 } else if (timeSinceLastUpdate > WEBSOCKET_TIMEOUT_MS) {
                     Log.w(TAG, " WebSocket sin actualizaciones por " + (timeSinceLastUpdate / 1000) + "s - Activando fallback a Firestore");
+                    runOnUiThread(() -> detenerPrediccionMarcador());
                     loadUbicacionesFromFirestore();
                 }
 
@@ -920,96 +936,43 @@ public class PaseoEnCursoDuenoActivity extends AppCompatActivity implements OnMa
     }
 
     /**
-     * Carga las ubicaciones desde Firestore como fallback cuando WebSocket falla
+     * Carga las ubicaciones desde Firestore como fallback cuando WebSocket falla.
+     * Solo se decodifican y dibujan los puntos que todavía no estaban en el mapa.
      */
     private void loadUbicacionesFromFirestore() {
         if (reservaRef == null) return;
 
         reservaRef.get()
                 .addOnSuccessListener(snapshot -> {
-                    if (snapshot != null && snapshot.exists()) {
-                        List<LatLng> ubicacionesNuevas = new ArrayList<>();
+                    if (snapshot == null || !snapshot.exists()) return;
+                    runOnUiThread(() -> {
+                        int puntosNuevos = aplicarRutaIncremental(snapshot);
 
-                        // ===== PRIMERO: Intentar obtener ubicacion_actual como punto inicial =====
+                        // Sin ruta guardada todavía: usar ubicacion_actual para el marcador
                         Object ubicacionActualObj = snapshot.get("ubicacion_actual");
-                        if (ubicacionActualObj instanceof com.google.firebase.firestore.GeoPoint) {
+                        if ((rutaMapa == null || rutaMapa.isEmpty()) && mMap != null
+                                && ubicacionActualObj instanceof com.google.firebase.firestore.GeoPoint) {
                             com.google.firebase.firestore.GeoPoint geoPoint = (com.google.firebase.firestore.GeoPoint) ubicacionActualObj;
-                            ubicacionesNuevas.add(new LatLng(geoPoint.getLatitude(), geoPoint.getLongitude()));
-                            Log.d(TAG, "📍 Ubicación actual obtenida: " + geoPoint.getLatitude() + ", " + geoPoint.getLongitude());
-                        }
-
-                        // ===== LUEGO: Agregar ubicaciones del array =====
-                        Object ubicacionesObj = snapshot.get("ubicaciones");
-                        if (ubicacionesObj instanceof List) {
-                            List<?> ubicacionesList = (List<?>) ubicacionesObj;
-
-                            for (Object ubicObj : ubicacionesList) {
-                                if (ubicObj instanceof Map) {
-                                    Map<?, ?> ubicMap = (Map<?, ?>) ubicObj;
-                                    Object latObj = ubicMap.get("lat");
-                                    Object lngObj = ubicMap.get("lng");
-
-                                    if (latObj instanceof Number && lngObj instanceof Number) {
-                                        double lat = ((Number) latObj).doubleValue();
-                                        double lng = ((Number) lngObj).doubleValue();
-                                        ubicacionesNuevas.add(new LatLng(lat, lng));
-                                    }
-                                }
-                            }
+                            LatLng actual = new LatLng(geoPoint.getLatitude(), geoPoint.getLongitude());
+                            Log.d(TAG, "📍 Ubicación actual obtenida: " + actual.latitude + ", " + actual.longitude);
+                            ultimaUbicacionConocida = actual;
+                            actualizarMapaEnTiempoReal(actual, 0f);
                         }
 
-                        // Solo actualizar si hay nuevas ubicaciones
-                        if (!ubicacionesNuevas.isEmpty()) {
-                            runOnUiThread(() -> {
-                                rutaPaseo.clear();
-                                rutaPaseo.addAll(ubicacionesNuevas);
-
-                                if (mMap != null && !rutaPaseo.isEmpty()) {
-                                    // Actualizar polyline
-                                    if (polylineRuta != null) {
-                                        polylineRuta.setPoints(rutaPaseo);
-                                    }
-
-                                    // Actualizar marcador en última ubicación
-                                    LatLng ultimaPos = rutaPaseo.get(rutaPaseo.size() - 1);
-                                    if (marcadorActual != null) {
-                                        marcadorActual.setPosition(ultimaPos);
-                                    } else {
-                                        BitmapDescriptor walkerIcon = getResizedBitmapDescriptor(R.drawable.ic_paseador_perro_marcador, 120);
-                                        marcadorActual = mMap.addMarker(new MarkerOptions()
-                                                .position(ultimaPos)
-                                                .title("Paseador")
-                                                .icon(walkerIcon != null ? walkerIcon : BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_AZURE))
-                                                .anchor(0.5f, 1.0f));
-                                    }
-
-                                    // Centrar cámara
-                                    mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(ultimaPos, 17f), 500, null);
-                                }
-
-                                Log.d(TAG, " Ubicaciones cargadas desde Firestore: " + ubicacionesNuevas.size() + " puntos");
-                                // ===== RESETEAR CONTADOR DE INACTIVIDAD =====
-                                lastWebSocketUpdate = System.currentTimeMillis();
-
-                                // ===== ACTUALIZAR UI CON RETROALIMENTACIÓN CLARA =====
-                                if (tvUbicacionEstado != null) {
-                                    int puntosNuevos = ubicacionesNuevas.size() - rutaPaseo.size();
-                                    if (puntosNuevos > 0) {
-                                        String mensaje = String.format(Locale.US,
-                                            "Movimiento detectado - Ruta: %d puntos",
-                                            ubicacionesNuevas.size());
-                                        tvUbicacionEstado.setText(mensaje);
-                                    } else {
-                                        String mensaje = String.format(Locale.US,
-                                            "Ruta cargada: %d puntos",
-                                            ubicacionesNuevas.size());
-                                        tvUbicacionEstado.setText(mensaje);
-                                    }
-                                    tvUbicacionEstado.setTextColor(ContextCompat.getColor(PaseoEnCursoDuenoActivity.this, R.color.blue_primary));
-                                }
-                            });
+                        Log.d(TAG, " Ubicaciones desde Firestore: " + puntosNuevos + " nuevas, "
+                                + cursorRuta.getPuntos() + " en total");
+                        // ===== RESETEAR CONTADOR DE INACTIVIDAD =====
+                        lastWebSocketUpdate = System.currentTimeMillis();
+
+                        // ===== ACTUALIZAR UI CON RETROALIMENTACIÓN CLARA =====
+                        if (tvUbicacionEstado != null && cursorRuta.getPuntos() > 0) {
+                            String mensaje = String.format(Locale.US,
+                                puntosNuevos > 0 ? "Movimiento detectado - Ruta: %d puntos" : "Ruta cargada: %d puntos",
+                                cursorRuta.getPuntos());
+                            tvUbicacionEstado.setText(mensaje);
+                            tvUbicacionEstado.setTextColor(ContextCompat.getColor(PaseoEnCursoDuenoActivity.this, R.color.blue_primary));
                         }
-                    }
+                    });
                 })
                 .addOnFailureListener(e -> Log.e(TAG, " Error cargando ubicaciones desde Firestore", e));
     }
@@ -1153,20 +1116,8 @@ public class PaseoEnCursoDuenoActivity extends AppCompatActivity implements OnMa
                     });
                 }
 
-                // ===== 2. Cuando ubicaciones array cambia, recargar todo el polyline =====
-                // CRÍTICO: Este listener se ejecuta cada vez que se agrega una ubicación
-                // Nota: Si estaba quieto > 8 min, ya hizo return arriba, así que solo llega aquí si NO está quieto
-                Object ubicacionesObj = snapshot.get("ubicaciones");
-                if (ubicacionesObj instanceof List) {
-                    List<?> ubicacionesList = (List<?>) ubicacionesObj;
-                    int nuevoTamanio = ubicacionesList.size();
-
-                    // Si el tamaño del array cambió, recargar las ubicaciones
-                    if (nuevoTamanio != rutaPaseo.size()) {
-                        Log.d(TAG, "🔄 [FIRESTORE LISTENER] ARRAY cambió: " + rutaPaseo.size() + " → " + nuevoTamanio + " puntos. Recargando polyline...");
-                        runOnUiThread(this::loadUbicacionesFromFirestore);
-                    }
-                }
+                // ===== 2. Ruta: la agrega manejarSnapshotReserva de forma incremental =====
+                // (antes aquí se volvía a leer el documento y se redibujaba todo el polyline)
             }
         });
     }
@@ -1338,9 +1289,8 @@ public class PaseoEnCursoDuenoActivity extends AppCompatActivity implements OnMa
             tvActividadEmpty.setVisibility(hayActividad ? View.GONE : View.VISIBLE);
         }
         
-        // 7. Actualizar Mapa
-        List<LatLng> puntosMapa = parsearUbicaciones(snapshot.get("ubicaciones"));
-        actualizarMapa(puntosMapa, snapshot.get("ubicaciones"));
+        // 7. Actualizar Mapa (solo los puntos nuevos)
+        aplicarRutaIncremental(snapshot);
 
         // 6. Cargar datos relacionados (Paseador, Mascota) solo si no se han cargado
         if (idPaseador == null) {
@@ -1372,67 +1322,46 @@ public class PaseoEnCursoDuenoActivity extends AppCompatActivity implements OnMa
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private List<LatLng> parsearUbicaciones(Object ubicacionesObj) {
-        List<LatLng> puntos = new ArrayList<>();
-        if (ubicacionesObj instanceof List) {
-            for (Object item : (List<?>) ubicacionesObj) {
-                if (item instanceof GeoPoint) {
-                    GeoPoint gp = (GeoPoint) item;
-                    puntos.add(new LatLng(gp.getLatitude(), gp.getLongitude()));
-                } else if (item instanceof Map) {
-                    try {
-                        Map<String, Object> map = (Map<String, Object>) item;
-                        Object latObj = map.get("lat");
-                        Object lngObj = map.get("lng");
-                        if (lngObj == null) lngObj = map.get("lon");
-
-                        double lat = 0, lng = 0;
-                        if (latObj instanceof Number) lat = ((Number) latObj).doubleValue();
-                        if (lngObj instanceof Number) lng = ((Number) lngObj).doubleValue();
-
-                        if (lat != 0 || lng != 0) {
-                            puntos.add(new LatLng(lat, lng));
-                        }
-                    } catch (Exception e) {
-                        Log.w(TAG, "Error parseando punto de mapa: " + item, e);
-                    }
-                }
-            }
+    /**
+     * Decodifica solo lo agregado a la ruta desde la última vez y lo suma al mapa.
+     *
+     * @return cantidad de puntos nuevos dibujados
+     */
+    private int aplicarRutaIncremental(DocumentSnapshot snapshot) {
+        if (rutaMapa == null) {
+            // Mapa no listo: sin avanzar el cursor, se aplicará en onMapReady
+            ultimoSnapshotRuta = snapshot;
+            return 0;
+        }
+        ultimoSnapshotRuta = null;
+
+        TrackBuffer nuevos = RutaPaseoParser.parsearNuevos(snapshot, cursorRuta);
+        if (cursorRuta.isReiniciado()) {
+            Log.w(TAG, "🔄 Ruta reescrita en el documento - redibujando desde cero");
+            rutaMapa.limpiar();
         }
-        // Limitar para evitar sobrecarga de polil??nea
-        if (puntos.size() > 200) {
-            return puntos.subList(puntos.size() - 200, puntos.size());
+        if (nuevos.isEmpty()) {
+            return 0;
         }
-        return puntos;
+        rutaMapa.agregar(nuevos);
+        actualizarMapa(nuevos);
+        return nuevos.size();
     }
 
-    private void actualizarMapa(List<LatLng> puntos, Object ubicacionesRaw) {
-        if (mMap == null || puntos == null || puntos.isEmpty()) return;
+    /**
+     * Actualiza marcadores, cámara y estado con los puntos recién agregados a la ruta.
+     */
+    private void actualizarMapa(TrackBuffer nuevos) {
+        if (mMap == null || nuevos == null || nuevos.isEmpty()) return;
 
         LatLng previo = this.ultimaUbicacionConocida;
-        this.rutaPaseo = puntos;
-        this.ultimaUbicacionConocida = puntos.get(puntos.size() - 1);
-
-        // Ruta sin limpiar el mapa para evitar parpadeos
-        if (polylineRuta == null) {
-            PolylineOptions polylineOptions = new PolylineOptions()
-                    .addAll(puntos)
-                    .width(16f)
-                    .color(getResources().getColor(R.color.blue_primary))
-                    .jointType(JointType.ROUND)
-                    .startCap(new RoundCap())
-                    .endCap(new RoundCap())
-                    .geodesic(true);
-            polylineRuta = mMap.addPolyline(polylineOptions);
-        } else {
-            polylineRuta.setPoints(puntos);
-        }
+        int ultimo = nuevos.size() - 1;
+        this.ultimaUbicacionConocida = new LatLng(nuevos.getLat(ultimo), nuevos.getLng(ultimo));
 
         // Marcador de inicio (solo una vez)
-        if (marcadorInicio == null && !puntos.isEmpty()) {
+        if (marcadorInicio == null && rutaMapa.getPrimero() != null) {
             marcadorInicio = mMap.addMarker(new MarkerOptions()
-                    .position(puntos.get(0))
+                    .position(rutaMapa.getPrimero())
                     .title("Inicio")
                     .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_GREEN)));
         }
@@ -1446,7 +1375,10 @@ public class PaseoEnCursoDuenoActivity extends AppCompatActivity implements OnMa
                     .icon(walkerIcon != null ? walkerIcon : BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_AZURE))
                     .anchor(0.5f, 1.0f));
         } else {
-            animarMarcador(marcadorActual, ultimaUbicacionConocida);
+            // La ruta guardada va por detrás de los fixes en vivo: no pisar la predicción
+            if (!isPrediccionActiva()) {
+                animarMarcador(marcadorActual, ultimaUbicacionConocida);
+            }
             if (walkerIcon != null) {
                 marcadorActual.setIcon(walkerIcon);
             }
@@ -1483,44 +1415,27 @@ public class PaseoEnCursoDuenoActivity extends AppCompatActivity implements OnMa
             mMap.animateCamera(CameraUpdateFactory.newCameraPosition(cameraPosition));
         }
 
-        actualizarEstadoUbicacionDueno(ubicacionesRaw);
+        actualizarEstadoUbicacionDueno(nuevos);
     }
 
-    private void actualizarEstadoUbicacionDueno(Object ubicacionesRaw) {
+    private void actualizarEstadoUbicacionDueno(TrackBuffer ruta) {
         if (tvUbicacionEstado == null) return;
-        if (!(ubicacionesRaw instanceof List)) {
+        if (ruta == null || ruta.isEmpty()) {
             tvUbicacionEstado.setText("Ubicación: sin datos");
             tvUbicacionEstado.setTextColor(ContextCompat.getColor(this, R.color.gray_dark));
             return;
         }
-        List<?> lista = (List<?>) ubicacionesRaw;
-        if (lista.isEmpty()) {
-            tvUbicacionEstado.setText("Ubicación: sin datos");
-            tvUbicacionEstado.setTextColor(ContextCompat.getColor(this, R.color.gray_dark));
-            return;
-        }
-        Object last = lista.get(lista.size() - 1);
-        Double acc = null;
-        Double speed = null;
-        Timestamp ts = null;
-        if (last instanceof Map) {
-            @SuppressWarnings("unchecked")
-            Map<String, Object> map = (Map<String, Object>) last;
-            Object accObj = map.get("acc");
-            Object speedObj = map.get("speed");
-            Object tsObj = map.get("ts");
-            if (accObj instanceof Number) acc = ((Number) accObj).doubleValue();
-            if (speedObj instanceof Number) speed = ((Number) speedObj).doubleValue();
-            if (tsObj instanceof Timestamp) {
-                ts = (Timestamp) tsObj;
-            } else if (tsObj instanceof Date) {
-                ts = new Timestamp((Date) tsObj);
-            }
-        } else if (last instanceof GeoPoint) {
+        int last = ruta.size() - 1;
+        long tsMs = ruta.getTime(last);
+        if (tsMs == 0L && ruta.getAccuracy(last) == 0f) {
+            // Punto legacy sin metadatos (GeoPoint)
             tvUbicacionEstado.setText("Ubicación: actualizada");
             tvUbicacionEstado.setTextColor(ContextCompat.getColor(this, R.color.gray_dark));
             return;
         }
+        Double acc = ruta.getAccuracy(last) > 0f ? (double) ruta.getAccuracy(last) : null;
+        Double speed = (double) ruta.getSpeed(last);
+        Timestamp ts = tsMs > 0L ? new Timestamp(new Date(tsMs)) : null;
 
         boolean enMovimiento = speed != null && speed > 0.7;
         if (enMovimiento) {
@@ -3,6 +3,8 @@ package com.mjc.mascotalink;
 import android.app.AlertDialog;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
@@ -15,8 +17,6 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
-import com.google.android.gms.tasks.Task;
-import com.google.android.gms.tasks.Tasks;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.android.material.tabs.TabLayout;
 import com.google.firebase.auth.FirebaseAuth;
@@ -28,6 +28,12 @@ import com.google.firebase.firestore.PropertyName;
 import com.google.firebase.firestore.Query;
 import com.mjc.mascota.ui.busqueda.BusquedaPaseadoresActivity;
 import com.mjc.mascotalink.util.BottomNavManager;
+import com.mjc.mascotalink.util.ConsultasCompartidas;
+import com.mjc.mascotalink.util.FirestoreReferencias;
+import com.mjc.mascotalink.util.ListaIncremental;
+import com.mjc.mascotalink.util.MultiplexorConsultas;
+import com.mjc.mascotalink.util.PerfilCache;
+import com.mjc.mascotalink.util.ResolvedorReferencias;
 import com.mjc.mascotalink.utils.ReservaEstadoValidator;
 
 import java.text.SimpleDateFormat;
@@ -44,6 +50,16 @@ public class PaseosActivity extends AppCompatActivity {
     // Firebase
     private FirebaseAuth mAuth;
     private FirebaseFirestore db;
+    private PerfilCache perfilCache;
+    private ResolvedorReferencias<DocumentSnapshot> resolvedorReferencias;
+    /** Reservas del tab actual por id; cada snapshot aplica solo sus cambios. */
+    private final ListaIncremental<DocumentSnapshot, Paseo> modeloPaseos = new ListaIncremental<>((p1, p2) -> {
+        if (p1.getFecha() == null || p2.getFecha() == null) {
+            return p1.getFecha() == null ? (p2.getFecha() == null ? 0 : 1) : -1;
+        }
+        return p2.getFecha().compareTo(p1.getFecha());
+    });
+    private int generacionPaseos;
     private String currentUserId;
     private String userRole;
 
@@ -61,6 +77,19 @@ public class PaseosActivity extends AppCompatActivity {
     private PaseosAdapter paseosAdapter;
     private List<Paseo> paseosList;
 
+    // Refresco de los textos relativos al reloj ("Comienza en...") sin rebind completo
+    private static final long INTERVALO_TIEMPOS_MS = 60000;
+    private final Handler relojHandler = new Handler(Looper.getMainLooper());
+    private final Runnable refrescoTiempos = new Runnable() {
+        @Override
+        public void run() {
+            if (paseosAdapter != null) {
+                paseosAdapter.refrescarTiempos();
+            }
+            relojHandler.postDelayed(this, INTERVALO_TIEMPOS_MS);
+        }
+    };
+
     // Estado actual
     private String estadoActual = ReservaEstadoValidator.ESTADO_ACEPTADO;
     private boolean hasCheckedActiveWalk = false; // Flag to prevent auto-nav loop
@@ -72,6 +101,8 @@ public class PaseosActivity extends AppCompatActivity {
 
         mAuth = FirebaseAuth.getInstance();
         db = FirebaseFirestore.getInstance();
+        perfilCache = PerfilCache.getInstance(this);
+        resolvedorReferencias = FirestoreReferencias.crearResolvedor(db);
         FirebaseUser currentUser = mAuth.getCurrentUser();
 
         if (currentUser == null) {
@@ -85,7 +116,7 @@ public class PaseosActivity extends AppCompatActivity {
 
         initViews();
         setupSwipeRefresh();
-        com.mjc.mascotalink.util.UnreadBadgeManager.start(currentUserId);
+        com.mjc.mascotalink.util.UnreadBadgeManager.start(this, currentUserId);
 
         String cachedRole = BottomNavManager.getUserRole(this);
         if (cachedRole != null) {
@@ -100,6 +131,33 @@ public class PaseosActivity extends AppCompatActivity {
     }
 
     private void checkActiveWalkAndRedirect(String role) {
+        // Sale de la escucha de reservas activas del home si sigue viva; si no, la abre y
+        // queda compartida al volver al home
+        ConsultasCompartidas.get().obtener(ConsultasCompartidas.reservasActivas(db, role, currentUserId),
+                ConsultasCompartidas.LIMITE_RESERVAS_ACTIVAS, new MultiplexorConsultas.Receptor<DocumentSnapshot>() {
+                    @Override
+                    public void onResultado(List<DocumentSnapshot> documentos) {
+                        for (DocumentSnapshot doc : documentos) {
+                            String estado = doc.getString("estado");
+                            if ("LISTO_PARA_INICIAR".equals(estado) || "EN_CURSO".equals(estado)) {
+                                seleccionarTabEnCurso();
+                                return;
+                            }
+                        }
+                        if (documentos.size() >= ConsultasCompartidas.LIMITE_RESERVAS_ACTIVAS) {
+                            // El límite pudo dejar afuera al paseo activo
+                            consultarPaseoActivo(role);
+                        }
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        Log.e(TAG, "Error checking active walk", e);
+                    }
+                });
+    }
+
+    private void consultarPaseoActivo(String role) {
         String fieldToFilter = "PASEADOR".equalsIgnoreCase(role) ? "id_paseador" : "id_dueno";
         DocumentReference userRef = db.collection("usuarios").document(currentUserId);
 
@@ -110,23 +168,34 @@ public class PaseosActivity extends AppCompatActivity {
                 .get()
                 .addOnSuccessListener(snapshots -> {
                     if (!snapshots.isEmpty()) {
-                        // Si hay un paseo activo o listo para iniciar, priorizar la pestaña "En Curso" (Índice 2)
-                        if (tabLayout != null) {
-                            TabLayout.Tab tabEnCurso = tabLayout.getTabAt(2);
-                            if (tabEnCurso != null && !tabEnCurso.isSelected()) {
-                                tabEnCurso.select();
-                            }
-                        }
+                        seleccionarTabEnCurso();
                     }
                 })
                 .addOnFailureListener(e -> Log.e(TAG, "Error checking active walk", e));
     }
 
+    /** Si hay un paseo activo o listo para iniciar, priorizar la pestaña "En Curso" (Índice 2) */
+    private void seleccionarTabEnCurso() {
+        if (tabLayout != null) {
+            TabLayout.Tab tabEnCurso = tabLayout.getTabAt(2);
+            if (tabEnCurso != null && !tabEnCurso.isSelected()) {
+                tabEnCurso.select();
+            }
+        }
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
         setupBottomNavigation();
         com.mjc.mascotalink.util.UnreadBadgeManager.registerNav(bottomNav, this);
+        relojHandler.postDelayed(refrescoTiempos, INTERVALO_TIEMPOS_MS);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        relojHandler.removeCallbacks(refrescoTiempos);
     }
 
     @Override
@@ -172,6 +241,7 @@ public class PaseosActivity extends AppCompatActivity {
     private void fetchUserRoleAndSetupUI() {
         db.collection("usuarios").document(currentUserId).get()
                 .addOnSuccessListener(documentSnapshot -> {
+                    perfilCache.actualizar(documentSnapshot);
                     if (documentSnapshot.exists()) {
                         String fetchedRole = documentSnapshot.getString("rol");
                         if (fetchedRole != null) {
@@ -397,6 +467,7 @@ public class PaseosActivity extends AppCompatActivity {
 
     private void setupSwipeRefresh() {
         swipeRefresh.setOnRefreshListener(() -> {
+            resolvedorReferencias.invalidar();
             if (userRole != null) {
                 cargarPaseos(userRole);
             } else {
@@ -440,6 +511,10 @@ public class PaseosActivity extends AppCompatActivity {
                     .whereEqualTo("estado", estadoActual);
         }
 
+        // Lista nueva: lo del tab anterior no se mezcla, y sus respuestas pendientes se ignoran
+        modeloPaseos.limpiar();
+        final int generacion = ++generacionPaseos;
+
         firestoreListener = query.addSnapshotListener((querySnapshot, e) -> {
             // FASE 1 - PERFORMANCE: Log de tiempo de query
             long queryTime = System.currentTimeMillis() - startTime;
@@ -452,337 +527,202 @@ public class PaseosActivity extends AppCompatActivity {
 
             if (querySnapshot == null) return;
 
-            // Handle DocumentChanges to reactively remove items that changed state
-            boolean hasChanges = false;
+            // Aplicar solo los cambios del snapshot al modelo (el primero trae todo como ADDED)
+            List<DocumentSnapshot> cambiados = new ArrayList<>();
             for (com.google.firebase.firestore.DocumentChange dc : querySnapshot.getDocumentChanges()) {
-                switch (dc.getType()) {
-                    case REMOVED:
-                        // Item no longer matches query (e.g., state changed)
-                        // Find and remove from local list
-                        String removedId = dc.getDocument().getId();
-                        for (int i = 0; i < paseosList.size(); i++) {
-                            if (paseosList.get(i).getReservaId().equals(removedId)) {
-                                paseosList.remove(i);
-                                paseosAdapter.notifyItemRemoved(i);
-                                hasChanges = true;
-                                
-                                // If status changed to next logical step, try to redirect
-                                String newState = dc.getDocument().getString("estado");
-                                if (newState != null && !newState.equals(estadoActual)) {
-                                    // Simple logic: If we were in ACEPTADO/CONFIRMADO and it moved forward
-                                    // Just check active walk again or reload appropriate tab could be complex.
-                                    // For now, just removing it is correct visual feedback.
-                                    // If it became "LISTO_PARA_INICIAR" or "EN_CURSO", switch to "En Curso" tab
-                                    if ("LISTO_PARA_INICIAR".equals(newState) || "EN_CURSO".equals(newState)) {
-                                        if (tabLayout != null) {
-                                            TabLayout.Tab tabEnCurso = tabLayout.getTabAt(2);
-                                            if (tabEnCurso != null && !tabEnCurso.isSelected()) {
-                                                tabEnCurso.select();
-                                            }
-                                        }
-                                    } else if (ReservaEstadoValidator.ESTADO_CONFIRMADO.equals(newState) 
-                                            && ReservaEstadoValidator.ESTADO_ACEPTADO.equals(estadoActual)) {
-                                         // Move to "Programados" tab automatically
-                                         TabLayout.Tab tabProgramados = tabLayout.getTabAt(1);
-                                         if (tabProgramados != null && !tabProgramados.isSelected()) {
-                                             tabProgramados.select();
-                                         }
-                                    }
-                                }
-                                break;
-                            }
-                        }
-                        break;
-                    // ADDED/MODIFIED handled by full reload below for simplicity with joins
-                }
-            }
-            
-            if (hasChanges && querySnapshot.isEmpty()) {
-                 finalizarCarga();
-                 return;
-            }
+                DocumentSnapshot doc = dc.getDocument();
+                Log.d(TAG, "Cambio detectado: " + dc.getType() + " ID: " + doc.getId());
 
-            if (querySnapshot == null || querySnapshot.isEmpty()) {
-                paseosList.clear();
-                if (paseosAdapter != null) {
-                    paseosAdapter.updateList(paseosList);
+                if (dc.getType() == com.google.firebase.firestore.DocumentChange.Type.REMOVED) {
+                    modeloPaseos.quitar(doc.getId());
+                } else {
+                    cambiados.add(doc);
                 }
-                finalizarCarga();
-                return;
-            }
-
-            // DETECCIÓN DE CAMBIOS DE ESTADO PARA NAVEGACIÓN AUTOMÁTICA
-            for (com.google.firebase.firestore.DocumentChange dc : querySnapshot.getDocumentChanges()) {
-                Log.d(TAG, "Cambio detectado: " + dc.getType() + " ID: " + dc.getDocument().getId());
-                
-                String newState = dc.getDocument().getString("estado");
-                if (newState == null) continue;
 
+                // DETECCIÓN DE CAMBIOS DE ESTADO PARA NAVEGACIÓN AUTOMÁTICA
                 // Detectar si el item DEJA de pertenecer a esta lista (REMOVED) o CAMBIA de estado (MODIFIED)
-                if (dc.getType() == com.google.firebase.firestore.DocumentChange.Type.REMOVED || 
-                    dc.getType() == com.google.firebase.firestore.DocumentChange.Type.MODIFIED) {
-                    
-                    Log.d(TAG, "Evaluando redirección. Estado actual tab: " + estadoActual + ", Nuevo estado doc: " + newState);
-
-                    if (!newState.equals(estadoActual)) {
-                        if (ReservaEstadoValidator.ESTADO_CONFIRMADO.equals(newState) 
-                                && ReservaEstadoValidator.ESTADO_ACEPTADO.equals(estadoActual)) {
-                             Log.d(TAG, "Redirigiendo a Tab Programados (1)");
-                             if (tabLayout != null) {
-                                 TabLayout.Tab tab = tabLayout.getTabAt(1);
-                                 if (tab != null && !tab.isSelected()) tab.select();
-                             }
-                        } else if (("LISTO_PARA_INICIAR".equals(newState) || "EN_CURSO".equals(newState))
-                                && !estadoActual.equals("EN_CURSO")) {
-                             Log.d(TAG, "Redirigiendo a Tab En Curso (2)");
-                             if (tabLayout != null) {
-                                 TabLayout.Tab tab = tabLayout.getTabAt(2);
-                                 if (tab != null && !tab.isSelected()) tab.select();
-                             }
-                        }
-                    }
+                String newState = doc.getString("estado");
+                if (newState != null && dc.getType() != com.google.firebase.firestore.DocumentChange.Type.ADDED) {
+                    redirigirSiCambioDeTab(newState);
                 }
             }
 
-            List<Task<DocumentSnapshot>> tareas = new ArrayList<>();
-            List<Paseo> paseosTemporales = new ArrayList<>();
-
-            // 1. Carga INMEDIATA de datos básicos (hace que la lista sea responsiva)
-            for (DocumentSnapshot doc : querySnapshot.getDocuments()) {
-                Paseo paseo = doc.toObject(Paseo.class);
-                if (paseo == null) continue;
-                paseo.setReservaId(doc.getId());
-
-                // Soportar ambos formatos: nuevo (mascotas array) y antiguo (id_mascota string)
-                @SuppressWarnings("unchecked")
-                List<String> mascotasNombres = (List<String>) doc.get("mascotas_nombres");
-                @SuppressWarnings("unchecked")
-                List<String> mascotasFotos = (List<String>) doc.get("mascotas_fotos");
-                String mascotaId = doc.getString("id_mascota");
-                paseo.setIdMascota(mascotaId);
-
-                // Cargar fotos de mascotas si están disponibles
-                if (mascotasFotos != null && !mascotasFotos.isEmpty()) {
-                    paseo.setMascotasFotos(mascotasFotos);
-
-                    // Si solo hay UNA mascota, establecer también la foto individual
-                    if (mascotasNombres != null && mascotasNombres.size() == 1) {
-                        paseo.setMascotaFoto(mascotasFotos.get(0));
-                        Log.d(TAG, "✅ Foto única de mascota establecida (Fase 1): " + mascotasFotos.get(0));
-                    }
+            // Referencias a resolver por lotes (las ya resueltas en snapshots anteriores no se leen)
+            java.util.Set<String> rutas = new java.util.LinkedHashSet<>();
+            for (DocumentSnapshot doc : cambiados) {
+                Paseo paseo = construirPaseo(doc, rutas, false);
+                if (paseo == null) {
+                    modeloPaseos.quitar(doc.getId());
+                    continue;
                 }
+                modeloPaseos.poner(doc.getId(), doc, paseo);
 
                 // Verificar si el paseo CONFIRMADO debe transicionar a LISTO_PARA_INICIAR
                 verificarYTransicionarPaseo(doc.getId(), paseo.getEstado(), paseo.getHora_inicio());
-
-                // Intentar usar campos desnormalizados si están disponibles
-                // (Se procesan completamente más abajo junto con la lógica de carga de fotos)
-
-                paseosTemporales.add(paseo);
-
-                // Preparar carga de detalles solo si no hay datos desnormalizados
-                DocumentReference paseadorRef = doc.getDocumentReference("id_paseador");
-                DocumentReference duenoRef = doc.getDocumentReference("id_dueno");
-                String currentMascotaId = paseo.getIdMascota();
-
-                // Datos desnormalizados
-                String paseadorNombreDesnormalizado = doc.getString("paseador_nombre");
-                String paseadorFotoDesnormalizada = doc.getString("paseador_foto");
-                String duenoNombreDesnormalizado = doc.getString("dueno_nombre");
-                String duenoFotoDesnormalizada = doc.getString("dueno_foto");
-
-                // Solo consultar paseador si no hay dato desnormalizado
-                if ((paseadorNombreDesnormalizado == null || paseadorNombreDesnormalizado.isEmpty()) ||
-                    (paseadorFotoDesnormalizada == null || paseadorFotoDesnormalizada.isEmpty())) {
-                    tareas.add(paseadorRef != null ? paseadorRef.get() : Tasks.forResult(null));
-                } else {
-                    paseo.setPaseadorNombre(paseadorNombreDesnormalizado);
-                    paseo.setPaseadorFoto(paseadorFotoDesnormalizada);
-                    tareas.add(Tasks.forResult(null));
-                }
-
-                // Solo consultar dueño si no hay dato desnormalizado
-                if ((duenoNombreDesnormalizado == null || duenoNombreDesnormalizado.isEmpty()) ||
-                    (duenoFotoDesnormalizada == null || duenoFotoDesnormalizada.isEmpty())) {
-                    tareas.add(duenoRef != null ? duenoRef.get() : Tasks.forResult(null));
-                } else {
-                    paseo.setDuenoNombre(duenoNombreDesnormalizado);
-                    // paseo.setDuenoFoto(duenoFotoDesnormalizada); // Si el modelo lo soportara
-                    tareas.add(Tasks.forResult(null));
-                }
-
-                // Solo cargar mascota si es formato antiguo (una sola mascota)
-                if (mascotasNombres == null || mascotasNombres.isEmpty()) {
-                    if (duenoRef != null && currentMascotaId != null && !currentMascotaId.isEmpty()) {
-                        tareas.add(db.collection("duenos").document(duenoRef.getId()).collection("mascotas")
-                                .document(currentMascotaId).get());
-                    } else {
-                        tareas.add(Tasks.forResult(null));
-                    }
-                } else {
-                    // Formato nuevo: ya tenemos los nombres, no necesitamos cargar
-                    tareas.add(Tasks.forResult(null));
-                }
-            }
-
-            // Ordenar preliminarmente y mostrar YA
-            java.util.Collections.sort(paseosTemporales, (p1, p2) -> {
-                if (p1.getFecha() == null || p2.getFecha() == null) return 0;
-                return p2.getFecha().compareTo(p1.getFecha());
-            });
-            
-            paseosList.clear();
-            paseosList.addAll(paseosTemporales);
-            if (paseosAdapter != null) {
-                paseosAdapter.updateList(paseosList);
-            }
-            // No finalizamos carga (swipeRefresh) todavía, esperamos a los detalles
-            if (paseosList.isEmpty()) {
-                 rvPaseos.setVisibility(View.GONE);
-                 emptyView.setVisibility(View.VISIBLE);
-                 actualizarTextoVacio();
-            } else {
-                 rvPaseos.setVisibility(View.VISIBLE);
-                 emptyView.setVisibility(View.GONE);
             }
 
+            // 1. Mostrar YA lo que hay (los detalles ya resueltos vienen del caché del resolvedor)
+            publicarPaseos();
 
-            // 2. Carga ASÍNCRONA de detalles (enriquece la lista existente)
-            if (tareas.isEmpty()) {
+            // 2. Carga ASÍNCRONA de detalles faltantes, solo de los documentos que cambiaron
+            if (rutas.isEmpty()) {
                 finalizarCarga();
                 return;
             }
 
-            Tasks.whenAllSuccess(tareas).addOnSuccessListener(results -> {
-                if (isDestroyed() || isFinishing()) return;
+            resolvedorReferencias.resolver(rutas, detalles -> {
+                if (isDestroyed() || isFinishing() || generacion != generacionPaseos) return;
 
-                Date now = new Date();
-                List<Paseo> nuevosPaseosConDetalles = new ArrayList<>();
-                boolean algunCambioDeEstado = false;
-
-                // Reconstruimos la lista iterando sobre el snapshot original para mantener el orden e índices
-                List<DocumentSnapshot> docs = querySnapshot.getDocuments();
-                int resultIndex = 0;
+                // Los perfiles recién leídos quedan disponibles para el resto de la app
+                for (String ruta : rutas) {
+                    if (ruta.startsWith("usuarios/")) perfilCache.actualizar(detalles.get(ruta));
+                }
 
-                for (DocumentSnapshot doc : docs) {
-                    Paseo paseo = doc.toObject(Paseo.class);
-                    if (paseo == null) {
-                        resultIndex += 3;
-                        continue;
-                    }
-                    paseo.setReservaId(doc.getId());
-                    paseo.setIdMascota(doc.getString("id_mascota"));
-
-                    // Firebase Function se encarga de CONFIRMADO -> LISTO_PARA_INICIAR
-                    // El paseador debe iniciar manualmente usando el boton "Comenzar Paseo"
-
-                    // Cargar datos de múltiples mascotas del documento
-                    @SuppressWarnings("unchecked")
-                    List<String> mascotasNombres = (List<String>) doc.get("mascotas_nombres");
-                    @SuppressWarnings("unchecked")
-                    List<String> mascotasFotos = (List<String>) doc.get("mascotas_fotos");
-
-                    // Si hay múltiples mascotas, concatenar nombres
-                    if (mascotasNombres != null && !mascotasNombres.isEmpty()) {
-                        String nombresConcatenados = String.join(", ", mascotasNombres);
-                        Log.d(TAG, "🟢 PaseosActivity Fase2 - Concatenando: " + mascotasNombres + " → '" + nombresConcatenados + "'");
-                        paseo.setMascotaNombre(nombresConcatenados);
-                    }
+                for (DocumentSnapshot doc : cambiados) {
+                    // Si llegó una versión más nueva del documento, esa ya se procesó
+                    if (!modeloPaseos.esVigente(doc.getId(), doc)) continue;
+                    Paseo paseo = construirPaseo(doc, null, true);
+                    if (paseo != null) modeloPaseos.poner(doc.getId(), doc, paseo);
+                }
+                publicarPaseos();
+                finalizarCarga();
+                // Los lotes que fallan quedan sin detalle: se reintentan en el próximo cambio
+            });
+        });
+    }
 
-                    // Cargar fotos de mascotas si están disponibles
-                    if (mascotasFotos != null && !mascotasFotos.isEmpty()) {
-                        paseo.setMascotasFotos(mascotasFotos);
+    /**
+     * Arma el Paseo de una reserva con sus datos desnormalizados y los detalles ya resueltos.
+     *
+     * @param faltantes si no es null, recibe las rutas de los detalles que faltan leer
+     * @param completo  true si ya se intentó leer todo: lo que falta no existe
+     */
+    private Paseo construirPaseo(DocumentSnapshot doc, java.util.Set<String> faltantes, boolean completo) {
+        Paseo paseo = doc.toObject(Paseo.class);
+        if (paseo == null) return null;
+        paseo.setReservaId(doc.getId());
+
+        // Soportar ambos formatos: nuevo (mascotas array) y antiguo (id_mascota string)
+        @SuppressWarnings("unchecked")
+        List<String> mascotasNombres = (List<String>) doc.get("mascotas_nombres");
+        @SuppressWarnings("unchecked")
+        List<String> mascotasFotos = (List<String>) doc.get("mascotas_fotos");
+        String mascotaId = doc.getString("id_mascota");
+        paseo.setIdMascota(mascotaId);
+
+        // Si hay múltiples mascotas, concatenar nombres
+        if (mascotasNombres != null && !mascotasNombres.isEmpty()) {
+            paseo.setMascotaNombre(String.join(", ", mascotasNombres));
+        }
 
-                        // Si solo hay UNA mascota, establecer también la foto individual
-                        if (mascotasNombres != null && mascotasNombres.size() == 1) {
-                            paseo.setMascotaFoto(mascotasFotos.get(0));
-                            Log.d(TAG, "✅ Foto única de mascota establecida en PaseosActivity: " + mascotasFotos.get(0));
-                        }
-                    }
+        // Cargar fotos de mascotas si están disponibles
+        if (mascotasFotos != null && !mascotasFotos.isEmpty()) {
+            paseo.setMascotasFotos(mascotasFotos);
 
-                    // Cargar datos desnormalizados si están disponibles
-                    String paseadorNombreDesnormalizado = doc.getString("paseador_nombre");
-                    String paseadorFotoDesnormalizada = doc.getString("paseador_foto");
-                    String duenoNombreDesnormalizado = doc.getString("dueno_nombre");
-                    String duenoFotoDesnormalizada = doc.getString("dueno_foto");
+            // Si solo hay UNA mascota, establecer también la foto individual
+            if (mascotasNombres != null && mascotasNombres.size() == 1) {
+                paseo.setMascotaFoto(mascotasFotos.get(0));
+            }
+        }
 
-                    if (paseadorNombreDesnormalizado != null && !paseadorNombreDesnormalizado.isEmpty()) {
-                        paseo.setPaseadorNombre(paseadorNombreDesnormalizado);
-                    }
-                    if (paseadorFotoDesnormalizada != null && !paseadorFotoDesnormalizada.isEmpty()) {
-                        paseo.setPaseadorFoto(paseadorFotoDesnormalizada);
-                    }
-                    if (duenoNombreDesnormalizado != null && !duenoNombreDesnormalizado.isEmpty()) {
-                        paseo.setDuenoNombre(duenoNombreDesnormalizado);
-                    }
+        // Datos desnormalizados
+        DocumentReference paseadorRef = doc.getDocumentReference("id_paseador");
+        DocumentReference duenoRef = doc.getDocumentReference("id_dueno");
+        String paseadorNombreDesnormalizado = doc.getString("paseador_nombre");
+        String paseadorFotoDesnormalizada = doc.getString("paseador_foto");
+        String duenoNombreDesnormalizado = doc.getString("dueno_nombre");
+        String duenoFotoDesnormalizada = doc.getString("dueno_foto");
 
-                    DocumentSnapshot paseadorDoc = (DocumentSnapshot) results.get(resultIndex++);
-                    DocumentSnapshot duenoDoc = (DocumentSnapshot) results.get(resultIndex++);
-                    DocumentSnapshot mascotaDoc = (DocumentSnapshot) results.get(resultIndex++);
+        if (paseadorNombreDesnormalizado != null && !paseadorNombreDesnormalizado.isEmpty()) {
+            paseo.setPaseadorNombre(paseadorNombreDesnormalizado);
+        }
+        if (paseadorFotoDesnormalizada != null && !paseadorFotoDesnormalizada.isEmpty()) {
+            paseo.setPaseadorFoto(paseadorFotoDesnormalizada);
+        }
+        if (duenoNombreDesnormalizado != null && !duenoNombreDesnormalizado.isEmpty()) {
+            paseo.setDuenoNombre(duenoNombreDesnormalizado);
+        }
 
-                    // Lógica corregida: Cargar datos faltantes independientemente
-                    if (paseadorDoc != null && paseadorDoc.exists()) {
-                        if (paseo.getPaseadorNombre() == null || paseo.getPaseadorNombre().equals("Cargando...")) {
-                            paseo.setPaseadorNombre(paseadorDoc.getString("nombre_display"));
-                        }
-                        
-                        String fotoPaseador = paseadorDoc.getString("foto_perfil");
-                        Log.d(TAG, "DEBUG FOTO: Paseador Doc existe. ID: " + paseadorDoc.getId() + " Foto: " + fotoPaseador);
-                        
-                        if (paseo.getPaseadorFoto() == null || paseo.getPaseadorFoto().isEmpty()) {
-                            paseo.setPaseadorFoto(fotoPaseador);
-                            Log.d(TAG, "DEBUG FOTO: Asignada foto al paseo: " + fotoPaseador);
-                        } else {
-                            Log.d(TAG, "DEBUG FOTO: Paseo ya tenía foto: " + paseo.getPaseadorFoto());
-                        }
-                    } else {
-                        Log.d(TAG, "DEBUG FOTO: Paseador Doc es nulo o no existe");
-                    }
+        // Solo consultar paseador si no hay dato desnormalizado
+        if (paseadorRef != null && (paseadorNombreDesnormalizado == null || paseadorNombreDesnormalizado.isEmpty()
+                || paseadorFotoDesnormalizada == null || paseadorFotoDesnormalizada.isEmpty())) {
+            DocumentSnapshot paseadorDoc = detalle(paseadorRef.getPath(), faltantes);
+            if (paseadorDoc != null && paseadorDoc.exists()) {
+                if (paseo.getPaseadorNombre() == null || paseo.getPaseadorNombre().equals("Cargando...")) {
+                    paseo.setPaseadorNombre(paseadorDoc.getString("nombre_display"));
+                }
+                if (paseo.getPaseadorFoto() == null || paseo.getPaseadorFoto().isEmpty()) {
+                    paseo.setPaseadorFoto(paseadorDoc.getString("foto_perfil"));
+                }
+            }
+        }
 
-                    if (duenoDoc != null && duenoDoc.exists()) {
-                        if (paseo.getDuenoNombre() == null || paseo.getDuenoNombre().isEmpty()) {
-                            paseo.setDuenoNombre(duenoDoc.getString("nombre_display"));
-                        }
-                        // Opcional: Si Paseo tuviera campo para foto de dueño
-                    }
+        // Solo consultar dueño si no hay dato desnormalizado
+        if (duenoRef != null && (duenoNombreDesnormalizado == null || duenoNombreDesnormalizado.isEmpty()
+                || duenoFotoDesnormalizada == null || duenoFotoDesnormalizada.isEmpty())) {
+            DocumentSnapshot duenoDoc = detalle(duenoRef.getPath(), faltantes);
+            if (duenoDoc != null && duenoDoc.exists()
+                    && (paseo.getDuenoNombre() == null || paseo.getDuenoNombre().isEmpty())) {
+                paseo.setDuenoNombre(duenoDoc.getString("nombre_display"));
+            }
+        }
 
-                    // Solo actualizar nombre de mascota si es formato antiguo (una sola mascota)
-                    // Y NO se han cargado nombres de múltiples mascotas arriba
-                    if (mascotaDoc != null && mascotaDoc.exists()) {
-                        // Verificar si NO tiene múltiples mascotas (formato antiguo)
-                        if (mascotasNombres == null || mascotasNombres.isEmpty()) {
-                            paseo.setMascotaNombre(mascotaDoc.getString("nombre"));
-                            paseo.setMascotaFoto(mascotaDoc.getString("foto_principal_url"));
-                        }
-                    } else if (paseo.getMascotaNombre() == null || paseo.getMascotaNombre().isEmpty()) {
-                        // Solo mostrar error si NO es formato nuevo (múltiples mascotas)
-                        if (mascotasNombres == null || mascotasNombres.isEmpty()) {
-                            paseo.setMascotaNombre("Mascota no encontrada");
-                        }
-                    }
-                    nuevosPaseosConDetalles.add(paseo);
-                }
+        // Solo cargar mascota si es formato antiguo (una sola mascota)
+        if (mascotasNombres == null || mascotasNombres.isEmpty()) {
+            DocumentSnapshot mascotaDoc = null;
+            if (duenoRef != null && mascotaId != null && !mascotaId.isEmpty()) {
+                mascotaDoc = detalle(FirestoreReferencias.rutaMascota(duenoRef.getId(), mascotaId), faltantes);
+            }
+            if (mascotaDoc != null && mascotaDoc.exists()) {
+                paseo.setMascotaNombre(mascotaDoc.getString("nombre"));
+                paseo.setMascotaFoto(mascotaDoc.getString("foto_principal_url"));
+            } else if (completo && (paseo.getMascotaNombre() == null || paseo.getMascotaNombre().isEmpty())) {
+                paseo.setMascotaNombre("Mascota no encontrada");
+            }
+        }
+        return paseo;
+    }
 
-                java.util.Collections.sort(nuevosPaseosConDetalles, (p1, p2) -> {
-                    if (p1.getFecha() == null || p2.getFecha() == null) return 0;
-                    return p2.getFecha().compareTo(p1.getFecha());
-                });
+    /** Documento ya resuelto de la ruta; si falta y {@code faltantes} no es null, se anota. */
+    private DocumentSnapshot detalle(String ruta, java.util.Set<String> faltantes) {
+        DocumentSnapshot doc = resolvedorReferencias.get(ruta);
+        if (doc == null && faltantes != null) faltantes.add(ruta);
+        return doc;
+    }
 
-                paseosList.clear();
-                paseosList.addAll(nuevosPaseosConDetalles);
+    /** Copia el modelo a la lista del adapter; el diff lo calcula el adapter fuera del hilo principal. */
+    private void publicarPaseos() {
+        paseosList.clear();
+        paseosList.addAll(modeloPaseos.getItems());
+        if (paseosAdapter != null) {
+            paseosAdapter.updateList(paseosList);
+        }
+        if (paseosList.isEmpty()) {
+            rvPaseos.setVisibility(View.GONE);
+            emptyView.setVisibility(View.VISIBLE);
+            actualizarTextoVacio();
+        } else {
+            rvPaseos.setVisibility(View.VISIBLE);
+            emptyView.setVisibility(View.GONE);
+        }
+    }
 
-                if (paseosAdapter != null) {
-                    paseosAdapter.updateList(paseosList);
-                }
-                finalizarCarga();
-                
-                // Si hubo cambios de estado automáticos, refrescamos tabs si es necesario o dejamos que el listener actúe
-                
-            }).addOnFailureListener(ex -> {
-               Log.e(TAG, "Error cargando detalles relacionados", ex);
-               finalizarCarga(); // Finalizar spinner incluso si fallan los detalles
-            });
-        });
+    /** Si una reserva pasó al estado de otro tab, lleva al usuario a ese tab. */
+    private void redirigirSiCambioDeTab(String newState) {
+        Log.d(TAG, "Evaluando redirección. Estado actual tab: " + estadoActual + ", Nuevo estado doc: " + newState);
+        if (newState.equals(estadoActual) || tabLayout == null) return;
+
+        if (ReservaEstadoValidator.ESTADO_CONFIRMADO.equals(newState)
+                && ReservaEstadoValidator.ESTADO_ACEPTADO.equals(estadoActual)) {
+            Log.d(TAG, "Redirigiendo a Tab Programados (1)");
+            TabLayout.Tab tab = tabLayout.getTabAt(1);
+            if (tab != null && !tab.isSelected()) tab.select();
+        } else if (("LISTO_PARA_INICIAR".equals(newState) || "EN_CURSO".equals(newState))
+                && !estadoActual.equals("EN_CURSO")) {
+            Log.d(TAG, "Redirigiendo a Tab En Curso (2)");
+            TabLayout.Tab tab = tabLayout.getTabAt(2);
+            if (tab != null && !tab.isSelected()) tab.select();
+        }
     }
 
     @Override
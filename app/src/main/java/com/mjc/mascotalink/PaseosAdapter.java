@@ -11,6 +11,7 @@ import android.widget.Toast;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.recyclerview.widget.DiffUtil;
 
@@ -18,13 +19,13 @@ import com.bumptech.glide.Glide;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.imageview.ShapeableImageView;
+import com.mjc.mascotalink.util.ListaDiferida;
 import com.mjc.mascotalink.utils.PaseoDiffCallback;
 import com.mjc.mascotalink.utils.ReservaEstadoValidator;
 import com.mjc.mascotalink.views.OverlappingAvatarsView;
 import com.mjc.mascotalink.Paseo;
 import com.mjc.mascotalink.MyApplication;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class PaseosAdapter extends RecyclerView.Adapter<PaseosAdapter.PaseoViewHolder> {
@@ -34,7 +35,7 @@ public class PaseosAdapter extends RecyclerView.Adapter<PaseosAdapter.PaseoViewH
     private static final long VENTANA_ANTICIPACION_MS = 15 * 60 * 1000; // 15 minutos
 
     private Context context;
-    private List<PaseoItem> paseoItems;  // Cambiado de List<Paseo> a List<PaseoItem>
+    private final ListaDiferida<PaseoItem> paseoItems;  // Reservas ya agrupadas
     private OnPaseoClickListener listener;
     private String userRole;
 
@@ -50,65 +51,66 @@ public class PaseosAdapter extends RecyclerView.Adapter<PaseosAdapter.PaseoViewH
     public PaseosAdapter(Context context, List<Paseo> paseosList, OnPaseoClickListener listener, String userRole) {
         this.context = context;
         // Agrupar reservas antes de almacenarlas
-        this.paseoItems = PaseoItem.agruparReservas(paseosList);
+        this.paseoItems = new ListaDiferida<>(this, ITEM_DIFF);
+        this.paseoItems.inicializar(PaseoItem.agruparReservas(paseosList));
         this.listener = listener;
         this.userRole = userRole;
     }
 
+    /**
+     * Reemplaza la lista. El agrupado y el diff se calculan en segundo plano; si llega otra
+     * lista antes de terminar, el resultado anterior se descarta.
+     */
     public void updateList(List<Paseo> newList) {
-        // Agrupar la nueva lista
-        List<PaseoItem> newItems = PaseoItem.agruparReservas(newList);
-        
-        DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(new DiffUtil.Callback() {
-            @Override
-            public int getOldListSize() {
-                return paseoItems.size();
-            }
+        paseoItems.enviar(newList, PaseoItem::agruparReservas, null);
+    }
 
-            @Override
-            public int getNewListSize() {
-                return newItems.size();
-            }
+    /** Redibuja solo los textos relativos al reloj ("Comienza en...", "En progreso · ..."). */
+    public void refrescarTiempos() {
+        if (getItemCount() > 0) {
+            notifyItemRangeChanged(0, getItemCount(), ListaDiferida.CAMBIO_TIEMPO);
+        }
+    }
 
-            @Override
-            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
-                PaseoItem oldItem = paseoItems.get(oldItemPosition);
-                PaseoItem newItem = newItems.get(newItemPosition);
-                
-                // Comparar por ID de reserva principal
-                String oldId = oldItem.esGrupo() ? 
-                    oldItem.getPrimerPaseo().getGrupo_reserva_id() : 
-                    oldItem.getPaseoIndividual().getReservaId();
-                    
-                String newId = newItem.esGrupo() ? 
-                    newItem.getPrimerPaseo().getGrupo_reserva_id() : 
-                    newItem.getPaseoIndividual().getReservaId();
-                    
-                return oldId != null && oldId.equals(newId);
-            }
+    /** Diff entre items agrupados; el contenido de cada paseo se compara con {@link PaseoDiffCallback}. */
+    private static final DiffUtil.ItemCallback<PaseoItem> ITEM_DIFF = new DiffUtil.ItemCallback<PaseoItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull PaseoItem oldItem, @NonNull PaseoItem newItem) {
+            // Comparar por ID de reserva principal
+            String oldId = idDe(oldItem);
+            return oldId != null && oldId.equals(idDe(newItem));
+        }
 
-            @Override
-            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
-                PaseoItem oldItem = paseoItems.get(oldItemPosition);
-                PaseoItem newItem = newItems.get(newItemPosition);
-                
-                // Comparar estado y datos relevantes para la UI
-                String oldState = oldItem.getEstadoEfectivo();
-                String newState = newItem.getEstadoEfectivo();
-                
-                if (oldState == null || !oldState.equals(newState)) return false;
-                
-                // Si es grupo, verificar cantidad de días
-                if (oldItem.esGrupo() && oldItem.getCantidadDias() != newItem.getCantidadDias()) return false;
-                
-                return true; 
-            }
-        });
+        @Override
+        public boolean areContentsTheSame(@NonNull PaseoItem oldItem, @NonNull PaseoItem newItem) {
+            // Comparar estado y datos relevantes para la UI
+            String oldState = oldItem.getEstadoEfectivo();
+            String newState = newItem.getEstadoEfectivo();
 
-        this.paseoItems.clear();
-        this.paseoItems.addAll(newItems);
-        diffResult.dispatchUpdatesTo(this);
-    }
+            if (oldState == null || !oldState.equals(newState)) return false;
+
+            // Si es grupo, verificar cantidad de días
+            if (oldItem.esGrupo() && oldItem.getCantidadDias() != newItem.getCantidadDias()) return false;
+
+            Paseo oldPaseo = oldItem.getPrimerPaseo();
+            Paseo newPaseo = newItem.getPrimerPaseo();
+            return oldPaseo != null && newPaseo != null && PaseoDiffCallback.mismoContenido(oldPaseo, newPaseo);
+        }
+
+        @Nullable
+        @Override
+        public Object getChangePayload(@NonNull PaseoItem oldItem, @NonNull PaseoItem newItem) {
+            // En los grupos el estado también cambia el progreso de la fecha: se redibujan enteros
+            if (oldItem.esGrupo() || newItem.esGrupo()) return null;
+            return PaseoDiffCallback.ITEM.getChangePayload(oldItem.getPaseoIndividual(), newItem.getPaseoIndividual());
+        }
+
+        private String idDe(PaseoItem item) {
+            return item.esGrupo()
+                    ? item.getPrimerPaseo().getGrupo_reserva_id()
+                    : item.getPaseoIndividual().getReservaId();
+        }
+    };
 
     @Override
     public int getItemViewType(int position) {
@@ -135,7 +137,26 @@ public class PaseosAdapter extends RecyclerView.Adapter<PaseosAdapter.PaseoViewH
         if (item.esGrupo()) {
             bindGrupoView(holder, item);
         } else {
-            bindIndividualView(holder, item.getPaseoIndividual());
+            bindIndividualView(holder, item);
+        }
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull PaseoViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        PaseoItem item = paseoItems.get(position);
+        Paseo paseo = item.getPrimerPaseo();
+        if (paseo == null) return;
+
+        if (payloads.contains(ListaDiferida.CAMBIO_ESTADO)) {
+            // Solo cambió el estado: chip, info, botones; sin recargar fotos ni textos
+            bindEstado(holder, item.esGrupo() ? item.getEstadoEfectivo() : paseo.getEstado(), paseo);
+        } else {
+            // CAMBIO_TIEMPO
+            establecerInfoEstado(holder.tvInfoEstado, paseo);
         }
     }
 
@@ -193,58 +214,22 @@ public class PaseosAdapter extends RecyclerView.Adapter<PaseosAdapter.PaseoViewH
         double costoTotal = item.getCostoTotal();
         holder.tvCosto.setText(String.format("$%.2f total", costoTotal));
 
-        // 4. Estado (usar el estado efectivo del grupo)
-        String estado = item.getEstadoEfectivo();
-        holder.chipEstado.setText(estado != null ? estado : "DESCONOCIDO");
-        establecerColorEstado(holder.chipEstado, estado);
-
-        // 4.1. Información contextual del estado (usar el primer paseo)
-        establecerInfoEstado(holder.tvInfoEstado, primerPaseo);
-
-        // 5. Opacidad para historial
-        float opacidad = 1.0f;
-        if (estado != null && (estado.equals("COMPLETADO") || estado.equals("CANCELADO"))) {
-            opacidad = 0.9f;
-        }
-        holder.itemView.setAlpha(opacidad);
-
-        // 6. Botones de Acción (usar el primer paseo)
-        configurarBotonesAccion(holder, estado, primerPaseo);
-
-        // Click en toda la tarjeta
-        holder.itemView.setOnClickListener(v -> {
-            boolean puedePagar = ReservaEstadoValidator.canPay(primerPaseo.getEstado()) &&
-                    !ReservaEstadoValidator.isPagoCompletado(primerPaseo.getEstado_pago());
-            if (userRole != null && !userRole.equalsIgnoreCase("PASEADOR") && puedePagar) {
-                listener.onProcesarPagoClick(primerPaseo);
-            } else {
-                listener.onPaseoClick(primerPaseo);
-            }
-        });
+        // 4-6. Estado, opacidad y botones (usar el estado efectivo del grupo)
+        bindEstado(holder, item.getEstadoEfectivo(), primerPaseo);
     }
 
     /**
      * Vincula datos para una reserva individual
      */
-    private void bindIndividualView(PaseoViewHolder holder, Paseo paseo) {
+    private void bindIndividualView(PaseoViewHolder holder, PaseoItem item) {
+        Paseo paseo = item.getPaseoIndividual();
         if (paseo == null) return;
 
-        // Obtener el item completo para verificar badges
-        PaseoItem currentItem = null;
-        for (PaseoItem item : paseoItems) {
-            if (!item.esGrupo() && item.getPaseoIndividual() == paseo) {
-                currentItem = item;
-                break;
-            }
-        }
-
         // 1. Fecha y Hora con badge si es SEMANAL/MENSUAL
         String fechaTexto = paseo.getFechaFormateada() != null ? paseo.getFechaFormateada() : "";
-        if (currentItem != null) {
-            String badge = currentItem.getBadgeTipoReserva();
-            if (badge != null) {
-                fechaTexto = badge + " • " + fechaTexto;
-            }
+        String badge = item.getBadgeTipoReserva();
+        if (badge != null) {
+            fechaTexto = badge + " • " + fechaTexto;
         }
         holder.tvFecha.setText(fechaTexto);
         holder.tvHoraInicioPaseo.setText(paseo.getHoraFormateada() != null ? paseo.getHoraFormateada() : "");
@@ -292,8 +277,15 @@ public class PaseosAdapter extends RecyclerView.Adapter<PaseosAdapter.PaseoViewH
         double costo = paseo.getCosto_total();
         holder.tvCosto.setText(String.format("$%.2f", costo));
 
+        // 4-6. Estado, opacidad y botones
+        bindEstado(holder, paseo.getEstado(), paseo);
+    }
+
+    /**
+     * Vincula lo que depende del estado; también es el bind parcial de {@link ListaDiferida#CAMBIO_ESTADO}.
+     */
+    private void bindEstado(PaseoViewHolder holder, String estado, Paseo paseo) {
         // 4. Estado (Chip)
-        String estado = paseo.getEstado();
         holder.chipEstado.setText(estado != null ? estado : "DESCONOCIDO");
         establecerColorEstado(holder.chipEstado, estado);
 
@@ -49,12 +49,14 @@ import com.mjc.mascotalink.security.CredentialManager;
 import com.mjc.mascotalink.security.EncryptedPreferencesHelper;
 import com.mjc.mascotalink.util.BottomNavManager;
 import com.mjc.mascotalink.util.ImageViewerUtil;
+import com.mjc.mascotalink.util.PerfilCache;
+import com.mjc.mascotalink.network.PresenceStore;
 import com.mjc.mascotalink.network.SocketManager;
-import org.json.JSONObject;
 import android.text.format.DateUtils;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -67,6 +69,7 @@ public class PerfilDuenoActivity extends AppCompatActivity {
     private FirebaseAuth mAuth;
     private FirebaseFirestore db;
     private SocketManager socketManager;
+    private PresenceStore.Suscripcion presenciaPerfil;
 
     // Views
     private Toolbar toolbar;
@@ -165,7 +168,7 @@ public class PerfilDuenoActivity extends AppCompatActivity {
             duenoId = idFromIntent;
         }
 
-        com.mjc.mascotalink.util.UnreadBadgeManager.start(currentUserId);
+        com.mjc.mascotalink.util.UnreadBadgeManager.start(this, currentUserId);
 
         if (bottomNav != null) {
             setupBottomNavigation();
@@ -535,7 +538,7 @@ public class PerfilDuenoActivity extends AppCompatActivity {
                 bottomNavRole = null;
                 bottomNavSelectedItem = 0;
             }
-            com.mjc.mascotalink.util.UnreadBadgeManager.start(currentUserId);
+            com.mjc.mascotalink.util.UnreadBadgeManager.start(this, currentUserId);
             setupBottomNavigation();
             setupTabs(); // Call setupTabs here after isOwnProfile is determined
         }
@@ -555,6 +558,7 @@ public class PerfilDuenoActivity extends AppCompatActivity {
         DocumentReference userDocRef = db.collection("usuarios").document(duenoId);
         duenoListener = userDocRef.addSnapshotListener((usuarioDoc, e) -> {
             if (e != null) return;
+            PerfilCache.getInstance(this).actualizar(usuarioDoc);
             if (usuarioDoc != null && usuarioDoc.exists()) {
                 tvNombre.setText(usuarioDoc.getString("nombre_display"));
                 if (!isDestroyed() && !isFinishing()) {
@@ -786,88 +790,32 @@ public class PerfilDuenoActivity extends AppCompatActivity {
     }
 
     private void setupPresenceListeners() {
-        if (socketManager == null || !socketManager.isConnected()) {
-            Log.w(TAG, "SocketManager no conectado, no se puede configurar presencia");
-            return;
-        }
-
-        // Listen for when dueño connects
-        socketManager.on("user_connected", args -> {
-            try {
-                JSONObject data = (JSONObject) args[0];
-                String userId = data.getString("userId");
-
-                if (userId.equals(duenoId)) {
-                    runOnUiThread(() -> {
-                        badgePerfilEnLinea.setVisibility(View.VISIBLE);
-                    });
-                    Log.d(TAG, " Dueño conectado: " + userId);
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error procesando user_connected", e);
-            }
-        });
-
-        // Listen for when dueño disconnects
-        socketManager.on("user_disconnected", args -> {
-            try {
-                JSONObject data = (JSONObject) args[0];
-                String userId = data.getString("userId");
-
-                if (userId.equals(duenoId)) {
-                    runOnUiThread(() -> {
-                        badgePerfilEnLinea.setVisibility(View.GONE);
-                    });
-                    Log.d(TAG, " Dueño desconectado: " + userId);
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error procesando user_disconnected", e);
-            }
-        });
-
-        // Listen for online users query response
-        socketManager.on("online_users_response", args -> {
-            try {
-                JSONObject data = (JSONObject) args[0];
-                org.json.JSONArray onlineUsers = data.getJSONArray("online");
-
-                boolean isOnline = false;
-                for (int i = 0; i < onlineUsers.length(); i++) {
-                    JSONObject user = onlineUsers.getJSONObject(i);
-                    if (user.getString("userId").equals(duenoId)) {
-                        isOnline = true;
-                        break;
-                    }
-                }
+        if (socketManager == null || presenciaPerfil != null) return;
 
-                final boolean finalIsOnline = isOnline;
-                runOnUiThread(() -> {
-                    if (finalIsOnline) {
-                        badgePerfilEnLinea.setVisibility(View.VISIBLE);
-                    } else {
-                        badgePerfilEnLinea.setVisibility(View.GONE);
-                    }
-                });
-            } catch (Exception e) {
-                Log.e(TAG, "Error procesando online_users_response", e);
-            }
-        });
-
-        // Query initial status and subscribe to presence updates
-        socketManager.getOnlineUsers(new String[]{duenoId});
-        socketManager.subscribePresence(new String[]{duenoId});
+        PresenceStore presencia = socketManager.getPresencia();
+        presenciaPerfil = presencia.suscribir(Collections.singletonList(duenoId),
+                cambios -> mostrarPresencia(cambios.get(duenoId)));
+        mostrarPresencia(presencia.getEstado(duenoId));
         Log.d(TAG, " Presencia configurada para dueño: " + duenoId);
     }
 
+    private void mostrarPresencia(@Nullable PresenceStore.Estado estado) {
+        if (estado == null) return;
+        if (estado.enLinea) {
+            badgePerfilEnLinea.setVisibility(View.VISIBLE);
+        } else {
+            badgePerfilEnLinea.setVisibility(View.GONE);
+        }
+    }
+
     private void cleanupPresenceListeners() {
-        if (socketManager != null && duenoId != null && !duenoId.equals(currentUserId)) {
-            socketManager.off("user_connected");
-            socketManager.off("user_disconnected");
-            socketManager.off("online_users_response");
-            socketManager.unsubscribePresence(new String[]{duenoId});
+        if (presenciaPerfil != null) {
+            presenciaPerfil.cancelar();
+            presenciaPerfil = null;
             Log.d(TAG, " Limpieza de presencia para dueño: " + duenoId);
         }
     }
+    }
 
     private void showSkeleton() {
         if (skeletonLayout != null && scrollViewContent != null) {
@@ -77,11 +77,12 @@ import com.mjc.mascotalink.security.CredentialManager;
 import com.mjc.mascotalink.security.EncryptedPreferencesHelper;
 import com.mjc.mascotalink.util.BottomNavManager;
 import com.mjc.mascotalink.util.ImageViewerUtil;
+import com.mjc.mascotalink.util.PerfilCache;
 import com.mjc.mascota.modelo.Resena;
 import com.mjc.mascota.ui.perfil.ResenaAdapter;
 import com.mjc.mascota.ui.busqueda.BusquedaPaseadoresActivity;
+import com.mjc.mascotalink.network.PresenceStore;
 import com.mjc.mascotalink.network.SocketManager;
-import org.json.JSONObject;
 
 import java.io.IOException;
 import java.text.SimpleDateFormat;
@@ -89,6 +90,7 @@ import java.time.LocalDate;
 import java.time.Period;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -102,6 +104,7 @@ public class PerfilPaseadorActivity extends AppCompatActivity implements OnMapRe
     private FirebaseAuth mAuth;
     private FirebaseFirestore db;
     private SocketManager socketManager;
+    private PresenceStore.Suscripcion presenciaPerfil;
 
     // Views
     private Toolbar toolbar;
@@ -235,10 +238,10 @@ public class PerfilPaseadorActivity extends AppCompatActivity implements OnMapRe
                     bottomNavSelectedItem = R.id.menu_search;
                 }
             }
-            com.mjc.mascotalink.util.UnreadBadgeManager.start(currentUserId);
+            com.mjc.mascotalink.util.UnreadBadgeManager.start(this, currentUserId);
         }
         
-        com.mjc.mascotalink.util.UnreadBadgeManager.start(currentUserId);
+        com.mjc.mascotalink.util.UnreadBadgeManager.start(this, currentUserId);
 
         // Setup Bottom Navigation immediately to prevent flicker
         if (bottomNav != null) {
@@ -604,24 +607,13 @@ public class PerfilPaseadorActivity extends AppCompatActivity implements OnMapRe
     private void cargarAceptaSolicitudes() {
         if (currentUserId == null || switchAceptaSolicitudes == null) return;
 
-        db.collection("usuarios").document(currentUserId).get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists() && switchAceptaSolicitudes != null) {
-                        Boolean aceptaSolicitudes = documentSnapshot.getBoolean("acepta_solicitudes");
-                        // Por defecto es true si no existe el campo
-                        boolean acepta = aceptaSolicitudes == null || aceptaSolicitudes;
-                        switchAceptaSolicitudes.setChecked(acepta);
-                        actualizarVisibilidadBanner(acepta);
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error al cargar acepta_solicitudes", e);
-                    // Por defecto activado
-                    if (switchAceptaSolicitudes != null) {
-                        switchAceptaSolicitudes.setChecked(true);
-                    }
-                    actualizarVisibilidadBanner(true);
-                });
+        PerfilCache.getInstance(this).obtener(currentUserId, perfil -> {
+            if (switchAceptaSolicitudes == null) return;
+            // Por defecto es true si no existe el campo o no se pudo leer
+            boolean acepta = perfil == null || perfil.aceptaSolicitudes == null || perfil.aceptaSolicitudes;
+            switchAceptaSolicitudes.setChecked(acepta);
+            actualizarVisibilidadBanner(acepta);
+        });
     }
 
     private void actualizarAceptaSolicitudes(boolean acepta) {
@@ -633,6 +625,7 @@ public class PerfilPaseadorActivity extends AppCompatActivity implements OnMapRe
         db.collection("usuarios").document(currentUserId)
                 .update(updates)
                 .addOnSuccessListener(aVoid -> {
+                    PerfilCache.getInstance(this).invalidar(currentUserId);
                     String mensaje = acepta ?
                             "Ahora aceptas nuevas solicitudes" :
                             "Pausado: No aceptarás nuevas solicitudes";
@@ -659,23 +652,11 @@ public class PerfilPaseadorActivity extends AppCompatActivity implements OnMapRe
     private void cargarEstadoAceptaSolicitudesParaVisitante() {
         if (paseadorId == null) return;
 
-        db.collection("usuarios").document(paseadorId).get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        Boolean aceptaSolicitudes = documentSnapshot.getBoolean("acepta_solicitudes");
-                        // Por defecto es true si no existe el campo
-                        boolean acepta = aceptaSolicitudes == null || aceptaSolicitudes;
-                        actualizarVisibilidadBanner(acepta);
-                    } else {
-                        // Por defecto ocultar el banner
-                        actualizarVisibilidadBanner(true);
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error al cargar acepta_solicitudes del paseador", e);
-                    // Por defecto ocultar el banner
-                    actualizarVisibilidadBanner(true);
-                });
+        PerfilCache.getInstance(this).obtener(paseadorId, perfil -> {
+            // Por defecto es true si no existe el campo; sin perfil se oculta el banner
+            boolean acepta = perfil == null || perfil.aceptaSolicitudes == null || perfil.aceptaSolicitudes;
+            actualizarVisibilidadBanner(acepta);
+        });
     }
 
     private void setupAuthListener() {
@@ -726,17 +707,12 @@ public class PerfilPaseadorActivity extends AppCompatActivity implements OnMapRe
             setupRoleBasedUI(); 
             return;
         }
-        db.collection("usuarios").document(currentUserId).get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        currentUserRole = documentSnapshot.getString("rol");
-                    }
-                    setupRoleBasedUI();
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error fetching user role", e);
-                    setupRoleBasedUI();
-                });
+        PerfilCache.getInstance(this).obtener(currentUserId, perfil -> {
+            if (perfil != null) {
+                currentUserRole = perfil.rol;
+            }
+            setupRoleBasedUI();
+        });
     }
 
     @Override
@@ -1116,6 +1092,7 @@ public class PerfilPaseadorActivity extends AppCompatActivity implements OnMapRe
         DocumentReference userDocRef = db.collection("usuarios").document(paseadorId);
         usuarioListener = userDocRef.addSnapshotListener((usuarioDoc, e) -> {
             if (e != null) return;
+            PerfilCache.getInstance(this).actualizar(usuarioDoc);
             if (usuarioDoc != null && usuarioDoc.exists()) {
                 tvNombre.setText(usuarioDoc.getString("nombre_display"));
                 if (!isDestroyed() && !isFinishing()) {
@@ -1275,123 +1252,43 @@ public class PerfilPaseadorActivity extends AppCompatActivity implements OnMapRe
     }
 
     private void setupPresenceListeners() {
-        if (socketManager == null || !socketManager.isConnected()) {
-            Log.w(TAG, "SocketManager no conectado, no se puede configurar presencia");
-            return;
-        }
-
-        // Listen for when paseador connects
-        socketManager.on("user_connected", args -> {
-            try {
-                JSONObject data = (JSONObject) args[0];
-                String userId = data.getString("userId");
-
-                if (userId.equals(paseadorId)) {
-                    runOnUiThread(() -> {
-                        badgePerfilEnLinea.setVisibility(View.VISIBLE);
-                    });
-                    Log.d(TAG, " Paseador conectado: " + userId);
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error procesando user_connected", e);
-            }
-        });
-
-        // Listen for when paseador disconnects
-        socketManager.on("user_disconnected", args -> {
-            try {
-                JSONObject data = (JSONObject) args[0];
-                String userId = data.getString("userId");
+        if (socketManager == null || presenciaPerfil != null) return;
 
-                if (userId.equals(paseadorId)) {
-                    runOnUiThread(() -> {
-                        badgePerfilEnLinea.setVisibility(View.GONE);
-                        // Reload from Firestore to get updated ultima_conexion
-                        reloadUltimaConexion();
-                    });
-                    Log.d(TAG, " Paseador desconectado: " + userId);
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error procesando user_disconnected", e);
-            }
-        });
-
-        // Listen for online users query response
-        socketManager.on("online_users_response", args -> {
-            try {
-                JSONObject data = (JSONObject) args[0];
-                org.json.JSONArray onlineUsers = data.getJSONArray("online");
-                org.json.JSONArray offlineUsers = data.getJSONArray("offline");
-
-                boolean isOnline = false;
-                Long lastActivity = null;
-
-                // Check if paseador is online
-                for (int i = 0; i < onlineUsers.length(); i++) {
-                    JSONObject user = onlineUsers.getJSONObject(i);
-                    if (user.getString("userId").equals(paseadorId)) {
-                        isOnline = true;
-                        if (user.has("lastActivity")) {
-                            lastActivity = user.getLong("lastActivity");
-                        }
-                        break;
-                    }
-                }
-
-                // If not online, check offline users for lastActivity
-                if (!isOnline) {
-                    for (int i = 0; i < offlineUsers.length(); i++) {
-                        JSONObject user = offlineUsers.getJSONObject(i);
-                        if (user.getString("userId").equals(paseadorId)) {
-                            if (user.has("lastActivity") && !user.isNull("lastActivity")) {
-                                lastActivity = user.getLong("lastActivity");
-                            }
-                            break;
-                        }
-                    }
-                }
-
-                final boolean finalIsOnline = isOnline;
-                final Long finalLastActivity = lastActivity;
+        PresenceStore presencia = socketManager.getPresencia();
+        presenciaPerfil = presencia.suscribir(Collections.singletonList(paseadorId),
+                cambios -> mostrarPresencia(cambios.get(paseadorId)));
+        mostrarPresencia(presencia.getEstado(paseadorId));
+        Log.d(TAG, " Presencia configurada para paseador: " + paseadorId);
+    }
 
-                runOnUiThread(() -> {
-                    if (finalIsOnline) {
-                        badgePerfilEnLinea.setVisibility(View.VISIBLE);
-                    } else {
-                        badgePerfilEnLinea.setVisibility(View.GONE);
-                        // Update ultima_conexion text with last activity if available
-                        if (finalLastActivity != null) {
-                            String relativeTime = DateUtils.getRelativeTimeSpanString(
-                                finalLastActivity,
-                                System.currentTimeMillis(),
-                                DateUtils.MINUTE_IN_MILLIS
-                            ).toString();
-                            tvUltimaConexion.setText("Activo " + relativeTime.toLowerCase());
-                        } else {
-                            reloadUltimaConexion();
-                        }
-                    }
-                });
-            } catch (Exception e) {
-                Log.e(TAG, "Error procesando online_users_response", e);
+    private void mostrarPresencia(@Nullable PresenceStore.Estado estado) {
+        if (estado == null) return;
+        if (estado.enLinea) {
+            badgePerfilEnLinea.setVisibility(View.VISIBLE);
+        } else {
+            badgePerfilEnLinea.setVisibility(View.GONE);
+            // Última actividad que informó el servidor; si no la conoce, la de Firestore
+            if (estado.ultimaActividad > 0) {
+                String relativeTime = DateUtils.getRelativeTimeSpanString(
+                    estado.ultimaActividad,
+                    System.currentTimeMillis(),
+                    DateUtils.MINUTE_IN_MILLIS
+                ).toString();
+                tvUltimaConexion.setText("Activo " + relativeTime.toLowerCase());
+            } else {
+                reloadUltimaConexion();
             }
-        });
-
-        // Query initial status and subscribe to presence updates
-        socketManager.getOnlineUsers(new String[]{paseadorId});
-        socketManager.subscribePresence(new String[]{paseadorId});
-        Log.d(TAG, " Presencia configurada para paseador: " + paseadorId);
+        }
     }
 
     private void cleanupPresenceListeners() {
-        if (socketManager != null && !isOwnProfile && paseadorId != null) {
-            socketManager.off("user_connected");
-            socketManager.off("user_disconnected");
-            socketManager.off("online_users_response");
-            socketManager.unsubscribePresence(new String[]{paseadorId});
+        if (presenciaPerfil != null) {
+            presenciaPerfil.cancelar();
+            presenciaPerfil = null;
             Log.d(TAG, " Limpieza de presencia para paseador: " + paseadorId);
         }
     }
+    }
 
     private void reloadUltimaConexion() {
         if (paseadorId == null) return;
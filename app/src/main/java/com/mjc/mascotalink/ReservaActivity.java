@@ -1104,7 +1104,7 @@ public class ReservaActivity extends AppCompatActivity {
         }
 
         if (horarioAdapter != null) {
-            horarioAdapter.notifyDataSetChanged();
+            horarioAdapter.notificarCambiosDisponibilidad();
         }
 
         // Mostrar horarios con transparencia mientras validan
@@ -1160,7 +1160,7 @@ public class ReservaActivity extends AppCompatActivity {
                     }
 
                     if (horarioAdapter != null) {
-                        horarioAdapter.notifyDataSetChanged();
+                        horarioAdapter.notificarCambiosDisponibilidad();
                     }
 
                     // Animación fade in después de validar todos los horarios
@@ -1183,7 +1183,7 @@ public class ReservaActivity extends AppCompatActivity {
                         horario.setDisponibilidadEstado("DISPONIBLE");
                     }
                     if (horarioAdapter != null) {
-                        horarioAdapter.notifyDataSetChanged();
+                        horarioAdapter.notificarCambiosDisponibilidad();
                     }
                     rvHorarios.animate().alpha(1f).setDuration(300).start();
                 });
@@ -1195,7 +1195,7 @@ public class ReservaActivity extends AppCompatActivity {
                 }
             }
             if (horarioAdapter != null) {
-                horarioAdapter.notifyDataSetChanged();
+                horarioAdapter.notificarCambiosDisponibilidad();
             }
 
             // Animación fade in
@@ -1330,7 +1330,7 @@ public class ReservaActivity extends AppCompatActivity {
                 }
 
                 if (horarioAdapter != null) {
-                    horarioAdapter.notifyDataSetChanged();
+                    horarioAdapter.notificarCambiosDisponibilidad();
                 }
             })
             .addOnFailureListener(e -> {
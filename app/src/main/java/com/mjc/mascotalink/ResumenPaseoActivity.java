@@ -1,7 +1,6 @@
 package com.mjc.mascotalink;
 
 import android.content.Intent;
-import android.location.Location;
 import android.os.Bundle;
 import android.os.Handler;
 import android.util.Log;
@@ -25,13 +24,14 @@ import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.GeoPoint;
 import com.google.firebase.firestore.Transaction;
+import com.mjc.mascotalink.util.ResumenRuta;
+import com.mjc.mascotalink.util.ResumenRutaCache;
+import com.mjc.mascotalink.util.RutaPaseoParser;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
@@ -296,10 +296,10 @@ public class ResumenPaseoActivity extends AppCompatActivity {
             tvDuracionReal.setText(duracion + " min");
         }
         
-        // 3. Distancia (Calculada desde el array de ubicaciones)
-        Object ubicacionesObj = doc.get("ubicaciones");
-        double distanciaMeters = calcularDistancia(ubicacionesObj);
-        double distanciaKm = distanciaMeters / 1000.0;
+        // 3. Distancia (desde el resumen precalculado, sin recorrer los puntos crudos)
+        ResumenRuta resumen = obtenerResumenRuta(doc);
+        double distanciaMeters = resumen.getDistanciaMetros();
+        double distanciaKm = resumen.getDistanciaKm();
         
         if (distanciaMeters > 0 && distanciaKm < 0.01) { // If non-zero but would round to 0.00 km with two decimal places
             tvDistanciaRecorrida.setText(String.format(Locale.US, "0.01 km")); // Show minimal movement
@@ -321,44 +321,23 @@ public class ResumenPaseoActivity extends AppCompatActivity {
         if (paseadorRef != null) idPaseador = paseadorRef.getId();
     }
 
-    private double calcularDistancia(Object ubicacionesObj) {
-        if (!(ubicacionesObj instanceof List)) {
-            return 0;
+    /**
+     * Resumen de la ruta: caché local → campo resumen_ruta de la reserva → cálculo único
+     * desde la ruta (paseos anteriores al resumen precalculado), que queda en caché.
+     */
+    private ResumenRuta obtenerResumenRuta(DocumentSnapshot doc) {
+        ResumenRuta resumen = ResumenRutaCache.obtener(this, reservaId);
+        if (resumen != null) return resumen;
+
+        resumen = ResumenRuta.fromMap(doc.get(ResumenRuta.CAMPO));
+        if (resumen == null) {
+            Double distanciaMedida = doc.getDouble("distancia_acumulada_metros");
+            resumen = ResumenRuta.calcular(RutaPaseoParser.parsear(doc),
+                    distanciaMedida != null ? distanciaMedida : 0);
+            Log.d(TAG, "📏 Resumen de ruta calculado para paseo sin resumen: " + resumen.getPuntos() + " puntos");
         }
-        List<?> lista = (List<?>) ubicacionesObj;
-        if (lista.size() < 2) return 0;
-
-        double total = 0;
-        double[] prev = null;
-        for (Object item : lista) {
-            double[] current = extraerLatLng(item);
-            if (current == null) continue;
-            if (prev != null) {
-                float[] results = new float[1];
-                Location.distanceBetween(prev[0], prev[1], current[0], current[1], results);
-                // Eliminado filtro de 3m para capturar movimientos pequeños
-                total += results[0];
-            }
-            prev = current;
-        }
-        return total;
-    }
-
-    private double[] extraerLatLng(Object item) {
-        if (item instanceof GeoPoint) {
-            GeoPoint gp = (GeoPoint) item;
-            return new double[]{gp.getLatitude(), gp.getLongitude()};
-        }
-        if (item instanceof Map) {
-            Map<?, ?> map = (Map<?, ?>) item;
-            Object latObj = map.get("lat");
-            Object lngObj = map.get("lng");
-            if (lngObj == null) lngObj = map.get("lon");
-            if (latObj instanceof Number && lngObj instanceof Number) {
-                return new double[]{((Number) latObj).doubleValue(), ((Number) lngObj).doubleValue()};
-            }
-        }
-        return null;
+        ResumenRutaCache.guardar(this, reservaId, resumen);
+        return resumen;
     }
 
     private void checkIfAlreadyRated() {
@@ -13,7 +13,6 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
-import com.google.android.gms.tasks.Task;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
@@ -22,6 +21,8 @@ import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.Query;
 import com.mjc.mascotalink.util.BottomNavManager;
+import com.mjc.mascotalink.util.FirestoreReferencias;
+import com.mjc.mascotalink.util.ResolvedorReferencias;
 import com.mjc.mascotalink.utils.ReservaEstadoValidator;
 
 import java.text.SimpleDateFormat;
@@ -37,6 +38,7 @@ public class SolicitudesActivity extends AppCompatActivity {
     // Firebase
     private FirebaseAuth mAuth;
     private FirebaseFirestore db;
+    private ResolvedorReferencias<DocumentSnapshot> resolvedorReferencias;
     private String currentUserId;
 
     // Network monitoring
@@ -62,6 +64,7 @@ public class SolicitudesActivity extends AppCompatActivity {
         // Inicializar Firebase
         mAuth = FirebaseAuth.getInstance();
         db = FirebaseFirestore.getInstance();
+        resolvedorReferencias = FirestoreReferencias.crearResolvedor(db);
         FirebaseUser currentUser = mAuth.getCurrentUser();
         
         if (currentUser == null) {
@@ -169,6 +172,7 @@ public class SolicitudesActivity extends AppCompatActivity {
 
     private void setupSwipeRefresh() {
         swipeRefresh.setOnRefreshListener(() -> {
+            resolvedorReferencias.invalidar();
             cargarSolicitudes();
         });
         swipeRefresh.setColorSchemeResources(R.color.blue_primary);
@@ -211,7 +215,10 @@ public class SolicitudesActivity extends AppCompatActivity {
             }
 
             List<Paseo> solicitudesTemporales = new ArrayList<>();
-            List<Task<DocumentSnapshot>> tareas = new ArrayList<>();
+            // Ruta del dueño y de la mascota de cada solicitud (null si no hace falta leerla)
+            List<String> rutasDueno = new ArrayList<>();
+            List<String> rutasMascota = new ArrayList<>();
+            java.util.Set<String> rutas = new java.util.LinkedHashSet<>();
 
             for (DocumentSnapshot doc : querySnapshot.getDocuments()) {
                 // Convertir DocumentSnapshot a objeto Paseo
@@ -239,46 +246,48 @@ public class SolicitudesActivity extends AppCompatActivity {
                 solicitudesTemporales.add(solicitud);
 
                 // Si tenemos datos desnormalizados, evitar consulta adicional del dueño
+                String rutaDueno = null;
                 if (duenoNombreDesnormalizado != null && !duenoNombreDesnormalizado.isEmpty()) {
                     solicitud.setDuenoNombre(duenoNombreDesnormalizado);
-                    tareas.add(com.google.android.gms.tasks.Tasks.forResult(null));
                     Log.d(TAG, "✅ Usando datos desnormalizados del dueño para reserva " + doc.getId());
                 } else if (duenoRef != null) {
-                    tareas.add(duenoRef.get());
+                    rutaDueno = duenoRef.getPath();
                     Log.d(TAG, "⚠️ Consultando dueño para reserva " + doc.getId());
-                } else {
-                    tareas.add(com.google.android.gms.tasks.Tasks.forResult(null));
                 }
 
                 // Manejar mascotas
+                String rutaMascota = null;
                 if (mascotasNombres != null && !mascotasNombres.isEmpty()) {
                     solicitud.setMascotasNombres(mascotasNombres);
                     solicitud.setNumeroMascotas(mascotasNombres.size());
                     if (mascotasFotos != null && !mascotasFotos.isEmpty()) {
                         solicitud.setMascotasFotos(mascotasFotos);
                     }
-                    tareas.add(com.google.android.gms.tasks.Tasks.forResult(null));
                 } else if (idMascota != null && !idMascota.isEmpty() && duenoRef != null) {
-                    tareas.add(db.collection("duenos").document(duenoRef.getId()).collection("mascotas").document(idMascota).get());
-                } else {
-                    tareas.add(com.google.android.gms.tasks.Tasks.forResult(null));
+                    rutaMascota = FirestoreReferencias.rutaMascota(duenoRef.getId(), idMascota);
                 }
+
+                rutasDueno.add(rutaDueno);
+                rutasMascota.add(rutaMascota);
+                if (rutaDueno != null) rutas.add(rutaDueno);
+                if (rutaMascota != null) rutas.add(rutaMascota);
             }
 
-            if (tareas.isEmpty()) {
+            if (solicitudesTemporales.isEmpty()) {
                 finalizarCarga();
                 return;
             }
 
-            com.google.android.gms.tasks.Tasks.whenAllSuccess(tareas).addOnSuccessListener(results -> {
+            // Un solo lote por colección; lo ya resuelto en snapshots anteriores no se vuelve a leer
+            resolvedorReferencias.resolver(rutas, detalles -> {
                 if (isDestroyed() || isFinishing()) return;
 
                 List<Paseo> nuevasSolicitudes = new ArrayList<>();
-                int resultIndex = 0;
 
-                for (Paseo solicitud : solicitudesTemporales) {
-                    DocumentSnapshot duenoDoc = (DocumentSnapshot) results.get(resultIndex++);
-                    DocumentSnapshot mascotaDoc = (DocumentSnapshot) results.get(resultIndex++);
+                for (int i = 0; i < solicitudesTemporales.size(); i++) {
+                    Paseo solicitud = solicitudesTemporales.get(i);
+                    DocumentSnapshot duenoDoc = rutasDueno.get(i) != null ? detalles.get(rutasDueno.get(i)) : null;
+                    DocumentSnapshot mascotaDoc = rutasMascota.get(i) != null ? detalles.get(rutasMascota.get(i)) : null;
 
                     // Setear datos del dueño solo si no están ya asignados
                     if (solicitud.getDuenoNombre() == null || solicitud.getDuenoNombre().isEmpty()) {
@@ -318,10 +327,6 @@ public class SolicitudesActivity extends AppCompatActivity {
                 solicitudesList.clear();
                 solicitudesList.addAll(nuevasSolicitudes);
                 actualizarYFinalizar();
-
-            }).addOnFailureListener(ex -> {
-                Log.e(TAG, "Error cargando detalles relacionados", ex);
-                finalizarCarga();
             });
         });
     }
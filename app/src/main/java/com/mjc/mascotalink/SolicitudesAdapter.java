@@ -8,18 +8,17 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
-import androidx.recyclerview.widget.DiffUtil;
 
 import com.bumptech.glide.Glide;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.imageview.ShapeableImageView;
 import com.mjc.mascotalink.SolicitudesActivity.Solicitud;
+import com.mjc.mascotalink.util.ListaDiferida;
 import com.mjc.mascotalink.utils.SolicitudDiffCallback;
 import com.mjc.mascotalink.MyApplication;
 
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -27,7 +26,7 @@ import java.util.Locale;
 public class SolicitudesAdapter extends RecyclerView.Adapter<SolicitudesAdapter.SolicitudViewHolder> {
 
     private final Context context;
-    private final List<Solicitud> solicitudesList;
+    private final ListaDiferida<Solicitud> solicitudesList;
     private final OnSolicitudClickListener listener;
 
     public interface OnSolicitudClickListener {
@@ -37,15 +36,14 @@ public class SolicitudesAdapter extends RecyclerView.Adapter<SolicitudesAdapter.
 
     public SolicitudesAdapter(Context context, List<Solicitud> solicitudesList, OnSolicitudClickListener listener) {
         this.context = context;
-        this.solicitudesList = new ArrayList<>(solicitudesList); // Copy for DiffUtil
+        this.solicitudesList = new ListaDiferida<>(this, SolicitudDiffCallback.ITEM);
+        this.solicitudesList.inicializar(solicitudesList);
         this.listener = listener;
     }
 
+    /** Reemplaza la lista; el diff se calcula en segundo plano. */
     public void updateList(List<Solicitud> newList) {
-        DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(new SolicitudDiffCallback(this.solicitudesList, newList));
-        this.solicitudesList.clear();
-        this.solicitudesList.addAll(newList);
-        diffResult.dispatchUpdatesTo(this);
+        solicitudesList.enviar(newList);
     }
 
     @NonNull
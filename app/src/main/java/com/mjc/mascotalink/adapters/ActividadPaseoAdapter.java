@@ -7,12 +7,14 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
 import androidx.recyclerview.widget.AsyncListDiffer;
 import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.mjc.mascotalink.R;
 import com.mjc.mascotalink.modelo.PaseoActividad;
+import com.mjc.mascotalink.util.ListaDiferida;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -44,7 +46,7 @@ public class ActividadPaseoAdapter extends RecyclerView.Adapter<ActividadPaseoAd
     };
 
     public ActividadPaseoAdapter() {
-        this.differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+        this.differ = new AsyncListDiffer<>(new AdapterListUpdateCallback(this), ListaDiferida.config(DIFF_CALLBACK));
     }
 
     public void setEventos(List<PaseoActividad> eventos) {
@@ -6,6 +6,7 @@ import android.view.View;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
 import androidx.recyclerview.widget.AsyncListDiffer;
 import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
@@ -13,6 +14,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
 import com.mjc.mascotalink.R;
 import com.mjc.mascotalink.MyApplication;
+import com.mjc.mascotalink.util.ListaDiferida;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -52,7 +54,7 @@ public class FotosPaseoAdapter extends RecyclerView.Adapter<FotosPaseoAdapter.Fo
     public FotosPaseoAdapter(@NonNull Context context,
                              @NonNull OnFotoInteractionListener listener) {
         this.context = context;
-        this.differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+        this.differ = new AsyncListDiffer<>(new AdapterListUpdateCallback(this), ListaDiferida.config(DIFF_CALLBACK));
         this.listener = listener;
     }
 
@@ -0,0 +1,100 @@
+package com.mjc.mascotalink.network;
+
+import com.mjc.mascotalink.util.TrackBuffer;
+import com.mjc.mascotalink.util.TrackChunkCodec;
+
+/**
+ * Agrupa los fixes del paseador en frames binarios para el evento {@code location_frame}.
+ *
+ * Cada frame es un chunk {@link TrackChunkCodec} v2: seq del primer fix, punto base y
+ * deltas varint para el resto. Entre dos envíos (WEBSOCKET_SEND_INTERVAL_MS) se acumulan
+ * todos los fixes, así el dueño recibe la ruta completa con la misma cantidad de mensajes
+ * que antes mandaba un solo punto.
+ *
+ * No es thread-safe; se usa desde el hilo de LocationService.
+ */
+public class LocationFrameBatcher {
+
+    // Con el intervalo lento (30s) y fixes cada ~3s sobran; si se llena se descartan los más viejos
+    public static final int MAX_FIXES_POR_FRAME = 32;
+
+    private final TrackBuffer pendientes = new TrackBuffer(MAX_FIXES_POR_FRAME);
+    private long siguienteSeq = 0;
+
+    private long framesEnviados = 0;
+    private long fixesEnviados = 0;
+    private long bytesEnviados = 0;
+
+    public void agregar(double lat, double lng, float accuracy, float speed, long tiempoMs) {
+        if (pendientes.size() == pendientes.capacity()) {
+            pendientes.removeFirst(1);
+            siguienteSeq++; // El seq sigue contando los fixes descartados
+        }
+        pendientes.add(lat, lng, accuracy, speed, tiempoMs);
+    }
+
+    /**
+     * Codifica lo pendiente en un frame y lo vacía.
+     *
+     * @return el frame, o null si no hay fixes pendientes
+     */
+    public byte[] tomarFrame() {
+        int cantidad = pendientes.size();
+        if (cantidad == 0) return null;
+
+        byte[] frame = TrackChunkCodec.encode(pendientes, 0, cantidad, siguienteSeq);
+        siguienteSeq += cantidad;
+        pendientes.clear();
+
+        framesEnviados++;
+        fixesEnviados += cantidad;
+        bytesEnviados += frame.length;
+        return frame;
+    }
+
+    /**
+     * Descarta lo pendiente (nadie está mirando el mapa). El seq no retrocede.
+     */
+    public void descartar() {
+        siguienteSeq += pendientes.size();
+        pendientes.clear();
+    }
+
+    /**
+     * Nuevo paseo: seq y métricas desde cero.
+     */
+    public void reset() {
+        pendientes.clear();
+        siguienteSeq = 0;
+        framesEnviados = 0;
+        fixesEnviados = 0;
+        bytesEnviados = 0;
+    }
+
+    public boolean isEmpty() {
+        return pendientes.isEmpty();
+    }
+
+    public int getPendientes() {
+        return pendientes.size();
+    }
+
+    public long getFramesEnviados() {
+        return framesEnviados;
+    }
+
+    public long getFixesEnviados() {
+        return fixesEnviados;
+    }
+
+    public long getBytesEnviados() {
+        return bytesEnviados;
+    }
+
+    /**
+     * Bytes de payload por fix enviado (sin contar el paseoId ni el framing de Socket.IO).
+     */
+    public double getBytesPorFix() {
+        return fixesEnviados == 0 ? 0 : bytesEnviados / (double) fixesEnviados;
+    }
+}
@@ -0,0 +1,153 @@
+package com.mjc.mascotalink.network;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Presencia (en línea / última actividad) de los usuarios que alguna pantalla está mostrando.
+ *
+ * - Las pantallas se suscriben a los ids que tienen en pantalla; el servidor solo recibe
+ *   subscribe_presence cuando un id gana su primer interesado y unsubscribe_presence
+ *   cuando pierde el último.
+ * - Los frames "presence_batch" se aplican con {@link #aplicar}: cada pantalla recibe solo
+ *   los ids suyos que cambiaron, de una vez, para actualizar esas filas.
+ * - Tras reconectar, {@link #resuscribir} vuelve a pedir todos los ids con interés.
+ *
+ * No es thread-safe: se usa desde el hilo principal.
+ */
+public class PresenceStore {
+
+    public static final class Estado {
+        public final boolean enLinea;
+        /** ms de la última conexión/desconexión; 0 si el servidor no la conoce. */
+        public final long ultimaActividad;
+
+        public Estado(boolean enLinea, long ultimaActividad) {
+            this.enLinea = enLinea;
+            this.ultimaActividad = ultimaActividad;
+        }
+    }
+
+    /** Envío de (de)suscripciones al servidor. */
+    public interface Canal {
+        void suscribir(List<String> userIds);
+
+        void desuscribir(List<String> userIds);
+    }
+
+    public interface Listener {
+        /** @param cambios solo los ids de la suscripción cuyo estado cambió */
+        void onPresencia(@NonNull Map<String, Estado> cambios);
+    }
+
+    /** Interés de una pantalla; cancelar es idempotente. */
+    public final class Suscripcion {
+        private final Set<String> userIds;
+        private final Listener listener;
+        private boolean activa = true;
+
+        private Suscripcion(Set<String> userIds, Listener listener) {
+            this.userIds = userIds;
+            this.listener = listener;
+        }
+
+        public void cancelar() {
+            if (!activa) return;
+            activa = false;
+            suscripciones.remove(this);
+            List<String> sinInteres = new ArrayList<>();
+            for (String userId : userIds) {
+                Integer cuenta = interes.get(userId);
+                if (cuenta == null) continue;
+                if (cuenta > 1) {
+                    interes.put(userId, cuenta - 1);
+                } else {
+                    interes.remove(userId);
+                    estados.remove(userId);
+                    sinInteres.add(userId);
+                }
+            }
+            if (!sinInteres.isEmpty()) canal.desuscribir(sinInteres);
+        }
+    }
+
+    private final Canal canal;
+    private final List<Suscripcion> suscripciones = new ArrayList<>();
+    private final Map<String, Integer> interes = new HashMap<>();
+    private final Map<String, Estado> estados = new HashMap<>();
+
+    public PresenceStore(Canal canal) {
+        this.canal = canal;
+    }
+
+    /**
+     * Empieza a seguir {@code userIds}. El estado que ya se conoce está en {@link #getEstado};
+     * el del servidor llega después por el listener.
+     */
+    public Suscripcion suscribir(@NonNull Collection<String> userIds, @NonNull Listener listener) {
+        Set<String> ids = new LinkedHashSet<>(userIds);
+        ids.remove(null);
+        List<String> nuevos = new ArrayList<>();
+        for (String userId : ids) {
+            Integer cuenta = interes.get(userId);
+            interes.put(userId, cuenta == null ? 1 : cuenta + 1);
+            if (cuenta == null) nuevos.add(userId);
+        }
+        Suscripcion suscripcion = new Suscripcion(ids, listener);
+        suscripciones.add(suscripcion);
+        if (!nuevos.isEmpty()) canal.suscribir(nuevos);
+        return suscripcion;
+    }
+
+    /** Estado conocido del usuario; null si todavía no llegó. */
+    @Nullable
+    public Estado getEstado(String userId) {
+        return estados.get(userId);
+    }
+
+    /** Aplica un frame del servidor; los ids sin interés se ignoran. */
+    public void aplicar(@NonNull Map<String, Estado> recibidos) {
+        Map<String, Estado> cambios = new HashMap<>();
+        for (Map.Entry<String, Estado> entry : recibidos.entrySet()) {
+            String userId = entry.getKey();
+            if (!interes.containsKey(userId)) continue;
+            Estado anterior = estados.get(userId);
+            Estado nuevo = entry.getValue();
+            if (anterior != null && anterior.enLinea == nuevo.enLinea
+                    && anterior.ultimaActividad == nuevo.ultimaActividad) continue;
+            estados.put(userId, nuevo);
+            cambios.put(userId, nuevo);
+        }
+        if (cambios.isEmpty()) return;
+
+        for (Suscripcion suscripcion : new ArrayList<>(suscripciones)) {
+            Map<String, Estado> propios = null;
+            for (Map.Entry<String, Estado> cambio : cambios.entrySet()) {
+                if (!suscripcion.userIds.contains(cambio.getKey())) continue;
+                if (propios == null) propios = new HashMap<>();
+                propios.put(cambio.getKey(), cambio.getValue());
+            }
+            if (propios != null && suscripcion.activa) {
+                suscripcion.listener.onPresencia(Collections.unmodifiableMap(propios));
+            }
+        }
+    }
+
+    /** Tras reconectar: el servidor perdió las suscripciones de la conexión anterior. */
+    public void resuscribir() {
+        if (!interes.isEmpty()) canal.suscribir(new ArrayList<>(interes.keySet()));
+    }
+
+    public int getUsuariosSeguidos() {
+        return interes.size();
+    }
+}
@@ -0,0 +1,213 @@
+package com.mjc.mascotalink.network;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Reparte los eventos del socket entre varias pantallas a la vez.
+ *
+ * - Por cada nombre de evento hay un solo listener en el socket, sin importar cuántos
+ *   observadores tenga; se quita cuando se cancela el último.
+ * - Los argumentos crudos se decodifican a objetos inmutables en el executor de
+ *   decodificación (un hilo propio, así el orden de llegada se mantiene).
+ * - Los eventos decodificados esperan en una sola fila y se entregan en el executor
+ *   principal, en el orden en que llegaron, en una pasada por tanda.
+ * - Contrapresión por tipo: {@link Entrega#COLA} entrega todos (mensajes);
+ *   {@link Entrega#ULTIMO} reemplaza al pendiente del mismo tipo (ubicaciones).
+ *
+ * suscribir / cancelar se llaman desde el hilo principal; los receptores, desde cualquiera.
+ */
+public class SocketEventBus {
+
+    private static final String TAG = "SocketEventBus";
+
+    public enum Entrega {
+        /** Se entregan todos los eventos, en orden. */
+        COLA,
+        /** Si el anterior todavía no se entregó, se descarta: solo importa el último. */
+        ULTIMO
+    }
+
+    /** Convierte los argumentos del socket en el evento; null descarta el evento. */
+    public interface Decodificador<T> {
+        @Nullable
+        T decodificar(@NonNull Object[] args) throws Exception;
+    }
+
+    public interface Observador<T> {
+        void onEvento(@NonNull T evento);
+    }
+
+    /** Recibe los argumentos crudos de un evento (desde el hilo del socket). */
+    public interface Receptor {
+        void recibir(Object[] args);
+    }
+
+    /** Registro en el socket: como mucho un receptor por evento. */
+    public interface Enlace {
+        void escuchar(@NonNull String evento, @NonNull Receptor receptor);
+
+        void dejar(@NonNull String evento);
+    }
+
+    /** Evento del socket con su decodificador y su política de entrega. */
+    public static final class Tipo<T> {
+        final String evento;
+        final Decodificador<T> decodificador;
+        final Entrega entrega;
+
+        public Tipo(@NonNull String evento, @NonNull Entrega entrega, @NonNull Decodificador<T> decodificador) {
+            this.evento = evento;
+            this.entrega = entrega;
+            this.decodificador = decodificador;
+        }
+
+        @NonNull
+        public String getEvento() {
+            return evento;
+        }
+    }
+
+    /** Interés de un observador; cancelar es idempotente. */
+    public final class Suscripcion {
+        private final Canal<?> canal;
+        private final Observador<?> observador;
+        private boolean activa = true;
+
+        private Suscripcion(Canal<?> canal, Observador<?> observador) {
+            this.canal = canal;
+            this.observador = observador;
+        }
+
+        public void cancelar() {
+            if (!activa) return;
+            activa = false;
+            canal.observadores.remove(this);
+            if (canal.observadores.isEmpty() && canales.get(canal.tipo.evento) == canal) {
+                canales.remove(canal.tipo.evento);
+                enlace.dejar(canal.tipo.evento);
+            }
+        }
+    }
+
+    private final class Canal<T> implements Receptor {
+        final Tipo<T> tipo;
+        final List<Suscripcion> observadores = new ArrayList<>();
+
+        Canal(Tipo<T> tipo) {
+            this.tipo = tipo;
+        }
+
+        @Override
+        public void recibir(Object[] args) {
+            decodificacion.execute(() -> {
+                T evento;
+                try {
+                    evento = tipo.decodificador.decodificar(args != null ? args : new Object[0]);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error decodificando " + tipo.evento, e);
+                    return;
+                }
+                if (evento != null) encolar(new Pendiente(this, evento));
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        void entregar(Object evento) {
+            for (Suscripcion suscripcion : new ArrayList<>(observadores)) {
+                if (suscripcion.activa) ((Observador<T>) suscripcion.observador).onEvento((T) evento);
+            }
+        }
+    }
+
+    private static final class Pendiente {
+        final Canal<?> canal;
+        final Object evento;
+        boolean descartado;
+
+        Pendiente(Canal<?> canal, Object evento) {
+            this.canal = canal;
+            this.evento = evento;
+        }
+    }
+
+    private final Enlace enlace;
+    private final Executor decodificacion;
+    private final Executor principal;
+
+    // ===== Solo en el hilo principal =====
+    private final Map<String, Canal<?>> canales = new HashMap<>();
+
+    // ===== Compartido con el hilo de decodificación (bajo lock) =====
+    private final Object lock = new Object();
+    private final ArrayDeque<Pendiente> pendientes = new ArrayDeque<>();
+    private final Map<Canal<?>, Pendiente> ultimos = new HashMap<>();
+    private boolean entregaProgramada;
+
+    public SocketEventBus(@NonNull Enlace enlace, @NonNull Executor decodificacion, @NonNull Executor principal) {
+        this.enlace = enlace;
+        this.decodificacion = decodificacion;
+        this.principal = principal;
+    }
+
+    /**
+     * Agrega un observador de {@code tipo}. Todos los observadores de un mismo evento deben
+     * usar el mismo {@link Tipo} (las constantes de {@link SocketEvents}).
+     */
+    @NonNull
+    public <T> Suscripcion suscribir(@NonNull Tipo<T> tipo, @NonNull Observador<T> observador) {
+        Canal<?> canal = canales.get(tipo.evento);
+        if (canal == null) {
+            canal = new Canal<>(tipo);
+            canales.put(tipo.evento, canal);
+            enlace.escuchar(tipo.evento, canal);
+        } else if (canal.tipo != tipo) {
+            throw new IllegalArgumentException("Otro Tipo ya decodifica el evento " + tipo.evento);
+        }
+        Suscripcion suscripcion = new Suscripcion(canal, observador);
+        canal.observadores.add(suscripcion);
+        return suscripcion;
+    }
+
+    public int getObservadores(@NonNull String evento) {
+        Canal<?> canal = canales.get(evento);
+        return canal != null ? canal.observadores.size() : 0;
+    }
+
+    // ===== INTERNOS =====
+
+    private void encolar(Pendiente pendiente) {
+        synchronized (lock) {
+            if (pendiente.canal.tipo.entrega == Entrega.ULTIMO) {
+                Pendiente anterior = ultimos.put(pendiente.canal, pendiente);
+                if (anterior != null) anterior.descartado = true;
+            }
+            pendientes.add(pendiente);
+            if (entregaProgramada) return;
+            entregaProgramada = true;
+        }
+        principal.execute(this::entregarPendientes);
+    }
+
+    private void entregarPendientes() {
+        List<Pendiente> tanda;
+        synchronized (lock) {
+            tanda = new ArrayList<>(pendientes);
+            pendientes.clear();
+            ultimos.clear();
+            entregaProgramada = false;
+        }
+        for (Pendiente pendiente : tanda) {
+            if (!pendiente.descartado) pendiente.canal.entregar(pendiente.evento);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.mjc.mascotalink.network;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mjc.mascota.utils.FirestoreConstants;
+import com.mjc.mascotalink.modelo.Mensaje;
+import com.mjc.mascotalink.util.TrackBuffer;
+import com.mjc.mascotalink.util.TrackChunkCodec;
+
+import org.json.JSONObject;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Eventos del socket que escuchan las pantallas, ya decodificados (inmutables).
+ *
+ * Cada constante es el {@link SocketEventBus.Tipo} que hay que pasar a
+ * {@link SocketManager#observar}: nombre del evento, cómo se decodifica (en el hilo de
+ * eventos, no en el del socket ni en el principal) y su contrapresión.
+ *
+ * La presencia no pasa por aquí: llega agrupada en "presence_batch" a {@link PresenceStore}.
+ */
+public final class SocketEvents {
+
+    private SocketEvents() {}
+
+    // ===== TIPOS =====
+
+    public static final SocketEventBus.Tipo<MensajeNuevo> NUEVO_MENSAJE = new SocketEventBus.Tipo<>(
+            "new_message", SocketEventBus.Entrega.COLA, args -> {
+                JSONObject data = json(args);
+                return data != null ? MensajeNuevo.desde(data) : null;
+            });
+
+    public static final SocketEventBus.Tipo<MensajeLeido> MENSAJE_LEIDO = new SocketEventBus.Tipo<>(
+            "message_read", SocketEventBus.Entrega.COLA, args -> {
+                JSONObject data = json(args);
+                return data != null ? new MensajeLeido(data.getString("messageId"), data.optString("readBy", null)) : null;
+            });
+
+    // Escribiendo / dejó de escribir van por la misma fila: se entregan en el orden real
+    public static final SocketEventBus.Tipo<Escribiendo> ESCRIBIENDO = new SocketEventBus.Tipo<>(
+            "user_typing", SocketEventBus.Entrega.COLA, args -> Escribiendo.desde(json(args), true));
+
+    public static final SocketEventBus.Tipo<Escribiendo> DEJO_DE_ESCRIBIR = new SocketEventBus.Tipo<>(
+            "user_stop_typing", SocketEventBus.Entrega.COLA, args -> Escribiendo.desde(json(args), false));
+
+    public static final SocketEventBus.Tipo<PaseoUnido> PASEO_UNIDO = new SocketEventBus.Tipo<>(
+            "joined_paseo", SocketEventBus.Entrega.COLA, args -> {
+                JSONObject data = json(args);
+                return data != null ? new PaseoUnido(data.getString("paseoId")) : null;
+            });
+
+    public static final SocketEventBus.Tipo<EstadoPaseo> ESTADO_PASEO = new SocketEventBus.Tipo<>(
+            "paseo_estado_change", SocketEventBus.Entrega.COLA, args -> {
+                JSONObject data = json(args);
+                return data != null
+                        ? new EstadoPaseo(data.getString("paseoId"), data.getString("nuevoEstado"))
+                        : null;
+            });
+
+    /** Un solo punto (paseadores con versiones anteriores): solo importa el más reciente. */
+    public static final SocketEventBus.Tipo<Ubicacion> UBICACION = new SocketEventBus.Tipo<>(
+            "update_location", SocketEventBus.Entrega.ULTIMO, args -> {
+                JSONObject data = json(args);
+                return data != null ? Ubicacion.desde(data) : null;
+            });
+
+    /** Frames binarios (seq + base + deltas): cada uno trae fixes distintos, no se descartan. */
+    public static final SocketEventBus.Tipo<FrameUbicacion> FRAME_UBICACION = new SocketEventBus.Tipo<>(
+            "location_frame", SocketEventBus.Entrega.COLA, args -> {
+                if (args.length < 2 || !(args[1] instanceof byte[])) return null;
+                byte[] frame = (byte[]) args[1];
+                TrackBuffer fixes = TrackBuffer.growable(LocationFrameBatcher.MAX_FIXES_POR_FRAME);
+                TrackChunkCodec.decode(frame, fixes);
+                return fixes.isEmpty() ? null : new FrameUbicacion(TrackChunkCodec.firstSeq(frame), fixes);
+            });
+
+    // ===== EVENTOS =====
+
+    public static final class MensajeNuevo {
+        public final String id;
+        public final String idRemitente;
+        public final String idDestinatario;
+        public final String texto;
+        public final String tipo;
+        public final boolean leido;
+        public final boolean entregado;
+        /** ms del servidor; la hora local de recepción si no vino o no se pudo leer. */
+        public final long timestamp;
+        @Nullable public final String imagenUrl;
+        @Nullable public final Double latitud;
+        @Nullable public final Double longitud;
+
+        private MensajeNuevo(JSONObject data) {
+            id = data.optString(FirestoreConstants.FIELD_ID, "");
+            idRemitente = data.optString(FirestoreConstants.FIELD_ID_REMITENTE, "");
+            idDestinatario = data.optString(FirestoreConstants.FIELD_ID_DESTINATARIO, "");
+            texto = data.optString(FirestoreConstants.FIELD_TEXTO, "");
+            tipo = data.optString(FirestoreConstants.FIELD_TIPO, FirestoreConstants.MESSAGE_TYPE_TEXTO);
+            leido = data.optBoolean(FirestoreConstants.FIELD_LEIDO, false);
+            entregado = data.optBoolean(FirestoreConstants.FIELD_ENTREGADO, true);
+            timestamp = leerFechaIso(data.optString(FirestoreConstants.FIELD_TIMESTAMP, ""));
+            imagenUrl = data.has(FirestoreConstants.FIELD_IMAGEN_URL)
+                    ? data.optString(FirestoreConstants.FIELD_IMAGEN_URL) : null;
+            boolean conUbicacion = data.has(FirestoreConstants.FIELD_LATITUD)
+                    && data.has(FirestoreConstants.FIELD_LONGITUD);
+            latitud = conUbicacion ? data.optDouble(FirestoreConstants.FIELD_LATITUD) : null;
+            longitud = conUbicacion ? data.optDouble(FirestoreConstants.FIELD_LONGITUD) : null;
+        }
+
+        static MensajeNuevo desde(JSONObject data) {
+            return new MensajeNuevo(data);
+        }
+
+        /** Modelo del adapter; una instancia nueva en cada llamada. */
+        @NonNull
+        public Mensaje aMensaje() {
+            Mensaje mensaje = new Mensaje();
+            mensaje.setId(id);
+            mensaje.setIdRemitente(idRemitente);
+            mensaje.setIdDestinatario(idDestinatario);
+            mensaje.setTexto(texto);
+            mensaje.setTipo(tipo);
+            mensaje.setLeido(leido);
+            mensaje.setEntregado(entregado);
+            mensaje.setTimestamp(new Date(timestamp));
+            if (imagenUrl != null) mensaje.setImagenUrl(imagenUrl);
+            if (latitud != null && longitud != null) {
+                mensaje.setLatitud(latitud);
+                mensaje.setLongitud(longitud);
+            }
+            return mensaje;
+        }
+    }
+
+    public static final class MensajeLeido {
+        public final String messageId;
+        @Nullable public final String leidoPor;
+
+        MensajeLeido(String messageId, @Nullable String leidoPor) {
+            this.messageId = messageId;
+            this.leidoPor = leidoPor;
+        }
+    }
+
+    public static final class Escribiendo {
+        public final String userId;
+        public final boolean escribiendo;
+
+        Escribiendo(String userId, boolean escribiendo) {
+            this.userId = userId;
+            this.escribiendo = escribiendo;
+        }
+
+        @Nullable
+        static Escribiendo desde(@Nullable JSONObject data, boolean escribiendo) throws Exception {
+            return data != null ? new Escribiendo(data.getString("userId"), escribiendo) : null;
+        }
+    }
+
+    public static final class PaseoUnido {
+        public final String paseoId;
+
+        PaseoUnido(String paseoId) {
+            this.paseoId = paseoId;
+        }
+    }
+
+    public static final class EstadoPaseo {
+        public final String paseoId;
+        public final String nuevoEstado;
+
+        EstadoPaseo(String paseoId, String nuevoEstado) {
+            this.paseoId = paseoId;
+            this.nuevoEstado = nuevoEstado;
+        }
+    }
+
+    public static final class Ubicacion {
+        public final double latitud;
+        public final double longitud;
+        public final float accuracy;
+        public final long timestamp;
+
+        Ubicacion(double latitud, double longitud, float accuracy, long timestamp) {
+            this.latitud = latitud;
+            this.longitud = longitud;
+            this.accuracy = accuracy;
+            this.timestamp = timestamp;
+        }
+
+        /** Acepta el formato comprimido (lat/lng/acc/ts) y el anterior (latitud/longitud/...). */
+        static Ubicacion desde(JSONObject data) throws Exception {
+            double latitud = data.has("lat") ? data.getDouble("lat") : data.getDouble("latitud");
+            double longitud = data.has("lng") ? data.getDouble("lng") : data.getDouble("longitud");
+            double accuracy = data.has("acc") ? data.optDouble("acc", 0) : data.optDouble("accuracy", 0);
+            long timestamp = data.has("ts") ? data.optLong("ts", System.currentTimeMillis())
+                    : data.optLong("timestamp", System.currentTimeMillis());
+            return new Ubicacion(latitud, longitud, (float) accuracy, timestamp);
+        }
+
+        /** Como buffer de un fix, para el mismo camino que los frames. */
+        @NonNull
+        public TrackBuffer aTrackBuffer() {
+            TrackBuffer fix = new TrackBuffer(1);
+            fix.add(latitud, longitud, accuracy, 0f, timestamp);
+            return fix;
+        }
+    }
+
+    public static final class FrameUbicacion {
+        public final long seq;
+        /** Ya decodificados; nadie más escribe en este buffer. */
+        public final TrackBuffer fixes;
+
+        FrameUbicacion(long seq, TrackBuffer fixes) {
+            this.seq = seq;
+            this.fixes = fixes;
+        }
+    }
+
+    // ===== DECODIFICACIÓN =====
+
+    @Nullable
+    private static JSONObject json(Object[] args) {
+        return args.length > 0 && args[0] instanceof JSONObject ? (JSONObject) args[0] : null;
+    }
+
+    /** ISO 8601 de toISOString() (UTC), con o sin milisegundos. */
+    private static long leerFechaIso(String texto) {
+        if (texto.isEmpty()) return System.currentTimeMillis();
+        for (String patron : new String[]{"yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", "yyyy-MM-dd'T'HH:mm:ss"}) {
+            SimpleDateFormat formato = new SimpleDateFormat(patron, Locale.US);
+            formato.setTimeZone(TimeZone.getTimeZone("UTC"));
+            try {
+                Date fecha = formato.parse(texto);
+                if (fecha != null) return fecha.getTime();
+            } catch (ParseException ignored) {
+                // probar el siguiente formato
+            }
+        }
+        return System.currentTimeMillis();
+    }
+}
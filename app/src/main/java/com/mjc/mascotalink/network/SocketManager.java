@@ -5,10 +5,13 @@ import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.Timestamp;
-import com.google.firebase.firestore.FirebaseFirestore;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -18,6 +21,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import io.socket.client.IO;
 import io.socket.client.Socket;
@@ -32,6 +37,8 @@ import io.socket.emitter.Emitter;
  * - Heartbeat inteligente (solo cuando app visible)
  * - Offline queue para mensajes
  * - Lazy reconnect (no reconectar si app en background)
+ * - Varios listeners por evento; las pantallas usan {@link #observar} (decodifica fuera
+ *   del hilo principal y entrega en él)
  */
 public class SocketManager {
     private static final String TAG = "SocketManager";
@@ -46,6 +53,12 @@ public class SocketManager {
     private static final long HEARTBEAT_INTERVAL = 30000; // 30s
     private static final long BACKGROUND_RECONNECT_THRESHOLD = 5 * 60 * 1000; // 5 min
 
+    private static final Executor EVENTOS_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread hilo = new Thread(r, "socket-eventos");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
     private static SocketManager instance;
     private Socket socket;
     private Context context;
@@ -54,9 +67,25 @@ public class SocketManager {
     private String currentPaseoId = null;
 
     // Callbacks registrados
-    private Map<String, Emitter.Listener> eventListeners = new HashMap<>();
+    private final Map<String, List<Emitter.Listener>> eventListeners = new HashMap<>();
+    private final Map<String, Emitter.Listener> listenersBus = new HashMap<>();
+    private final SocketEventBus eventos;
     private final List<OnConnectionListener> connectionListeners = new ArrayList<>();
     private final List<OnPongListener> pongListeners = new ArrayList<>();
+    private final List<OnUnreadDeltaListener> unreadListeners = new ArrayList<>();
+
+    // Presencia de los usuarios que muestran las pantallas (solo se suscribe a esos)
+    private final PresenceStore presencia = new PresenceStore(new PresenceStore.Canal() {
+        @Override
+        public void suscribir(List<String> userIds) {
+            subscribePresence(userIds.toArray(new String[0]));
+        }
+
+        @Override
+        public void desuscribir(List<String> userIds) {
+            unsubscribePresence(userIds.toArray(new String[0]));
+        }
+    });
 
     // Estado de la aplicación
     private boolean isAppInForeground = true;
@@ -77,6 +106,19 @@ public class SocketManager {
     private SocketManager(Context context) {
         this.context = context.getApplicationContext();
         this.heartbeatHandler = new Handler(Looper.getMainLooper());
+        this.eventos = new SocketEventBus(new SocketEventBus.Enlace() {
+            @Override
+            public void escuchar(@NonNull String evento, @NonNull SocketEventBus.Receptor receptor) {
+                Emitter.Listener listener = receptor::recibir;
+                listenersBus.put(evento, listener);
+                on(evento, listener);
+            }
+
+            @Override
+            public void dejar(@NonNull String evento) {
+                off(evento, listenersBus.remove(evento));
+            }
+        }, EVENTOS_EXECUTOR, heartbeatHandler::post);
         setupHeartbeat();
     }
 
@@ -308,6 +350,39 @@ public class SocketManager {
             Log.v(TAG, "Pong recibido");
             notifyPong();
         });
+
+        // Cambios de no leídos del usuario: {chatId, delta} al llegar un mensaje o
+        // {chatId, noLeidos} al abrir un chat (desde cualquiera de sus dispositivos)
+        socket.on("unread_delta", args -> {
+            if (args.length == 0 || !(args[0] instanceof JSONObject)) return;
+            JSONObject data = (JSONObject) args[0];
+            String chatId = data.optString("chatId", null);
+            if (chatId == null) return;
+            if (data.has("noLeidos")) {
+                int noLeidos = data.optInt("noLeidos", 0);
+                heartbeatHandler.post(() -> notifyUnreadReset(chatId, noLeidos));
+            } else {
+                int delta = data.optInt("delta", 0);
+                if (delta != 0) heartbeatHandler.post(() -> notifyUnreadDelta(chatId, delta));
+            }
+        });
+
+        // Cambios de presencia de los usuarios suscritos, agrupados por el servidor:
+        // {cambios: [{userId, online, lastActivity}]}
+        socket.on("presence_batch", args -> {
+            if (args.length == 0 || !(args[0] instanceof JSONObject)) return;
+            org.json.JSONArray lista = ((JSONObject) args[0]).optJSONArray("cambios");
+            if (lista == null) return;
+            Map<String, PresenceStore.Estado> cambios = new HashMap<>();
+            for (int i = 0; i < lista.length(); i++) {
+                JSONObject cambio = lista.optJSONObject(i);
+                String userId = cambio != null ? cambio.optString("userId", null) : null;
+                if (userId == null) continue;
+                cambios.put(userId, new PresenceStore.Estado(cambio.optBoolean("online", false),
+                        cambio.isNull("lastActivity") ? 0 : cambio.optLong("lastActivity", 0)));
+            }
+            if (!cambios.isEmpty()) heartbeatHandler.post(() -> presencia.aplicar(cambios));
+        });
     }
 
     /**
@@ -515,7 +590,7 @@ public class SocketManager {
             Log.d(TAG, "🐕 Socket no conectado, encolando joinPaseo(" + paseoId + ")");
             pendingOperations.add(() -> {
                 if (isConnected()) {
-                    socket.emit("join_paseo", paseoId);
+                    socket.emit("join_paseo", paseoId, opcionesJoinPaseo());
                     Log.d(TAG, "🐕 [PENDIENTE EJECUTADO] Uniéndose al paseo: " + paseoId);
                 }
             });
@@ -524,10 +599,24 @@ public class SocketManager {
             return;
         }
 
-        socket.emit("join_paseo", paseoId);
+        socket.emit("join_paseo", paseoId, opcionesJoinPaseo());
         Log.d(TAG, "🐕 Uniéndose al paseo: " + paseoId);
     }
 
+    /**
+     * Anuncia que este cliente entiende {@code location_frame}: el servidor deja de
+     * reenviarle cada frame también como {@code update_location}.
+     */
+    private JSONObject opcionesJoinPaseo() {
+        JSONObject opciones = new JSONObject();
+        try {
+            opciones.put("frames", true);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error armando opciones de join_paseo", e);
+        }
+        return opciones;
+    }
+
     /**
      * Actualizar ubicación del paseador
      */
@@ -558,6 +647,15 @@ public class SocketManager {
         }
     }
 
+    /**
+     * Envía varios fixes en un frame binario (ver {@link LocationFrameBatcher}).
+     * Socket.IO lo transmite como adjunto binario: ~11 bytes por fix frente a ~90 del JSON.
+     */
+    public void sendLocationFrame(String paseoId, byte[] frame) {
+        if (!isConnected || paseoId == null || frame == null) return;
+        socket.emit("location_frame", paseoId, frame);
+    }
+
     /**
      * Cambiar estado del paseo
      */
@@ -578,23 +676,6 @@ public class SocketManager {
     // SISTEMA DE PRESENCIA
     // ========================================
 
-    /**
-     * Obtener lista de usuarios online
-     */
-    public void getOnlineUsers(String[] userIds) {
-        if (!isConnected) return;
-
-        try {
-            org.json.JSONArray array = new org.json.JSONArray();
-            for (String uid : userIds) {
-                array.put(uid);
-            }
-            socket.emit("get_online_users", array);
-        } catch (Exception e) {
-            Log.e(TAG, "Error al obtener usuarios online", e);
-        }
-    }
-
     /**
      * Enviar ping para mantener conexión
      */
@@ -623,17 +704,53 @@ public class SocketManager {
         pongListeners.remove(listener);
     }
 
+    /** Los callbacks llegan en el hilo principal. */
+    public void addOnUnreadDeltaListener(OnUnreadDeltaListener listener) {
+        if (listener == null || unreadListeners.contains(listener)) return;
+        unreadListeners.add(listener);
+    }
+
+    public void removeOnUnreadDeltaListener(OnUnreadDeltaListener listener) {
+        if (listener == null) return;
+        unreadListeners.remove(listener);
+    }
+
     // ========================================
     // REGISTRO DE LISTENERS
     // ========================================
 
     /**
-     * Registrar listener para un evento
+     * Observa un evento ya decodificado (ver {@link SocketEvents}) en el hilo principal.
+     * Se cancela solo cuando {@code owner} se destruye; se puede cancelar antes.
+     */
+    @NonNull
+    public <T> SocketEventBus.Suscripcion observar(@NonNull LifecycleOwner owner,
+                                                   @NonNull SocketEventBus.Tipo<T> tipo,
+                                                   @NonNull SocketEventBus.Observador<T> observador) {
+        SocketEventBus.Suscripcion suscripcion = eventos.suscribir(tipo, observador);
+        owner.getLifecycle().addObserver(new LifecycleEventObserver() {
+            @Override
+            public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+                if (event != Lifecycle.Event.ON_DESTROY) return;
+                source.getLifecycle().removeObserver(this);
+                suscripcion.cancelar();
+            }
+        });
+        return suscripcion;
+    }
+
+    /**
+     * Registrar listener para un evento (se suma a los que ya haya)
      * LAZY CONNECTION: Auto-conecta si no está conectado
      */
     public void on(String event, Emitter.Listener listener) {
         if (event == null || listener == null) return;
-        eventListeners.put(event, listener);
+        List<Emitter.Listener> listeners = eventListeners.get(event);
+        if (listeners == null) {
+            listeners = new ArrayList<>();
+            eventListeners.put(event, listeners);
+        }
+        listeners.add(listener);
 
         // LAZY CONNECTION: Si no hay socket, conectar y el listener se registrará en rebindEventListeners()
         if (socket == null) {
@@ -647,27 +764,41 @@ public class SocketManager {
     }
 
     /**
-     * Remover listener de un evento
+     * Remover un listener de un evento
      */
-    public void off(String event) {
-        if (event == null) return;
+    public void off(String event, Emitter.Listener listener) {
+        if (event == null || listener == null) return;
         if (socket != null) {
-            socket.off(event);
+            socket.off(event, listener);
+        }
+        List<Emitter.Listener> listeners = eventListeners.get(event);
+        if (listeners != null && listeners.remove(listener) && listeners.isEmpty()) {
+            eventListeners.remove(event);
         }
-        eventListeners.remove(event);
         Log.d(TAG, "🔇 Listener removido: " + event);
     }
 
     /**
-     * Remover todos los listeners
+     * Remover todos los listeners de un evento registrados con {@link #on}
+     * (los de {@link #observar} se mantienen)
+     */
+    public void off(String event) {
+        if (event == null) return;
+        List<Emitter.Listener> listeners = eventListeners.get(event);
+        if (listeners == null) return;
+        Emitter.Listener delBus = listenersBus.get(event);
+        for (Emitter.Listener listener : new ArrayList<>(listeners)) {
+            if (listener != delBus) off(event, listener);
+        }
+    }
+
+    /**
+     * Remover todos los listeners registrados con {@link #on}
      */
     public void offAll() {
-        if (socket != null) {
-            for (String event : eventListeners.keySet()) {
-                socket.off(event);
-            }
+        for (String event : new ArrayList<>(eventListeners.keySet())) {
+            off(event);
         }
-        eventListeners.clear();
         Log.d(TAG, "🔇 Todos los listeners removidos");
     }
 
@@ -675,6 +806,11 @@ public class SocketManager {
     // PRESENCIA DE USUARIOS
     // ========================================
 
+    /** Presencia compartida por todas las pantallas; se usa desde el hilo principal. */
+    public PresenceStore getPresencia() {
+        return presencia;
+    }
+
     /**
      * Suscribirse a cambios de presencia de usuarios específicos
      */
@@ -723,6 +859,11 @@ public class SocketManager {
         void onPong();
     }
 
+    public interface OnUnreadDeltaListener {
+        void onUnreadDelta(String chatId, int delta);
+        void onUnreadReset(String chatId, int noLeidos);
+    }
+
     public interface OnTypingListener {
         void onUserTyping(String userId, String userName);
         void onUserStopTyping(String userId);
@@ -780,15 +921,25 @@ public class SocketManager {
         }
     }
 
+    private void notifyUnreadDelta(String chatId, int delta) {
+        for (OnUnreadDeltaListener listener : new ArrayList<>(unreadListeners)) {
+            listener.onUnreadDelta(chatId, delta);
+        }
+    }
+
+    private void notifyUnreadReset(String chatId, int noLeidos) {
+        for (OnUnreadDeltaListener listener : new ArrayList<>(unreadListeners)) {
+            listener.onUnreadReset(chatId, noLeidos);
+        }
+    }
+
     private void updateConnectionState(boolean connected) {
         if (isConnected == connected) {
             return;
         }
         isConnected = connected;
 
-        // ===== ACTUALIZAR ESTADO ONLINE/OFFLINE EN FIRESTORE =====
-        updateOnlineStatusInFirestore(connected);
-
+        // El estado online/offline en Firestore lo escribe el servidor, con período de gracia
         if (connected) {
             notifyConnected();
         } else {
@@ -796,47 +947,12 @@ public class SocketManager {
         }
     }
 
-    /**
-     * Actualiza el estado online/offline del usuario en Firestore (usuarios y paseadores_search)
-     */
-    private void updateOnlineStatusInFirestore(boolean isOnline) {
-        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
-        if (user == null) return;
-
-        String userId = user.getUid();
-        String estado = isOnline ? "online" : "offline";
-
-        // ===== ACTUALIZAR 1: Colección 'usuarios' =====
-        Map<String, Object> userUpdates = new HashMap<>();
-        userUpdates.put("en_linea", isOnline);
-        userUpdates.put("estado", estado);
-        userUpdates.put("last_seen", Timestamp.now());
-
-        FirebaseFirestore.getInstance()
-                .collection("usuarios")
-                .document(userId)
-                .update(userUpdates)
-                .addOnFailureListener(e -> Log.w(TAG, "Error actualizando estado en usuarios", e));
-
-        // ===== ACTUALIZAR 2: Colección 'paseadores_search' (CRÍTICO para búsqueda) =====
-        Map<String, Object> searchUpdates = new HashMap<>();
-        searchUpdates.put("estado", estado);
-        searchUpdates.put("en_linea", isOnline);
-        searchUpdates.put("last_seen", Timestamp.now());
-
-        FirebaseFirestore.getInstance()
-                .collection("paseadores_search")
-                .document(userId)
-                .update(searchUpdates)
-                .addOnFailureListener(e -> Log.w(TAG, "Error actualizando estado en paseadores_search", e));
-
-        Log.d(TAG, "Estado online/offline actualizado en ambas colecciones: " + estado.toUpperCase());
-    }
-
     private void rebindEventListeners() {
         if (socket == null || eventListeners.isEmpty()) return;
-        for (Map.Entry<String, Emitter.Listener> entry : new HashMap<>(eventListeners).entrySet()) {
-            socket.on(entry.getKey(), entry.getValue());
+        for (Map.Entry<String, List<Emitter.Listener>> entry : eventListeners.entrySet()) {
+            for (Emitter.Listener listener : entry.getValue()) {
+                socket.on(entry.getKey(), listener);
+            }
         }
         Log.d(TAG, "Listeners re-registrados: " + eventListeners.size());
     }
@@ -848,5 +964,6 @@ public class SocketManager {
         if (currentPaseoId != null) {
             joinPaseo(currentPaseoId);
         }
+        heartbeatHandler.post(presencia::resuscribir);
     }
 }
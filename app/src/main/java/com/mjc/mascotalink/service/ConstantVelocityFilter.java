@@ -0,0 +1,195 @@
+package com.mjc.mascotalink.service;
+
+/**
+ * Filtro de Kalman de velocidad constante (2D) sobre los fixes GPS del paseo.
+ *
+ * Trabaja en metros sobre un plano local (equirectangular) centrado en el primer fix,
+ * con un filtro independiente por eje: estado [posición, velocidad] y aceleración como
+ * ruido blanco. La varianza de esa aceleración se adapta sola con la innovación:
+ * si los fixes se alejan de lo predicho (giros, arranques) sube, si el movimiento es
+ * predecible (recta o quieto) baja. Así la incertidumbre predicha refleja qué tan
+ * "sorprendente" viene siendo el recorrido.
+ *
+ * Sin dependencias de Android para poder reproducirlo en tests con tracks grabados.
+ */
+public class ConstantVelocityFilter {
+
+    private static final double METROS_POR_GRADO_LAT = 110_540.0;
+    private static final double METROS_POR_GRADO_LNG = 111_320.0;
+
+    // Varianza de aceleración (m²/s⁴): piso para caminar recto, techo para giros bruscos
+    static final double Q_MIN = 0.00002;
+    static final double Q_MAX = 4.0;
+    private static final double Q_INICIAL = 0.05;
+    private static final double NIS_MANIOBRA = 6.0;     // chi² 2 g.l. al ~95%
+    private static final double FACTOR_SUBIDA_Q = 3.0;
+    private static final double FACTOR_BAJADA_Q = 0.7;
+    private static final double VARIANZA_VELOCIDAD_INICIAL = 4.0; // (2 m/s)²
+    private static final float PRECISION_MINIMA_M = 3f;
+
+    private boolean inicializado = false;
+    private double lat0;
+    private double lng0;
+    private double cosLat0;
+    private long ultimoTiempoMs;
+    private float ultimaPrecision;
+
+    private final Eje x = new Eje();
+    private final Eje y = new Eje();
+    private final double qMinima;
+    private double q = Q_INICIAL;
+
+    public ConstantVelocityFilter() {
+        this(Q_MIN);
+    }
+
+    /**
+     * @param qMinima piso de la varianza de aceleración; más alto = velocidad más "nerviosa"
+     *                pero que sigue antes los giros
+     */
+    public ConstantVelocityFilter(double qMinima) {
+        this.qMinima = qMinima;
+    }
+
+    /**
+     * Incorpora un fix (predicción hasta su tiempo + corrección).
+     */
+    public void update(double lat, double lng, float accuracy, long tiempoMs) {
+        float acc = Math.max(PRECISION_MINIMA_M, accuracy);
+        double r = (double) acc * acc;
+
+        if (!inicializado) {
+            lat0 = lat;
+            lng0 = lng;
+            cosLat0 = Math.cos(Math.toRadians(lat));
+            x.reset(0, r);
+            y.reset(0, r);
+            ultimoTiempoMs = tiempoMs;
+            ultimaPrecision = acc;
+            inicializado = true;
+            return;
+        }
+
+        double dt = (tiempoMs - ultimoTiempoMs) / 1000.0;
+        if (dt > 0) {
+            x.predecir(dt, q);
+            y.predecir(dt, q);
+            ultimoTiempoMs = tiempoMs;
+        }
+
+        double nis = x.corregir(aMetrosX(lng), r) + y.corregir(aMetrosY(lat), r);
+        if (nis > NIS_MANIOBRA) {
+            q = Math.min(Q_MAX, q * FACTOR_SUBIDA_Q);
+        } else {
+            q = Math.max(qMinima, q * FACTOR_BAJADA_Q);
+        }
+        ultimaPrecision = acc;
+    }
+
+    /**
+     * Varianza total de posición (m², suma de ambos ejes) si no llega ningún fix en {@code dtSeg}.
+     * No modifica el estado.
+     */
+    public double varianzaPosicionPredicha(double dtSeg) {
+        return x.varianzaPredicha(dtSeg, q) + y.varianzaPredicha(dtSeg, q);
+    }
+
+    /**
+     * Posición extrapolada con la velocidad filtrada hasta {@code tiempoMs} ({lat, lng}).
+     * No modifica el estado; con tiempos anteriores al último fix devuelve la posición filtrada.
+     */
+    public double[] predecirLatLng(long tiempoMs) {
+        double dt = Math.max(0, tiempoMs - ultimoTiempoMs) / 1000.0;
+        double px = x.p + x.v * dt;
+        double py = y.p + y.v * dt;
+        return new double[]{
+                lat0 + py / METROS_POR_GRADO_LAT,
+                lng0 + px / (METROS_POR_GRADO_LNG * cosLat0)
+        };
+    }
+
+    public boolean isInicializado() {
+        return inicializado;
+    }
+
+    /** Velocidad filtrada en m/s. */
+    public double getVelocidad() {
+        return Math.hypot(x.v, y.v);
+    }
+
+    /** Varianza de aceleración actual; alta = recorrido poco predecible. */
+    public double getVarianzaAceleracion() {
+        return q;
+    }
+
+    public float getUltimaPrecision() {
+        return ultimaPrecision;
+    }
+
+    public long getUltimoTiempoMs() {
+        return ultimoTiempoMs;
+    }
+
+    public void reset() {
+        inicializado = false;
+        q = Q_INICIAL;
+    }
+
+    private double aMetrosX(double lng) {
+        return (lng - lng0) * METROS_POR_GRADO_LNG * cosLat0;
+    }
+
+    private double aMetrosY(double lat) {
+        return (lat - lat0) * METROS_POR_GRADO_LAT;
+    }
+
+    /**
+     * Kalman 1D [posición, velocidad] con covarianza simétrica (p00, p01, p11).
+     */
+    private static final class Eje {
+        double p;
+        double v;
+        double p00;
+        double p01;
+        double p11;
+
+        void reset(double posicion, double r) {
+            p = posicion;
+            v = 0;
+            p00 = r;
+            p01 = 0;
+            p11 = VARIANZA_VELOCIDAD_INICIAL;
+        }
+
+        void predecir(double dt, double q) {
+            p += v * dt;
+            double dt2 = dt * dt;
+            p00 += dt * (2 * p01 + dt * p11) + q * dt2 * dt2 / 4;
+            p01 += dt * p11 + q * dt2 * dt / 2;
+            p11 += q * dt2;
+        }
+
+        double varianzaPredicha(double dt, double q) {
+            double dt2 = dt * dt;
+            return p00 + dt * (2 * p01 + dt * p11) + q * dt2 * dt2 / 4;
+        }
+
+        /**
+         * @return innovación normalizada al cuadrado (NIS) de este eje
+         */
+        double corregir(double z, double r) {
+            double s = p00 + r;
+            double k0 = p00 / s;
+            double k1 = p01 / s;
+            double innovacion = z - p;
+            p += k0 * innovacion;
+            v += k1 * innovacion;
+            double p00Ant = p00;
+            double p01Ant = p01;
+            p00 = (1 - k0) * p00Ant;
+            p01 = (1 - k0) * p01Ant;
+            p11 -= k1 * p01Ant;
+            return innovacion * innovacion / s;
+        }
+    }
+}
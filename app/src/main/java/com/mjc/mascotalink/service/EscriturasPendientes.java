@@ -0,0 +1,129 @@
+package com.mjc.mascotalink.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Escrituras acumuladas durante una ventana de {@link FirestoreWriteCoalescer}, agrupadas
+ * por documento. Sin dependencias de Firestore para poder probarla aislada.
+ *
+ * - Varios update() al mismo documento se fusionan en uno; si un campo se escribe
+ *   varias veces gana el último valor (los anteriores cuentan como deduplicados).
+ * - Un set() reemplaza todo lo pendiente de ese documento.
+ * - Los valores no fusionables (transformaciones como arrayUnion) no se pisan:
+ *   {@link #requiereVaciarAntes} avisa que hay que emitir lo pendiente primero.
+ *
+ * No es thread-safe; el coalescer la usa desde un solo hilo.
+ *
+ * @param <R> referencia al documento
+ * @param <C> callback que se completa cuando la escritura se confirma
+ */
+final class EscriturasPendientes<R, C> {
+
+    /**
+     * Indica si un valor es una transformación que no puede reemplazarse por otra.
+     */
+    interface Fusionable {
+        boolean esTransformacion(Object valor);
+    }
+
+    static final class Escritura<R, C> {
+        final R ref;
+        final Map<String, Object> campos = new LinkedHashMap<>();
+        final List<C> callbacks = new ArrayList<>(2);
+        boolean esSet;
+
+        Escritura(R ref) {
+            this.ref = ref;
+        }
+    }
+
+    private final Fusionable fusionable;
+    private final LinkedHashMap<String, Escritura<R, C>> porDocumento = new LinkedHashMap<>();
+
+    private long solicitadas = 0;
+    private long emitidas = 0;
+    private long camposDeduplicados = 0;
+
+    EscriturasPendientes(Fusionable fusionable) {
+        this.fusionable = fusionable;
+    }
+
+    /**
+     * true si algún campo ya pendiente en {@code ruta} chocaría con una transformación
+     * (en cualquiera de los dos sentidos) y por eso no se puede fusionar.
+     */
+    boolean requiereVaciarAntes(String ruta, Map<String, Object> campos) {
+        Escritura<R, C> pendiente = porDocumento.get(ruta);
+        if (pendiente == null) return false;
+        for (Map.Entry<String, Object> campo : campos.entrySet()) {
+            if (!pendiente.campos.containsKey(campo.getKey())) continue;
+            if (fusionable.esTransformacion(campo.getValue())
+                    || fusionable.esTransformacion(pendiente.campos.get(campo.getKey()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void agregar(String ruta, R ref, Map<String, Object> campos, boolean esSet, C callback) {
+        solicitadas++;
+        Escritura<R, C> escritura = porDocumento.get(ruta);
+        if (escritura == null) {
+            escritura = new Escritura<>(ref);
+            porDocumento.put(ruta, escritura);
+        } else if (esSet) {
+            camposDeduplicados += escritura.campos.size();
+            escritura.campos.clear();
+        }
+        if (esSet) escritura.esSet = true;
+
+        for (Map.Entry<String, Object> campo : campos.entrySet()) {
+            if (escritura.campos.containsKey(campo.getKey())) {
+                camposDeduplicados++;
+            }
+            escritura.campos.put(campo.getKey(), campo.getValue());
+        }
+        if (callback != null) escritura.callbacks.add(callback);
+    }
+
+    /**
+     * Devuelve lo pendiente (una escritura por documento, en orden de llegada) y lo vacía.
+     */
+    List<Escritura<R, C>> drenar() {
+        List<Escritura<R, C>> lote = new ArrayList<>(porDocumento.values());
+        porDocumento.clear();
+        emitidas += lote.size();
+        return lote;
+    }
+
+    boolean isEmpty() {
+        return porDocumento.isEmpty();
+    }
+
+    int documentosPendientes() {
+        return porDocumento.size();
+    }
+
+    /** Llamadas a update()/set() recibidas. */
+    long getSolicitadas() {
+        return solicitadas;
+    }
+
+    /** Escrituras de documento realmente emitidas (lo que Firestore factura). */
+    long getEmitidas() {
+        return emitidas;
+    }
+
+    long getCamposDeduplicados() {
+        return camposDeduplicados;
+    }
+
+    void resetContadores() {
+        solicitadas = 0;
+        emitidas = 0;
+        camposDeduplicados = 0;
+    }
+}
@@ -0,0 +1,206 @@
+package com.mjc.mascotalink.service;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Agrupa las escrituras de LocationService (usuarios, paseadores_search, reserva y chunks
+ * de ruta) en un solo {@link WriteBatch} por ventana de tiempo.
+ *
+ * - Las escrituras al mismo documento dentro de la ventana se fusionan en una sola y los
+ *   campos sobrescritos se deduplican (ver {@link EscriturasPendientes}).
+ * - Cada llamada devuelve un Task que se completa cuando su escritura se confirma, así
+ *   quien necesita el ack (TrackJournalFlusher) lo sigue teniendo.
+ * - Si el batch falla (es atómico), se reintenta cada documento por separado para que un
+ *   documento inexistente (p. ej. paseadores_search) no arrastre al resto.
+ *
+ * El estado vive en un solo hilo propio; los métodos públicos se pueden llamar desde cualquiera.
+ */
+public class FirestoreWriteCoalescer {
+
+    private static final String TAG = "FirestoreWriteCoalescer";
+
+    private static final int MAX_ESCRITURAS_POR_BATCH = 500; // Límite de Firestore
+
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "FirestoreWriteCoalescer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final FirebaseFirestore db;
+
+    // ===== Estado confinado al hilo EXECUTOR =====
+    private final EscriturasPendientes<DocumentReference, TaskCompletionSource<Void>> pendientes =
+            new EscriturasPendientes<>(valor -> valor instanceof FieldValue);
+    private ScheduledFuture<?> flushProgramado;
+    private long commits = 0;
+
+    private volatile long ventanaMs;
+
+    public FirestoreWriteCoalescer(@NonNull FirebaseFirestore db, long ventanaMs) {
+        this.db = db;
+        this.ventanaMs = ventanaMs;
+    }
+
+    /**
+     * Equivalente a {@code ref.update(campos)}, diferido hasta el fin de la ventana.
+     */
+    @NonNull
+    public Task<Void> actualizar(@NonNull DocumentReference ref, @NonNull Map<String, Object> campos) {
+        return encolar(ref, campos, false);
+    }
+
+    /**
+     * Equivalente a {@code ref.set(datos)}, diferido hasta el fin de la ventana.
+     */
+    @NonNull
+    public Task<Void> set(@NonNull DocumentReference ref, @NonNull Map<String, Object> datos) {
+        return encolar(ref, datos, true);
+    }
+
+    /**
+     * Tiempo que se espera desde la primera escritura pendiente antes de emitir el batch.
+     * Con 0 cada escritura sale de inmediato (fin del paseo).
+     */
+    public void setVentanaMs(long ventanaMs) {
+        this.ventanaMs = ventanaMs;
+    }
+
+    public long getVentanaMs() {
+        return ventanaMs;
+    }
+
+    /**
+     * Emite ya lo pendiente sin esperar a que cierre la ventana.
+     */
+    public void flush() {
+        EXECUTOR.execute(this::emitir);
+    }
+
+    // ===== MÉTRICAS =====
+
+    public long getEscriturasSolicitadas() {
+        return pendientes.getSolicitadas();
+    }
+
+    public long getEscriturasEmitidas() {
+        return pendientes.getEmitidas();
+    }
+
+    /**
+     * Escrituras de documento que no llegaron a Firestore gracias a la fusión.
+     * Lo aún pendiente no cuenta como ahorro hasta que se emite.
+     */
+    public long getEscriturasAhorradas() {
+        return Math.max(0, pendientes.getSolicitadas() - pendientes.getEmitidas() - pendientes.documentosPendientes());
+    }
+
+    public long getCamposDeduplicados() {
+        return pendientes.getCamposDeduplicados();
+    }
+
+    public long getCommits() {
+        return commits;
+    }
+
+    /**
+     * Reinicia las métricas (nuevo paseo). Lo pendiente se conserva.
+     */
+    public void resetMetricas() {
+        EXECUTOR.execute(() -> {
+            pendientes.resetContadores();
+            commits = 0;
+        });
+    }
+
+    // ===== INTERNO =====
+
+    private Task<Void> encolar(DocumentReference ref, Map<String, Object> campos, boolean esSet) {
+        TaskCompletionSource<Void> resultado = new TaskCompletionSource<>();
+        EXECUTOR.execute(() -> {
+            String ruta = ref.getPath();
+            if (pendientes.requiereVaciarAntes(ruta, campos)) {
+                // Dos transformaciones sobre el mismo campo no se pueden fusionar
+                emitir();
+            }
+            pendientes.agregar(ruta, ref, campos, esSet, resultado);
+
+            long ventana = ventanaMs;
+            if (ventana <= 0 || pendientes.documentosPendientes() >= MAX_ESCRITURAS_POR_BATCH) {
+                emitir();
+            } else if (flushProgramado == null) {
+                flushProgramado = EXECUTOR.schedule(this::emitir, ventana, TimeUnit.MILLISECONDS);
+            }
+        });
+        return resultado.getTask();
+    }
+
+    private void emitir() {
+        if (flushProgramado != null) {
+            flushProgramado.cancel(false);
+            flushProgramado = null;
+        }
+        if (pendientes.isEmpty()) return;
+
+        List<EscriturasPendientes.Escritura<DocumentReference, TaskCompletionSource<Void>>> lote = pendientes.drenar();
+        WriteBatch batch = db.batch();
+        for (EscriturasPendientes.Escritura<DocumentReference, TaskCompletionSource<Void>> escritura : lote) {
+            if (escritura.esSet) {
+                batch.set(escritura.ref, escritura.campos);
+            } else {
+                batch.update(escritura.ref, escritura.campos);
+            }
+        }
+        commits++;
+
+        Log.v(TAG, "📦 Batch con " + lote.size() + " documentos (solicitadas " + pendientes.getSolicitadas()
+                + ", emitidas " + pendientes.getEmitidas() + ")");
+
+        batch.commit()
+                .addOnSuccessListener(EXECUTOR, aVoid -> {
+                    for (EscriturasPendientes.Escritura<DocumentReference, TaskCompletionSource<Void>> escritura : lote) {
+                        completar(escritura, null);
+                    }
+                })
+                .addOnFailureListener(EXECUTOR, e -> {
+                    if (lote.size() == 1) {
+                        completar(lote.get(0), e);
+                        return;
+                    }
+                    Log.w(TAG, "⚠️ Batch falló, reintentando " + lote.size() + " documentos por separado: " + e.getMessage());
+                    for (EscriturasPendientes.Escritura<DocumentReference, TaskCompletionSource<Void>> escritura : lote) {
+                        Task<Void> individual = escritura.esSet
+                                ? escritura.ref.set(escritura.campos)
+                                : escritura.ref.update(escritura.campos);
+                        individual.addOnCompleteListener(EXECUTOR, t -> completar(escritura, t.getException()));
+                    }
+                });
+    }
+
+    private static void completar(EscriturasPendientes.Escritura<DocumentReference, TaskCompletionSource<Void>> escritura,
+                                  Exception error) {
+        for (TaskCompletionSource<Void> callback : escritura.callbacks) {
+            if (error == null) {
+                callback.trySetResult(null);
+            } else {
+                callback.trySetException(error);
+            }
+        }
+    }
+}
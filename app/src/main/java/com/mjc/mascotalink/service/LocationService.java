@@ -36,17 +36,21 @@ import com.google.android.gms.location.Priority;
 import com.google.firebase.Timestamp;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.WriteBatch;
+import com.google.firebase.firestore.Source;
 import com.mjc.mascotalink.PaseoEnCursoActivity;
 import com.mjc.mascotalink.R;
+import com.mjc.mascotalink.network.LocationFrameBatcher;
 import com.mjc.mascotalink.network.SocketManager;
+import com.mjc.mascotalink.util.ConsultasCompartidas;
+import com.mjc.mascotalink.util.RutaPaseoParser;
+import com.mjc.mascotalink.util.TrackSimplifier;
 
-import java.security.SecureRandom;
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import javax.inject.Inject;
@@ -75,10 +79,15 @@ public class LocationService extends Service {
     private FirebaseFirestore db;
     private FirebaseAuth auth;
 
+    // ===== COALESCER DE ESCRITURAS =====
+    // usuarios + paseadores_search + reserva + chunks de ruta salen en un solo WriteBatch por ventana
+    private FirestoreWriteCoalescer writeCoalescer;
+    private static final long VENTANA_ESCRITURAS_MS = 1000;           // Dueño mirando: latencia baja
+    private static final long VENTANA_ESCRITURAS_SIN_DUENO_MS = 5000; // Nadie mira: fusiona más ticks
+
     // Throttling para Firestore (guardar historial)
     private long lastFirestoreSaveTime = 0;
     private static final long FIRESTORE_SAVE_INTERVAL_MS = 15000; // 15 segundos para historial
-    private final SecureRandom secureRandom = new SecureRandom();
 
     // Throttling para Ubicación Actual (búsqueda)
     private long lastRealtimeUpdateTime = 0;
@@ -86,6 +95,8 @@ public class LocationService extends Service {
 
     // ===== THROTTLING WEBSOCKET (AHORRO BATERÍA) =====
     private long lastWebSocketSendTime = 0;
+    // Todos los fixes entre envíos viajan en un frame binario (seq + base + deltas)
+    private final LocationFrameBatcher frameBatcher = new LocationFrameBatcher();
     private static final long WEBSOCKET_SEND_INTERVAL_MS = 10000; // 10 segundos (antes: cada update)
     private static final long WEBSOCKET_SEND_INTERVAL_SLOW_MS = 30000; // 30s cuando detenido
 
@@ -97,15 +108,35 @@ public class LocationService extends Service {
     // ===== OPTIMIZACIONES DE BATERÍA Y GPS =====
 
     // Batching de ubicaciones (OPTIMIZADO: 60s → 120s)
-    private List<Map<String, Object>> locationBatch = new ArrayList<>();
-    private static final int BATCH_SIZE = 10; // Enviar cada 10 ubicaciones (antes: 5)
+    // Cada fix se escribe primero en el journal en disco (WAL); el flusher lo drena a Firestore
+    // en chunks binarios. Como nada se pierde si falla el envío, se puede agrupar más.
+    private TrackJournal trackJournal;
+    private TrackJournalFlusher journalFlusher;
+    private boolean journalsReanudados = false;
+    private double lastBatchLat;
+    private double lastBatchLng;
+    private boolean hasLastBatchPoint = false;
+    private static final int BATCH_SIZE = 10; // Enviar cada 10 ubicaciones si el dueño mira (antes: 5)
+    private static final int BATCH_SIZE_SIN_DUENO = 30; // Menos wakeups de radio si nadie mira
     private static final long BATCH_TIMEOUT_MS = 120000; // O cada 120 segundos (antes: 60s)
+
+    // Simplificación de ruta antes del journal: error máximo frente a la ruta cruda
+    // Los fixes crudos se escriben antes en su propio journal, así la ventana no se pierde con un kill
+    private static final float TOLERANCIA_RUTA_METROS = 4f;
+    private static final int MAX_VENTANA_SIMPLIFICACION = 15;
+    private final TrackSimplifier trackSimplifier =
+            new TrackSimplifier(TOLERANCIA_RUTA_METROS, MAX_VENTANA_SIMPLIFICACION, this::persistirPuntoRuta);
+    private SimplificadorDurable simplificadorDurable;
     private long lastBatchSendTime = 0;
 
     // Detección de movimiento
     private Location lastLocation = null;
     private float currentSpeed = 0f;
     private static final float SPEED_THRESHOLD_MPS = 1.4f; // ~5 km/h
+
+    // Muestreo GPS adaptativo (Kalman de velocidad constante, ver MotionModelSamplingPolicy)
+    private final SamplingPolicy samplingPolicy = new MotionModelSamplingPolicy();
+    private SamplingPolicy.Decision decisionMuestreo;
     private static final float STATIONARY_THRESHOLD_METERS = 10f;
 
     // MODO PAUSA COMPLETA
@@ -132,11 +163,6 @@ public class LocationService extends Service {
     private static final float MAX_JUMP_METERS = 100f; // Rechazar saltos > 100m
     private static final long MIN_TIME_BETWEEN_JUMPS_MS = 2000; // en < 2 segundos
 
-    // Subcollection migration
-    private int ubicacionesCount = 0;
-    private static final int MAX_UBICACIONES_IN_ARRAY = 500; // Migrar a subcollection después de 500
-    private boolean usandoSubcollection = false;
-
     // Estado de la reserva en tiempo real
     private String currentEstado = null;
     private com.google.firebase.firestore.ListenerRegistration estadoListener = null;
@@ -150,13 +176,6 @@ public class LocationService extends Service {
     private static final long WEBSOCKET_CONNECTION_TIMEOUT_MS = 5000; // 5 segundos
     private boolean hasWarnedAboutSlowConnection = false;
 
-    // ===== FIRESTORE BATCH RETRY LOGIC =====
-    private List<Map<String, Object>> failedBatch = null;  // Cola de locations fallidas
-    private int batchRetryCount = 0;
-    private long lastBatchRetryTime = 0;
-    private static final int MAX_BATCH_RETRIES = 3;
-    private static final long BATCH_RETRY_DELAY_MS = 2000;  // Exponencial: 2s, 4s, 8s
-
     @Override
     public void onCreate() {
         super.onCreate();
@@ -168,6 +187,7 @@ public class LocationService extends Service {
         socketManager = SocketManager.getInstance(this); // Obtener instancia singleton
         db = FirebaseFirestore.getInstance(); // Obtener directamente sin Hilt
         auth = FirebaseAuth.getInstance(); // Obtener directamente sin Hilt
+        writeCoalescer = new FirestoreWriteCoalescer(db, VENTANA_ESCRITURAS_MS);
 
         Log.d(TAG, ">>> SocketManager obtenido: " + (socketManager != null ? "SI" : "NULL"));
         Log.d(TAG, ">>> Firestore obtenido: " + (db != null ? "SI" : "NULL"));
@@ -195,10 +215,7 @@ public class LocationService extends Service {
                     // Si tenemos ubicación reciente, enviar inmediatamente
                     if (lastLocation != null && duenoViendoMapa) {
                         Log.d(TAG, "📡 Enviando ubicación inmediata tras reconexión");
-                        socketManager.updateLocation(currentReservaId,
-                            lastLocation.getLatitude(),
-                            lastLocation.getLongitude(),
-                            lastLocation.getAccuracy());
+                        enviarFrameUbicacion(true);
                     }
                 }
             }
@@ -282,6 +299,9 @@ public class LocationService extends Service {
             Log.e(TAG, ">>> ERROR: Intent es NULL");
         }
 
+        // Reinicio tras kill (intent null) o primer arranque: reenviar journals huérfanos
+        reanudarJournalsPendientes();
+
         return START_STICKY;
     }
 
@@ -294,6 +314,14 @@ public class LocationService extends Service {
         currentEstado = "EN_CURSO";
         Log.d(TAG, "✅ Estado inicial establecido a EN_CURSO para evitar rechazo de ubicaciones");
 
+        writeCoalescer.resetMetricas();
+        ajustarVentanaEscrituras();
+
+        // Journal durable de ubicaciones (recupera la cola pendiente si el servicio murió)
+        abrirJournal(reservaId);
+        samplingPolicy.reset();
+        frameBatcher.reset();
+
         // 1. Iniciar notificación Foreground
         startForeground(NOTIFICATION_ID, getNotification(),
                 Build.VERSION.SDK_INT >= Build.VERSION_CODES.R ? ServiceInfo.FOREGROUND_SERVICE_TYPE_LOCATION : 0);
@@ -328,66 +356,78 @@ public class LocationService extends Service {
             estadoListener.remove();
         }
 
-        estadoListener = db.collection("reservas").document(currentReservaId)
-                .addSnapshotListener((documentSnapshot, error) -> {
-                    if (error != null) {
+        // Compartido con la pantalla del paseo, que escucha el mismo documento
+        estadoListener = ConsultasCompartidas.get().escucharDocumento(
+                db.collection("reservas").document(currentReservaId),
+                new ConsultasCompartidas.DocumentoCallback() {
+                    @Override
+                    public void onDocumento(@NonNull DocumentSnapshot documentSnapshot) {
+                        manejarEstadoReserva(documentSnapshot);
+                    }
+
+                    @Override
+                    public void onError(Exception error) {
                         Log.e(TAG, "Error en listener de estado", error);
-                        return;
                     }
+                });
+    }
 
-                    if (documentSnapshot != null && documentSnapshot.exists()) {
-                        String nuevoEstado = documentSnapshot.getString("estado");
-                        boolean isFromCache = documentSnapshot.getMetadata().isFromCache();
-
-                        Log.d(TAG, " Listener ejecutado - Estado: " + nuevoEstado + ", FromCache: " + isFromCache);
-
-                        // Actualizar estado actual
-                        // CRÍTICO: Solo cambiar estado si es del servidor (!isFromCache) o si es EN_CURSO
-                        // Esto evita que el cache desactualizado sobrescriba el estado EN_CURSO inicial
-                        if (nuevoEstado != null && !nuevoEstado.equals(currentEstado) && (!isFromCache || "EN_CURSO".equals(nuevoEstado))) {
-                            Log.d(TAG, " Estado cambió: " + currentEstado + " → " + nuevoEstado);
-                            String estadoAnterior = currentEstado;
-                            currentEstado = nuevoEstado;
-
-                            // SOLO detener si:
-                            // 1. Los datos vienen del servidor (NO del cache local)
-                            // 2. Y el estado cambió de EN_CURSO a otro estado
-                            if (!isFromCache && !"EN_CURSO".equals(nuevoEstado) && "EN_CURSO".equals(estadoAnterior)) {
-                                Log.w(TAG, " Paseo cambió de EN_CURSO a " + nuevoEstado + ", deteniendo tracking");
-                                stopTracking();
-                            } else if (isFromCache && !"EN_CURSO".equals(nuevoEstado)) {
-                                Log.d(TAG, " Estado del cache es " + nuevoEstado + " pero ignorando hasta recibir datos del servidor");
-                            }
-                        } else if (currentEstado == null) {
-                            // Primera vez que se obtiene el estado
-                            currentEstado = nuevoEstado;
-                            Log.d(TAG, " Estado inicial: " + currentEstado + ", FromCache: " + isFromCache);
-                        }
+    private void manejarEstadoReserva(DocumentSnapshot documentSnapshot) {
+        if (documentSnapshot != null && documentSnapshot.exists()) {
+            String nuevoEstado = documentSnapshot.getString("estado");
+            boolean isFromCache = documentSnapshot.getMetadata().isFromCache();
+
+            Log.d(TAG, " Listener ejecutado - Estado: " + nuevoEstado + ", FromCache: " + isFromCache);
+
+            // Actualizar estado actual
+            // CRÍTICO: Solo cambiar estado si es del servidor (!isFromCache) o si es EN_CURSO
+            // Esto evita que el cache desactualizado sobrescriba el estado EN_CURSO inicial
+            if (nuevoEstado != null && !nuevoEstado.equals(currentEstado) && (!isFromCache || "EN_CURSO".equals(nuevoEstado))) {
+                Log.d(TAG, " Estado cambió: " + currentEstado + " → " + nuevoEstado);
+                String estadoAnterior = currentEstado;
+                currentEstado = nuevoEstado;
+
+                // SOLO detener si:
+                // 1. Los datos vienen del servidor (NO del cache local)
+                // 2. Y el estado cambió de EN_CURSO a otro estado
+                if (!isFromCache && !"EN_CURSO".equals(nuevoEstado) && "EN_CURSO".equals(estadoAnterior)) {
+                    Log.w(TAG, " Paseo cambió de EN_CURSO a " + nuevoEstado + ", deteniendo tracking");
+                    stopTracking();
+                } else if (isFromCache && !"EN_CURSO".equals(nuevoEstado)) {
+                    Log.d(TAG, " Estado del cache es " + nuevoEstado + " pero ignorando hasta recibir datos del servidor");
+                }
+            } else if (currentEstado == null) {
+                // Primera vez que se obtiene el estado
+                currentEstado = nuevoEstado;
+                Log.d(TAG, " Estado inicial: " + currentEstado + ", FromCache: " + isFromCache);
+            }
 
-                        // ===== OPTIMIZACIÓN: Listener para "dueño viendo mapa" =====
-                        Boolean viendo = documentSnapshot.getBoolean("dueno_viendo_mapa");
-                        boolean estadoAnterior = duenoViendoMapa;
-                        duenoViendoMapa = viendo != null ? viendo : true;
-
-                        //  DEBUG: Siempre mostrar el valor leído
-                        Log.d(TAG, " dueno_viendo_mapa leído de Firestore: " + viendo + " (será: " + duenoViendoMapa + ")");
-
-                        if (estadoAnterior != duenoViendoMapa) {
-                            if (duenoViendoMapa) {
-                                Log.i(TAG, " Dueño EMPEZÓ a ver mapa - Activando WebSocket y forzando actualización");
-                                // Forzar envío inmediato si tenemos ubicación reciente
-                                if (lastLocation != null && socketManager.isConnected()) {
-                                    Log.d(TAG, "📡 Forzando envío inmediato de ubicación vía WebSocket");
-                                    socketManager.updateLocation(currentReservaId, lastLocation.getLatitude(), lastLocation.getLongitude(), lastLocation.getAccuracy());
-                                    // También forzar guardado en Firestore para que el fallback funcione si WS falla
-                                    sendLocationBatch();
-                                }
-                            } else {
-                                Log.i(TAG, "🚫 Dueño DEJÓ de ver mapa - Desactivando WebSocket (~10% ahorro batería)");
-                            }
-                        }
+            // ===== OPTIMIZACIÓN: Listener para "dueño viendo mapa" =====
+            Boolean viendo = documentSnapshot.getBoolean("dueno_viendo_mapa");
+            boolean estadoAnterior = duenoViendoMapa;
+            duenoViendoMapa = viendo != null ? viendo : true;
+
+            //  DEBUG: Siempre mostrar el valor leído
+            Log.d(TAG, " dueno_viendo_mapa leído de Firestore: " + viendo + " (será: " + duenoViendoMapa + ")");
+
+            if (estadoAnterior != duenoViendoMapa) {
+                if (duenoViendoMapa) {
+                    Log.i(TAG, " Dueño EMPEZÓ a ver mapa - Activando WebSocket y forzando actualización");
+                    // Forzar envío inmediato si tenemos ubicación reciente
+                    if (lastLocation != null && socketManager.isConnected()) {
+                        Log.d(TAG, "📡 Forzando envío inmediato de ubicación vía WebSocket");
+                        enviarFrameUbicacion(true);
+                        // También forzar guardado en Firestore para que el fallback funcione si WS falla
+                        sendLocationBatch();
                     }
-                });
+                } else {
+                    Log.i(TAG, "🚫 Dueño DEJÓ de ver mapa - Desactivando WebSocket (~10% ahorro batería)");
+                }
+                // La política permite intervalos más largos y batching si nadie mira
+                reevaluarMuestreo();
+                ajustarVentanaEscrituras();
+            }
+        }
     }
 
     /**
@@ -405,14 +445,11 @@ public class LocationService extends Service {
                         }
 
                         // Cargar contador de ubicaciones para saber si usar subcollection
-                        Object ubicacionesObj = snapshot.get("ubicaciones");
-                        if (ubicacionesObj instanceof List) {
-                            ubicacionesCount = ((List<?>) ubicacionesObj).size();
-                            Log.d(TAG, "📍 Ubicaciones existentes: " + ubicacionesCount);
-                            if (ubicacionesCount > MAX_UBICACIONES_IN_ARRAY) {
-                                usandoSubcollection = true;
-                                Log.d(TAG, "🔄 Usando subcollection desde el inicio");
-                            }
+                        // (legacy + chunks, leyendo solo la cabecera de cada chunk)
+                        int ubicacionesCount = RutaPaseoParser.contarPuntos(snapshot);
+                        Log.d(TAG, "📍 Ubicaciones existentes: " + ubicacionesCount);
+                        if (journalFlusher != null) {
+                            journalFlusher.setUbicacionesExistentes(ubicacionesCount);
                         }
                     }
                 })
@@ -445,79 +482,52 @@ public class LocationService extends Service {
     }
 
     /**
-     * Construye un LocationRequest optimizado basado en batería, movimiento y precisión GPS
+     * Construye el LocationRequest a partir de la política de muestreo (modelo de movimiento,
+     * batería, dueño mirando y modo pausa)
      */
     private LocationRequest buildOptimalLocationRequest() {
-        long interval;
-        long minInterval;
-        float minDistance;
-        int priority;
-
-        // Verificar precisión de última ubicación
-        float lastAccuracy = lastLocation != null && lastLocation.hasAccuracy() ?
-                             lastLocation.getAccuracy() : 50f;
-        boolean precisionBaja = lastAccuracy > 100f;
-
-        // NUEVO: Modo ultra-ahorro cuando dueño NO está viendo el mapa
-        if (!duenoViendoMapa && !isLowBattery) {
-            // Solo guardar en Firestore cada 30s, sin WebSocket
-            interval = 30000; // 30 segundos
-            minInterval = 20000; // 20 segundos
-            minDistance = 30; // 30 metros
-            priority = Priority.PRIORITY_BALANCED_POWER_ACCURACY;
-            Log.d(TAG, "GPS en modo ULTRA-AHORRO (30s, dueño no viendo - ahorro ~40%)");
-        } else if (isLowBattery) {
-            // Modo ahorro de batería: menos frecuente, menos precisión
-            interval = 20000; // 20 segundos (antes 15s)
-            minInterval = 15000; // 15 segundos
-            minDistance = 25; // 25 metros
-            priority = Priority.PRIORITY_LOW_POWER;
-            Log.d(TAG, "GPS en modo AHORRO DE BATERÍA (20s, LOW_POWER)");
-        } else if (gpsPausado) {
-            // NUEVO: Modo pausa - solo verificar cada minuto si hay movimiento
-            interval = 60000; // 60 segundos
-            minInterval = 45000; // 45 segundos
-            minDistance = 50; // 50 metros para detectar movimiento
-            priority = Priority.PRIORITY_LOW_POWER;
-            Log.d(TAG, "GPS en modo PAUSA (60s, esperando movimiento)");
-        } else if (precisionBaja) {
-            // Si tenemos baja precisión, reducir frecuencia para ahorrar batería
-            interval = 12000; // 12 segundos
-            minInterval = 8000; // 8 segundos
-            minDistance = 15; // 15 metros
-            priority = Priority.PRIORITY_BALANCED_POWER_ACCURACY;
-            Log.d(TAG, "GPS en modo PRECISIÓN BAJA (12s, accuracy: " + (int)lastAccuracy + "m)");
-        } else if (currentSpeed < SPEED_THRESHOLD_MPS) {
-            // Usuario casi detenido: punto medio entre precisión y batería
-            interval = 11000; // 11 segundos
-            minInterval = 8000; // 8 segundos
-            minDistance = 8; // 8 metros (punto medio entre 12 y 5)
-            priority = Priority.PRIORITY_BALANCED_POWER_ACCURACY;
-            Log.d(TAG, "GPS en modo DETENIDO (11s, baja velocidad, 8m resolución)");
-        } else if (currentSpeed > 3.0f) {
-            // Modo alta velocidad (corriendo/bicicleta) - balance precisión/batería
-            interval = 6000; // 6 segundos
-            minInterval = 4000; // 4 segundos
-            minDistance = 4; // 4 metros (punto medio entre 5 y 3)
-            priority = Priority.PRIORITY_HIGH_ACCURACY;
-            Log.d(TAG, "GPS en modo ALTA VELOCIDAD (6s, HIGH_ACCURACY - " + String.format("%.1f", currentSpeed * 3.6) + " km/h)");
-        } else {
-            // Modo normal caminando - balance entre precisión y ahorro de batería
-            interval = 8000; // 8 segundos
-            minInterval = 5000; // 5 segundos
-            minDistance = 5; // 5 metros (punto medio entre 8 y 3)
-            priority = Priority.PRIORITY_BALANCED_POWER_ACCURACY;
-            Log.d(TAG, "GPS en modo CAMINANDO (8s, BALANCED, 5m resolución)");
-        }
-
-        return new LocationRequest.Builder(priority, interval)
-                .setMinUpdateIntervalMillis(minInterval)
-                .setMinUpdateDistanceMeters(minDistance)
+        SamplingPolicy.Decision decision = samplingPolicy.decidir(
+                new SamplingPolicy.Contexto(duenoViendoMapa, isLowBattery, gpsPausado));
+        decisionMuestreo = decision;
+        Log.d(TAG, "GPS en modo " + decision);
+
+        return new LocationRequest.Builder(aPriority(decision.getPrioridad()), decision.getIntervaloMs())
+                .setMinUpdateIntervalMillis(decision.getIntervaloMinimoMs())
+                .setMinUpdateDistanceMeters(decision.getDistanciaMinimaMetros())
                 .setWaitForAccurateLocation(false)
-                .setMaxUpdateDelayMillis(interval * 2) // Permitir batching del sistema
+                .setMaxUpdateDelayMillis(decision.getMaxRetrasoMs()) // Batching del sistema si nadie mira
                 .build();
     }
 
+    private static int aPriority(SamplingPolicy.Prioridad prioridad) {
+        switch (prioridad) {
+            case ALTA_PRECISION:
+                return Priority.PRIORITY_HIGH_ACCURACY;
+            case BAJO_CONSUMO:
+                return Priority.PRIORITY_LOW_POWER;
+            default:
+                return Priority.PRIORITY_BALANCED_POWER_ACCURACY;
+        }
+    }
+
+    /**
+     * Si nadie mira el mapa, las escrituras pueden esperar más y fusionarse entre ticks
+     */
+    private void ajustarVentanaEscrituras() {
+        writeCoalescer.setVentanaMs(duenoViendoMapa ? VENTANA_ESCRITURAS_MS : VENTANA_ESCRITURAS_SIN_DUENO_MS);
+    }
+
+    /**
+     * Re-registra el GPS solo si la política cambió de decisión de forma significativa
+     */
+    private void reevaluarMuestreo() {
+        SamplingPolicy.Decision nueva = samplingPolicy.decidir(
+                new SamplingPolicy.Contexto(duenoViendoMapa, isLowBattery, gpsPausado));
+        if (nueva.difiereDe(decisionMuestreo)) {
+            adjustLocationUpdates();
+        }
+    }
+
     /**
      * Ajusta las actualizaciones de ubicación dinámicamente
      */
@@ -616,6 +626,7 @@ public class LocationService extends Service {
         }
 
         lastLocation = location;
+        samplingPolicy.onFix(lat, lng, accuracy, location.getTime());
 
         // ===== VERIFICAR SI DEBE ENTRAR EN MODO PAUSA =====
         // COMPLETAMENTE DESHABILITADO: GPS Pause Mode causa pérdida de ubicaciones
@@ -652,12 +663,20 @@ public class LocationService extends Service {
             hasWarnedAboutSlowConnection = true;
         }
 
+        if (duenoViendoMapa) {
+            frameBatcher.agregar(lat, lng, accuracy, location.getSpeed(), location.getTime());
+        } else {
+            frameBatcher.descartar();
+        }
+
         if (now - lastWebSocketSendTime > intervaloWebSocket) {
             // SOLO enviar si dueño está viendo Y socket está conectado
             if (duenoViendoMapa && socketManager.isConnected()) {
                 Log.d(TAG, "📡 ENVIANDO WebSocket - duenoViendoMapa=" + duenoViendoMapa + ", connected=true, paseoId=" + currentReservaId);
-                socketManager.updateLocation(currentReservaId, lat, lng, accuracy);
+                int fixes = frameBatcher.getPendientes();
+                enviarFrameUbicacion(false);
                 lastWebSocketSendTime = now;
+                Log.v(TAG, "📦 Frame con " + fixes + " fixes (" + String.format("%.1f", frameBatcher.getBytesPorFix()) + " bytes/fix)");
                 Log.v(TAG, " WebSocket enviado exitosamente (próximo en " + (intervaloWebSocket / 1000) + "s)");
             } else if (!duenoViendoMapa) {
                 Log.d(TAG, " WebSocket PAUSADO - duenoViendoMapa=false (ahorro ~10% batería)");
@@ -696,16 +715,25 @@ public class LocationService extends Service {
             lastDistanceSaveTime = now;
         }
 
-        // Ajustar GPS si cambió la velocidad significativamente
-        if (Math.abs(currentSpeed - SPEED_THRESHOLD_MPS) < 0.5f) {
-            // Cerca del umbral, podría necesitar ajuste
-            adjustLocationUpdates();
-        }
+        // ===== 5. AJUSTAR MUESTREO SEGÚN EL MODELO DE MOVIMIENTO =====
+        // Recta o quieto => intervalos largos; giros/arranques o dueño mirando => más frecuente
+        reevaluarMuestreo();
+    }
 
-        // ===== OPTIMIZACIÓN ADICIONAL: Ajustar GPS según precisión =====
-        // Si tenemos mala precisión repetidamente, reducir frecuencia
-        if (accuracy > 100f) {
-            adjustLocationUpdates();
+    /**
+     * Envía por WebSocket los fixes acumulados en un solo frame binario.
+     *
+     * @param incluirUltima si no hay fixes pendientes, manda la última ubicación conocida
+     *                      (reconexión o dueño que recién abre el mapa)
+     */
+    private void enviarFrameUbicacion(boolean incluirUltima) {
+        if (incluirUltima && frameBatcher.isEmpty() && lastLocation != null) {
+            frameBatcher.agregar(lastLocation.getLatitude(), lastLocation.getLongitude(),
+                    lastLocation.getAccuracy(), lastLocation.getSpeed(), lastLocation.getTime());
+        }
+        byte[] frame = frameBatcher.tomarFrame();
+        if (frame != null) {
+            socketManager.sendLocationFrame(currentReservaId, frame);
         }
     }
 
@@ -722,8 +750,7 @@ public class LocationService extends Service {
         userUpdates.put("updated_at", Timestamp.now());
         userUpdates.put("estado", "online");  // Marcar como online
 
-        db.collection("usuarios").document(userId)
-                .update(userUpdates)
+        writeCoalescer.actualizar(db.collection("usuarios").document(userId), userUpdates)
                 .addOnFailureListener(e -> Log.w(TAG, "Error actualizando ubicación usuario", e));
 
         // ===== ACTUALIZAR 2: Colección 'paseadores_search' (CRÍTICO para BusquedaPaseadoresActivity) =====
@@ -733,8 +760,7 @@ public class LocationService extends Service {
         searchUpdates.put("estado", "online");
         searchUpdates.put("updated_at", Timestamp.now());
 
-        db.collection("paseadores_search").document(userId)
-                .update(searchUpdates)
+        writeCoalescer.actualizar(db.collection("paseadores_search").document(userId), searchUpdates)
                 .addOnFailureListener(e -> Log.w(TAG, "Error actualizando en paseadores_search", e));
 
         // ===== ACTUALIZAR 3: Reserva (CRÍTICO - Esto es lo que ve el mapa del dueño) =====
@@ -757,8 +783,7 @@ public class LocationService extends Service {
                 reservaUpdates.put("paseador_quieto_desde", null);
             }
 
-            db.collection("reservas").document(currentReservaId)
-                    .update(reservaUpdates)
+            writeCoalescer.actualizar(db.collection("reservas").document(currentReservaId), reservaUpdates)
                     .addOnSuccessListener(aVoid -> {
                         Log.v(TAG, "✅ ubicacion_actual actualizada en reserva (fallback Firestore para mapa)");
                     })
@@ -768,7 +793,7 @@ public class LocationService extends Service {
                     });
         }
 
-        Log.d(TAG, "📍 Ubicación actualizada en: usuarios + paseadores_search + reserva (" + lat + ", " + lng + ")");
+        Log.d(TAG, "📍 Ubicación encolada para: usuarios + paseadores_search + reserva (" + lat + ", " + lng + ")");
     }
 
     /**
@@ -794,10 +819,9 @@ public class LocationService extends Service {
             Log.v(TAG, "📍 [ACTIVO] Agregando ubicación sin filtro de 3m (primeros 8 minutos)");
         } else {
             // Después de 8 minutos quieto: aplicar filtro (pero ya habría retornado arriba)
-            if (!locationBatch.isEmpty()) {
-                Map<String, Object> ultimaUbicacion = locationBatch.get(locationBatch.size() - 1);
-                double lastLat = (double) ultimaUbicacion.get("lat");
-                double lastLng = (double) ultimaUbicacion.get("lng");
+            if (hasLastBatchPoint) {
+                double lastLat = lastBatchLat;
+                double lastLng = lastBatchLng;
 
                 float[] results = new float[1];
                 Location.distanceBetween(lastLat, lastLng,
@@ -811,21 +835,40 @@ public class LocationService extends Service {
             }
         }
 
-        // ===== OPTIMIZACIÓN: Comprimir precisión de coordenadas =====
-        // 6 decimales = ~11cm de precisión (suficiente para tracking)
-        // Reduce tamaño de datos en ~30-40%
-        double latRedondeada = Math.round(location.getLatitude() * 1000000.0) / 1000000.0;
-        double lngRedondeada = Math.round(location.getLongitude() * 1000000.0) / 1000000.0;
-        float accRedondeada = Math.round(location.getAccuracy() * 10.0f) / 10.0f; // 1 decimal
-
-        Map<String, Object> puntoMap = new HashMap<>();
-        puntoMap.put("lat", latRedondeada);
-        puntoMap.put("lng", lngRedondeada);
-        puntoMap.put("acc", accRedondeada);
-        puntoMap.put("ts", Timestamp.now());
-        puntoMap.put("speed", Math.round(location.getSpeed() * 100.0f) / 100.0f); // 2 decimales
+        // ===== SIMPLIFICACIÓN: solo pasan al journal los puntos que cambian la forma de la ruta =====
+        // Recta o quieto => se descartan los intermedios (menos escrituras, chunks y polyline más chicos)
+        // El fix crudo queda en disco antes de simplificar (ver SimplificadorDurable)
+        if (simplificadorDurable == null) {
+            Log.w(TAG, "⚠️ Journal no inicializado, ubicación no guardada");
+            return;
+        }
+        try {
+            simplificadorDurable.agregar(location.getLatitude(), location.getLongitude(),
+                    location.getAccuracy(), location.getSpeed(), System.currentTimeMillis());
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Error escribiendo fix crudo en journal", e);
+        }
+    }
 
-        locationBatch.add(puntoMap);
+    /**
+     * Salida del simplificador: escribe el punto en el journal y decide si drenar el batch
+     */
+    private void persistirPuntoRuta(double lat, double lng, float accuracy, float speed, long tiempoMs) {
+        // ===== DURABILIDAD: Journal en disco ANTES de enviar =====
+        // TrackChunkCodec conserva 6 decimales (~11cm) en coordenadas, 1 en precisión y 2 en velocidad
+        if (trackJournal == null) {
+            Log.w(TAG, "⚠️ Journal no inicializado, ubicación no guardada");
+            return;
+        }
+        try {
+            trackJournal.append(lat, lng, accuracy, speed, tiempoMs);
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Error escribiendo en journal de ubicaciones", e);
+            return;
+        }
+        lastBatchLat = lat;
+        lastBatchLng = lng;
+        hasLastBatchPoint = true;
 
         long now = System.currentTimeMillis();
 
@@ -842,109 +885,168 @@ public class LocationService extends Service {
                     BATCH_TIMEOUT_MS;       // 120s parado
         }
 
-        boolean shouldSend = locationBatch.size() >= BATCH_SIZE ||
+        int batchSize = duenoViendoMapa ? BATCH_SIZE : BATCH_SIZE_SIN_DUENO;
+        boolean shouldSend = journalFlusher.getPendientes() >= batchSize ||
                             (now - lastBatchSendTime) >= timeoutDinamico;
 
         if (shouldSend) {
-            sendLocationBatch();
+            // Sin flush del simplificador: este método corre dentro de su emisión
+            drenarJournal();
         }
     }
 
     /**
-     * Envía batch de ubicaciones a Firestore con reintentos exponenciales
-     * Usa subcollection si hay > 500 puntos para evitar límite de 1MB
+     * Pide al flusher que drene el journal hacia Firestore (en segundo plano, en orden).
+     * Los reintentos con backoff exponencial los maneja TrackJournalFlusher sin descartar puntos.
      */
     private void sendLocationBatch() {
-        // Primero, intentar reenviar batch fallido anterior (si existe)
-        if (failedBatch != null && !failedBatch.isEmpty()) {
-            long now = System.currentTimeMillis();
-            long timeSinceLastRetry = now - lastBatchRetryTime;
-            long retryDelay = BATCH_RETRY_DELAY_MS * (1L << batchRetryCount);  // Exponencial: 2s, 4s, 8s
-
-            if (timeSinceLastRetry > retryDelay && batchRetryCount < MAX_BATCH_RETRIES) {
-                Log.w(TAG, "🔄 Reintentando batch fallido (" + (batchRetryCount + 1) + "/" + MAX_BATCH_RETRIES + ") en " + retryDelay + "ms");
-                sendBatchToFirestore(failedBatch);
-                lastBatchRetryTime = now;
-                batchRetryCount++;
-                return;  // No procesar nuevo batch hasta que se resuelva el fallido
-            } else if (batchRetryCount >= MAX_BATCH_RETRIES) {
-                Log.e(TAG, "❌ Batch fallido después de " + MAX_BATCH_RETRIES + " reintentos, descartando " + failedBatch.size() + " ubicaciones");
-                failedBatch = null;
-                batchRetryCount = 0;
-            }
-        }
-
-        if (locationBatch.isEmpty()) return;
+        if (journalFlusher == null) return;
+        simplificadorDurable.flush(); // Incluir la última posición aunque siga en la ventana
+        drenarJournal();
+    }
 
-        List<Map<String, Object>> batchToSend = new ArrayList<>(locationBatch);
-        locationBatch.clear();
+    private void drenarJournal() {
         lastBatchSendTime = System.currentTimeMillis();
-
-        sendBatchToFirestore(batchToSend);
+        journalFlusher.flush();
     }
 
     /**
-     * Helper method que actualiza Firestore con el batch
-     * Registra fallos para reintentos exponenciales
+     * Abre (o recupera) el journal de la reserva. Si ya existía, su cola pendiente
+     * se reenvía de inmediato: son puntos de una ejecución anterior que murió.
      */
-    private void sendBatchToFirestore(List<Map<String, Object>> batchToSend) {
-        DocumentReference reservaRef = db.collection("reservas").document(currentReservaId);
+    private void abrirJournal(String reservaId) {
+        if (journalFlusher != null && reservaId.equals(journalFlusher.getReservaId())) {
+            return; // Ya abierto (startTracking repetido para el mismo paseo)
+        }
+        cerrarJournal(false);
+        try {
+            trackJournal = TrackJournal.abrir(archivoJournal(reservaId));
+        } catch (IOException e) {
+            Log.e(TAG, "❌ No se pudo abrir journal en disco, usando memoria", e);
+            trackJournal = TrackJournal.enMemoria();
+        }
+        journalFlusher = new TrackJournalFlusher(db, writeCoalescer, reservaId, trackJournal);
+        hasLastBatchPoint = false;
+        simplificadorDurable = new SimplificadorDurable(abrirJournalCrudo(reservaId), trackSimplifier);
 
-        // ===== MIGRACIÓN A SUBCOLLECTION SI ES NECESARIO =====
-        if (usandoSubcollection || ubicacionesCount > MAX_UBICACIONES_IN_ARRAY) {
-            if (!usandoSubcollection) {
-                Log.d(TAG, "🔄 Migrando a subcollection: se alcanzaron " + ubicacionesCount + " ubicaciones");
-                usandoSubcollection = true;
+        int recuperados = simplificadorDurable.recuperar();
+        if (recuperados > 0) {
+            Log.w(TAG, "♻️ " + recuperados + " fixes crudos de la ventana recuperados del journal");
+        }
+        int pendientes = trackJournal.pendingCount();
+        if (pendientes > 0) {
+            Log.w(TAG, "♻️ Reenviando " + pendientes + " ubicaciones pendientes del journal");
+            journalFlusher.flush();
+        }
+    }
+
+    /**
+     * @param finDelPaseo si es true, el journal se elimina cuando termine de drenarse y
+     *                    recién ahí se calcula el resumen de ruta definitivo
+     */
+    private void cerrarJournal(boolean finDelPaseo) {
+        if (journalFlusher != null) {
+            if (finDelPaseo) {
+                String reservaId = currentReservaId;
+                double distancia = distanciaAcumuladaMetros;
+                simplificadorDurable.flushYEliminar();
+                journalFlusher.flushYEliminar(() ->
+                        ResumenRutaFinal.recalcular(this, db, reservaId, distancia));
+            } else {
+                // La ventana queda en el journal crudo y se recupera al reabrir
+                simplificadorDurable.cerrar();
+                journalFlusher.flush();
             }
-            // Guardar en subcollection
-            guardarEnSubcollection(batchToSend);
-        } else {
-            // Guardar en array principal con reintentos
-            reservaRef.update("ubicaciones", FieldValue.arrayUnion(batchToSend.toArray()))
-                    .addOnSuccessListener(aVoid -> {
-                        ubicacionesCount += batchToSend.size();
-                        failedBatch = null;  // Clear failed batch on success
-                        batchRetryCount = 0;
-                        Log.d(TAG, "✅ Batch enviado: " + batchToSend.size() + " ubicaciones (total: " + ubicacionesCount + ")");
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.w(TAG, "❌ Error guardando batch: " + e.getMessage() + " - Almacenando para reintentos");
-                        // Almacenar para reintentos exponenciales
-                        failedBatch = new ArrayList<>(batchToSend);
-                        lastBatchRetryTime = System.currentTimeMillis();
-                        batchRetryCount = 0;
-
-                        // También intentar guardado individual como fallback final
-                        Log.w(TAG, "Intentando guardar puntos individualmente como fallback final...");
-                        for (Map<String, Object> punto : batchToSend) {
-                            reservaRef.update("ubicaciones", FieldValue.arrayUnion(punto))
-                                    .addOnSuccessListener(v -> ubicacionesCount++)
-                                    .addOnFailureListener(e2 -> Log.e(TAG, "Error guardando punto individual", e2));
-                        }
-                    });
+            trackSimplifier.reset();
+        }
+        journalFlusher = null;
+        trackJournal = null;
+        simplificadorDurable = null;
+    }
+
+    private TrackJournal abrirJournalCrudo(String reservaId) {
+        try {
+            return TrackJournal.abrir(archivoJournalCrudo(reservaId));
+        } catch (IOException e) {
+            Log.e(TAG, "❌ No se pudo abrir journal crudo en disco, usando memoria", e);
+            return TrackJournal.enMemoria();
         }
     }
 
     /**
-     * Guarda ubicaciones en subcollection para evitar límite de 1MB
+     * Tras un reinicio del servicio (START_STICKY), reenvía los journals de paseos
+     * que ya terminaron y quedaron con puntos sin confirmar.
+     *
+     * Tras un kill el intent llega null y no se sabe qué paseo sigue activo, así que se
+     * consulta el estado de cada reserva en el servidor: si sigue EN_CURSO el journal se
+     * deja intacto, porque ACTION_START_TRACKING lo va a reabrir con {@link #abrirJournal}
+     * y un replay en paralelo podría eliminar el archivo en el que se siguen escribiendo fixes.
      */
-    private void guardarEnSubcollection(List<Map<String, Object>> ubicaciones) {
-        DocumentReference reservaRef = db.collection("reservas").document(currentReservaId);
+    private void reanudarJournalsPendientes() {
+        if (journalsReanudados) return;
+        journalsReanudados = true;
+
+        File dir = new File(getFilesDir(), TrackJournal.DIRECTORIO);
+        File[] archivos = dir.listFiles((d, name) -> name.endsWith(TrackJournal.EXTENSION));
+        if (archivos == null) return;
+
+        for (File archivo : archivos) {
+            String nombre = archivo.getName();
+            String reservaId = nombre.substring(0, nombre.length() - TrackJournal.EXTENSION.length());
+            if (reservaId.equals(currentReservaId)) continue;
+            db.collection("reservas").document(reservaId).get(Source.SERVER)
+                    .addOnSuccessListener(snapshot -> {
+                        if (!snapshot.exists()) return;
+                        String estado = snapshot.getString("estado");
+                        if ("EN_CURSO".equals(estado) || reservaId.equals(currentReservaId)) {
+                            Log.d(TAG, "Journal de reserva " + reservaId + " sigue activo, se reabre al reanudar el tracking");
+                            return;
+                        }
+                        replayJournalTerminado(archivo, reservaId, estado);
+                    })
+                    .addOnFailureListener(e ->
+                            Log.w(TAG, "No se pudo verificar reserva " + reservaId + ", journal pendiente para el próximo arranque", e));
+        }
+    }
 
-        WriteBatch batch = db.batch();
-        for (Map<String, Object> punto : ubicaciones) {
-            // Usar timestamp como ID del documento
-            String docId = String.valueOf(System.currentTimeMillis()) + "_" + secureRandom.nextDouble();
-            DocumentReference ubicacionRef = reservaRef.collection("ubicaciones_historico").document(docId);
-            batch.set(ubicacionRef, punto);
+    /**
+     * Drena el journal de un paseo que ya no está EN_CURSO (nadie lo va a reabrir) y lo elimina.
+     */
+    private void replayJournalTerminado(File archivo, String reservaId, String estado) {
+        try {
+            TrackJournal journal = TrackJournal.abrir(archivo);
+            File archivoCrudo = archivoJournalCrudo(reservaId);
+            if (archivoCrudo.exists()) {
+                // La ventana que no llegó a simplificarse se agrega al final de la ruta
+                TrackSimplifier simplificador = new TrackSimplifier(TOLERANCIA_RUTA_METROS, MAX_VENTANA_SIMPLIFICACION,
+                        (lat, lng, accuracy, speed, tiempoMs) -> {
+                            try {
+                                journal.append(lat, lng, accuracy, speed, tiempoMs);
+                            } catch (IOException e) {
+                                Log.e(TAG, "❌ Error recuperando ventana de " + reservaId, e);
+                            }
+                        });
+                SimplificadorDurable ventana = new SimplificadorDurable(TrackJournal.abrir(archivoCrudo), simplificador);
+                ventana.recuperar();
+                ventana.flushYEliminar();
+            }
+            Log.w(TAG, "♻️ Replay de journal de reserva " + reservaId + " (" + estado + "): "
+                    + journal.pendingCount() + " pendientes");
+            Runnable alVaciar = "COMPLETADO".equals(estado)
+                    ? () -> ResumenRutaFinal.recalcular(this, db, reservaId, 0)
+                    : null;
+            new TrackJournalFlusher(db, writeCoalescer, reservaId, journal).flushYEliminar(alVaciar);
+        } catch (IOException e) {
+            Log.e(TAG, "Error abriendo journal " + archivo.getName(), e);
         }
+    }
 
-        batch.commit()
-                .addOnSuccessListener(aVoid -> {
-                    ubicacionesCount += ubicaciones.size();
-                    Log.d(TAG, " Batch guardado en subcollection: " + ubicaciones.size() + " puntos (total: " + ubicacionesCount + ")");
-                })
-                .addOnFailureListener(e -> Log.e(TAG, " Error guardando en subcollection", e));
+    private File archivoJournal(String reservaId) {
+        return new File(new File(getFilesDir(), TrackJournal.DIRECTORIO), reservaId + TrackJournal.EXTENSION);
+    }
+
+    private File archivoJournalCrudo(String reservaId) {
+        return new File(new File(getFilesDir(), TrackJournal.DIRECTORIO), reservaId + TrackJournal.EXTENSION_CRUDO);
     }
 
     /**
@@ -962,10 +1064,18 @@ public class LocationService extends Service {
         Map<String, Object> updates = new HashMap<>();
         updates.put("distancia_acumulada_metros", distanciaAcumuladaMetros);
         updates.put("distancia_km", Math.round(distanciaAcumuladaMetros / 10.0) / 100.0); // Redondear a 2 decimales
-
-        reservaRef.update(updates)
+        // Métrica de simplificación (viaja en la misma escritura, sin costo extra)
+        updates.put("ruta_puntos_crudos", trackSimplifier.getPuntosRecibidos());
+        updates.put("ruta_puntos_guardados", trackSimplifier.getPuntosEmitidos());
+        // Métrica del coalescer: escrituras pedidas vs. escrituras de documento emitidas
+        updates.put("escrituras_solicitadas", writeCoalescer.getEscriturasSolicitadas());
+        updates.put("escrituras_emitidas", writeCoalescer.getEscriturasEmitidas());
+
+        writeCoalescer.actualizar(reservaRef, updates)
                 .addOnSuccessListener(aVoid ->
-                    Log.v(TAG, " Distancia guardada: " + String.format("%.2f", distanciaAcumuladaMetros / 1000) + " km")
+                    Log.v(TAG, " Distancia guardada: " + String.format("%.2f", distanciaAcumuladaMetros / 1000) + " km"
+                            + " | ruta simplificada " + String.format("%.1f", trackSimplifier.getRatio()) + ":1"
+                            + " | escrituras ahorradas " + writeCoalescer.getEscriturasAhorradas())
                 )
                 .addOnFailureListener(e -> Log.w(TAG, "Error guardando distancia", e));
     }
@@ -987,8 +1097,10 @@ public class LocationService extends Service {
             actualizarNotificacion("Paseo en pausa - GPS en espera");
 
             // Guardar estado en Firestore
-            db.collection("reservas").document(currentReservaId)
-                    .update("gps_pausado", true, "tiempo_pausa_inicio", System.currentTimeMillis())
+            Map<String, Object> pausa = new HashMap<>();
+            pausa.put("gps_pausado", true);
+            pausa.put("tiempo_pausa_inicio", System.currentTimeMillis());
+            writeCoalescer.actualizar(db.collection("reservas").document(currentReservaId), pausa)
                     .addOnFailureListener(e -> Log.w(TAG, "Error guardando estado pausa", e));
 
             // Programar chequeo periódico con ubicación de red (sin GPS)
@@ -1013,8 +1125,10 @@ public class LocationService extends Service {
 
         // Actualizar estado en Firestore
         long tiempoPausa = System.currentTimeMillis() - ultimoMovimientoDetectado;
-        db.collection("reservas").document(currentReservaId)
-                .update("gps_pausado", false, "ultima_pausa_duracion_ms", tiempoPausa)
+        Map<String, Object> reanudacion = new HashMap<>();
+        reanudacion.put("gps_pausado", false);
+        reanudacion.put("ultima_pausa_duracion_ms", tiempoPausa);
+        writeCoalescer.actualizar(db.collection("reservas").document(currentReservaId), reanudacion)
                 .addOnFailureListener(e -> Log.w(TAG, "Error actualizando estado pausa", e));
 
         // Resetear timer de pausa
@@ -1130,12 +1244,19 @@ public class LocationService extends Service {
             Log.d(TAG, " Listener de estado removido");
         }
 
-        // Enviar batch final antes de detener
-        sendLocationBatch();
+        // Fin del paseo: lo que quede sale sin esperar ventana
+        writeCoalescer.setVentanaMs(0);
+        writeCoalescer.flush();
+
+        // Enviar batch final antes de detener: drenar el journal y eliminarlo cuando todo esté confirmado
+        cerrarJournal(true);
 
         // ===== GUARDAR DISTANCIA FINAL - SOLO SI currentReservaId NO ES NULL =====
         if (currentReservaId != null && !currentReservaId.isEmpty()) {
             guardarDistanciaAcumulada();
+            Log.i(TAG, "📊 Escrituras del paseo: " + writeCoalescer.getEscriturasSolicitadas() + " solicitadas, "
+                    + writeCoalescer.getEscriturasEmitidas() + " emitidas en " + writeCoalescer.getCommits()
+                    + " batches (" + writeCoalescer.getCamposDeduplicados() + " campos deduplicados)");
         } else {
             Log.w(TAG, " No se guardó distancia final - currentReservaId es null");
         }
@@ -1178,8 +1299,9 @@ public class LocationService extends Service {
             socketConnectionListener = null;
         }
 
-        // Asegurar limpieza de recursos
-        sendLocationBatch();
+        // Asegurar limpieza de recursos (si no hubo stopTracking, el journal queda en disco para replay)
+        cerrarJournal(false);
+        writeCoalescer.flush();
         if (batteryReceiver != null) {
             try {
                 unregisterReceiver(batteryReceiver);
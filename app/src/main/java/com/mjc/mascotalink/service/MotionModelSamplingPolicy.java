@@ -0,0 +1,107 @@
+package com.mjc.mascotalink.service;
+
+/**
+ * Política de muestreo basada en el modelo de movimiento ({@link ConstantVelocityFilter}).
+ *
+ * En vez de umbrales fijos de velocidad, predice cuándo el próximo fix aportaría
+ * información útil. Con ΔP la incertidumbre de posición que el modelo acumula desde
+ * el último fix y R la varianza del GPS, un fix nuevo resuelve ΔP² / (ΔP + R); se pide
+ * cuando eso alcanza la tolerancia de la ruta. Consecuencias:
+ * - Recta a velocidad constante o quieto: el modelo predice bien, el intervalo se alarga.
+ * - Giros y arranques: sube la varianza de aceleración, el intervalo se acorta.
+ * - GPS impreciso (R grande): un fix aporta poco, se pide con menos frecuencia.
+ */
+public class MotionModelSamplingPolicy implements SamplingPolicy {
+
+    static final long INTERVALO_MIN_MS = 3000;
+    static final long INTERVALO_MAX_DUENO_MS = 10000;   // El dueño mira el mapa en vivo
+    static final long INTERVALO_MAX_MS = 45000;
+    private static final long PASO_BUSQUEDA_MS = 1000;
+    private static final long INTERVALO_SIN_MODELO_MS = 5000;
+    private static final long INTERVALO_PAUSA_MS = 60000;
+    private static final long MAX_RETRASO_BATCHING_MS = 120000; // Igual que el timeout del batch de historial
+
+    private static final float TOLERANCIA_BASE_M = 6f;
+    private static final float FACTOR_TOLERANCIA_SIN_DUENO = 1.5f;
+    private static final float FACTOR_TOLERANCIA_BATERIA_BAJA = 2f;
+
+    private static final long INTERVALO_ALTA_PRECISION_MS = 6000;
+    private static final long INTERVALO_BAJO_CONSUMO_MS = 25000;
+
+    private final ConstantVelocityFilter filtro = new ConstantVelocityFilter();
+
+    @Override
+    public void onFix(double lat, double lng, float accuracy, long tiempoMs) {
+        filtro.update(lat, lng, accuracy, tiempoMs);
+    }
+
+    @Override
+    public Decision decidir(Contexto contexto) {
+        if (contexto.isGpsPausado()) {
+            return new Decision(INTERVALO_PAUSA_MS, INTERVALO_PAUSA_MS * 3 / 4, 50f,
+                    MAX_RETRASO_BATCHING_MS, Prioridad.BAJO_CONSUMO, "PAUSA");
+        }
+        if (!filtro.isInicializado()) {
+            return new Decision(INTERVALO_SIN_MODELO_MS, INTERVALO_MIN_MS, 0f,
+                    INTERVALO_SIN_MODELO_MS, Prioridad.ALTA_PRECISION, "SIN MODELO");
+        }
+
+        float tolerancia = TOLERANCIA_BASE_M;
+        if (!contexto.isDuenoViendoMapa()) tolerancia *= FACTOR_TOLERANCIA_SIN_DUENO;
+        if (contexto.isBateriaBaja()) tolerancia *= FACTOR_TOLERANCIA_BATERIA_BAJA;
+        // No tiene sentido muestrear detalle más fino que el ruido del propio GPS
+        tolerancia = Math.max(tolerancia, filtro.getUltimaPrecision());
+
+        long maximo = contexto.isDuenoViendoMapa() ? INTERVALO_MAX_DUENO_MS : INTERVALO_MAX_MS;
+        long intervalo = intervaloInformativo(tolerancia, maximo);
+
+        Prioridad prioridad;
+        if (contexto.isBateriaBaja()) {
+            prioridad = intervalo <= INTERVALO_ALTA_PRECISION_MS ? Prioridad.BALANCEADA : Prioridad.BAJO_CONSUMO;
+        } else if (intervalo <= INTERVALO_ALTA_PRECISION_MS) {
+            prioridad = Prioridad.ALTA_PRECISION;
+        } else if (intervalo >= INTERVALO_BAJO_CONSUMO_MS) {
+            prioridad = Prioridad.BAJO_CONSUMO;
+        } else {
+            prioridad = Prioridad.BALANCEADA;
+        }
+
+        // Si nadie mira en vivo, el sistema puede entregar los fixes en lote (menos wakeups);
+        // el journal los persiste igual y el historial tolera ese retraso
+        long maxRetraso = contexto.isDuenoViendoMapa()
+                ? intervalo
+                : Math.min(intervalo * 4, MAX_RETRASO_BATCHING_MS);
+
+        String motivo = String.format(java.util.Locale.US, "MODELO v=%.1fm/s q=%.4f acc=%dm",
+                filtro.getVelocidad(), filtro.getVarianzaAceleracion(), (int) filtro.getUltimaPrecision());
+        return new Decision(intervalo, Math.max(INTERVALO_MIN_MS * 2 / 3, intervalo * 2 / 3),
+                tolerancia / 2, maxRetraso, prioridad, motivo);
+    }
+
+    /**
+     * Menor intervalo (en pasos de 1s) en el que un nuevo fix resolvería al menos
+     * {@code tolerancia} metros de incertidumbre acumulada por el movimiento.
+     */
+    long intervaloInformativo(float tolerancia, long maximoMs) {
+        float acc = filtro.getUltimaPrecision();
+        double r = 2.0 * acc * acc; // Varianza del fix en ambos ejes
+        double umbral = (double) tolerancia * tolerancia;
+        double actual = filtro.varianzaPosicionPredicha(0);
+        for (long dt = INTERVALO_MIN_MS; dt < maximoMs; dt += PASO_BUSQUEDA_MS) {
+            double acumulada = filtro.varianzaPosicionPredicha(dt / 1000.0) - actual;
+            if (acumulada * acumulada / (acumulada + r) >= umbral) {
+                return dt;
+            }
+        }
+        return maximoMs;
+    }
+
+    ConstantVelocityFilter getFiltro() {
+        return filtro;
+    }
+
+    @Override
+    public void reset() {
+        filtro.reset();
+    }
+}
@@ -0,0 +1,72 @@
+package com.mjc.mascotalink.service;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.mjc.mascotalink.util.ResumenRuta;
+import com.mjc.mascotalink.util.ResumenRutaCache;
+import com.mjc.mascotalink.util.RutaPaseoParser;
+import com.mjc.mascotalink.util.TrackBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reemplaza el {@link ResumenRuta} provisional de un paseo COMPLETADO por el definitivo.
+ *
+ * Se ejecuta cuando {@link TrackJournalFlusher} terminó de drenar el journal, así que la
+ * ruta en Firestore ya está completa: los chunks del documento más los de la subcolección
+ * {@code ubicaciones_historico} (paseos largos), en orden de seq.
+ */
+final class ResumenRutaFinal {
+
+    private static final String TAG = "ResumenRutaFinal";
+    private static final String SUBCOLECCION_HISTORICO = "ubicaciones_historico";
+
+    private ResumenRutaFinal() {
+    }
+
+    /**
+     * @param distanciaMedidaMetros distancia acumulada por LocationService; si es &lt;= 0 se
+     *                              usa {@code distancia_acumulada_metros} de la reserva
+     */
+    static void recalcular(Context context, FirebaseFirestore db, String reservaId, double distanciaMedidaMetros) {
+        Context appContext = context.getApplicationContext();
+        DocumentReference reservaRef = db.collection("reservas").document(reservaId);
+        reservaRef.get().addOnSuccessListener(reserva -> {
+            if (!reserva.exists() || !"COMPLETADO".equals(reserva.getString("estado"))) return;
+
+            reservaRef.collection(SUBCOLECCION_HISTORICO).orderBy("seq_inicio").get()
+                    .addOnSuccessListener(historico -> {
+                        List<Object> chunks = new ArrayList<>();
+                        Object enDocumento = reserva.get(RutaPaseoParser.CAMPO_CHUNKS);
+                        if (enDocumento instanceof List) chunks.addAll((List<?>) enDocumento);
+                        for (DocumentSnapshot doc : historico.getDocuments()) {
+                            Object chunk = doc.get("chunk");
+                            if (chunk != null) chunks.add(chunk);
+                        }
+
+                        TrackBuffer ruta = RutaPaseoParser.parsear(reserva.get(RutaPaseoParser.CAMPO_UBICACIONES), chunks);
+                        double distancia = distanciaMedidaMetros;
+                        if (distancia <= 0) {
+                            Double guardada = reserva.getDouble("distancia_acumulada_metros");
+                            distancia = guardada != null ? guardada : 0;
+                        }
+                        ResumenRuta resumen = ResumenRuta.calcular(ruta, distancia);
+
+                        reservaRef.update(ResumenRuta.CAMPO, resumen.toMap())
+                                .addOnSuccessListener(unused -> {
+                                    ResumenRutaCache.guardar(appContext, reservaId, resumen);
+                                    Log.d(TAG, "✅ Resumen de ruta definitivo para " + reservaId + ": "
+                                            + resumen.getPuntos() + " puntos (" + historico.size() + " chunks históricos)");
+                                })
+                                .addOnFailureListener(e ->
+                                        Log.e(TAG, "❌ Error guardando resumen de ruta de " + reservaId, e));
+                    })
+                    .addOnFailureListener(e -> Log.e(TAG, "❌ Error leyendo histórico de " + reservaId, e));
+        }).addOnFailureListener(e -> Log.e(TAG, "❌ Error leyendo reserva " + reservaId, e));
+    }
+}
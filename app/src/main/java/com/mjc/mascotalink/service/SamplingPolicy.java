@@ -0,0 +1,114 @@
+package com.mjc.mascotalink.service;
+
+/**
+ * Política de muestreo GPS: decide cada cuánto y con qué prioridad pedir fixes.
+ *
+ * LocationService le pasa cada fix aceptado y, después de cada uno, le pide una
+ * {@link Decision}; solo re-solicita actualizaciones al proveedor si la decisión
+ * cambia de forma significativa ({@link Decision#difiereDe(Decision)}).
+ * Implementaciones puras de Java para poder reproducirlas con tracks grabados.
+ */
+public interface SamplingPolicy {
+
+    enum Prioridad {
+        ALTA_PRECISION,
+        BALANCEADA,
+        BAJO_CONSUMO
+    }
+
+    void onFix(double lat, double lng, float accuracy, long tiempoMs);
+
+    Decision decidir(Contexto contexto);
+
+    void reset();
+
+    /**
+     * Señales externas al movimiento que condicionan el muestreo.
+     */
+    final class Contexto {
+        private final boolean duenoViendoMapa;
+        private final boolean bateriaBaja;
+        private final boolean gpsPausado;
+
+        public Contexto(boolean duenoViendoMapa, boolean bateriaBaja, boolean gpsPausado) {
+            this.duenoViendoMapa = duenoViendoMapa;
+            this.bateriaBaja = bateriaBaja;
+            this.gpsPausado = gpsPausado;
+        }
+
+        public boolean isDuenoViendoMapa() {
+            return duenoViendoMapa;
+        }
+
+        public boolean isBateriaBaja() {
+            return bateriaBaja;
+        }
+
+        public boolean isGpsPausado() {
+            return gpsPausado;
+        }
+    }
+
+    /**
+     * Parámetros para construir el LocationRequest.
+     */
+    final class Decision {
+        // Por debajo de este cambio relativo no vale la pena re-registrar el callback
+        private static final double CAMBIO_RELATIVO_MINIMO = 0.25;
+
+        private final long intervaloMs;
+        private final long intervaloMinimoMs;
+        private final float distanciaMinimaMetros;
+        private final long maxRetrasoMs;
+        private final Prioridad prioridad;
+        private final String motivo;
+
+        public Decision(long intervaloMs, long intervaloMinimoMs, float distanciaMinimaMetros,
+                        long maxRetrasoMs, Prioridad prioridad, String motivo) {
+            this.intervaloMs = intervaloMs;
+            this.intervaloMinimoMs = intervaloMinimoMs;
+            this.distanciaMinimaMetros = distanciaMinimaMetros;
+            this.maxRetrasoMs = maxRetrasoMs;
+            this.prioridad = prioridad;
+            this.motivo = motivo;
+        }
+
+        public long getIntervaloMs() {
+            return intervaloMs;
+        }
+
+        public long getIntervaloMinimoMs() {
+            return intervaloMinimoMs;
+        }
+
+        public float getDistanciaMinimaMetros() {
+            return distanciaMinimaMetros;
+        }
+
+        public long getMaxRetrasoMs() {
+            return maxRetrasoMs;
+        }
+
+        public Prioridad getPrioridad() {
+            return prioridad;
+        }
+
+        public String getMotivo() {
+            return motivo;
+        }
+
+        public boolean difiereDe(Decision otra) {
+            if (otra == null) return true;
+            if (prioridad != otra.prioridad) return true;
+            double cambio = Math.abs(intervaloMs - otra.intervaloMs) / (double) Math.max(1, otra.intervaloMs);
+            return cambio >= CAMBIO_RELATIVO_MINIMO
+                    || (maxRetrasoMs > intervaloMs) != (otra.maxRetrasoMs > otra.intervaloMs);
+        }
+
+        @Override
+        public String toString() {
+            return motivo + " (" + (intervaloMs / 1000) + "s, " + prioridad
+                    + ", batching " + (maxRetrasoMs / 1000) + "s, " + (int) distanciaMinimaMetros + "m)";
+        }
+    }
+}
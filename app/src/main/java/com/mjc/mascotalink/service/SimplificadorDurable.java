@@ -0,0 +1,90 @@
+package com.mjc.mascotalink.service;
+
+import com.mjc.mascotalink.util.TrackBuffer;
+import com.mjc.mascotalink.util.TrackSimplifier;
+
+import java.io.IOException;
+
+/**
+ * {@link TrackSimplifier} cuya ventana sobrevive a un kill del servicio.
+ *
+ * Cada fix crudo se escribe primero en un {@link TrackJournal} propio (el "crudo") y recién
+ * después pasa por el simplificador. Lo que el simplificador ya resolvió (emitido hacia el
+ * journal de la ruta o descartado) se confirma en el crudo; los fixes que siguen en la
+ * ventana quedan pendientes ahí y {@link #recuperar} los vuelve a simplificar al reabrir.
+ *
+ * Los puntos de la ruta siguen saliendo simplificados hacia el journal de la ruta (sus seq
+ * consecutivos son los que usa RutaPaseoParser para descartar reenvíos).
+ * Si el proceso muere entre la emisión de un punto y su confirmación en el crudo, ese punto
+ * se vuelve a emitir al recuperar: queda duplicado, pero no se pierde.
+ *
+ * No es thread-safe; se usa desde el hilo de LocationService.
+ */
+public class SimplificadorDurable {
+
+    private final TrackJournal crudo;
+    private final TrackSimplifier simplificador;
+    private long ultimoSeq = -1;
+
+    /**
+     * @param simplificador se reinicia aquí: su ancla pertenece a otro paseo
+     */
+    public SimplificadorDurable(TrackJournal crudo, TrackSimplifier simplificador) {
+        this.crudo = crudo;
+        this.simplificador = simplificador;
+        simplificador.reset();
+    }
+
+    public void agregar(double lat, double lng, float accuracy, float speed, long tiempoMs) throws IOException {
+        ultimoSeq = crudo.append(lat, lng, accuracy, speed, tiempoMs);
+        simplificador.agregar(lat, lng, accuracy, speed, tiempoMs);
+        confirmarResueltos();
+    }
+
+    /**
+     * Vuelve a pasar por el simplificador la ventana que quedó en el crudo (ejecución anterior).
+     *
+     * @return cantidad de fixes recuperados
+     */
+    public int recuperar() {
+        TrackBuffer pendientes = TrackBuffer.growable(Math.max(1, crudo.pendingCount()));
+        long primerSeq = crudo.leerPendientes(pendientes, Integer.MAX_VALUE);
+        if (primerSeq < 0) return 0;
+        for (int i = 0; i < pendientes.size(); i++) {
+            simplificador.agregar(pendientes.getLat(i), pendientes.getLng(i), pendientes.getAccuracy(i),
+                    pendientes.getSpeed(i), pendientes.getTime(i));
+        }
+        ultimoSeq = primerSeq + pendientes.size() - 1;
+        confirmarResueltos();
+        return pendientes.size();
+    }
+
+    /**
+     * Emite el último candidato de la ventana; después de esto el crudo queda sin pendientes.
+     */
+    public void flush() {
+        simplificador.flush();
+        confirmarResueltos();
+    }
+
+    /** Fixes crudos que todavía no resolvió el simplificador. */
+    public int getPendientes() {
+        return crudo.pendingCount();
+    }
+
+    public void cerrar() {
+        crudo.close();
+    }
+
+    /** Fin del paseo: flush y eliminar el crudo. */
+    public void flushYEliminar() {
+        flush();
+        crudo.eliminar();
+    }
+
+    // Los fixes de la ventana son siempre los últimos agregados: lo anterior ya está resuelto
+    private void confirmarResueltos() {
+        if (ultimoSeq < 0) return;
+        crudo.ack(ultimoSeq - simplificador.getPendientes());
+    }
+}
@@ -0,0 +1,285 @@
+package com.mjc.mascotalink.service;
+
+import com.mjc.mascotalink.util.TrackBuffer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Journal append-only (write-ahead log) de puntos GPS de un paseo.
+ *
+ * Cada fix aceptado se escribe aquí ANTES de enviarse a Firestore. El archivo está
+ * memory-mapped: una escritura es una copia a memoria que el kernel persiste aunque
+ * el proceso muera, así que un kill del servicio no pierde puntos.
+ *
+ * Formato del archivo:
+ * <pre>
+ *   Cabecera (32 bytes): [magic:i32][version:i32][ackSeq:i64][reservado]
+ *   Registros (44 bytes): [seq:i64][lat:f64][lng:f64][acc:f32][speed:f32][tiempo:i64][crc32:i32]
+ * </pre>
+ * Los seq son consecutivos y sirven como ID idempotente de cada punto: lo que está
+ * después de ackSeq es la cola pendiente de enviar. Al arrancar, el journal se recorre
+ * hasta el primer registro inválido (escritura cortada) para recuperar la cola.
+ *
+ * Thread-safe: LocationService escribe desde el hilo principal y
+ * {@link TrackJournalFlusher} lee/confirma desde su hilo de fondo.
+ */
+public class TrackJournal implements Closeable {
+
+    public static final String DIRECTORIO = "track_journal";
+    public static final String EXTENSION = ".wal";
+    /** Fixes crudos antes de simplificar (ver {@link SimplificadorDurable}). */
+    public static final String EXTENSION_CRUDO = ".crudo";
+
+    private static final int MAGIC = 0x57414C4B; // "WALK"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int OFFSET_ACK = 8;
+    static final int RECORD_SIZE = 44;
+    private static final int CAPACIDAD_INICIAL_REGISTROS = 2048; // ~90KB, ~4h de paseo a 8s
+
+    private final File archivo; // null => journal solo en memoria (fallback)
+    private ByteBuffer buffer;
+    private int capacidadRegistros;
+
+    private long ackSeq;
+    private long primerSeq;     // seq del primer registro del archivo
+    private int registros;      // registros válidos en el archivo
+    private long siguienteSeq;
+    private boolean cerrado = false;
+
+    private final CRC32 crc = new CRC32();
+    private final byte[] scratch = new byte[RECORD_SIZE - 4];
+
+    private TrackJournal(File archivo, ByteBuffer buffer, int capacidadRegistros) {
+        this.archivo = archivo;
+        this.buffer = buffer;
+        this.capacidadRegistros = capacidadRegistros;
+    }
+
+    /**
+     * Abre (o crea) el journal en disco y recupera la cola pendiente.
+     */
+    public static TrackJournal abrir(File archivo) throws IOException {
+        File dir = archivo.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("No se pudo crear " + dir);
+        }
+        boolean nuevo = !archivo.exists() || archivo.length() < HEADER_SIZE;
+        int capacidad = nuevo ? CAPACIDAD_INICIAL_REGISTROS
+                : (int) Math.max(CAPACIDAD_INICIAL_REGISTROS, (archivo.length() - HEADER_SIZE) / RECORD_SIZE);
+        TrackJournal journal = new TrackJournal(archivo, mapear(archivo, capacidad), capacidad);
+        if (nuevo || journal.buffer.getInt(0) != MAGIC) {
+            journal.inicializarCabecera(System.currentTimeMillis() - 1);
+        } else {
+            journal.recuperar();
+        }
+        return journal;
+    }
+
+    /**
+     * Journal sin archivo, usado solo si el almacenamiento falla. Mantiene la misma
+     * semántica de seq/ack pero no sobrevive a la muerte del proceso.
+     */
+    public static TrackJournal enMemoria() {
+        TrackJournal journal = new TrackJournal(null,
+                ByteBuffer.allocate(HEADER_SIZE + CAPACIDAD_INICIAL_REGISTROS * RECORD_SIZE),
+                CAPACIDAD_INICIAL_REGISTROS);
+        journal.inicializarCabecera(System.currentTimeMillis() - 1);
+        return journal;
+    }
+
+    /**
+     * Escribe un punto al final del journal.
+     *
+     * @return seq asignado al punto
+     */
+    public synchronized long append(double lat, double lng, float acc, float speed, long tiempoMs) throws IOException {
+        verificarAbierto();
+        if (registros == capacidadRegistros) {
+            compactar();
+        }
+        long seq = siguienteSeq++;
+        int pos = HEADER_SIZE + registros * RECORD_SIZE;
+        buffer.putLong(pos, seq);
+        buffer.putDouble(pos + 8, lat);
+        buffer.putDouble(pos + 16, lng);
+        buffer.putFloat(pos + 24, acc);
+        buffer.putFloat(pos + 28, speed);
+        buffer.putLong(pos + 32, tiempoMs);
+        buffer.putInt(pos + 40, checksum(pos));
+        if (registros == 0) {
+            primerSeq = seq;
+        }
+        registros++;
+        return seq;
+    }
+
+    /**
+     * Puntos escritos que todavía no fueron confirmados por el servidor.
+     */
+    public synchronized int pendingCount() {
+        if (registros == 0) return 0;
+        long ultimoSeq = primerSeq + registros - 1;
+        return (int) Math.max(0, ultimoSeq - Math.max(ackSeq, primerSeq - 1));
+    }
+
+    /**
+     * Copia hasta {@code max} puntos pendientes (en orden) al final de {@code destino}.
+     *
+     * @return seq del primer punto copiado, o -1 si no hay pendientes
+     */
+    public synchronized long leerPendientes(TrackBuffer destino, int max) {
+        int pendientes = pendingCount();
+        if (pendientes == 0 || max <= 0) return -1;
+        int desde = registros - pendientes;
+        int n = Math.min(pendientes, max);
+        for (int i = 0; i < n; i++) {
+            int pos = HEADER_SIZE + (desde + i) * RECORD_SIZE;
+            destino.add(buffer.getDouble(pos + 8), buffer.getDouble(pos + 16),
+                    buffer.getFloat(pos + 24), buffer.getFloat(pos + 28), buffer.getLong(pos + 32));
+        }
+        return primerSeq + desde;
+    }
+
+    /**
+     * Marca como enviados todos los puntos con seq <= {@code hastaSeq}.
+     */
+    public synchronized void ack(long hastaSeq) {
+        if (cerrado || hastaSeq <= ackSeq) return;
+        ackSeq = hastaSeq;
+        buffer.putLong(OFFSET_ACK, ackSeq);
+    }
+
+    public synchronized long getAckSeq() {
+        return ackSeq;
+    }
+
+    public File getArchivo() {
+        return archivo;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (cerrado) return;
+        cerrado = true;
+        if (buffer instanceof MappedByteBuffer) {
+            ((MappedByteBuffer) buffer).force();
+        }
+    }
+
+    /**
+     * Cierra y elimina el archivo (solo cuando no quedan pendientes).
+     */
+    public synchronized boolean eliminar() {
+        close();
+        return archivo == null || !archivo.exists() || archivo.delete();
+    }
+
+    // ===== INTERNOS =====
+
+    private void inicializarCabecera(long ackInicial) {
+        // Base de seq = tiempo actual: si el journal se pierde y se recrea a mitad
+        // de paseo, los nuevos seq siguen siendo mayores que los ya enviados
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(OFFSET_ACK, ackInicial);
+        ackSeq = ackInicial;
+        registros = 0;
+        siguienteSeq = ackInicial + 1;
+        primerSeq = siguienteSeq;
+    }
+
+    private void recuperar() {
+        ackSeq = buffer.getLong(OFFSET_ACK);
+        registros = 0;
+        long esperado = -1;
+        while (registros < capacidadRegistros) {
+            int pos = HEADER_SIZE + registros * RECORD_SIZE;
+            long seq = buffer.getLong(pos);
+            if (buffer.getInt(pos + 40) != checksum(pos) || (esperado != -1 && seq != esperado)) {
+                break; // Fin del journal o escritura cortada por un kill
+            }
+            if (registros == 0) {
+                primerSeq = seq;
+            }
+            esperado = seq + 1;
+            registros++;
+        }
+        siguienteSeq = registros > 0 ? Math.max(esperado, ackSeq + 1) : ackSeq + 1;
+        if (registros == 0) {
+            primerSeq = siguienteSeq;
+        }
+    }
+
+    /**
+     * Descarta los registros ya confirmados; si la cola pendiente ocupa todo, duplica la capacidad.
+     * En disco se escribe un archivo temporal y se renombra para que un kill a mitad no corrompa nada.
+     */
+    private void compactar() throws IOException {
+        int pendientes = pendingCount();
+        int desde = registros - pendientes;
+        int nuevaCapacidad = pendientes * 2 > capacidadRegistros ? capacidadRegistros * 2 : capacidadRegistros;
+
+        ByteBuffer nuevo;
+        File temporal = null;
+        if (archivo != null) {
+            temporal = new File(archivo.getPath() + ".tmp");
+            if (temporal.exists() && !temporal.delete()) {
+                throw new IOException("No se pudo limpiar " + temporal);
+            }
+            nuevo = mapear(temporal, nuevaCapacidad);
+        } else {
+            nuevo = ByteBuffer.allocate(HEADER_SIZE + nuevaCapacidad * RECORD_SIZE);
+        }
+
+        nuevo.putInt(0, MAGIC);
+        nuevo.putInt(4, VERSION);
+        nuevo.putLong(OFFSET_ACK, ackSeq);
+        for (int i = 0; i < pendientes * RECORD_SIZE; i++) {
+            nuevo.put(HEADER_SIZE + i, buffer.get(HEADER_SIZE + desde * RECORD_SIZE + i));
+        }
+
+        if (temporal != null) {
+            ((MappedByteBuffer) nuevo).force();
+            if (!temporal.renameTo(archivo)) {
+                throw new IOException("No se pudo reemplazar " + archivo);
+            }
+        }
+        buffer = nuevo;
+        capacidadRegistros = nuevaCapacidad;
+        primerSeq = primerSeq + desde;
+        registros = pendientes;
+    }
+
+    private int checksum(int pos) {
+        for (int i = 0; i < scratch.length; i++) {
+            scratch[i] = buffer.get(pos + i);
+        }
+        crc.reset();
+        crc.update(scratch, 0, scratch.length);
+        // Nunca 0: un registro sin escribir (todo ceros) no debe validar
+        return (int) crc.getValue() | 1;
+    }
+
+    private void verificarAbierto() throws IOException {
+        if (cerrado) {
+            throw new IOException("Journal cerrado");
+        }
+    }
+
+    private static MappedByteBuffer mapear(File archivo, int capacidadRegistros) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(archivo, "rw");
+             FileChannel canal = raf.getChannel()) {
+            long tamanio = HEADER_SIZE + (long) capacidadRegistros * RECORD_SIZE;
+            // El mapeo sigue siendo válido después de cerrar el canal
+            return canal.map(FileChannel.MapMode.READ_WRITE, 0, tamanio);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.mjc.mascotalink.service;
+
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.mjc.mascotalink.util.RutaPaseoParser;
+import com.mjc.mascotalink.util.TrackBuffer;
+import com.mjc.mascotalink.util.TrackChunkCodec;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drena en segundo plano un {@link TrackJournal} hacia Firestore, en orden y un chunk a la vez.
+ *
+ * - Los puntos solo se confirman (ack) en el journal cuando Firestore responde OK,
+ *   así que nunca se descartan: si falla, se reintenta con backoff exponencial sin límite.
+ * - Cada chunk lleva el seq de sus puntos (chunk v2) y en la subcollection el ID del
+ *   documento es el seq inicial: reenviar tras un kill no duplica puntos.
+ */
+public class TrackJournalFlusher {
+
+    private static final String TAG = "TrackJournalFlusher";
+
+    private static final int MAX_PUNTOS_POR_CHUNK = 50;
+    // Con chunks binarios (~10 bytes/punto) el documento admite muchos más puntos que con Maps
+    private static final int MAX_UBICACIONES_IN_ARRAY = 5000; // Migrar a subcollection después de 5000 (~50KB)
+    private static final long RETRY_BASE_MS = 2000;  // Exponencial: 2s, 4s, 8s...
+    private static final long RETRY_MAX_MS = 60000;  // Tope de 1 minuto entre reintentos
+
+    // Un solo hilo para todos los journals: los envíos quedan serializados y en orden
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "TrackJournalFlusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final FirebaseFirestore db;
+    private final FirestoreWriteCoalescer coalescer;
+    private final String reservaId;
+    private final TrackJournal journal;
+    private final TrackBuffer lectura = new TrackBuffer(MAX_PUNTOS_POR_CHUNK);
+
+    // ===== Estado confinado al hilo EXECUTOR =====
+    private boolean enVuelo = false;
+    private int reintentos = 0;
+    private boolean eliminarAlVaciar = false;
+    private Runnable alEliminar;
+    private int ubicacionesCount = 0;
+    private boolean usandoSubcollection = false;
+
+    /**
+     * @param coalescer los chunks viajan en el mismo batch que el resto de escrituras del servicio
+     */
+    public TrackJournalFlusher(FirebaseFirestore db, FirestoreWriteCoalescer coalescer,
+                               String reservaId, TrackJournal journal) {
+        this.db = db;
+        this.coalescer = coalescer;
+        this.reservaId = reservaId;
+        this.journal = journal;
+    }
+
+    /**
+     * Puntos que ya existen en la reserva (para decidir cuándo migrar a subcollection).
+     */
+    public void setUbicacionesExistentes(int cantidad) {
+        EXECUTOR.execute(() -> {
+            ubicacionesCount = Math.max(ubicacionesCount, cantidad);
+            if (ubicacionesCount > MAX_UBICACIONES_IN_ARRAY) {
+                usandoSubcollection = true;
+                Log.d(TAG, "🔄 Usando subcollection desde el inicio (" + ubicacionesCount + " ubicaciones)");
+            }
+        });
+    }
+
+    public String getReservaId() {
+        return reservaId;
+    }
+
+    public int getPendientes() {
+        return journal.pendingCount();
+    }
+
+    /**
+     * Solicita enviar todo lo pendiente. No bloquea; si ya hay un envío en vuelo, continúa al terminar.
+     */
+    public void flush() {
+        EXECUTOR.execute(this::drenar);
+    }
+
+    /**
+     * Drena lo pendiente y luego elimina el archivo del journal. Solo para paseos que ya no
+     * están EN_CURSO (stopTracking o replay de uno terminado): nadie más debe poder reabrirlo.
+     */
+    public void flushYEliminar() {
+        flushYEliminar(null);
+    }
+
+    /**
+     * @param alEliminar se ejecuta (en el hilo del flusher) cuando todos los puntos están
+     *                   confirmados en Firestore y el journal fue eliminado
+     */
+    public void flushYEliminar(Runnable alEliminar) {
+        EXECUTOR.execute(() -> {
+            eliminarAlVaciar = true;
+            this.alEliminar = alEliminar;
+            drenar();
+        });
+    }
+
+    private void drenar() {
+        if (enVuelo) return;
+
+        lectura.clear();
+        long primerSeq = journal.leerPendientes(lectura, MAX_PUNTOS_POR_CHUNK);
+        if (primerSeq < 0) {
+            if (eliminarAlVaciar) {
+                journal.eliminar();
+                Log.d(TAG, "🗑️ Journal vacío eliminado para reserva " + reservaId);
+                if (alEliminar != null) {
+                    Runnable callback = alEliminar;
+                    alEliminar = null;
+                    callback.run();
+                }
+            }
+            return;
+        }
+
+        int puntos = lectura.size();
+        long ultimoSeq = primerSeq + puntos - 1;
+        byte[] chunk = TrackChunkCodec.encode(lectura, 0, puntos, primerSeq);
+        enVuelo = true;
+
+        enviarChunk(chunk, puntos, primerSeq)
+                .addOnSuccessListener(EXECUTOR, aVoid -> {
+                    enVuelo = false;
+                    reintentos = 0;
+                    ubicacionesCount += puntos;
+                    journal.ack(ultimoSeq);
+                    Log.d(TAG, "✅ Chunk enviado: " + puntos + " ubicaciones en " + chunk.length
+                            + " bytes (seq " + primerSeq + "-" + ultimoSeq + ", total: " + ubicacionesCount + ")");
+                    drenar(); // Continuar con lo que quede en orden
+                })
+                .addOnFailureListener(EXECUTOR, e -> {
+                    enVuelo = false;
+                    long delay = Math.min(RETRY_BASE_MS << Math.min(reintentos, 10), RETRY_MAX_MS);
+                    reintentos++;
+                    Log.w(TAG, "❌ Error enviando chunk (" + journal.pendingCount() + " pendientes en journal), reintento "
+                            + reintentos + " en " + delay + "ms: " + e.getMessage());
+                    EXECUTOR.schedule(this::drenar, delay, TimeUnit.MILLISECONDS);
+                });
+    }
+
+    /**
+     * Usa subcollection si hay demasiados puntos para evitar el límite de 1MB del documento
+     */
+    private Task<Void> enviarChunk(byte[] chunk, int puntos, long primerSeq) {
+        DocumentReference reservaRef = db.collection("reservas").document(reservaId);
+
+        if (usandoSubcollection || ubicacionesCount > MAX_UBICACIONES_IN_ARRAY) {
+            if (!usandoSubcollection) {
+                Log.d(TAG, "🔄 Migrando a subcollection: se alcanzaron " + ubicacionesCount + " ubicaciones");
+                usandoSubcollection = true;
+            }
+            Map<String, Object> chunkDoc = new HashMap<>();
+            chunkDoc.put("chunk", Blob.fromBytes(chunk));
+            chunkDoc.put("puntos", puntos);
+            chunkDoc.put("seq_inicio", primerSeq);
+            chunkDoc.put("ts", Timestamp.now());
+            // ID determinístico por seq: un reenvío sobrescribe el mismo documento
+            return coalescer.set(reservaRef.collection("ubicaciones_historico").document("seq_" + primerSeq), chunkDoc);
+        }
+
+        // arrayUnion no duplica un Blob idéntico; los solapamientos parciales los descarta RutaPaseoParser
+        Map<String, Object> campos = new HashMap<>();
+        campos.put(RutaPaseoParser.CAMPO_CHUNKS, FieldValue.arrayUnion(Blob.fromBytes(chunk)));
+        return coalescer.actualizar(reservaRef, campos);
+    }
+}
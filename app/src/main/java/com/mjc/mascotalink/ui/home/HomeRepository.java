@@ -3,12 +3,15 @@ package com.mjc.mascotalink.ui.home;
 import android.util.Log;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.Timestamp;
+import com.mjc.mascotalink.util.ConsultasCompartidas;
+import com.mjc.mascotalink.util.MultiplexorConsultas;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Arrays;
 
 public class HomeRepository {
     private final FirebaseFirestore db = FirebaseFirestore.getInstance();
@@ -109,7 +112,6 @@ public class HomeRepository {
             return data;
         }
 
-        String field = role.equals("PASEADOR") ? "id_paseador" : "id_dueno";
         long startTime = System.currentTimeMillis();
 
         if (activeReservationListener != null) {
@@ -117,25 +119,27 @@ public class HomeRepository {
             activeReservationListener = null;
         }
 
-        activeReservationListener = db.collection("reservas")
-            .whereEqualTo(field, db.collection("usuarios").document(userId))
-            .whereIn("estado", Arrays.asList("CONFIRMADO", "LISTO_PARA_INICIAR", "EN_CURSO", "PENDIENTE_ACEPTACION", "PENDIENTE", "ACEPTADO"))
-            .limit(10)
-            .addSnapshotListener((snapshots, e) -> {
+        // Escucha compartida con PaseosActivity (misma forma de consulta)
+        activeReservationListener = ConsultasCompartidas.get().escuchar(
+            ConsultasCompartidas.reservasActivas(db, role, userId),
+            ConsultasCompartidas.LIMITE_RESERVAS_ACTIVAS,
+            new MultiplexorConsultas.Receptor<DocumentSnapshot>() {
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Error listening active reservation", e);
+                lastError.setValue("Error al verificar paseos activos: " + e.getMessage());
+            }
+
+            @Override
+            public void onResultado(List<DocumentSnapshot> snapshots) {
                 long queryTime = System.currentTimeMillis() - startTime;
                 Log.d(TAG, "getActiveReservation query completed in " + queryTime + "ms");
 
-                if (e != null) {
-                    Log.e(TAG, "Error listening active reservation", e);
-                    lastError.setValue("Error al verificar paseos activos: " + e.getMessage());
-                    return;
-                }
-
-                if (snapshots != null && !snapshots.isEmpty()) {
-                    com.google.firebase.firestore.DocumentSnapshot reservaActiva = null;
+                if (!snapshots.isEmpty()) {
+                    DocumentSnapshot reservaActiva = null;
                     long ahora = System.currentTimeMillis();
 
-                    for (com.google.firebase.firestore.DocumentSnapshot doc : snapshots.getDocuments()) {
+                    for (DocumentSnapshot doc : snapshots) {
                         String estado = doc.getString("estado");
 
                         if ("EN_CURSO".equals(estado)) {
@@ -195,7 +199,8 @@ public class HomeRepository {
                 } else {
                     data.setValue(null);
                 }
-            });
+            }
+        });
         return data;
     }
 
@@ -0,0 +1,195 @@
+package com.mjc.mascotalink.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Archivo append-only con el {@link HistorialChat} de un chat.
+ *
+ * Formato:
+ * <pre>
+ *   Cabecera (8 bytes): [magic:i32][version:i32]
+ *   Registro: [tipo:u8][largo:i32][datos][crc32:i32]
+ *     'M' mensaje (codificado por el {@link Codec}; el último con el mismo id gana)
+ *     'T' tramo completo [desde:i64][hasta:i64]
+ * </pre>
+ * Cada lectura del servidor agrega sus mensajes y su tramo al final. Al cargar se lee hasta
+ * el primer registro inválido (escritura cortada) y se trunca ahí. {@link #reescribir}
+ * compacta el archivo cuando acumula demasiados registros repetidos.
+ *
+ * No es thread-safe: se usa desde un único hilo de disco.
+ *
+ * @param <M> mensaje
+ */
+public class ArchivoHistorial<M> {
+
+    private static final int MAGIC = 0x43484154; // "CHAT"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final byte TIPO_MENSAJE = 'M';
+    private static final byte TIPO_TRAMO = 'T';
+    private static final int MAX_LARGO = 64 * 1024;
+
+    public interface Codec<M> {
+        void escribir(M mensaje, DataOutputStream out) throws IOException;
+
+        M leer(DataInputStream in) throws IOException;
+    }
+
+    private final File archivo;
+    private final Codec<M> codec;
+    private int registros;
+
+    public ArchivoHistorial(File archivo, Codec<M> codec) {
+        this.archivo = archivo;
+        this.codec = codec;
+    }
+
+    /** Lee el archivo (si existe) y arma el historial. Un archivo dañado se descarta. */
+    public HistorialChat<M> cargar(HistorialChat.Clave<M> clave) throws IOException {
+        HistorialChat<M> historial = new HistorialChat<>(clave);
+        registros = 0;
+        if (!archivo.exists() || archivo.length() < HEADER_SIZE) {
+            crear();
+            return historial;
+        }
+
+        long valido = HEADER_SIZE;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(archivo)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                valido = -1;
+            }
+            CRC32 crc = new CRC32();
+            while (valido > 0) {
+                int tipo = in.read();
+                if (tipo < 0) break;
+                int largo = in.readInt();
+                if (largo < 0 || largo > MAX_LARGO) break;
+                byte[] datos = new byte[largo];
+                in.readFully(datos);
+                crc.reset();
+                crc.update(tipo);
+                crc.update(datos);
+                if (in.readInt() != (int) crc.getValue()) break;
+
+                DataInputStream registro = new DataInputStream(new ByteArrayInputStream(datos));
+                if (tipo == TIPO_MENSAJE) {
+                    historial.poner(codec.leer(registro));
+                } else if (tipo == TIPO_TRAMO) {
+                    historial.agregarTramo(registro.readLong(), registro.readLong());
+                } else {
+                    break;
+                }
+                registros++;
+                valido += 1 + 4 + largo + 4;
+            }
+        } catch (EOFException e) {
+            // Escritura cortada: se conserva lo anterior
+        }
+
+        if (valido < 0) {
+            // Otro formato o versión: se empieza de cero
+            crear();
+            return historial;
+        }
+        if (valido < archivo.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(archivo, "rw")) {
+                raf.setLength(valido);
+            }
+        }
+        return historial;
+    }
+
+    /** Agrega mensajes leídos del servidor y, si {@code hastaMs >= desdeMs}, su tramo. */
+    public void agregar(Collection<M> mensajes, long desdeMs, long hastaMs) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(archivo, true)))) {
+            for (M mensaje : mensajes) {
+                escribirMensaje(out, mensaje);
+            }
+            if (hastaMs >= desdeMs) {
+                escribirTramo(out, desdeMs, hastaMs);
+            }
+        }
+    }
+
+    /** Reescribe el archivo con el contenido actual del historial (compacta). */
+    public void reescribir(HistorialChat<M> historial) throws IOException {
+        File temporal = new File(archivo.getPath() + ".tmp");
+        registros = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporal)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (M mensaje : historial.getMensajes()) {
+                escribirMensaje(out, mensaje);
+            }
+            List<long[]> tramos = historial.getTramos();
+            for (long[] tramo : tramos) {
+                escribirTramo(out, tramo[0], tramo[1]);
+            }
+        }
+        if (!temporal.renameTo(archivo)) {
+            throw new IOException("No se pudo reemplazar " + archivo);
+        }
+    }
+
+    /** Registros en el archivo (incluye mensajes repetidos por actualizaciones). */
+    public int getRegistros() {
+        return registros;
+    }
+
+    public boolean eliminar() {
+        registros = 0;
+        return !archivo.exists() || archivo.delete();
+    }
+
+    // ===== INTERNOS =====
+
+    private void crear() throws IOException {
+        File dir = archivo.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("No se pudo crear " + dir);
+        }
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(archivo))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+    }
+
+    private void escribirMensaje(DataOutputStream out, M mensaje) throws IOException {
+        ByteArrayOutputStream datos = new ByteArrayOutputStream(128);
+        codec.escribir(mensaje, new DataOutputStream(datos));
+        escribirRegistro(out, TIPO_MENSAJE, datos.toByteArray());
+    }
+
+    private void escribirTramo(DataOutputStream out, long desdeMs, long hastaMs) throws IOException {
+        ByteArrayOutputStream datos = new ByteArrayOutputStream(16);
+        DataOutputStream tramo = new DataOutputStream(datos);
+        tramo.writeLong(desdeMs);
+        tramo.writeLong(hastaMs);
+        escribirRegistro(out, TIPO_TRAMO, datos.toByteArray());
+    }
+
+    private void escribirRegistro(DataOutputStream out, byte tipo, byte[] datos) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(tipo);
+        crc.update(datos);
+        out.writeByte(tipo);
+        out.writeInt(datos.length);
+        out.write(datos);
+        out.writeInt((int) crc.getValue());
+        registros++;
+    }
+}
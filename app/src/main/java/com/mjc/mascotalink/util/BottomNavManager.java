@@ -117,7 +117,7 @@ public class BottomNavManager {
                     ? FirebaseAuth.getInstance().getCurrentUser().getUid()
                     : null;
             if (uid != null) {
-                UnreadBadgeManager.start(uid);
+                UnreadBadgeManager.start(activity, uid);
                 UnreadBadgeManager.registerNav(navView, activity);
             }
         } catch (Exception ignored) {
@@ -0,0 +1,317 @@
+package com.mjc.mascotalink.util;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Escuchas de Firestore compartidas por toda la app (ver {@link MultiplexorConsultas}).
+ *
+ * Las pantallas describen la consulta con una {@link Forma} en vez de armar el Query: así
+ * dos consultas iguales escritas en distinto orden (filtros, valores del whereIn) comparten
+ * una sola escucha. Devuelve un {@link ListenerRegistration} para que quien lo usa lo quite
+ * como cualquier otro listener.
+ *
+ * Se usa desde el hilo principal; remove() se puede llamar desde cualquier hilo.
+ */
+public final class ConsultasCompartidas {
+
+    private static final String TAG = "ConsultasCompartidas";
+    /** Tiempo que una escucha sin suscriptores sigue viva (navegar entre pantallas). */
+    static final long ESPERA_MS = 15_000;
+
+    public static final int LIMITE_CHATS = 50;
+    public static final int LIMITE_RESERVAS_ACTIVAS = 10;
+    public static final List<String> ESTADOS_ACTIVOS = Collections.unmodifiableList(Arrays.asList(
+            "CONFIRMADO", "LISTO_PARA_INICIAR", "EN_CURSO", "PENDIENTE_ACEPTACION", "PENDIENTE", "ACEPTADO"));
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    private static ConsultasCompartidas instance;
+
+    public interface DocumentoCallback {
+        void onDocumento(@NonNull DocumentSnapshot documento);
+
+        void onError(Exception e);
+    }
+
+    private final MultiplexorConsultas<Forma, DocumentSnapshot> multiplexor;
+
+    private ConsultasCompartidas() {
+        multiplexor = new MultiplexorConsultas<>(this::abrir, new MultiplexorConsultas.Programador() {
+            @Override
+            public void programar(Runnable tarea, long demoraMs) {
+                MAIN_HANDLER.postDelayed(tarea, demoraMs);
+            }
+
+            @Override
+            public void cancelar(Runnable tarea) {
+                MAIN_HANDLER.removeCallbacks(tarea);
+            }
+        }, ESPERA_MS);
+    }
+
+    public static synchronized ConsultasCompartidas get() {
+        if (instance == null) {
+            instance = new ConsultasCompartidas();
+        }
+        return instance;
+    }
+
+    /** Escucha la consulta; {@code limite} = {@link MultiplexorConsultas#SIN_LIMITE} para todo. */
+    public ListenerRegistration escuchar(@NonNull Forma forma, int limite,
+                                         @NonNull MultiplexorConsultas.Receptor<DocumentSnapshot> receptor) {
+        return registro(multiplexor.suscribir(forma, limite, receptor));
+    }
+
+    /** Primer resultado de la consulta; si ya hay una escucha viva, sale de ella sin leer. */
+    public ListenerRegistration obtener(@NonNull Forma forma, int limite,
+                                        @NonNull MultiplexorConsultas.Receptor<DocumentSnapshot> receptor) {
+        return registro(multiplexor.obtener(forma, limite, receptor));
+    }
+
+    /** Escucha un documento (también se entrega si no existe). */
+    public ListenerRegistration escucharDocumento(@NonNull DocumentReference documento,
+                                                  @NonNull DocumentoCallback callback) {
+        return escuchar(Forma.documento(documento), MultiplexorConsultas.SIN_LIMITE,
+                new MultiplexorConsultas.Receptor<DocumentSnapshot>() {
+                    @Override
+                    public void onResultado(List<DocumentSnapshot> documentos) {
+                        if (!documentos.isEmpty()) callback.onDocumento(documentos.get(0));
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        callback.onError(e);
+                    }
+                });
+    }
+
+    public int getEscuchasActivas() {
+        return multiplexor.getEscuchasActivas();
+    }
+
+    // ===== Formas usadas por varias pantallas =====
+
+    /** Chats del usuario, el más reciente primero (badge de no leídos y bandeja de mensajes). */
+    public static Forma chatsDeUsuario(String userId) {
+        return Forma.coleccion("chats")
+                .contiene("participantes", userId)
+                .ordenar("ultimo_timestamp", Query.Direction.DESCENDING);
+    }
+
+    /** Reservas no terminadas del usuario según su rol (home, paseos). */
+    public static Forma reservasActivas(FirebaseFirestore db, String rol, String userId) {
+        String campo = "PASEADOR".equalsIgnoreCase(rol) ? "id_paseador" : "id_dueno";
+        return Forma.coleccion("reservas")
+                .igual(campo, db.collection("usuarios").document(userId))
+                .en("estado", ESTADOS_ACTIVOS);
+    }
+
+    // ===== INTERNOS =====
+
+    private MultiplexorConsultas.Cierre abrir(Forma forma, int limite,
+                                              MultiplexorConsultas.Receptor<DocumentSnapshot> receptor) {
+        ListenerRegistration registration;
+        if (forma.documento != null) {
+            registration = forma.documento.addSnapshotListener((doc, error) -> {
+                if (error != null) {
+                    Log.e(TAG, "Error en escucha " + forma, error);
+                    receptor.onError(error);
+                } else if (doc != null) {
+                    receptor.onResultado(Collections.singletonList(doc));
+                }
+            });
+        } else {
+            registration = forma.query(FirebaseFirestore.getInstance(), limite).addSnapshotListener((snapshot, error) -> {
+                if (error != null) {
+                    Log.e(TAG, "Error en escucha " + forma, error);
+                    receptor.onError(error);
+                } else if (snapshot != null) {
+                    receptor.onResultado(snapshot.getDocuments());
+                }
+            });
+        }
+        Log.d(TAG, "📡 Escucha abierta: " + forma + " (límite " + limite + ", activas: "
+                + multiplexor.getEscuchasActivas() + ")");
+        return () -> {
+            registration.remove();
+            Log.d(TAG, "🗑️ Escucha cerrada: " + forma + " (activas: " + multiplexor.getEscuchasActivas() + ")");
+        };
+    }
+
+    private static ListenerRegistration registro(MultiplexorConsultas<Forma, DocumentSnapshot>.Suscripcion suscripcion) {
+        return () -> {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                suscripcion.cancelar();
+            } else {
+                MAIN_HANDLER.post(suscripcion::cancelar);
+            }
+        };
+    }
+
+    /**
+     * Forma canónica de una consulta (colección, filtros y orden; el límite va aparte).
+     * Los filtros se comparan sin importar el orden en que se agregaron. No se modifica
+     * después de pasarla a {@link ConsultasCompartidas#escuchar}.
+     */
+    public static final class Forma {
+        private final String ruta;
+        private final DocumentReference documento;
+        private final List<Filtro> filtros = new ArrayList<>();
+        private final List<Orden> ordenes = new ArrayList<>();
+        private String clave;
+
+        private Forma(String ruta, DocumentReference documento) {
+            this.ruta = ruta;
+            this.documento = documento;
+        }
+
+        public static Forma coleccion(String ruta) {
+            return new Forma(ruta, null);
+        }
+
+        public static Forma documento(DocumentReference documento) {
+            return new Forma(documento.getPath(), documento);
+        }
+
+        public Forma igual(String campo, Object valor) {
+            return filtro(new Filtro(campo, "==", valor, canonico(valor)));
+        }
+
+        public Forma contiene(String campo, Object valor) {
+            return filtro(new Filtro(campo, "array-contains", valor, canonico(valor)));
+        }
+
+        /** whereIn; el orden de los valores no cambia la forma. */
+        public Forma en(String campo, List<?> valores) {
+            List<String> canonicos = new ArrayList<>();
+            for (Object valor : valores) canonicos.add(canonico(valor));
+            Collections.sort(canonicos);
+            return filtro(new Filtro(campo, "in", valores, canonicos.toString()));
+        }
+
+        /** El orden sí importa: define qué documentos entran en el límite. */
+        public Forma ordenar(String campo, Query.Direction direccion) {
+            ordenes.add(new Orden(campo, direccion));
+            clave = null;
+            return this;
+        }
+
+        /** Query sin límite ni escucha, para lecturas puntuales (p. ej. páginas con cursor). */
+        public Query query(FirebaseFirestore db) {
+            return query(db, MultiplexorConsultas.SIN_LIMITE);
+        }
+
+        Query query(FirebaseFirestore db, int limite) {
+            Query query = db.collection(ruta);
+            for (Filtro filtro : filtros) {
+                switch (filtro.operador) {
+                    case "==":
+                        query = query.whereEqualTo(filtro.campo, filtro.valor);
+                        break;
+                    case "array-contains":
+                        query = query.whereArrayContains(filtro.campo, filtro.valor);
+                        break;
+                    default:
+                        query = query.whereIn(filtro.campo, (List<?>) filtro.valor);
+                        break;
+                }
+            }
+            for (Orden o : ordenes) {
+                query = query.orderBy(o.campo, o.direccion);
+            }
+            if (limite != MultiplexorConsultas.SIN_LIMITE) {
+                query = query.limit(limite);
+            }
+            return query;
+        }
+
+        private Forma filtro(Filtro filtro) {
+            filtros.add(filtro);
+            clave = null;
+            return this;
+        }
+
+        private String clave() {
+            if (clave == null) {
+                List<String> partes = new ArrayList<>();
+                for (Filtro filtro : filtros) partes.add(filtro.toString());
+                Collections.sort(partes);
+                clave = (documento != null ? "doc:" : "col:") + ruta + partes + ordenes;
+            }
+            return clave;
+        }
+
+        private static String canonico(Object valor) {
+            if (valor instanceof DocumentReference) {
+                return "ref:" + ((DocumentReference) valor).getPath();
+            }
+            return String.valueOf(valor);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof Forma && clave().equals(((Forma) o).clave()));
+        }
+
+        @Override
+        public int hashCode() {
+            return clave().hashCode();
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return clave();
+        }
+    }
+
+    private static final class Filtro {
+        final String campo;
+        final String operador;
+        final Object valor;
+        final String canonico;
+
+        Filtro(String campo, String operador, Object valor, String canonico) {
+            this.campo = campo;
+            this.operador = operador;
+            this.valor = valor;
+            this.canonico = canonico;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return campo + " " + operador + " " + canonico;
+        }
+    }
+
+    private static final class Orden {
+        final String campo;
+        final Query.Direction direccion;
+
+        Orden(String campo, Query.Direction direccion) {
+            this.campo = campo;
+            this.direccion = direccion;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return campo + " " + direccion;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.mjc.mascotalink.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Mensajes no leídos por chat y su total, para el badge.
+ *
+ * - {@link #reemplazar} aplica el documento de contadores que mantiene el servidor
+ *   (usuarios/{uid}/contadores/no_leidos).
+ * - {@link #sumar} y {@link #fijar} aplican los eventos "unread_delta" del socket en O(1),
+ *   sin esperar al documento.
+ *
+ * Cada operación dice si cambió el total, así el badge se redibuja solo cuando hace falta.
+ * No es thread-safe: se usa desde el hilo principal.
+ */
+public class ContadorNoLeidos {
+
+    private final Map<String, Integer> porChat = new HashMap<>();
+    private int total;
+
+    /** Reemplaza todo con los valores del servidor. @return true si cambió el total */
+    public boolean reemplazar(Map<String, ?> nuevos) {
+        int anterior = total;
+        porChat.clear();
+        total = 0;
+        if (nuevos != null) {
+            for (Map.Entry<String, ?> entry : nuevos.entrySet()) {
+                int valor = entry.getValue() instanceof Number ? ((Number) entry.getValue()).intValue() : 0;
+                if (valor > 0) {
+                    porChat.put(entry.getKey(), valor);
+                    total += valor;
+                }
+            }
+        }
+        return total != anterior;
+    }
+
+    /** Suma {@code delta} (puede ser negativo; no baja de cero). @return true si cambió el total */
+    public boolean sumar(String chatId, int delta) {
+        return fijar(chatId, get(chatId) + delta);
+    }
+
+    /** Fija los no leídos de un chat (p. ej. 0 al abrirlo). @return true si cambió el total */
+    public boolean fijar(String chatId, int noLeidos) {
+        int valor = Math.max(0, noLeidos);
+        int anterior = get(chatId);
+        if (valor == anterior) return false;
+        if (valor == 0) {
+            porChat.remove(chatId);
+        } else {
+            porChat.put(chatId, valor);
+        }
+        total += valor - anterior;
+        return true;
+    }
+
+    public int get(String chatId) {
+        Integer valor = porChat.get(chatId);
+        return valor != null ? valor : 0;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void limpiar() {
+        porChat.clear();
+        total = 0;
+    }
+}
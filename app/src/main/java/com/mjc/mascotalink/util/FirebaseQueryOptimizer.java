@@ -29,6 +29,7 @@ import java.util.Map;
  * - Batch operations
  * - Caché local optimizado
  * - Prevención de memory leaks
+ * - Listeners de documento compartidos entre pantallas ({@link ConsultasCompartidas})
  */
 public class FirebaseQueryOptimizer {
 
@@ -227,17 +228,23 @@ public class FirebaseQueryOptimizer {
             return;
         }
 
-        ListenerRegistration registration = document.addSnapshotListener((value, error) -> {
-            if (error != null) {
-                Log.e(TAG, "Error en document listener", error);
-                callback.onError(error);
-                return;
-            }
-
-            if (value != null && value.exists()) {
-                callback.onSuccess(value);
-            }
-        });
+        // Compartido: si otra pantalla o el servicio de ubicación escuchan el mismo documento,
+        // Firestore mantiene una sola escucha
+        ListenerRegistration registration = ConsultasCompartidas.get().escucharDocumento(document,
+                new ConsultasCompartidas.DocumentoCallback() {
+                    @Override
+                    public void onDocumento(@NonNull com.google.firebase.firestore.DocumentSnapshot value) {
+                        if (value.exists()) {
+                            callback.onSuccess(value);
+                        }
+                    }
+
+                    @Override
+                    public void onError(Exception error) {
+                        Log.e(TAG, "Error en document listener", error);
+                        callback.onError(error);
+                    }
+                });
 
         activeListeners.add(registration);
 
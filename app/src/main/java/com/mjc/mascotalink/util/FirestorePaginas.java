@@ -0,0 +1,52 @@
+package com.mjc.mascotalink.util;
+
+import android.util.Log;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fuente de {@link PaginadorKeyset} sobre una Query de Firestore.
+ *
+ * El cursor es el último DocumentSnapshot de la página: startAfter lo traduce a los valores
+ * de cada orderBy de la query (más el id como desempate), así que sirve para cualquier
+ * orden sin offsets. La query ya debe traer sus where/orderBy; acá solo se pagina.
+ */
+public final class FirestorePaginas {
+
+    private static final String TAG = "FirestorePaginas";
+
+    public interface Mapeador<T> {
+        /** @return el item, o null para saltear el documento */
+        T mapear(DocumentSnapshot doc);
+    }
+
+    private FirestorePaginas() {}
+
+    public static <T> PaginadorKeyset.Fuente<T, DocumentSnapshot> fuente(Query query, Mapeador<T> mapeador) {
+        return (cursor, numeroPagina, tamanoPagina, respuesta) -> {
+            Query pagina = query.limit(tamanoPagina);
+            if (cursor != null) {
+                pagina = pagina.startAfter(cursor);
+            }
+            pagina.get()
+                    .addOnSuccessListener(snapshot -> {
+                        List<DocumentSnapshot> docs = snapshot.getDocuments();
+                        List<T> items = new ArrayList<>(docs.size());
+                        for (DocumentSnapshot doc : docs) {
+                            T item = mapeador.mapear(doc);
+                            if (item != null) items.add(item);
+                        }
+                        DocumentSnapshot ultimo = docs.isEmpty() ? cursor : docs.get(docs.size() - 1);
+                        respuesta.entregar(items, ultimo, docs.size() >= tamanoPagina);
+                    })
+                    .addOnFailureListener(e -> {
+                        Log.e(TAG, "Error cargando página " + numeroPagina, e);
+                        respuesta.fallar(e);
+                    });
+        };
+    }
+}
@@ -0,0 +1,53 @@
+package com.mjc.mascotalink.util;
+
+import android.util.Log;
+
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fuente de {@link ResolvedorReferencias} sobre Firestore: cada lote es un whereIn sobre
+ * documentId en la colección (o subcolección) de las rutas.
+ */
+public final class FirestoreReferencias {
+
+    private static final String TAG = "FirestoreReferencias";
+
+    private FirestoreReferencias() {}
+
+    public static ResolvedorReferencias<DocumentSnapshot> crearResolvedor(FirebaseFirestore db) {
+        return new ResolvedorReferencias<>(fuente(db));
+    }
+
+    public static ResolvedorReferencias.Fuente<DocumentSnapshot> fuente(FirebaseFirestore db) {
+        return (coleccion, ids, respuesta) -> db.collection(coleccion)
+                .whereIn(FieldPath.documentId(), ids)
+                .get()
+                .addOnSuccessListener(snapshot -> {
+                    Map<String, DocumentSnapshot> porId = new HashMap<>();
+                    for (DocumentSnapshot doc : snapshot.getDocuments()) {
+                        porId.put(doc.getId(), doc);
+                    }
+                    respuesta.onExito(porId);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error leyendo " + ids.size() + " documentos de " + coleccion, e);
+                    respuesta.onError(e);
+                });
+    }
+
+    /** Ruta de una referencia, o null. */
+    public static String ruta(DocumentReference ref) {
+        return ref != null ? ref.getPath() : null;
+    }
+
+    /** Ruta de la mascota de un dueño (subcolección duenos/{id}/mascotas). */
+    public static String rutaMascota(String duenoId, String mascotaId) {
+        return "duenos/" + duenoId + "/mascotas/" + mascotaId;
+    }
+}
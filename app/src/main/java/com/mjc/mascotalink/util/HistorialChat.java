@@ -0,0 +1,213 @@
+package com.mjc.mascotalink.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Mensajes guardados de un chat y los tramos de tiempo que se sabe que están completos.
+ *
+ * - Un tramo [desde, hasta] (ms, inclusive) dice que todos los mensajes del servidor en ese
+ *   intervalo están guardados. Cada página leída del servidor agrega su tramo; los tramos que
+ *   se tocan se unen.
+ * - Entre dos tramos hay un hueco (p. ej. el chat quedó mucho tiempo sin abrirse y solo se
+ *   trajo lo último): {@link #anteriores} se detiene ahí para que el hueco se pida al servidor.
+ * - Un tramo que empieza en {@link #INICIO} llega al primer mensaje del chat.
+ *
+ * No es thread-safe: se usa desde el hilo principal, donde llegan los callbacks de Firestore.
+ *
+ * @param <M> mensaje
+ */
+public class HistorialChat<M> {
+
+    /** Desde del tramo que llega al primer mensaje del chat. */
+    public static final long INICIO = Long.MIN_VALUE;
+
+    public interface Clave<M> {
+        String id(M mensaje);
+
+        /** Momento del mensaje en ms (el orden del chat). */
+        long ms(M mensaje);
+    }
+
+    private final Clave<M> clave;
+    private final Map<String, M> porId = new HashMap<>();
+    private final NavigableSet<M> ordenados;
+    /** Tramos ordenados y disjuntos: {desde, hasta}. */
+    private final List<long[]> tramos = new ArrayList<>();
+
+    public HistorialChat(Clave<M> clave) {
+        this.clave = clave;
+        Comparator<M> orden = (a, b) -> {
+            int porMs = Long.compare(clave.ms(a), clave.ms(b));
+            return porMs != 0 ? porMs : clave.id(a).compareTo(clave.id(b));
+        };
+        this.ordenados = new TreeSet<>(orden);
+    }
+
+    /**
+     * Guarda mensajes leídos del servidor junto con el intervalo que cubre la lectura
+     * (p. ej. la página más nueva: desde su mensaje más viejo hasta el más nuevo).
+     */
+    public void registrarRango(Collection<M> mensajes, long desdeMs, long hastaMs) {
+        for (M mensaje : mensajes) {
+            poner(mensaje);
+            long ms = clave.ms(mensaje);
+            if (ms < desdeMs) desdeMs = ms;
+            if (ms > hastaMs) hastaMs = ms;
+        }
+        agregarTramo(desdeMs, hastaMs);
+    }
+
+    /**
+     * Guarda un mensaje sin tramo: no afirma nada sobre lo que hay alrededor (p. ej. uno
+     * llegado por el socket, que puede adelantarse a otros que el servidor aún no entregó).
+     */
+    public void guardarSuelto(M mensaje) {
+        poner(mensaje);
+    }
+
+    /** Reemplaza un mensaje ya guardado (leído, entregado...). @return false si no estaba */
+    public boolean actualizar(M mensaje) {
+        if (!porId.containsKey(clave.id(mensaje))) return false;
+        poner(mensaje);
+        return true;
+    }
+
+    public M get(String id) {
+        return porId.get(id);
+    }
+
+    public int size() {
+        return porId.size();
+    }
+
+    public boolean isEmpty() {
+        return porId.isEmpty();
+    }
+
+    /** Momento del mensaje más nuevo, o -1 si no hay ninguno. */
+    public long ultimoMs() {
+        return ordenados.isEmpty() ? -1 : clave.ms(ordenados.last());
+    }
+
+    /** Los {@code n} mensajes más nuevos, del más viejo al más nuevo. */
+    public List<M> ultimos(int n) {
+        List<M> resultado = new ArrayList<>(Math.min(n, ordenados.size()));
+        Iterator<M> it = ordenados.descendingIterator();
+        while (it.hasNext() && resultado.size() < n) {
+            resultado.add(0, it.next());
+        }
+        return resultado;
+    }
+
+    /**
+     * Hasta {@code n} mensajes anteriores a {@code referencia} sin cruzar un hueco, del más
+     * viejo al más nuevo. Si devuelve menos de {@code n} y no {@link #llegaAlInicio}, lo que
+     * sigue hay que pedirlo al servidor.
+     */
+    public List<M> anteriores(M referencia, int n) {
+        List<M> resultado = new ArrayList<>();
+        long[] tramo = tramoDe(clave.ms(referencia));
+        if (tramo == null) return resultado;
+        Iterator<M> it = ordenados.headSet(referencia, false).descendingIterator();
+        while (it.hasNext() && resultado.size() < n) {
+            M mensaje = it.next();
+            if (clave.ms(mensaje) < tramo[0]) break;
+            resultado.add(0, mensaje);
+        }
+        return resultado;
+    }
+
+    /** No hay mensajes en el servidor antes de {@code referencia} que no estén guardados. */
+    public boolean llegaAlInicio(M referencia) {
+        long[] tramo = tramoDe(clave.ms(referencia));
+        return tramo != null && tramo[0] == INICIO;
+    }
+
+    /** Huecos entre tramos ({desde, hasta} exclusivos), del más viejo al más nuevo. */
+    public List<long[]> huecos() {
+        List<long[]> huecos = new ArrayList<>();
+        for (int i = 1; i < tramos.size(); i++) {
+            huecos.add(new long[]{tramos.get(i - 1)[1], tramos.get(i)[0]});
+        }
+        return huecos;
+    }
+
+    /** Copia de los tramos, para guardarlos. */
+    public List<long[]> getTramos() {
+        List<long[]> copia = new ArrayList<>(tramos.size());
+        for (long[] tramo : tramos) {
+            copia.add(tramo.clone());
+        }
+        return copia;
+    }
+
+    /** Todos los mensajes, del más viejo al más nuevo. */
+    public List<M> getMensajes() {
+        return new ArrayList<>(ordenados);
+    }
+
+    /**
+     * Se queda con los {@code max} mensajes más nuevos. Los tramos se recortan al mensaje más
+     * viejo que queda, así lo descartado vuelve a leerse del servidor si se pide.
+     *
+     * @return cantidad de mensajes descartados
+     */
+    public int recortar(int max) {
+        int sobran = ordenados.size() - max;
+        if (sobran <= 0) return 0;
+        for (int i = 0; i < sobran; i++) {
+            porId.remove(clave.id(ordenados.pollFirst()));
+        }
+        long desde = ordenados.isEmpty() ? Long.MAX_VALUE : clave.ms(ordenados.first());
+        Iterator<long[]> it = tramos.iterator();
+        while (it.hasNext()) {
+            long[] tramo = it.next();
+            if (tramo[1] < desde) {
+                it.remove();
+            } else if (tramo[0] < desde) {
+                tramo[0] = desde;
+            }
+        }
+        return sobran;
+    }
+
+    // ===== Carga desde disco =====
+
+    /** Agrega (o reemplaza) un mensaje sin tocar los tramos. */
+    void poner(M mensaje) {
+        M anterior = porId.put(clave.id(mensaje), mensaje);
+        if (anterior != null) ordenados.remove(anterior);
+        ordenados.add(mensaje);
+    }
+
+    void agregarTramo(long desdeMs, long hastaMs) {
+        if (hastaMs < desdeMs) return;
+        long[] nuevo = {desdeMs, hastaMs};
+        int i = 0;
+        while (i < tramos.size() && tramos.get(i)[1] < desdeMs - 1 && desdeMs != INICIO) {
+            i++;
+        }
+        // Absorber todos los que se solapan o se tocan
+        while (i < tramos.size() && tramos.get(i)[0] <= hastaMs + 1) {
+            long[] existente = tramos.remove(i);
+            nuevo[0] = Math.min(nuevo[0], existente[0]);
+            nuevo[1] = Math.max(nuevo[1], existente[1]);
+        }
+        tramos.add(i, nuevo);
+    }
+
+    private long[] tramoDe(long ms) {
+        for (long[] tramo : tramos) {
+            if (tramo[0] <= ms && ms <= tramo[1]) return tramo;
+        }
+        return null;
+    }
+}
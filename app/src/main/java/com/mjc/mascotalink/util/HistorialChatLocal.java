@@ -0,0 +1,210 @@
+package com.mjc.mascotalink.util;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mjc.mascotalink.modelo.Mensaje;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Historial local de un chat: {@link HistorialChat} en memoria respaldado por un
+ * {@link ArchivoHistorial} en disco (files/chats/{chatId}.log).
+ *
+ * - {@link #abrir} lee el archivo en segundo plano y entrega el historial en el hilo
+ *   principal: el chat se muestra al instante y solo se pide al servidor lo que falta.
+ * - Cada lectura del servidor se guarda con {@link #registrarRango}; las escrituras se
+ *   encolan en un único hilo de disco, en orden.
+ * - Se guardan a lo sumo {@link #MAX_GUARDADOS} mensajes por chat.
+ *
+ * Los mensajes que se guardan no deben modificarse después (se escriben en otro hilo):
+ * los cambios llegan como objetos nuevos desde Firestore o el socket.
+ */
+public final class HistorialChatLocal {
+
+    private static final String TAG = "HistorialChatLocal";
+    private static final String DIRECTORIO = "chats";
+    private static final String EXTENSION = ".log";
+
+    static final int MAX_GUARDADOS = 500;
+    /** Registros repetidos tolerados antes de compactar el archivo. */
+    private static final int MARGEN_COMPACTAR = 200;
+
+    private static final ExecutorService DISCO = Executors.newSingleThreadExecutor();
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    static final HistorialChat.Clave<Mensaje> CLAVE = new HistorialChat.Clave<Mensaje>() {
+        @Override
+        public String id(Mensaje mensaje) {
+            return mensaje.getId();
+        }
+
+        @Override
+        public long ms(Mensaje mensaje) {
+            return mensaje.getTimestamp().getTime();
+        }
+    };
+
+    public interface Callback {
+        void onAbierto(@NonNull HistorialChatLocal historial);
+    }
+
+    private final ArchivoHistorial<Mensaje> archivo;
+    private final HistorialChat<Mensaje> historial;
+
+    private HistorialChatLocal(ArchivoHistorial<Mensaje> archivo, HistorialChat<Mensaje> historial) {
+        this.archivo = archivo;
+        this.historial = historial;
+    }
+
+    /**
+     * Abre el historial del chat. Si el disco falla se entrega uno vacío (el chat funciona
+     * igual, solo que todo se lee del servidor).
+     */
+    public static void abrir(Context context, String chatId, Callback callback) {
+        File dir = new File(context.getApplicationContext().getFilesDir(), DIRECTORIO);
+        ArchivoHistorial<Mensaje> archivo = new ArchivoHistorial<>(new File(dir, chatId + EXTENSION), CODEC);
+        DISCO.execute(() -> {
+            HistorialChat<Mensaje> historial;
+            try {
+                historial = archivo.cargar(CLAVE);
+                int descartados = historial.recortar(MAX_GUARDADOS);
+                if (descartados > 0 || archivo.getRegistros() > historial.size() + MARGEN_COMPACTAR) {
+                    archivo.reescribir(historial);
+                }
+                Log.d(TAG, "📂 Chat " + chatId + ": " + historial.size() + " mensajes locales, "
+                        + historial.huecos().size() + " huecos");
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Error leyendo historial de " + chatId + ", se empieza de cero", e);
+                archivo.eliminar();
+                historial = new HistorialChat<>(CLAVE);
+            }
+            HistorialChatLocal local = new HistorialChatLocal(archivo, historial);
+            MAIN_HANDLER.post(() -> callback.onAbierto(local));
+        });
+    }
+
+    public HistorialChat<Mensaje> getHistorial() {
+        return historial;
+    }
+
+    /**
+     * Guarda mensajes leídos del servidor y el intervalo que cubre la lectura. Los mensajes
+     * sin timestamp (pendientes de escribirse en el servidor) se ignoran.
+     */
+    public void registrarRango(Collection<Mensaje> mensajes, long desdeMs, long hastaMs) {
+        List<Mensaje> validos = conTimestamp(mensajes);
+        historial.registrarRango(validos, desdeMs, hastaMs);
+        DISCO.execute(() -> {
+            try {
+                archivo.agregar(validos, desdeMs, hastaMs);
+            } catch (IOException e) {
+                Log.e(TAG, "Error guardando mensajes", e);
+            }
+        });
+    }
+
+    /** Guarda un mensaje sin tramo (ver {@link HistorialChat#guardarSuelto}). */
+    public void guardarSuelto(@Nullable Mensaje mensaje) {
+        if (mensaje == null || mensaje.getId() == null || mensaje.getTimestamp() == null) return;
+        historial.guardarSuelto(mensaje);
+        List<Mensaje> uno = Collections.singletonList(mensaje);
+        DISCO.execute(() -> {
+            try {
+                archivo.agregar(uno, 0, -1); // Sin tramo
+            } catch (IOException e) {
+                Log.e(TAG, "Error guardando mensaje", e);
+            }
+        });
+    }
+
+    /** Reemplaza un mensaje ya guardado (leído, entregado...). */
+    public void actualizar(@Nullable Mensaje mensaje) {
+        if (mensaje == null || mensaje.getId() == null || mensaje.getTimestamp() == null) return;
+        if (!historial.actualizar(mensaje)) return;
+        List<Mensaje> uno = Collections.singletonList(mensaje);
+        DISCO.execute(() -> {
+            try {
+                archivo.agregar(uno, 0, -1); // Sin tramo
+            } catch (IOException e) {
+                Log.e(TAG, "Error guardando mensaje", e);
+            }
+        });
+    }
+
+    private static List<Mensaje> conTimestamp(Collection<Mensaje> mensajes) {
+        List<Mensaje> validos = new ArrayList<>(mensajes.size());
+        for (Mensaje mensaje : mensajes) {
+            if (mensaje != null && mensaje.getId() != null && mensaje.getTimestamp() != null) {
+                validos.add(mensaje);
+            }
+        }
+        return validos;
+    }
+
+    // ===== Formato de un mensaje en disco =====
+
+    static final ArchivoHistorial.Codec<Mensaje> CODEC = new ArchivoHistorial.Codec<Mensaje>() {
+        @Override
+        public void escribir(Mensaje m, DataOutputStream out) throws IOException {
+            out.writeUTF(m.getId());
+            out.writeLong(m.getTimestamp().getTime());
+            escribirTexto(out, m.getIdRemitente());
+            escribirTexto(out, m.getIdDestinatario());
+            escribirTexto(out, m.getTexto());
+            escribirTexto(out, m.getTipo());
+            escribirTexto(out, m.getImagenUrl());
+            out.writeBoolean(m.isLeido());
+            out.writeBoolean(m.isEntregado());
+            out.writeBoolean(m.getLatitud() != null && m.getLongitud() != null);
+            if (m.getLatitud() != null && m.getLongitud() != null) {
+                out.writeDouble(m.getLatitud());
+                out.writeDouble(m.getLongitud());
+            }
+        }
+
+        @Override
+        public Mensaje leer(DataInputStream in) throws IOException {
+            Mensaje m = new Mensaje();
+            m.setId(in.readUTF());
+            m.setTimestamp(new Date(in.readLong()));
+            m.setIdRemitente(leerTexto(in));
+            m.setIdDestinatario(leerTexto(in));
+            m.setTexto(leerTexto(in));
+            m.setTipo(leerTexto(in));
+            m.setImagenUrl(leerTexto(in));
+            m.setLeido(in.readBoolean());
+            m.setEntregado(in.readBoolean());
+            if (in.readBoolean()) {
+                m.setLatitud(in.readDouble());
+                m.setLongitud(in.readDouble());
+            }
+            return m;
+        }
+    };
+
+    private static void escribirTexto(DataOutputStream out, @Nullable String texto) throws IOException {
+        out.writeBoolean(texto != null);
+        if (texto != null) out.writeUTF(texto);
+    }
+
+    @Nullable
+    private static String leerTexto(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
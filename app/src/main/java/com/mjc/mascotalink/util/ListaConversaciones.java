@@ -0,0 +1,178 @@
+package com.mjc.mascotalink.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Bandeja de conversaciones ordenada por último mensaje (más reciente primero, luego id).
+ *
+ * - {@link #aplicarEnVivo} recibe cada resultado de la escucha de los chats más recientes y
+ *   solo convierte los documentos que cambiaron; una fila que cambia de posición se saca
+ *   y se vuelve a insertar en el árbol, sin reordenar el resto.
+ * - {@link #agregarPagina} suma chats más antiguos leídos con cursor ({@link #getUltimoOrigen}).
+ * - Un chat que sale de la escucha porque entraron otros más nuevos no se borra: pasa a
+ *   ser parte de las páginas. Si sale estando dentro de la ventana, se borró.
+ *
+ * No es thread-safe: se usa desde el hilo principal, donde llegan los callbacks de Firestore.
+ *
+ * @param <D> documento de origen (DocumentSnapshot en la app, comparado con equals)
+ * @param <T> fila de la lista
+ */
+public class ListaConversaciones<D, T> {
+
+    public interface Conversor<D, T> {
+        String id(D documento);
+
+        T convertir(D documento);
+
+        /** Clave de orden (ms del último mensaje); mayor va primero. */
+        long orden(T item);
+    }
+
+    private static final class Fila<D, T> {
+        final String id;
+        final D origen;
+        final T item;
+        final long orden;
+
+        Fila(String id, D origen, T item, long orden) {
+            this.id = id;
+            this.origen = origen;
+            this.item = item;
+            this.orden = orden;
+        }
+    }
+
+    private static final Comparator<Fila<?, ?>> RECIENTES_PRIMERO = (a, b) -> {
+        int porOrden = Long.compare(b.orden, a.orden);
+        return porOrden != 0 ? porOrden : a.id.compareTo(b.id);
+    };
+
+    private final Conversor<D, T> conversor;
+    private final Map<String, Fila<D, T>> porId = new HashMap<>();
+    private final TreeSet<Fila<D, T>> ordenadas = new TreeSet<>(RECIENTES_PRIMERO);
+    /** Ids del último resultado de la escucha en vivo. */
+    private Set<String> enVivo = new HashSet<>();
+    private List<T> items = Collections.emptyList();
+    private boolean sucia;
+
+    public ListaConversaciones(Conversor<D, T> conversor) {
+        this.conversor = conversor;
+    }
+
+    /**
+     * Aplica el resultado de la escucha en vivo (ordenado, a lo sumo {@code limite}).
+     *
+     * @return las filas nuevas o modificadas, en el orden del resultado
+     */
+    public List<T> aplicarEnVivo(List<D> documentos, int limite) {
+        List<T> cambiadas = new ArrayList<>();
+        Set<String> vistos = new HashSet<>(documentos.size() * 2);
+        for (D documento : documentos) {
+            String id = conversor.id(documento);
+            vistos.add(id);
+            Fila<D, T> actual = porId.get(id);
+            if (actual == null || !actual.origen.equals(documento)) {
+                cambiadas.add(poner(id, documento).item);
+            }
+        }
+
+        // Con la ventana llena, lo que quedó por debajo del último solo fue desplazado por
+        // chats más nuevos y sigue como parte de las páginas
+        boolean llena = limite > 0 && documentos.size() >= limite;
+        long corte = llena ? porId.get(conversor.id(documentos.get(documentos.size() - 1))).orden : 0;
+        for (String id : enVivo) {
+            Fila<D, T> fila = porId.get(id);
+            if (fila != null && !vistos.contains(id) && !(llena && fila.orden <= corte)) {
+                quitar(fila);
+            }
+        }
+        enVivo = vistos;
+        return cambiadas;
+    }
+
+    /**
+     * Agrega chats más antiguos; los que ya están (la escucha en vivo manda) se ignoran.
+     *
+     * @return las filas agregadas
+     */
+    public List<T> agregarPagina(List<D> documentos) {
+        List<T> agregadas = new ArrayList<>();
+        for (D documento : documentos) {
+            String id = conversor.id(documento);
+            if (porId.containsKey(id)) continue;
+            agregadas.add(poner(id, documento).item);
+        }
+        return agregadas;
+    }
+
+    /**
+     * Vuelve a convertir la fila desde su documento (p. ej. cuando llega el perfil del otro
+     * usuario). @return true si la fila existe
+     */
+    public boolean reconvertir(String id) {
+        Fila<D, T> fila = porId.get(id);
+        if (fila == null) return false;
+        poner(id, fila.origen);
+        return true;
+    }
+
+    /** Documento de la fila más antigua, para pedir la página siguiente; null si no hay. */
+    public D getUltimoOrigen() {
+        return ordenadas.isEmpty() ? null : ordenadas.last().origen;
+    }
+
+    /** Filas ordenadas; la lista devuelta no cambia y es la misma mientras no haya cambios. */
+    public List<T> getItems() {
+        if (sucia) {
+            List<T> nuevas = new ArrayList<>(ordenadas.size());
+            for (Fila<D, T> fila : ordenadas) {
+                nuevas.add(fila.item);
+            }
+            items = Collections.unmodifiableList(nuevas);
+            sucia = false;
+        }
+        return items;
+    }
+
+    public int size() {
+        return porId.size();
+    }
+
+    public boolean isEmpty() {
+        return porId.isEmpty();
+    }
+
+    public void limpiar() {
+        porId.clear();
+        ordenadas.clear();
+        enVivo.clear();
+        items = Collections.emptyList();
+        sucia = false;
+    }
+
+    // ===== INTERNOS =====
+
+    private Fila<D, T> poner(String id, D origen) {
+        T item = conversor.convertir(origen);
+        Fila<D, T> fila = new Fila<>(id, origen, item, conversor.orden(item));
+        Fila<D, T> anterior = porId.put(id, fila);
+        if (anterior != null) ordenadas.remove(anterior);
+        ordenadas.add(fila);
+        sucia = true;
+        return fila;
+    }
+
+    private void quitar(Fila<D, T> fila) {
+        porId.remove(fila.id);
+        ordenadas.remove(fila);
+        sucia = true;
+    }
+}
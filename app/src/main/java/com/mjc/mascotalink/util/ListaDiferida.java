@@ -0,0 +1,166 @@
+package com.mjc.mascotalink.util;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Lista de un adapter cuyo diff (y, si hace falta, la transformación previa, p. ej. agrupar)
+ * se calcula en segundo plano, para que un snapshot grande no trabe el scroll.
+ *
+ * - Todos los adapters comparten un único hilo de diff: las listas se procesan en orden.
+ * - Cada envío tiene una generación; si llega otra lista antes de terminar, el resultado
+ *   anterior se descarta en vez de aplicarse encima del nuevo.
+ * - Los cambios parciales viajan como payload ({@link DiffUtil.ItemCallback#getChangePayload})
+ *   para que el adapter redibuje solo lo que cambió.
+ *
+ * Los adapters que ya usan AsyncListDiffer comparten el mismo hilo con {@link #config}.
+ * Se usa desde el hilo principal.
+ *
+ * @param <T> item del adapter
+ */
+public class ListaDiferida<T> {
+
+    /** Solo cambió el estado (chip, info contextual, botones). */
+    public static final String CAMBIO_ESTADO = "cambio_estado";
+    /** Solo cambiaron los contadores de no leídos / estado del otro usuario. */
+    public static final String CAMBIO_NO_LEIDOS = "cambio_no_leidos";
+    /** Solo cambió la marca de entregado / leído de un mensaje. */
+    public static final String CAMBIO_LECTURA = "cambio_lectura";
+    /** Solo cambió el indicador de en línea. */
+    public static final String CAMBIO_PRESENCIA = "cambio_presencia";
+    /** Refresco de textos relativos al reloj ("hace 5 min", "Comienza en 2h"). */
+    public static final String CAMBIO_TIEMPO = "cambio_tiempo";
+
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread hilo = new Thread(r, "lista-diferida");
+        hilo.setPriority(Thread.MIN_PRIORITY);
+        return hilo;
+    });
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    /** Transformación de la lista de origen a los items del adapter; corre en segundo plano. */
+    public interface Transformacion<F, T> {
+        List<T> aplicar(List<F> fuente);
+    }
+
+    private final RecyclerView.Adapter<?> adapter;
+    private final DiffUtil.ItemCallback<T> callback;
+    private List<T> items = Collections.emptyList();
+    private int generacion;
+
+    public ListaDiferida(@NonNull RecyclerView.Adapter<?> adapter, @NonNull DiffUtil.ItemCallback<T> callback) {
+        this.adapter = adapter;
+        this.callback = callback;
+    }
+
+    /** Config de AsyncListDiffer que calcula el diff en el hilo compartido. */
+    public static <T> AsyncDifferConfig<T> config(@NonNull DiffUtil.ItemCallback<T> callback) {
+        return new AsyncDifferConfig.Builder<>(callback)
+                .setBackgroundThreadExecutor(DIFF_EXECUTOR)
+                .build();
+    }
+
+    /**
+     * Fija la lista sin diff ni notificaciones (p. ej. en el constructor del adapter, antes
+     * de que el RecyclerView lo muestre). Descarta los envíos pendientes.
+     */
+    public void inicializar(@Nullable List<T> iniciales) {
+        generacion++;
+        items = iniciales != null
+                ? Collections.unmodifiableList(new ArrayList<>(iniciales))
+                : Collections.emptyList();
+    }
+
+    /** Lista actual (la última aplicada); no cambia con envíos posteriores. */
+    public List<T> getItems() {
+        return items;
+    }
+
+    public T get(int posicion) {
+        return items.get(posicion);
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    public void enviar(@Nullable List<T> nuevos) {
+        enviar(nuevos, fuente -> fuente, null);
+    }
+
+    /**
+     * Transforma {@code fuente} y calcula el diff en segundo plano; lo aplica en el hilo
+     * principal si no llegó otra lista mientras tanto.
+     *
+     * @param alAplicar se ejecuta después de despachar los cambios (puede ser null)
+     */
+    public <F> void enviar(@Nullable List<F> fuente, @NonNull Transformacion<F, T> transformacion,
+                           @Nullable Runnable alAplicar) {
+        final int esta = ++generacion;
+        final List<F> copia = fuente != null ? new ArrayList<>(fuente) : new ArrayList<>();
+        final List<T> anteriores = items;
+
+        DIFF_EXECUTOR.execute(() -> {
+            List<T> nuevos = Collections.unmodifiableList(new ArrayList<>(transformacion.aplicar(copia)));
+            DiffUtil.DiffResult resultado = DiffUtil.calculateDiff(new Diferencia<>(anteriores, nuevos, callback));
+
+            MAIN_HANDLER.post(() -> {
+                if (esta != generacion) return; // Llegó una lista más nueva
+                items = nuevos;
+                resultado.dispatchUpdatesTo(adapter);
+                if (alAplicar != null) alAplicar.run();
+            });
+        });
+    }
+
+    /** Adapta un ItemCallback a las dos listas de un envío. */
+    private static final class Diferencia<T> extends DiffUtil.Callback {
+        private final List<T> anteriores;
+        private final List<T> nuevos;
+        private final DiffUtil.ItemCallback<T> callback;
+
+        Diferencia(List<T> anteriores, List<T> nuevos, DiffUtil.ItemCallback<T> callback) {
+            this.anteriores = anteriores;
+            this.nuevos = nuevos;
+            this.callback = callback;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return anteriores.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return nuevos.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return callback.areItemsTheSame(anteriores.get(oldItemPosition), nuevos.get(newItemPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return callback.areContentsTheSame(anteriores.get(oldItemPosition), nuevos.get(newItemPosition));
+        }
+
+        @Nullable
+        @Override
+        public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+            return callback.getChangePayload(anteriores.get(oldItemPosition), nuevos.get(newItemPosition));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.mjc.mascotalink.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Modelo de una lista en vivo indexado por id, al que se aplican los cambios de cada
+ * snapshot (agregado, modificado, eliminado) en vez de reconstruirla entera.
+ *
+ * - Cada item guarda el documento del que salió: una respuesta tardía (p. ej. detalles que
+ *   llegan después) puede comprobar con {@link #esVigente} que el documento no cambió.
+ * - La lista ordenada se recalcula solo si hubo cambios desde la última vez.
+ *
+ * No es thread-safe: se usa desde el hilo principal, donde llegan los callbacks de Firestore.
+ *
+ * @param <D> documento de origen (DocumentSnapshot en la app)
+ * @param <T> item de la lista
+ */
+public class ListaIncremental<D, T> {
+
+    private static final class Entrada<D, T> {
+        final D origen;
+        final T item;
+
+        Entrada(D origen, T item) {
+            this.origen = origen;
+            this.item = item;
+        }
+    }
+
+    private final Comparator<T> orden;
+    private final Map<String, Entrada<D, T>> porId = new HashMap<>();
+    private List<T> ordenada = Collections.emptyList();
+    private boolean sucia;
+
+    public ListaIncremental(Comparator<T> orden) {
+        this.orden = orden;
+    }
+
+    /** Agrega o reemplaza el item de {@code id}. */
+    public void poner(String id, D origen, T item) {
+        porId.put(id, new Entrada<>(origen, item));
+        sucia = true;
+    }
+
+    /** @return true si el id estaba en la lista */
+    public boolean quitar(String id) {
+        if (porId.remove(id) == null) return false;
+        sucia = true;
+        return true;
+    }
+
+    /** El item de {@code id} sigue saliendo de {@code origen} (no llegó una versión nueva). */
+    public boolean esVigente(String id, D origen) {
+        Entrada<D, T> entrada = porId.get(id);
+        return entrada != null && entrada.origen == origen;
+    }
+
+    public T get(String id) {
+        Entrada<D, T> entrada = porId.get(id);
+        return entrada != null ? entrada.item : null;
+    }
+
+    /** Items ordenados; la lista devuelta no cambia con las modificaciones posteriores. */
+    public List<T> getItems() {
+        if (sucia) {
+            List<T> items = new ArrayList<>(porId.size());
+            for (Entrada<D, T> entrada : porId.values()) {
+                items.add(entrada.item);
+            }
+            Collections.sort(items, orden);
+            ordenada = Collections.unmodifiableList(items);
+            sucia = false;
+        }
+        return ordenada;
+    }
+
+    public int size() {
+        return porId.size();
+    }
+
+    public boolean isEmpty() {
+        return porId.isEmpty();
+    }
+
+    public void limpiar() {
+        porId.clear();
+        ordenada = Collections.emptyList();
+        sucia = false;
+    }
+}
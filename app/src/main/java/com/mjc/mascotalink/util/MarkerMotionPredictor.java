@@ -0,0 +1,122 @@
+package com.mjc.mascotalink.util;
+
+import com.mjc.mascotalink.service.ConstantVelocityFilter;
+
+/**
+ * Predice dónde dibujar el marcador del paseador entre actualizaciones del WebSocket
+ * (que llegan cada 10-30s).
+ *
+ * - Los fixes reales alimentan el mismo filtro de velocidad constante que usa
+ *   LocationService para muestrear; entre fixes el marcador avanza con esa velocidad.
+ * - La extrapolación se corta a los {@link #MAX_EXTRAPOLACION_MS} y no se aplica si el
+ *   paseador va casi quieto, para no "pasear" el marcador solo.
+ * - Cuando llega un fix nuevo, la diferencia entre lo dibujado y la nueva estimación se
+ *   reparte en {@link #DURACION_CORRECCION_MS} en lugar de saltar.
+ *
+ * Los tiempos de los fixes son del reloj del paseador; la latencia de entrega se estima
+ * al recibir cada fix (acotada) para no depender de que ambos relojes coincidan.
+ * Sin dependencias de Android para poder reproducirlo en tests.
+ */
+public class MarkerMotionPredictor {
+
+    static final long MAX_EXTRAPOLACION_MS = 20_000;
+    static final long DURACION_CORRECCION_MS = 1_500;
+    private static final long MAX_LATENCIA_MS = 15_000;
+    private static final double VELOCIDAD_MINIMA_MPS = 0.3;
+    // Piso de aceleración más alto que el de muestreo: el marcador debe seguir rápido los giros
+    private static final double Q_MINIMA = 0.002;
+
+    private final ConstantVelocityFilter filtro = new ConstantVelocityFilter(Q_MINIMA);
+
+    private boolean hayPosicion = false;
+    private long ultimoFixMs;
+    private long recepcionLocalMs;
+    private long latenciaMs;
+
+    // Corrección pendiente: desfase entre lo dibujado y la nueva estimación
+    private double desfaseLat;
+    private double desfaseLng;
+    private long inicioCorreccionMs;
+
+    /**
+     * Incorpora un fix real. Los fixes repetidos o más viejos que el último se ignoran.
+     *
+     * @param tiempoFixMs   hora del fix (reloj del paseador)
+     * @param ahoraLocalMs  hora local de recepción
+     */
+    public void observar(double lat, double lng, float accuracy, long tiempoFixMs, long ahoraLocalMs) {
+        if (hayPosicion && tiempoFixMs <= ultimoFixMs) return;
+
+        double[] dibujada = hayPosicion ? posicion(ahoraLocalMs) : null;
+
+        filtro.update(lat, lng, accuracy, tiempoFixMs);
+        ultimoFixMs = tiempoFixMs;
+        recepcionLocalMs = ahoraLocalMs;
+        latenciaMs = Math.max(0, Math.min(MAX_LATENCIA_MS, ahoraLocalMs - tiempoFixMs));
+        hayPosicion = true;
+
+        double[] estimada = estimada(ahoraLocalMs);
+        if (dibujada != null) {
+            desfaseLat = dibujada[0] - estimada[0];
+            desfaseLng = dibujada[1] - estimada[1];
+        } else {
+            desfaseLat = 0;
+            desfaseLng = 0;
+        }
+        inicioCorreccionMs = ahoraLocalMs;
+    }
+
+    /**
+     * Posición a dibujar ahora ({lat, lng}). Requiere {@link #tienePosicion()}.
+     */
+    public double[] posicion(long ahoraLocalMs) {
+        double[] p = estimada(ahoraLocalMs);
+        double restante = 1 - suavizar((ahoraLocalMs - inicioCorreccionMs) / (double) DURACION_CORRECCION_MS);
+        p[0] += desfaseLat * restante;
+        p[1] += desfaseLng * restante;
+        return p;
+    }
+
+    /**
+     * true si el marcador ya no se mueve solo (corrección terminada y sin extrapolación
+     * activa): se puede dejar de redibujar hasta el próximo fix.
+     */
+    public boolean isQuieto(long ahoraLocalMs) {
+        if (!hayPosicion) return true;
+        boolean corrigiendo = ahoraLocalMs - inicioCorreccionMs < DURACION_CORRECCION_MS;
+        boolean extrapolando = filtro.getVelocidad() >= VELOCIDAD_MINIMA_MPS
+                && tiempoPrediccion(ahoraLocalMs) < ultimoFixMs + MAX_EXTRAPOLACION_MS;
+        return !corrigiendo && !extrapolando;
+    }
+
+    public boolean tienePosicion() {
+        return hayPosicion;
+    }
+
+    public void reset() {
+        filtro.reset();
+        hayPosicion = false;
+        desfaseLat = 0;
+        desfaseLng = 0;
+    }
+
+    private double[] estimada(long ahoraLocalMs) {
+        if (filtro.getVelocidad() < VELOCIDAD_MINIMA_MPS) {
+            return filtro.predecirLatLng(ultimoFixMs);
+        }
+        long t = Math.min(tiempoPrediccion(ahoraLocalMs), ultimoFixMs + MAX_EXTRAPOLACION_MS);
+        return filtro.predecirLatLng(t);
+    }
+
+    /** Hora equivalente en el reloj del paseador. */
+    private long tiempoPrediccion(long ahoraLocalMs) {
+        return ultimoFixMs + latenciaMs + Math.max(0, ahoraLocalMs - recepcionLocalMs);
+    }
+
+    /** Smoothstep: arranca y termina la corrección sin tirones. */
+    private static double suavizar(double t) {
+        if (t <= 0) return 0;
+        if (t >= 1) return 1;
+        return t * t * (3 - 2 * t);
+    }
+}
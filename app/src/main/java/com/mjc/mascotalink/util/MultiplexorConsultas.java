@@ -0,0 +1,235 @@
+package com.mjc.mascotalink.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Comparte una única escucha en vivo entre todos los que piden la misma consulta.
+ *
+ * - Las consultas se identifican por su forma (colección, filtros y orden, sin el límite):
+ *   dos pantallas con la misma forma usan una sola escucha, con conteo de referencias.
+ * - Un límite menor se sirve recortando el resultado de uno mayor (mismo orden). Si alguien
+ *   pide más de lo que se está escuchando, se reabre la escucha con el límite nuevo.
+ * - Cuando se va el último suscriptor, la escucha sigue viva {@code espera} ms: si la
+ *   siguiente pantalla pide lo mismo (navegación), no se vuelve a leer todo.
+ * - Tras un error la escucha muere (como en Firestore); el siguiente que se suscriba abre
+ *   una nueva.
+ *
+ * No es thread-safe: se usa desde el hilo principal, donde llegan los callbacks de Firestore.
+ *
+ * @param <K> forma de la consulta (con equals/hashCode)
+ * @param <D> documento
+ */
+public class MultiplexorConsultas<K, D> {
+
+    /** Límite de una consulta sin limit(): su resultado sirve para cualquier límite. */
+    public static final int SIN_LIMITE = 0;
+
+    public interface Receptor<D> {
+        void onResultado(List<D> documentos);
+
+        void onError(Exception e);
+    }
+
+    public interface Cierre {
+        void cerrar();
+    }
+
+    /** Abre la escucha real (Firestore); el receptor se llama en el hilo principal. */
+    public interface Abridor<K, D> {
+        Cierre abrir(K forma, int limite, Receptor<D> receptor);
+    }
+
+    public interface Programador {
+        void programar(Runnable tarea, long demoraMs);
+
+        void cancelar(Runnable tarea);
+    }
+
+    /** Suscripción de un consumidor; cancelar es idempotente. */
+    public final class Suscripcion {
+        private final Entrada entrada;
+        private final int limite;
+        private final Receptor<D> receptor;
+        private final boolean unaVez;
+        private boolean activa = true;
+
+        private Suscripcion(Entrada entrada, int limite, Receptor<D> receptor, boolean unaVez) {
+            this.entrada = entrada;
+            this.limite = limite;
+            this.receptor = receptor;
+            this.unaVez = unaVez;
+        }
+
+        public void cancelar() {
+            if (!activa) return;
+            activa = false;
+            entrada.suscripciones.remove(this);
+            if (entrada.suscripciones.isEmpty() && !entrada.cerrada) {
+                programador.programar(entrada.cierreDiferido, espera);
+            }
+        }
+
+        private void entregar(List<D> documentos) {
+            if (!activa) return;
+            if (unaVez) cancelar();
+            receptor.onResultado(recortar(documentos, limite));
+        }
+
+        private void fallar(Exception e) {
+            if (!activa) return;
+            activa = false;
+            receptor.onError(e);
+        }
+    }
+
+    /** Una escucha real y sus suscriptores. */
+    private final class Entrada {
+        final K forma;
+        final List<Suscripcion> suscripciones = new ArrayList<>();
+        final Runnable cierreDiferido = this::cerrar;
+        int limite;
+        int generacion;
+        Cierre cierre;
+        List<D> ultimo;
+        /** Límite de la escucha que produjo {@link #ultimo}. */
+        int limiteUltimo;
+        boolean cerrada;
+
+        Entrada(K forma) {
+            this.forma = forma;
+        }
+
+        void abrir(int nuevoLimite) {
+            Cierre anterior = cierre;
+            final int esta = ++generacion;
+            limite = nuevoLimite;
+            cierre = abridor.abrir(forma, nuevoLimite, new Receptor<D>() {
+                @Override
+                public void onResultado(List<D> documentos) {
+                    if (esta == generacion && !cerrada) recibir(documentos, nuevoLimite);
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    if (esta == generacion && !cerrada) fallar(e);
+                }
+            });
+            // La escucha más chica se cierra después de abrir la nueva: si otra pantalla la
+            // comparte, Firestore la sigue sirviendo desde caché sin volver a leer
+            if (anterior != null) anterior.cerrar();
+        }
+
+        void recibir(List<D> documentos, int limiteEscucha) {
+            ultimo = Collections.unmodifiableList(new ArrayList<>(documentos));
+            limiteUltimo = limiteEscucha;
+            for (Suscripcion s : new ArrayList<>(suscripciones)) {
+                s.entregar(ultimo);
+            }
+        }
+
+        void fallar(Exception e) {
+            cerrar();
+            for (Suscripcion s : new ArrayList<>(suscripciones)) {
+                s.fallar(e);
+            }
+            suscripciones.clear();
+        }
+
+        /** El último resultado alcanza para {@code limitePedido}. */
+        boolean sirve(int limitePedido) {
+            if (ultimo == null) return false;
+            return cubre(limiteUltimo, limitePedido) || ultimo.size() < limiteUltimo;
+        }
+
+        void cerrar() {
+            if (cerrada) return;
+            cerrada = true;
+            programador.cancelar(cierreDiferido);
+            if (entradas.get(forma) == this) entradas.remove(forma);
+            if (cierre != null) cierre.cerrar();
+        }
+    }
+
+    private final Abridor<K, D> abridor;
+    private final Programador programador;
+    private final long espera;
+    private final Map<K, Entrada> entradas = new HashMap<>();
+
+    public MultiplexorConsultas(Abridor<K, D> abridor, Programador programador, long esperaMs) {
+        this.abridor = abridor;
+        this.programador = programador;
+        this.espera = esperaMs;
+    }
+
+    /**
+     * Escucha {@code forma} con {@code limite} ({@link #SIN_LIMITE} para todo). Si ya hay un
+     * resultado que alcanza, se entrega enseguida (en una tarea aparte, nunca dentro de esta
+     * llamada).
+     */
+    public Suscripcion suscribir(K forma, int limite, Receptor<D> receptor) {
+        return suscribir(forma, limite, receptor, false);
+    }
+
+    /** Como {@link #suscribir}, pero se cancela sola después del primer resultado. */
+    public Suscripcion obtener(K forma, int limite, Receptor<D> receptor) {
+        return suscribir(forma, limite, receptor, true);
+    }
+
+    /** Escuchas reales abiertas (incluye las que esperan para cerrarse). */
+    public int getEscuchasActivas() {
+        return entradas.size();
+    }
+
+    /** Consumidores suscritos, sumando todas las escuchas. */
+    public int getSuscriptores() {
+        int total = 0;
+        for (Entrada entrada : entradas.values()) {
+            total += entrada.suscripciones.size();
+        }
+        return total;
+    }
+
+    // ===== INTERNOS =====
+
+    private Suscripcion suscribir(K forma, int limite, Receptor<D> receptor, boolean unaVez) {
+        Entrada entrada = entradas.get(forma);
+        if (entrada == null) {
+            entrada = new Entrada(forma);
+            entradas.put(forma, entrada);
+            entrada.abrir(limite);
+        } else {
+            programador.cancelar(entrada.cierreDiferido);
+            if (!cubre(entrada.limite, limite)) {
+                entrada.abrir(limite);
+            }
+        }
+
+        Suscripcion suscripcion = new Suscripcion(entrada, limite, receptor, unaVez);
+        entrada.suscripciones.add(suscripcion);
+
+        if (entrada.sirve(limite)) {
+            final Entrada actual = entrada;
+            final List<D> disponible = entrada.ultimo;
+            programador.programar(() -> {
+                // Si mientras tanto llegó un resultado nuevo, ya se entregó ese
+                if (actual.ultimo == disponible) suscripcion.entregar(disponible);
+            }, 0);
+        }
+        return suscripcion;
+    }
+
+    /** Una escucha con límite {@code escuchado} trae todo lo que pide {@code pedido}. */
+    static boolean cubre(int escuchado, int pedido) {
+        if (escuchado == SIN_LIMITE) return true;
+        return pedido != SIN_LIMITE && pedido <= escuchado;
+    }
+
+    private static <D> List<D> recortar(List<D> documentos, int limite) {
+        if (limite == SIN_LIMITE || documentos.size() <= limite) return documentos;
+        return documentos.subList(0, limite);
+    }
+}
@@ -0,0 +1,283 @@
+package com.mjc.mascotalink.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Paginación por cursor (keyset) reutilizable para listas largas.
+ *
+ * - Cada página se pide con el cursor de la anterior (en Firestore, startAfter sobre el
+ *   último documento con el mismo orderBy), nunca con offsets.
+ * - Prefetch: con cada scroll se estima la velocidad (items/ms) y cuánto tarda una carga;
+ *   si lo que queda por ver se consume antes de que llegue la próxima página, se pide ya.
+ *   Nunca hay más de una carga en curso, así que como máximo se adelanta una página.
+ * - Ventana acotada: se guardan a lo sumo {@code maxPaginas}; al pasarse se descartan las
+ *   más viejas y, si el usuario vuelve hacia arriba, se recargan con su cursor.
+ * - {@link #reiniciar()} (cambio de filtros) invalida las cargas en curso: sus respuestas
+ *   se ignoran.
+ * - Una misma carga puede responder varias veces (caché y luego red, detalles que llegan
+ *   después): la página se reemplaza. Los ids repetidos entre páginas se descartan.
+ *
+ * No es thread-safe: usar desde el hilo principal.
+ *
+ * @param <T> item de la lista
+ * @param <C> cursor (DocumentSnapshot en Firestore)
+ */
+public class PaginadorKeyset<T, C> {
+
+    public interface Fuente<T, C> {
+        /**
+         * @param cursor null para la primera página
+         * @param numeroPagina 0 para la primera; una página que no es la primera puede llegar
+         *                     con cursor null si la anterior no lo tenía (vino de caché)
+         */
+        void cargar(C cursor, int numeroPagina, int tamanoPagina, Respuesta<T, C> respuesta);
+    }
+
+    public interface Respuesta<T, C> {
+        /** Puede llamarse más de una vez: cada llamada reemplaza el contenido de la página. */
+        void entregar(List<T> items, C cursorSiguiente, boolean hayMas);
+
+        void fallar(Exception e);
+    }
+
+    public interface Identificador<T> {
+        String id(T item);
+    }
+
+    public interface Listener<T> {
+        void onItems(List<T> items);
+
+        void onError(Exception e);
+    }
+
+    private static final long LATENCIA_INICIAL_MS = 600;
+    private static final double SUAVIZADO = 0.3;
+
+    private static final class Pagina<T, C> {
+        final C cursorInicio;
+        final int numero;
+        List<T> items = Collections.emptyList();
+        C cursorSiguiente;
+        boolean hayMas;
+
+        Pagina(C cursorInicio, int numero) {
+            this.cursorInicio = cursorInicio;
+            this.numero = numero;
+        }
+    }
+
+    private final Fuente<T, C> fuente;
+    private final Identificador<T> identificador;
+    private final int tamanoPagina;
+    private final int maxPaginas;
+    private final LongSupplier reloj;
+    private Listener<T> listener;
+
+    private final Deque<Pagina<T, C>> ventana = new ArrayDeque<>();
+    /** Páginas descartadas por arriba, para poder recargarlas al volver. */
+    private final Deque<Pagina<T, C>> descartadas = new ArrayDeque<>();
+    private int generacion;
+    private boolean cargando;
+    private boolean fin;
+
+    private double latenciaMs = LATENCIA_INICIAL_MS;
+    private double velocidadItemsPorMs;
+    private int ultimaPosicion = -1;
+    private long ultimoScrollMs;
+
+    public PaginadorKeyset(Fuente<T, C> fuente, Identificador<T> identificador,
+                           int tamanoPagina, int maxPaginas, LongSupplier reloj) {
+        this.fuente = fuente;
+        this.identificador = identificador;
+        this.tamanoPagina = tamanoPagina;
+        this.maxPaginas = Math.max(2, maxPaginas);
+        this.reloj = reloj;
+    }
+
+    public void setListener(Listener<T> listener) {
+        this.listener = listener;
+    }
+
+    /** Descarta todo (p. ej. cambiaron los filtros) y pide la primera página. */
+    public void reiniciar() {
+        generacion++;
+        ventana.clear();
+        descartadas.clear();
+        cargando = false;
+        fin = false;
+        ultimaPosicion = -1;
+        velocidadItemsPorMs = 0;
+        cargarSiguiente();
+    }
+
+    /** Pide la página siguiente si no hay otra carga en curso ni se llegó al final. */
+    public void cargarSiguiente() {
+        if (cargando || fin) return;
+        Pagina<T, C> ultima = ventana.peekLast();
+        Pagina<T, C> pagina = ultima == null
+                ? new Pagina<>(null, 0)
+                : new Pagina<>(ultima.cursorSiguiente, ultima.numero + 1);
+        cargar(pagina, false);
+    }
+
+    /**
+     * Informa el scroll para decidir el prefetch.
+     *
+     * @param primeraVisible posición en {@link #getItems()} del primer item visible
+     * @param ultimaVisible  posición del último item visible
+     */
+    public void onScroll(int primeraVisible, int ultimaVisible) {
+        long ahora = reloj.getAsLong();
+        if (ultimaPosicion >= 0 && ahora > ultimoScrollMs) {
+            double instantanea = Math.max(0, ultimaVisible - ultimaPosicion) / (double) (ahora - ultimoScrollMs);
+            velocidadItemsPorMs = velocidadItemsPorMs * (1 - SUAVIZADO) + instantanea * SUAVIZADO;
+        }
+        ultimaPosicion = ultimaVisible;
+        ultimoScrollMs = ahora;
+
+        if (primeraVisible <= 0 && !descartadas.isEmpty()) {
+            cargarAnterior();
+            return;
+        }
+        if (debePrecargar(getTotal() - 1 - ultimaVisible)) {
+            cargarSiguiente();
+        }
+    }
+
+    /**
+     * Quedan pocos items: menos de lo que se va a recorrer mientras llega la carga, más un
+     * margen de un tercio de página para cuando el scroll está quieto.
+     */
+    boolean debePrecargar(int restantes) {
+        double consumoDuranteCarga = velocidadItemsPorMs * latenciaMs;
+        return restantes <= consumoDuranteCarga + tamanoPagina / 3.0;
+    }
+
+    public List<T> getItems() {
+        List<T> items = new ArrayList<>();
+        for (Pagina<T, C> p : ventana) {
+            items.addAll(p.items);
+        }
+        return items;
+    }
+
+    public boolean isCargando() {
+        return cargando;
+    }
+
+    public boolean hayMas() {
+        return !fin;
+    }
+
+    public boolean hayAnteriores() {
+        return !descartadas.isEmpty();
+    }
+
+    long getLatenciaEstimadaMs() {
+        return Math.round(latenciaMs);
+    }
+
+    // ===== Carga =====
+
+    private void cargarAnterior() {
+        if (cargando) return;
+        cargar(descartadas.peekLast(), true);
+    }
+
+    private void cargar(Pagina<T, C> pagina, boolean haciaAtras) {
+        cargando = true;
+        final int gen = generacion;
+        final long inicio = reloj.getAsLong();
+        fuente.cargar(pagina.cursorInicio, pagina.numero, tamanoPagina, new Respuesta<T, C>() {
+            private boolean primera = true;
+
+            @Override
+            public void entregar(List<T> items, C cursorSiguiente, boolean hayMas) {
+                if (gen != generacion) return; // Cambiaron los filtros
+                if (primera) {
+                    primera = false;
+                    latenciaMs = latenciaMs * (1 - SUAVIZADO) + (reloj.getAsLong() - inicio) * SUAVIZADO;
+                    cargando = false;
+                    if (haciaAtras) {
+                        descartadas.pollLast();
+                        ventana.addFirst(pagina);
+                        recortarAbajo();
+                    } else {
+                        ventana.addLast(pagina);
+                    }
+                } else if (!ventana.contains(pagina)) {
+                    return; // Ya se descartó de la ventana
+                }
+
+                pagina.items = sinRepetidos(items, pagina);
+                pagina.cursorSiguiente = cursorSiguiente;
+                pagina.hayMas = hayMas;
+                if (!haciaAtras && pagina == ventana.peekLast()) {
+                    fin = !hayMas;
+                }
+                if (!haciaAtras) {
+                    recortarArriba();
+                }
+                notificar();
+
+                // Página entera repetida (p. ej. la primera vino de caché sin cursor): seguir
+                if (!haciaAtras && pagina.items.isEmpty() && !fin && pagina == ventana.peekLast()) {
+                    cargarSiguiente();
+                }
+            }
+
+            @Override
+            public void fallar(Exception e) {
+                if (gen != generacion) return;
+                cargando = false;
+                if (listener != null) listener.onError(e);
+            }
+        });
+    }
+
+    private List<T> sinRepetidos(List<T> items, Pagina<T, C> propia) {
+        Set<String> otros = new HashSet<>();
+        for (Pagina<T, C> p : ventana) {
+            if (p == propia) continue;
+            for (T item : p.items) otros.add(identificador.id(item));
+        }
+        List<T> resultado = new ArrayList<>(items.size());
+        for (T item : items) {
+            if (otros.add(identificador.id(item))) {
+                resultado.add(item);
+            }
+        }
+        return resultado;
+    }
+
+    private void recortarArriba() {
+        while (ventana.size() > maxPaginas) {
+            descartadas.addLast(ventana.pollFirst());
+        }
+    }
+
+    /** Al recargar por arriba se sueltan páginas de abajo; se vuelven a pedir con su cursor. */
+    private void recortarAbajo() {
+        while (ventana.size() > maxPaginas) {
+            ventana.pollLast();
+            fin = false;
+        }
+    }
+
+    private int getTotal() {
+        int total = 0;
+        for (Pagina<T, C> p : ventana) total += p.items.size();
+        return total;
+    }
+
+    private void notificar() {
+        if (listener != null) listener.onItems(getItems());
+    }
+}
@@ -0,0 +1,484 @@
+package com.mjc.mascotalink.util;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Caché compartido de perfiles de "usuarios" (nombre, foto, rol, teléfono...) para toda la
+ * app, en vez de que cada pantalla haga su propio get() por usuario.
+ *
+ * - Memoria: LRU de {@link #MAX_EN_MEMORIA} perfiles. Disco: SharedPreferences, un valor
+ *   por usuario, podado a {@link #MAX_EN_DISCO}.
+ * - Un perfil sirve durante {@link #VIGENCIA_MS}; pasado ese tiempo se vuelve a leer, y si
+ *   la red falla se devuelve el guardado (hasta {@link #MAX_ANTIGUEDAD_MS}).
+ * - Varios pedidos del mismo usuario mientras hay una lectura en curso esperan esa lectura.
+ * - {@link #obtenerVarios} lee los que faltan de a {@link #MAX_POR_LECTURA} por consulta
+ *   (whereIn sobre documentId) en vez de un get() por usuario.
+ * - Las pantallas que ya escuchan el documento lo pasan a {@link #actualizar(DocumentSnapshot)}
+ *   y las que lo modifican llaman a {@link #invalidar(String)}.
+ *
+ * No es thread-safe: se usa desde el hilo principal, donde llegan los callbacks de Firestore.
+ */
+public class PerfilCache {
+
+    private static final String TAG = "PerfilCache";
+    private static final String PREFS_NAME = "MascotaLinkPerfiles";
+
+    static final int MAX_EN_MEMORIA = 200;
+    static final int MAX_EN_DISCO = 300;
+    static final long VIGENCIA_MS = 10 * 60 * 1000;
+    static final long MAX_ANTIGUEDAD_MS = 7L * 24 * 60 * 60 * 1000;
+    private static final int ESCRITURAS_ENTRE_PODAS = 20;
+    /** Máximo de valores de un whereIn en Firestore. */
+    static final int MAX_POR_LECTURA = 30;
+
+    private static final char SEPARADOR = '\u001F';
+    private static final String VERSION = "1";
+
+    private static PerfilCache instance;
+
+    /** Datos del perfil que se muestran en listas y encabezados. */
+    public static final class Perfil {
+        public final String id;
+        @Nullable public final String nombre;
+        @Nullable public final String fotoUrl;
+        @Nullable public final String rol;
+        @Nullable public final String telefono;
+        @Nullable public final Boolean aceptaSolicitudes;
+        final long guardadoMs;
+
+        public Perfil(String id, @Nullable String nombre, @Nullable String fotoUrl, @Nullable String rol,
+                      @Nullable String telefono, @Nullable Boolean aceptaSolicitudes, long guardadoMs) {
+            this.id = id;
+            this.nombre = nombre;
+            this.fotoUrl = fotoUrl;
+            this.rol = rol;
+            this.telefono = telefono;
+            this.aceptaSolicitudes = aceptaSolicitudes;
+            this.guardadoMs = guardadoMs;
+        }
+
+        /** @return el perfil del documento, o null si no existe */
+        @Nullable
+        public static Perfil desdeDocumento(DocumentSnapshot doc, long ahoraMs) {
+            if (doc == null || !doc.exists()) return null;
+            String nombre = doc.getString("nombre_display");
+            if (nombre == null) nombre = doc.getString("nombre");
+            return new Perfil(doc.getId(), nombre, doc.getString("foto_perfil"), doc.getString("rol"),
+                    doc.getString("telefono"), doc.getBoolean("acepta_solicitudes"), ahoraMs);
+        }
+    }
+
+    public interface Callback {
+        /** @param perfil null si el usuario no existe o no se pudo leer */
+        void onPerfil(@Nullable Perfil perfil);
+    }
+
+    public interface CallbackVarios {
+        /** @param perfiles por uid; no incluye los que no existen o no se pudieron leer */
+        void onPerfiles(@NonNull Map<String, Perfil> perfiles);
+    }
+
+    /** Lectura del perfil en el servidor. */
+    interface Lector {
+        void leer(String uid, Respuesta respuesta);
+
+        /** Lee a lo sumo {@link #MAX_POR_LECTURA} perfiles; por defecto, uno por uno. */
+        default void leerVarios(List<String> uids, RespuestaVarios respuesta) {
+            Map<String, Perfil> perfiles = new HashMap<>();
+            int[] faltan = {uids.size()};
+            Exception[] error = {null};
+            for (String uid : uids) {
+                leer(uid, new Respuesta() {
+                    @Override
+                    public void onPerfil(@Nullable Perfil perfil) {
+                        if (perfil != null) perfiles.put(uid, perfil);
+                        terminar();
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        error[0] = e;
+                        terminar();
+                    }
+
+                    private void terminar() {
+                        if (--faltan[0] > 0) return;
+                        if (error[0] != null) {
+                            respuesta.onError(error[0]);
+                        } else {
+                            respuesta.onPerfiles(perfiles);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    interface Respuesta {
+        void onPerfil(@Nullable Perfil perfil);
+
+        void onError(Exception e);
+    }
+
+    interface RespuestaVarios {
+        /** @param perfiles por uid; los que faltan no existen */
+        void onPerfiles(Map<String, Perfil> perfiles);
+
+        void onError(Exception e);
+    }
+
+    /** Almacenamiento persistente de los perfiles serializados. */
+    interface Almacen {
+        @Nullable
+        String leer(String uid);
+
+        void guardar(String uid, String valor);
+
+        void borrar(String uid);
+
+        Map<String, String> todos();
+    }
+
+    private final Lector lector;
+    private final Almacen almacen;
+    private final LongSupplier reloj;
+    private final Map<String, Perfil> memoria = new LinkedHashMap<String, Perfil>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Perfil> eldest) {
+            return size() > MAX_EN_MEMORIA;
+        }
+    };
+    private final Map<String, List<Callback>> enVuelo = new HashMap<>();
+    private int escrituras;
+
+    public static synchronized PerfilCache getInstance(@NonNull Context context) {
+        if (instance == null) {
+            SharedPreferences prefs = context.getApplicationContext()
+                    .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+            instance = new PerfilCache(lectorFirestore(), almacenPreferencias(prefs), System::currentTimeMillis);
+        }
+        return instance;
+    }
+
+    PerfilCache(Lector lector, Almacen almacen, LongSupplier reloj) {
+        this.lector = lector;
+        this.almacen = almacen;
+        this.reloj = reloj;
+    }
+
+    // ===== Consulta =====
+
+    /**
+     * Entrega el perfil vigente del caché o lo lee del servidor. Si la lectura falla se
+     * entrega el guardado aunque esté vencido.
+     */
+    public void obtener(@NonNull String uid, @NonNull Callback callback) {
+        Perfil guardado = buscarGuardado(uid);
+        if (guardado != null && esVigente(guardado)) {
+            callback.onPerfil(guardado);
+            return;
+        }
+
+        List<Callback> esperando = enVuelo.get(uid);
+        if (esperando != null) {
+            esperando.add(callback);
+            return;
+        }
+        esperando = new ArrayList<>();
+        esperando.add(callback);
+        enVuelo.put(uid, esperando);
+
+        lector.leer(uid, new Respuesta() {
+            @Override
+            public void onPerfil(@Nullable Perfil perfil) {
+                recibir(uid, perfil);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.w(TAG, "Error leyendo perfil " + uid + (guardado != null ? ", se usa el guardado" : ""), e);
+                completar(uid, guardado);
+            }
+        });
+    }
+
+    /** Igual que {@link #obtener(String, Callback)}, para combinar con Tasks.whenAllSuccess. */
+    public Task<Perfil> obtener(@NonNull String uid) {
+        TaskCompletionSource<Perfil> fuente = new TaskCompletionSource<>();
+        obtener(uid, fuente::setResult);
+        return fuente.getTask();
+    }
+
+    /**
+     * Perfiles de varios usuarios: los vigentes salen del caché y el resto se lee en lotes
+     * de {@link #MAX_POR_LECTURA}. Los que ya se están leyendo esperan esa lectura. Si un
+     * lote falla, sus usuarios se entregan con lo guardado aunque esté vencido.
+     */
+    public void obtenerVarios(@NonNull Collection<String> uids, @NonNull CallbackVarios callback) {
+        Map<String, Perfil> resultado = new HashMap<>();
+        Map<String, Perfil> vencidos = new HashMap<>();
+        Set<String> pendientes = new HashSet<>();
+        List<String> aLeer = new ArrayList<>();
+        for (String uid : new LinkedHashSet<>(uids)) {
+            Perfil guardado = buscarGuardado(uid);
+            if (guardado != null && esVigente(guardado)) {
+                resultado.put(uid, guardado);
+                continue;
+            }
+            pendientes.add(uid);
+            if (guardado != null) vencidos.put(uid, guardado);
+            if (!enVuelo.containsKey(uid)) {
+                enVuelo.put(uid, new ArrayList<>());
+                aLeer.add(uid);
+            }
+        }
+        if (pendientes.isEmpty()) {
+            callback.onPerfiles(resultado);
+            return;
+        }
+
+        for (String uid : pendientes) {
+            enVuelo.get(uid).add(perfil -> {
+                if (perfil != null) resultado.put(uid, perfil);
+                pendientes.remove(uid);
+                if (pendientes.isEmpty()) callback.onPerfiles(resultado);
+            });
+        }
+        for (int desde = 0; desde < aLeer.size(); desde += MAX_POR_LECTURA) {
+            leerLote(new ArrayList<>(aLeer.subList(desde, Math.min(desde + MAX_POR_LECTURA, aLeer.size()))), vencidos);
+        }
+    }
+
+    /** Perfil en caché solo si sigue vigente; null si hay que pedirlo. */
+    @Nullable
+    public Perfil getVigente(@NonNull String uid) {
+        Perfil perfil = buscarGuardado(uid);
+        return perfil != null && esVigente(perfil) ? perfil : null;
+    }
+
+    /** Perfil en caché sin importar su antigüedad, para pintar algo mientras se lee. */
+    @Nullable
+    public Perfil getCacheado(@NonNull String uid) {
+        return buscarGuardado(uid);
+    }
+
+    // ===== Invalidación =====
+
+    /** Reemplaza el perfil con un documento recién leído o recibido por un listener. */
+    public void actualizar(@Nullable DocumentSnapshot doc) {
+        if (doc == null) return;
+        Perfil perfil = Perfil.desdeDocumento(doc, reloj.getAsLong());
+        if (perfil != null) {
+            guardar(perfil);
+        } else {
+            olvidar(doc.getId());
+        }
+    }
+
+    /** Descarta el perfil para que el próximo pedido lo lea del servidor. */
+    public void invalidar(@NonNull String uid) {
+        olvidar(uid);
+    }
+
+    // ===== Almacenamiento =====
+
+    private boolean esVigente(Perfil perfil) {
+        return reloj.getAsLong() - perfil.guardadoMs < VIGENCIA_MS;
+    }
+
+    @Nullable
+    private Perfil buscarGuardado(String uid) {
+        Perfil perfil = memoria.get(uid);
+        if (perfil != null) return perfil;
+
+        perfil = decodificar(uid, almacen.leer(uid));
+        if (perfil == null) return null;
+        if (reloj.getAsLong() - perfil.guardadoMs > MAX_ANTIGUEDAD_MS) {
+            almacen.borrar(uid);
+            return null;
+        }
+        memoria.put(uid, perfil);
+        return perfil;
+    }
+
+    private void guardar(Perfil perfil) {
+        memoria.put(perfil.id, perfil);
+        almacen.guardar(perfil.id, codificar(perfil));
+        if (++escrituras % ESCRITURAS_ENTRE_PODAS == 0) {
+            podarDisco();
+        }
+    }
+
+    private void olvidar(String uid) {
+        memoria.remove(uid);
+        almacen.borrar(uid);
+    }
+
+    private void leerLote(List<String> lote, Map<String, Perfil> vencidos) {
+        lector.leerVarios(lote, new RespuestaVarios() {
+            @Override
+            public void onPerfiles(Map<String, Perfil> perfiles) {
+                for (String uid : lote) {
+                    recibir(uid, perfiles.get(uid));
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.w(TAG, "Error leyendo " + lote.size() + " perfiles, se usan los guardados", e);
+                for (String uid : lote) {
+                    completar(uid, vencidos.get(uid));
+                }
+            }
+        });
+    }
+
+    private void recibir(String uid, @Nullable Perfil perfil) {
+        if (perfil != null) {
+            guardar(perfil);
+        } else {
+            olvidar(uid);
+        }
+        completar(uid, perfil);
+    }
+
+    private void completar(String uid, @Nullable Perfil perfil) {
+        List<Callback> esperando = enVuelo.remove(uid);
+        if (esperando == null) return;
+        for (Callback callback : esperando) {
+            callback.onPerfil(perfil);
+        }
+    }
+
+    /** Deja en disco los {@link #MAX_EN_DISCO} perfiles guardados más recientemente. */
+    private void podarDisco() {
+        Map<String, String> todos = almacen.todos();
+        if (todos.size() <= MAX_EN_DISCO) return;
+
+        List<Perfil> perfiles = new ArrayList<>(todos.size());
+        for (Map.Entry<String, String> e : todos.entrySet()) {
+            Perfil perfil = decodificar(e.getKey(), e.getValue());
+            if (perfil == null) {
+                almacen.borrar(e.getKey());
+            } else {
+                perfiles.add(perfil);
+            }
+        }
+        perfiles.sort((a, b) -> Long.compare(b.guardadoMs, a.guardadoMs));
+        for (int i = MAX_EN_DISCO; i < perfiles.size(); i++) {
+            almacen.borrar(perfiles.get(i).id);
+        }
+        Log.d(TAG, "🧹 Perfiles en disco podados: " + Math.max(0, perfiles.size() - MAX_EN_DISCO));
+    }
+
+    static String codificar(Perfil perfil) {
+        StringBuilder sb = new StringBuilder(VERSION);
+        sb.append(SEPARADOR).append(perfil.guardadoMs);
+        for (String campo : new String[]{perfil.nombre, perfil.fotoUrl, perfil.rol, perfil.telefono,
+                perfil.aceptaSolicitudes == null ? null : perfil.aceptaSolicitudes.toString()}) {
+            sb.append(SEPARADOR);
+            if (campo != null) sb.append(campo.replace(SEPARADOR, ' '));
+        }
+        return sb.toString();
+    }
+
+    @Nullable
+    static Perfil decodificar(String uid, @Nullable String valor) {
+        if (valor == null) return null;
+        String[] campos = valor.split(String.valueOf(SEPARADOR), -1);
+        if (campos.length != 7 || !VERSION.equals(campos[0])) return null;
+        try {
+            return new Perfil(uid, vacioANull(campos[2]), vacioANull(campos[3]), vacioANull(campos[4]),
+                    vacioANull(campos[5]), campos[6].isEmpty() ? null : Boolean.valueOf(campos[6]),
+                    Long.parseLong(campos[1]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static String vacioANull(String s) {
+        return s.isEmpty() ? null : s;
+    }
+
+    // ===== Implementaciones de la app =====
+
+    private static Lector lectorFirestore() {
+        return new Lector() {
+            @Override
+            public void leer(String uid, Respuesta respuesta) {
+                FirebaseFirestore.getInstance().collection("usuarios").document(uid).get()
+                        .addOnSuccessListener(doc -> respuesta.onPerfil(Perfil.desdeDocumento(doc, System.currentTimeMillis())))
+                        .addOnFailureListener(respuesta::onError);
+            }
+
+            @Override
+            public void leerVarios(List<String> uids, RespuestaVarios respuesta) {
+                FirebaseFirestore.getInstance().collection("usuarios")
+                        .whereIn(FieldPath.documentId(), uids)
+                        .get()
+                        .addOnSuccessListener(snapshot -> {
+                            long ahora = System.currentTimeMillis();
+                            Map<String, Perfil> perfiles = new HashMap<>();
+                            for (DocumentSnapshot doc : snapshot.getDocuments()) {
+                                Perfil perfil = Perfil.desdeDocumento(doc, ahora);
+                                if (perfil != null) perfiles.put(perfil.id, perfil);
+                            }
+                            respuesta.onPerfiles(perfiles);
+                        })
+                        .addOnFailureListener(respuesta::onError);
+            }
+        };
+    }
+
+    private static Almacen almacenPreferencias(SharedPreferences prefs) {
+        return new Almacen() {
+            @Nullable
+            @Override
+            public String leer(String uid) {
+                return prefs.getString(uid, null);
+            }
+
+            @Override
+            public void guardar(String uid, String valor) {
+                prefs.edit().putString(uid, valor).apply();
+            }
+
+            @Override
+            public void borrar(String uid) {
+                if (prefs.contains(uid)) prefs.edit().remove(uid).apply();
+            }
+
+            @Override
+            public Map<String, String> todos() {
+                Map<String, String> todos = new HashMap<>();
+                for (Map.Entry<String, ?> e : prefs.getAll().entrySet()) {
+                    if (e.getValue() instanceof String) todos.put(e.getKey(), (String) e.getValue());
+                }
+                return todos;
+            }
+        };
+    }
+}
@@ -0,0 +1,182 @@
+package com.mjc.mascotalink.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resuelve las referencias de una lista (id_paseador, id_dueno, la mascota...) leyendo los
+ * documentos por lotes en vez de un get() por fila.
+ *
+ * - Las rutas se agrupan por colección y se consultan de a {@link #MAX_IDS_POR_CONSULTA}
+ *   ids (whereIn sobre documentId). Las repetidas se piden una sola vez.
+ * - Lo resuelto queda guardado entre snapshots: con cada cambio de la lista solo se leen
+ *   las referencias nuevas. Los documentos que no existen también se recuerdan.
+ * - Una ruta que ya está en consulta no se vuelve a pedir: el pedido nuevo espera esa respuesta.
+ *
+ * No es thread-safe: se usa desde el hilo principal, donde llegan los callbacks de Firestore.
+ *
+ * @param <D> documento (DocumentSnapshot en la app)
+ */
+public class ResolvedorReferencias<D> {
+
+    /** Límite de valores de un filtro "in" en Firestore. */
+    static final int MAX_IDS_POR_CONSULTA = 30;
+    private static final int MAX_EN_CACHE = 300;
+
+    public interface Fuente<D> {
+        /** Lee a lo sumo {@link #MAX_IDS_POR_CONSULTA} ids de una colección y responde por id. */
+        void consultar(String coleccion, List<String> ids, Respuesta<D> respuesta);
+    }
+
+    public interface Respuesta<D> {
+        void onExito(Map<String, D> documentos);
+
+        void onError(Exception e);
+    }
+
+    public interface Listener<D> {
+        /** Documentos por ruta; las que no existen o no se pudieron leer no se incluyen. */
+        void onResuelto(Map<String, D> documentos);
+    }
+
+    /** Pedido de {@link #resolver}: espera a que terminen todos sus lotes. */
+    private final class Pedido {
+        final Set<String> rutas;
+        final Listener<D> listener;
+        int pendientes;
+
+        Pedido(Set<String> rutas, Listener<D> listener) {
+            this.rutas = rutas;
+            this.listener = listener;
+        }
+    }
+
+    private final Fuente<D> fuente;
+    private final Map<String, D> cache = new LinkedHashMap<String, D>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, D> eldest) {
+            return size() > MAX_EN_CACHE;
+        }
+    };
+    private final Set<String> sinDocumento = new HashSet<>();
+    private final Map<String, List<Pedido>> enVuelo = new HashMap<>();
+    private int consultas;
+
+    public ResolvedorReferencias(Fuente<D> fuente) {
+        this.fuente = fuente;
+    }
+
+    /**
+     * Resuelve {@code rutas} ("coleccion/id", también subcolecciones) y llama al listener una
+     * sola vez con todas. Si todo estaba guardado responde enseguida.
+     */
+    public void resolver(Collection<String> rutas, Listener<D> listener) {
+        Pedido pedido = new Pedido(new LinkedHashSet<>(rutas), listener);
+        Map<String, List<String>> faltantesPorColeccion = new LinkedHashMap<>();
+        for (String ruta : pedido.rutas) {
+            if (cache.containsKey(ruta) || sinDocumento.contains(ruta)) continue;
+            List<Pedido> esperando = enVuelo.get(ruta);
+            if (esperando != null) {
+                esperando.add(pedido);
+                pedido.pendientes++;
+                continue;
+            }
+            int corte = ruta.lastIndexOf('/');
+            if (corte <= 0 || corte == ruta.length() - 1) continue; // Ruta inválida
+            String coleccion = ruta.substring(0, corte);
+            List<String> ids = faltantesPorColeccion.get(coleccion);
+            if (ids == null) {
+                ids = new ArrayList<>();
+                faltantesPorColeccion.put(coleccion, ids);
+            }
+            ids.add(ruta.substring(corte + 1));
+            List<Pedido> nuevo = new ArrayList<>();
+            nuevo.add(pedido);
+            enVuelo.put(ruta, nuevo);
+            pedido.pendientes++;
+        }
+
+        if (pedido.pendientes == 0) {
+            entregar(pedido);
+            return;
+        }
+        for (Map.Entry<String, List<String>> e : faltantesPorColeccion.entrySet()) {
+            String coleccion = e.getKey();
+            List<String> ids = e.getValue();
+            for (int desde = 0; desde < ids.size(); desde += MAX_IDS_POR_CONSULTA) {
+                List<String> lote = new ArrayList<>(ids.subList(desde, Math.min(desde + MAX_IDS_POR_CONSULTA, ids.size())));
+                consultas++;
+                fuente.consultar(coleccion, lote, new Respuesta<D>() {
+                    @Override
+                    public void onExito(Map<String, D> documentos) {
+                        completarLote(coleccion, lote, documentos, true);
+                    }
+
+                    @Override
+                    public void onError(Exception ex) {
+                        // Sin recordar el fallo: se vuelve a pedir en el próximo snapshot
+                        completarLote(coleccion, lote, new HashMap<>(), false);
+                    }
+                });
+            }
+        }
+    }
+
+    /** Documento guardado para la ruta, o null si no se resolvió o no existe. */
+    public D get(String ruta) {
+        return cache.get(ruta);
+    }
+
+    /** Olvida una ruta (p. ej. se sabe que el documento cambió). */
+    public void invalidar(String ruta) {
+        cache.remove(ruta);
+        sinDocumento.remove(ruta);
+    }
+
+    /** Olvida todo (refresco manual); las consultas en curso siguen. */
+    public void invalidar() {
+        cache.clear();
+        sinDocumento.clear();
+    }
+
+    int getConsultas() {
+        return consultas;
+    }
+
+    private void completarLote(String coleccion, List<String> ids, Map<String, D> documentos, boolean exito) {
+        List<Pedido> listos = new ArrayList<>();
+        for (String id : ids) {
+            String ruta = coleccion + "/" + id;
+            D doc = documentos.get(id);
+            if (doc != null) {
+                cache.put(ruta, doc);
+            } else if (exito) {
+                sinDocumento.add(ruta);
+            }
+            List<Pedido> esperando = enVuelo.remove(ruta);
+            if (esperando == null) continue;
+            for (Pedido pedido : esperando) {
+                if (--pedido.pendientes == 0) listos.add(pedido);
+            }
+        }
+        for (Pedido pedido : listos) {
+            entregar(pedido);
+        }
+    }
+
+    private void entregar(Pedido pedido) {
+        Map<String, D> documentos = new HashMap<>();
+        for (String ruta : pedido.rutas) {
+            D doc = cache.get(ruta);
+            if (doc != null) documentos.put(ruta, doc);
+        }
+        pedido.listener.onResuelto(documentos);
+    }
+}
@@ -0,0 +1,316 @@
+package com.mjc.mascotalink.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Resumen precalculado de la ruta de un paseo: distancia, duración, tiempo en movimiento,
+ * bounding box y una polilínea simplificada (formato "encoded polyline" de Google).
+ *
+ * Se guarda en la reserva ({@link #CAMPO}) y en {@link ResumenRutaCache}; las pantallas de
+ * resumen e historial lo leen sin volver a recorrer los puntos crudos.
+ *
+ * Al finalizar, la pantalla del paseo guarda uno {@link #isProvisional() provisional} con la
+ * ruta que tiene leída (faltan los puntos que siguen en el journal). LocationService lo
+ * reemplaza por el definitivo cuando termina de drenar el journal; los provisionales no
+ * se guardan en el caché.
+ */
+public final class ResumenRuta {
+
+    public static final String CAMPO = "resumen_ruta";
+    static final int VERSION = 1;
+
+    private static final double RADIO_TIERRA_M = 6_371_000.0;
+    private static final float VELOCIDAD_MOVIMIENTO_MPS = 0.5f; // Por debajo: detenido
+    private static final long MAX_HUECO_MOVIMIENTO_MS = 60_000;  // Huecos mayores no cuentan como movimiento
+    private static final float TOLERANCIA_POLILINEA_M = 10f;
+    private static final int VENTANA_POLILINEA = 50;
+
+    private final double distanciaMetros;
+    private final long duracionMs;
+    private final long enMovimientoMs;
+    private final double minLat;
+    private final double minLng;
+    private final double maxLat;
+    private final double maxLng;
+    private final int puntos;
+    private final String polilinea;
+    private final boolean provisional;
+
+    ResumenRuta(double distanciaMetros, long duracionMs, long enMovimientoMs,
+                double minLat, double minLng, double maxLat, double maxLng,
+                int puntos, String polilinea) {
+        this.distanciaMetros = distanciaMetros;
+        this.duracionMs = duracionMs;
+        this.enMovimientoMs = enMovimientoMs;
+        this.minLat = minLat;
+        this.minLng = minLng;
+        this.maxLat = maxLat;
+        this.maxLng = maxLng;
+        this.puntos = puntos;
+        this.polilinea = polilinea;
+        this.provisional = false;
+    }
+
+    private ResumenRuta(ResumenRuta base, boolean provisional) {
+        this.distanciaMetros = base.distanciaMetros;
+        this.duracionMs = base.duracionMs;
+        this.enMovimientoMs = base.enMovimientoMs;
+        this.minLat = base.minLat;
+        this.minLng = base.minLng;
+        this.maxLat = base.maxLat;
+        this.maxLng = base.maxLng;
+        this.puntos = base.puntos;
+        this.polilinea = base.polilinea;
+        this.provisional = provisional;
+    }
+
+    /** Copia marcada como provisional (calculada con una ruta posiblemente incompleta). */
+    @NonNull
+    public ResumenRuta comoProvisional() {
+        return provisional ? this : new ResumenRuta(this, true);
+    }
+
+    /**
+     * Recorre la ruta una sola vez.
+     *
+     * @param distanciaMedidaMetros distancia acumulada por LocationService con todos los fixes
+     *                              crudos (más precisa que la de la ruta simplificada); si es
+     *                              &lt;= 0 se usa la calculada sobre la ruta
+     */
+    @NonNull
+    public static ResumenRuta calcular(@NonNull TrackBuffer ruta, double distanciaMedidaMetros) {
+        int n = ruta.size();
+        if (n == 0) {
+            return new ResumenRuta(Math.max(0, distanciaMedidaMetros), 0, 0, 0, 0, 0, 0, 0, "");
+        }
+
+        double distancia = 0;
+        long enMovimiento = 0;
+        double minLat = ruta.getLat(0);
+        double maxLat = minLat;
+        double minLng = ruta.getLng(0);
+        double maxLng = minLng;
+
+        TrackBuffer simplificada = TrackBuffer.growable(Math.min(n, 64));
+        TrackSimplifier simplifier = new TrackSimplifier(TOLERANCIA_POLILINEA_M, VENTANA_POLILINEA,
+                (lat, lng, acc, speed, t) -> simplificada.add(lat, lng, acc, speed, t));
+        simplifier.agregar(ruta.getLat(0), ruta.getLng(0), 0f, 0f, ruta.getTime(0));
+
+        for (int i = 1; i < n; i++) {
+            double lat = ruta.getLat(i);
+            double lng = ruta.getLng(i);
+            double tramo = distanciaHaversine(ruta.getLat(i - 1), ruta.getLng(i - 1), lat, lng);
+            distancia += tramo;
+
+            long dt = ruta.getTime(i) - ruta.getTime(i - 1);
+            if (dt > 0 && dt <= MAX_HUECO_MOVIMIENTO_MS && tramo / (dt / 1000.0) >= VELOCIDAD_MOVIMIENTO_MPS) {
+                enMovimiento += dt;
+            }
+
+            minLat = Math.min(minLat, lat);
+            maxLat = Math.max(maxLat, lat);
+            minLng = Math.min(minLng, lng);
+            maxLng = Math.max(maxLng, lng);
+            simplifier.agregar(lat, lng, 0f, 0f, ruta.getTime(i));
+        }
+        simplifier.flush();
+
+        long inicio = ruta.getTime(0);
+        long fin = ruta.getTime(n - 1);
+        long duracion = inicio > 0 && fin > inicio ? fin - inicio : 0;
+
+        return new ResumenRuta(distanciaMedidaMetros > 0 ? distanciaMedidaMetros : distancia,
+                duracion, enMovimiento, minLat, minLng, maxLat, maxLng, n, codificarPolilinea(simplificada));
+    }
+
+    // ===== SERIALIZACIÓN =====
+
+    /**
+     * Formato para Firestore (campo {@link #CAMPO} de la reserva).
+     */
+    @NonNull
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("version", VERSION);
+        map.put("distancia_m", distanciaMetros);
+        map.put("duracion_ms", duracionMs);
+        map.put("en_movimiento_ms", enMovimientoMs);
+        map.put("min_lat", minLat);
+        map.put("min_lng", minLng);
+        map.put("max_lat", maxLat);
+        map.put("max_lng", maxLng);
+        map.put("puntos", puntos);
+        map.put("polilinea", polilinea);
+        map.put("provisional", provisional);
+        return map;
+    }
+
+    @Nullable
+    public static ResumenRuta fromMap(@Nullable Object obj) {
+        if (!(obj instanceof Map)) return null;
+        Map<?, ?> map = (Map<?, ?>) obj;
+        if (!(map.get("distancia_m") instanceof Number)) return null;
+        Object polilinea = map.get("polilinea");
+        ResumenRuta resumen = new ResumenRuta(numero(map, "distancia_m"), (long) numero(map, "duracion_ms"),
+                (long) numero(map, "en_movimiento_ms"), numero(map, "min_lat"), numero(map, "min_lng"),
+                numero(map, "max_lat"), numero(map, "max_lng"), (int) numero(map, "puntos"),
+                polilinea instanceof String ? (String) polilinea : "");
+        return Boolean.TRUE.equals(map.get("provisional")) ? resumen.comoProvisional() : resumen;
+    }
+
+    /**
+     * Formato compacto de una línea para el caché local. La polilínea va al final
+     * porque puede contener el separador.
+     */
+    @NonNull
+    String serializar() {
+        return String.format(Locale.US, "%d|%.1f|%d|%d|%.6f|%.6f|%.6f|%.6f|%d|%s",
+                VERSION, distanciaMetros, duracionMs, enMovimientoMs,
+                minLat, minLng, maxLat, maxLng, puntos, polilinea);
+    }
+
+    @Nullable
+    static ResumenRuta deserializar(@Nullable String texto) {
+        if (texto == null) return null;
+        String[] partes = texto.split("\\|", 10);
+        if (partes.length != 10 || !String.valueOf(VERSION).equals(partes[0])) return null;
+        try {
+            return new ResumenRuta(Double.parseDouble(partes[1]), Long.parseLong(partes[2]),
+                    Long.parseLong(partes[3]), Double.parseDouble(partes[4]), Double.parseDouble(partes[5]),
+                    Double.parseDouble(partes[6]), Double.parseDouble(partes[7]),
+                    Integer.parseInt(partes[8]), partes[9]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // ===== GETTERS =====
+
+    public double getDistanciaMetros() {
+        return distanciaMetros;
+    }
+
+    public double getDistanciaKm() {
+        return distanciaMetros / 1000.0;
+    }
+
+    public long getDuracionMs() {
+        return duracionMs;
+    }
+
+    public long getEnMovimientoMs() {
+        return enMovimientoMs;
+    }
+
+    public double getMinLat() {
+        return minLat;
+    }
+
+    public double getMinLng() {
+        return minLng;
+    }
+
+    public double getMaxLat() {
+        return maxLat;
+    }
+
+    public double getMaxLng() {
+        return maxLng;
+    }
+
+    /** true si todavía falta el recálculo con la ruta completa (no se cachea). */
+    public boolean isProvisional() {
+        return provisional;
+    }
+
+    /** Puntos de la ruta original (antes de simplificar la polilínea). */
+    public int getPuntos() {
+        return puntos;
+    }
+
+    /** Polilínea simplificada en formato "encoded polyline" (precisión 1e-5). */
+    @NonNull
+    public String getPolilinea() {
+        return polilinea;
+    }
+
+    @NonNull
+    public TrackBuffer decodificarPolilinea() {
+        return decodificarPolilinea(polilinea);
+    }
+
+    // ===== ENCODED POLYLINE =====
+
+    @NonNull
+    static String codificarPolilinea(@NonNull TrackBuffer ruta) {
+        StringBuilder sb = new StringBuilder(ruta.size() * 8);
+        long prevLat = 0;
+        long prevLng = 0;
+        for (int i = 0; i < ruta.size(); i++) {
+            long lat = Math.round(ruta.getLat(i) * 1e5);
+            long lng = Math.round(ruta.getLng(i) * 1e5);
+            codificarValor(lat - prevLat, sb);
+            codificarValor(lng - prevLng, sb);
+            prevLat = lat;
+            prevLng = lng;
+        }
+        return sb.toString();
+    }
+
+    @NonNull
+    static TrackBuffer decodificarPolilinea(@NonNull String codificada) {
+        TrackBuffer ruta = TrackBuffer.growable(Math.max(4, codificada.length() / 6));
+        int[] pos = {0};
+        long lat = 0;
+        long lng = 0;
+        while (pos[0] < codificada.length()) {
+            lat += decodificarValor(codificada, pos);
+            lng += decodificarValor(codificada, pos);
+            ruta.add(lat / 1e5, lng / 1e5, 0f, 0f, 0L);
+        }
+        return ruta;
+    }
+
+    private static void codificarValor(long valor, StringBuilder sb) {
+        long v = valor < 0 ? ~(valor << 1) : valor << 1;
+        while (v >= 0x20) {
+            sb.append((char) ((0x20 | (v & 0x1f)) + 63));
+            v >>= 5;
+        }
+        sb.append((char) (v + 63));
+    }
+
+    private static long decodificarValor(String s, int[] pos) {
+        long resultado = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (pos[0] >= s.length()) {
+                throw new IllegalArgumentException("Polilínea truncada");
+            }
+            b = s.charAt(pos[0]++) - 63;
+            resultado |= (long) (b & 0x1f) << shift;
+            shift += 5;
+        } while (b >= 0x20);
+        return (resultado & 1) != 0 ? ~(resultado >> 1) : resultado >> 1;
+    }
+
+    private static double distanciaHaversine(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * RADIO_TIERRA_M * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private static double numero(Map<?, ?> map, String clave) {
+        Object valor = map.get(clave);
+        return valor instanceof Number ? ((Number) valor).doubleValue() : 0;
+    }
+}
@@ -0,0 +1,114 @@
+package com.mjc.mascotalink.util;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caché local de {@link ResumenRuta} por reserva.
+ *
+ * Un paseo finalizado no cambia de ruta, así que el resumen definitivo no expira: se guarda en
+ * SharedPreferences (sobrevive reinicios) con una copia en memoria para las listas.
+ * Se conservan como máximo {@link #MAX_ENTRADAS} reservas; las más antiguas se descartan.
+ */
+public final class ResumenRutaCache {
+    private static final String TAG = "ResumenRutaCache";
+    private static final String PREFS_NAME = "MascotaLinkRutaCache";
+    private static final String PREFIJO_RESUMEN = "r_";
+    private static final String PREFIJO_TIEMPO = "t_";
+
+    private static final int MAX_ENTRADAS = 200;
+    private static final int MAX_EN_MEMORIA = 50;
+
+    private static final Map<String, ResumenRuta> memoria =
+            new LinkedHashMap<String, ResumenRuta>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ResumenRuta> eldest) {
+                    return size() > MAX_EN_MEMORIA;
+                }
+            };
+
+    private ResumenRutaCache() {
+    }
+
+    @Nullable
+    public static ResumenRuta obtener(@NonNull Context context, @Nullable String reservaId) {
+        if (reservaId == null || reservaId.isEmpty()) return null;
+
+        synchronized (memoria) {
+            ResumenRuta enMemoria = memoria.get(reservaId);
+            if (enMemoria != null) return enMemoria;
+        }
+
+        String texto = prefs(context).getString(PREFIJO_RESUMEN + reservaId, null);
+        ResumenRuta resumen = ResumenRuta.deserializar(texto);
+        if (resumen != null) {
+            synchronized (memoria) {
+                memoria.put(reservaId, resumen);
+            }
+        } else if (texto != null) {
+            Log.w(TAG, "⚠️ Resumen en caché ilegible para " + reservaId + ", se descarta");
+            prefs(context).edit()
+                    .remove(PREFIJO_RESUMEN + reservaId)
+                    .remove(PREFIJO_TIEMPO + reservaId)
+                    .apply();
+        }
+        return resumen;
+    }
+
+    public static void guardar(@NonNull Context context, @Nullable String reservaId, @Nullable ResumenRuta resumen) {
+        if (reservaId == null || reservaId.isEmpty() || resumen == null) return;
+        if (resumen.isProvisional()) return; // Se reemplaza al terminar de drenar el journal
+
+        synchronized (memoria) {
+            memoria.put(reservaId, resumen);
+        }
+
+        SharedPreferences prefs = prefs(context);
+        SharedPreferences.Editor editor = prefs.edit()
+                .putString(PREFIJO_RESUMEN + reservaId, resumen.serializar())
+                .putLong(PREFIJO_TIEMPO + reservaId, System.currentTimeMillis());
+        podar(prefs, editor, reservaId);
+        editor.apply();
+    }
+
+    /**
+     * Descarta las entradas más antiguas si se supera {@link #MAX_ENTRADAS}.
+     */
+    private static void podar(SharedPreferences prefs, SharedPreferences.Editor editor, String actual) {
+        Map<String, ?> todo = prefs.getAll();
+        if (todo.size() / 2 < MAX_ENTRADAS) return;
+
+        List<Map.Entry<String, Long>> tiempos = new ArrayList<>();
+        for (Map.Entry<String, ?> entrada : todo.entrySet()) {
+            String clave = entrada.getKey();
+            if (clave.startsWith(PREFIJO_TIEMPO) && entrada.getValue() instanceof Long) {
+                String id = clave.substring(PREFIJO_TIEMPO.length());
+                if (!id.equals(actual)) {
+                    tiempos.add(new AbstractMap.SimpleEntry<>(id, (Long) entrada.getValue()));
+                }
+            }
+        }
+        tiempos.sort((a, b) -> Long.compare(a.getValue(), b.getValue()));
+
+        int sobrantes = tiempos.size() + 1 - MAX_ENTRADAS;
+        for (int i = 0; i < sobrantes && i < tiempos.size(); i++) {
+            String id = tiempos.get(i).getKey();
+            editor.remove(PREFIJO_RESUMEN + id).remove(PREFIJO_TIEMPO + id);
+        }
+        Log.d(TAG, "🧹 Caché de rutas podado: " + Math.max(0, sobrantes) + " entradas");
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
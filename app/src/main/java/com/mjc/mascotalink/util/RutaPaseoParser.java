@@ -0,0 +1,277 @@
+package com.mjc.mascotalink.util;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.GeoPoint;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lee la ruta de un paseo desde el documento de la reserva a un {@link TrackBuffer}.
+ *
+ * Soporta ambos formatos que conviven en Firestore:
+ * - {@code ubicaciones}: array legacy de Maps {lat, lng, acc, speed, ts} o GeoPoints
+ *   (lo sigue escribiendo el servidor WebSocket).
+ * - {@code ubicaciones_chunks}: array de Blobs en formato {@link TrackChunkCodec}
+ *   (lo escribe LocationService). Los chunks v2 llevan seq por punto: si un reintento
+ *   reenvió puntos ya guardados, aquí se descartan los repetidos.
+ */
+public final class RutaPaseoParser {
+
+    private static final String TAG = "RutaPaseoParser";
+
+    public static final String CAMPO_UBICACIONES = "ubicaciones";
+    public static final String CAMPO_CHUNKS = "ubicaciones_chunks";
+
+    private RutaPaseoParser() {
+    }
+
+    @NonNull
+    public static TrackBuffer parsear(@Nullable DocumentSnapshot snapshot) {
+        if (snapshot == null) {
+            return TrackBuffer.growable(16);
+        }
+        return parsear(snapshot.get(CAMPO_UBICACIONES), snapshot.get(CAMPO_CHUNKS));
+    }
+
+    /**
+     * Decodifica ambos formatos y ordena por tiempo cuando se mezclan.
+     */
+    @NonNull
+    public static TrackBuffer parsear(@Nullable Object ubicacionesLegacy, @Nullable Object chunks) {
+        TrackBuffer ruta = TrackBuffer.growable(contarPuntos(ubicacionesLegacy, chunks));
+        leer(ubicacionesLegacy, chunks, new Cursor(), ruta, false);
+        return ruta;
+    }
+
+    /**
+     * Lectura incremental: devuelve solo los puntos agregados desde la última llamada con
+     * el mismo {@link Cursor}. Ambos arrays crecen solo por el final (arrayUnion), así que
+     * basta recordar cuántos elementos de cada uno se aplicaron. Si un array se achicó
+     * (documento reescrito), el cursor se reinicia y se devuelve la ruta completa.
+     *
+     * Los puntos legacy que el servidor agrega cada 30s suelen ir por delante de los chunks
+     * (que llegan por lotes): si el documento tiene chunks, un punto legacy más nuevo que el
+     * último punto de chunk se deja para una lectura posterior, así lo entregado sale
+     * siempre en orden de tiempo y se puede agregar al final de lo ya dibujado. Si aun así
+     * llega algo anterior a lo entregado (legacy dibujado antes del primer chunk), se
+     * devuelve la ruta completa ordenada con el cursor reiniciado.
+     */
+    @NonNull
+    public static TrackBuffer parsearNuevos(@Nullable DocumentSnapshot snapshot, @NonNull Cursor cursor) {
+        if (snapshot == null) {
+            cursor.reiniciado = false;
+            return TrackBuffer.growable(16);
+        }
+        return parsearNuevos(snapshot.get(CAMPO_UBICACIONES), snapshot.get(CAMPO_CHUNKS), cursor);
+    }
+
+    @NonNull
+    public static TrackBuffer parsearNuevos(@Nullable Object ubicacionesLegacy, @Nullable Object chunks,
+                                           @NonNull Cursor cursor) {
+        TrackBuffer nuevos = TrackBuffer.growable(16);
+        long entregadoHasta = cursor.ultimoTsEntregado;
+        leer(ubicacionesLegacy, chunks, cursor, nuevos, true);
+        if (!cursor.reiniciado && hayAnteriorA(nuevos, entregadoHasta)) {
+            cursor.reset();
+            nuevos.clear();
+            leer(ubicacionesLegacy, chunks, cursor, nuevos, true);
+            cursor.reiniciado = true;
+        }
+        return nuevos;
+    }
+
+    private static void leer(@Nullable Object ubicacionesLegacy, @Nullable Object chunks,
+                             Cursor cursor, TrackBuffer destino, boolean incremental) {
+        List<?> legacy = ubicacionesLegacy instanceof List ? (List<?>) ubicacionesLegacy : Collections.emptyList();
+        List<?> chunkList = chunks instanceof List ? (List<?>) chunks : Collections.emptyList();
+
+        cursor.reiniciado = false;
+        if (legacy.size() < cursor.legacyAplicados || chunkList.size() < cursor.chunksAplicados) {
+            cursor.reset();
+            cursor.reiniciado = true;
+        }
+        int antes = destino.size();
+
+        boolean hayChunks = false;
+        for (int i = cursor.chunksAplicados; i < chunkList.size(); i++) {
+            byte[] bytes = bytesDeChunk(chunkList.get(i));
+            if (bytes == null) continue;
+            try {
+                int omitir = puntosRepetidos(bytes, cursor.ultimoSeq);
+                int desde = destino.size();
+                hayChunks |= TrackChunkCodec.decode(bytes, destino, omitir) > 0;
+                for (int j = desde; j < destino.size(); j++) {
+                    cursor.ultimoTsChunks = Math.max(cursor.ultimoTsChunks, destino.getTime(j));
+                }
+                cursor.ultimoSeq = Math.max(cursor.ultimoSeq, ultimoSeqDe(bytes));
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "Chunk de ruta inválido, ignorando", e);
+            }
+        }
+        cursor.chunksAplicados = chunkList.size();
+
+        boolean hayLegacy = false;
+        boolean esperarChunks = incremental && cursor.ultimoTsChunks != Long.MIN_VALUE;
+        TrackBuffer punto = new TrackBuffer(1);
+        int i = cursor.legacyAplicados;
+        for (; i < legacy.size(); i++) {
+            punto.clear();
+            if (!agregarPuntoLegacy(legacy.get(i), punto)) continue;
+            if (esperarChunks && punto.getTime(0) > cursor.ultimoTsChunks) break;
+            destino.add(punto.getLat(0), punto.getLng(0), punto.getAccuracy(0), punto.getSpeed(0), punto.getTime(0));
+            hayLegacy = true;
+        }
+        cursor.legacyAplicados = i;
+
+        if (hayLegacy && hayChunks) {
+            destino.sortByTime();
+        }
+        for (int j = antes; j < destino.size(); j++) {
+            cursor.ultimoTsEntregado = Math.max(cursor.ultimoTsEntregado, destino.getTime(j));
+        }
+        cursor.puntos += destino.size() - antes;
+    }
+
+    private static boolean hayAnteriorA(TrackBuffer puntos, long ts) {
+        for (int i = 0; i < puntos.size(); i++) {
+            long t = puntos.getTime(i);
+            if (t > 0 && t < ts) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Posición de lectura de la ruta de un documento, para {@link #parsearNuevos}.
+     */
+    public static final class Cursor {
+        int legacyAplicados;
+        int chunksAplicados;
+        long ultimoSeq = -1;
+        long ultimoTsChunks = Long.MIN_VALUE;
+        long ultimoTsEntregado;
+        int puntos;
+        boolean reiniciado;
+
+        /** Puntos entregados en total desde el último reinicio. */
+        public int getPuntos() {
+            return puntos;
+        }
+
+        /** true si la última lectura empezó de cero (hay que descartar lo dibujado). */
+        public boolean isReiniciado() {
+            return reiniciado;
+        }
+
+        public void reset() {
+            legacyAplicados = 0;
+            chunksAplicados = 0;
+            ultimoSeq = -1;
+            ultimoTsChunks = Long.MIN_VALUE;
+            ultimoTsEntregado = 0;
+            puntos = 0;
+        }
+    }
+
+    /**
+     * Cuenta los puntos sin decodificarlos (solo lee la cabecera de cada chunk).
+     * Útil para detectar si la ruta cambió en un snapshot listener.
+     */
+    public static int contarPuntos(@Nullable Object ubicacionesLegacy, @Nullable Object chunks) {
+        int total = 0;
+        if (ubicacionesLegacy instanceof List) {
+            total += ((List<?>) ubicacionesLegacy).size();
+        }
+        if (chunks instanceof List) {
+            long ultimoSeq = -1;
+            for (Object item : (List<?>) chunks) {
+                byte[] bytes = bytesDeChunk(item);
+                if (bytes != null) {
+                    total += TrackChunkCodec.pointCount(bytes) - puntosRepetidos(bytes, ultimoSeq);
+                    ultimoSeq = Math.max(ultimoSeq, ultimoSeqDe(bytes));
+                }
+            }
+        }
+        return total;
+    }
+
+    public static int contarPuntos(@Nullable DocumentSnapshot snapshot) {
+        if (snapshot == null) return 0;
+        return contarPuntos(snapshot.get(CAMPO_UBICACIONES), snapshot.get(CAMPO_CHUNKS));
+    }
+
+    /**
+     * Cuántos puntos iniciales del chunk ya fueron vistos (seq <= ultimoSeq).
+     */
+    private static int puntosRepetidos(byte[] chunk, long ultimoSeq) {
+        long primerSeq = TrackChunkCodec.firstSeq(chunk);
+        if (primerSeq < 0 || ultimoSeq < primerSeq) {
+            return 0;
+        }
+        return (int) Math.min(TrackChunkCodec.pointCount(chunk), ultimoSeq - primerSeq + 1);
+    }
+
+    private static long ultimoSeqDe(byte[] chunk) {
+        long primerSeq = TrackChunkCodec.firstSeq(chunk);
+        return primerSeq < 0 ? -1 : primerSeq + TrackChunkCodec.pointCount(chunk) - 1;
+    }
+
+    @Nullable
+    private static byte[] bytesDeChunk(Object item) {
+        if (item instanceof Blob) {
+            return ((Blob) item).toBytes();
+        }
+        if (item instanceof byte[]) {
+            return (byte[]) item;
+        }
+        return null;
+    }
+
+    private static boolean agregarPuntoLegacy(Object item, TrackBuffer ruta) {
+        if (item instanceof GeoPoint) {
+            GeoPoint gp = (GeoPoint) item;
+            ruta.add(gp.getLatitude(), gp.getLongitude(), 0f, 0f, 0L);
+            return true;
+        }
+        if (!(item instanceof Map)) {
+            return false;
+        }
+        Map<?, ?> map = (Map<?, ?>) item;
+        Object latObj = map.get("lat");
+        Object lngObj = map.get("lng");
+        if (lngObj == null) lngObj = map.get("lon");
+        if (!(latObj instanceof Number) || !(lngObj instanceof Number)) {
+            return false;
+        }
+        double lat = ((Number) latObj).doubleValue();
+        double lng = ((Number) lngObj).doubleValue();
+        if (lat == 0 && lng == 0) {
+            return false;
+        }
+
+        Object accObj = map.get("acc");
+        Object speedObj = map.get("speed");
+        Object tsObj = map.get("ts");
+        float acc = accObj instanceof Number ? ((Number) accObj).floatValue() : 0f;
+        float speed = speedObj instanceof Number ? ((Number) speedObj).floatValue() : 0f;
+        long ts = 0L;
+        if (tsObj instanceof Timestamp) {
+            ts = ((Timestamp) tsObj).toDate().getTime();
+        } else if (tsObj instanceof Date) {
+            ts = ((Date) tsObj).getTime();
+        } else if (tsObj instanceof Number) {
+            ts = ((Number) tsObj).longValue();
+        }
+        ruta.add(lat, lng, acc, speed, ts);
+        return true;
+    }
+}
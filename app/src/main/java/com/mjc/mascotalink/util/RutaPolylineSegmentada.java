@@ -0,0 +1,167 @@
+package com.mjc.mascotalink.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.JointType;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Polyline;
+import com.google.android.gms.maps.model.PolylineOptions;
+import com.google.android.gms.maps.model.RoundCap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dibuja la ruta de un paseo en el mapa de forma incremental.
+ *
+ * - La ruta se parte en segmentos de {@link #PUNTOS_POR_SEGMENTO} puntos. Solo el último
+ *   segmento (abierto) se actualiza con setPoints; los anteriores quedan fijos y nunca
+ *   se reconstruyen, así que agregar puntos cuesta lo mismo al minuto 5 que al 90.
+ * - Los puntos en vivo del WebSocket van en un tramo provisional aparte, que se descarta
+ *   cuando llegan los puntos guardados (la ruta persistida es la que manda).
+ */
+public class RutaPolylineSegmentada {
+
+    public static final int PUNTOS_POR_SEGMENTO = 200;
+    private static final int MAX_PUNTOS_EN_VIVO = 50;
+
+    private final GoogleMap map;
+    private final int color;
+    private final float ancho;
+
+    private final List<Polyline> segmentosCerrados = new ArrayList<>();
+    private Polyline segmentoAbierto;
+    private final List<LatLng> puntosAbiertos = new ArrayList<>(PUNTOS_POR_SEGMENTO);
+
+    private Polyline tramoEnVivo;
+    private final List<LatLng> puntosEnVivo = new ArrayList<>();
+
+    private int totalPuntos = 0;
+    private LatLng primero;
+    private LatLng ultimoGuardado;
+
+    public RutaPolylineSegmentada(@NonNull GoogleMap map, int color, float ancho) {
+        this.map = map;
+        this.color = color;
+        this.ancho = ancho;
+    }
+
+    /**
+     * Agrega puntos guardados (en orden) al final de la ruta.
+     */
+    public void agregar(@NonNull TrackBuffer nuevos) {
+        if (nuevos.isEmpty()) return;
+
+        for (int i = 0; i < nuevos.size(); i++) {
+            LatLng punto = new LatLng(nuevos.getLat(i), nuevos.getLng(i));
+            if (puntosAbiertos.size() == PUNTOS_POR_SEGMENTO) {
+                cerrarSegmento();
+            }
+            puntosAbiertos.add(punto);
+            if (primero == null) primero = punto;
+            ultimoGuardado = punto;
+            totalPuntos++;
+        }
+
+        if (segmentoAbierto == null) {
+            segmentoAbierto = map.addPolyline(opciones().addAll(puntosAbiertos));
+        } else {
+            segmentoAbierto.setPoints(puntosAbiertos);
+        }
+
+        // Lo guardado reemplaza a lo provisional
+        puntosEnVivo.clear();
+        if (tramoEnVivo != null) {
+            tramoEnVivo.remove();
+            tramoEnVivo = null;
+        }
+    }
+
+    /**
+     * Agrega un punto provisional (WebSocket) a continuación de la ruta guardada.
+     */
+    public void agregarEnVivo(@NonNull LatLng punto) {
+        if (puntosEnVivo.isEmpty() && ultimoGuardado != null) {
+            puntosEnVivo.add(ultimoGuardado); // Continuidad con el último punto guardado
+        }
+        puntosEnVivo.add(punto);
+        if (puntosEnVivo.size() > MAX_PUNTOS_EN_VIVO) {
+            puntosEnVivo.remove(0);
+        }
+        if (primero == null) primero = punto;
+
+        if (tramoEnVivo == null) {
+            tramoEnVivo = map.addPolyline(opciones().addAll(puntosEnVivo));
+        } else {
+            tramoEnVivo.setPoints(puntosEnVivo);
+        }
+    }
+
+    /**
+     * Quita todo del mapa (p. ej. si el documento se reescribió y hay que releer la ruta).
+     */
+    public void limpiar() {
+        for (Polyline segmento : segmentosCerrados) {
+            segmento.remove();
+        }
+        segmentosCerrados.clear();
+        if (segmentoAbierto != null) segmentoAbierto.remove();
+        if (tramoEnVivo != null) tramoEnVivo.remove();
+        segmentoAbierto = null;
+        tramoEnVivo = null;
+        puntosAbiertos.clear();
+        puntosEnVivo.clear();
+        totalPuntos = 0;
+        primero = null;
+        ultimoGuardado = null;
+    }
+
+    public boolean isEmpty() {
+        return primero == null;
+    }
+
+    /** Puntos guardados dibujados (sin contar el tramo en vivo). */
+    public int getTotalPuntos() {
+        return totalPuntos;
+    }
+
+    @Nullable
+    public LatLng getPrimero() {
+        return primero;
+    }
+
+    /** Último punto dibujado, incluido el tramo en vivo. */
+    @Nullable
+    public LatLng getUltimo() {
+        if (!puntosEnVivo.isEmpty()) {
+            return puntosEnVivo.get(puntosEnVivo.size() - 1);
+        }
+        return ultimoGuardado;
+    }
+
+    private void cerrarSegmento() {
+        LatLng union = puntosAbiertos.get(puntosAbiertos.size() - 1);
+        if (segmentoAbierto != null) {
+            segmentoAbierto.setPoints(puntosAbiertos);
+            segmentosCerrados.add(segmentoAbierto);
+            segmentoAbierto = null;
+        } else {
+            segmentosCerrados.add(map.addPolyline(opciones().addAll(puntosAbiertos)));
+        }
+        // El nuevo segmento arranca en el último punto del anterior para que no haya huecos
+        puntosAbiertos.clear();
+        puntosAbiertos.add(union);
+    }
+
+    private PolylineOptions opciones() {
+        return new PolylineOptions()
+                .width(ancho)
+                .color(color)
+                .jointType(JointType.ROUND)
+                .startCap(new RoundCap())
+                .endCap(new RoundCap())
+                .geodesic(true);
+    }
+}
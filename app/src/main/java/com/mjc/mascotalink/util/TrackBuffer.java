@@ -0,0 +1,197 @@
+package com.mjc.mascotalink.util;
+
+/**
+ * Buffer de puntos GPS respaldado por arrays primitivos paralelos
+ * (lat/lng/precisión/velocidad/tiempo), sin crear un objeto por punto.
+ *
+ * Dos modos de uso:
+ * - Anillo de capacidad fija ({@link #TrackBuffer(int)}): si se llena, el punto más
+ *   antiguo se sobrescribe. Es el modo usado por LocationService para el batch pendiente.
+ * - Crecimiento automático ({@link #growable(int)}): usado al decodificar una ruta completa.
+ *
+ * Los índices de lectura son lógicos: 0 es siempre el punto más antiguo.
+ * No es thread-safe; cada dueño lo usa desde un solo hilo.
+ */
+public class TrackBuffer {
+
+    private double[] lat;
+    private double[] lng;
+    private float[] acc;
+    private float[] speed;
+    private long[] time;
+
+    private final boolean crecimientoAutomatico;
+    private int head = 0; // Índice físico del punto más antiguo
+    private int size = 0;
+
+    public TrackBuffer(int capacidad) {
+        this(capacidad, false);
+    }
+
+    private TrackBuffer(int capacidad, boolean crecimientoAutomatico) {
+        if (capacidad <= 0) {
+            throw new IllegalArgumentException("capacidad debe ser > 0");
+        }
+        this.crecimientoAutomatico = crecimientoAutomatico;
+        lat = new double[capacidad];
+        lng = new double[capacidad];
+        acc = new float[capacidad];
+        speed = new float[capacidad];
+        time = new long[capacidad];
+    }
+
+    /**
+     * Crea un buffer que crece en lugar de sobrescribir (para rutas completas).
+     */
+    public static TrackBuffer growable(int capacidadInicial) {
+        return new TrackBuffer(Math.max(capacidadInicial, 16), true);
+    }
+
+    /**
+     * Agrega un punto al final. En modo anillo lleno descarta el más antiguo.
+     *
+     * @return true si se descartó un punto antiguo para hacer espacio
+     */
+    public boolean add(double latitud, double longitud, float precision, float velocidad, long tiempoMs) {
+        boolean descartado = false;
+        if (size == lat.length) {
+            if (crecimientoAutomatico) {
+                crecer();
+            } else {
+                head = (head + 1) % lat.length;
+                size--;
+                descartado = true;
+            }
+        }
+        int idx = (head + size) % lat.length;
+        lat[idx] = latitud;
+        lng[idx] = longitud;
+        acc[idx] = precision;
+        speed[idx] = velocidad;
+        time[idx] = tiempoMs;
+        size++;
+        return descartado;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int capacity() {
+        return lat.length;
+    }
+
+    public double getLat(int i) {
+        return lat[fisico(i)];
+    }
+
+    public double getLng(int i) {
+        return lng[fisico(i)];
+    }
+
+    public float getAccuracy(int i) {
+        return acc[fisico(i)];
+    }
+
+    public float getSpeed(int i) {
+        return speed[fisico(i)];
+    }
+
+    public long getTime(int i) {
+        return time[fisico(i)];
+    }
+
+    /**
+     * Elimina los {@code n} puntos más antiguos (ej: tras enviarlos con éxito).
+     */
+    public void removeFirst(int n) {
+        if (n <= 0) return;
+        if (n >= size) {
+            clear();
+            return;
+        }
+        head = (head + n) % lat.length;
+        size -= n;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Ordena por tiempo. Las rutas llegan casi ordenadas (legacy + chunks),
+     * por lo que el insertion sort es prácticamente lineal.
+     */
+    public void sortByTime() {
+        compactar();
+        for (int i = 1; i < size; i++) {
+            long t = time[i];
+            if (time[i - 1] <= t) continue;
+            double la = lat[i];
+            double ln = lng[i];
+            float ac = acc[i];
+            float sp = speed[i];
+            int j = i - 1;
+            while (j >= 0 && time[j] > t) {
+                lat[j + 1] = lat[j];
+                lng[j + 1] = lng[j];
+                acc[j + 1] = acc[j];
+                speed[j + 1] = speed[j];
+                time[j + 1] = time[j];
+                j--;
+            }
+            lat[j + 1] = la;
+            lng[j + 1] = ln;
+            acc[j + 1] = ac;
+            speed[j + 1] = sp;
+            time[j + 1] = t;
+        }
+    }
+
+    private int fisico(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("index " + i + ", size " + size);
+        }
+        return (head + i) % lat.length;
+    }
+
+    private void crecer() {
+        reubicar(lat.length * 2);
+    }
+
+    /**
+     * Reubica los datos para que head == 0 (necesario para ordenar in-place).
+     */
+    private void compactar() {
+        if (head != 0) {
+            reubicar(lat.length);
+        }
+    }
+
+    private void reubicar(int nuevaCapacidad) {
+        double[] nLat = new double[nuevaCapacidad];
+        double[] nLng = new double[nuevaCapacidad];
+        float[] nAcc = new float[nuevaCapacidad];
+        float[] nSpeed = new float[nuevaCapacidad];
+        long[] nTime = new long[nuevaCapacidad];
+        for (int i = 0; i < size; i++) {
+            int f = (head + i) % lat.length;
+            nLat[i] = lat[f];
+            nLng[i] = lng[f];
+            nAcc[i] = acc[f];
+            nSpeed[i] = speed[f];
+            nTime[i] = time[f];
+        }
+        lat = nLat;
+        lng = nLng;
+        acc = nAcc;
+        speed = nSpeed;
+        time = nTime;
+        head = 0;
+    }
+}
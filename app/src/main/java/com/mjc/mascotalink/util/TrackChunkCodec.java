@@ -0,0 +1,234 @@
+package com.mjc.mascotalink.util;
+
+import java.util.Arrays;
+
+/**
+ * Formato binario compacto para chunks de ruta GPS (delta + varint).
+ *
+ * Estructura:
+ * <pre>
+ *   v1: [version:u8][count:varint]
+ *   v2: [version:u8][count:varint][primerSeq:varint]
+ *   punto 0:  latE6, lngE6 (zigzag varint), tiempoMs (varint), accDm, speedCms (varint)
+ *   punto i:  ΔlatE6, ΔlngE6, ΔtiempoMs (zigzag varint), accDm, speedCms (varint)
+ * </pre>
+ * Se conservan las mismas precisiones que el formato Map anterior:
+ * 6 decimales en coordenadas, 1 decimal en precisión y 2 en velocidad.
+ * Un punto típico de paseo ocupa ~8-10 bytes frente a ~120 del Map.
+ *
+ * En v2 los puntos llevan seq consecutivos desde primerSeq (los asigna {@code TrackJournal}),
+ * lo que permite a los lectores descartar puntos reenviados tras un reintento.
+ */
+public final class TrackChunkCodec {
+
+    public static final int VERSION = 1;
+    public static final int VERSION_CON_SEQ = 2;
+
+    private static final double COORD_SCALE = 1_000_000.0; // 6 decimales (~11cm)
+    private static final float ACC_SCALE = 10f;             // 1 decimal
+    private static final float SPEED_SCALE = 100f;          // 2 decimales
+
+    private TrackChunkCodec() {
+    }
+
+    /**
+     * Codifica {@code count} puntos del buffer a partir del índice lógico {@code from}.
+     */
+    public static byte[] encode(TrackBuffer src, int from, int count) {
+        return encode(src, from, count, -1);
+    }
+
+    /**
+     * Igual que {@link #encode(TrackBuffer, int, int)} pero incluye el seq del primer punto (v2).
+     * Con {@code primerSeq < 0} se genera un chunk v1 sin seq.
+     */
+    public static byte[] encode(TrackBuffer src, int from, int count, long primerSeq) {
+        if (from < 0 || count < 0 || from + count > src.size()) {
+            throw new IndexOutOfBoundsException("from=" + from + ", count=" + count + ", size=" + src.size());
+        }
+        Salida out = new Salida(16 + count * 10);
+        out.writeByte(primerSeq >= 0 ? VERSION_CON_SEQ : VERSION);
+        out.writeVarLong(count);
+        if (primerSeq >= 0) {
+            out.writeVarLong(primerSeq);
+        }
+
+        long prevLat = 0;
+        long prevLng = 0;
+        long prevTime = 0;
+        for (int i = 0; i < count; i++) {
+            int idx = from + i;
+            long latE6 = Math.round(src.getLat(idx) * COORD_SCALE);
+            long lngE6 = Math.round(src.getLng(idx) * COORD_SCALE);
+            long t = src.getTime(idx);
+            if (i == 0) {
+                out.writeVarLong(zigZag(latE6));
+                out.writeVarLong(zigZag(lngE6));
+                out.writeVarLong(Math.max(0, t));
+            } else {
+                out.writeVarLong(zigZag(latE6 - prevLat));
+                out.writeVarLong(zigZag(lngE6 - prevLng));
+                out.writeVarLong(zigZag(t - prevTime));
+            }
+            out.writeVarLong(Math.max(0, Math.round(src.getAccuracy(idx) * ACC_SCALE)));
+            out.writeVarLong(Math.max(0, Math.round(src.getSpeed(idx) * SPEED_SCALE)));
+            prevLat = latE6;
+            prevLng = lngE6;
+            prevTime = t;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodifica un chunk agregando sus puntos al final de {@code dest}.
+     *
+     * @return número de puntos agregados
+     * @throws IllegalArgumentException si el chunk está truncado o su versión no es soportada
+     */
+    public static int decode(byte[] data, TrackBuffer dest) {
+        return decode(data, dest, 0);
+    }
+
+    /**
+     * Decodifica el chunk omitiendo sus primeros {@code omitir} puntos (ya vistos en otro chunk).
+     *
+     * @return número de puntos agregados
+     */
+    public static int decode(byte[] data, TrackBuffer dest, int omitir) {
+        Entrada in = new Entrada(data);
+        int count = leerCabecera(in);
+        if (in.version == VERSION_CON_SEQ) {
+            in.readVarLong(); // primerSeq
+        }
+
+        long lat = 0;
+        long lng = 0;
+        long t = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                lat = unZigZag(in.readVarLong());
+                lng = unZigZag(in.readVarLong());
+                t = in.readVarLong();
+            } else {
+                lat += unZigZag(in.readVarLong());
+                lng += unZigZag(in.readVarLong());
+                t += unZigZag(in.readVarLong());
+            }
+            float acc = in.readVarLong() / ACC_SCALE;
+            float speed = in.readVarLong() / SPEED_SCALE;
+            if (i >= omitir) {
+                dest.add(lat / COORD_SCALE, lng / COORD_SCALE, acc, speed, t);
+            }
+        }
+        return Math.max(0, count - omitir);
+    }
+
+    /**
+     * Lee solo la cabecera para saber cuántos puntos contiene el chunk (sin decodificar).
+     *
+     * @return número de puntos, o 0 si el chunk no es válido
+     */
+    public static int pointCount(byte[] data) {
+        try {
+            return leerCabecera(new Entrada(data));
+        } catch (IllegalArgumentException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Seq del primer punto del chunk, o -1 si es v1 (sin seq) o inválido.
+     */
+    public static long firstSeq(byte[] data) {
+        try {
+            Entrada in = new Entrada(data);
+            leerCabecera(in);
+            return in.version == VERSION_CON_SEQ ? in.readVarLong() : -1;
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private static int leerCabecera(Entrada in) {
+        int version = in.readByte();
+        in.version = version;
+        if (version != VERSION && version != VERSION_CON_SEQ) {
+            throw new IllegalArgumentException("Versión de chunk no soportada: " + version);
+        }
+        long count = in.readVarLong();
+        if (count < 0 || count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cantidad de puntos inválida: " + count);
+        }
+        return (int) count;
+    }
+
+    static long zigZag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    static long unZigZag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    // ===== I/O mínimo sin streams (evita sincronización de ByteArrayOutputStream) =====
+
+    private static final class Salida {
+        private byte[] buf;
+        private int pos = 0;
+
+        Salida(int capacidadInicial) {
+            buf = new byte[Math.max(capacidadInicial, 16)];
+        }
+
+        void writeByte(int b) {
+            if (pos == buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            buf[pos++] = (byte) b;
+        }
+
+        void writeVarLong(long v) {
+            while ((v & ~0x7FL) != 0) {
+                writeByte((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            writeByte((int) v);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+    }
+
+    private static final class Entrada {
+        private final byte[] buf;
+        private int pos = 0;
+        int version;
+
+        Entrada(byte[] buf) {
+            if (buf == null) {
+                throw new IllegalArgumentException("Chunk nulo");
+            }
+            this.buf = buf;
+        }
+
+        int readByte() {
+            if (pos >= buf.length) {
+                throw new IllegalArgumentException("Chunk truncado");
+            }
+            return buf[pos++] & 0xFF;
+        }
+
+        long readVarLong() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("Varint demasiado largo");
+        }
+    }
+}
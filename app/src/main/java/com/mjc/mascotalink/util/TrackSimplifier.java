@@ -0,0 +1,154 @@
+package com.mjc.mascotalink.util;
+
+/**
+ * Simplificación de ruta en streaming (ventana deslizante tipo Douglas-Peucker online).
+ *
+ * Recibe los fixes en orden y solo emite los puntos necesarios para que la ruta
+ * guardada no se aleje más de {@code toleranciaMetros} de la ruta cruda:
+ * - Se mantiene un ancla (último punto emitido) y una ventana de candidatos.
+ * - Al llegar un punto, si algún candidato queda a más de la tolerancia del
+ *   segmento ancla→punto nuevo, el candidato anterior se emite y pasa a ser el ancla.
+ * - Si la ventana se llena (p. ej. paseador quieto) se emite igual, para acotar
+ *   cuántos puntos pueden quedar solo en memoria.
+ *
+ * La ventana es corta a propósito: lo que está en ella aún no llegó al journal de la ruta
+ * (en LocationService los fixes crudos ya están en disco, ver SimplificadorDurable).
+ * No es thread-safe; se usa desde el hilo de LocationService.
+ */
+public class TrackSimplifier {
+
+    /**
+     * Destino de los puntos que sobreviven a la simplificación.
+     */
+    public interface Salida {
+        void emitir(double lat, double lng, float accuracy, float speed, long tiempoMs);
+    }
+
+    private static final double METROS_POR_GRADO = 111_320.0;
+
+    private final Salida salida;
+    private final TrackBuffer ventana;
+    private float toleranciaMetros;
+
+    private boolean hayAncla = false;
+    private double anclaLat;
+    private double anclaLng;
+
+    private long puntosRecibidos = 0;
+    private long puntosEmitidos = 0;
+
+    public TrackSimplifier(float toleranciaMetros, int maxVentana, Salida salida) {
+        if (maxVentana < 1) {
+            throw new IllegalArgumentException("maxVentana debe ser >= 1: " + maxVentana);
+        }
+        this.toleranciaMetros = toleranciaMetros;
+        this.ventana = new TrackBuffer(maxVentana);
+        this.salida = salida;
+    }
+
+    public void agregar(double lat, double lng, float accuracy, float speed, long tiempoMs) {
+        puntosRecibidos++;
+
+        if (!hayAncla) {
+            emitir(lat, lng, accuracy, speed, tiempoMs);
+            return;
+        }
+
+        if (!ventana.isEmpty() && excedeTolerancia(lat, lng)) {
+            // El último candidato es el punto más lejano que todavía cumplía: pasa a ser ancla
+            emitirUltimoDeVentana();
+        }
+
+        ventana.add(lat, lng, accuracy, speed, tiempoMs);
+        if (ventana.size() == ventana.capacity()) {
+            emitirUltimoDeVentana();
+        }
+    }
+
+    /**
+     * Emite el último candidato pendiente (fin del paseo o antes de un envío forzado).
+     */
+    public void flush() {
+        if (!ventana.isEmpty()) {
+            emitirUltimoDeVentana();
+        }
+    }
+
+    /**
+     * Olvida el ancla y la ventana (nuevo paseo). No reinicia las métricas.
+     */
+    public void reset() {
+        ventana.clear();
+        hayAncla = false;
+    }
+
+    public void setToleranciaMetros(float toleranciaMetros) {
+        this.toleranciaMetros = toleranciaMetros;
+    }
+
+    public float getToleranciaMetros() {
+        return toleranciaMetros;
+    }
+
+    public int getPendientes() {
+        return ventana.size();
+    }
+
+    public long getPuntosRecibidos() {
+        return puntosRecibidos;
+    }
+
+    public long getPuntosEmitidos() {
+        return puntosEmitidos;
+    }
+
+    /**
+     * Proporción de puntos crudos por punto guardado (1.0 = sin reducción).
+     */
+    public double getRatio() {
+        return puntosEmitidos == 0 ? 1.0 : puntosRecibidos / (double) puntosEmitidos;
+    }
+
+    private boolean excedeTolerancia(double lat, double lng) {
+        // Plano local centrado en el ancla (suficiente para distancias de un paseo)
+        double escalaLng = METROS_POR_GRADO * Math.cos(Math.toRadians(anclaLat));
+        double bx = (lng - anclaLng) * escalaLng;
+        double by = (lat - anclaLat) * METROS_POR_GRADO;
+        double largo2 = bx * bx + by * by;
+        double tolerancia2 = (double) toleranciaMetros * toleranciaMetros;
+
+        for (int i = 0; i < ventana.size(); i++) {
+            double px = (ventana.getLng(i) - anclaLng) * escalaLng;
+            double py = (ventana.getLat(i) - anclaLat) * METROS_POR_GRADO;
+            double dx;
+            double dy;
+            if (largo2 == 0) {
+                dx = px;
+                dy = py;
+            } else {
+                double t = Math.max(0, Math.min(1, (px * bx + py * by) / largo2));
+                dx = px - t * bx;
+                dy = py - t * by;
+            }
+            if (dx * dx + dy * dy > tolerancia2) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void emitirUltimoDeVentana() {
+        int ultimo = ventana.size() - 1;
+        emitir(ventana.getLat(ultimo), ventana.getLng(ultimo), ventana.getAccuracy(ultimo),
+                ventana.getSpeed(ultimo), ventana.getTime(ultimo));
+        ventana.clear();
+    }
+
+    private void emitir(double lat, double lng, float accuracy, float speed, long tiempoMs) {
+        anclaLat = lat;
+        anclaLng = lng;
+        hayAncla = true;
+        puntosEmitidos++;
+        salida.emitir(lat, lng, accuracy, speed, tiempoMs);
+    }
+}
@@ -2,53 +2,86 @@ package com.mjc.mascotalink.util;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
+
 import com.google.android.material.badge.BadgeDrawable;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.ListenerRegistration;
-import com.google.firebase.firestore.Query;
 import com.mjc.mascotalink.R;
+import com.mjc.mascotalink.network.SocketManager;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Gestiona un único listener de no leídos y aplica el badge en cualquier BottomNavigationView registrado.
+ * El total sale del documento de contadores que mantiene el servidor y de los eventos
+ * "unread_delta" del socket ({@link ContadorNoLeidos}); el badge solo se redibuja si cambia.
  */
 public final class UnreadBadgeManager {
     private static ListenerRegistration registration;
+    /** Respaldo mientras el servidor no creó el documento de contadores del usuario. */
+    private static ListenerRegistration chatsRegistration;
+    private static SocketManager socketManager;
     private static String listeningUserId;
     private static int lastTotal = 0;
+    private static final ContadorNoLeidos contador = new ContadorNoLeidos();
     private static final List<WeakReference<BottomNavigationView>> navRefs = new ArrayList<>();
 
+    private static final SocketManager.OnUnreadDeltaListener socketListener = new SocketManager.OnUnreadDeltaListener() {
+        @Override
+        public void onUnreadDelta(String chatId, int delta) {
+            if (contador.sumar(chatId, delta)) updateTotal(contador.getTotal());
+        }
+
+        @Override
+        public void onUnreadReset(String chatId, int noLeidos) {
+            if (contador.fijar(chatId, noLeidos)) updateTotal(contador.getTotal());
+        }
+    };
+
     private UnreadBadgeManager() {}
 
-    public static synchronized void start(String userId) {
+    /**
+     * Escucha el documento de contadores del usuario (usuarios/{uid}/contadores/no_leidos,
+     * lo mantiene el servidor) y aplica los "unread_delta" del socket en cuanto llegan.
+     */
+    public static synchronized void start(Context context, String userId) {
         if (userId == null || userId.isEmpty()) return;
         if (userId.equals(listeningUserId) && registration != null) return;
         stop();
         listeningUserId = userId;
-        registration = FirebaseFirestore.getInstance()
-                .collection("chats")
-                .whereArrayContains("participantes", userId)
-                .orderBy("ultimo_timestamp", Query.Direction.DESCENDING)
-                .limit(50)
-                .addSnapshotListener((snapshot, e) -> {
-                    if (e != null) return;
-                    int total = 0;
-                    if (snapshot != null) {
-                        for (DocumentSnapshot doc : snapshot.getDocuments()) {
-                            Map<String, Object> map = (Map<String, Object>) doc.get("mensajes_no_leidos");
-                            if (map != null && map.get(userId) instanceof Number) {
-                                total += ((Number) map.get(userId)).intValue();
-                            }
+        socketManager = SocketManager.getInstance(context);
+        socketManager.addOnUnreadDeltaListener(socketListener);
+        registration = ConsultasCompartidas.get().escucharDocumento(
+                FirebaseFirestore.getInstance().collection("usuarios").document(userId)
+                        .collection("contadores").document("no_leidos"),
+                new ConsultasCompartidas.DocumentoCallback() {
+                    @Override
+                    public void onDocumento(@NonNull DocumentSnapshot doc) {
+                        // Hasta que el servidor lo siembra con todos los chats ("completo")
+                        // le faltan los no leídos previos: se siguen sumando los chats
+                        if (!doc.exists() || !Boolean.TRUE.equals(doc.getBoolean("completo"))) {
+                            escucharChats(userId);
+                            return;
+                        }
+                        dejarDeEscucharChats();
+                        Object porChat = doc.get("por_chat");
+                        if (contador.reemplazar(porChat instanceof Map ? (Map<String, Object>) porChat : null)) {
+                            updateTotal(contador.getTotal());
                         }
                     }
-                    updateTotal(total);
+
+                    @Override
+                    public void onError(Exception e) {
+                        // Se conserva el último total
+                    }
                 });
     }
 
@@ -57,11 +90,48 @@ public final class UnreadBadgeManager {
             registration.remove();
             registration = null;
         }
+        dejarDeEscucharChats();
+        if (socketManager != null) {
+            socketManager.removeOnUnreadDeltaListener(socketListener);
+            socketManager = null;
+        }
         listeningUserId = null;
         lastTotal = 0;
+        contador.limpiar();
         navRefs.clear();
     }
 
+    /** Suma los no leídos de los chats del usuario (escucha compartida con la bandeja). */
+    private static void escucharChats(String userId) {
+        if (chatsRegistration != null) return;
+        chatsRegistration = ConsultasCompartidas.get().escuchar(ConsultasCompartidas.chatsDeUsuario(userId),
+                ConsultasCompartidas.LIMITE_CHATS, new MultiplexorConsultas.Receptor<DocumentSnapshot>() {
+                    @Override
+                    public void onResultado(List<DocumentSnapshot> documentos) {
+                        Map<String, Object> porChat = new HashMap<>();
+                        for (DocumentSnapshot doc : documentos) {
+                            Map<String, Object> map = (Map<String, Object>) doc.get("mensajes_no_leidos");
+                            if (map != null && map.get(userId) instanceof Number) {
+                                porChat.put(doc.getId(), map.get(userId));
+                            }
+                        }
+                        if (contador.reemplazar(porChat)) updateTotal(contador.getTotal());
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        // Se conserva el último total
+                    }
+                });
+    }
+
+    private static void dejarDeEscucharChats() {
+        if (chatsRegistration != null) {
+            chatsRegistration.remove();
+            chatsRegistration = null;
+        }
+    }
+
     public static synchronized void registerNav(BottomNavigationView navView, Context context) {
         if (navView == null || context == null) return;
         cleanupRefs();
@@ -70,6 +140,7 @@ public final class UnreadBadgeManager {
     }
 
     private static void updateTotal(int total) {
+        if (total == lastTotal) return;
         lastTotal = total;
         cleanupRefs();
         for (WeakReference<BottomNavigationView> ref : navRefs) {
@@ -7,9 +7,6 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.FirebaseFirestore;
-
 /**
  * Gestiona el caché de datos del usuario actual para evitar consultas repetidas a Firebase.
  * Los datos se guardan en SharedPreferences con una duración de 5 minutos.
@@ -149,29 +146,18 @@ public class UserCacheManager {
             return;
         }
 
-        // Si no está en caché, consultar Firebase
-        Log.d(TAG, "Consultando Firebase para usuario: " + userId);
-        FirebaseFirestore db = FirebaseFirestore.getInstance();
-        db.collection("usuarios").document(userId)
-            .get()
-            .addOnSuccessListener(documentSnapshot -> {
-                if (documentSnapshot.exists()) {
-                    String role = documentSnapshot.getString("rol");
-                    String nombre = documentSnapshot.getString("nombre_display");
-                    String fotoUrl = documentSnapshot.getString("foto_perfil");
-
-                    UserData userData = new UserData(userId, role, nombre, fotoUrl);
-                    saveUserData(context, userData);
-                    callback.onUserDataLoaded(userData);
-                } else {
-                    Log.w(TAG, "Usuario no encontrado en Firebase: " + userId);
-                    callback.onUserDataLoaded(null);
-                }
-            })
-            .addOnFailureListener(e -> {
-                Log.e(TAG, "Error al cargar datos de usuario desde Firebase", e);
+        // Si no está en caché, pedirlo al caché de perfiles compartido (una sola lectura por usuario)
+        Log.d(TAG, "Consultando perfil para usuario: " + userId);
+        PerfilCache.getInstance(context).obtener(userId, perfil -> {
+            if (perfil != null) {
+                UserData userData = new UserData(userId, perfil.rol, perfil.nombre, perfil.fotoUrl);
+                saveUserData(context, userData);
+                callback.onUserDataLoaded(userData);
+            } else {
+                Log.w(TAG, "Usuario no encontrado o sin conexión: " + userId);
                 callback.onUserDataLoaded(null);
-            });
+            }
+        });
     }
 
     /**
@@ -1,12 +1,34 @@
 package com.mjc.mascotalink.utils;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.DiffUtil;
 import com.mjc.mascotalink.Paseo;
+import com.mjc.mascotalink.util.ListaDiferida;
 import java.util.List;
 import java.util.Objects;
 
 public class PaseoDiffCallback extends DiffUtil.Callback {
 
+    /** Las mismas comparaciones para AsyncListDiffer / {@link ListaDiferida}. */
+    public static final DiffUtil.ItemCallback<Paseo> ITEM = new DiffUtil.ItemCallback<Paseo>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Paseo oldItem, @NonNull Paseo newItem) {
+            return Objects.equals(oldItem.getReservaId(), newItem.getReservaId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Paseo oldItem, @NonNull Paseo newItem) {
+            return mismoContenido(oldItem, newItem);
+        }
+
+        @Nullable
+        @Override
+        public Object getChangePayload(@NonNull Paseo oldItem, @NonNull Paseo newItem) {
+            return soloCambioEstado(oldItem, newItem) ? ListaDiferida.CAMBIO_ESTADO : null;
+        }
+    };
+
     private final List<Paseo> oldList;
     private final List<Paseo> newList;
 
@@ -33,14 +55,46 @@ public class PaseoDiffCallback extends DiffUtil.Callback {
 
     @Override
     public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
-        Paseo oldItem = oldList.get(oldItemPosition);
-        Paseo newItem = newList.get(newItemPosition);
+        return mismoContenido(oldList.get(oldItemPosition), newList.get(newItemPosition));
+    }
+
+    @Nullable
+    @Override
+    public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+        return soloCambioEstado(oldList.get(oldItemPosition), newList.get(newItemPosition))
+                ? ListaDiferida.CAMBIO_ESTADO : null;
+    }
 
-        // Compara los campos visibles relevantes para decidir si redibujar
+    /**
+     * Compara los campos visibles relevantes para decidir si redibujar. Incluye nombres y
+     * fotos porque llegan después (detalles resueltos por lotes) sobre el mismo paseo.
+     */
+    public static boolean mismoContenido(Paseo oldItem, Paseo newItem) {
+        return mismoEstado(oldItem, newItem) && mismosDatos(oldItem, newItem);
+    }
+
+    /**
+     * Cambió el estado (o el pago) y nada más: alcanza con redibujar el chip, la info
+     * contextual y los botones ({@link ListaDiferida#CAMBIO_ESTADO}).
+     */
+    public static boolean soloCambioEstado(Paseo oldItem, Paseo newItem) {
+        return !mismoEstado(oldItem, newItem) && mismosDatos(oldItem, newItem);
+    }
+
+    private static boolean mismoEstado(Paseo oldItem, Paseo newItem) {
         return Objects.equals(oldItem.getEstado(), newItem.getEstado()) &&
-               Objects.equals(oldItem.getFecha(), newItem.getFecha()) &&
+               Objects.equals(oldItem.getEstado_pago(), newItem.getEstado_pago());
+    }
+
+    private static boolean mismosDatos(Paseo oldItem, Paseo newItem) {
+        return Objects.equals(oldItem.getFecha(), newItem.getFecha()) &&
+               Objects.equals(oldItem.getHora_inicio(), newItem.getHora_inicio()) &&
                Objects.equals(oldItem.getPaseadorNombre(), newItem.getPaseadorNombre()) &&
+               Objects.equals(oldItem.getPaseadorFoto(), newItem.getPaseadorFoto()) &&
+               Objects.equals(oldItem.getDuenoNombre(), newItem.getDuenoNombre()) &&
                Objects.equals(oldItem.getMascotaNombre(), newItem.getMascotaNombre()) &&
+               Objects.equals(oldItem.getMascotaFoto(), newItem.getMascotaFoto()) &&
+               Objects.equals(oldItem.getMascotasFotos(), newItem.getMascotasFotos()) &&
                oldItem.getCosto_total() == newItem.getCosto_total();
     }
 }
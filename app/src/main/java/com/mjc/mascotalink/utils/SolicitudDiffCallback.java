@@ -1,5 +1,6 @@
 package com.mjc.mascotalink.utils;
 
+import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.DiffUtil;
 import com.mjc.mascotalink.SolicitudesActivity.Solicitud;
 import java.util.List;
@@ -7,6 +8,19 @@ import java.util.Objects;
 
 public class SolicitudDiffCallback extends DiffUtil.Callback {
 
+    /** Las mismas comparaciones para AsyncListDiffer / ListaDiferida. */
+    public static final DiffUtil.ItemCallback<Solicitud> ITEM = new DiffUtil.ItemCallback<Solicitud>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Solicitud oldItem, @NonNull Solicitud newItem) {
+            return Objects.equals(oldItem.getReservaId(), newItem.getReservaId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Solicitud oldItem, @NonNull Solicitud newItem) {
+            return mismoContenido(oldItem, newItem);
+        }
+    };
+
     private final List<Solicitud> oldList;
     private final List<Solicitud> newList;
 
@@ -33,10 +47,11 @@ public class SolicitudDiffCallback extends DiffUtil.Callback {
 
     @Override
     public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
-        Solicitud oldItem = oldList.get(oldItemPosition);
-        Solicitud newItem = newList.get(newItemPosition);
+        return mismoContenido(oldList.get(oldItemPosition), newList.get(newItemPosition));
+    }
 
-        // Compara los campos visibles relevantes
+    /** Compara los campos visibles relevantes. */
+    public static boolean mismoContenido(Solicitud oldItem, Solicitud newItem) {
         return Objects.equals(oldItem.getDuenoNombre(), newItem.getDuenoNombre()) &&
                Objects.equals(oldItem.getMascotaRaza(), newItem.getMascotaRaza()) &&
                Objects.equals(oldItem.getHoraInicio(), newItem.getHoraInicio()) &&
@@ -0,0 +1,85 @@
+package com.mjc.mascota.ui.busqueda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+public class BusquedaCacheTest {
+
+    private static final long TTL_MS = 60_000;
+    private static final long PRESUPUESTO = 4_096;
+
+    private File directorio;
+    private BusquedaCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        directorio = Files.createTempDirectory("busqueda_cache").toFile();
+        cache = new BusquedaCache(directorio, PRESUPUESTO);
+    }
+
+    @After
+    public void tearDown() {
+        cache.limpiar();
+        directorio.delete();
+    }
+
+    @Test
+    public void arranqueEnFrio_leeDesdeDiscoYDevuelveObsoletos() {
+        cache.guardar("populares|u1", "[\"a\",\"b\"]", TTL_MS, 1_000);
+        cache.vaciarMemoria();
+
+        BusquedaCache.Entrada fresca = cache.obtener("populares|u1", 2_000);
+        assertNotNull(fresca);
+        assertEquals("[\"a\",\"b\"]", fresca.datos);
+        assertTrue(fresca.isFresca(2_000));
+
+        // Vencida: se sigue devolviendo para mostrar mientras se revalida
+        BusquedaCache.Entrada obsoleta = cache.obtener("populares|u1", 1_000 + TTL_MS + 1);
+        assertNotNull(obsoleta);
+        assertFalse(obsoleta.isFresca(1_000 + TTL_MS + 1));
+
+        assertNull(cache.obtener("populares|u1", 1_000 + BusquedaCache.MAX_OBSOLETO_MS + 1));
+        assertNull(cache.obtener("populares|u2", 2_000));
+    }
+
+    @Test
+    public void presupuesto_borraLosMenosUsados() throws Exception {
+        String datos = new String(new char[1_000]).replace('\0', 'x');
+        cache.guardar("tarjeta|u1|vieja", datos, TTL_MS, 0);
+        cache.guardar("tarjeta|u1|usada", datos, TTL_MS, 0);
+        new File(directorio, Integer.toHexString("tarjeta|u1|vieja".hashCode()) + ".cache").setLastModified(1_000);
+        new File(directorio, Integer.toHexString("tarjeta|u1|usada".hashCode()) + ".cache").setLastModified(2_000);
+        for (int i = 0; i < 3; i++) {
+            cache.guardar("tarjeta|u1|p" + i, datos, TTL_MS, 0);
+        }
+        cache.vaciarMemoria();
+
+        assertTrue(cache.bytesEnDisco() <= PRESUPUESTO);
+        assertNull(cache.obtener("tarjeta|u1|vieja", 0));
+        assertNotNull(cache.obtener("tarjeta|u1|p2", 0));
+    }
+
+    @Test
+    public void eliminarPrefijo_soloBorraEsasClaves() {
+        cache.guardar("busqueda|u1|luna", "[]", TTL_MS, 0);
+        cache.guardar("busqueda|u1|sol", "[]", TTL_MS, 0);
+        cache.guardar("tarjeta|u1|a", "{}", TTL_MS, 0);
+
+        cache.eliminarPrefijo("busqueda|");
+        assertNull(cache.obtenerDeMemoria("busqueda|u1|luna"));
+        cache.vaciarMemoria();
+
+        assertNull(cache.obtener("busqueda|u1|sol", 0));
+        assertNotNull(cache.obtener("tarjeta|u1|a", 0));
+    }
+}
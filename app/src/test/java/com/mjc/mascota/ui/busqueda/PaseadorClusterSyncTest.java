@@ -0,0 +1,63 @@
+package com.mjc.mascota.ui.busqueda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PaseadorClusterSyncTest {
+
+    private final PaseadorClusterSync<String, String> sync = new PaseadorClusterSync<>(
+            new PaseadorClusterSync.Adaptador<String, String>() {
+                @Override
+                public String crearItem(String valor) {
+                    return "item:" + valor;
+                }
+
+                @Override
+                public int huella(String valor) {
+                    return valor.hashCode();
+                }
+            });
+
+    @Test
+    public void sincronizar_soloAplicaLaDiferencia() {
+        Map<String, String> deseados = new HashMap<>();
+        deseados.put("a", "A1");
+        deseados.put("b", "B1");
+        deseados.put("c", "C1");
+        assertEquals(3, sync.sincronizar(deseados).agregar.size());
+
+        // Mismo contenido: nada que hacer
+        assertTrue(sync.sincronizar(deseados).isEmpty());
+
+        deseados.remove("a");
+        deseados.put("b", "B2");
+        deseados.put("d", "D1");
+        PaseadorClusterSync.Cambios<String> cambios = sync.sincronizar(deseados);
+
+        assertEquals(Collections.singletonList("item:A1"), cambios.quitar);
+        assertEquals(Collections.singletonList("item:D1"), cambios.agregar);
+        assertEquals(Collections.singletonList("item:B2"), cambios.actualizar);
+        assertEquals("item:B2", sync.getItem("b"));
+        assertEquals(3, sync.size());
+    }
+
+    @Test
+    public void cientosDePaseadores_paneoSinCambiosNoGeneraItems() {
+        Map<String, String> deseados = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            deseados.put("p" + i, "v" + i);
+        }
+        sync.sincronizar(deseados);
+
+        deseados.put("p7", "v7-en-paseo");
+        List<String> actualizados = sync.sincronizar(deseados).actualizar;
+        assertEquals(Collections.singletonList("item:v7-en-paseo"), actualizados);
+    }
+}
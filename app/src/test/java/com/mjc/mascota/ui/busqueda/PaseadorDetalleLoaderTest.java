@@ -0,0 +1,89 @@
+package com.mjc.mascota.ui.busqueda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PaseadorDetalleLoaderTest {
+
+    /** Fuente que responde cuando el test lo indica, como Firestore. */
+    private final List<List<String>> pedidos = new ArrayList<>();
+    private final List<PaseadorDetalleLoader.Respuesta<String>> pendientes = new ArrayList<>();
+    private final PaseadorDetalleLoader<String> loader = new PaseadorDetalleLoader<>((ids, respuesta) -> {
+        pedidos.add(ids);
+        pendientes.add(respuesta);
+    });
+
+    @Test
+    public void paginaDe45_usaDosConsultasYEntregaPorLote() {
+        List<String> ids = ids(0, 45);
+        Map<String, String> recibidos = new HashMap<>();
+        List<Integer> entregas = new ArrayList<>();
+        loader.cargar(ids, docs -> {
+            recibidos.putAll(docs);
+            entregas.add(docs.size());
+        });
+
+        assertEquals(2, loader.getConsultas());
+        assertEquals(PaseadorDetalleLoader.MAX_IDS_POR_CONSULTA, pedidos.get(0).size());
+        assertEquals(15, pedidos.get(1).size());
+
+        responder(0);
+        assertEquals(1, entregas.size());
+        responder(1);
+        assertEquals(45, recibidos.size());
+    }
+
+    @Test
+    public void paginaSiguiente_reutilizaCacheYNoRepiteEnVuelo() {
+        loader.cargar(ids(0, 10), docs -> { });
+        responder(0);
+
+        // Ids 5..14: 5 cacheados, 5 nuevos
+        Map<String, String> recibidos = new HashMap<>();
+        loader.cargar(ids(5, 15), recibidos::putAll);
+        assertEquals(5, recibidos.size());
+        assertEquals(ids(10, 15), pedidos.get(1));
+
+        // Otro pedido mientras 10..14 siguen en vuelo: no genera consulta
+        Map<String, String> otro = new HashMap<>();
+        loader.cargar(ids(12, 14), otro::putAll);
+        assertEquals(2, loader.getConsultas());
+
+        responder(1);
+        assertEquals(10, recibidos.size());
+        assertEquals(2, otro.size());
+        assertTrue(otro.containsKey("p13"));
+    }
+
+    @Test
+    public void error_noQuedaCacheadoYSePuedeReintentar() {
+        loader.cargar(ids(0, 3), docs -> { });
+        pendientes.get(0).onError(new Exception("sin red"));
+
+        loader.cargar(ids(0, 3), docs -> { });
+        assertEquals(2, loader.getConsultas());
+    }
+
+    private void responder(int pedido) {
+        Map<String, String> docs = new HashMap<>();
+        for (String id : pedidos.get(pedido)) {
+            docs.put(id, "detalle:" + id);
+        }
+        pendientes.get(pedido).onExito(docs);
+    }
+
+    private static List<String> ids(int desde, int hasta) {
+        List<String> ids = new ArrayList<>();
+        for (int i = desde; i < hasta; i++) {
+            ids.add("p" + i);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,113 @@
+package com.mjc.mascota.ui.busqueda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class PaseadorGeoIndexTest {
+
+    private static final double LAT = -0.180653;
+    private static final double LNG = -78.467834;
+    private static final double RADIO_M = 10_000;
+    private static final long TTL_MS = 120_000;
+
+    private PaseadorGeoIndex<String> indice;
+
+    @Before
+    public void setUp() {
+        indice = new PaseadorGeoIndex<>(TTL_MS);
+    }
+
+    @Test
+    public void geohash_coincideConValorConocido() {
+        assertEquals("u4pruydqqvj", PaseadorGeoIndex.geohash(57.64911, 10.40744, 11));
+        assertTrue(PaseadorGeoIndex.celdasQueCubren(LAT, LNG, RADIO_M).size()
+                <= PaseadorGeoIndex.MAX_CELDAS_POR_BUSQUEDA);
+    }
+
+    @Test
+    public void zonaCubierta_paneosSeRespondenLocal() {
+        List<String> celdas = indice.celdasPendientes(LAT, LNG, RADIO_M, 0);
+        assertFalse(celdas.isEmpty());
+        for (String celda : celdas) {
+            indice.reemplazarCelda(celda, Collections.emptyList(), true, 0);
+        }
+        String celdaCentro = PaseadorGeoIndex.geohash(LAT, LNG, celdas.get(0).length());
+        indice.reemplazarCelda(celdaCentro, Arrays.asList(
+                entrada("lejos", LAT + 0.03, LNG),
+                entrada("cerca", LAT + 0.001, LNG)), true, 0);
+
+        // Paneo de ~550 m y mismo radio: ninguna consulta nueva
+        int consultas = 0;
+        for (int i = 1; i <= 10; i++) {
+            consultas += indice.celdasPendientes(LAT + i * 0.0005, LNG, RADIO_M, 1_000).size();
+        }
+        assertEquals(0, consultas);
+        assertEquals(Arrays.asList("cerca", "lejos"), indice.buscar(LAT, LNG, RADIO_M));
+        assertEquals(Collections.singletonList("cerca"), indice.buscar(LAT, LNG, 1_000));
+
+        // Vencido el TTL se vuelven a pedir todas
+        assertEquals(celdas.size(), indice.celdasPendientes(LAT, LNG, RADIO_M, TTL_MS).size());
+    }
+
+    @Test
+    public void reemplazarCelda_quitaDesconectadosYMovidos() {
+        List<String> celdas = indice.celdasPendientes(LAT, LNG, 500, 0);
+        String celda = PaseadorGeoIndex.geohash(LAT, LNG, celdas.get(0).length());
+        List<PaseadorGeoIndex.Entrada<String>> primera = new ArrayList<>();
+        primera.add(entrada("a", LAT, LNG));
+        primera.add(entrada("b", LAT, LNG + 0.0001));
+        indice.reemplazarCelda(celda, primera, true, 0);
+
+        // "a" se desconectó; "b" sigue y aparece otra vez en la misma celda
+        List<String> quitados = indice.reemplazarCelda(celda,
+                Collections.singletonList(entrada("b", LAT + 0.0001, LNG)), false, 0);
+
+        assertEquals(Collections.singletonList("a"), quitados);
+        assertEquals(1, indice.size());
+        assertTrue(indice.contiene("b"));
+        // Llegó al límite de la consulta: no cuenta como cubierta
+        assertTrue(indice.celdasPendientes(LAT, LNG, 500, 0).contains(celda));
+    }
+
+    @Test
+    public void celdaGruesaIncompleta_vuelveAPedirLasFinasQueBorro() {
+        // Zoom in: la celda fina con un paseador, completa
+        List<String> finas = indice.celdasPendientes(LAT, LNG, 500, 0);
+        String fina = PaseadorGeoIndex.geohash(LAT, LNG, finas.get(0).length());
+        for (String celda : finas) {
+            indice.reemplazarCelda(celda, Collections.emptyList(), true, 0);
+        }
+        indice.reemplazarCelda(fina, Collections.singletonList(entrada("cerca", LAT, LNG)), true, 0);
+
+        // Zoom out: la celda gruesa llega al límite y no trae a "cerca"
+        String gruesa = fina.substring(0, 2);
+        List<String> quitados = indice.reemplazarCelda(gruesa,
+                Collections.singletonList(entrada("otro", LAT + 0.3, LNG)), false, 1_000);
+        assertEquals(Collections.singletonList("cerca"), quitados);
+
+        // Zoom in otra vez dentro del TTL: la fina ya no cuenta como cubierta
+        assertTrue(indice.celdasPendientes(LAT, LNG, 500, 2_000).contains(fina));
+    }
+
+    @Test
+    public void celdasEnVuelo_noSePidenDosVeces() {
+        List<String> celdas = indice.celdasPendientes(LAT, LNG, RADIO_M, 0);
+        assertTrue(indice.celdasPendientes(LAT, LNG, RADIO_M, 0).isEmpty());
+
+        indice.cancelarCelda(celdas.get(0));
+        assertEquals(Collections.singletonList(celdas.get(0)), indice.celdasPendientes(LAT, LNG, RADIO_M, 0));
+    }
+
+    private static PaseadorGeoIndex.Entrada<String> entrada(String id, double lat, double lng) {
+        return new PaseadorGeoIndex.Entrada<>(id, PaseadorGeoIndex.geohash(lat, lng, 10), lat, lng, id);
+    }
+}
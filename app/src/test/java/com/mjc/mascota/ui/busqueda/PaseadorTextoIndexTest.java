@@ -0,0 +1,61 @@
+package com.mjc.mascota.ui.busqueda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class PaseadorTextoIndexTest {
+
+    private PaseadorTextoIndex<String> indice;
+
+    @Before
+    public void setUp() {
+        indice = new PaseadorTextoIndex<>();
+        indice.actualizar("1", "maria", 4.5, "María José Peña", Collections.singletonList("La Carolina"),
+                Arrays.asList("pequeño", "mediano"));
+        indice.actualizar("2", "mario", 4.9, "Mario Andrade", Collections.singletonList("Cumbayá"),
+                Collections.singletonList("grande"));
+        indice.actualizar("3", "carolina", 3.0, "Carolina Ruiz", Collections.singletonList("El Batán"),
+                Collections.singletonList("pequeño"));
+    }
+
+    @Test
+    public void prefijoSinTildes_ordenaPorCampoYCalificacion() {
+        // "mari" es prefijo de ambos nombres: desempata la calificación
+        assertEquals(Arrays.asList("mario", "maria"), indice.buscar("mari", 10));
+        assertEquals(Collections.singletonList("maria"), indice.buscar("PENA", 10));
+        assertEquals(Collections.singletonList("mario"), indice.buscar("cumbaya", 10));
+
+        // Nombre pesa más que zona
+        assertEquals(Arrays.asList("carolina", "maria"), indice.buscar("carolina", 10));
+        // Todas las palabras deben coincidir; las vacías se ignoran
+        assertEquals(Collections.singletonList("maria"), indice.buscar("maria de la carolina", 10));
+    }
+
+    @Test
+    public void erroresDeTipeo_seToleran() {
+        assertEquals(Arrays.asList("carolina", "maria"), indice.buscar("carloina", 10));
+        assertEquals(Collections.singletonList("mario"), indice.buscar("andrde", 10));
+        assertTrue(indice.buscar("zzzz", 10).isEmpty());
+        assertEquals(1, PaseadorTextoIndex.distanciaAPrefijo("marai", "mariana"));
+    }
+
+    @Test
+    public void actualizarYEliminar_mantienenElIndice() {
+        indice.actualizar("2", "mario", 4.9, "Mario Andrade", Collections.singletonList("Tumbaco"),
+                Collections.emptyList());
+        assertTrue(indice.buscar("cumbaya", 10).isEmpty());
+        assertEquals(Collections.singletonList("mario"), indice.buscar("tumbaco", 10));
+
+        indice.eliminar("1");
+        List<String> resultado = indice.buscar("pequeno", 10);
+        assertEquals(Collections.singletonList("carolina"), resultado);
+        assertEquals(2, indice.size());
+    }
+}
@@ -0,0 +1,103 @@
+package com.mjc.mascotalink.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.mjc.mascotalink.util.TrackBuffer;
+import com.mjc.mascotalink.util.TrackChunkCodec;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LocationFrameBatcherTest {
+
+    private static final double LAT = -0.1807;
+    private static final double LNG = -78.4678;
+    private static final long T0 = 1_760_000_000_000L;
+
+    // Mismo frame que usa location-frame.test.js: ambos lados deben coincidir byte a byte
+    private static final String FRAME_COMPARTIDO = "020300b78716afcbea4a8080b3c19c332d7d1811f02e377d1811f02e417d";
+
+    private LocationFrameBatcher batcher;
+
+    @Before
+    public void setUp() {
+        batcher = new LocationFrameBatcher();
+    }
+
+    @Test
+    public void frame_idaYVueltaConSeq() {
+        for (int i = 0; i < 3; i++) {
+            batcher.agregar(LAT + i * 0.000012, LNG - i * 0.000009, 4.5f + i, 1.25f, T0 + i * 3000L);
+        }
+        byte[] frame = batcher.tomarFrame();
+        assertEquals(FRAME_COMPARTIDO, hex(frame));
+
+        TrackBuffer fixes = TrackBuffer.growable(4);
+        TrackChunkCodec.decode(frame, fixes);
+        assertEquals(3, fixes.size());
+        assertEquals(0, TrackChunkCodec.firstSeq(frame));
+        assertEquals(LAT + 2 * 0.000012, fixes.getLat(2), 1e-6);
+        assertEquals(T0 + 6000L, fixes.getTime(2));
+        assertEquals(6.5f, fixes.getAccuracy(2), 0.05f);
+
+        // El siguiente frame continúa el seq
+        batcher.agregar(LAT, LNG, 5f, 0f, T0 + 9000L);
+        assertEquals(3, TrackChunkCodec.firstSeq(batcher.tomarFrame()));
+        assertNull(batcher.tomarFrame());
+    }
+
+    @Test
+    public void lleno_descartaLosMasViejosSinRepetirSeq() {
+        int total = LocationFrameBatcher.MAX_FIXES_POR_FRAME + 5;
+        for (int i = 0; i < total; i++) {
+            batcher.agregar(LAT, LNG, 5f, 0f, T0 + i * 1000L);
+        }
+        byte[] frame = batcher.tomarFrame();
+
+        TrackBuffer fixes = TrackBuffer.growable(total);
+        TrackChunkCodec.decode(frame, fixes);
+        assertEquals(LocationFrameBatcher.MAX_FIXES_POR_FRAME, fixes.size());
+        assertEquals(5, TrackChunkCodec.firstSeq(frame));
+        assertEquals(T0 + 5000L, fixes.getTime(0));
+    }
+
+    @Test
+    public void bytesPorFix_frameOcupaMenosDeUnCuartoQueElJson() {
+        // Paseo a ~1.4 m/s con un fix cada 3s, un frame cada 10s
+        double jsonBytes = 0;
+        int fixes = 0;
+        for (int frame = 0; frame < 30; frame++) {
+            for (int j = 0; j < 3; j++, fixes++) {
+                double lat = LAT + fixes * 0.0000378;
+                double lng = LNG + Math.sin(fixes / 10.0) * 0.00002;
+                long t = T0 + fixes * 3000L;
+                batcher.agregar(lat, lng, 6f, 1.4f, t);
+                jsonBytes += jsonActual("reserva_abc123", lat, lng, t, 6f).length();
+            }
+            batcher.tomarFrame();
+        }
+
+        double antes = jsonBytes / fixes;
+        double despues = batcher.getBytesPorFix();
+        // Medido: JSON ~91 bytes/fix, frame ~11 bytes/fix (cabecera incluida)
+        assertTrue("JSON: " + antes, antes > 80);
+        assertTrue("frame: " + despues, despues < 12);
+        assertTrue(despues * 4 < antes);
+    }
+
+    /** Payload de SocketManager.updateLocation (una emisión por fix). */
+    private static String jsonActual(String paseoId, double lat, double lng, long ts, float acc) {
+        return "{\"p\":\"" + paseoId + "\",\"lat\":" + lat + ",\"lng\":" + lng
+                + ",\"ts\":" + ts + ",\"acc\":" + Math.round(acc) + "}";
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,95 @@
+package com.mjc.mascotalink.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PresenceStoreTest {
+
+    private final List<String> enviados = new ArrayList<>();
+    private PresenceStore store;
+
+    @Before
+    public void setUp() {
+        store = new PresenceStore(new PresenceStore.Canal() {
+            @Override
+            public void suscribir(List<String> userIds) {
+                enviados.add("+" + userIds);
+            }
+
+            @Override
+            public void desuscribir(List<String> userIds) {
+                enviados.add("-" + userIds);
+            }
+        });
+    }
+
+    private static Map<String, PresenceStore.Estado> frame(Object... idYOnline) {
+        Map<String, PresenceStore.Estado> frame = new HashMap<>();
+        for (int i = 0; i < idYOnline.length; i += 2) {
+            frame.put((String) idYOnline[i], new PresenceStore.Estado((Boolean) idYOnline[i + 1], 0));
+        }
+        return frame;
+    }
+
+    @Test
+    public void suscripciones_soloPidenAlServidorElPrimerYElUltimoInteres() {
+        PresenceStore.Suscripcion busqueda = store.suscribir(Arrays.asList("ana", "luis"), c -> { });
+        PresenceStore.Suscripcion chat = store.suscribir(Collections.singletonList("ana"), c -> { });
+        assertEquals(Collections.singletonList("+[ana, luis]"), enviados);
+
+        busqueda.cancelar();
+        busqueda.cancelar();
+        assertEquals("-[luis]", enviados.get(1));
+        assertEquals(1, store.getUsuariosSeguidos());
+
+        store.resuscribir();
+        assertEquals("+[ana]", enviados.get(2));
+        chat.cancelar();
+        assertEquals("-[ana]", enviados.get(3));
+    }
+
+    @Test
+    public void republicar_suscribiendoAntesDeCancelarConservaElEstado() {
+        PresenceStore.Suscripcion anterior = store.suscribir(Arrays.asList("ana", "luis"), c -> { });
+        store.aplicar(frame("ana", true, "luis", true));
+
+        // Resultados republicados: la nueva suscripción se toma antes de soltar la anterior
+        PresenceStore.Suscripcion nueva = store.suscribir(Arrays.asList("ana", "eva"), c -> { });
+        anterior.cancelar();
+
+        assertEquals(Arrays.asList("+[ana, luis]", "+[eva]", "-[luis]"), enviados);
+        assertTrue(store.getEstado("ana").enLinea);
+        nueva.cancelar();
+    }
+
+    @Test
+    public void aplicar_entregaACadaPantallaSoloSusCambios() {
+        List<Map<String, PresenceStore.Estado>> busqueda = new ArrayList<>();
+        List<Map<String, PresenceStore.Estado>> chat = new ArrayList<>();
+        store.suscribir(Arrays.asList("ana", "luis"), busqueda::add);
+        store.suscribir(Collections.singletonList("eva"), chat::add);
+
+        store.aplicar(frame("ana", true, "luis", false, "otro", true));
+        assertEquals(1, busqueda.size());
+        assertEquals(2, busqueda.get(0).size());
+        assertTrue(chat.isEmpty());
+        assertNull(store.getEstado("otro"));
+
+        // Repetido: no hay cambios que redibujar
+        store.aplicar(frame("ana", true, "eva", true));
+        assertEquals(1, busqueda.size());
+        assertEquals(1, chat.size());
+        assertTrue(store.getEstado("eva").enLinea);
+    }
+}
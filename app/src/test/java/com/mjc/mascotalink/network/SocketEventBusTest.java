@@ -0,0 +1,92 @@
+package com.mjc.mascotalink.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SocketEventBusTest {
+
+    private static final SocketEventBus.Tipo<String> MENSAJE = new SocketEventBus.Tipo<>(
+            "new_message", SocketEventBus.Entrega.COLA, args -> (String) args[0]);
+    private static final SocketEventBus.Tipo<Integer> UBICACION = new SocketEventBus.Tipo<>(
+            "update_location", SocketEventBus.Entrega.ULTIMO,
+            args -> args[0] instanceof Integer ? (Integer) args[0] : null);
+
+    private final Map<String, SocketEventBus.Receptor> enSocket = new HashMap<>();
+    private final List<Runnable> hiloPrincipal = new ArrayList<>();
+    private SocketEventBus bus;
+
+    @Before
+    public void setUp() {
+        bus = new SocketEventBus(new SocketEventBus.Enlace() {
+            @Override
+            public void escuchar(String evento, SocketEventBus.Receptor receptor) {
+                assertTrue(enSocket.put(evento, receptor) == null);
+            }
+
+            @Override
+            public void dejar(String evento) {
+                enSocket.remove(evento);
+            }
+        }, Runnable::run, hiloPrincipal::add);
+    }
+
+    private void correrHiloPrincipal() {
+        List<Runnable> tareas = new ArrayList<>(hiloPrincipal);
+        hiloPrincipal.clear();
+        for (Runnable tarea : tareas) tarea.run();
+    }
+
+    @Test
+    public void variosObservadores_compartenUnSoloListenerDelSocket() {
+        List<String> chat = new ArrayList<>();
+        List<String> lista = new ArrayList<>();
+        SocketEventBus.Suscripcion enChat = bus.suscribir(MENSAJE, chat::add);
+        SocketEventBus.Suscripcion enLista = bus.suscribir(MENSAJE, lista::add);
+        assertEquals(1, enSocket.size());
+
+        enSocket.get("new_message").recibir(new Object[]{"hola"});
+        assertTrue(chat.isEmpty()); // Se entrega en el hilo principal
+        correrHiloPrincipal();
+        assertEquals(Arrays.asList("hola"), chat);
+        assertEquals(Arrays.asList("hola"), lista);
+
+        enChat.cancelar();
+        enChat.cancelar();
+        assertEquals(1, bus.getObservadores("new_message"));
+        enLista.cancelar();
+        assertTrue(enSocket.isEmpty());
+    }
+
+    @Test
+    public void contrapresion_colaEntregaTodoYUltimoSoloElMasReciente() {
+        List<Object> recibidos = new ArrayList<>();
+        bus.suscribir(MENSAJE, recibidos::add);
+        bus.suscribir(UBICACION, recibidos::add);
+        SocketEventBus.Receptor mensajes = enSocket.get("new_message");
+        SocketEventBus.Receptor ubicaciones = enSocket.get("update_location");
+
+        ubicaciones.recibir(new Object[]{1});
+        mensajes.recibir(new Object[]{"a"});
+        ubicaciones.recibir(new Object[]{2});
+        ubicaciones.recibir(new Object[]{"ilegible"}); // El decodificador lo descarta
+        mensajes.recibir(new Object[]{"b"});
+        ubicaciones.recibir(new Object[]{3});
+        assertEquals(1, hiloPrincipal.size()); // Una sola entrega por tanda
+
+        correrHiloPrincipal();
+        assertEquals(Arrays.<Object>asList("a", "b", 3), recibidos);
+
+        ubicaciones.recibir(new Object[]{4});
+        correrHiloPrincipal();
+        assertEquals(4, recibidos.get(3));
+    }
+}
@@ -0,0 +1,77 @@
+package com.mjc.mascotalink.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class EscriturasPendientesTest {
+
+    /** Simula un FieldValue (arrayUnion) para las pruebas. */
+    private static final class Transformacion {
+    }
+
+    private EscriturasPendientes<String, String> pendientes;
+
+    @Before
+    public void setUp() {
+        pendientes = new EscriturasPendientes<>(valor -> valor instanceof Transformacion);
+    }
+
+    @Test
+    public void variosTicks_fusionanUnaEscrituraPorDocumento() {
+        // Dos ticks de ubicación en tiempo real dentro de la misma ventana
+        for (int tick = 0; tick < 2; tick++) {
+            pendientes.agregar("usuarios/u1", "usuarios/u1", campos("ubicacion", tick, "estado", "online"), false, "u" + tick);
+            pendientes.agregar("paseadores_search/u1", "paseadores_search/u1", campos("ubicacion", tick), false, null);
+            pendientes.agregar("reservas/r1", "reservas/r1", campos("ubicacion_actual", tick), false, "r" + tick);
+        }
+        pendientes.agregar("reservas/r1", "reservas/r1", campos("distancia_km", 1.2), false, null);
+
+        List<EscriturasPendientes.Escritura<String, String>> lote = pendientes.drenar();
+
+        assertEquals(3, lote.size());
+        assertEquals("usuarios/u1", lote.get(0).ref);
+        assertEquals(1, lote.get(0).campos.get("ubicacion"));
+        assertEquals(2, lote.get(0).callbacks.size());
+        assertEquals(2, lote.get(2).campos.size());
+        assertEquals(7, pendientes.getSolicitadas());
+        assertEquals(3, pendientes.getEmitidas());
+        assertEquals(4, pendientes.getCamposDeduplicados());
+        assertTrue(pendientes.isEmpty());
+    }
+
+    @Test
+    public void set_reemplazaLoPendienteDelDocumento() {
+        pendientes.agregar("reservas/r1/ubicaciones_historico/seq_0", "a", campos("chunk", 1), true, null);
+        pendientes.agregar("reservas/r1/ubicaciones_historico/seq_0", "a", campos("puntos", 50), true, null);
+
+        EscriturasPendientes.Escritura<String, String> escritura = pendientes.drenar().get(0);
+        assertTrue(escritura.esSet);
+        assertEquals(1, escritura.campos.size());
+        assertEquals(50, escritura.campos.get("puntos"));
+    }
+
+    @Test
+    public void transformacionSobreMismoCampo_requiereVaciar() {
+        pendientes.agregar("reservas/r1", "r1", campos("ubicaciones_chunks", new Transformacion()), false, null);
+
+        assertTrue(pendientes.requiereVaciarAntes("reservas/r1", campos("ubicaciones_chunks", new Transformacion())));
+        assertFalse(pendientes.requiereVaciarAntes("reservas/r1", campos("distancia_km", 1.0)));
+        assertFalse(pendientes.requiereVaciarAntes("reservas/r2", campos("ubicaciones_chunks", new Transformacion())));
+    }
+
+    private static Map<String, Object> campos(Object... claveValor) {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < claveValor.length; i += 2) {
+            map.put((String) claveValor[i], claveValor[i + 1]);
+        }
+        return map;
+    }
+}
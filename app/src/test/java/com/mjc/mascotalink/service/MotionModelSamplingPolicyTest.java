@@ -0,0 +1,135 @@
+package com.mjc.mascotalink.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.mjc.mascotalink.service.SamplingReplayHarness.Reporte;
+import com.mjc.mascotalink.service.SamplingReplayHarness.Track;
+
+import org.junit.Test;
+
+/**
+ * Reproduce tracks de paseo típicos contra la política adaptativa y la compara con
+ * el intervalo fijo de 8s que se usaba al caminar: fixes pedidos vs. error de ruta.
+ */
+public class MotionModelSamplingPolicyTest {
+
+    private static final long SEMILLA = 42L;
+    private static final float PRECISION_GPS = 5f;
+
+    private static final SamplingPolicy.Contexto DUENO_MIRANDO = new SamplingPolicy.Contexto(true, false, false);
+    private static final SamplingPolicy.Contexto SIN_DUENO = new SamplingPolicy.Contexto(false, false, false);
+
+    // 20 min en línea recta a paso de paseo
+    private static final Track RECTA = Track.deTramos("recta", new double[]{45, 1.3, 1200});
+
+    // 10 min quieto (el perro olfatea/juega)
+    private static final Track QUIETO = Track.deTramos("quieto", new double[]{0, 0, 600});
+
+    // Cuadras: giro de 90° cada 40s, con paradas cortas
+    private static final Track CUADRAS = Track.deTramos("cuadras",
+            new double[]{0, 1.3, 40}, new double[]{90, 1.3, 40}, new double[]{0, 1.3, 40},
+            new double[]{90, 0, 30}, new double[]{90, 1.3, 40}, new double[]{180, 1.3, 40},
+            new double[]{90, 1.3, 40}, new double[]{0, 2.5, 40}, new double[]{270, 1.3, 40},
+            new double[]{0, 0, 60}, new double[]{0, 1.3, 40}, new double[]{270, 1.3, 40});
+
+    private static final Track[] TRACKS = {RECTA, QUIETO, CUADRAS};
+
+    @Test
+    public void recta_sinDueno_pideMenosDeLaMitadDeFixesConMismoError() {
+        Reporte fijo = reproducir(RECTA, new SamplingReplayHarness.IntervaloFijo(8000), SIN_DUENO);
+        Reporte adaptativo = reproducir(RECTA, new MotionModelSamplingPolicy(), SIN_DUENO);
+
+        assertTrue(adaptativo + " vs " + fijo, adaptativo.fixes * 2 < fijo.fixes);
+        assertTrue(adaptativo + " vs " + fijo, adaptativo.errorMedioM <= fijo.errorMedioM + 1.0);
+    }
+
+    @Test
+    public void quieto_sinDueno_alargaIntervalo() {
+        Reporte fijo = reproducir(QUIETO, new SamplingReplayHarness.IntervaloFijo(8000), SIN_DUENO);
+        Reporte adaptativo = reproducir(QUIETO, new MotionModelSamplingPolicy(), SIN_DUENO);
+
+        assertTrue(adaptativo + " vs " + fijo, adaptativo.fixes * 10 < fijo.fixes * 6);
+    }
+
+    @Test
+    public void cuadras_muestreaMasSeguidoQueEnRecta() {
+        Reporte recta = reproducir(RECTA, new MotionModelSamplingPolicy(), DUENO_MIRANDO);
+        Reporte cuadras = reproducir(CUADRAS, new MotionModelSamplingPolicy(), DUENO_MIRANDO);
+
+        assertTrue(cuadras + " vs " + recta, cuadras.intervaloMedioSeg < recta.intervaloMedioSeg);
+        assertTrue(cuadras.toString(), cuadras.errorMedioM < 5.0);
+    }
+
+    @Test
+    public void duenoMirando_nuncaSuperaIntervaloEnVivo() {
+        for (Track track : TRACKS) {
+            Reporte reporte = reproducir(track, new MotionModelSamplingPolicy(), DUENO_MIRANDO);
+            assertTrue(reporte.toString(),
+                    reporte.intervaloMedioSeg <= MotionModelSamplingPolicy.INTERVALO_MAX_DUENO_MS / 1000.0);
+        }
+    }
+
+    @Test
+    public void replay_esDeterministico() {
+        for (Track track : TRACKS) {
+            assertEquals(reproducir(track, new MotionModelSamplingPolicy(), SIN_DUENO),
+                    reproducir(track, new MotionModelSamplingPolicy(), SIN_DUENO));
+        }
+    }
+
+    @Test
+    public void precisionBaja_pideFixesMenosSeguido() {
+        Reporte preciso = SamplingReplayHarness.reproducir(QUIETO,
+                new MotionModelSamplingPolicy(), SIN_DUENO, 5f, SEMILLA);
+        Reporte impreciso = SamplingReplayHarness.reproducir(QUIETO,
+                new MotionModelSamplingPolicy(), SIN_DUENO, 60f, SEMILLA);
+
+        assertTrue(impreciso + " vs " + preciso, impreciso.fixes < preciso.fixes);
+    }
+
+    @Test
+    public void pausaYBateriaBaja_usanBajoConsumo() {
+        MotionModelSamplingPolicy politica = new MotionModelSamplingPolicy();
+        assertEquals(SamplingPolicy.Prioridad.BAJO_CONSUMO,
+                politica.decidir(new SamplingPolicy.Contexto(true, false, true)).getPrioridad());
+
+        for (int i = 0; i < 30; i++) {
+            politica.onFix(-0.1807, -78.4678, 5f, i * 10000L);
+        }
+        SamplingPolicy.Decision decision = politica.decidir(new SamplingPolicy.Contexto(false, true, false));
+        assertEquals(SamplingPolicy.Prioridad.BAJO_CONSUMO, decision.getPrioridad());
+        assertTrue(decision.getMaxRetrasoMs() > decision.getIntervaloMs());
+    }
+
+    @Test
+    public void difiereDe_ignoraCambiosPequenos() {
+        SamplingPolicy.Decision base = new SamplingPolicy.Decision(8000, 5000, 3f, 8000,
+                SamplingPolicy.Prioridad.BALANCEADA, "a");
+
+        assertFalse(new SamplingPolicy.Decision(9000, 6000, 3f, 9000,
+                SamplingPolicy.Prioridad.BALANCEADA, "b").difiereDe(base));
+        assertTrue(new SamplingPolicy.Decision(12000, 8000, 3f, 12000,
+                SamplingPolicy.Prioridad.BALANCEADA, "c").difiereDe(base));
+        assertTrue(new SamplingPolicy.Decision(8000, 5000, 3f, 8000,
+                SamplingPolicy.Prioridad.ALTA_PRECISION, "d").difiereDe(base));
+        assertTrue(base.difiereDe(null));
+    }
+
+    @Test
+    public void todosLosTracks_noPidenMasFixesNiEmpeoranElErrorMaximo() {
+        for (Track track : TRACKS) {
+            Reporte fijo = reproducir(track, new SamplingReplayHarness.IntervaloFijo(8000), DUENO_MIRANDO);
+            for (SamplingPolicy.Contexto contexto : new SamplingPolicy.Contexto[]{DUENO_MIRANDO, SIN_DUENO}) {
+                Reporte adaptativo = reproducir(track, new MotionModelSamplingPolicy(), contexto);
+                assertTrue(adaptativo + " vs " + fijo, adaptativo.fixes <= fijo.fixes);
+                assertTrue(adaptativo + " vs " + fijo, adaptativo.errorMaximoM <= fijo.errorMaximoM + 1.0);
+            }
+        }
+    }
+
+    private static Reporte reproducir(Track track, SamplingPolicy politica, SamplingPolicy.Contexto contexto) {
+        return SamplingReplayHarness.reproducir(track, politica, contexto, PRECISION_GPS, SEMILLA);
+    }
+}
@@ -0,0 +1,162 @@
+package com.mjc.mascotalink.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Reproduce tracks grabados contra una {@link SamplingPolicy} de forma determinística.
+ *
+ * El track es la "verdad" (posición real en cada instante); el arnés simula un GPS que
+ * entrega un fix cuando la política lo pide (con ruido gaussiano de semilla fija) y
+ * mide cuántos fixes se pidieron y cuánto se aleja la ruta reconstruida de la real.
+ */
+final class SamplingReplayHarness {
+
+    private static final double METROS_POR_GRADO_LAT = 110_540.0;
+    private static final double METROS_POR_GRADO_LNG = 111_320.0;
+    private static final double LAT_BASE = -0.1807;   // Quito
+    private static final double LNG_BASE = -78.4678;
+
+    private SamplingReplayHarness() {
+    }
+
+    /**
+     * Track grabado: posiciones en metros (x este, y norte) respecto a un origen, por segundo.
+     */
+    static final class Track {
+        final String nombre;
+        final double[] x;
+        final double[] y;
+
+        private Track(String nombre, double[] x, double[] y) {
+            this.nombre = nombre;
+            this.x = x;
+            this.y = y;
+        }
+
+        int duracionSeg() {
+            return x.length - 1;
+        }
+
+        /**
+         * Construye el track recorriendo tramos {rumboGrados, velocidadMps, segundos}.
+         */
+        static Track deTramos(String nombre, double[]... tramos) {
+            int total = 0;
+            for (double[] tramo : tramos) total += (int) tramo[2];
+            double[] x = new double[total + 1];
+            double[] y = new double[total + 1];
+            int t = 0;
+            for (double[] tramo : tramos) {
+                double rumbo = Math.toRadians(tramo[0]);
+                for (int s = 0; s < (int) tramo[2]; s++, t++) {
+                    x[t + 1] = x[t] + Math.sin(rumbo) * tramo[1];
+                    y[t + 1] = y[t] + Math.cos(rumbo) * tramo[1];
+                }
+            }
+            return new Track(nombre, x, y);
+        }
+    }
+
+    static final class Reporte {
+        final String track;
+        final int fixes;
+        final double errorMedioM;
+        final double errorMaximoM;
+        final double intervaloMedioSeg;
+
+        Reporte(String track, int fixes, double errorMedioM, double errorMaximoM, double intervaloMedioSeg) {
+            this.track = track;
+            this.fixes = fixes;
+            this.errorMedioM = errorMedioM;
+            this.errorMaximoM = errorMaximoM;
+            this.intervaloMedioSeg = intervaloMedioSeg;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%-10s fixes=%4d intervalo=%5.1fs error medio=%5.1fm max=%5.1fm",
+                    track, fixes, intervaloMedioSeg, errorMedioM, errorMaximoM);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Reporte)) return false;
+            Reporte r = (Reporte) o;
+            return fixes == r.fixes && errorMedioM == r.errorMedioM && errorMaximoM == r.errorMaximoM;
+        }
+
+        @Override
+        public int hashCode() {
+            return fixes;
+        }
+    }
+
+    static Reporte reproducir(Track track, SamplingPolicy politica, SamplingPolicy.Contexto contexto,
+                              float precisionGps, long semilla) {
+        Random random = new Random(semilla);
+        politica.reset();
+
+        List<double[]> fixes = new ArrayList<>(); // {t, x, y}
+        long tMs = 0;
+        long finMs = track.duracionSeg() * 1000L;
+        while (tMs <= finMs) {
+            int seg = (int) (tMs / 1000);
+            // Precisión reportada = desviación típica (como Location.getAccuracy, aprox.)
+            double fx = track.x[seg] + random.nextGaussian() * precisionGps / Math.sqrt(2);
+            double fy = track.y[seg] + random.nextGaussian() * precisionGps / Math.sqrt(2);
+            politica.onFix(LAT_BASE + fy / METROS_POR_GRADO_LAT,
+                    LNG_BASE + fx / (METROS_POR_GRADO_LNG * Math.cos(Math.toRadians(LAT_BASE))),
+                    precisionGps, tMs);
+            fixes.add(new double[]{seg, fx, fy});
+            long intervalo = politica.decidir(contexto).getIntervaloMs();
+            tMs += Math.max(1000, intervalo - intervalo % 1000);
+        }
+
+        // Error de la ruta reconstruida (interpolación lineal entre fixes) contra la real, por segundo
+        double suma = 0;
+        double maximo = 0;
+        int tramo = 0;
+        int muestras = 0;
+        for (int s = 0; s <= (int) fixes.get(fixes.size() - 1)[0]; s++) {
+            while (tramo < fixes.size() - 2 && fixes.get(tramo + 1)[0] < s) tramo++;
+            double[] a = fixes.get(tramo);
+            double[] b = fixes.get(Math.min(tramo + 1, fixes.size() - 1));
+            double f = b[0] == a[0] ? 0 : (s - a[0]) / (b[0] - a[0]);
+            double ex = a[1] + (b[1] - a[1]) * f - track.x[s];
+            double ey = a[2] + (b[2] - a[2]) * f - track.y[s];
+            double error = Math.hypot(ex, ey);
+            suma += error;
+            maximo = Math.max(maximo, error);
+            muestras++;
+        }
+        double intervaloMedio = track.duracionSeg() / (double) Math.max(1, fixes.size() - 1);
+        return new Reporte(track.nombre, fixes.size(), suma / muestras, maximo, intervaloMedio);
+    }
+
+    /**
+     * Política de referencia: el intervalo fijo que usaba antes LocationService al caminar.
+     */
+    static final class IntervaloFijo implements SamplingPolicy {
+        private final long intervaloMs;
+
+        IntervaloFijo(long intervaloMs) {
+            this.intervaloMs = intervaloMs;
+        }
+
+        @Override
+        public void onFix(double lat, double lng, float accuracy, long tiempoMs) {
+        }
+
+        @Override
+        public Decision decidir(Contexto contexto) {
+            return new Decision(intervaloMs, intervaloMs, 0f, intervaloMs, Prioridad.BALANCEADA, "FIJO");
+        }
+
+        @Override
+        public void reset() {
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.mjc.mascotalink.service;
+
+import static org.junit.Assert.assertEquals;
+
+import com.mjc.mascotalink.util.TrackBuffer;
+import com.mjc.mascotalink.util.TrackSimplifier;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+public class SimplificadorDurableTest {
+
+    private File archivo;
+    private final TrackBuffer ruta = TrackBuffer.growable(16);
+
+    @Before
+    public void setUp() throws Exception {
+        File dir = Files.createTempDirectory("crudo").toFile();
+        dir.deleteOnExit();
+        archivo = new File(dir, "reserva1" + TrackJournal.EXTENSION_CRUDO);
+        archivo.deleteOnExit();
+    }
+
+    private SimplificadorDurable abrir() throws Exception {
+        TrackSimplifier simplificador = new TrackSimplifier(4f, 15,
+                (lat, lng, acc, speed, t) -> ruta.add(lat, lng, acc, speed, t));
+        return new SimplificadorDurable(TrackJournal.abrir(archivo), simplificador);
+    }
+
+    @Test
+    public void ventana_sobreviveAUnKillYSeRecuperaAlReabrir() throws Exception {
+        SimplificadorDurable durable = abrir();
+        // Línea recta: después del ancla todo queda en la ventana
+        for (int i = 0; i < 5; i++) {
+            durable.agregar(-0.18 + i * 0.0001, -78.46, 5f, 1.3f, 1000L * (i + 1));
+        }
+        assertEquals(1, ruta.size());
+        assertEquals(4, durable.getPendientes());
+        durable.cerrar(); // Kill: la ventana en memoria se pierde
+
+        SimplificadorDurable reabierto = abrir();
+        assertEquals(4, reabierto.recuperar());
+        reabierto.flush();
+        assertEquals(0, reabierto.getPendientes());
+        assertEquals(3, ruta.size()); // Ancla anterior + ancla nueva + último fix
+        assertEquals(5000L, ruta.getTime(ruta.size() - 1));
+
+        reabierto.flushYEliminar();
+        assertEquals(false, archivo.exists());
+    }
+}
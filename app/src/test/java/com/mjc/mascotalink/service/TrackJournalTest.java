@@ -0,0 +1,106 @@
+package com.mjc.mascotalink.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.mjc.mascotalink.util.TrackBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+public class TrackJournalTest {
+
+    private File archivo;
+
+    @Before
+    public void setUp() throws Exception {
+        File dir = Files.createTempDirectory("journal").toFile();
+        dir.deleteOnExit();
+        archivo = new File(new File(dir, TrackJournal.DIRECTORIO), "reserva1" + TrackJournal.EXTENSION);
+        archivo.deleteOnExit();
+    }
+
+    @Test
+    public void append_seqsConsecutivosYPendientes() throws Exception {
+        TrackJournal journal = TrackJournal.abrir(archivo);
+        long s1 = journal.append(-0.18, -78.46, 10f, 1f, 1000L);
+        long s2 = journal.append(-0.19, -78.47, 11f, 1f, 2000L);
+
+        assertEquals(s1 + 1, s2);
+        assertEquals(2, journal.pendingCount());
+
+        TrackBuffer destino = new TrackBuffer(10);
+        assertEquals(s1, journal.leerPendientes(destino, 10));
+        assertEquals(2, destino.size());
+        assertEquals(-0.19, destino.getLat(1), 0);
+    }
+
+    @Test
+    public void reabrir_recuperaColaNoConfirmada() throws Exception {
+        TrackJournal journal = TrackJournal.abrir(archivo);
+        long s1 = journal.append(1, 1, 5f, 0f, 1000L);
+        journal.append(2, 2, 5f, 0f, 2000L);
+        long s3 = journal.append(3, 3, 5f, 0f, 3000L);
+        journal.ack(s1);
+        journal.close(); // Simula kill: no hay flush explícito más allá del mmap
+
+        TrackJournal reabierto = TrackJournal.abrir(archivo);
+        assertEquals(2, reabierto.pendingCount());
+
+        TrackBuffer destino = new TrackBuffer(10);
+        assertEquals(s1 + 1, reabierto.leerPendientes(destino, 10));
+        assertEquals(2.0, destino.getLat(0), 0);
+
+        // El siguiente seq continúa la secuencia anterior
+        assertEquals(s3 + 1, reabierto.append(4, 4, 5f, 0f, 4000L));
+    }
+
+    @Test
+    public void reabrir_ignoraRegistroCortado() throws Exception {
+        TrackJournal journal = TrackJournal.abrir(archivo);
+        journal.append(1, 1, 5f, 0f, 1000L);
+        journal.append(2, 2, 5f, 0f, 2000L);
+        journal.close();
+
+        // Corromper el último registro (escritura cortada a la mitad)
+        try (RandomAccessFile raf = new RandomAccessFile(archivo, "rw")) {
+            raf.seek(32 + TrackJournal.RECORD_SIZE + 10);
+            raf.writeLong(0xDEADBEEFL);
+        }
+
+        TrackJournal reabierto = TrackJournal.abrir(archivo);
+        assertEquals(1, reabierto.pendingCount());
+    }
+
+    @Test
+    public void append_compactaYCreceSinPerderPendientes() throws Exception {
+        TrackJournal journal = TrackJournal.enMemoria();
+        long primero = -1;
+        for (int i = 0; i < 5000; i++) {
+            long seq = journal.append(i, i, 1f, 0f, i);
+            if (primero < 0) primero = seq;
+            if (i == 999) {
+                journal.ack(seq); // Los primeros 1000 ya se enviaron
+            }
+        }
+
+        assertEquals(4000, journal.pendingCount());
+        TrackBuffer destino = new TrackBuffer(4000);
+        assertEquals(primero + 1000, journal.leerPendientes(destino, 4000));
+        assertEquals(1000.0, destino.getLat(0), 0);
+        assertEquals(4999.0, destino.getLat(3999), 0);
+    }
+
+    @Test
+    public void eliminar_borraArchivo() throws Exception {
+        TrackJournal journal = TrackJournal.abrir(archivo);
+        assertTrue(archivo.exists());
+        assertTrue(journal.eliminar());
+        assertFalse(archivo.exists());
+    }
+}
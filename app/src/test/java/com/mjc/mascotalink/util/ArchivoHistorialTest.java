@@ -0,0 +1,89 @@
+package com.mjc.mascotalink.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class ArchivoHistorialTest {
+
+    private static final ArchivoHistorial.Codec<HistorialChatTest.Msg> CODEC =
+            new ArchivoHistorial.Codec<HistorialChatTest.Msg>() {
+                @Override
+                public void escribir(HistorialChatTest.Msg mensaje, DataOutputStream out) throws IOException {
+                    out.writeUTF(mensaje.id);
+                    out.writeLong(mensaje.ms);
+                }
+
+                @Override
+                public HistorialChatTest.Msg leer(DataInputStream in) throws IOException {
+                    return new HistorialChatTest.Msg(in.readUTF(), in.readLong());
+                }
+            };
+
+    private File archivo;
+
+    @Before
+    public void setUp() throws IOException {
+        archivo = File.createTempFile("chat", ".log");
+        assertTrue(archivo.delete());
+    }
+
+    @After
+    public void tearDown() {
+        archivo.delete();
+    }
+
+    private ArchivoHistorial<HistorialChatTest.Msg> abrir() {
+        return new ArchivoHistorial<>(archivo, CODEC);
+    }
+
+    @Test
+    public void cargar_recuperaMensajesTramosYUltimaVersion() throws IOException {
+        ArchivoHistorial<HistorialChatTest.Msg> escritura = abrir();
+        escritura.cargar(HistorialChatTest.CLAVE);
+        escritura.agregar(Arrays.asList(new HistorialChatTest.Msg("a", 10), new HistorialChatTest.Msg("b", 20)),
+                HistorialChat.INICIO, 20);
+        escritura.agregar(Collections.singletonList(new HistorialChatTest.Msg("c", 90)), 90, 90);
+        escritura.agregar(Collections.singletonList(new HistorialChatTest.Msg("b", 25)), 0, -1);
+
+        HistorialChat<HistorialChatTest.Msg> historial = abrir().cargar(HistorialChatTest.CLAVE);
+        assertEquals(3, historial.size());
+        assertEquals(25, historial.get("b").ms);
+        assertEquals(1, historial.huecos().size());
+        assertTrue(historial.llegaAlInicio(historial.get("a")));
+    }
+
+    @Test
+    public void cargar_descartaLaEscrituraCortadaYSigueAgregando() throws IOException {
+        ArchivoHistorial<HistorialChatTest.Msg> escritura = abrir();
+        escritura.cargar(HistorialChatTest.CLAVE);
+        escritura.agregar(Collections.singletonList(new HistorialChatTest.Msg("a", 10)), 10, 10);
+        long largoSano = archivo.length();
+        escritura.agregar(Collections.singletonList(new HistorialChatTest.Msg("b", 20)), 10, 20);
+        try (RandomAccessFile raf = new RandomAccessFile(archivo, "rw")) {
+            raf.setLength(archivo.length() - 3);
+        }
+
+        ArchivoHistorial<HistorialChatTest.Msg> lectura = abrir();
+        HistorialChat<HistorialChatTest.Msg> historial = lectura.cargar(HistorialChatTest.CLAVE);
+        // El mensaje "b" quedó completo; solo se pierde su tramo cortado
+        assertEquals(2, historial.size());
+        assertEquals(10, historial.getTramos().get(0)[1]);
+        assertTrue(archivo.length() > largoSano);
+
+        lectura.agregar(Collections.singletonList(new HistorialChatTest.Msg("c", 30)), 20, 30);
+        lectura.reescribir(lectura.cargar(HistorialChatTest.CLAVE));
+        assertEquals(3, abrir().cargar(HistorialChatTest.CLAVE).size());
+    }
+}
@@ -0,0 +1,52 @@
+package com.mjc.mascotalink.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class ContadorNoLeidosTest {
+
+    private ContadorNoLeidos contador;
+
+    @Before
+    public void setUp() {
+        contador = new ContadorNoLeidos();
+    }
+
+    @Test
+    public void reemplazar_sumaLosChatsEIgnoraValoresInvalidos() {
+        Map<String, Object> doc = new HashMap<>();
+        doc.put("c1", 3L);
+        doc.put("c2", 2L);
+        doc.put("c3", -1L);
+        doc.put("c4", "x");
+        assertTrue(contador.reemplazar(doc));
+        assertEquals(5, contador.getTotal());
+
+        // Mismo total: no hay que redibujar el badge
+        doc.put("c1", 2L);
+        doc.put("c2", 3L);
+        assertFalse(contador.reemplazar(doc));
+        assertEquals(3, contador.get("c2"));
+    }
+
+    @Test
+    public void deltas_actualizanElTotalSinBajarDeCero() {
+        assertTrue(contador.sumar("c1", 1));
+        assertTrue(contador.sumar("c1", 1));
+        assertTrue(contador.sumar("c2", 4));
+        assertEquals(6, contador.getTotal());
+
+        assertTrue(contador.fijar("c2", 0));
+        assertFalse(contador.fijar("c2", 0));
+        assertTrue(contador.sumar("c1", -5));
+        assertEquals(0, contador.get("c1"));
+        assertEquals(0, contador.getTotal());
+    }
+}
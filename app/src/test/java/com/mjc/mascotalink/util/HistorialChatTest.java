@@ -0,0 +1,116 @@
+package com.mjc.mascotalink.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class HistorialChatTest {
+
+    /** Mensaje de prueba: id y momento en ms. */
+    static final class Msg {
+        final String id;
+        final long ms;
+
+        Msg(String id, long ms) {
+            this.id = id;
+            this.ms = ms;
+        }
+    }
+
+    static final HistorialChat.Clave<Msg> CLAVE = new HistorialChat.Clave<Msg>() {
+        @Override
+        public String id(Msg mensaje) {
+            return mensaje.id;
+        }
+
+        @Override
+        public long ms(Msg mensaje) {
+            return mensaje.ms;
+        }
+    };
+
+    private HistorialChat<Msg> historial;
+
+    @Before
+    public void setUp() {
+        historial = new HistorialChat<>(CLAVE);
+    }
+
+    /** Mensajes "m{ms}" para cada ms de desde a hasta (inclusive) de a paso. */
+    private static List<Msg> mensajes(long desde, long hasta, long paso) {
+        List<Msg> lista = new ArrayList<>();
+        for (long ms = desde; ms <= hasta; ms += paso) {
+            lista.add(new Msg("m" + ms, ms));
+        }
+        return lista;
+    }
+
+    private static List<String> ids(List<Msg> mensajes) {
+        List<String> ids = new ArrayList<>();
+        for (Msg m : mensajes) ids.add(m.id);
+        return ids;
+    }
+
+    @Test
+    public void anteriores_seDetieneEnElHuecoHastaQueSeCompleta() {
+        // Se guardó 100..200; tras un tiempo offline se trajo solo lo más nuevo (500..600)
+        historial.registrarRango(mensajes(100, 200, 10), HistorialChat.INICIO, 200);
+        historial.registrarRango(mensajes(500, 600, 10), 500, 600);
+        assertEquals(1, historial.huecos().size());
+        assertEquals(600, historial.ultimoMs());
+
+        Msg primeroVisible = historial.get("m500");
+        assertTrue(historial.anteriores(primeroVisible, 10).isEmpty());
+        assertFalse(historial.llegaAlInicio(primeroVisible));
+
+        // La página del servidor que llena el hueco une los tramos
+        historial.registrarRango(mensajes(300, 490, 10), 200, 500);
+        assertTrue(historial.huecos().isEmpty());
+        assertEquals(Arrays.asList("m470", "m480", "m490"), ids(historial.anteriores(primeroVisible, 3)));
+        assertTrue(historial.llegaAlInicio(primeroVisible));
+    }
+
+    @Test
+    public void guardarSuelto_noCubreLoQueFalta() {
+        historial.registrarRango(mensajes(100, 200, 10), HistorialChat.INICIO, 200);
+        // Llegó por el socket; Firestore todavía no entregó lo de 210..290
+        historial.guardarSuelto(new Msg("m300", 300));
+
+        assertEquals(300, historial.ultimoMs());
+        assertEquals(1, historial.getTramos().size());
+        assertEquals(200, historial.getTramos().get(0)[1]);
+    }
+
+    @Test
+    public void ultimos_yActualizarNoDuplican() {
+        historial.registrarRango(mensajes(10, 50, 10), 10, 50);
+        historial.registrarRango(mensajes(40, 60, 10), 40, 60);
+        assertEquals(6, historial.size());
+        assertEquals(Arrays.asList("m50", "m60"), ids(historial.ultimos(2)));
+
+        assertTrue(historial.actualizar(new Msg("m20", 20)));
+        assertFalse(historial.actualizar(new Msg("nuevo", 70)));
+        assertEquals(6, historial.size());
+        assertEquals(1, historial.getTramos().size());
+    }
+
+    @Test
+    public void recortar_conservaLoNuevoYAjustaLosTramos() {
+        historial.registrarRango(mensajes(10, 100, 10), HistorialChat.INICIO, 100);
+        assertEquals(4, historial.recortar(6));
+
+        assertEquals("m50", historial.getMensajes().get(0).id);
+        long[] tramo = historial.getTramos().get(0);
+        assertEquals(50, tramo[0]);
+        assertEquals(100, tramo[1]);
+        // Lo descartado ya no cuenta como completo: se vuelve a pedir al servidor
+        assertFalse(historial.llegaAlInicio(historial.get("m50")));
+    }
+}
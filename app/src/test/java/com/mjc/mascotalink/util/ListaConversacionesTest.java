@@ -0,0 +1,103 @@
+package com.mjc.mascotalink.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ListaConversacionesTest {
+
+    /** Documento de prueba: mismo id y mismo ms = mismo contenido. */
+    private static final class Doc {
+        final String id;
+        final long ms;
+
+        Doc(String id, long ms) {
+            this.id = id;
+            this.ms = ms;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Doc && ((Doc) o).id.equals(id) && ((Doc) o).ms == ms;
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode();
+        }
+    }
+
+    private final List<String> convertidos = new ArrayList<>();
+    private ListaConversaciones<Doc, Doc> lista;
+
+    @Before
+    public void setUp() {
+        lista = new ListaConversaciones<>(new ListaConversaciones.Conversor<Doc, Doc>() {
+            @Override
+            public String id(Doc documento) {
+                return documento.id;
+            }
+
+            @Override
+            public Doc convertir(Doc documento) {
+                convertidos.add(documento.id);
+                return documento;
+            }
+
+            @Override
+            public long orden(Doc item) {
+                return item.ms;
+            }
+        });
+    }
+
+    private List<String> ids() {
+        List<String> ids = new ArrayList<>();
+        for (Doc doc : lista.getItems()) ids.add(doc.id);
+        return ids;
+    }
+
+    @Test
+    public void aplicarEnVivo_soloConvierteLoQueCambioYLoMueve() {
+        lista.aplicarEnVivo(Arrays.asList(new Doc("a", 30), new Doc("b", 20), new Doc("c", 10)), 10);
+        List<Doc> antes = lista.getItems();
+        convertidos.clear();
+
+        // Mismo resultado: nada que convertir y la misma lista para el adapter
+        assertTrue(lista.aplicarEnVivo(Arrays.asList(new Doc("a", 30), new Doc("b", 20), new Doc("c", 10)), 10).isEmpty());
+        assertSame(antes, lista.getItems());
+
+        // Mensaje nuevo en "c": sube al principio
+        assertEquals(1, lista.aplicarEnVivo(Arrays.asList(new Doc("c", 40), new Doc("a", 30), new Doc("b", 20)), 10).size());
+        assertEquals(Arrays.asList("c"), convertidos);
+        assertEquals(Arrays.asList("c", "a", "b"), ids());
+
+        // "a" desaparece dentro de la ventana: se borró
+        lista.aplicarEnVivo(Arrays.asList(new Doc("c", 40), new Doc("b", 20)), 10);
+        assertEquals(Arrays.asList("c", "b"), ids());
+    }
+
+    @Test
+    public void paginas_conservanLoDesplazadoYCedenAnteLaEscucha() {
+        lista.aplicarEnVivo(Arrays.asList(new Doc("a", 30), new Doc("b", 20)), 2);
+        lista.agregarPagina(Arrays.asList(new Doc("b", 20), new Doc("c", 10)));
+        assertEquals(Arrays.asList("a", "b", "c"), ids());
+        assertEquals("c", lista.getUltimoOrigen().id);
+
+        // Entra un chat nuevo y "b" queda fuera de la ventana llena: no se borra
+        lista.aplicarEnVivo(Arrays.asList(new Doc("d", 50), new Doc("a", 30)), 2);
+        assertEquals(Arrays.asList("d", "a", "b", "c"), ids());
+
+        // Un chat de las páginas recibe un mensaje y vuelve a la escucha
+        lista.aplicarEnVivo(Arrays.asList(new Doc("c", 60), new Doc("d", 50)), 2);
+        assertEquals(Arrays.asList("c", "d", "a", "b"), ids());
+        assertEquals("b", lista.getUltimoOrigen().id);
+    }
+}
@@ -0,0 +1,83 @@
+package com.mjc.mascotalink.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ListaIncrementalTest {
+
+    /** Item de prueba: id y fecha (orden descendente, como la lista de paseos). */
+    private static final class Item {
+        final String id;
+        final long fecha;
+
+        Item(String id, long fecha) {
+            this.id = id;
+            this.fecha = fecha;
+        }
+    }
+
+    private ListaIncremental<Object, Item> lista;
+
+    @Before
+    public void setUp() {
+        lista = new ListaIncremental<>((a, b) -> Long.compare(b.fecha, a.fecha));
+    }
+
+    private static List<String> ids(List<Item> items) {
+        String[] ids = new String[items.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = items.get(i).id;
+        return Arrays.asList(ids);
+    }
+
+    @Test
+    public void cambios_seAplicanSinTocarLoDemas() {
+        Item a = new Item("a", 1);
+        Item b = new Item("b", 3);
+        lista.poner("a", "docA", a);
+        lista.poner("b", "docB", b);
+        lista.poner("c", "docC", new Item("c", 2));
+        assertEquals(Arrays.asList("b", "c", "a"), ids(lista.getItems()));
+
+        // Modificado: cambia de lugar; los demás siguen siendo los mismos objetos
+        lista.poner("a", "docA2", new Item("a", 4));
+        assertTrue(lista.quitar("c"));
+        assertFalse(lista.quitar("c"));
+        List<Item> items = lista.getItems();
+        assertEquals(Arrays.asList("a", "b"), ids(items));
+        assertSame(b, items.get(1));
+    }
+
+    @Test
+    public void getItems_noRecalculaSinCambios() {
+        lista.poner("a", "docA", new Item("a", 1));
+        List<Item> primera = lista.getItems();
+        assertSame(primera, lista.getItems());
+
+        lista.poner("b", "docB", new Item("b", 2));
+        assertEquals(1, primera.size());
+        assertEquals(2, lista.getItems().size());
+    }
+
+    @Test
+    public void esVigente_detectaVersionesNuevas() {
+        Object v1 = "v1";
+        lista.poner("a", v1, new Item("a", 1));
+        assertTrue(lista.esVigente("a", v1));
+
+        lista.poner("a", "v2", new Item("a", 1));
+        assertFalse(lista.esVigente("a", v1));
+
+        lista.limpiar();
+        assertFalse(lista.esVigente("a", "v2"));
+        assertEquals(Collections.emptyList(), lista.getItems());
+    }
+}
@@ -0,0 +1,146 @@
+package com.mjc.mascotalink.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Replay de un paseo con giros: el paseador toma un fix cada 3s y el dueño recibe un
+ * frame cada 10s. Se compara, cada 100ms, la posición dibujada contra la real.
+ */
+public class MarkerMotionPredictorTest {
+
+    private static final double LAT = -0.1807;
+    private static final double LNG = -78.4678;
+    private static final double M_LAT = 110_540.0;
+    private static final double M_LNG = 111_320.0 * Math.cos(Math.toRadians(LAT));
+
+    private static final long FIX_MS = 3_000;
+    private static final long FRAME_MS = 10_000;
+    private static final long LATENCIA_MS = 600;
+    private static final long PASO_PANTALLA_MS = 100;
+
+    @Test
+    public void replay_prediccionReduceErrorYNoSalta() {
+        // {rumbo, m/s, segundos}: recta, giro, recta, parada, recta
+        double[][] verdad = track(new double[][]{
+                {0, 1.4, 120}, {90, 1.4, 90}, {180, 1.2, 60}, {0, 0, 60}, {270, 1.5, 120}});
+        int duracionMs = (verdad.length - 1) * 1000;
+        Random ruido = new Random(42);
+
+        MarkerMotionPredictor predictor = new MarkerMotionPredictor();
+        double[] saltoUltimo = null; // Comportamiento anterior: ir al último punto recibido
+        double[] fixes = new double[duracionMs / (int) FIX_MS * 3 + 3];
+        int totalFixes = 0;
+        int entregados = 0;
+
+        double errorPrediccion = 0;
+        double errorSalto = 0;
+        double pasoMaxPrediccion = 0;
+        double pasoMaxSalto = 0;
+        double[] anteriorPrediccion = null;
+        double[] anteriorSalto = null;
+        int muestras = 0;
+
+        for (long t = 0; t <= duracionMs; t += PASO_PANTALLA_MS) {
+            if (t % FIX_MS == 0) {
+                double[] real = enMetros(verdad, t);
+                fixes[totalFixes * 3] = real[0] + ruido.nextGaussian() * 4;
+                fixes[totalFixes * 3 + 1] = real[1] + ruido.nextGaussian() * 4;
+                fixes[totalFixes * 3 + 2] = t;
+                totalFixes++;
+            }
+            if (t % FRAME_MS == LATENCIA_MS) {
+                for (; entregados < totalFixes; entregados++) {
+                    double x = fixes[entregados * 3];
+                    double y = fixes[entregados * 3 + 1];
+                    predictor.observar(LAT + y / M_LAT, LNG + x / M_LNG, 4f, (long) fixes[entregados * 3 + 2], t);
+                    saltoUltimo = new double[]{x, y};
+                }
+            }
+            if (!predictor.tienePosicion()) continue;
+
+            double[] ll = predictor.posicion(t);
+            double[] prediccion = {(ll[1] - LNG) * M_LNG, (ll[0] - LAT) * M_LAT};
+            double[] real = enMetros(verdad, t);
+
+            errorPrediccion += distancia(prediccion, real);
+            errorSalto += distancia(saltoUltimo, real);
+            if (anteriorPrediccion != null) {
+                pasoMaxPrediccion = Math.max(pasoMaxPrediccion, distancia(prediccion, anteriorPrediccion));
+                pasoMaxSalto = Math.max(pasoMaxSalto, distancia(saltoUltimo, anteriorSalto));
+            }
+            anteriorPrediccion = prediccion;
+            anteriorSalto = saltoUltimo;
+            muestras++;
+        }
+
+        errorPrediccion /= muestras;
+        errorSalto /= muestras;
+        // Medido: error medio 10.0 m (último punto) vs 6.9 m (predicción);
+        // salto máximo entre cuadros 27.3 m vs 2.2 m
+        assertTrue("predicción " + errorPrediccion + " vs " + errorSalto, errorPrediccion < errorSalto * 0.8);
+        assertTrue("error medio " + errorPrediccion, errorPrediccion < 8.0);
+        assertTrue("paso máximo " + pasoMaxPrediccion, pasoMaxPrediccion < 3.0);
+        assertTrue(pasoMaxSalto > 10.0);
+    }
+
+    @Test
+    public void quieto_noExtrapola() {
+        MarkerMotionPredictor predictor = new MarkerMotionPredictor();
+        for (int i = 0; i < 5; i++) {
+            predictor.observar(LAT, LNG, 4f, i * FIX_MS, i * FIX_MS + LATENCIA_MS);
+        }
+        long ahora = 4 * FIX_MS + LATENCIA_MS + MarkerMotionPredictor.DURACION_CORRECCION_MS;
+        assertArrayEquals(new double[]{LAT, LNG}, predictor.posicion(ahora + 15_000), 1e-7);
+        assertTrue(predictor.isQuieto(ahora));
+    }
+
+    @Test
+    public void extrapolacion_seCortaEnElHorizonte() {
+        MarkerMotionPredictor predictor = new MarkerMotionPredictor();
+        for (int i = 0; i < 10; i++) {
+            predictor.observar(LAT + i * 3 * 1.4 / M_LAT, LNG, 3f, i * FIX_MS, i * FIX_MS);
+        }
+        long ultimo = 9 * FIX_MS;
+        double[] enHorizonte = predictor.posicion(ultimo + MarkerMotionPredictor.MAX_EXTRAPOLACION_MS);
+        double[] despues = predictor.posicion(ultimo + MarkerMotionPredictor.MAX_EXTRAPOLACION_MS + 30_000);
+
+        assertArrayEquals(enHorizonte, despues, 1e-9);
+        assertEquals(1.4 * 20, (enHorizonte[0] - LAT) * M_LAT - 27 * 1.4, 3.0);
+        assertTrue(predictor.isQuieto(ultimo + MarkerMotionPredictor.MAX_EXTRAPOLACION_MS + 1));
+    }
+
+    /** Posiciones reales por segundo en metros {x este, y norte}. */
+    private static double[][] track(double[][] tramos) {
+        int total = 0;
+        for (double[] tramo : tramos) total += (int) tramo[2];
+        double[][] puntos = new double[total + 1][2];
+        int t = 0;
+        for (double[] tramo : tramos) {
+            double rumbo = Math.toRadians(tramo[0]);
+            for (int s = 0; s < (int) tramo[2]; s++, t++) {
+                puntos[t + 1][0] = puntos[t][0] + Math.sin(rumbo) * tramo[1];
+                puntos[t + 1][1] = puntos[t][1] + Math.cos(rumbo) * tramo[1];
+            }
+        }
+        return puntos;
+    }
+
+    private static double[] enMetros(double[][] verdad, long tMs) {
+        int s = (int) (tMs / 1000);
+        double f = (tMs % 1000) / 1000.0;
+        if (s >= verdad.length - 1) return verdad[verdad.length - 1];
+        return new double[]{
+                verdad[s][0] + (verdad[s + 1][0] - verdad[s][0]) * f,
+                verdad[s][1] + (verdad[s + 1][1] - verdad[s][1]) * f};
+    }
+
+    private static double distancia(double[] a, double[] b) {
+        return Math.hypot(a[0] - b[0], a[1] - b[1]);
+    }
+}
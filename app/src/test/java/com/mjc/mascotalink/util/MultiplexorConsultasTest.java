@@ -0,0 +1,178 @@
+package com.mjc.mascotalink.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MultiplexorConsultasTest {
+
+    /** Escucha abierta por el abridor falso. */
+    private static final class Escucha {
+        final String forma;
+        final int limite;
+        final MultiplexorConsultas.Receptor<String> receptor;
+        boolean cerrada;
+
+        Escucha(String forma, int limite, MultiplexorConsultas.Receptor<String> receptor) {
+            this.forma = forma;
+            this.limite = limite;
+            this.receptor = receptor;
+        }
+    }
+
+    /** Receptor que guarda lo recibido. */
+    private static final class Registro implements MultiplexorConsultas.Receptor<String> {
+        final List<List<String>> resultados = new ArrayList<>();
+        final List<Exception> errores = new ArrayList<>();
+
+        @Override
+        public void onResultado(List<String> documentos) {
+            resultados.add(new ArrayList<>(documentos));
+        }
+
+        @Override
+        public void onError(Exception e) {
+            errores.add(e);
+        }
+
+        List<String> ultimo() {
+            return resultados.get(resultados.size() - 1);
+        }
+    }
+
+    private final List<Escucha> escuchas = new ArrayList<>();
+    /** Tareas programadas con su demora, en orden. */
+    private final Map<Runnable, Long> tareas = new LinkedHashMap<>();
+    private MultiplexorConsultas<String, String> multiplexor;
+
+    @Before
+    public void setUp() {
+        MultiplexorConsultas.Programador programador = new MultiplexorConsultas.Programador() {
+            @Override
+            public void programar(Runnable tarea, long demoraMs) {
+                tareas.put(tarea, demoraMs);
+            }
+
+            @Override
+            public void cancelar(Runnable tarea) {
+                tareas.remove(tarea);
+            }
+        };
+        multiplexor = new MultiplexorConsultas<>((forma, limite, receptor) -> {
+            Escucha escucha = new Escucha(forma, limite, receptor);
+            escuchas.add(escucha);
+            return () -> escucha.cerrada = true;
+        }, programador, 10_000);
+    }
+
+    /** Ejecuta las tareas con demora <= {@code hastaMs}. */
+    private void correr(long hastaMs) {
+        for (Runnable tarea : new ArrayList<>(tareas.keySet())) {
+            Long demora = tareas.get(tarea);
+            if (demora != null && demora <= hastaMs) {
+                tareas.remove(tarea);
+                tarea.run();
+            }
+        }
+    }
+
+    private static List<String> docs(int n) {
+        List<String> docs = new ArrayList<>();
+        for (int i = 0; i < n; i++) docs.add("d" + i);
+        return docs;
+    }
+
+    @Test
+    public void mismaForma_compartelaEscuchaYRecortaLimitesMenores() {
+        Registro badge = new Registro();
+        Registro lista = new Registro();
+        multiplexor.suscribir("chats", 50, badge);
+        escuchas.get(0).receptor.onResultado(docs(40));
+
+        multiplexor.suscribir("chats", 30, lista);
+        assertTrue(lista.resultados.isEmpty()); // Nunca dentro de suscribir
+        correr(0);
+
+        assertEquals(1, escuchas.size());
+        assertEquals(1, multiplexor.getEscuchasActivas());
+        assertEquals(30, lista.ultimo().size());
+        assertEquals(40, badge.ultimo().size());
+
+        escuchas.get(0).receptor.onResultado(docs(41));
+        assertEquals(Arrays.asList(2, 2), Arrays.asList(badge.resultados.size(), lista.resultados.size()));
+        assertEquals(30, lista.ultimo().size());
+    }
+
+    @Test
+    public void limiteMayor_reabreLaEscuchaYCierraLaAnterior() {
+        Registro lista = new Registro();
+        Registro badge = new Registro();
+        multiplexor.suscribir("chats", 30, lista);
+        escuchas.get(0).receptor.onResultado(docs(30));
+
+        multiplexor.suscribir("chats", 50, badge);
+        correr(0);
+        assertEquals(2, escuchas.size());
+        assertEquals(50, escuchas.get(1).limite);
+        assertTrue(escuchas.get(0).cerrada);
+        assertTrue(badge.resultados.isEmpty()); // 30 de 30 no dice si hay más
+
+        // La escucha vieja ya no entrega
+        escuchas.get(0).receptor.onResultado(docs(1));
+        assertEquals(1, lista.resultados.size());
+
+        escuchas.get(1).receptor.onResultado(docs(45));
+        assertEquals(Arrays.asList(30, 45), Arrays.asList(lista.ultimo().size(), badge.ultimo().size()));
+    }
+
+    @Test
+    public void ultimoSuscriptor_laEscuchaEsperaAntesDeCerrarse() {
+        Registro primera = new Registro();
+        MultiplexorConsultas<String, String>.Suscripcion s = multiplexor.suscribir("reserva", MultiplexorConsultas.SIN_LIMITE, primera);
+        escuchas.get(0).receptor.onResultado(docs(1));
+        s.cancelar();
+        s.cancelar();
+        assertEquals(1, multiplexor.getEscuchasActivas());
+        assertEquals(0, multiplexor.getSuscriptores());
+
+        // Otra pantalla pide lo mismo antes de que venza la espera
+        Registro segunda = new Registro();
+        multiplexor.suscribir("reserva", 5, segunda).cancelar();
+        correr(10_000);
+        assertEquals(1, escuchas.size());
+        assertTrue(segunda.resultados.isEmpty()); // Canceló antes de la entrega
+
+        assertTrue(escuchas.get(0).cerrada);
+        assertEquals(0, multiplexor.getEscuchasActivas());
+    }
+
+    @Test
+    public void obtener_seCancelaTrasElPrimerResultado() {
+        Registro una = new Registro();
+        multiplexor.obtener("reservas", 10, una);
+        escuchas.get(0).receptor.onResultado(docs(2));
+        escuchas.get(0).receptor.onResultado(docs(3));
+        assertEquals(1, una.resultados.size());
+        assertEquals(0, multiplexor.getSuscriptores());
+    }
+
+    @Test
+    public void error_notificaYLaSiguienteSuscripcionReabre() {
+        Registro registro = new Registro();
+        multiplexor.suscribir("chats", 50, registro);
+        escuchas.get(0).receptor.onError(new IllegalStateException("PERMISSION_DENIED"));
+        assertEquals(1, registro.errores.size());
+        assertEquals(0, multiplexor.getEscuchasActivas());
+
+        multiplexor.suscribir("chats", 50, new Registro());
+        assertEquals(2, escuchas.size());
+    }
+}
@@ -0,0 +1,137 @@
+package com.mjc.mascotalink.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PaginadorKeysetTest {
+
+    private static final int TAMANO = 10;
+
+    /** Pedido pendiente: el test decide cuándo responde, como Firestore. */
+    private static final class Pedido {
+        final Integer cursor;
+        final PaginadorKeyset.Respuesta<String, Integer> respuesta;
+
+        Pedido(Integer cursor, PaginadorKeyset.Respuesta<String, Integer> respuesta) {
+            this.cursor = cursor;
+            this.respuesta = respuesta;
+        }
+    }
+
+    private final List<Pedido> pedidos = new ArrayList<>();
+    private long reloj;
+    private List<String> ultimosItems = new ArrayList<>();
+    private PaginadorKeyset<String, Integer> paginador;
+
+    @Before
+    public void setUp() {
+        paginador = new PaginadorKeyset<>(
+                (cursor, numero, tamano, respuesta) -> pedidos.add(new Pedido(cursor, respuesta)),
+                item -> item, TAMANO, 3, () -> reloj);
+        paginador.setListener(new PaginadorKeyset.Listener<String>() {
+            @Override
+            public void onItems(List<String> items) {
+                ultimosItems = items;
+            }
+
+            @Override
+            public void onError(Exception e) {
+            }
+        });
+    }
+
+    @Test
+    public void cursor_encadenaPaginasYUnaSolaCargaEnCurso() {
+        paginador.reiniciar();
+        paginador.cargarSiguiente();
+        assertEquals(1, pedidos.size());
+        assertNull(pedidos.get(0).cursor);
+
+        responder(0, 0, true);
+        paginador.cargarSiguiente();
+        assertEquals(Integer.valueOf(9), pedidos.get(1).cursor);
+
+        responder(1, 10, false);
+        paginador.cargarSiguiente();
+        assertEquals(2, pedidos.size());
+        assertFalse(paginador.hayMas());
+        assertEquals(20, ultimosItems.size());
+    }
+
+    @Test
+    public void prefetch_seAdelantaConScrollRapido() {
+        paginador.reiniciar();
+        reloj = 400;
+        responder(0, 0, true);
+        assertEquals(400, paginador.getLatenciaEstimadaMs(), 200);
+
+        // Quieto a 6 del final: todavía no
+        paginador.onScroll(0, 3);
+        assertEquals(1, pedidos.size());
+
+        // Scroll rápido (1 item cada 20 ms): con ~500 ms de carga se pide antes
+        for (int i = 1; i <= 2; i++) {
+            reloj += 20;
+            paginador.onScroll(i, 3 + i);
+        }
+        assertEquals(2, pedidos.size());
+    }
+
+    @Test
+    public void reiniciar_ignoraCargasViejasYVentanaSeRecarga() {
+        paginador.reiniciar();
+        Pedido viejo = pedidos.get(0);
+        paginador.reiniciar();
+        viejo.respuesta.entregar(items(100), 109, true);
+        assertTrue(ultimosItems.isEmpty());
+
+        // 4 páginas con ventana de 3: la primera se descarta y vuelve al subir
+        responder(1, 0, true);
+        for (int p = 1; p < 4; p++) {
+            paginador.cargarSiguiente();
+            responder(pedidos.size() - 1, p * TAMANO, true);
+        }
+        assertEquals(30, ultimosItems.size());
+        assertEquals("10", ultimosItems.get(0));
+        assertTrue(paginador.hayAnteriores());
+
+        paginador.onScroll(0, 2);
+        Pedido anterior = pedidos.get(pedidos.size() - 1);
+        assertNull(anterior.cursor);
+        responder(pedidos.size() - 1, 0, true);
+        assertEquals("0", ultimosItems.get(0));
+        assertEquals(30, ultimosItems.size());
+    }
+
+    @Test
+    public void respuestaRepetida_reemplazaPaginaYDescartaDuplicados() {
+        paginador.reiniciar();
+        // Caché sin cursor y después la red con cursor
+        pedidos.get(0).respuesta.entregar(items(0), null, true);
+        pedidos.get(0).respuesta.entregar(items(0), 9, true);
+        assertEquals(TAMANO, ultimosItems.size());
+
+        paginador.cargarSiguiente();
+        List<String> solapada = items(5); // 5..14: la mitad ya está
+        pedidos.get(1).respuesta.entregar(solapada, 14, true);
+        assertEquals(15, ultimosItems.size());
+    }
+
+    private void responder(int pedido, int desde, boolean hayMas) {
+        pedidos.get(pedido).respuesta.entregar(items(desde), desde + TAMANO - 1, hayMas);
+    }
+
+    private static List<String> items(int desde) {
+        List<String> items = new ArrayList<>();
+        for (int i = desde; i < desde + TAMANO; i++) items.add(String.valueOf(i));
+        return items;
+    }
+}
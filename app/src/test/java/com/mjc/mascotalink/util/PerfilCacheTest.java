@@ -0,0 +1,149 @@
+package com.mjc.mascotalink.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PerfilCacheTest {
+
+    /** Lectura pendiente: el test decide cuándo responde, como Firestore. */
+    private static final class Lectura {
+        final String uid;
+        final PerfilCache.Respuesta respuesta;
+
+        Lectura(String uid, PerfilCache.Respuesta respuesta) {
+            this.uid = uid;
+            this.respuesta = respuesta;
+        }
+    }
+
+    private final List<Lectura> lecturas = new ArrayList<>();
+    private final Map<String, String> disco = new HashMap<>();
+    private long reloj = 1_000_000L;
+    private PerfilCache cache;
+
+    @Before
+    public void setUp() {
+        cache = nuevoCache();
+    }
+
+    private PerfilCache nuevoCache() {
+        return new PerfilCache((uid, respuesta) -> lecturas.add(new Lectura(uid, respuesta)),
+                new PerfilCache.Almacen() {
+                    @Override
+                    public String leer(String uid) {
+                        return disco.get(uid);
+                    }
+
+                    @Override
+                    public void guardar(String uid, String valor) {
+                        disco.put(uid, valor);
+                    }
+
+                    @Override
+                    public void borrar(String uid) {
+                        disco.remove(uid);
+                    }
+
+                    @Override
+                    public Map<String, String> todos() {
+                        return new HashMap<>(disco);
+                    }
+                }, () -> reloj);
+    }
+
+    private PerfilCache.Perfil perfil(String uid, String nombre) {
+        return new PerfilCache.Perfil(uid, nombre, "https://foto/" + uid, "PASEADOR", null, true, reloj);
+    }
+
+    @Test
+    public void obtener_pedidosSimultaneosHacenUnaSolaLectura() {
+        List<PerfilCache.Perfil> recibidos = new ArrayList<>();
+        cache.obtener("ana", recibidos::add);
+        cache.obtener("ana", recibidos::add);
+        cache.obtener("ana", recibidos::add);
+
+        assertEquals(1, lecturas.size());
+        lecturas.get(0).respuesta.onPerfil(perfil("ana", "Ana"));
+
+        assertEquals(3, recibidos.size());
+        assertEquals("Ana", recibidos.get(2).nombre);
+
+        // Vigente: sale del caché sin volver al servidor
+        cache.obtener("ana", recibidos::add);
+        assertEquals(1, lecturas.size());
+        assertEquals(4, recibidos.size());
+    }
+
+    @Test
+    public void obtener_persisteEntreInstanciasYUsaElGuardadoSiLaRedFalla() {
+        cache.obtener("ana", p -> { });
+        lecturas.get(0).respuesta.onPerfil(perfil("ana", "Ana"));
+
+        // Otra instancia (proceso nuevo) lee del disco mientras siga vigente
+        PerfilCache otro = nuevoCache();
+        List<PerfilCache.Perfil> recibidos = new ArrayList<>();
+        otro.obtener("ana", recibidos::add);
+        assertEquals(1, lecturas.size());
+        assertEquals("Ana", recibidos.get(0).nombre);
+        assertEquals(Boolean.TRUE, recibidos.get(0).aceptaSolicitudes);
+        assertNull(recibidos.get(0).telefono);
+
+        // Vencido: se vuelve a leer y, si falla, se entrega lo guardado
+        reloj += PerfilCache.VIGENCIA_MS + 1;
+        otro.obtener("ana", recibidos::add);
+        assertEquals(2, lecturas.size());
+        lecturas.get(1).respuesta.onError(new Exception("sin red"));
+        assertEquals(2, recibidos.size());
+        assertEquals("Ana", recibidos.get(1).nombre);
+    }
+
+    @Test
+    public void invalidar_obligaALeerDeNuevo() {
+        cache.obtener("ana", p -> { });
+        lecturas.get(0).respuesta.onPerfil(perfil("ana", "Ana"));
+
+        cache.invalidar("ana");
+        assertNull(cache.getCacheado("ana"));
+        assertTrue(disco.isEmpty());
+
+        List<PerfilCache.Perfil> recibidos = new ArrayList<>();
+        cache.obtener("ana", recibidos::add);
+        assertEquals(2, lecturas.size());
+        lecturas.get(1).respuesta.onPerfil(perfil("ana", "Ana María"));
+        assertNotNull(cache.getCacheado("ana"));
+        assertEquals("Ana María", recibidos.get(0).nombre);
+    }
+
+    @Test
+    public void obtenerVarios_usaElCacheYEsperaLasLecturasEnCurso() {
+        cache.obtener("ana", p -> { });
+        lecturas.get(0).respuesta.onPerfil(perfil("ana", "Ana"));
+        cache.obtener("luis", p -> { });
+
+        List<Map<String, PerfilCache.Perfil>> recibidos = new ArrayList<>();
+        cache.obtenerVarios(Arrays.asList("ana", "luis", "eva", "eva", "nadie"), recibidos::add);
+
+        // "ana" sale del caché y "luis" ya se estaba leyendo: solo se piden "eva" y "nadie"
+        assertEquals(4, lecturas.size());
+        lecturas.get(2).respuesta.onPerfil(perfil("eva", "Eva"));
+        lecturas.get(3).respuesta.onPerfil(null);
+        assertTrue(recibidos.isEmpty());
+
+        lecturas.get(1).respuesta.onPerfil(perfil("luis", "Luis"));
+        assertEquals(1, recibidos.size());
+        assertEquals(3, recibidos.get(0).size());
+        assertEquals("Eva", recibidos.get(0).get("eva").nombre);
+        assertNull(recibidos.get(0).get("nadie"));
+    }
+}
@@ -0,0 +1,121 @@
+package com.mjc.mascotalink.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ResolvedorReferenciasTest {
+
+    /** Consulta pendiente: el test decide cuándo responde, como Firestore. */
+    private static final class Consulta {
+        final String coleccion;
+        final List<String> ids;
+        final ResolvedorReferencias.Respuesta<String> respuesta;
+
+        Consulta(String coleccion, List<String> ids, ResolvedorReferencias.Respuesta<String> respuesta) {
+            this.coleccion = coleccion;
+            this.ids = ids;
+            this.respuesta = respuesta;
+        }
+
+        /** Responde con todos los ids existentes salvo {@code faltantes}. */
+        void responder(String... faltantes) {
+            Map<String, String> docs = new HashMap<>();
+            for (String id : ids) {
+                if (!Arrays.asList(faltantes).contains(id)) docs.put(id, coleccion + ":" + id);
+            }
+            respuesta.onExito(docs);
+        }
+    }
+
+    private final List<Consulta> consultas = new ArrayList<>();
+    private ResolvedorReferencias<String> resolvedor;
+
+    @Before
+    public void setUp() {
+        resolvedor = new ResolvedorReferencias<>(
+                (coleccion, ids, respuesta) -> consultas.add(new Consulta(coleccion, ids, respuesta)));
+    }
+
+    @Test
+    public void resolver_veintePaseosDeTresDuenosHacenUnaConsulta() {
+        List<String> rutas = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            rutas.add("usuarios/dueno" + (i % 3));
+        }
+        List<Map<String, String>> entregas = new ArrayList<>();
+        resolvedor.resolver(rutas, entregas::add);
+
+        assertEquals(1, consultas.size());
+        assertEquals("usuarios", consultas.get(0).coleccion);
+        assertEquals(3, consultas.get(0).ids.size());
+        consultas.get(0).responder();
+
+        assertEquals(1, entregas.size());
+        assertEquals("usuarios:dueno2", entregas.get(0).get("usuarios/dueno2"));
+
+        // El snapshot siguiente con un dueño nuevo solo lee ese
+        resolvedor.resolver(Arrays.asList("usuarios/dueno0", "usuarios/dueno3"), entregas::add);
+        assertEquals(2, consultas.size());
+        assertEquals(Collections.singletonList("dueno3"), consultas.get(1).ids);
+    }
+
+    @Test
+    public void resolver_agrupaPorColeccionYPartePorLimite() {
+        List<String> rutas = new ArrayList<>();
+        for (int i = 0; i < ResolvedorReferencias.MAX_IDS_POR_CONSULTA + 5; i++) {
+            rutas.add("usuarios/u" + i);
+        }
+        rutas.add("duenos/d1/mascotas/m1");
+        rutas.add("duenos/d2/mascotas/m2");
+        List<Map<String, String>> entregas = new ArrayList<>();
+        resolvedor.resolver(rutas, entregas::add);
+
+        assertEquals(4, consultas.size());
+        assertEquals(ResolvedorReferencias.MAX_IDS_POR_CONSULTA, consultas.get(0).ids.size());
+        assertEquals(5, consultas.get(1).ids.size());
+        assertEquals("duenos/d1/mascotas", consultas.get(2).coleccion);
+
+        // Entrega una sola vez, cuando terminan todos los lotes
+        for (int i = 0; i < 3; i++) consultas.get(i).responder();
+        assertTrue(entregas.isEmpty());
+        consultas.get(3).responder("m2");
+        assertEquals(1, entregas.size());
+        assertEquals(rutas.size() - 1, entregas.get(0).size());
+
+        // Lo que no existe también se recuerda
+        resolvedor.resolver(Collections.singletonList("duenos/d2/mascotas/m2"), entregas::add);
+        assertEquals(4, consultas.size());
+        assertNull(entregas.get(1).get("duenos/d2/mascotas/m2"));
+    }
+
+    @Test
+    public void resolver_pedidosSimultaneosCompartenLaConsultaYLosErroresNoSeRecuerdan() {
+        List<Map<String, String>> primero = new ArrayList<>();
+        List<Map<String, String>> segundo = new ArrayList<>();
+        resolvedor.resolver(Collections.singletonList("usuarios/ana"), primero::add);
+        resolvedor.resolver(Arrays.asList("usuarios/ana", "usuarios/beto"), segundo::add);
+        assertEquals(2, consultas.size());
+        assertEquals(Collections.singletonList("beto"), consultas.get(1).ids);
+
+        consultas.get(0).respuesta.onError(new Exception("sin red"));
+        assertEquals(1, primero.size());
+        assertTrue(primero.get(0).isEmpty());
+        assertTrue(segundo.isEmpty());
+        consultas.get(1).responder();
+        assertEquals(1, segundo.get(0).size());
+
+        resolvedor.resolver(Collections.singletonList("usuarios/ana"), primero::add);
+        assertEquals(3, consultas.size());
+    }
+}
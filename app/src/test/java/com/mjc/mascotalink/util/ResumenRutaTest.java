@@ -0,0 +1,110 @@
+package com.mjc.mascotalink.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ResumenRutaTest {
+
+    private static final double LAT = -0.1807;
+    private static final double LNG = -78.4678;
+    private static final double GRADOS_POR_METRO = 1 / 111_195.0;
+
+    @Test
+    public void calcular_distanciaDuracionYBbox() {
+        // 100 m al norte a 1 m/s, luego 60 s quieto
+        TrackBuffer ruta = TrackBuffer.growable(16);
+        for (int i = 0; i <= 10; i++) {
+            ruta.add(LAT + i * 10 * GRADOS_POR_METRO, LNG, 5f, 1f, 1_000_000L + i * 10_000L);
+        }
+        for (int i = 1; i <= 6; i++) {
+            ruta.add(LAT + 100 * GRADOS_POR_METRO, LNG, 5f, 0f, 1_100_000L + i * 10_000L);
+        }
+
+        ResumenRuta resumen = ResumenRuta.calcular(ruta, 0);
+
+        assertEquals(100.0, resumen.getDistanciaMetros(), 0.5);
+        assertEquals(160_000L, resumen.getDuracionMs());
+        assertEquals(100_000L, resumen.getEnMovimientoMs());
+        assertEquals(LAT, resumen.getMinLat(), 1e-9);
+        assertEquals(LAT + 100 * GRADOS_POR_METRO, resumen.getMaxLat(), 1e-9);
+        assertEquals(17, resumen.getPuntos());
+        // La polilínea simplificada solo conserva los extremos de la recta
+        assertEquals(2, resumen.decodificarPolilinea().size());
+    }
+
+    @Test
+    public void calcular_prefiereDistanciaMedidaPorElServicio() {
+        TrackBuffer ruta = TrackBuffer.growable(4);
+        ruta.add(LAT, LNG, 5f, 1f, 1000L);
+        ruta.add(LAT + 50 * GRADOS_POR_METRO, LNG, 5f, 1f, 51_000L);
+
+        assertEquals(63.0, ResumenRuta.calcular(ruta, 63.0).getDistanciaMetros(), 1e-9);
+        assertEquals(0.0, ResumenRuta.calcular(new TrackBuffer(1), 0).getDistanciaMetros(), 1e-9);
+    }
+
+    @Test
+    public void polilinea_idaYVuelta() {
+        TrackBuffer ruta = TrackBuffer.growable(4);
+        ruta.add(38.5, -120.2, 0f, 0f, 0L);
+        ruta.add(40.7, -120.95, 0f, 0f, 0L);
+        ruta.add(43.252, -126.453, 0f, 0f, 0L);
+
+        // Ejemplo de la documentación del formato
+        String codificada = ResumenRuta.codificarPolilinea(ruta);
+        assertEquals("_p~iF~ps|U_ulLnnqC_mqNvxq`@", codificada);
+
+        TrackBuffer decodificada = ResumenRuta.decodificarPolilinea(codificada);
+        assertEquals(3, decodificada.size());
+        assertEquals(43.252, decodificada.getLat(2), 1e-9);
+        assertEquals(-126.453, decodificada.getLng(2), 1e-9);
+    }
+
+    @Test
+    public void serializar_idaYVuelta() {
+        TrackBuffer ruta = TrackBuffer.growable(8);
+        for (int i = 0; i < 8; i++) {
+            ruta.add(LAT + i * 7 * GRADOS_POR_METRO, LNG + Math.sin(i) * 30 * GRADOS_POR_METRO, 5f, 1f, i * 5000L + 1L);
+        }
+        ResumenRuta original = ResumenRuta.calcular(ruta, 0);
+
+        ResumenRuta copia = ResumenRuta.deserializar(original.serializar());
+        assertNotNull(copia);
+        assertEquals(original.getDistanciaMetros(), copia.getDistanciaMetros(), 0.05);
+        assertEquals(original.getEnMovimientoMs(), copia.getEnMovimientoMs());
+        assertEquals(original.getPolilinea(), copia.getPolilinea());
+
+        ResumenRuta desdeMapa = ResumenRuta.fromMap(original.toMap());
+        assertNotNull(desdeMapa);
+        assertEquals(original.getPuntos(), desdeMapa.getPuntos());
+        assertEquals(original.getMaxLng(), desdeMapa.getMaxLng(), 1e-12);
+    }
+
+    @Test
+    public void provisional_sobreviveAlMapaPeroNoAlDefinitivo() {
+        TrackBuffer ruta = TrackBuffer.growable(2);
+        ruta.add(LAT, LNG, 5f, 1f, 1L);
+        ruta.add(LAT + 10 * GRADOS_POR_METRO, LNG, 5f, 1f, 10_001L);
+        ResumenRuta definitivo = ResumenRuta.calcular(ruta, 0);
+        assertFalse(definitivo.isProvisional());
+
+        ResumenRuta provisional = ResumenRuta.fromMap(definitivo.comoProvisional().toMap());
+        assertNotNull(provisional);
+        assertTrue(provisional.isProvisional());
+        assertEquals(definitivo.getPolilinea(), provisional.getPolilinea());
+        assertFalse(ResumenRuta.fromMap(definitivo.toMap()).isProvisional());
+    }
+
+    @Test
+    public void deserializar_textoInvalidoDevuelveNull() {
+        assertNull(ResumenRuta.deserializar(null));
+        assertNull(ResumenRuta.deserializar("9|1|2"));
+        assertNull(ResumenRuta.deserializar("1|x|0|0|0|0|0|0|0|"));
+        assertNull(ResumenRuta.fromMap("no es un mapa"));
+        assertTrue(ResumenRuta.deserializar("1|0.0|0|0|0|0|0|0|0|").getPolilinea().isEmpty());
+    }
+}
@@ -0,0 +1,119 @@
+package com.mjc.mascotalink.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RutaPaseoParserTest {
+
+    @Test
+    public void parsearNuevos_soloDevuelveLoAgregado() {
+        List<Object> chunks = new ArrayList<>();
+        chunks.add(chunk(1000, 0, 5));
+        RutaPaseoParser.Cursor cursor = new RutaPaseoParser.Cursor();
+
+        assertEquals(5, RutaPaseoParser.parsearNuevos(null, chunks, cursor).size());
+        assertFalse(cursor.isReiniciado());
+
+        chunks.add(chunk(1005, 5, 3));
+        TrackBuffer nuevos = RutaPaseoParser.parsearNuevos(null, chunks, cursor);
+        assertEquals(3, nuevos.size());
+        assertEquals(5000L, nuevos.getTime(0));
+        assertEquals(8, cursor.getPuntos());
+
+        // Sin cambios: nada nuevo
+        assertEquals(0, RutaPaseoParser.parsearNuevos(null, chunks, cursor).size());
+    }
+
+    @Test
+    public void parsearNuevos_descartaSeqReenviados() {
+        List<Object> chunks = new ArrayList<>();
+        chunks.add(chunk(1000, 0, 5));
+        RutaPaseoParser.Cursor cursor = new RutaPaseoParser.Cursor();
+        RutaPaseoParser.parsearNuevos(null, chunks, cursor);
+
+        // Reintento que reenvió los seq 1003-1004 junto con dos nuevos
+        chunks.add(chunk(1003, 3, 4));
+        assertEquals(2, RutaPaseoParser.parsearNuevos(null, chunks, cursor).size());
+        assertEquals(RutaPaseoParser.parsear(null, chunks).size(), cursor.getPuntos());
+    }
+
+    @Test
+    public void parsearNuevos_reiniciaSiElArraySeAchica() {
+        List<Object> legacy = new ArrayList<>();
+        legacy.add(puntoLegacy(1));
+        legacy.add(puntoLegacy(2));
+        RutaPaseoParser.Cursor cursor = new RutaPaseoParser.Cursor();
+        RutaPaseoParser.parsearNuevos(legacy, null, cursor);
+
+        legacy.remove(1);
+        TrackBuffer nuevos = RutaPaseoParser.parsearNuevos(legacy, null, cursor);
+        assertTrue(cursor.isReiniciado());
+        assertEquals(1, nuevos.size());
+        assertEquals(1, cursor.getPuntos());
+    }
+
+    @Test
+    public void parsearNuevos_legacyAdelantadoEsperaAQueLleguenLosChunks() {
+        List<Object> legacy = new ArrayList<>();
+        List<Object> chunks = new ArrayList<>();
+        chunks.add(chunk(1000, 1, 4)); // t = 1s..4s
+        legacy.add(puntoLegacy(2));
+        legacy.add(puntoLegacy(6)); // El servidor va por delante de los chunks
+        RutaPaseoParser.Cursor cursor = new RutaPaseoParser.Cursor();
+
+        TrackBuffer primera = RutaPaseoParser.parsearNuevos(legacy, chunks, cursor);
+        assertEquals(5, primera.size());
+        assertEquals(4000L, primera.getTime(4));
+
+        chunks.add(chunk(1004, 5, 3)); // t = 5s..7s
+        legacy.add(puntoLegacy(9));
+        TrackBuffer segunda = RutaPaseoParser.parsearNuevos(legacy, chunks, cursor);
+        assertFalse(cursor.isReiniciado());
+        assertEquals(4, segunda.size());
+        assertEquals(5000L, segunda.getTime(0));
+        assertEquals(6000L, segunda.getTime(1));
+        assertEquals(7000L, segunda.getTime(3));
+    }
+
+    @Test
+    public void parsearNuevos_chunkAnteriorALoDibujadoReiniciaOrdenado() {
+        List<Object> legacy = new ArrayList<>();
+        legacy.add(puntoLegacy(3));
+        RutaPaseoParser.Cursor cursor = new RutaPaseoParser.Cursor();
+        assertEquals(1, RutaPaseoParser.parsearNuevos(legacy, null, cursor).size());
+
+        // Primer chunk del paseo, con puntos anteriores al legacy ya dibujado
+        List<Object> chunks = new ArrayList<>();
+        chunks.add(chunk(1000, 1, 4));
+        TrackBuffer nuevos = RutaPaseoParser.parsearNuevos(legacy, chunks, cursor);
+        assertTrue(cursor.isReiniciado());
+        assertEquals(5, nuevos.size());
+        for (int i = 1; i < nuevos.size(); i++) {
+            assertTrue(nuevos.getTime(i - 1) <= nuevos.getTime(i));
+        }
+    }
+
+    private static byte[] chunk(long primerSeq, int desde, int cantidad) {
+        TrackBuffer buffer = new TrackBuffer(cantidad);
+        for (int i = desde; i < desde + cantidad; i++) {
+            buffer.add(-0.18 + i * 0.0001, -78.46, 5f, 1f, i * 1000L);
+        }
+        return TrackChunkCodec.encode(buffer, 0, cantidad, primerSeq);
+    }
+
+    private static Map<String, Object> puntoLegacy(int i) {
+        Map<String, Object> punto = new HashMap<>();
+        punto.put("lat", -0.18 + i * 0.0001);
+        punto.put("lng", -78.46);
+        punto.put("ts", i * 1000L);
+        return punto;
+    }
+}
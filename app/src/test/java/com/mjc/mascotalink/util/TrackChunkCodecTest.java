@@ -0,0 +1,89 @@
+package com.mjc.mascotalink.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TrackChunkCodecTest {
+
+    @Test
+    public void encodeDecode_roundTripConservaPrecisiones() {
+        TrackBuffer origen = new TrackBuffer(8);
+        origen.add(-0.180653, -78.467834, 12.34f, 1.256f, 1700000000000L);
+        origen.add(-0.180701, -78.467790, 8.0f, 1.4f, 1700000008000L);
+        origen.add(-0.180755, -78.467701, 25.5f, 0f, 1700000016500L);
+
+        byte[] chunk = TrackChunkCodec.encode(origen, 0, origen.size());
+        TrackBuffer destino = TrackBuffer.growable(4);
+        int leidos = TrackChunkCodec.decode(chunk, destino);
+
+        assertEquals(3, leidos);
+        for (int i = 0; i < origen.size(); i++) {
+            assertEquals(origen.getLat(i), destino.getLat(i), 1e-6);
+            assertEquals(origen.getLng(i), destino.getLng(i), 1e-6);
+            assertEquals(origen.getAccuracy(i), destino.getAccuracy(i), 0.05f);
+            assertEquals(origen.getSpeed(i), destino.getSpeed(i), 0.005f);
+            assertEquals(origen.getTime(i), destino.getTime(i));
+        }
+    }
+
+    @Test
+    public void encode_ocupaMuchoMenosQueElFormatoMap() {
+        TrackBuffer origen = new TrackBuffer(64);
+        for (int i = 0; i < 50; i++) {
+            origen.add(-0.18 + i * 0.00005, -78.46 + i * 0.00004, 10f, 1.3f, 1700000000000L + i * 8000L);
+        }
+
+        byte[] chunk = TrackChunkCodec.encode(origen, 0, origen.size());
+
+        // Puntos de paseo típicos: deltas pequeños => ~10 bytes por punto
+        assertTrue("Tamaño inesperado: " + chunk.length, chunk.length < 50 * 12);
+        assertEquals(50, TrackChunkCodec.pointCount(chunk));
+    }
+
+    @Test
+    public void pointCount_chunkInvalidoDevuelveCero() {
+        assertEquals(0, TrackChunkCodec.pointCount(new byte[0]));
+        assertEquals(0, TrackChunkCodec.pointCount(new byte[]{99, 1}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_chunkTruncadoLanzaExcepcion() {
+        TrackBuffer origen = new TrackBuffer(4);
+        origen.add(1.0, 2.0, 3f, 0f, 1000L);
+        origen.add(1.1, 2.1, 3f, 0f, 2000L);
+        byte[] chunk = TrackChunkCodec.encode(origen, 0, 2);
+        byte[] truncado = new byte[chunk.length - 3];
+        System.arraycopy(chunk, 0, truncado, 0, truncado.length);
+
+        TrackChunkCodec.decode(truncado, TrackBuffer.growable(4));
+    }
+
+    @Test
+    public void trackBuffer_anilloDescartaElMasAntiguo() {
+        TrackBuffer anillo = new TrackBuffer(2);
+        assertFalse(anillo.add(1, 1, 0, 0, 1));
+        assertFalse(anillo.add(2, 2, 0, 0, 2));
+        assertTrue(anillo.add(3, 3, 0, 0, 3));
+
+        assertEquals(2, anillo.size());
+        assertEquals(2.0, anillo.getLat(0), 0);
+        assertEquals(3.0, anillo.getLat(1), 0);
+    }
+
+    @Test
+    public void trackBuffer_sortByTimeOrdenaRutasMezcladas() {
+        TrackBuffer ruta = TrackBuffer.growable(4);
+        ruta.add(1, 1, 0, 0, 3000);
+        ruta.add(2, 2, 0, 0, 1000);
+        ruta.add(3, 3, 0, 0, 2000);
+
+        ruta.sortByTime();
+
+        assertEquals(1000, ruta.getTime(0));
+        assertEquals(2.0, ruta.getLat(0), 0);
+        assertEquals(3000, ruta.getTime(2));
+    }
+}
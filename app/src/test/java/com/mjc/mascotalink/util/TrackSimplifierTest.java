@@ -0,0 +1,95 @@
+package com.mjc.mascotalink.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TrackSimplifierTest {
+
+    private static final double LAT = -0.1807;
+    private static final double LNG = -78.4678;
+    private static final double GRADOS_POR_METRO = 1 / 111_320.0;
+
+    private TrackBuffer emitidos;
+    private TrackSimplifier simplifier;
+
+    @Before
+    public void setUp() {
+        emitidos = TrackBuffer.growable(16);
+        simplifier = new TrackSimplifier(4f, 15, (lat, lng, acc, speed, t) -> emitidos.add(lat, lng, acc, speed, t));
+    }
+
+    @Test
+    public void recta_soloEmiteExtremosYCortesDeVentana() {
+        for (int i = 0; i < 30; i++) {
+            simplifier.agregar(LAT + i * 5 * GRADOS_POR_METRO, LNG, 5f, 1.3f, i * 1000L);
+        }
+        simplifier.flush();
+
+        // Primer punto + corte por ventana llena (15) + último
+        assertEquals(3, emitidos.size());
+        assertEquals(0L, emitidos.getTime(0));
+        assertEquals(29000L, emitidos.getTime(emitidos.size() - 1));
+        assertEquals(30, simplifier.getPuntosRecibidos());
+        assertEquals(10.0, simplifier.getRatio(), 0.001);
+    }
+
+    @Test
+    public void giro_conservaEsquina() {
+        // 10 puntos al norte y luego 10 al este: la esquina debe sobrevivir
+        for (int i = 0; i <= 10; i++) {
+            simplifier.agregar(LAT + i * 5 * GRADOS_POR_METRO, LNG, 5f, 1.3f, i * 1000L);
+        }
+        for (int i = 1; i <= 10; i++) {
+            simplifier.agregar(LAT + 50 * GRADOS_POR_METRO, LNG + i * 5 * GRADOS_POR_METRO, 5f, 1.3f, (10 + i) * 1000L);
+        }
+        simplifier.flush();
+
+        assertEquals(3, emitidos.size());
+        assertEquals(10000L, emitidos.getTime(1));
+    }
+
+    @Test
+    public void errorMaximo_respetaTolerancia() {
+        // Zigzag suave: todos los puntos crudos quedan a <= 4m de la ruta emitida
+        double[] lat = new double[60];
+        double[] lng = new double[60];
+        for (int i = 0; i < 60; i++) {
+            lat[i] = LAT + i * 3 * GRADOS_POR_METRO;
+            lng[i] = LNG + Math.sin(i / 4.0) * 12 * GRADOS_POR_METRO;
+            simplifier.agregar(lat[i], lng[i], 5f, 1f, i * 1000L);
+        }
+        simplifier.flush();
+
+        assertTrue(emitidos.size() < 60);
+        int seg = 0;
+        for (int i = 0; i < 60; i++) {
+            while (seg < emitidos.size() - 2 && emitidos.getTime(seg + 1) < i * 1000L) seg++;
+            double d = distanciaASegmento(lat[i], lng[i], emitidos.getLat(seg), emitidos.getLng(seg),
+                    emitidos.getLat(seg + 1), emitidos.getLng(seg + 1));
+            assertTrue("punto " + i + " a " + d + "m", d <= 4.0 + 1e-6);
+        }
+    }
+
+    @Test
+    public void flush_sinPendientesNoEmite() {
+        simplifier.agregar(LAT, LNG, 5f, 0f, 0L);
+        simplifier.flush();
+        simplifier.flush();
+        assertEquals(1, emitidos.size());
+        assertEquals(0, simplifier.getPendientes());
+    }
+
+    private static double distanciaASegmento(double lat, double lng, double lat1, double lng1, double lat2, double lng2) {
+        double escala = 1 / GRADOS_POR_METRO;
+        double px = (lng - lng1) * escala * Math.cos(Math.toRadians(lat1));
+        double py = (lat - lat1) * escala;
+        double bx = (lng2 - lng1) * escala * Math.cos(Math.toRadians(lat1));
+        double by = (lat2 - lat1) * escala;
+        double largo2 = bx * bx + by * by;
+        double t = largo2 == 0 ? 0 : Math.max(0, Math.min(1, (px * bx + py * by) / largo2));
+        return Math.hypot(px - t * bx, py - t * by);
+    }
+}
@@ -10,7 +10,7 @@ const { debugNotifyReady, debugNotifyOverdue, debugNotifyDelayed, debugNotifyRem
 // Triggers
 const { onUsuarioWrite, onPaseadorWrite, notifyNearbyWalkerAvailable } = require('./src/triggers/users');
 const { validatePaymentOnCreate, onPaymentConfirmed } = require('./src/triggers/payments');
-const { sendChatNotification } = require('./src/triggers/chats');
+const { sendChatNotification, syncUnreadCounters } = require('./src/triggers/chats');
 const { 
   onNewReservation, 
   onReservationAccepted, 
@@ -57,6 +57,7 @@ exports.notifyNearbyWalkerAvailable = notifyNearbyWalkerAvailable;
 exports.validatePaymentOnCreate = validatePaymentOnCreate;
 exports.onPaymentConfirmed = onPaymentConfirmed;
 exports.sendChatNotification = sendChatNotification;
+exports.syncUnreadCounters = syncUnreadCounters;
 exports.onNewReservation = onNewReservation;
 exports.onReservationAccepted = onReservationAccepted;
 exports.onWalkStarted = onWalkStarted;
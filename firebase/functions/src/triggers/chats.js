@@ -1,5 +1,5 @@
-const { onDocumentCreated } = require("firebase-functions/v2/firestore");
-const { db, admin } = require('../config/firebase');
+const { onDocumentCreated, onDocumentWritten } = require("firebase-functions/v2/firestore");
+const { db, admin, FieldValue } = require('../config/firebase');
 
 /**
  * Notifica al destinatario cuando llega un nuevo mensaje.
@@ -89,3 +89,78 @@ exports.sendChatNotification = onDocumentCreated("chats/{chatId}/mensajes/{mensa
   }
   return null;
 });
+
+/**
+ * Mantiene el documento de no leídos de cada usuario (usuarios/{uid}/contadores/no_leidos)
+ * a partir de mensajes_no_leidos de los chats, sin importar quién lo cambió (app, socket o
+ * respuesta desde la notificación). La app escucha ese único documento para el badge en vez
+ * de sumar los chats.
+ *
+ * Guarda el valor absoluto de cada chat (no un incremento), así un evento repetido no
+ * descuadra el total; uno atrasado se descarta por la marca de tiempo del evento.
+ *
+ * La primera vez (documento inexistente o sin "completo") se siembra con los no leídos de
+ * todos los chats del usuario; hasta entonces la app sigue sumando los chats ella misma.
+ */
+exports.syncUnreadCounters = onDocumentWritten("chats/{chatId}", async (event) => {
+  const { chatId } = event.params;
+  const before = event.data?.before;
+  const after = event.data?.after;
+  const antes = before?.exists ? (before.get("mensajes_no_leidos") || {}) : {};
+  const despues = after?.exists ? (after.get("mensajes_no_leidos") || {}) : {};
+
+  const cambios = [...new Set([...Object.keys(antes), ...Object.keys(despues)])]
+    .filter((uid) => (Number(antes[uid]) || 0) !== (Number(despues[uid]) || 0));
+  if (cambios.length === 0) return null;
+
+  const marca = Date.parse(event.time) || Date.now();
+  await Promise.all(cambios.map((uid) =>
+    actualizarContador(uid, chatId, Math.max(0, Number(despues[uid]) || 0), marca)
+      .catch((err) => console.error(`syncUnreadCounters: error actualizando ${uid}`, err))
+  ));
+  return null;
+});
+
+async function actualizarContador(uid, chatId, noLeidos, marca) {
+  const ref = db.collection("usuarios").doc(uid).collection("contadores").doc("no_leidos");
+  await db.runTransaction(async (tx) => {
+    const snap = await tx.get(ref);
+    const completo = snap.exists && snap.get("completo") === true;
+    const porChat = { ...(completo ? snap.get("por_chat") || {} : {}) };
+    const marcas = { ...(completo ? snap.get("marcas") || {} : {}) };
+    if (!completo) {
+      // Estado actual de todos sus chats: lo anterior a esta lectura ya está incluido
+      const chats = await tx.get(db.collection("chats").where("participantes", "array-contains", uid));
+      const ahora = Math.max(marca, Date.now());
+      chats.forEach((chat) => {
+        const n = Number((chat.get("mensajes_no_leidos") || {})[uid]) || 0;
+        if (n > 0) porChat[chat.id] = n;
+        marcas[chat.id] = ahora;
+      });
+    }
+    if ((marcas[chatId] || 0) > marca) {
+      // Ya se aplicó un cambio más nuevo (o la siembra ya lo incluye)
+      if (!completo) tx.set(ref, resumenContador(porChat, marcas));
+      return;
+    }
+
+    if (noLeidos > 0) {
+      porChat[chatId] = noLeidos;
+    } else {
+      delete porChat[chatId];
+    }
+    marcas[chatId] = marca;
+    tx.set(ref, resumenContador(porChat, marcas));
+  });
+}
+
+function resumenContador(porChat, marcas) {
+  const total = Object.values(porChat).reduce((suma, n) => suma + (Number(n) || 0), 0);
+  return {
+    por_chat: porChat,
+    marcas,
+    total,
+    completo: true,
+    actualizado: FieldValue.serverTimestamp(),
+  };
+}
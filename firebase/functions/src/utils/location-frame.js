@@ -0,0 +1,118 @@
+/**
+ * Frames binarios de ubicación (evento 'location_frame')
+ *
+ * Lo usan los dos servidores WebSocket: el de Functions (websocket.js) y el de desarrollo
+ * en la raíz (websocket-server.js), que lo requiere desde aquí.
+ *
+ * Mismo formato que TrackChunkCodec v2 en la app:
+ *   [version:u8 = 2][count:varint][primerSeq:varint]
+ *   punto 0:  latE6, lngE6 (zigzag varint), tiempoMs (varint), accDm, speedCms (varint)
+ *   punto i:  ΔlatE6, ΔlngE6, ΔtiempoMs (zigzag varint), accDm, speedCms (varint)
+ *
+ * Se usa aritmética de Number (no operadores de bits) porque los timestamps en ms
+ * superan 32 bits; todos los valores caben en 2^53.
+ */
+
+const VERSION_CON_SEQ = 2;
+const COORD_SCALE = 1e6;
+const ACC_SCALE = 10;
+const SPEED_SCALE = 100;
+const MAX_PUNTOS_POR_FRAME = 256;
+
+function zigZag(v) {
+  return v >= 0 ? v * 2 : -v * 2 - 1;
+}
+
+function unZigZag(v) {
+  return v % 2 === 0 ? v / 2 : -(v + 1) / 2;
+}
+
+function writeVarint(out, v) {
+  while (v >= 0x80) {
+    out.push((v % 0x80) + 0x80);
+    v = Math.floor(v / 0x80);
+  }
+  out.push(v);
+}
+
+function readVarint(buf, state) {
+  let result = 0;
+  let mult = 1;
+  for (let i = 0; i < 8; i++) {
+    if (state.pos >= buf.length) throw new Error('Frame truncado');
+    const b = buf[state.pos++];
+    result += (b & 0x7f) * mult;
+    if ((b & 0x80) === 0) return result;
+    mult *= 0x80;
+  }
+  throw new Error('Varint demasiado largo');
+}
+
+/**
+ * @param {Buffer|Uint8Array} buf
+ * @return {{seq: number, points: Array<{lat: number, lng: number, ts: number, acc: number, speed: number}>}}
+ */
+function decodeFrame(buf) {
+  if (!buf || buf.length === 0) throw new Error('Frame vacío');
+  const state = { pos: 0 };
+  const version = buf[state.pos++];
+  if (version !== VERSION_CON_SEQ) throw new Error('Versión de frame no soportada: ' + version);
+
+  const count = readVarint(buf, state);
+  if (count > MAX_PUNTOS_POR_FRAME) throw new Error('Demasiados puntos en frame: ' + count);
+  const seq = readVarint(buf, state);
+
+  const points = [];
+  let lat = 0;
+  let lng = 0;
+  let ts = 0;
+  for (let i = 0; i < count; i++) {
+    if (i === 0) {
+      lat = unZigZag(readVarint(buf, state));
+      lng = unZigZag(readVarint(buf, state));
+      ts = readVarint(buf, state);
+    } else {
+      lat += unZigZag(readVarint(buf, state));
+      lng += unZigZag(readVarint(buf, state));
+      ts += unZigZag(readVarint(buf, state));
+    }
+    const acc = readVarint(buf, state) / ACC_SCALE;
+    const speed = readVarint(buf, state) / SPEED_SCALE;
+    points.push({ lat: lat / COORD_SCALE, lng: lng / COORD_SCALE, ts, acc, speed });
+  }
+  return { seq, points };
+}
+
+/**
+ * Inverso de decodeFrame (lo usan las pruebas y herramientas de diagnóstico)
+ */
+function encodeFrame(points, seq) {
+  const out = [VERSION_CON_SEQ];
+  writeVarint(out, points.length);
+  writeVarint(out, seq);
+
+  let prevLat = 0;
+  let prevLng = 0;
+  let prevTs = 0;
+  points.forEach((p, i) => {
+    const latE6 = Math.round(p.lat * COORD_SCALE);
+    const lngE6 = Math.round(p.lng * COORD_SCALE);
+    if (i === 0) {
+      writeVarint(out, zigZag(latE6));
+      writeVarint(out, zigZag(lngE6));
+      writeVarint(out, Math.max(0, p.ts));
+    } else {
+      writeVarint(out, zigZag(latE6 - prevLat));
+      writeVarint(out, zigZag(lngE6 - prevLng));
+      writeVarint(out, zigZag(p.ts - prevTs));
+    }
+    writeVarint(out, Math.max(0, Math.round((p.acc || 0) * ACC_SCALE)));
+    writeVarint(out, Math.max(0, Math.round((p.speed || 0) * SPEED_SCALE)));
+    prevLat = latE6;
+    prevLng = lngE6;
+    prevTs = p.ts;
+  });
+  return Buffer.from(out);
+}
+
+module.exports = { decodeFrame, encodeFrame, MAX_PUNTOS_POR_FRAME };
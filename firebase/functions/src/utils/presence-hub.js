@@ -0,0 +1,152 @@
+/**
+ * Presencia por interés (eventos 'subscribe_presence' / 'presence_batch')
+ *
+ * - Solo reciben cambios los sockets que se suscribieron a ese usuario; no hay broadcast.
+ * - Una desconexión espera graciaMs antes de contar: si el usuario vuelve (cambio de red,
+ *   reconexión del cliente) no se emite nada ni se escribe en Firestore.
+ * - Los cambios se juntan por socket durante flushMs y salen en un solo frame:
+ *   { cambios: [{ userId, online, lastActivity }] }.
+ *
+ * El estado vive en memoria (un solo proceso); solo guarda a los usuarios conectados.
+ */
+
+const GRACIA_MS = 8000;
+const FLUSH_MS = 250;
+const MAX_IDS_POR_SUSCRIPCION = 200;
+
+function crearPresencia({
+  emitir,
+  persistir,
+  graciaMs = GRACIA_MS,
+  flushMs = FLUSH_MS,
+  ahora = Date.now,
+  programar = setTimeout,
+  cancelar = clearTimeout,
+}) {
+  const conexiones = new Map(); // userId -> sockets abiertos
+  const conectadoDesde = new Map(); // userId -> ms del cambio a online
+  const enGracia = new Map(); // userId -> timer de la desconexión pendiente
+  const interesados = new Map(); // userId -> Set<socketId>
+  const intereses = new Map(); // socketId -> Set<userId>
+  const pendientes = new Map(); // socketId -> Map<userId, cambio>
+  let timerFlush = null;
+
+  function conectar(userId) {
+    conexiones.set(userId, (conexiones.get(userId) || 0) + 1);
+    const timer = enGracia.get(userId);
+    if (timer !== undefined) {
+      // Volvió dentro de la gracia: para los demás nunca se fue
+      cancelar(timer);
+      enGracia.delete(userId);
+      return;
+    }
+    if (conexiones.get(userId) === 1) cambiar(userId, true);
+  }
+
+  function desconectar(userId) {
+    const restantes = (conexiones.get(userId) || 0) - 1;
+    if (restantes > 0) {
+      conexiones.set(userId, restantes);
+      return;
+    }
+    conexiones.delete(userId);
+    if (enGracia.has(userId) || !conectadoDesde.has(userId)) return;
+    enGracia.set(userId, programar(() => {
+      enGracia.delete(userId);
+      if (!conexiones.has(userId)) cambiar(userId, false);
+    }, graciaMs));
+  }
+
+  /** Agrega interés y devuelve el estado actual de esos usuarios (para responder enseguida). */
+  function suscribir(socketId, userIds) {
+    const ids = normalizar(userIds);
+    let propios = intereses.get(socketId);
+    if (!propios) {
+      propios = new Set();
+      intereses.set(socketId, propios);
+    }
+    return ids.map((userId) => {
+      propios.add(userId);
+      if (!interesados.has(userId)) interesados.set(userId, new Set());
+      interesados.get(userId).add(socketId);
+      return estado(userId);
+    });
+  }
+
+  function desuscribir(socketId, userIds) {
+    const propios = intereses.get(socketId);
+    if (!propios) return;
+    for (const userId of normalizar(userIds)) {
+      propios.delete(userId);
+      quitarInteresado(userId, socketId);
+    }
+    if (propios.size === 0) intereses.delete(socketId);
+  }
+
+  /** Al cerrarse un socket: sus suscripciones y lo que tenía pendiente de enviar. */
+  function olvidarSocket(socketId) {
+    const propios = intereses.get(socketId);
+    if (propios) {
+      for (const userId of propios) quitarInteresado(userId, socketId);
+      intereses.delete(socketId);
+    }
+    pendientes.delete(socketId);
+  }
+
+  function estado(userId) {
+    const desde = conectadoDesde.get(userId);
+    return { userId, online: desde !== undefined, lastActivity: desde !== undefined ? desde : null };
+  }
+
+  function estaEnLinea(userId) {
+    return conectadoDesde.has(userId);
+  }
+
+  // ===== INTERNOS =====
+
+  function cambiar(userId, online) {
+    const ms = ahora();
+    if (online) {
+      conectadoDesde.set(userId, ms);
+    } else {
+      conectadoDesde.delete(userId);
+    }
+    persistir(userId, online);
+
+    const sockets = interesados.get(userId);
+    if (!sockets) return;
+    for (const socketId of sockets) {
+      if (!pendientes.has(socketId)) pendientes.set(socketId, new Map());
+      // Si cambia dos veces antes del flush, sale solo el último estado
+      pendientes.get(socketId).set(userId, { userId, online, lastActivity: ms });
+    }
+    if (timerFlush === null) timerFlush = programar(enviar, flushMs);
+  }
+
+  function enviar() {
+    timerFlush = null;
+    for (const [socketId, cambios] of pendientes) {
+      emitir(socketId, Array.from(cambios.values()));
+    }
+    pendientes.clear();
+  }
+
+  function quitarInteresado(userId, socketId) {
+    const sockets = interesados.get(userId);
+    if (!sockets) return;
+    sockets.delete(socketId);
+    if (sockets.size === 0) interesados.delete(userId);
+    const propios = pendientes.get(socketId);
+    if (propios) propios.delete(userId);
+  }
+
+  function normalizar(userIds) {
+    if (!Array.isArray(userIds)) return [];
+    const ids = userIds.filter((id) => typeof id === 'string' && id.length > 0);
+    return Array.from(new Set(ids)).slice(0, MAX_IDS_POR_SUSCRIPCION);
+  }
+
+  return { conectar, desconectar, suscribir, desuscribir, olvidarSocket, estado, estaEnLinea };
+}
+
+module.exports = { crearPresencia, GRACIA_MS, FLUSH_MS, MAX_IDS_POR_SUSCRIPCION };
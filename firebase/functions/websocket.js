@@ -4,6 +4,8 @@
  */
 
 const admin = require("firebase-admin");
+const { decodeFrame } = require("./src/utils/location-frame");
+const { crearPresencia } = require("./src/utils/presence-hub");
 
 /**
  * Inicializa el servidor Socket.IO
@@ -16,6 +18,17 @@ function initializeSocketServer(io, db) {
   // Caché de estado de paseos activos para evitar consultas repetidas a Firestore
   const paseoEstadoCache = new Map();
 
+  // Presencia: cada socket recibe solo los cambios de los usuarios a los que se suscribió,
+  // agrupados en "presence_batch"; Firestore se escribe solo cuando el estado cambia de verdad
+  const presencia = crearPresencia({
+    emitir: (socketId, cambios) => io.to(socketId).emit("presence_batch", { cambios }),
+    persistir: (userId, online) => {
+      persistirPresencia(db, userId, online).catch((error) => {
+        console.error("Error al persistir presencia:", error);
+      });
+    },
+  });
+
   // ========================================
   // MIDDLEWARE DE AUTENTICACIÓN
   // ========================================
@@ -58,14 +71,8 @@ function initializeSocketServer(io, db) {
     // Unir al usuario a su room personal
     socket.join(socket.userId);
 
-    // Actualizar presencia a "online"
-    updateUserPresence(db, socket.userId, "online");
-
-    // Notificar a todos los que están suscritos a la presencia de este usuario
-    io.to(`presence_${socket.userId}`).emit("online_users_response", {
-      online: [socket.userId]
-    });
-    console.log(`📢 Notificado a suscriptores de presencia para ${socket.userId}`);
+    // Online para los suscriptores (y en Firestore) solo si no volvió dentro de la gracia
+    presencia.conectar(socket.userId);
 
     // ========================================
     // EVENTOS DE CHAT
@@ -188,6 +195,9 @@ function initializeSocketServer(io, db) {
           [`mensajes_no_leidos.${destinatarioId}`]: admin.firestore.FieldValue.increment(1),
         });
 
+        // Badge del destinatario en O(1), sin esperar al documento de contadores
+        io.to(destinatarioId).emit("unread_delta", { chatId, delta: 1 });
+
         console.log(`📨 Mensaje enviado en chat ${chatId} por ${socket.userName}`);
 
         // Enviar FCM solo si destinatario no tiene el chat abierto
@@ -274,6 +284,8 @@ function initializeSocketServer(io, db) {
         await db.collection("chats").doc(chatId).update({
           [`mensajes_no_leidos.${socket.userId}`]: 0,
         });
+        // A todos los dispositivos del usuario
+        io.to(socket.userId).emit("unread_delta", { chatId, noLeidos: 0 });
         console.log(`🔔 Contador de no leídos reseteado para ${socket.userId} en ${chatId}`);
       } catch (error) {
         console.error("Error al resetear no leídos:", error);
@@ -286,8 +298,10 @@ function initializeSocketServer(io, db) {
 
     /**
      * Unirse a tracking de paseo
+     * opciones.frames: el cliente entiende "location_frame"; los que no lo anuncian
+     * (versiones anteriores) reciben cada frame como "update_location"
      */
-    socket.on("join_paseo", async (paseoId) => {
+    socket.on("join_paseo", async (paseoId, opciones) => {
       try {
         // Verificar que el usuario es parte del paseo
         const paseoDoc = await db.collection("reservas").doc(paseoId).get();
@@ -305,7 +319,9 @@ function initializeSocketServer(io, db) {
         }
 
         const roomName = `paseo_${paseoId}`;
+        const soportaFrames = Boolean(opciones && opciones.frames);
         socket.join(roomName);
+        socket.join(salaUbicaciones(paseoId, soportaFrames));
 
         const room = io.sockets.adapter.rooms.get(roomName);
         const clientsInRoom = room ? room.size : 0;
@@ -321,7 +337,7 @@ function initializeSocketServer(io, db) {
 
         console.log(`[JOIN_PASEO] Usuario ${socket.userName} (${socket.userId}) se unio a sala "${roomName}"`);
         console.log(`[JOIN_PASEO] Total de clientes en sala: ${clientsInRoom}`);
-        console.log(`[JOIN_PASEO] Estado cacheado: ${estadoActual}`);
+        console.log(`[JOIN_PASEO] Estado cacheado: ${estadoActual}, frames: ${soportaFrames}`);
 
         socket.emit("joined_paseo", { paseoId });
       } catch (error) {
@@ -331,13 +347,10 @@ function initializeSocketServer(io, db) {
     });
 
     /**
-     * Actualizar ubicación del paseador (streaming)
+     * Actualizar ubicación del paseador (streaming, un punto en JSON: clientes anteriores)
      */
     socket.on("update_location", async (data) => {
       try {
-        console.log(`[UPDATE_LOCATION] Recibido de usuario ${socket.userName} (${socket.userId})`);
-        console.log(`[UPDATE_LOCATION] Datos raw:`, JSON.stringify(data));
-
         // SOPORTE DE COMPRESIÓN: Leer formato comprimido o normal (retrocompatibilidad)
         const paseoId = data.p || data.paseoId;
         const latitud = data.lat || data.latitud;
@@ -351,59 +364,10 @@ function initializeSocketServer(io, db) {
           return socket.emit("error", { message: "paseoId requerido" });
         }
 
-        console.log(`[UPDATE_LOCATION] Parseado: paseoId=${paseoId}, lat=${latitud}, lng=${longitud}`);
-
-        // Usar cache si esta disponible, sino consultar Firestore
-        let cachedData = paseoEstadoCache.get(paseoId);
-
-        if (!cachedData || Date.now() - cachedData.timestamp > 60000) {
-          // Cache no disponible o expirado (>60s), consultar Firestore
-          console.log(`[UPDATE_LOCATION] Cache expirado para ${paseoId}, consultando Firestore...`);
-          const paseoDoc = await db.collection("reservas").doc(paseoId).get();
-          if (!paseoDoc.exists) {
-            console.error(`[UPDATE_LOCATION] ERROR: Paseo ${paseoId} no encontrado`);
-            return socket.emit("error", { message: "Paseo no encontrado" });
-          }
-
-          const idPaseador = extractId(paseoDoc.data().id_paseador);
-          const idDueno = extractId(paseoDoc.data().id_dueno);
-          const estado = paseoDoc.data().estado;
-
-          // Actualizar cache
-          cachedData = {
-            estado: estado,
-            idPaseador: idPaseador,
-            idDueno: idDueno,
-            timestamp: Date.now(),
-          };
-          paseoEstadoCache.set(paseoId, cachedData);
-          console.log(`[UPDATE_LOCATION] Cache actualizado: estado=${estado}`);
-        } else {
-          console.log(`[UPDATE_LOCATION] Usando cache: estado=${cachedData.estado}`);
-        }
-
-        // Verificar que el usuario es el paseador
-        if (socket.userId !== cachedData.idPaseador) {
-          console.error(`[UPDATE_LOCATION] ERROR: Usuario ${socket.userId} no es el paseador de ${paseoId}`);
-          return socket.emit("error", { message: "Solo el paseador puede enviar ubicación" });
-        }
-
-        // Verificar que el paseo este EN_CURSO
-        if (cachedData.estado !== "EN_CURSO") {
-          console.log(`[UPDATE_LOCATION] WARN: Ubicacion rechazada para paseo ${paseoId} - estado: ${cachedData.estado} (debe ser EN_CURSO)`);
-          return socket.emit("error", { message: "Solo se puede enviar ubicación cuando el paseo está en curso" });
-        }
-
-        // Obtener info de la sala para debugging
-        const roomName = `paseo_${paseoId}`;
-        const room = io.sockets.adapter.rooms.get(roomName);
-        const clientsInRoom = room ? room.size : 0;
-
-        console.log(`[UPDATE_LOCATION] Emitiendo a sala "${roomName}" con ${clientsInRoom} clientes`);
-        console.log(`[UPDATE_LOCATION] Datos: lat=${latitud}, lng=${longitud}, acc=${accuracy}`);
+        if (!(await autorizarUbicacion(paseoId))) return;
 
         // Stream en tiempo real a todos los participantes (usar mismo evento que el cliente escucha)
-        io.to(roomName).emit("update_location", {
+        io.to(`paseo_${paseoId}`).emit("update_location", {
           paseoId,
           lat: latitud,
           lng: longitud,
@@ -412,59 +376,137 @@ function initializeSocketServer(io, db) {
           ts: timestamp,
         });
 
-        console.log(`[UPDATE_LOCATION] Ubicacion streamed para paseo ${paseoId} a ${clientsInRoom} cliente(s)`);
-
-        // Guardar en Firestore solo cada 10 segundos (reduce writes pero mantiene historial)
-        const lastSave = socket.lastLocationSave || 0;
-        if (Date.now() - lastSave > 10000) {
-          const locationData = {
-            lat: latitud,
-            lng: longitud,
-            acc: accuracy,
-            speed: speed,
-            ts: admin.firestore.Timestamp.fromMillis(timestamp),
-          };
-
-          const geoPoint = new admin.firestore.GeoPoint(latitud, longitud);
-
-          // ===== ACTUALIZAR 1: Reserva (para mapa del dueño) =====
-          await db.collection("reservas").doc(paseoId).update({
-            ubicacion_actual: geoPoint,
-            ultima_actualizacion: admin.firestore.FieldValue.serverTimestamp(),
-            updated_at: admin.firestore.FieldValue.serverTimestamp(),
-            ubicaciones: admin.firestore.FieldValue.arrayUnion(locationData),
-          });
-
-          // ===== ACTUALIZAR 2: Usuario (para perfil) =====
-          // Calcular geohash para búsquedas geoespaciales (usando algoritmo simple)
-          const geoHash = calculateGeoHash(latitud, longitud);
-
-          await db.collection("usuarios").doc(socket.userId).update({
-            ubicacion_actual: geoPoint,
-            ubicacion: geoPoint,
-            ubicacion_geohash: geoHash,
-            updated_at: admin.firestore.FieldValue.serverTimestamp(),
-            estado: "online",
-          }).catch(err => console.warn("Warn: Error actualizando usuario", err.message));
-
-          // ===== ACTUALIZAR 3: Paseadores Search (CRÍTICO para búsqueda) =====
-          // Usar set con merge en lugar de update para crear si no existe
-          await db.collection("paseadores_search").doc(socket.userId).set({
-            ubicacion_actual: geoPoint,
-            ubicacion_geohash: geoHash,
-            updated_at: admin.firestore.FieldValue.serverTimestamp(),
-            estado: "online",
-          }, { merge: true }).catch(err => console.warn("Warn: Error actualizando paseadores_search", err.message));
-
-          socket.lastLocationSave = Date.now();
-          console.log(`📍 Ubicación guardada en: reservas + usuarios + paseadores_search para paseo ${paseoId}`);
-        }
+        await guardarUbicacionThrottled(paseoId, latitud, longitud, accuracy, speed, timestamp);
       } catch (error) {
         console.error("Error al actualizar ubicación:", error);
         socket.emit("error", { message: "Error al actualizar ubicación" });
       }
     });
 
+    /**
+     * Frames binarios: varios fixes por mensaje (seq + base + deltas, ver src/utils/location-frame.js)
+     */
+    socket.on("location_frame", async (paseoId, frame) => {
+      try {
+        if (!paseoId || !frame) {
+          return socket.emit("error", { message: "location_frame inválido" });
+        }
+
+        if (!(await autorizarUbicacion(paseoId))) return;
+
+        const { points } = decodeFrame(frame);
+        if (points.length === 0) return;
+        const ultimo = points[points.length - 1];
+
+        // Cada socket recibe un solo formato: el frame tal cual o, si no lo anunció en
+        // join_paseo, solo el último punto en JSON
+        io.to(salaUbicaciones(paseoId, true)).emit("location_frame", paseoId, frame);
+        io.to(salaUbicaciones(paseoId, false)).emit("update_location", {
+          paseoId,
+          lat: ultimo.lat,
+          lng: ultimo.lng,
+          acc: ultimo.acc,
+          speed: ultimo.speed,
+          ts: ultimo.ts,
+        });
+
+        await guardarUbicacionThrottled(paseoId, ultimo.lat, ultimo.lng, ultimo.acc, ultimo.speed,
+          ultimo.ts || Date.now());
+      } catch (error) {
+        console.error("Error procesando location_frame:", error.message);
+      }
+    });
+
+    /**
+     * Paseo en caché (se relee de Firestore si tiene más de 60s) y verificación de que el
+     * socket es el paseador y el paseo está EN_CURSO. Responde el error al cliente y
+     * devuelve false si no se puede aceptar la ubicación.
+     */
+    async function autorizarUbicacion(paseoId) {
+      let cachedData = paseoEstadoCache.get(paseoId);
+
+      if (!cachedData || Date.now() - cachedData.timestamp > 60000) {
+        const paseoDoc = await db.collection("reservas").doc(paseoId).get();
+        if (!paseoDoc.exists) {
+          console.error(`[UBICACION] ERROR: Paseo ${paseoId} no encontrado`);
+          socket.emit("error", { message: "Paseo no encontrado" });
+          return false;
+        }
+
+        const paseoData = paseoDoc.data();
+        cachedData = {
+          estado: paseoData.estado,
+          idPaseador: extractId(paseoData.id_paseador),
+          idDueno: extractId(paseoData.id_dueno),
+          timestamp: Date.now(),
+        };
+        paseoEstadoCache.set(paseoId, cachedData);
+      }
+
+      if (socket.userId !== cachedData.idPaseador) {
+        console.error(`[UBICACION] ERROR: Usuario ${socket.userId} no es el paseador de ${paseoId}`);
+        socket.emit("error", { message: "Solo el paseador puede enviar ubicación" });
+        return false;
+      }
+
+      if (cachedData.estado !== "EN_CURSO") {
+        console.log(`[UBICACION] WARN: Ubicacion rechazada para paseo ${paseoId} - estado: ${cachedData.estado} (debe ser EN_CURSO)`);
+        socket.emit("error", { message: "Solo se puede enviar ubicación cuando el paseo está en curso" });
+        return false;
+      }
+      return true;
+    }
+
+    /**
+     * Guarda la ubicación en Firestore solo cada 10 segundos (reduce writes pero mantiene historial)
+     */
+    async function guardarUbicacionThrottled(paseoId, latitud, longitud, accuracy, speed, timestamp) {
+      const lastSave = socket.lastLocationSave || 0;
+      if (Date.now() - lastSave <= 10000) return;
+
+      const locationData = {
+        lat: latitud,
+        lng: longitud,
+        acc: accuracy,
+        speed: speed,
+        ts: admin.firestore.Timestamp.fromMillis(timestamp),
+      };
+
+      const geoPoint = new admin.firestore.GeoPoint(latitud, longitud);
+
+      // ===== ACTUALIZAR 1: Reserva (para mapa del dueño) =====
+      await db.collection("reservas").doc(paseoId).update({
+        ubicacion_actual: geoPoint,
+        ultima_actualizacion: admin.firestore.FieldValue.serverTimestamp(),
+        updated_at: admin.firestore.FieldValue.serverTimestamp(),
+        ubicaciones: admin.firestore.FieldValue.arrayUnion(locationData),
+      });
+
+      // ===== ACTUALIZAR 2: Usuario (para perfil) =====
+      // Calcular geohash para búsquedas geoespaciales (usando algoritmo simple)
+      const geoHash = calculateGeoHash(latitud, longitud);
+
+      await db.collection("usuarios").doc(socket.userId).update({
+        ubicacion_actual: geoPoint,
+        ubicacion: geoPoint,
+        ubicacion_geohash: geoHash,
+        updated_at: admin.firestore.FieldValue.serverTimestamp(),
+        estado: "online",
+      }).catch(err => console.warn("Warn: Error actualizando usuario", err.message));
+
+      // ===== ACTUALIZAR 3: Paseadores Search (CRÍTICO para búsqueda) =====
+      // Usar set con merge en lugar de update para crear si no existe
+      await db.collection("paseadores_search").doc(socket.userId).set({
+        ubicacion_actual: geoPoint,
+        ubicacion_geohash: geoHash,
+        updated_at: admin.firestore.FieldValue.serverTimestamp(),
+        estado: "online",
+      }, { merge: true }).catch(err => console.warn("Warn: Error actualizando paseadores_search", err.message));
+
+      socket.lastLocationSave = Date.now();
+      console.log(`📍 Ubicación guardada en: reservas + usuarios + paseadores_search para paseo ${paseoId}`);
+    }
+
     /**
      * Cambiar estado del paseo
      */
@@ -535,60 +577,24 @@ function initializeSocketServer(io, db) {
     // ========================================
 
     /**
-     * Obtener usuarios online
-     */
-    socket.on("get_online_users", (userIds) => {
-      const onlineUsers = [];
-      userIds.forEach((uid) => {
-        const sockets = io.sockets.adapter.rooms.get(uid);
-        if (sockets && sockets.size > 0) {
-          onlineUsers.push(uid);
-        }
-      });
-      socket.emit("online_users_response", { online: onlineUsers });
-      console.log(`📍 Online users consultados: ${JSON.stringify(onlineUsers)}`);
-    });
-
-    /**
-     * Suscribirse a cambios de presencia de usuarios
+     * Suscribirse a cambios de presencia de usuarios específicos; responde enseguida con
+     * el estado actual de esos usuarios en el mismo formato que los cambios
      */
     socket.on("subscribe_presence", (userIds) => {
       if (!Array.isArray(userIds)) {
         console.warn("subscribe_presence: userIds no es un array");
         return;
       }
-
-      console.log(`👁️ Usuario ${socket.userName} suscrito a presencia de: ${JSON.stringify(userIds)}`);
-
-      // Crear una sala para presencia de estos usuarios
-      userIds.forEach((uid) => {
-        const presenceRoom = `presence_${uid}`;
-        socket.join(presenceRoom);
-        console.log(`✅ Socket unido a sala de presencia: ${presenceRoom}`);
-
-        // Enviar estado actual inmediatamente
-        const sockets = io.sockets.adapter.rooms.get(uid);
-        const isOnline = sockets && sockets.size > 0;
-        socket.emit("online_users_response", { online: isOnline ? [uid] : [] });
-      });
+      const actuales = presencia.suscribir(socket.id, userIds);
+      socket.emit("presence_batch", { cambios: actuales });
+      console.log(`👁️ Usuario ${socket.userName} suscrito a presencia de ${actuales.length} usuarios`);
     });
 
     /**
      * Desuscribirse de cambios de presencia
      */
     socket.on("unsubscribe_presence", (userIds) => {
-      if (!Array.isArray(userIds)) {
-        console.warn("unsubscribe_presence: userIds no es un array");
-        return;
-      }
-
-      console.log(`👁️ Usuario ${socket.userName} desuscrito de presencia de: ${JSON.stringify(userIds)}`);
-
-      userIds.forEach((uid) => {
-        const presenceRoom = `presence_${uid}`;
-        socket.leave(presenceRoom);
-        console.log(`❌ Socket salió de sala de presencia: ${presenceRoom}`);
-      });
+      presencia.desuscribir(socket.id, userIds);
     });
 
     /**
@@ -601,39 +607,12 @@ function initializeSocketServer(io, db) {
     // ========================================
     // DESCONEXIÓN
     // ========================================
-    socket.on("disconnect", async (reason) => {
+    socket.on("disconnect", (reason) => {
       console.log(` Usuario desconectado: ${socket.userName} [${reason}]`);
 
-      try {
-        // Notificar a todos los que están suscritos a la presencia de este usuario
-        io.to(`presence_${socket.userId}`).emit("online_users_response", {
-          online: []
-        });
-        console.log(`📢 Notificado a suscriptores de desconexión para ${socket.userId}`);
-
-        // Actualizar presencia a "offline"
-        await updateUserPresence(db, socket.userId, "offline");
-
-        // Limpiar chat_abierto para todos los chats del usuario
-        const chatsSnapshot = await db
-          .collection("chats")
-          .where("participantes", "array-contains", socket.userId)
-          .get();
-
-        const updates = [];
-        chatsSnapshot.forEach((doc) => {
-          updates.push(
-            doc.ref.update({
-              [`chat_abierto.${socket.userId}`]: null,
-              [`estado_usuarios.${socket.userId}`]: "offline",
-            })
-          );
-        });
-
-        await Promise.all(updates);
-      } catch (error) {
-        console.error("Error en desconexión:", error);
-      }
+      // El offline (y sus escrituras) sale después de la gracia si no vuelve a conectarse
+      presencia.olvidarSocket(socket.id);
+      presencia.desconectar(socket.userId);
     });
   });
 
@@ -644,6 +623,35 @@ function initializeSocketServer(io, db) {
 // FUNCIONES AUXILIARES
 // ========================================
 
+/**
+ * Cambio efectivo de presencia (ya pasada la gracia): usuario, búsqueda y, al quedar
+ * offline, el estado en sus chats.
+ * @param {object} db - Instancia de Firestore
+ * @param {string} userId - ID del usuario
+ * @param {boolean} online - Nuevo estado
+ */
+async function persistirPresencia(db, userId, online) {
+  await updateUserPresence(db, userId, online ? "online" : "offline");
+  if (online) return;
+
+  const chatsSnapshot = await db
+    .collection("chats")
+    .where("participantes", "array-contains", userId)
+    .get();
+
+  const updates = [];
+  chatsSnapshot.forEach((doc) => {
+    updates.push(
+      doc.ref.update({
+        [`chat_abierto.${userId}`]: null,
+        [`estado_usuarios.${userId}`]: "offline",
+      })
+    );
+  });
+
+  await Promise.all(updates);
+}
+
 /**
  * Actualiza el estado de presencia del usuario en usuarios y paseadores_search
  */
@@ -706,6 +714,16 @@ async function sendFCMIfNeeded(db, recipientId, chatId, message, senderId, sende
   }
 }
 
+/**
+ * Sala de ubicaciones de un paseo según el formato que entiende el cliente
+ * @param {string} paseoId - ID de la reserva
+ * @param {boolean} soportaFrames - true si el cliente anunció "location_frame" en join_paseo
+ * @return {string} Nombre de la sala
+ */
+function salaUbicaciones(paseoId, soportaFrames) {
+  return `paseo_${paseoId}_${soportaFrames ? "frames" : "json"}`;
+}
+
 /**
  * Extrae ID de una referencia de Firestore o string
  */
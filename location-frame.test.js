@@ -0,0 +1,75 @@
+/**
+ * Pruebas del formato de frames de ubicación (node --test)
+ */
+
+const test = require('node:test');
+const assert = require('node:assert');
+const { decodeFrame, encodeFrame } = require('./firebase/functions/src/utils/location-frame');
+
+const LAT = -0.1807;
+const LNG = -78.4678;
+const T0 = 1760000000000;
+
+// Generado por LocationFrameBatcher en la app (ver LocationFrameBatcherTest.FRAME_COMPARTIDO)
+const FRAME_COMPARTIDO = '020300b78716afcbea4a8080b3c19c332d7d1811f02e377d1811f02e417d';
+
+test('decodifica el frame generado por la app', () => {
+  const { seq, points } = decodeFrame(Buffer.from(FRAME_COMPARTIDO, 'hex'));
+
+  assert.strictEqual(seq, 0);
+  assert.strictEqual(points.length, 3);
+  assert.ok(Math.abs(points[2].lat - (LAT + 2 * 0.000012)) < 1e-6);
+  assert.ok(Math.abs(points[2].lng - (LNG - 2 * 0.000009)) < 1e-6);
+  assert.strictEqual(points[2].ts, T0 + 6000);
+  assert.strictEqual(points[2].acc, 6.5);
+  assert.strictEqual(points[0].speed, 1.25);
+});
+
+test('encode/decode ida y vuelta coincide con la app', () => {
+  const points = [0, 1, 2].map((i) => ({
+    lat: LAT + i * 0.000012,
+    lng: LNG - i * 0.000009,
+    ts: T0 + i * 3000,
+    acc: 4.5 + i,
+    speed: 1.25,
+  }));
+  const frame = encodeFrame(points, 0);
+
+  assert.strictEqual(frame.toString('hex'), FRAME_COMPARTIDO);
+  assert.deepStrictEqual(decodeFrame(frame).points.map((p) => p.ts), points.map((p) => p.ts));
+});
+
+test('rechaza frames truncados o de otra versión', () => {
+  const frame = Buffer.from(FRAME_COMPARTIDO, 'hex');
+  assert.throws(() => decodeFrame(frame.subarray(0, frame.length - 3)), /truncado/);
+  assert.throws(() => decodeFrame(Buffer.from([1, 0])), /Versión/);
+  assert.throws(() => decodeFrame(Buffer.alloc(0)), /vacío/);
+});
+
+test('bytes por fix: JSON update_location vs location_frame', () => {
+  let jsonBytes = 0;
+  let frameBytes = 0;
+  let fixes = 0;
+  for (let frame = 0; frame < 30; frame++) {
+    const points = [];
+    for (let j = 0; j < 3; j++, fixes++) {
+      const p = {
+        lat: LAT + fixes * 0.0000378,
+        lng: LNG + Math.sin(fixes / 10) * 0.00002,
+        ts: T0 + fixes * 3000,
+        acc: 6,
+        speed: 1.4,
+      };
+      points.push(p);
+      jsonBytes += Buffer.byteLength(JSON.stringify({ p: 'reserva_abc123', lat: p.lat, lng: p.lng, ts: p.ts, acc: 6 }));
+    }
+    frameBytes += encodeFrame(points, fixes - 3).length;
+  }
+
+  const antes = jsonBytes / fixes;
+  const despues = frameBytes / fixes;
+  // Medido: JSON ~91 bytes/fix, frame ~11 bytes/fix (cabecera incluida)
+  assert.ok(antes > 80, `JSON: ${antes}`);
+  assert.ok(despues < 12, `frame: ${despues}`);
+  assert.ok(despues * 4 < antes);
+});
@@ -0,0 +1,96 @@
+/**
+ * Pruebas de la presencia por interés (node --test)
+ */
+
+const test = require('node:test');
+const assert = require('node:assert');
+const { crearPresencia } = require('./firebase/functions/src/utils/presence-hub');
+
+/** Reloj y timers manuales: el test decide cuándo corre cada uno. */
+function crear() {
+  const timers = new Map();
+  let siguiente = 1;
+  const reloj = { ms: 1000 };
+  const emitidos = [];
+  const escrituras = [];
+  const presencia = crearPresencia({
+    emitir: (socketId, cambios) => emitidos.push({ socketId, cambios }),
+    persistir: (userId, online) => escrituras.push(`${userId}:${online ? 'online' : 'offline'}`),
+    graciaMs: 5000,
+    flushMs: 100,
+    ahora: () => reloj.ms,
+    programar: (fn, ms) => {
+      const id = siguiente++;
+      timers.set(id, { fn, vence: reloj.ms + ms });
+      return id;
+    },
+    cancelar: (id) => timers.delete(id),
+  });
+  const avanzar = (ms) => {
+    reloj.ms += ms;
+    for (const [id, timer] of Array.from(timers).sort((a, b) => a[1].vence - b[1].vence)) {
+      if (timer.vence <= reloj.ms && timers.has(id)) {
+        timers.delete(id);
+        timer.fn();
+      }
+    }
+  };
+  return { presencia, emitidos, escrituras, avanzar };
+}
+
+test('solo reciben los suscritos, en un frame por socket', () => {
+  const { presencia, emitidos, avanzar } = crear();
+  assert.deepStrictEqual(presencia.suscribir('s1', ['ana', 'luis', 'ana']).map((e) => e.online), [false, false]);
+
+  presencia.conectar('ana');
+  presencia.conectar('luis');
+  presencia.conectar('eva'); // nadie la sigue
+  assert.strictEqual(emitidos.length, 0);
+
+  avanzar(100);
+  assert.strictEqual(emitidos.length, 1);
+  assert.strictEqual(emitidos[0].socketId, 's1');
+  assert.deepStrictEqual(emitidos[0].cambios.map((c) => c.userId).sort(), ['ana', 'luis']);
+  assert.strictEqual(presencia.suscribir('s2', ['eva'])[0].online, true);
+});
+
+test('una reconexión dentro de la gracia no emite ni escribe', () => {
+  const { presencia, emitidos, escrituras, avanzar } = crear();
+  presencia.suscribir('s1', ['ana']);
+  presencia.conectar('ana');
+  avanzar(100);
+  assert.deepStrictEqual(escrituras, ['ana:online']);
+
+  presencia.desconectar('ana');
+  avanzar(3000);
+  presencia.conectar('ana');
+  avanzar(10000);
+  assert.strictEqual(emitidos.length, 1);
+  assert.deepStrictEqual(escrituras, ['ana:online']);
+
+  // Con dos dispositivos, cerrar uno no la desconecta
+  presencia.conectar('ana');
+  presencia.desconectar('ana');
+  avanzar(10000);
+  assert.strictEqual(presencia.estaEnLinea('ana'), true);
+
+  presencia.desconectar('ana');
+  avanzar(5000);
+  avanzar(100);
+  assert.deepStrictEqual(escrituras, ['ana:online', 'ana:offline']);
+  assert.strictEqual(emitidos[1].cambios[0].online, false);
+});
+
+test('al desuscribirse o cerrar el socket deja de recibir', () => {
+  const { presencia, emitidos, avanzar } = crear();
+  presencia.suscribir('s1', ['ana', 'luis']);
+  presencia.suscribir('s2', ['luis']);
+  presencia.desuscribir('s1', ['luis']);
+  presencia.olvidarSocket('s2');
+
+  presencia.conectar('luis');
+  presencia.conectar('ana');
+  avanzar(100);
+  assert.strictEqual(emitidos.length, 1);
+  assert.deepStrictEqual(emitidos[0].cambios.map((c) => c.userId), ['ana']);
+});
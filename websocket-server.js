@@ -7,6 +7,8 @@ const express = require('express');
 const { createServer } = require('http');
 const { Server } = require('socket.io');
 const admin = require('firebase-admin');
+const { decodeFrame } = require('./firebase/functions/src/utils/location-frame');
+const { crearPresencia } = require('./firebase/functions/src/utils/presence-hub');
 
 // Configurar variables de entorno ANTES de inicializar Firebase
 process.env.FIRESTORE_EMULATOR_HOST = 'localhost:8080';
@@ -46,6 +48,17 @@ const io = new Server(httpServer, {
 
 console.log('🚀 Inicializando servidor WebSocket...');
 
+// Presencia: cada socket recibe solo los cambios de los usuarios a los que se suscribió,
+// agrupados en 'presence_batch'; Firestore se escribe solo cuando el estado cambia de verdad
+const presencia = crearPresencia({
+  emitir: (socketId, cambios) => io.to(socketId).emit('presence_batch', { cambios }),
+  persistir: (userId, online) => {
+    persistirPresencia(userId, online).catch((error) => {
+      console.error('Error al persistir presencia:', error);
+    });
+  },
+});
+
 // ========================================
 // MIDDLEWARE DE AUTENTICACIÓN
 // ========================================
@@ -119,96 +132,27 @@ io.on('connection', (socket) => {
   console.log(` Usuario conectado: ${socket.userName} [${socket.userId}]`);
 
   socket.join(socket.userId);
-  updateUserPresence(socket.userId, 'online');
-
-  // Notificar a otros usuarios que este usuario está online
-  socket.broadcast.emit('user_connected', {
-    userId: socket.userId,
-    userName: socket.userName,
-    status: 'online',
-    lastActivity: Date.now(),
-    timestamp: Date.now()
-  });
+  presencia.conectar(socket.userId);
 
   // ========================================
   // EVENTOS DE PRESENCIA
   // ========================================
 
-  // Consultar qué usuarios están online
-  socket.on('get_online_users', async (userIds) => {
-    try {
-      const onlineUsers = [];
-      const offlineUsers = [];
-      const userStatuses = {};
-
-      // Obtener todos los sockets conectados
-      const sockets = await io.fetchSockets();
-      const connectedUserIds = sockets.map(s => s.userId);
-
-      // Obtener última actividad de Firestore para todos los usuarios
-      const usersSnapshot = await db.collection('usuarios')
-        .where(admin.firestore.FieldPath.documentId(), 'in', userIds.slice(0, 10)) // Firestore limit
-        .get();
-
-      usersSnapshot.forEach(doc => {
-        const data = doc.data();
-        userStatuses[doc.id] = {
-          lastActivity: data.ultima_actividad ? data.ultima_actividad.toMillis() : null,
-          estado: data.estado || 'offline'
-        };
-      });
-
-      for (const userId of userIds) {
-        const status = userStatuses[userId] || { lastActivity: null, estado: 'offline' };
-
-        if (connectedUserIds.includes(userId)) {
-          onlineUsers.push({
-            userId: userId,
-            lastActivity: status.lastActivity || Date.now()
-          });
-        } else {
-          offlineUsers.push({
-            userId: userId,
-            lastActivity: status.lastActivity
-          });
-        }
-      }
-
-      socket.emit('online_users_response', {
-        online: onlineUsers,
-        offline: offlineUsers,
-        timestamp: Date.now()
-      });
-
-      console.log(` Consulta de presencia: ${onlineUsers.length} online, ${offlineUsers.length} offline`);
-    } catch (error) {
-      console.error('Error al obtener usuarios online:', error);
-    }
-  });
-
-  // Suscribirse a cambios de presencia de usuarios específicos
+  // Suscribirse a cambios de presencia de usuarios específicos; responde enseguida con
+  // el estado actual de esos usuarios en el mismo formato que los cambios
   socket.on('subscribe_presence', (userIds) => {
-    try {
-      // Unirse a rooms de presencia para cada usuario
-      for (const userId of userIds) {
-        socket.join(`presence_${userId}`);
-      }
-      console.log(` ${socket.userName} suscrito a presencia de ${userIds.length} usuarios`);
-    } catch (error) {
-      console.error('Error al suscribirse a presencia:', error);
+    if (!Array.isArray(userIds)) {
+      console.warn('subscribe_presence: userIds no es un array');
+      return;
     }
+    const actuales = presencia.suscribir(socket.id, userIds);
+    socket.emit('presence_batch', { cambios: actuales });
+    console.log(` ${socket.userName} suscrito a presencia de ${actuales.length} usuarios`);
   });
 
   // Desuscribirse de cambios de presencia
   socket.on('unsubscribe_presence', (userIds) => {
-    try {
-      for (const userId of userIds) {
-        socket.leave(`presence_${userId}`);
-      }
-      console.log(` ${socket.userName} desuscrito de presencia de ${userIds.length} usuarios`);
-    } catch (error) {
-      console.error('Error al desuscribirse de presencia:', error);
-    }
+    presencia.desuscribir(socket.id, userIds);
   });
 
   // ========================================
@@ -316,6 +260,9 @@ io.on('connection', (socket) => {
         [`mensajes_no_leidos.${destinatarioId}`]: admin.firestore.FieldValue.increment(1),
       });
 
+      // Badge del destinatario en O(1), sin esperar al documento de contadores
+      io.to(destinatarioId).emit('unread_delta', { chatId, delta: 1 });
+
       console.log(`📨 Mensaje enviado en chat ${chatId} por ${socket.userName}`);
     } catch (error) {
       console.error('Error al enviar mensaje:', error);
@@ -381,6 +328,8 @@ io.on('connection', (socket) => {
       await db.collection('chats').doc(chatId).update({
         [`mensajes_no_leidos.${socket.userId}`]: 0,
       });
+      // A todos los dispositivos del usuario
+      io.to(socket.userId).emit('unread_delta', { chatId, noLeidos: 0 });
       console.log(`🔔 Contador reseteado para ${socket.userId} en ${chatId}`);
     } catch (error) {
       console.error('Error al resetear contador:', error);
@@ -391,24 +340,24 @@ io.on('connection', (socket) => {
   // EVENTOS DE PASEO
   // ========================================
 
-  socket.on('join_paseo', async (paseoId) => {
+  // opciones.frames: el cliente entiende 'location_frame'; los que no lo anuncian
+  // (versiones anteriores) reciben cada frame como 'update_location'
+  socket.on('join_paseo', async (paseoId, opciones) => {
     try {
-      const paseoDoc = await db.collection('reservas').doc(paseoId).get();
+      const auth = await autorizarPaseo(socket, paseoId);
 
-      if (!paseoDoc.exists) {
+      if (!auth) {
         return socket.emit('error', { message: 'Paseo no encontrado' });
       }
 
-      const paseoData = paseoDoc.data();
-      const idPaseador = extractId(paseoData.id_paseador);
-      const idDueno = extractId(paseoData.id_dueno);
-
-      if (socket.userId !== idPaseador && socket.userId !== idDueno) {
+      if (socket.userId !== auth.idPaseador && socket.userId !== auth.idDueno) {
         return socket.emit('error', { message: 'No autorizado para este paseo' });
       }
 
+      const soportaFrames = Boolean(opciones && opciones.frames);
       socket.join(`paseo_${paseoId}`);
-      console.log(`🐕 ${socket.userName} se unió al paseo ${paseoId}`);
+      socket.join(salaUbicaciones(paseoId, soportaFrames));
+      console.log(`🐕 ${socket.userName} se unió al paseo ${paseoId} (frames: ${soportaFrames})`);
 
       socket.emit('joined_paseo', { paseoId });
     } catch (error) {
@@ -434,13 +383,13 @@ io.on('connection', (socket) => {
         return socket.emit('error', { message: 'paseoId inválido o vacío' });
       }
 
-      const paseoDoc = await db.collection('reservas').doc(paseoId).get();
-      if (!paseoDoc.exists) {
+      // Autorización cacheada por socket: no se relee la reserva en cada ubicación
+      const auth = await autorizarPaseo(socket, paseoId);
+      if (!auth) {
         return socket.emit('error', { message: 'Paseo no encontrado' });
       }
 
-      const idPaseador = extractId(paseoDoc.data().id_paseador);
-      if (socket.userId !== idPaseador) {
+      if (socket.userId !== auth.idPaseador) {
         return socket.emit('error', { message: 'Solo el paseador puede enviar ubicación' });
       }
 
@@ -454,51 +403,45 @@ io.on('connection', (socket) => {
         ts: timestamp,
       });
 
-      const lastSave = socket.lastLocationSave || 0;
-      if (Date.now() - lastSave > 30000) {
-        // Usar formato comprimido consistente con LocationService
-        const ubicacionData = {
-          lat: latitud,
-          lng: longitud,
-          acc: accuracy || 0,
-          speed: 0, // WebSocket no recibe speed, usar 0 por defecto
-          ts: admin.firestore.Timestamp.fromMillis(timestamp)
-        };
-
-        const geoPoint = new admin.firestore.GeoPoint(latitud, longitud);
-
-        // ===== ACTUALIZAR 1: Reserva (para mapa del dueño) =====
-        await db.collection('reservas').doc(paseoId).update({
-          ubicacion_actual: geoPoint,
-          ultima_actualizacion: admin.firestore.FieldValue.serverTimestamp(),
-          updated_at: admin.firestore.FieldValue.serverTimestamp(),
-          ubicaciones: admin.firestore.FieldValue.arrayUnion(ubicacionData)
-        });
+      await guardarUbicacionThrottled(socket, paseoId, latitud, longitud, accuracy, timestamp);
+    } catch (error) {
+      console.error('Error al actualizar ubicación:', error);
+    }
+  });
 
-        // ===== ACTUALIZAR 2: Usuario (para perfil) =====
-        const geoHash = calculateGeoHash(latitud, longitud);
-        await db.collection('usuarios').doc(socket.userId).update({
-          ubicacion_actual: geoPoint,
-          ubicacion: geoPoint,
-          ubicacion_geohash: geoHash,
-          updated_at: admin.firestore.FieldValue.serverTimestamp(),
-          estado: 'online',
-        }).catch(err => console.warn("Warn: Error actualizando usuario", err.message));
-
-        // ===== ACTUALIZAR 3: Paseadores Search (CRÍTICO para búsqueda) =====
-        // Usar set con merge en lugar de update para crear si no existe
-        await db.collection('paseadores_search').doc(socket.userId).set({
-          ubicacion_actual: geoPoint,
-          ubicacion_geohash: geoHash,
-          updated_at: admin.firestore.FieldValue.serverTimestamp(),
-          estado: 'online',
-        }, { merge: true }).catch(err => console.warn("Warn: Error actualizando paseadores_search", err.message));
-
-        socket.lastLocationSave = Date.now();
-        console.log(`📍 Ubicacion guardada en: reservas + usuarios + paseadores_search para paseo ${paseoId}`);
+  // ===== FRAMES BINARIOS: varios fixes por mensaje (seq + base + deltas, ver firebase/functions/src/utils/location-frame.js) =====
+  socket.on('location_frame', async (paseoId, frame) => {
+    try {
+      if (!paseoId || !frame) {
+        return socket.emit('error', { message: 'location_frame inválido' });
       }
+
+      const auth = await autorizarPaseo(socket, paseoId);
+      if (!auth) {
+        return socket.emit('error', { message: 'Paseo no encontrado' });
+      }
+      if (socket.userId !== auth.idPaseador) {
+        return socket.emit('error', { message: 'Solo el paseador puede enviar ubicación' });
+      }
+
+      const { points } = decodeFrame(frame);
+      if (points.length === 0) return;
+      const ultimo = points[points.length - 1];
+
+      // Cada socket recibe un solo formato: el frame tal cual o, si no lo anunció en
+      // join_paseo, solo el último punto en JSON
+      io.to(salaUbicaciones(paseoId, true)).emit('location_frame', paseoId, frame);
+      io.to(salaUbicaciones(paseoId, false)).emit('update_location', {
+        paseoId,
+        lat: ultimo.lat,
+        lng: ultimo.lng,
+        acc: ultimo.acc,
+        ts: ultimo.ts,
+      });
+
+      await guardarUbicacionThrottled(socket, paseoId, ultimo.lat, ultimo.lng, ultimo.acc, ultimo.ts || Date.now());
     } catch (error) {
-      console.error('Error al actualizar ubicación:', error);
+      console.error('Error procesando location_frame:', error.message);
     }
   });
 
@@ -509,46 +452,12 @@ io.on('connection', (socket) => {
   // ========================================
   // DESCONEXIÓN
   // ========================================
-  socket.on('disconnect', async (reason) => {
+  socket.on('disconnect', (reason) => {
     console.log(` Usuario desconectado: ${socket.userName} [${reason}]`);
 
-    try {
-      await updateUserPresence(socket.userId, 'offline');
-
-      // Notificar a otros usuarios que este usuario está offline
-      socket.broadcast.emit('user_disconnected', {
-        userId: socket.userId,
-        userName: socket.userName,
-        status: 'offline',
-        timestamp: Date.now()
-      });
-
-      // Notificar a suscriptores específicos de presencia
-      io.to(`presence_${socket.userId}`).emit('user_status_changed', {
-        userId: socket.userId,
-        status: 'offline',
-        timestamp: Date.now()
-      });
-
-      const chatsSnapshot = await db
-        .collection('chats')
-        .where('participantes', 'array-contains', socket.userId)
-        .get();
-
-      const updates = [];
-      chatsSnapshot.forEach((doc) => {
-        updates.push(
-          doc.ref.update({
-            [`chat_abierto.${socket.userId}`]: null,
-            [`estado_usuarios.${socket.userId}`]: 'offline',
-          })
-        );
-      });
-
-      await Promise.all(updates);
-    } catch (error) {
-      console.error('Error en desconexión:', error);
-    }
+    // El offline (y sus escrituras) sale después de la gracia si no vuelve a conectarse
+    presencia.olvidarSocket(socket.id);
+    presencia.desconectar(socket.userId);
   });
 });
 
@@ -556,6 +465,32 @@ io.on('connection', (socket) => {
 // FUNCIONES AUXILIARES
 // ========================================
 
+/**
+ * Cambio efectivo de presencia (ya pasada la gracia): usuario, búsqueda y, al quedar
+ * offline, el estado en sus chats.
+ */
+async function persistirPresencia(userId, online) {
+  await updateUserPresence(userId, online ? 'online' : 'offline');
+  if (online) return;
+
+  const chatsSnapshot = await db
+    .collection('chats')
+    .where('participantes', 'array-contains', userId)
+    .get();
+
+  const updates = [];
+  chatsSnapshot.forEach((doc) => {
+    updates.push(
+      doc.ref.update({
+        [`chat_abierto.${userId}`]: null,
+        [`estado_usuarios.${userId}`]: 'offline',
+      })
+    );
+  });
+
+  await Promise.all(updates);
+}
+
 async function updateUserPresence(userId, status) {
   try {
     // ===== ACTUALIZAR 1: Colección 'usuarios' =====
@@ -583,6 +518,92 @@ async function updateUserPresence(userId, status) {
   }
 }
 
+/**
+ * Sala de ubicaciones de un paseo según el formato que entiende el cliente
+ */
+function salaUbicaciones(paseoId, soportaFrames) {
+  return `paseo_${paseoId}_${soportaFrames ? 'frames' : 'json'}`;
+}
+
+const AUTH_PASEO_TTL_MS = 10 * 60 * 1000;
+
+/**
+ * Autorización de paseo cacheada por socket (se invalida sola tras AUTH_PASEO_TTL_MS).
+ * Devuelve { idPaseador, idDueno } o null si la reserva no existe.
+ */
+async function autorizarPaseo(socket, paseoId) {
+  if (!socket.paseosAutorizados) socket.paseosAutorizados = new Map();
+
+  const cacheado = socket.paseosAutorizados.get(paseoId);
+  if (cacheado && Date.now() - cacheado.cargado < AUTH_PASEO_TTL_MS) {
+    return cacheado;
+  }
+
+  const paseoDoc = await db.collection('reservas').doc(paseoId).get();
+  if (!paseoDoc.exists) {
+    socket.paseosAutorizados.delete(paseoId);
+    return null;
+  }
+
+  const paseoData = paseoDoc.data();
+  const auth = {
+    idPaseador: extractId(paseoData.id_paseador),
+    idDueno: extractId(paseoData.id_dueno),
+    cargado: Date.now(),
+  };
+  socket.paseosAutorizados.set(paseoId, auth);
+  return auth;
+}
+
+/**
+ * Guarda la última ubicación en Firestore como máximo cada 30s por socket
+ */
+async function guardarUbicacionThrottled(socket, paseoId, latitud, longitud, accuracy, timestamp) {
+  const lastSave = socket.lastLocationSave || 0;
+  if (Date.now() - lastSave > 30000) {
+    // Usar formato comprimido consistente con LocationService
+    const ubicacionData = {
+      lat: latitud,
+      lng: longitud,
+      acc: accuracy || 0,
+      speed: 0, // WebSocket no recibe speed, usar 0 por defecto
+      ts: admin.firestore.Timestamp.fromMillis(timestamp)
+    };
+
+    const geoPoint = new admin.firestore.GeoPoint(latitud, longitud);
+
+    // ===== ACTUALIZAR 1: Reserva (para mapa del dueño) =====
+    await db.collection('reservas').doc(paseoId).update({
+      ubicacion_actual: geoPoint,
+      ultima_actualizacion: admin.firestore.FieldValue.serverTimestamp(),
+      updated_at: admin.firestore.FieldValue.serverTimestamp(),
+      ubicaciones: admin.firestore.FieldValue.arrayUnion(ubicacionData)
+    });
+
+    // ===== ACTUALIZAR 2: Usuario (para perfil) =====
+    const geoHash = calculateGeoHash(latitud, longitud);
+    await db.collection('usuarios').doc(socket.userId).update({
+      ubicacion_actual: geoPoint,
+      ubicacion: geoPoint,
+      ubicacion_geohash: geoHash,
+      updated_at: admin.firestore.FieldValue.serverTimestamp(),
+      estado: 'online',
+    }).catch(err => console.warn("Warn: Error actualizando usuario", err.message));
+
+    // ===== ACTUALIZAR 3: Paseadores Search (CRÍTICO para búsqueda) =====
+    // Usar set con merge en lugar de update para crear si no existe
+    await db.collection('paseadores_search').doc(socket.userId).set({
+      ubicacion_actual: geoPoint,
+      ubicacion_geohash: geoHash,
+      updated_at: admin.firestore.FieldValue.serverTimestamp(),
+      estado: 'online',
+    }, { merge: true }).catch(err => console.warn("Warn: Error actualizando paseadores_search", err.message));
+
+    socket.lastLocationSave = Date.now();
+    console.log(`📍 Ubicacion guardada en: reservas + usuarios + paseadores_search para paseo ${paseoId}`);
+  }
+}
+
 function extractId(value) {
   if (!value) return null;
   if (typeof value === 'string') return value;